@@ -2,11 +2,13 @@ package clearcl;
 
 import java.nio.Buffer;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 
 import clearcl.abs.ClearCLMemBase;
 import clearcl.enums.HostAccessType;
 import clearcl.enums.KernelAccessType;
 import clearcl.enums.MemAllocMode;
+import clearcl.enums.TransferDirection;
 import clearcl.exceptions.ClearCLException;
 import clearcl.exceptions.ClearCLHostAccessException;
 import clearcl.interfaces.ClearCLImageInterface;
@@ -31,6 +33,12 @@ public class ClearCLBuffer extends ClearCLMemBase implements
   private long mNumberOfChannels;
   private final long[] mDimensions;
 
+  private final ClearCLBuffer mParentBuffer;
+  private final long mOffsetInParentInBytes;
+  private int mNumberOfSubBuffers;
+  private boolean mClosePending;
+  private boolean mClosed;
+
   /**
    * This constructor is called internally from an OpenCl context.
    * 
@@ -56,6 +64,29 @@ public class ClearCLBuffer extends ClearCLMemBase implements
                 long pNumberOfChannels,
                 NativeTypeEnum pNativeType,
                 long... pDimensions)
+  {
+    this(pClearCLContext,
+         pBufferPointer,
+         pMemAllocMode,
+         pHostAccessType,
+         pKernelAccessType,
+         pNumberOfChannels,
+         pNativeType,
+         null,
+         0,
+         pDimensions);
+  }
+
+  private ClearCLBuffer(ClearCLContext pClearCLContext,
+                        ClearCLPeerPointer pBufferPointer,
+                        MemAllocMode pMemAllocMode,
+                        HostAccessType pHostAccessType,
+                        KernelAccessType pKernelAccessType,
+                        long pNumberOfChannels,
+                        NativeTypeEnum pNativeType,
+                        ClearCLBuffer pParentBuffer,
+                        long pOffsetInParentInBytes,
+                        long... pDimensions)
   {
     super(pClearCLContext.getBackend(),
           pBufferPointer,
@@ -66,6 +97,81 @@ public class ClearCLBuffer extends ClearCLMemBase implements
     mNumberOfChannels = pNumberOfChannels;
     mNativeType = pNativeType;
     mDimensions = pDimensions;
+    mParentBuffer = pParentBuffer;
+    mOffsetInParentInBytes = pOffsetInParentInBytes;
+  }
+
+  /**
+   * Returns a sub-buffer aliasing a region of this buffer. The sub-buffer is a
+   * regular 1D buffer of same data type and number of channels that can be
+   * used as kernel argument and in all copy methods, writes to one are visible
+   * in the other. Sub-buffers of sub-buffers are created directly from the
+   * parent buffer. The parent buffer's memory is only released once it and all
+   * its sub-buffers are closed. The offset, in bytes, must be a multiple of the
+   * device's base address alignment.
+   * 
+   * @param pOffset
+   *          offset in elements
+   * @param pLength
+   *          length in elements
+   * @return sub-buffer
+   */
+  public ClearCLBuffer subBuffer(long pOffset, long pLength)
+  {
+    if (pOffset < 0 || pLength <= 0 || pOffset + pLength > getLength())
+      throw new ClearCLException("Incompatible length");
+
+    long lElementSizeInBytes = getNumberOfChannels()
+                               * getNativeType().getSizeInBytes();
+
+    if (mParentBuffer != null)
+      return mParentBuffer.subBuffer(mOffsetInParentInBytes
+                                     / lElementSizeInBytes
+                                     + pOffset, pLength);
+
+    synchronized (this)
+    {
+      if (getPeerPointer() == null || mClosePending || mClosed)
+        throw new ClearCLException("Buffer already closed");
+
+      ClearCLPeerPointer lSubBufferPointer =
+                                           getBackend().getSubBufferPeerPointer(getPeerPointer(),
+                                                                                pOffset * lElementSizeInBytes,
+                                                                                pLength * lElementSizeInBytes);
+      mNumberOfSubBuffers++;
+
+      return new ClearCLBuffer(mClearCLContext,
+                               lSubBufferPointer,
+                               getMemAllocMode(),
+                               getHostAccessType(),
+                               getKernelAccessType(),
+                               getNumberOfChannels(),
+                               getNativeType(),
+                               this,
+                               pOffset * lElementSizeInBytes,
+                               pLength);
+    }
+  }
+
+  /**
+   * Returns the parent buffer if this buffer is a sub-buffer, null otherwise.
+   * 
+   * @return parent buffer or null
+   */
+  public ClearCLBuffer getParentBuffer()
+  {
+    return mParentBuffer;
+  }
+
+  /**
+   * Returns the offset in bytes of this sub-buffer within its parent buffer, or
+   * zero if this buffer is not a sub-buffer.
+   * 
+   * @return offset in parent buffer in bytes
+   */
+  public long getOffsetInParentInBytes()
+  {
+    return mOffsetInParentInBytes;
   }
 
   /**
@@ -114,18 +220,52 @@ public class ClearCLBuffer extends ClearCLMemBase implements
                    long pOffsetInBuffer,
                    long pLengthInBuffer,
                    boolean pBlockingFill)
+  {
+    fill(mClearCLContext.getDefaultQueue(),
+         pPattern,
+         pOffsetInBuffer,
+         pLengthInBuffer,
+         pBlockingFill);
+  }
+
+  /**
+   * Fills the buffer with a given byte pattern, from a given starting offset,
+   * and for a certain length. This call can be required to block until
+   * operation is finished.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pPattern
+   *          pattern as a sequence of bytes
+   * @param pOffsetInBuffer
+   *          offset in buffer in elements
+   * @param pLengthInBuffer
+   *          length in buffer in elements
+   * @param pBlockingFill
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void fill(ClearCLQueue pClearCLQueue,
+                   byte[] pPattern,
+                   long pOffsetInBuffer,
+                   long pLengthInBuffer,
+                   boolean pBlockingFill)
   {
     if (!(pOffsetInBuffer + pLengthInBuffer <= getVolume()))
       throw new ClearCLException("Incompatible length");
 
-    getBackend().enqueueFillBuffer(mClearCLContext.getDefaultQueue()
-                                                  .getPeerPointer(),
-                                   getPeerPointer(),
-                                   pBlockingFill,
-                                   pOffsetInBuffer * getNativeType().getSizeInBytes(),
-                                   pLengthInBuffer * getNativeType().getSizeInBytes(),
-                                   pPattern);
-    notifyListenersOfChange(mClearCLContext.getDefaultQueue());
+    pClearCLQueue.profile("fillBuffer",
+                          null,
+                          pLengthInBuffer * getNativeType().getSizeInBytes(),
+                          getBackend().enqueueFillBuffer(pClearCLQueue.getPeerPointer(),
+                                                         getPeerPointer(),
+                                                         pBlockingFill,
+                                                         pOffsetInBuffer * getNativeType().getSizeInBytes(),
+                                                         pLengthInBuffer * getNativeType().getSizeInBytes(),
+                                                         pPattern,
+                                                         null,
+                                                         pClearCLQueue.isRecordingEvents()),
+                          false);
+    notifyListenersOfChange(pClearCLQueue);
   }
 
   /**
@@ -165,6 +305,38 @@ public class ClearCLBuffer extends ClearCLMemBase implements
                      long pOffsetInDstBuffer,
                      long pLengthInElements,
                      boolean pBlockingCopy)
+  {
+    copyTo(mClearCLContext.getDefaultQueue(),
+           pDstBuffer,
+           pOffsetInSrcBuffer,
+           pOffsetInDstBuffer,
+           pLengthInElements,
+           pBlockingCopy);
+  }
+
+  /**
+   * Copies a linear region of this OpenCl buffer into a linear region of same
+   * length of another OpenCl buffer.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pDstBuffer
+   *          destination buffer
+   * @param pOffsetInSrcBuffer
+   *          source buffer offset in elements
+   * @param pOffsetInDstBuffer
+   *          destination buffer offset in elements
+   * @param pLengthInElements
+   *          copy length in elements
+   * @param pBlockingCopy
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void copyTo(ClearCLQueue pClearCLQueue,
+                     ClearCLBuffer pDstBuffer,
+                     long pOffsetInSrcBuffer,
+                     long pOffsetInDstBuffer,
+                     long pLengthInElements,
+                     boolean pBlockingCopy)
   {
     if ((pOffsetInSrcBuffer + pLengthInElements)
         * getPixelSizeInBytes() > getSizeInBytes()
@@ -172,16 +344,20 @@ public class ClearCLBuffer extends ClearCLMemBase implements
            * getPixelSizeInBytes() > pDstBuffer.getSizeInBytes())
       throw new ClearCLException("Incompatible length");
 
-    getBackend().enqueueCopyBuffer(mClearCLContext.getDefaultQueue()
-                                                  .getPeerPointer(),
-                                   getPeerPointer(),
-                                   pDstBuffer.getPeerPointer(),
-                                   pBlockingCopy,
-                                   pOffsetInSrcBuffer
-                                                  * getNativeType().getSizeInBytes(),
-                                   pOffsetInDstBuffer * getNativeType().getSizeInBytes(),
-                                   pLengthInElements * getNativeType().getSizeInBytes());
-    pDstBuffer.notifyListenersOfChange(mClearCLContext.getDefaultQueue());
+    pClearCLQueue.profile("copyBuffer",
+                          TransferDirection.DeviceToDevice,
+                          pLengthInElements * getNativeType().getSizeInBytes(),
+                          getBackend().enqueueCopyBuffer(pClearCLQueue.getPeerPointer(),
+                                                         getPeerPointer(),
+                                                         pDstBuffer.getPeerPointer(),
+                                                         pBlockingCopy,
+                                                         pOffsetInSrcBuffer * getNativeType().getSizeInBytes(),
+                                                         pOffsetInDstBuffer * getNativeType().getSizeInBytes(),
+                                                         pLengthInElements * getNativeType().getSizeInBytes(),
+                                                         null,
+                                                         pClearCLQueue.isRecordingEvents()),
+                          false);
+    pDstBuffer.notifyListenersOfChange(pClearCLQueue);
   }
 
   /**
@@ -205,15 +381,56 @@ public class ClearCLBuffer extends ClearCLMemBase implements
                      long[] pRegion,
                      boolean pBlockingCopy)
   {
-    getBackend().enqueueCopyBufferRegion(mClearCLContext.getDefaultQueue()
-                                                        .getPeerPointer(),
-                                         getPeerPointer(),
-                                         pDstBuffer.getPeerPointer(),
-                                         pBlockingCopy,
-                                         Region3.origin(pOriginInSrcBuffer),
-                                         Region3.origin(pOriginInDstBuffer),
-                                         Region3.region(pRegion));
-    pDstBuffer.notifyListenersOfChange(mClearCLContext.getDefaultQueue());
+    copyTo(mClearCLContext.getDefaultQueue(),
+           pDstBuffer,
+           pOriginInSrcBuffer,
+           pOriginInDstBuffer,
+           pRegion,
+           pBlockingCopy);
+  }
+
+  /**
+   * Copies a 3D region of this OpenCl buffer into a 3D region of same
+   * dimensions of another OpenCl buffer.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pDstBuffer
+   *          destination buffer
+   * @param pOriginInSrcBuffer
+   *          source buffer origin
+   * @param pOriginInDstBuffer
+   *          destination buffer origin
+   * @param pRegion
+   *          region to copy
+   * @param pBlockingCopy
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void copyTo(ClearCLQueue pClearCLQueue,
+                     ClearCLBuffer pDstBuffer,
+                     long[] pOriginInSrcBuffer,
+                     long[] pOriginInDstBuffer,
+                     long[] pRegion,
+                     boolean pBlockingCopy)
+  {
+    pClearCLQueue.profile("copyBufferRegion",
+                          TransferDirection.DeviceToDevice,
+                          Region3.volume(Region3.region(pRegion)),
+                          getBackend().enqueueCopyBufferRegion(pClearCLQueue.getPeerPointer(),
+                                                               getPeerPointer(),
+                                                               pDstBuffer.getPeerPointer(),
+                                                               pBlockingCopy,
+                                                               Region3.origin(pOriginInSrcBuffer),
+                                                               Region3.origin(pOriginInDstBuffer),
+                                                               Region3.region(pRegion),
+                                                               0,
+                                                               0,
+                                                               0,
+                                                               0,
+                                                               null,
+                                                               pClearCLQueue.isRecordingEvents()),
+                          false);
+    pDstBuffer.notifyListenersOfChange(pClearCLQueue);
   }
 
   /**
@@ -254,16 +471,52 @@ public class ClearCLBuffer extends ClearCLMemBase implements
                      long[] pDstRegion,
                      boolean pBlockingCopy)
   {
-    getBackend().enqueueCopyBufferToImage(mClearCLContext.getDefaultQueue()
-                                                         .getPeerPointer(),
-                                          getPeerPointer(),
-                                          pDstImage.getPeerPointer(),
-                                          pBlockingCopy,
-                                          pOffsetInSrcBuffer
-                                                         * getNativeType().getSizeInBytes(),
-                                          Region3.origin(pDstOrigin),
-                                          Region3.region(pDstRegion));
-    pDstImage.notifyListenersOfChange(mClearCLContext.getDefaultQueue());
+    copyTo(mClearCLContext.getDefaultQueue(),
+           pDstImage,
+           pOffsetInSrcBuffer,
+           pDstOrigin,
+           pDstRegion,
+           pBlockingCopy);
+  }
+
+  /**
+   * Copies a 3D region of this OpenCl buffer into a 3D region of same
+   * dimensions of an OpenCl image.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pDstImage
+   *          destination image
+   * @param pOffsetInSrcBuffer
+   *          source buffer offset in elements
+   * @param pDstOrigin
+   *          destination origin
+   * @param pDstRegion
+   *          destination region
+   * @param pBlockingCopy
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void copyTo(ClearCLQueue pClearCLQueue,
+                     ClearCLImage pDstImage,
+                     long pOffsetInSrcBuffer,
+                     long[] pDstOrigin,
+                     long[] pDstRegion,
+                     boolean pBlockingCopy)
+  {
+    pClearCLQueue.profile("copyBufferToImage",
+                          TransferDirection.DeviceToDevice,
+                          pDstImage.getPixelSizeInBytes() * Region3.volume(Region3.region(pDstRegion)),
+                          getBackend().enqueueCopyBufferToImage(pClearCLQueue.getPeerPointer(),
+                                                                getPeerPointer(),
+                                                                pDstImage.getPeerPointer(),
+                                                                pBlockingCopy,
+                                                                pOffsetInSrcBuffer * getNativeType().getSizeInBytes(),
+                                                                Region3.origin(pDstOrigin),
+                                                                Region3.region(pDstRegion),
+                                                                null,
+                                                                pClearCLQueue.isRecordingEvents()),
+                          false);
+    pDstImage.notifyListenersOfChange(pClearCLQueue);
   }
 
   /**
@@ -276,6 +529,25 @@ public class ClearCLBuffer extends ClearCLMemBase implements
    */
   public void copyTo(ClearCLHostImageBuffer pClearCLHostImage,
                      boolean pBlockingCopy)
+  {
+    copyTo(mClearCLContext.getDefaultQueue(),
+           pClearCLHostImage,
+           pBlockingCopy);
+  }
+
+  /**
+   * Copies this image into a host image.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pClearCLHostImage
+   *          host image.
+   * @param pBlockingCopy
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void copyTo(ClearCLQueue pClearCLQueue,
+                     ClearCLHostImageBuffer pClearCLHostImage,
+                     boolean pBlockingCopy)
   {
     if (!getHostAccessType().isReadableFromHost())
       throw new ClearCLHostAccessException("Image not readable from host");
@@ -283,14 +555,19 @@ public class ClearCLBuffer extends ClearCLMemBase implements
     if (getSizeInBytes() != pClearCLHostImage.getSizeInBytes())
       throw new ClearCLException("Incompatible sizes");
 
-    getBackend().enqueueReadFromBuffer(mClearCLContext.getDefaultQueue()
-                                                      .getPeerPointer(),
-                                       getPeerPointer(),
-                                       pBlockingCopy,
-                                       0,
-                                       getSizeInBytes(),
-                                       getBackend().wrap(pClearCLHostImage.getContiguousMemory()));
-    pClearCLHostImage.notifyListenersOfChange(mClearCLContext.getDefaultQueue());
+    pClearCLQueue.profile("readFromBuffer",
+                          TransferDirection.DeviceToHost,
+                          getSizeInBytes(),
+                          getBackend().enqueueReadFromBuffer(pClearCLQueue.getPeerPointer(),
+                                                             getPeerPointer(),
+                                                             pBlockingCopy,
+                                                             0,
+                                                             getSizeInBytes(),
+                                                             getBackend().wrap(pClearCLHostImage.getContiguousMemory()),
+                                                             null,
+                                                             pClearCLQueue.isRecordingEvents()),
+                          false);
+    pClearCLHostImage.notifyListenersOfChange(pClearCLQueue);
   }
 
   /**
@@ -328,6 +605,34 @@ public class ClearCLBuffer extends ClearCLMemBase implements
                       long pOffsetInBuffer,
                       long pLengthInBuffer,
                       boolean pBlockingWrite)
+  {
+    writeTo(mClearCLContext.getDefaultQueue(),
+            pContiguousMemory,
+            pOffsetInBuffer,
+            pLengthInBuffer,
+            pBlockingWrite);
+  }
+
+  /**
+   * Writes the contents of this OpenCl buffer into a linear region of a CoreMem
+   * buffer.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pContiguousMemory
+   *          destination CoreMem buffer
+   * @param pOffsetInBuffer
+   *          offset in destination buffer in elements
+   * @param pLengthInBuffer
+   *          length to write in elements
+   * @param pBlockingWrite
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void writeTo(ClearCLQueue pClearCLQueue,
+                      ContiguousMemoryInterface pContiguousMemory,
+                      long pOffsetInBuffer,
+                      long pLengthInBuffer,
+                      boolean pBlockingWrite)
   {
     if (!getHostAccessType().isReadableFromHost())
       throw new ClearCLHostAccessException("Image not readable from host");
@@ -341,13 +646,18 @@ public class ClearCLBuffer extends ClearCLMemBase implements
     ClearCLPeerPointer lHostMemPointer =
                                        getBackend().wrap(pContiguousMemory);
 
-    getBackend().enqueueReadFromBuffer(mClearCLContext.getDefaultQueue()
-                                                      .getPeerPointer(),
-                                       getPeerPointer(),
-                                       pBlockingWrite,
-                                       pOffsetInBuffer * getNativeType().getSizeInBytes(),
-                                       pLengthInBuffer * getNativeType().getSizeInBytes(),
-                                       lHostMemPointer);
+    pClearCLQueue.profile("readFromBuffer",
+                          TransferDirection.DeviceToHost,
+                          pLengthInBuffer * getNativeType().getSizeInBytes(),
+                          getBackend().enqueueReadFromBuffer(pClearCLQueue.getPeerPointer(),
+                                                             getPeerPointer(),
+                                                             pBlockingWrite,
+                                                             pOffsetInBuffer * getNativeType().getSizeInBytes(),
+                                                             pLengthInBuffer * getNativeType().getSizeInBytes(),
+                                                             lHostMemPointer,
+                                                             null,
+                                                             pClearCLQueue.isRecordingEvents()),
+                          false);
   }
 
   /**
@@ -384,6 +694,33 @@ public class ClearCLBuffer extends ClearCLMemBase implements
                       long pOffsetInBuffer,
                       long pLengthInBuffer,
                       boolean pBlockingWrite)
+  {
+    writeTo(mClearCLContext.getDefaultQueue(),
+            pBuffer,
+            pOffsetInBuffer,
+            pLengthInBuffer,
+            pBlockingWrite);
+  }
+
+  /**
+   * Writes a linear region of a NIO buffer into this OpenCl buffer.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pBuffer
+   *          destination NIO buffer
+   * @param pOffsetInBuffer
+   *          offset in destination buffer in elements
+   * @param pLengthInBuffer
+   *          length to write in elements
+   * @param pBlockingWrite
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void writeTo(ClearCLQueue pClearCLQueue,
+                      Buffer pBuffer,
+                      long pOffsetInBuffer,
+                      long pLengthInBuffer,
+                      boolean pBlockingWrite)
   {
     if (!getHostAccessType().isReadableFromHost())
       throw new ClearCLHostAccessException("Image not readable from host");
@@ -396,13 +733,18 @@ public class ClearCLBuffer extends ClearCLMemBase implements
 
     ClearCLPeerPointer lHostMemPointer = getBackend().wrap(pBuffer);
 
-    getBackend().enqueueReadFromBuffer(mClearCLContext.getDefaultQueue()
-                                                      .getPeerPointer(),
-                                       getPeerPointer(),
-                                       pBlockingWrite,
-                                       pOffsetInBuffer * getNativeType().getSizeInBytes(),
-                                       pLengthInBuffer * getNativeType().getSizeInBytes(),
-                                       lHostMemPointer);
+    pClearCLQueue.profile("readFromBuffer",
+                          TransferDirection.DeviceToHost,
+                          pLengthInBuffer * getNativeType().getSizeInBytes(),
+                          getBackend().enqueueReadFromBuffer(pClearCLQueue.getPeerPointer(),
+                                                             getPeerPointer(),
+                                                             pBlockingWrite,
+                                                             pOffsetInBuffer * getNativeType().getSizeInBytes(),
+                                                             pLengthInBuffer * getNativeType().getSizeInBytes(),
+                                                             lHostMemPointer,
+                                                             null,
+                                                             pClearCLQueue.isRecordingEvents()),
+                          false);
   }
 
   /**
@@ -439,6 +781,33 @@ public class ClearCLBuffer extends ClearCLMemBase implements
                        long pOffsetInBuffer,
                        long pLengthInBuffer,
                        boolean pBlockingRead)
+  {
+    readFrom(mClearCLContext.getDefaultQueue(),
+             pContiguousMemory,
+             pOffsetInBuffer,
+             pLengthInBuffer,
+             pBlockingRead);
+  }
+
+  /**
+   * Reads from a linear region of a CoreMem buffer into this OpenCl buffer.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pContiguousMemory
+   *          source CoreMem buffer
+   * @param pOffsetInBuffer
+   *          offset in source buffer in elements
+   * @param pLengthInBuffer
+   *          length to read in elements
+   * @param pBlockingRead
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void readFrom(ClearCLQueue pClearCLQueue,
+                       ContiguousMemoryInterface pContiguousMemory,
+                       long pOffsetInBuffer,
+                       long pLengthInBuffer,
+                       boolean pBlockingRead)
   {
     if (!getHostAccessType().isWritableFromHost())
       throw new ClearCLHostAccessException("Image not writable from host");
@@ -452,14 +821,19 @@ public class ClearCLBuffer extends ClearCLMemBase implements
     ClearCLPeerPointer lHostMemPointer =
                                        getBackend().wrap(pContiguousMemory);
 
-    getBackend().enqueueWriteToBuffer(mClearCLContext.getDefaultQueue()
-                                                     .getPeerPointer(),
-                                      getPeerPointer(),
-                                      pBlockingRead,
-                                      pOffsetInBuffer * getNativeType().getSizeInBytes(),
-                                      pLengthInBuffer * getNativeType().getSizeInBytes(),
-                                      lHostMemPointer);
-    notifyListenersOfChange(mClearCLContext.getDefaultQueue());
+    pClearCLQueue.profile("writeToBuffer",
+                          TransferDirection.HostToDevice,
+                          pLengthInBuffer * getNativeType().getSizeInBytes(),
+                          getBackend().enqueueWriteToBuffer(pClearCLQueue.getPeerPointer(),
+                                                            getPeerPointer(),
+                                                            pBlockingRead,
+                                                            pOffsetInBuffer * getNativeType().getSizeInBytes(),
+                                                            pLengthInBuffer * getNativeType().getSizeInBytes(),
+                                                            lHostMemPointer,
+                                                            null,
+                                                            pClearCLQueue.isRecordingEvents()),
+                          false);
+    notifyListenersOfChange(pClearCLQueue);
   }
 
   /**
@@ -495,6 +869,33 @@ public class ClearCLBuffer extends ClearCLMemBase implements
                        long pOffsetInBuffer,
                        long pLengthInBuffer,
                        boolean pBlockingRead)
+  {
+    readFrom(mClearCLContext.getDefaultQueue(),
+             pBuffer,
+             pOffsetInBuffer,
+             pLengthInBuffer,
+             pBlockingRead);
+  }
+
+  /**
+   * Reads from a linear region of a NIO buffer into this OpenCl buffer.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pBuffer
+   *          source NIO buffer
+   * @param pOffsetInBuffer
+   *          offset in source buffer in elements
+   * @param pLengthInBuffer
+   *          length to read in elements
+   * @param pBlockingRead
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void readFrom(ClearCLQueue pClearCLQueue,
+                       Buffer pBuffer,
+                       long pOffsetInBuffer,
+                       long pLengthInBuffer,
+                       boolean pBlockingRead)
   {
     if (!getHostAccessType().isWritableFromHost())
       throw new ClearCLHostAccessException("Image not writable from host");
@@ -507,14 +908,19 @@ public class ClearCLBuffer extends ClearCLMemBase implements
 
     ClearCLPeerPointer lHostMemPointer = getBackend().wrap(pBuffer);
 
-    getBackend().enqueueWriteToBuffer(mClearCLContext.getDefaultQueue()
-                                                     .getPeerPointer(),
-                                      getPeerPointer(),
-                                      pBlockingRead,
-                                      pOffsetInBuffer * getNativeType().getSizeInBytes(),
-                                      pLengthInBuffer * getNativeType().getSizeInBytes(),
-                                      lHostMemPointer);
-    notifyListenersOfChange(mClearCLContext.getDefaultQueue());
+    pClearCLQueue.profile("writeToBuffer",
+                          TransferDirection.HostToDevice,
+                          pLengthInBuffer * getNativeType().getSizeInBytes(),
+                          getBackend().enqueueWriteToBuffer(pClearCLQueue.getPeerPointer(),
+                                                            getPeerPointer(),
+                                                            pBlockingRead,
+                                                            pOffsetInBuffer * getNativeType().getSizeInBytes(),
+                                                            pLengthInBuffer * getNativeType().getSizeInBytes(),
+                                                            lHostMemPointer,
+                                                            null,
+                                                            pClearCLQueue.isRecordingEvents()),
+                          false);
+    notifyListenersOfChange(pClearCLQueue);
   }
 
   /**
@@ -537,6 +943,38 @@ public class ClearCLBuffer extends ClearCLMemBase implements
                       long[] pDestinationOrigin,
                       long[] pRegion,
                       boolean pBlockingWrite)
+  {
+    writeTo(mClearCLContext.getDefaultQueue(),
+            pContiguousMemory,
+            pSourceOrigin,
+            pDestinationOrigin,
+            pRegion,
+            pBlockingWrite);
+  }
+
+  /**
+   * Writes to a 3D region of a CoreMem buffer into a 3D region of this OpenCl
+   * buffer.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pContiguousMemory
+   *          destination CoreMem buffer
+   * @param pSourceOrigin
+   *          origin in destination buffer
+   * @param pDestinationOrigin
+   *          origin in source buffer
+   * @param pRegion
+   *          region to write
+   * @param pBlockingWrite
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void writeTo(ClearCLQueue pClearCLQueue,
+                      ContiguousMemoryInterface pContiguousMemory,
+                      long[] pSourceOrigin,
+                      long[] pDestinationOrigin,
+                      long[] pRegion,
+                      boolean pBlockingWrite)
   {
     if (!getHostAccessType().isReadableFromHost())
       throw new ClearCLHostAccessException("Image not readable from host");
@@ -544,14 +982,23 @@ public class ClearCLBuffer extends ClearCLMemBase implements
     ClearCLPeerPointer lHostMemPointer =
                                        getBackend().wrap(pContiguousMemory);
 
-    getBackend().enqueueReadFromBufferRegion(mClearCLContext.getDefaultQueue()
-                                                            .getPeerPointer(),
-                                             getPeerPointer(),
-                                             pBlockingWrite,
-                                             Region3.origin(pSourceOrigin),
-                                             Region3.origin(pDestinationOrigin),
-                                             Region3.region(pRegion),
-                                             lHostMemPointer);
+    pClearCLQueue.profile("readFromBufferRegion",
+                          TransferDirection.DeviceToHost,
+                          Region3.volume(Region3.region(pRegion)),
+                          getBackend().enqueueReadFromBufferRegion(pClearCLQueue.getPeerPointer(),
+                                                                   getPeerPointer(),
+                                                                   pBlockingWrite,
+                                                                   Region3.origin(pSourceOrigin),
+                                                                   Region3.origin(pDestinationOrigin),
+                                                                   Region3.region(pRegion),
+                                                                   0,
+                                                                   0,
+                                                                   0,
+                                                                   0,
+                                                                   lHostMemPointer,
+                                                                   null,
+                                                                   pClearCLQueue.isRecordingEvents()),
+                          false);
   }
 
   /**
@@ -574,20 +1021,61 @@ public class ClearCLBuffer extends ClearCLMemBase implements
                       long[] pDestinationOrigin,
                       long[] pRegion,
                       boolean pBlockingWrite)
+  {
+    writeTo(mClearCLContext.getDefaultQueue(),
+            pBuffer,
+            pSourceOrigin,
+            pDestinationOrigin,
+            pRegion,
+            pBlockingWrite);
+  }
+
+  /**
+   * Writes to a 3D region of a NIO buffer into a 3D region of this OpenCl
+   * buffer.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pBuffer
+   *          destination NIO buffer
+   * @param pSourceOrigin
+   *          origin in source buffer
+   * @param pDestinationOrigin
+   *          origin in destination buffer
+   * @param pRegion
+   *          region to write
+   * @param pBlockingWrite
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void writeTo(ClearCLQueue pClearCLQueue,
+                      Buffer pBuffer,
+                      long[] pSourceOrigin,
+                      long[] pDestinationOrigin,
+                      long[] pRegion,
+                      boolean pBlockingWrite)
   {
     if (!getHostAccessType().isReadableFromHost())
       throw new ClearCLHostAccessException("Image not readable from host");
 
     ClearCLPeerPointer lHostMemPointer = getBackend().wrap(pBuffer);
 
-    getBackend().enqueueReadFromBufferRegion(mClearCLContext.getDefaultQueue()
-                                                            .getPeerPointer(),
-                                             getPeerPointer(),
-                                             pBlockingWrite,
-                                             Region3.origin(pSourceOrigin),
-                                             Region3.origin(pDestinationOrigin),
-                                             Region3.region(pRegion),
-                                             lHostMemPointer);
+    pClearCLQueue.profile("readFromBufferRegion",
+                          TransferDirection.DeviceToHost,
+                          Region3.volume(Region3.region(pRegion)),
+                          getBackend().enqueueReadFromBufferRegion(pClearCLQueue.getPeerPointer(),
+                                                                   getPeerPointer(),
+                                                                   pBlockingWrite,
+                                                                   Region3.origin(pSourceOrigin),
+                                                                   Region3.origin(pDestinationOrigin),
+                                                                   Region3.region(pRegion),
+                                                                   0,
+                                                                   0,
+                                                                   0,
+                                                                   0,
+                                                                   lHostMemPointer,
+                                                                   null,
+                                                                   pClearCLQueue.isRecordingEvents()),
+                          false);
   }
 
   /**
@@ -610,6 +1098,38 @@ public class ClearCLBuffer extends ClearCLMemBase implements
                        long[] pDestinationOrigin,
                        long[] pRegion,
                        boolean pBlockingRead)
+  {
+    readFrom(mClearCLContext.getDefaultQueue(),
+             pContiguousMemory,
+             pSourceOrigin,
+             pDestinationOrigin,
+             pRegion,
+             pBlockingRead);
+  }
+
+  /**
+   * Reads from a 3D region of a CoreMem buffer into a 3D region of this OpenCl
+   * buffer.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pContiguousMemory
+   *          source CoreMem buffer
+   * @param pSourceOrigin
+   *          origin in source buffer
+   * @param pDestinationOrigin
+   *          origin in destination buffer
+   * @param pRegion
+   *          region to read
+   * @param pBlockingRead
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void readFrom(ClearCLQueue pClearCLQueue,
+                       ContiguousMemoryInterface pContiguousMemory,
+                       long[] pSourceOrigin,
+                       long[] pDestinationOrigin,
+                       long[] pRegion,
+                       boolean pBlockingRead)
   {
     if (!getHostAccessType().isWritableFromHost())
       throw new ClearCLHostAccessException("Image not writable from host");
@@ -617,16 +1137,635 @@ public class ClearCLBuffer extends ClearCLMemBase implements
     ClearCLPeerPointer lHostMemPointer =
                                        getBackend().wrap(pContiguousMemory);
 
-    getBackend().enqueueWriteToBufferRegion(mClearCLContext.getDefaultQueue()
-                                                           .getPeerPointer(),
-                                            getPeerPointer(),
-                                            pBlockingRead,
-                                            Region3.origin(pDestinationOrigin),
-                                            Region3.origin(pSourceOrigin),
-                                            Region3.region(pRegion),
-                                            lHostMemPointer);
+    pClearCLQueue.profile("writeToBufferRegion",
+                          TransferDirection.HostToDevice,
+                          Region3.volume(Region3.region(pRegion)),
+                          getBackend().enqueueWriteToBufferRegion(pClearCLQueue.getPeerPointer(),
+                                                                  getPeerPointer(),
+                                                                  pBlockingRead,
+                                                                  Region3.origin(pDestinationOrigin),
+                                                                  Region3.origin(pSourceOrigin),
+                                                                  Region3.region(pRegion),
+                                                                  0,
+                                                                  0,
+                                                                  0,
+                                                                  0,
+                                                                  lHostMemPointer,
+                                                                  null,
+                                                                  pClearCLQueue.isRecordingEvents()),
+                          false);
+
+    notifyListenersOfChange(pClearCLQueue);
+  }
+
+  /**
+   * Copies a 3D rectangular region of this OpenCl buffer into a 3D rectangular
+   * region of another OpenCl buffer, with explicit row and slice pitches for
+   * both buffers. Origins, region widths and pitches are all in bytes, pitches
+   * equal to zero are computed from the region as in OpenCL.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pDstBuffer
+   *          destination buffer
+   * @param pSrcOrigin
+   *          source origin in bytes
+   * @param pSrcRowPitch
+   *          source row pitch in bytes
+   * @param pSrcSlicePitch
+   *          source slice pitch in bytes
+   * @param pDstOrigin
+   *          destination origin in bytes
+   * @param pDstRowPitch
+   *          destination row pitch in bytes
+   * @param pDstSlicePitch
+   *          destination slice pitch in bytes
+   * @param pRegion
+   *          region to copy in bytes
+   * @param pBlockingCopy
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void copyRectTo(ClearCLQueue pClearCLQueue,
+                         ClearCLBuffer pDstBuffer,
+                         long[] pSrcOrigin,
+                         long pSrcRowPitch,
+                         long pSrcSlicePitch,
+                         long[] pDstOrigin,
+                         long pDstRowPitch,
+                         long pDstSlicePitch,
+                         long[] pRegion,
+                         boolean pBlockingCopy)
+  {
+    checkRect(pSrcOrigin,
+              pSrcRowPitch,
+              pSrcSlicePitch,
+              pRegion,
+              getSizeInBytes());
+    checkRect(pDstOrigin,
+              pDstRowPitch,
+              pDstSlicePitch,
+              pRegion,
+              pDstBuffer.getSizeInBytes());
+
+    pClearCLQueue.profile("copyBufferRect",
+                          TransferDirection.DeviceToDevice,
+                          Region3.volume(Region3.region(pRegion)),
+                          getBackend().enqueueCopyBufferRegion(pClearCLQueue.getPeerPointer(),
+                                                               getPeerPointer(),
+                                                               pDstBuffer.getPeerPointer(),
+                                                               pBlockingCopy,
+                                                               Region3.origin(pSrcOrigin),
+                                                               Region3.origin(pDstOrigin),
+                                                               Region3.region(pRegion),
+                                                               pSrcRowPitch,
+                                                               pSrcSlicePitch,
+                                                               pDstRowPitch,
+                                                               pDstSlicePitch,
+                                                               null,
+                                                               pClearCLQueue.isRecordingEvents()),
+                          false);
+    pDstBuffer.notifyListenersOfChange(pClearCLQueue);
+  }
+
+  /**
+   * Writes a 3D rectangular region of this OpenCl buffer into a 3D rectangular
+   * region of a CoreMem buffer, with explicit row and slice pitches for both
+   * the OpenCl buffer and the CoreMem buffer. Origins, region widths and
+   * pitches are all in bytes, pitches equal to zero are computed from the
+   * region as in OpenCL.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pContiguousMemory
+   *          destination CoreMem buffer
+   * @param pBufferOrigin
+   *          origin in this buffer in bytes
+   * @param pBufferRowPitch
+   *          row pitch of this buffer in bytes
+   * @param pBufferSlicePitch
+   *          slice pitch of this buffer in bytes
+   * @param pHostOrigin
+   *          origin in CoreMem buffer in bytes
+   * @param pHostRowPitch
+   *          row pitch of CoreMem buffer in bytes
+   * @param pHostSlicePitch
+   *          slice pitch of CoreMem buffer in bytes
+   * @param pRegion
+   *          region to write in bytes
+   * @param pBlockingWrite
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void writeRectTo(ClearCLQueue pClearCLQueue,
+                          ContiguousMemoryInterface pContiguousMemory,
+                          long[] pBufferOrigin,
+                          long pBufferRowPitch,
+                          long pBufferSlicePitch,
+                          long[] pHostOrigin,
+                          long pHostRowPitch,
+                          long pHostSlicePitch,
+                          long[] pRegion,
+                          boolean pBlockingWrite)
+  {
+    ClearCLPeerPointer lEventPeerPointer =
+                                         writeRectTo(pClearCLQueue,
+                                                     pContiguousMemory,
+                                                     pBufferOrigin,
+                                                     pBufferRowPitch,
+                                                     pBufferSlicePitch,
+                                                     pHostOrigin,
+                                                     pHostRowPitch,
+                                                     pHostSlicePitch,
+                                                     pRegion,
+                                                     pBlockingWrite,
+                                                     null,
+                                                     pClearCLQueue.isRecordingEvents());
+    pClearCLQueue.profile("readFromBufferRect",
+                          TransferDirection.DeviceToHost,
+                          Region3.volume(Region3.region(pRegion)),
+                          lEventPeerPointer,
+                          false);
+  }
+
+  /**
+   * Enqueues a write of a 3D rectangular region of this OpenCl buffer into a
+   * 3D rectangular region of a CoreMem buffer, with explicit row and slice
+   * pitches, see
+   * {@link #writeRectTo(ClearCLQueue, ContiguousMemoryInterface, long[], long, long, long[], long, long, long[], boolean)}.
+   * This call is non-blocking: the CoreMem buffer must not be accessed before
+   * the returned event has completed, and the event must be closed once not
+   * needed anymore.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pContiguousMemory
+   *          destination CoreMem buffer
+   * @param pBufferOrigin
+   *          origin in this buffer in bytes
+   * @param pBufferRowPitch
+   *          row pitch of this buffer in bytes
+   * @param pBufferSlicePitch
+   *          slice pitch of this buffer in bytes
+   * @param pHostOrigin
+   *          origin in CoreMem buffer in bytes
+   * @param pHostRowPitch
+   *          row pitch of CoreMem buffer in bytes
+   * @param pHostSlicePitch
+   *          slice pitch of CoreMem buffer in bytes
+   * @param pRegion
+   *          region to write in bytes
+   * @param pWaitEvents
+   *          events to wait for before writing
+   * @return event associated to this write
+   */
+  public ClearCLEvent enqueueWriteRectTo(ClearCLQueue pClearCLQueue,
+                                         ContiguousMemoryInterface pContiguousMemory,
+                                         long[] pBufferOrigin,
+                                         long pBufferRowPitch,
+                                         long pBufferSlicePitch,
+                                         long[] pHostOrigin,
+                                         long pHostRowPitch,
+                                         long pHostSlicePitch,
+                                         long[] pRegion,
+                                         ClearCLEvent... pWaitEvents)
+  {
+    ClearCLPeerPointer lEventPeerPointer =
+                                         writeRectTo(pClearCLQueue,
+                                                     pContiguousMemory,
+                                                     pBufferOrigin,
+                                                     pBufferRowPitch,
+                                                     pBufferSlicePitch,
+                                                     pHostOrigin,
+                                                     pHostRowPitch,
+                                                     pHostSlicePitch,
+                                                     pRegion,
+                                                     false,
+                                                     ClearCLEvent.getPeerPointers(pWaitEvents),
+                                                     true);
+    pClearCLQueue.profile("readFromBufferRect",
+                          TransferDirection.DeviceToHost,
+                          Region3.volume(Region3.region(pRegion)),
+                          lEventPeerPointer,
+                          true);
+    return new ClearCLEvent(pClearCLQueue, lEventPeerPointer);
+  }
+
+  private ClearCLPeerPointer writeRectTo(ClearCLQueue pClearCLQueue,
+                                         ContiguousMemoryInterface pContiguousMemory,
+                                         long[] pBufferOrigin,
+                                         long pBufferRowPitch,
+                                         long pBufferSlicePitch,
+                                         long[] pHostOrigin,
+                                         long pHostRowPitch,
+                                         long pHostSlicePitch,
+                                         long[] pRegion,
+                                         boolean pBlockingWrite,
+                                         ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                         boolean pReturnEvent)
+  {
+    if (!getHostAccessType().isReadableFromHost())
+      throw new ClearCLHostAccessException("Buffer not readable from host");
 
-    notifyListenersOfChange(mClearCLContext.getDefaultQueue());
+    checkRect(pBufferOrigin,
+              pBufferRowPitch,
+              pBufferSlicePitch,
+              pRegion,
+              getSizeInBytes());
+    checkRect(pHostOrigin,
+              pHostRowPitch,
+              pHostSlicePitch,
+              pRegion,
+              pContiguousMemory.getSizeInBytes());
+
+    return getBackend().enqueueReadFromBufferRegion(pClearCLQueue.getPeerPointer(),
+                                                    getPeerPointer(),
+                                                    pBlockingWrite,
+                                                    Region3.origin(pBufferOrigin),
+                                                    Region3.origin(pHostOrigin),
+                                                    Region3.region(pRegion),
+                                                    pBufferRowPitch,
+                                                    pBufferSlicePitch,
+                                                    pHostRowPitch,
+                                                    pHostSlicePitch,
+                                                    getBackend().wrap(pContiguousMemory),
+                                                    pWaitEventPeerPointers,
+                                                    pReturnEvent);
+  }
+
+  /**
+   * Reads a 3D rectangular region of a CoreMem buffer into a 3D rectangular
+   * region of this OpenCl buffer, with explicit row and slice pitches for both
+   * the CoreMem buffer and the OpenCl buffer. Origins, region widths and
+   * pitches are all in bytes, pitches equal to zero are computed from the
+   * region as in OpenCL.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pContiguousMemory
+   *          source CoreMem buffer
+   * @param pHostOrigin
+   *          origin in CoreMem buffer in bytes
+   * @param pHostRowPitch
+   *          row pitch of CoreMem buffer in bytes
+   * @param pHostSlicePitch
+   *          slice pitch of CoreMem buffer in bytes
+   * @param pBufferOrigin
+   *          origin in this buffer in bytes
+   * @param pBufferRowPitch
+   *          row pitch of this buffer in bytes
+   * @param pBufferSlicePitch
+   *          slice pitch of this buffer in bytes
+   * @param pRegion
+   *          region to read in bytes
+   * @param pBlockingRead
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void readRectFrom(ClearCLQueue pClearCLQueue,
+                           ContiguousMemoryInterface pContiguousMemory,
+                           long[] pHostOrigin,
+                           long pHostRowPitch,
+                           long pHostSlicePitch,
+                           long[] pBufferOrigin,
+                           long pBufferRowPitch,
+                           long pBufferSlicePitch,
+                           long[] pRegion,
+                           boolean pBlockingRead)
+  {
+    ClearCLPeerPointer lEventPeerPointer =
+                                         readRectFrom(pClearCLQueue,
+                                                      pContiguousMemory,
+                                                      pHostOrigin,
+                                                      pHostRowPitch,
+                                                      pHostSlicePitch,
+                                                      pBufferOrigin,
+                                                      pBufferRowPitch,
+                                                      pBufferSlicePitch,
+                                                      pRegion,
+                                                      pBlockingRead,
+                                                      null,
+                                                      pClearCLQueue.isRecordingEvents());
+    pClearCLQueue.profile("writeToBufferRect",
+                          TransferDirection.HostToDevice,
+                          Region3.volume(Region3.region(pRegion)),
+                          lEventPeerPointer,
+                          false);
+    notifyListenersOfChange(pClearCLQueue);
+  }
+
+  /**
+   * Enqueues a read of a 3D rectangular region of a CoreMem buffer into a 3D
+   * rectangular region of this OpenCl buffer, with explicit row and slice
+   * pitches, see
+   * {@link #readRectFrom(ClearCLQueue, ContiguousMemoryInterface, long[], long, long, long[], long, long, long[], boolean)}.
+   * This call is non-blocking: the CoreMem buffer must not be modified before
+   * the returned event has completed, and the event must be closed once not
+   * needed anymore.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pContiguousMemory
+   *          source CoreMem buffer
+   * @param pHostOrigin
+   *          origin in CoreMem buffer in bytes
+   * @param pHostRowPitch
+   *          row pitch of CoreMem buffer in bytes
+   * @param pHostSlicePitch
+   *          slice pitch of CoreMem buffer in bytes
+   * @param pBufferOrigin
+   *          origin in this buffer in bytes
+   * @param pBufferRowPitch
+   *          row pitch of this buffer in bytes
+   * @param pBufferSlicePitch
+   *          slice pitch of this buffer in bytes
+   * @param pRegion
+   *          region to read in bytes
+   * @param pWaitEvents
+   *          events to wait for before reading
+   * @return event associated to this read
+   */
+  public ClearCLEvent enqueueReadRectFrom(ClearCLQueue pClearCLQueue,
+                                          ContiguousMemoryInterface pContiguousMemory,
+                                          long[] pHostOrigin,
+                                          long pHostRowPitch,
+                                          long pHostSlicePitch,
+                                          long[] pBufferOrigin,
+                                          long pBufferRowPitch,
+                                          long pBufferSlicePitch,
+                                          long[] pRegion,
+                                          ClearCLEvent... pWaitEvents)
+  {
+    ClearCLPeerPointer lEventPeerPointer =
+                                         readRectFrom(pClearCLQueue,
+                                                      pContiguousMemory,
+                                                      pHostOrigin,
+                                                      pHostRowPitch,
+                                                      pHostSlicePitch,
+                                                      pBufferOrigin,
+                                                      pBufferRowPitch,
+                                                      pBufferSlicePitch,
+                                                      pRegion,
+                                                      false,
+                                                      ClearCLEvent.getPeerPointers(pWaitEvents),
+                                                      true);
+    notifyListenersOfChange(pClearCLQueue);
+    pClearCLQueue.profile("writeToBufferRect",
+                          TransferDirection.HostToDevice,
+                          Region3.volume(Region3.region(pRegion)),
+                          lEventPeerPointer,
+                          true);
+    return new ClearCLEvent(pClearCLQueue, lEventPeerPointer);
+  }
+
+  private ClearCLPeerPointer readRectFrom(ClearCLQueue pClearCLQueue,
+                                          ContiguousMemoryInterface pContiguousMemory,
+                                          long[] pHostOrigin,
+                                          long pHostRowPitch,
+                                          long pHostSlicePitch,
+                                          long[] pBufferOrigin,
+                                          long pBufferRowPitch,
+                                          long pBufferSlicePitch,
+                                          long[] pRegion,
+                                          boolean pBlockingRead,
+                                          ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                          boolean pReturnEvent)
+  {
+    if (!getHostAccessType().isWritableFromHost())
+      throw new ClearCLHostAccessException("Buffer not writable from host");
+
+    checkRect(pHostOrigin,
+              pHostRowPitch,
+              pHostSlicePitch,
+              pRegion,
+              pContiguousMemory.getSizeInBytes());
+    checkRect(pBufferOrigin,
+              pBufferRowPitch,
+              pBufferSlicePitch,
+              pRegion,
+              getSizeInBytes());
+
+    return getBackend().enqueueWriteToBufferRegion(pClearCLQueue.getPeerPointer(),
+                                                   getPeerPointer(),
+                                                   pBlockingRead,
+                                                   Region3.origin(pBufferOrigin),
+                                                   Region3.origin(pHostOrigin),
+                                                   Region3.region(pRegion),
+                                                   pBufferRowPitch,
+                                                   pBufferSlicePitch,
+                                                   pHostRowPitch,
+                                                   pHostSlicePitch,
+                                                   getBackend().wrap(pContiguousMemory),
+                                                   pWaitEventPeerPointers,
+                                                   pReturnEvent);
+  }
+
+  /**
+   * Checks that a rectangular region with given origin and pitches fits in a
+   * buffer of given length. Pitches equal to zero are computed from the region
+   * as in OpenCL.
+   */
+  private static void checkRect(long[] pOrigin,
+                                long pRowPitch,
+                                long pSlicePitch,
+                                long[] pRegion,
+                                long pSizeInBytes)
+  {
+    long[] lOrigin = Region3.origin(pOrigin);
+    long[] lRegion = Region3.region(pRegion);
+
+    long lRowPitch = pRowPitch == 0 ? lRegion[0] : pRowPitch;
+    long lSlicePitch = pSlicePitch == 0 ? lRegion[1] * lRowPitch
+                                        : pSlicePitch;
+
+    if (lRowPitch < lRegion[0] || lSlicePitch < lRegion[1] * lRowPitch)
+      throw new ClearCLException(String.format("Incompatible pitches: row pitch=%d, slice pitch=%d",
+                                               lRowPitch,
+                                               lSlicePitch));
+
+    long lEndInBytes = (lOrigin[2] + lRegion[2] - 1) * lSlicePitch
+                       + (lOrigin[1] + lRegion[1] - 1) * lRowPitch
+                       + lOrigin[0]
+                       + lRegion[0];
+
+    if (lEndInBytes > pSizeInBytes)
+      throw new ClearCLException(String.format("Incompatible length: region ends at %d but length is %d",
+                                               lEndInBytes,
+                                               pSizeInBytes));
+  }
+
+  /**
+   * Enqueues a copy of this buffer into another buffer of same size on a given
+   * queue. This call is non-blocking, the returned event must be closed once
+   * not needed anymore.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pDstBuffer
+   *          destination buffer
+   * @param pWaitEvents
+   *          events to wait for before copying
+   * @return event associated to this copy
+   */
+  public ClearCLEvent enqueueCopyTo(ClearCLQueue pClearCLQueue,
+                                    ClearCLBuffer pDstBuffer,
+                                    ClearCLEvent... pWaitEvents)
+  {
+    if (getSizeInBytes() != pDstBuffer.getSizeInBytes())
+      throw new ClearCLException("Incompatible length");
+
+    ClearCLPeerPointer lEventPeerPointer =
+                                         getBackend().enqueueCopyBuffer(pClearCLQueue.getPeerPointer(),
+                                                                        getPeerPointer(),
+                                                                        pDstBuffer.getPeerPointer(),
+                                                                        false,
+                                                                        0,
+                                                                        0,
+                                                                        getSizeInBytes(),
+                                                                        ClearCLEvent.getPeerPointers(pWaitEvents),
+                                                                        true);
+    pDstBuffer.notifyListenersOfChange(pClearCLQueue);
+    pClearCLQueue.profile("copyBuffer",
+                          TransferDirection.DeviceToDevice,
+                          getSizeInBytes(),
+                          lEventPeerPointer,
+                          true);
+    return new ClearCLEvent(pClearCLQueue, lEventPeerPointer);
+  }
+
+  /**
+   * Enqueues a write of the contents of this buffer into a CoreMem buffer on a
+   * given queue. This call is non-blocking: the CoreMem buffer must not be
+   * accessed before the returned event has completed, and the event must be
+   * closed once not needed anymore.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pContiguousMemory
+   *          destination CoreMem buffer
+   * @param pWaitEvents
+   *          events to wait for before writing
+   * @return event associated to this write
+   */
+  public ClearCLEvent enqueueWriteTo(ClearCLQueue pClearCLQueue,
+                                     ContiguousMemoryInterface pContiguousMemory,
+                                     ClearCLEvent... pWaitEvents)
+  {
+    if (!getHostAccessType().isReadableFromHost())
+      throw new ClearCLHostAccessException("Buffer not readable from host");
+
+    if (getSizeInBytes() > pContiguousMemory.getSizeInBytes())
+      throw new ClearCLException("Incompatible length");
+
+    ClearCLPeerPointer lEventPeerPointer =
+                                         getBackend().enqueueReadFromBuffer(pClearCLQueue.getPeerPointer(),
+                                                                            getPeerPointer(),
+                                                                            false,
+                                                                            0,
+                                                                            getSizeInBytes(),
+                                                                            getBackend().wrap(pContiguousMemory),
+                                                                            ClearCLEvent.getPeerPointers(pWaitEvents),
+                                                                            true);
+    pClearCLQueue.profile("readFromBuffer",
+                          TransferDirection.DeviceToHost,
+                          getSizeInBytes(),
+                          lEventPeerPointer,
+                          true);
+    return new ClearCLEvent(pClearCLQueue, lEventPeerPointer);
+  }
+
+  /**
+   * Enqueues a read from a CoreMem buffer into this buffer on a given queue.
+   * This call is non-blocking: the CoreMem buffer must not be modified before
+   * the returned event has completed, and the event must be closed once not
+   * needed anymore.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pContiguousMemory
+   *          source CoreMem buffer
+   * @param pWaitEvents
+   *          events to wait for before reading
+   * @return event associated to this read
+   */
+  public ClearCLEvent enqueueReadFrom(ClearCLQueue pClearCLQueue,
+                                      ContiguousMemoryInterface pContiguousMemory,
+                                      ClearCLEvent... pWaitEvents)
+  {
+    if (!getHostAccessType().isWritableFromHost())
+      throw new ClearCLHostAccessException("Buffer not writable from host");
+
+    if (getSizeInBytes() > pContiguousMemory.getSizeInBytes())
+      throw new ClearCLException("Incompatible length");
+
+    ClearCLPeerPointer lEventPeerPointer =
+                                         getBackend().enqueueWriteToBuffer(pClearCLQueue.getPeerPointer(),
+                                                                           getPeerPointer(),
+                                                                           false,
+                                                                           0,
+                                                                           getSizeInBytes(),
+                                                                           getBackend().wrap(pContiguousMemory),
+                                                                           ClearCLEvent.getPeerPointers(pWaitEvents),
+                                                                           true);
+    notifyListenersOfChange(pClearCLQueue);
+    pClearCLQueue.profile("writeToBuffer",
+                          TransferDirection.HostToDevice,
+                          getSizeInBytes(),
+                          lEventPeerPointer,
+                          true);
+    return new ClearCLEvent(pClearCLQueue, lEventPeerPointer);
+  }
+
+  /**
+   * Copies this buffer into another buffer without blocking, using the
+   * default queue.
+   * 
+   * @param pDstBuffer
+   *          destination buffer
+   * @return future completed with the destination buffer once the copy has
+   *         finished
+   */
+  public CompletableFuture<ClearCLBuffer> copyToAsync(ClearCLBuffer pDstBuffer)
+  {
+    ClearCLQueue lQueue = mClearCLContext.getDefaultQueue();
+    return ClearCLEvent.toCompletableFuture(enqueueCopyTo(lQueue,
+                                                          pDstBuffer),
+                                            pDstBuffer,
+                                            true);
+  }
+
+  /**
+   * Writes the contents of this buffer into a CoreMem buffer without
+   * blocking, using the default queue. The CoreMem buffer must not be accessed
+   * before the returned future has completed.
+   * 
+   * @param pContiguousMemory
+   *          destination CoreMem buffer
+   * @return future completed with the destination CoreMem buffer once the
+   *         write has finished
+   */
+  public CompletableFuture<ContiguousMemoryInterface> writeToAsync(ContiguousMemoryInterface pContiguousMemory)
+  {
+    ClearCLQueue lQueue = mClearCLContext.getDefaultQueue();
+    return ClearCLEvent.toCompletableFuture(enqueueWriteTo(lQueue,
+                                                           pContiguousMemory),
+                                            pContiguousMemory,
+                                            true);
+  }
+
+  /**
+   * Reads the contents of a CoreMem buffer into this buffer without blocking,
+   * using the default queue. The CoreMem buffer must not be modified before the
+   * returned future has completed.
+   * 
+   * @param pContiguousMemory
+   *          source CoreMem buffer
+   * @return future completed with this buffer once the read has finished
+   */
+  public CompletableFuture<ClearCLBuffer> readFromAsync(ContiguousMemoryInterface pContiguousMemory)
+  {
+    ClearCLQueue lQueue = mClearCLContext.getDefaultQueue();
+    return ClearCLEvent.toCompletableFuture(enqueueReadFrom(lQueue,
+                                                            pContiguousMemory),
+                                            this,
+                                            true);
   }
 
   /**
@@ -649,22 +1788,204 @@ public class ClearCLBuffer extends ClearCLMemBase implements
                        long[] pDestinationOrigin,
                        long[] pRegion,
                        boolean pBlockingRead)
+  {
+    readFrom(mClearCLContext.getDefaultQueue(),
+             pBuffer,
+             pSourceOrigin,
+             pDestinationOrigin,
+             pRegion,
+             pBlockingRead);
+  }
+
+  /**
+   * Reads from a 3D region of a NIO buffer into a 3D region of this OpenCl
+   * buffer.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pBuffer
+   *          source NIO buffer
+   * @param pSourceOrigin
+   *          origin in source buffer
+   * @param pDestinationOrigin
+   *          origin in destination buffer
+   * @param pRegion
+   *          region to read
+   * @param pBlockingRead
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void readFrom(ClearCLQueue pClearCLQueue,
+                       Buffer pBuffer,
+                       long[] pSourceOrigin,
+                       long[] pDestinationOrigin,
+                       long[] pRegion,
+                       boolean pBlockingRead)
   {
     if (!getHostAccessType().isWritableFromHost())
       throw new ClearCLHostAccessException("Image not writable from host");
 
     ClearCLPeerPointer lHostMemPointer = getBackend().wrap(pBuffer);
 
-    getBackend().enqueueWriteToBufferRegion(mClearCLContext.getDefaultQueue()
-                                                           .getPeerPointer(),
-                                            getPeerPointer(),
-                                            pBlockingRead,
-                                            Region3.origin(pDestinationOrigin),
-                                            Region3.origin(pSourceOrigin),
-                                            Region3.region(pRegion),
-                                            lHostMemPointer);
+    pClearCLQueue.profile("writeToBufferRegion",
+                          TransferDirection.HostToDevice,
+                          Region3.volume(Region3.region(pRegion)),
+                          getBackend().enqueueWriteToBufferRegion(pClearCLQueue.getPeerPointer(),
+                                                                  getPeerPointer(),
+                                                                  pBlockingRead,
+                                                                  Region3.origin(pDestinationOrigin),
+                                                                  Region3.origin(pSourceOrigin),
+                                                                  Region3.region(pRegion),
+                                                                  0,
+                                                                  0,
+                                                                  0,
+                                                                  0,
+                                                                  lHostMemPointer,
+                                                                  null,
+                                                                  pClearCLQueue.isRecordingEvents()),
+                          false);
+
+    notifyListenersOfChange(pClearCLQueue);
+  }
+
+  /**
+   * Maps this buffer into host memory using the default queue, and returns a
+   * CoreMem view of the mapped memory. This call blocks until the buffer is
+   * mapped. For buffers allocated with MemAllocMode.AllocateHostPointer or
+   * UseHostPointer, and on devices that share memory with the host, no copy is
+   * involved. The buffer must not be used by kernels while mapped, and the
+   * returned memory must not be freed but unmapped.
+   * 
+   * @param pMapAccessType
+   *          host access to map the buffer for
+   * @return mapped memory
+   */
+  public ContiguousMemoryInterface map(HostAccessType pMapAccessType)
+  {
+    return map(mClearCLContext.getDefaultQueue(),
+               pMapAccessType,
+               0,
+               getSizeInBytes());
+  }
+
+  /**
+   * Maps a region of this buffer into host memory on a given queue, and
+   * returns a CoreMem view of the mapped memory. This call blocks until the
+   * region is mapped. The returned memory must not be freed but unmapped.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pMapAccessType
+   *          host access to map the region for
+   * @param pOffsetInBytes
+   *          offset of region in bytes
+   * @param pLengthInBytes
+   *          length of region in bytes
+   * @param pWaitEvents
+   *          events to wait for before mapping
+   * @return mapped memory
+   */
+  public ContiguousMemoryInterface map(ClearCLQueue pClearCLQueue,
+                                       HostAccessType pMapAccessType,
+                                       long pOffsetInBytes,
+                                       long pLengthInBytes,
+                                       ClearCLEvent... pWaitEvents)
+  {
+    if (pMapAccessType.isReadableFromHost()
+        && !getHostAccessType().isReadableFromHost())
+      throw new ClearCLHostAccessException("Buffer not readable from host");
+
+    if (pMapAccessType.isWritableFromHost()
+        && !getHostAccessType().isWritableFromHost())
+      throw new ClearCLHostAccessException("Buffer not writable from host");
+
+    if (pOffsetInBytes < 0
+        || pOffsetInBytes + pLengthInBytes > getSizeInBytes())
+      throw new ClearCLException("Incompatible length");
+
+    return getBackend().enqueueMapBuffer(pClearCLQueue.getPeerPointer(),
+                                         getPeerPointer(),
+                                         pMapAccessType,
+                                         pOffsetInBytes,
+                                         pLengthInBytes,
+                                         ClearCLEvent.getPeerPointers(pWaitEvents));
+  }
+
+  /**
+   * Unmaps memory previously mapped from this buffer, using the default queue.
+   * 
+   * @param pMappedMemory
+   *          mapped memory
+   * @param pBlockingUnmap
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void unmap(ContiguousMemoryInterface pMappedMemory,
+                    boolean pBlockingUnmap)
+  {
+    unmap(mClearCLContext.getDefaultQueue(),
+          pMappedMemory,
+          pBlockingUnmap);
+  }
+
+  /**
+   * Unmaps memory previously mapped from this buffer, using the default queue.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pMappedMemory
+   *          mapped memory
+   * @param pBlockingUnmap
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void unmap(ClearCLQueue pClearCLQueue,
+                    ContiguousMemoryInterface pMappedMemory,
+                    boolean pBlockingUnmap)
+  {
+    pClearCLQueue.profile("unmapBuffer",
+                          null,
+                          pMappedMemory.getSizeInBytes(),
+                          getBackend().enqueueUnmap(pClearCLQueue.getPeerPointer(),
+                                                    getPeerPointer(),
+                                                    pMappedMemory,
+                                                    pBlockingUnmap,
+                                                    null,
+                                                    pClearCLQueue.isRecordingEvents()),
+                          false);
+    if (getHostAccessType().isWritableFromHost())
+      notifyListenersOfChange(pClearCLQueue);
+  }
 
-    notifyListenersOfChange(mClearCLContext.getDefaultQueue());
+  /**
+   * Enqueues the unmapping of memory previously mapped from this buffer on a
+   * given queue. The mapped memory must not be accessed anymore, and the
+   * returned event must be closed once not needed anymore.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pMappedMemory
+   *          mapped memory
+   * @param pWaitEvents
+   *          events to wait for before unmapping
+   * @return event associated to this unmap
+   */
+  public ClearCLEvent enqueueUnmap(ClearCLQueue pClearCLQueue,
+                                   ContiguousMemoryInterface pMappedMemory,
+                                   ClearCLEvent... pWaitEvents)
+  {
+    ClearCLPeerPointer lEventPeerPointer =
+                                         getBackend().enqueueUnmap(pClearCLQueue.getPeerPointer(),
+                                                                   getPeerPointer(),
+                                                                   pMappedMemory,
+                                                                   false,
+                                                                   ClearCLEvent.getPeerPointers(pWaitEvents),
+                                                                   true);
+    if (getHostAccessType().isWritableFromHost())
+      notifyListenersOfChange(pClearCLQueue);
+    pClearCLQueue.profile("unmapBuffer",
+                          null,
+                          pMappedMemory.getSizeInBytes(),
+                          lEventPeerPointer,
+                          true);
+    return new ClearCLEvent(pClearCLQueue, lEventPeerPointer);
   }
 
   /* (non-Javadoc)
@@ -743,11 +2064,53 @@ public class ClearCLBuffer extends ClearCLMemBase implements
   @Override
   public void close()
   {
-    if (getPeerPointer() != null)
+    // the decision to release is taken atomically so that concurrent closes,
+    // or a close racing with the release of the last sub-buffer, release the
+    // buffer exactly once:
+    synchronized (this)
+    {
+      if (getPeerPointer() == null || mClosePending || mClosed)
+        return;
+
+      if (mNumberOfSubBuffers > 0)
+      {
+        mClosePending = true;
+        return;
+      }
+      mClosed = true;
+    }
+    release();
+  }
+
+  private void release()
+  {
+    if (mParentBuffer != null)
     {
       getBackend().releaseBuffer(getPeerPointer());
       setPeerPointer(null);
+      mParentBuffer.releaseSubBuffer();
+    }
+    else
+    {
+      mClearCLContext.getMemoryAllocator()
+                     .releaseBuffer(getPeerPointer());
+      setPeerPointer(null);
+      mClearCLContext.countLiveBuffers(-1, getSizeInBytes());
+    }
+  }
+
+  private void releaseSubBuffer()
+  {
+    boolean lRelease;
+    synchronized (this)
+    {
+      mNumberOfSubBuffers--;
+      lRelease = mNumberOfSubBuffers == 0 && mClosePending && !mClosed;
+      if (lRelease)
+        mClosed = true;
     }
+    if (lRelease)
+      release();
   }
 
 }
@@ -1,6 +1,14 @@
 package clearcl;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import clearcl.abs.ClearCLBase;
 import clearcl.enums.HostAccessType;
@@ -10,6 +18,10 @@ import clearcl.enums.ImageType;
 import clearcl.enums.KernelAccessType;
 import clearcl.enums.MemAllocMode;
 import clearcl.exceptions.OpenCLException;
+import clearcl.memory.ClearCLDirectMemoryAllocator;
+import clearcl.memory.ClearCLMemoryAllocatorInterface;
+import clearcl.metrics.ClearCLMetrics;
+import clearcl.metrics.Counter;
 import coremem.enums.NativeTypeEnum;
 
 /**
@@ -24,6 +36,38 @@ public class ClearCLContext extends ClearCLBase
   private final ClearCLDevice mDevice;
 
   private final ClearCLQueue mDefaultQueue;
+  private final ArrayList<ClearCLQueue> mQueues = new ArrayList<>();
+
+  private volatile ClearCLMemoryAllocatorInterface mMemoryAllocator;
+
+  private volatile ExecutorService mProgramBuilderExecutor;
+
+  private static final AtomicInteger sContextIndexCounter =
+                                                          new AtomicInteger();
+  private final int mContextIndex;
+  private final Counter mLiveBuffersCounter;
+  private final Counter mLiveBuffersBytesCounter;
+  private final Counter mLiveImagesCounter;
+  private final Counter mLiveImagesBytesCounter;
+
+  private final HashMap<String, SharedProgram> mSharedProgramsMap =
+                                                                 new HashMap<>();
+  private final HashMap<ClearCLPeerPointer, SharedProgram> mPeerPointerToSharedProgramMap =
+                                                                                         new HashMap<>();
+
+  private static class SharedProgram
+  {
+    final String mKey;
+    final ClearCLPeerPointer mProgramPeerPointer;
+    int mReferenceCount;
+
+    SharedProgram(String pKey, ClearCLPeerPointer pProgramPeerPointer)
+    {
+      mKey = pKey;
+      mProgramPeerPointer = pProgramPeerPointer;
+      mReferenceCount = 1;
+    }
+  }
 
   /**
    * Construction of this object is done from within a ClearClDevice.
@@ -32,15 +76,33 @@ public class ClearCLContext extends ClearCLBase
    *          device
    * @param pContextPointer
    *          context peer pointer
-   * @param pContextPointer2
+   * @param pProfiling
+   *          true -> default queue records profiling information
    */
   ClearCLContext(final ClearCLDevice pClearCLDevice,
-                 ClearCLPeerPointer pContextPointer)
+                 ClearCLPeerPointer pContextPointer,
+                 boolean pProfiling)
   {
     super(pClearCLDevice.getBackend(), pContextPointer);
     mDevice = pClearCLDevice;
-
-    mDefaultQueue = createQueue();
+    mMemoryAllocator = new ClearCLDirectMemoryAllocator(this);
+
+    mContextIndex = sContextIndexCounter.getAndIncrement();
+    String lMetricsPrefix = getMetricsPrefix();
+    mLiveBuffersCounter =
+                        ClearCLMetrics.getCounter(lMetricsPrefix
+                                                  + "buffers.live");
+    mLiveBuffersBytesCounter =
+                             ClearCLMetrics.getCounter(lMetricsPrefix
+                                                       + "buffers.bytes");
+    mLiveImagesCounter =
+                       ClearCLMetrics.getCounter(lMetricsPrefix
+                                                 + "images.live");
+    mLiveImagesBytesCounter =
+                            ClearCLMetrics.getCounter(lMetricsPrefix
+                                                      + "images.bytes");
+
+    mDefaultQueue = createQueue(pProfiling);
   }
 
   /**
@@ -69,17 +131,80 @@ public class ClearCLContext extends ClearCLBase
    * @return queue
    */
   public ClearCLQueue createQueue()
+  {
+    return createQueue(false);
+  }
+
+  /**
+   * Creates a queue, optionally with profiling enabled. A profiling queue
+   * records device timestamps for every kernel execution and transfer enqueued
+   * on it, see {@link ClearCLQueue#getProfiler()}.
+   * 
+   * @param pProfiling
+   *          true -> profiling enabled
+   * @return queue
+   */
+  public ClearCLQueue createQueue(boolean pProfiling)
+  {
+    return createQueue(true, pProfiling);
+  }
+
+  /**
+   * Creates a queue, optionally out-of-order and with profiling enabled.
+   * Out-of-order queues let the device execute independent commands
+   * concurrently, for example overlapping transfers and kernel execution on
+   * devices with separate copy engines. Commands enqueued on such a queue
+   * must express their dependencies with events (see the enqueue* methods of
+   * buffers, images and kernels) or barriers (see
+   * {@link ClearCLQueue#enqueueBarrier(ClearCLEvent...)}). Devices that do not
+   * support out-of-order execution fail to create such queues. Alternatively,
+   * several in-order queues can be used concurrently.
+   * 
+   * @param pInOrder
+   *          true -> in-order queue, false -> out-of-order queue
+   * @param pProfiling
+   *          true -> profiling enabled
+   * @return queue
+   */
+  public ClearCLQueue createQueue(boolean pInOrder, boolean pProfiling)
   {
     final ClearCLPeerPointer lQueuePointer =
                                            getBackend().getQueuePeerPointer(getDevice().getPeerPointer(),
                                                                             getPeerPointer(),
-                                                                            true);
-    final ClearCLQueue lClearCLQueue =
-                                     new ClearCLQueue(this,
-                                                      lQueuePointer);
+                                                                            pInOrder,
+                                                                            pProfiling);
+    final ClearCLQueue lClearCLQueue = new ClearCLQueue(this,
+                                                        lQueuePointer,
+                                                        pInOrder,
+                                                        pProfiling);
+    synchronized (mQueues)
+    {
+      mQueues.add(lClearCLQueue);
+    }
     return lClearCLQueue;
   }
 
+  /**
+   * Returns the queues of this context that have not been closed yet.
+   * 
+   * @return list of open queues
+   */
+  public List<ClearCLQueue> getQueues()
+  {
+    synchronized (mQueues)
+    {
+      return new ArrayList<>(mQueues);
+    }
+  }
+
+  void unregisterQueue(ClearCLQueue pClearCLQueue)
+  {
+    synchronized (mQueues)
+    {
+      mQueues.remove(pClearCLQueue);
+    }
+  }
+
   /**
    * Creates an OpenCL buffer with a given memory allocation mode, host and
    * kernel access and a template image to match for dimensions, data type and
@@ -246,12 +371,10 @@ public class ClearCLContext extends ClearCLBase
       throw new OpenCLException(-61);
 
     final ClearCLPeerPointer lBufferPointer =
-                                            getBackend().getBufferPeerPointer(getDevice().getPeerPointer(),
-                                                                              getPeerPointer(),
-                                                                              pMemAllocMode,
-                                                                              pHostAccessType,
-                                                                              pKernelAccessType,
-                                                                              lBufferSizeInBytes);
+                                            mMemoryAllocator.allocateBuffer(pMemAllocMode,
+                                                                            pHostAccessType,
+                                                                            pKernelAccessType,
+                                                                            lBufferSizeInBytes);
 
     final ClearCLBuffer lClearCLBuffer =
                                        new ClearCLBuffer(this,
@@ -262,6 +385,7 @@ public class ClearCLContext extends ClearCLBase
                                                          pNumberOfChannels,
                                                          pNativeType,
                                                          pDimensions);
+    countLiveBuffers(1, lBufferSizeInBytes);
     return lClearCLBuffer;
   }
 
@@ -442,15 +566,13 @@ public class ClearCLContext extends ClearCLBase
                                ImageType.fromDimensions(pDimensions);
 
     final ClearCLPeerPointer lImage =
-                                    getBackend().getImagePeerPointer(getDevice().getPeerPointer(),
-                                                                     getPeerPointer(),
-                                                                     pMemAllocMode,
-                                                                     pHostAccessType,
-                                                                     pKernelAccessType,
-                                                                     lImageType,
-                                                                     pImageChannelOrder,
-                                                                     pImageChannelType,
-                                                                     pDimensions);
+                                    mMemoryAllocator.allocateImage(pMemAllocMode,
+                                                                   pHostAccessType,
+                                                                   pKernelAccessType,
+                                                                   lImageType,
+                                                                   pImageChannelOrder,
+                                                                   pImageChannelType,
+                                                                   pDimensions);
 
     final ClearCLImage lClearCLImage = new ClearCLImage(this,
                                                         lImage,
@@ -461,10 +583,39 @@ public class ClearCLContext extends ClearCLBase
                                                         pImageChannelOrder,
                                                         pImageChannelType,
                                                         pDimensions);
+    countLiveImages(1, lClearCLImage.getSizeInBytes());
 
     return lClearCLImage;
   }
 
+  /**
+   * Returns the memory allocator used to allocate and release the memory
+   * objects of buffers and images created from this context.
+   * 
+   * @return memory allocator
+   */
+  public ClearCLMemoryAllocatorInterface getMemoryAllocator()
+  {
+    return mMemoryAllocator;
+  }
+
+  /**
+   * Sets the memory allocator used to allocate and release the memory objects
+   * of buffers and images created from this context, for example a
+   * ClearCLPooledMemoryAllocator. The previous allocator is closed, memory
+   * objects still in use are released directly once closed.
+   * 
+   * @param pMemoryAllocator
+   *          memory allocator
+   */
+  public void setMemoryAllocator(ClearCLMemoryAllocatorInterface pMemoryAllocator)
+  {
+    ClearCLMemoryAllocatorInterface lPreviousMemoryAllocator =
+                                                            mMemoryAllocator;
+    mMemoryAllocator = pMemoryAllocator;
+    lPreviousMemoryAllocator.close();
+  }
+
   /**
    * Creates a program, with optional source code
    * 
@@ -507,6 +658,157 @@ public class ClearCLContext extends ClearCLBase
     return lClearCLProgram;
   }
 
+  /**
+   * Returns the executor used to build programs asynchronously. Independent
+   * programs are built concurrently, up to the number of available
+   * processors. The threads are daemon threads created on demand and
+   * terminated when this context is closed.
+   * 
+   * @return program builder executor
+   */
+  public ExecutorService getProgramBuilderExecutor()
+  {
+    if (mProgramBuilderExecutor == null)
+    {
+      synchronized (this)
+      {
+        if (mProgramBuilderExecutor == null)
+        {
+          final AtomicInteger lThreadCounter = new AtomicInteger();
+          final int lNumberOfThreads =
+                                     Runtime.getRuntime()
+                                            .availableProcessors();
+          final ThreadPoolExecutor lThreadPoolExecutor =
+                                                       new ThreadPoolExecutor(lNumberOfThreads,
+                                                                              lNumberOfThreads,
+                                                                              10,
+                                                                              TimeUnit.SECONDS,
+                                                                              new LinkedBlockingQueue<>(),
+                                                                              (r) -> newProgramBuilderThread(r,
+                                                                                                             lThreadCounter.incrementAndGet()));
+          lThreadPoolExecutor.allowCoreThreadTimeOut(true);
+          mProgramBuilderExecutor = lThreadPoolExecutor;
+        }
+      }
+    }
+    return mProgramBuilderExecutor;
+  }
+
+  private static Thread newProgramBuilderThread(Runnable pRunnable,
+                                                int pIndex)
+  {
+    Thread lThread = new Thread(pRunnable,
+                                "ClearCLProgramBuilder-" + pIndex);
+    lThread.setDaemon(true);
+    return lThread;
+  }
+
+  /**
+   * Returns the number of distinct built programs currently shared between
+   * ClearCLProgram instances of this context.
+   * 
+   * @return number of shared programs
+   */
+  public int getNumberOfSharedPrograms()
+  {
+    synchronized (mSharedProgramsMap)
+    {
+      return mSharedProgramsMap.size();
+    }
+  }
+
+  /**
+   * Returns the peer pointer of an already built program for identical build
+   * options and complete source code (with defines and includes), or null if
+   * there is none. The reference count of the shared program is incremented,
+   * the program must be released with
+   * {@link #releaseProgram(ClearCLPeerPointer)}.
+   * 
+   * @param pOptions
+   *          build options
+   * @param pSourceCode
+   *          complete source code
+   * @return program peer pointer or null
+   */
+  ClearCLPeerPointer acquireProgram(String pOptions,
+                                    String pSourceCode)
+  {
+    synchronized (mSharedProgramsMap)
+    {
+      SharedProgram lSharedProgram =
+                                   mSharedProgramsMap.get(getProgramKey(pOptions,
+                                                                        pSourceCode));
+      if (lSharedProgram == null)
+        return null;
+
+      lSharedProgram.mReferenceCount++;
+      return lSharedProgram.mProgramPeerPointer;
+    }
+  }
+
+  /**
+   * Registers a successfully built program so that it can be shared by other
+   * programs with identical build options and source code. If an identical
+   * program is already registered, nothing happens.
+   * 
+   * @param pOptions
+   *          build options
+   * @param pSourceCode
+   *          complete source code
+   * @param pProgramPeerPointer
+   *          program peer pointer
+   */
+  void registerProgram(String pOptions,
+                       String pSourceCode,
+                       ClearCLPeerPointer pProgramPeerPointer)
+  {
+    String lKey = getProgramKey(pOptions, pSourceCode);
+    synchronized (mSharedProgramsMap)
+    {
+      if (mSharedProgramsMap.containsKey(lKey)
+          || mPeerPointerToSharedProgramMap.containsKey(pProgramPeerPointer))
+        return;
+
+      SharedProgram lSharedProgram = new SharedProgram(lKey,
+                                                       pProgramPeerPointer);
+      mSharedProgramsMap.put(lKey, lSharedProgram);
+      mPeerPointerToSharedProgramMap.put(pProgramPeerPointer,
+                                         lSharedProgram);
+    }
+  }
+
+  /**
+   * Releases a program. Shared programs are only released once no program
+   * uses them anymore.
+   * 
+   * @param pProgramPeerPointer
+   *          program peer pointer
+   */
+  void releaseProgram(ClearCLPeerPointer pProgramPeerPointer)
+  {
+    synchronized (mSharedProgramsMap)
+    {
+      SharedProgram lSharedProgram =
+                                   mPeerPointerToSharedProgramMap.get(pProgramPeerPointer);
+      if (lSharedProgram != null)
+      {
+        lSharedProgram.mReferenceCount--;
+        if (lSharedProgram.mReferenceCount > 0)
+          return;
+
+        mSharedProgramsMap.remove(lSharedProgram.mKey);
+        mPeerPointerToSharedProgramMap.remove(pProgramPeerPointer);
+      }
+    }
+    getBackend().releaseProgram(pProgramPeerPointer);
+  }
+
+  private static String getProgramKey(String pOptions,
+                                      String pSourceCode)
+  {
+    return pOptions + '\0' + pSourceCode;
+  }
+
   /**
    * Returns the boolean flag that decides whether to print a message with a
    * stack trace every time a buffer or image is allocated. this is practical to
@@ -530,6 +832,45 @@ public class ClearCLContext extends ClearCLBase
     mDebugNotifyAllocation = pDebugNotifyAllocation;
   }
 
+  /**
+   * Returns the index of this context, used to name its metrics (see
+   * {@link ClearCLMetrics}).
+   * 
+   * @return context index
+   */
+  public int getContextIndex()
+  {
+    return mContextIndex;
+  }
+
+  /**
+   * Updates the live buffer metrics of this context.
+   * 
+   * @param pCount
+   *          +1 for an allocated buffer, -1 for a released buffer
+   * @param pSizeInBytes
+   *          buffer size in bytes
+   */
+  void countLiveBuffers(int pCount, long pSizeInBytes)
+  {
+    mLiveBuffersCounter.add(pCount);
+    mLiveBuffersBytesCounter.add(pCount * pSizeInBytes);
+  }
+
+  /**
+   * Updates the live image metrics of this context.
+   * 
+   * @param pCount
+   *          +1 for an allocated image, -1 for a released image
+   * @param pSizeInBytes
+   *          image size in bytes
+   */
+  void countLiveImages(int pCount, long pSizeInBytes)
+  {
+    mLiveImagesCounter.add(pCount);
+    mLiveImagesBytesCounter.add(pCount * pSizeInBytes);
+  }
+
   private void notifyMemoryAllocation()
   {
     if (isDebugNotifyAllocation())
@@ -549,11 +890,23 @@ public class ClearCLContext extends ClearCLBase
   @Override
   public void close()
   {
+    if (mProgramBuilderExecutor != null)
+      mProgramBuilderExecutor.shutdown();
+
+    mMemoryAllocator.close();
+
     if (getPeerPointer() != null)
     {
       getBackend().releaseContext(getPeerPointer());
       setPeerPointer(null);
     }
+
+    ClearCLMetrics.remove(getMetricsPrefix());
+  }
+
+  private String getMetricsPrefix()
+  {
+    return "context." + mContextIndex + ".";
   }
 
 }
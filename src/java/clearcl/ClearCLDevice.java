@@ -68,6 +68,16 @@ public class ClearCLDevice extends ClearCLBase
     return lDoubleVersion;
   }
 
+  /**
+   * Returns device driver version string.
+   * 
+   * @return driver version
+   */
+  public String getDriverVersion()
+  {
+    return getBackend().getDeviceDriverVersion(mDevicePointer).trim();
+  }
+
   /**
    * Returns device OpenL extensions string.
    * 
@@ -173,13 +183,27 @@ public class ClearCLDevice extends ClearCLBase
    * @return context
    */
   public ClearCLContext createContext()
+  {
+    return createContext(false);
+  }
+
+  /**
+   * Creates device context, optionally with profiling enabled on its default
+   * queue.
+   * 
+   * @param pProfiling
+   *          true -> default queue records profiling information
+   * @return context
+   */
+  public ClearCLContext createContext(boolean pProfiling)
   {
     ClearCLPeerPointer lContextPointer =
                                        getBackend().getContextPeerPointer(mClearCLPlatform.getPeerPointer(),
                                                                           mDevicePointer);
     ClearCLContext lClearCLContext =
                                    new ClearCLContext(this,
-                                                      lContextPointer);
+                                                      lContextPointer,
+                                                      pProfiling);
     mContextList.add(lClearCLContext);
 
     return lClearCLContext;
@@ -0,0 +1,178 @@
+package clearcl;
+
+import java.util.concurrent.CompletableFuture;
+
+import clearcl.abs.ClearCLBase;
+import clearcl.enums.EventStatus;
+import clearcl.exceptions.OpenCLException;
+
+/**
+ * ClearCLEvent is the ClearCL abstraction for OpenCl events. Events are
+ * returned by enqueue calls and can be used to wait for the completion of a
+ * specific command, or passed as wait list to subsequent enqueue calls to chain
+ * commands without draining the whole queue.
+ *
+ * @author royer
+ */
+public class ClearCLEvent extends ClearCLBase
+{
+
+  private final ClearCLQueue mClearCLQueue;
+
+  /**
+   * This constructor is called internally from enqueue calls.
+   *
+   * @param pClearCLQueue
+   *          queue on which the command was enqueued
+   * @param pEventPointer
+   *          event peer pointer
+   */
+  ClearCLEvent(ClearCLQueue pClearCLQueue,
+               ClearCLPeerPointer pEventPointer)
+  {
+    super(pClearCLQueue.getBackend(), pEventPointer);
+    mClearCLQueue = pClearCLQueue;
+  }
+
+  /**
+   * Returns the queue on which the command associated to this event was
+   * enqueued.
+   *
+   * @return queue
+   */
+  public ClearCLQueue getQueue()
+  {
+    return mClearCLQueue;
+  }
+
+  /**
+   * Returns the execution status of the command associated to this event.
+   *
+   * @return event status
+   */
+  public EventStatus getStatus()
+  {
+    return getBackend().getEventStatus(getPeerPointer());
+  }
+
+  /**
+   * Returns true if the command associated to this event has finished.
+   *
+   * @return true if finished
+   */
+  public boolean isFinished()
+  {
+    return getStatus().isFinished();
+  }
+
+  /**
+   * Waits for the command associated to this event to finish. Other commands in
+   * the queue are not waited for.
+   */
+  public void waitToFinish()
+  {
+    getBackend().waitForEvents(getPeerPointer());
+  }
+
+  /**
+   * Returns a future that is completed once the command associated to this
+   * event has finished. The future is completed from an OpenCL event callback,
+   * no thread is blocked waiting. Dependent stages that are not asynchronous
+   * run on an OpenCL implementation thread and should therefore return
+   * quickly. This event's queue is flushed so that the command is guaranteed
+   * to eventually complete.
+   *
+   * @return future completed when the command finishes, or completed
+   *         exceptionally if the command terminated abnormally
+   */
+  public CompletableFuture<Void> toCompletableFuture()
+  {
+    return toCompletableFuture(this, null, false);
+  }
+
+  /**
+   * Returns a future completed with a given result once the command associated
+   * to an event has finished, optionally closing the event at that point.
+   *
+   * @param pEvent
+   *          event
+   * @param pResult
+   *          result to complete the future with
+   * @param pCloseWhenFinished
+   *          true -> the event is closed once finished
+   * @return future
+   */
+  static <T> CompletableFuture<T> toCompletableFuture(ClearCLEvent pEvent,
+                                                      T pResult,
+                                                      boolean pCloseWhenFinished)
+  {
+    CompletableFuture<T> lFuture = new CompletableFuture<>();
+
+    pEvent.getBackend()
+          .setEventCallback(pEvent.getPeerPointer(), (lStatus) -> {
+            if (pCloseWhenFinished)
+              pEvent.close();
+
+            if (lStatus < 0)
+              lFuture.completeExceptionally(new OpenCLException(lStatus));
+            else
+              lFuture.complete(pResult);
+          });
+    pEvent.getQueue().flush();
+
+    return lFuture;
+  }
+
+  /**
+   * Waits for all given events to finish. All events must originate from the
+   * same backend.
+   *
+   * @param pEvents
+   *          events to wait for
+   */
+  public static void waitToFinish(ClearCLEvent... pEvents)
+  {
+    ClearCLPeerPointer[] lEventPeerPointers = getPeerPointers(pEvents);
+    if (lEventPeerPointers != null)
+      pEvents[0].getBackend().waitForEvents(lEventPeerPointers);
+  }
+
+  /**
+   * Returns the peer pointers for a list of events, or null if the list is
+   * empty.
+   *
+   * @param pEvents
+   *          events
+   * @return event peer pointers or null
+   */
+  static ClearCLPeerPointer[] getPeerPointers(ClearCLEvent... pEvents)
+  {
+    if (pEvents == null || pEvents.length == 0)
+      return null;
+
+    ClearCLPeerPointer[] lEventPeerPointers =
+                                            new ClearCLPeerPointer[pEvents.length];
+    for (int i = 0; i < pEvents.length; i++)
+      lEventPeerPointers[i] = pEvents[i].getPeerPointer();
+
+    return lEventPeerPointers;
+  }
+
+  @Override
+  public void close()
+  {
+    if (getPeerPointer() != null)
+    {
+      getBackend().releaseEvent(getPeerPointer());
+      setPeerPointer(null);
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format("ClearCLEvent [mClearCLQueue=%s]",
+                         mClearCLQueue);
+  }
+
+}
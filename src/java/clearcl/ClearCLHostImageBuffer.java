@@ -5,6 +5,8 @@ import java.util.Arrays;
 
 import clearcl.abs.ClearCLMemBase;
 import clearcl.enums.HostAccessType;
+import clearcl.enums.KernelAccessType;
+import clearcl.enums.MemAllocMode;
 import clearcl.interfaces.ClearCLImageInterface;
 import clearcl.interfaces.ClearCLMemInterface;
 import coremem.ContiguousMemoryInterface;
@@ -13,7 +15,11 @@ import coremem.offheap.OffHeapMemory;
 import coremem.util.Size;
 
 /**
- * ClearCLHostImageBuffer is the ClearCL abstraction for CPU RAM images.
+ * ClearCLHostImageBuffer is the ClearCL abstraction for CPU RAM images. Host
+ * image buffers can be backed by plain off-heap memory, or by pinned memory
+ * obtained by mapping a buffer allocated with MemAllocMode.AllocateHostPointer.
+ * Transfers between pinned host image buffers and device buffers or images can
+ * be done by DMA without staging through an intermediate driver buffer.
  *
  * @author royer
  */
@@ -26,6 +32,7 @@ public class ClearCLHostImageBuffer extends ClearCLMemBase implements
   private NativeTypeEnum mNativeType;
   private final long[] mDimensions;
   private long mNumberOfChannels;
+  private ClearCLBuffer mPinnedBuffer;
 
   /**
    * Allocates a host image buffer of same dimensions than a given image.
@@ -45,6 +52,67 @@ public class ClearCLHostImageBuffer extends ClearCLMemBase implements
     return lClearCLHostImage;
   }
 
+  /**
+   * Allocates a pinned host image buffer of same dimensions than a given
+   * image. The given image must belong to a context.
+   * 
+   * @param pClearCLImage
+   *          image template
+   * @return newly allocated pinned image.
+   */
+  public static ClearCLHostImageBuffer allocatePinnedSameAs(ClearCLImageInterface pClearCLImage)
+  {
+    return allocatePinned(pClearCLImage.getContext(),
+                          pClearCLImage.getNativeType(),
+                          pClearCLImage.getNumberOfChannels(),
+                          pClearCLImage.getDimensions());
+  }
+
+  /**
+   * Allocates a pinned host image buffer for a given context, native type,
+   * number of channels, and dimensions. The memory is obtained by allocating a
+   * buffer with MemAllocMode.AllocateHostPointer and mapping it once for the
+   * lifetime of the host image buffer. The buffer is unmapped and released
+   * when the host image buffer is closed.
+   * 
+   * @param pClearCLContext
+   *          context
+   * @param pNativeType
+   *          native type
+   * @param pNumberOfChannels
+   *          number of channels
+   * @param pDimensions
+   *          dimensions
+   * @return newly allocated pinned image.
+   */
+  public static ClearCLHostImageBuffer allocatePinned(ClearCLContext pClearCLContext,
+                                                      NativeTypeEnum pNativeType,
+                                                      long pNumberOfChannels,
+                                                      long... pDimensions)
+  {
+    long lSizeInBytes = pNumberOfChannels * Size.of(pNativeType)
+                        * getVolume(pDimensions);
+
+    ClearCLBuffer lPinnedBuffer =
+                                pClearCLContext.createBuffer(MemAllocMode.AllocateHostPointer,
+                                                             HostAccessType.ReadWrite,
+                                                             KernelAccessType.ReadWrite,
+                                                             NativeTypeEnum.UnsignedByte,
+                                                             lSizeInBytes);
+
+    ContiguousMemoryInterface lPinnedMemory =
+                                            lPinnedBuffer.map(HostAccessType.ReadWrite);
+
+    ClearCLHostImageBuffer lClearCLHostImage =
+                                             new ClearCLHostImageBuffer(pClearCLContext,
+                                                                        lPinnedMemory,
+                                                                        pNativeType,
+                                                                        pNumberOfChannels,
+                                                                        pDimensions);
+    lClearCLHostImage.mPinnedBuffer = lPinnedBuffer;
+    return lClearCLHostImage;
+  }
+
   /**
    * Internal method to allocate offheap memory.
    * 
@@ -133,6 +201,16 @@ public class ClearCLHostImageBuffer extends ClearCLMemBase implements
     return mContiguousMemory;
   }
 
+  /**
+   * Returns true if this host image buffer is backed by pinned memory.
+   * 
+   * @return true if pinned
+   */
+  public boolean isPinned()
+  {
+    return mPinnedBuffer != null;
+  }
+
   @Override
   public HostAccessType getHostAccessType()
   {
@@ -234,7 +312,14 @@ public class ClearCLHostImageBuffer extends ClearCLMemBase implements
   @Override
   public void close()
   {
-    if (mContiguousMemory != null)
+    if (mPinnedBuffer != null)
+    {
+      mPinnedBuffer.unmap(mContiguousMemory, true);
+      mPinnedBuffer.close();
+      mPinnedBuffer = null;
+      mContiguousMemory = null;
+    }
+    else if (mContiguousMemory != null)
     {
       mContiguousMemory.free();
       mContiguousMemory = null;
@@ -2,6 +2,7 @@ package clearcl;
 
 import java.nio.Buffer;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 
 import clearcl.abs.ClearCLMemBase;
 import clearcl.enums.HostAccessType;
@@ -10,6 +11,7 @@ import clearcl.enums.ImageChannelOrder;
 import clearcl.enums.ImageType;
 import clearcl.enums.KernelAccessType;
 import clearcl.enums.MemAllocMode;
+import clearcl.enums.TransferDirection;
 import clearcl.exceptions.ClearCLException;
 import clearcl.exceptions.ClearCLHostAccessException;
 import clearcl.exceptions.ClearCLIllegalArgumentException;
@@ -39,6 +41,8 @@ public class ClearCLImage extends ClearCLMemBase implements
   private final ImageChannelDataType mImageChannelDataType;
   private final long[] mDimensions;
 
+  private FragmentedImageTransfer mFragmentedImageTransfer;
+
   /**
    * This constructor is called internally from an OpenCl context.
    * 
@@ -208,11 +212,44 @@ public class ClearCLImage extends ClearCLMemBase implements
                    long[] pRegion,
                    boolean pBlockingFill,
                    boolean pNotifyListeners)
+  {
+    fill(mClearCLContext.getDefaultQueue(),
+         pRGBA,
+         pOrigin,
+         pRegion,
+         pBlockingFill,
+         pNotifyListeners);
+  }
+
+  /**
+   * Fills a nD region of this image with a RGBA float 'color' on a given
+   * queue.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pRGBA
+   *          four float color
+   * @param pOrigin
+   *          region origin
+   * @param pRegion
+   *          region dimensions
+   * @param pBlockingFill
+   *          true -> blocking call, false -> asynchronous call
+   * @param pNotifyListeners
+   *          true -> notify listeners, false -> do not notify
+   */
+  public void fill(ClearCLQueue pClearCLQueue,
+                   float[] pRGBA,
+                   long[] pOrigin,
+                   long[] pRegion,
+                   boolean pBlockingFill,
+                   boolean pNotifyListeners)
   {
     if (!(isNormalized() || isFloat()))
       throw new ClearCLIllegalArgumentException("Image data type must be normalized integer or float, if trying to clear image please use fillZero.");
 
-    fillInternal(floatToIntBits(pRGBA),
+    fillInternal(pClearCLQueue,
+                 floatToIntBits(pRGBA),
                  pOrigin,
                  pRegion,
                  pBlockingFill,
@@ -238,11 +275,44 @@ public class ClearCLImage extends ClearCLMemBase implements
                    long[] pRegion,
                    boolean pBlockingFill,
                    boolean pNotifyListeners)
+  {
+    fill(mClearCLContext.getDefaultQueue(),
+         pRGBA,
+         pOrigin,
+         pRegion,
+         pBlockingFill,
+         pNotifyListeners);
+  }
+
+  /**
+   * Fills a nD region of this image with a RGBA int 'color' on a given
+   * queue.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pRGBA
+   *          four int color
+   * @param pOrigin
+   *          region origin
+   * @param pRegion
+   *          region dimensions
+   * @param pBlockingFill
+   *          true -> blocking call, false -> asynchronous call
+   * @param pNotifyListeners
+   *          true -> notify listeners, false -> do not notify
+   */
+  public void fill(ClearCLQueue pClearCLQueue,
+                   int[] pRGBA,
+                   long[] pOrigin,
+                   long[] pRegion,
+                   boolean pBlockingFill,
+                   boolean pNotifyListeners)
   {
     if ((isNormalized() || isFloat()))
       throw new ClearCLIllegalArgumentException("Image data type must be of integer type, if trying to clear image please use fillZero.");
 
-    fillInternal(pRGBA,
+    fillInternal(pClearCLQueue,
+                 pRGBA,
                  pOrigin,
                  pRegion,
                  pBlockingFill,
@@ -262,6 +332,8 @@ public class ClearCLImage extends ClearCLMemBase implements
   /**
    * Fills a nD region of this image with a RGBA int 'color'.
    * 
+   * @param pClearCLQueue
+   *          queue
    * @param pRGBA
    *          four int color
    * @param pOrigin
@@ -273,7 +345,8 @@ public class ClearCLImage extends ClearCLMemBase implements
    * @param pNotifyListeners
    *          true -> notify listeners, false -> do not notify
    */
-  private void fillInternal(int[] pRGBA,
+  private void fillInternal(ClearCLQueue pClearCLQueue,
+                            int[] pRGBA,
                             long[] pOrigin,
                             long[] pRegion,
                             boolean pBlockingFill,
@@ -294,16 +367,21 @@ public class ClearCLImage extends ClearCLMemBase implements
     for (int i = 0; i < lLength; i++)
       lPattern[i] = lContiguousBuffer.readByte();
 
-    getBackend().enqueueFillImage(mClearCLContext.getDefaultQueue()
-                                                 .getPeerPointer(),
-                                  getPeerPointer(),
-                                  pBlockingFill,
-                                  Region3.origin(pOrigin),
-                                  Region3.region(pRegion),
-                                  lPattern);
+    pClearCLQueue.profile("fillImage",
+                          null,
+                          getPixelSizeInBytes() * Region3.volume(Region3.region(pRegion)),
+                          getBackend().enqueueFillImage(pClearCLQueue.getPeerPointer(),
+                                                        getPeerPointer(),
+                                                        pBlockingFill,
+                                                        Region3.origin(pOrigin),
+                                                        Region3.region(pRegion),
+                                                        lPattern,
+                                                        null,
+                                                        pClearCLQueue.isRecordingEvents()),
+                          false);
 
     if (pNotifyListeners)
-      notifyListenersOfChange(mClearCLContext.getDefaultQueue());
+      notifyListenersOfChange(pClearCLQueue);
   }
 
   /**
@@ -344,15 +422,52 @@ public class ClearCLImage extends ClearCLMemBase implements
                      long[] pRegion,
                      boolean pBlockingCopy)
   {
-    getBackend().enqueueCopyImage(mClearCLContext.getDefaultQueue()
-                                                 .getPeerPointer(),
-                                  getPeerPointer(),
-                                  pDstImage.getPeerPointer(),
-                                  pBlockingCopy,
-                                  pOriginInSrcImage,
-                                  pOriginInDstImage,
-                                  pRegion);
-    pDstImage.notifyListenersOfChange(mClearCLContext.getDefaultQueue());
+    copyTo(mClearCLContext.getDefaultQueue(),
+           pDstImage,
+           pOriginInSrcImage,
+           pOriginInDstImage,
+           pRegion,
+           pBlockingCopy);
+  }
+
+  /**
+   * Copies a nD region form this image to a nD region of same dimensions in
+   * another image.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pDstImage
+   *          destination image
+   * @param pOriginInSrcImage
+   *          origin in source image
+   * @param pOriginInDstImage
+   *          origin in destination image
+   * @param pRegion
+   *          region dimensions
+   * @param pBlockingCopy
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void copyTo(ClearCLQueue pClearCLQueue,
+                     ClearCLImage pDstImage,
+                     long[] pOriginInSrcImage,
+                     long[] pOriginInDstImage,
+                     long[] pRegion,
+                     boolean pBlockingCopy)
+  {
+    pClearCLQueue.profile("copyImage",
+                          TransferDirection.DeviceToDevice,
+                          getPixelSizeInBytes() * Region3.volume(pRegion),
+                          getBackend().enqueueCopyImage(pClearCLQueue.getPeerPointer(),
+                                                        getPeerPointer(),
+                                                        pDstImage.getPeerPointer(),
+                                                        pBlockingCopy,
+                                                        pOriginInSrcImage,
+                                                        pOriginInDstImage,
+                                                        pRegion,
+                                                        null,
+                                                        pClearCLQueue.isRecordingEvents()),
+                          false);
+    pDstImage.notifyListenersOfChange(pClearCLQueue);
   }
 
   /**
@@ -393,17 +508,52 @@ public class ClearCLImage extends ClearCLMemBase implements
                      long pOffsetInDstBuffer,
                      boolean pBlockingCopy)
   {
+    copyTo(mClearCLContext.getDefaultQueue(),
+           pDstBuffer,
+           pOriginInSrcImage,
+           pRegionInSrcImage,
+           pOffsetInDstBuffer,
+           pBlockingCopy);
+  }
 
-    getBackend().enqueueCopyImageToBuffer(mClearCLContext.getDefaultQueue()
-                                                         .getPeerPointer(),
-                                          getPeerPointer(),
-                                          pDstBuffer.getPeerPointer(),
-                                          pBlockingCopy,
-                                          Region3.origin(pOriginInSrcImage),
-                                          Region3.region(pRegionInSrcImage),
-                                          pOffsetInDstBuffer * pDstBuffer.getNativeType()
-                                                                         .getSizeInBytes());
-    pDstBuffer.notifyListenersOfChange(mClearCLContext.getDefaultQueue());
+  /**
+   * Copies a nD region from this image into a nD region of same dimensions into
+   * a (OpenCl) buffer.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pDstBuffer
+   *          destination buffer
+   * @param pOriginInSrcImage
+   *          origin is source image
+   * @param pRegionInSrcImage
+   *          region dimensions in source image
+   * @param pOffsetInDstBuffer
+   *          offset in destination buffer in elements
+   * @param pBlockingCopy
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void copyTo(ClearCLQueue pClearCLQueue,
+                     ClearCLBuffer pDstBuffer,
+                     long[] pOriginInSrcImage,
+                     long[] pRegionInSrcImage,
+                     long pOffsetInDstBuffer,
+                     boolean pBlockingCopy)
+  {
+    pClearCLQueue.profile("copyImageToBuffer",
+                          TransferDirection.DeviceToDevice,
+                          getPixelSizeInBytes() * Region3.volume(Region3.region(pRegionInSrcImage)),
+                          getBackend().enqueueCopyImageToBuffer(pClearCLQueue.getPeerPointer(),
+                                                                getPeerPointer(),
+                                                                pDstBuffer.getPeerPointer(),
+                                                                pBlockingCopy,
+                                                                Region3.origin(pOriginInSrcImage),
+                                                                Region3.region(pRegionInSrcImage),
+                                                                pOffsetInDstBuffer * pDstBuffer.getNativeType().getSizeInBytes(),
+                                                                null,
+                                                                pClearCLQueue.isRecordingEvents()),
+                          false);
+    pDstBuffer.notifyListenersOfChange(pClearCLQueue);
   }
 
   /**
@@ -416,6 +566,25 @@ public class ClearCLImage extends ClearCLMemBase implements
    */
   public void copyTo(ClearCLHostImageBuffer pClearCLHostImage,
                      boolean pBlockingCopy)
+  {
+    copyTo(mClearCLContext.getDefaultQueue(),
+           pClearCLHostImage,
+           pBlockingCopy);
+  }
+
+  /**
+   * Copies this buffer into a host image.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pClearCLHostImage
+   *          host image.
+   * @param pBlockingCopy
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void copyTo(ClearCLQueue pClearCLQueue,
+                     ClearCLHostImageBuffer pClearCLHostImage,
+                     boolean pBlockingCopy)
   {
     if (!getHostAccessType().isReadableFromHost())
       throw new ClearCLHostAccessException("Buffer not readable from host");
@@ -423,15 +592,20 @@ public class ClearCLImage extends ClearCLMemBase implements
     if (pClearCLHostImage.getSizeInBytes() != getSizeInBytes())
       throw new ClearCLException("Incompatible length");
 
-    getBackend().enqueueReadFromImage(mClearCLContext.getDefaultQueue()
-                                                     .getPeerPointer(),
-                                      getPeerPointer(),
-                                      pBlockingCopy,
-                                      Region3.originZero(),
-                                      Region3.region(getDimensions()),
-                                      getBackend().wrap(pClearCLHostImage.getContiguousMemory()));
-
-    pClearCLHostImage.notifyListenersOfChange(mClearCLContext.getDefaultQueue());
+    pClearCLQueue.profile("readFromImage",
+                          TransferDirection.DeviceToHost,
+                          getPixelSizeInBytes() * Region3.volume(Region3.region(getDimensions())),
+                          getBackend().enqueueReadFromImage(pClearCLQueue.getPeerPointer(),
+                                                            getPeerPointer(),
+                                                            pBlockingCopy,
+                                                            Region3.originZero(),
+                                                            Region3.region(getDimensions()),
+                                                            getBackend().wrap(pClearCLHostImage.getContiguousMemory()),
+                                                            null,
+                                                            pClearCLQueue.isRecordingEvents()),
+                          false);
+
+    pClearCLHostImage.notifyListenersOfChange(pClearCLQueue);
 
   }
 
@@ -486,6 +660,33 @@ public class ClearCLImage extends ClearCLMemBase implements
                       long[] pOrigin,
                       long[] pRegion,
                       boolean pBlockingRead)
+  {
+    writeTo(mClearCLContext.getDefaultQueue(),
+            pContiguousMemory,
+            pOrigin,
+            pRegion,
+            pBlockingRead);
+  }
+
+  /**
+   * Writes a nD region of this image to a CoreMem buffer.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pContiguousMemory
+   *          CoreMem buffer
+   * @param pOrigin
+   *          origin in image
+   * @param pRegion
+   *          region dimensions in image
+   * @param pBlockingRead
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void writeTo(ClearCLQueue pClearCLQueue,
+                      ContiguousMemoryInterface pContiguousMemory,
+                      long[] pOrigin,
+                      long[] pRegion,
+                      boolean pBlockingRead)
   {
     if (!getHostAccessType().isReadableFromHost())
       throw new ClearCLHostAccessException("Image not readable from host");
@@ -497,13 +698,18 @@ public class ClearCLImage extends ClearCLMemBase implements
     ClearCLPeerPointer lHostMemPointer =
                                        getBackend().wrap(pContiguousMemory);
 
-    getBackend().enqueueReadFromImage(mClearCLContext.getDefaultQueue()
-                                                     .getPeerPointer(),
-                                      getPeerPointer(),
-                                      pBlockingRead,
-                                      Region3.origin(pOrigin),
-                                      Region3.region(pRegion),
-                                      lHostMemPointer);
+    pClearCLQueue.profile("readFromImage",
+                          TransferDirection.DeviceToHost,
+                          getPixelSizeInBytes() * Region3.volume(Region3.region(pRegion)),
+                          getBackend().enqueueReadFromImage(pClearCLQueue.getPeerPointer(),
+                                                            getPeerPointer(),
+                                                            pBlockingRead,
+                                                            Region3.origin(pOrigin),
+                                                            Region3.region(pRegion),
+                                                            lHostMemPointer,
+                                                            null,
+                                                            pClearCLQueue.isRecordingEvents()),
+                          false);
   }
 
   /**
@@ -522,6 +728,33 @@ public class ClearCLImage extends ClearCLMemBase implements
                       long[] pOrigin,
                       long[] pRegion,
                       boolean pBlockingRead)
+  {
+    writeTo(mClearCLContext.getDefaultQueue(),
+            pBuffer,
+            pOrigin,
+            pRegion,
+            pBlockingRead);
+  }
+
+  /**
+   * Writes a nD region of this image to a NIO buffer.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pBuffer
+   *          NIO buffer
+   * @param pOrigin
+   *          origin in image
+   * @param pRegion
+   *          region dimensions in image
+   * @param pBlockingRead
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void writeTo(ClearCLQueue pClearCLQueue,
+                      Buffer pBuffer,
+                      long[] pOrigin,
+                      long[] pRegion,
+                      boolean pBlockingRead)
   {
     if (!getHostAccessType().isReadableFromHost())
       throw new ClearCLHostAccessException("Image not readable from host");
@@ -535,13 +768,18 @@ public class ClearCLImage extends ClearCLMemBase implements
 
     ClearCLPeerPointer lHostMemPointer = getBackend().wrap(pBuffer);
 
-    getBackend().enqueueReadFromImage(mClearCLContext.getDefaultQueue()
-                                                     .getPeerPointer(),
-                                      getPeerPointer(),
-                                      pBlockingRead,
-                                      Region3.origin(pOrigin),
-                                      Region3.region(pRegion),
-                                      lHostMemPointer);
+    pClearCLQueue.profile("readFromImage",
+                          TransferDirection.DeviceToHost,
+                          getPixelSizeInBytes() * Region3.volume(Region3.region(pRegion)),
+                          getBackend().enqueueReadFromImage(pClearCLQueue.getPeerPointer(),
+                                                            getPeerPointer(),
+                                                            pBlockingRead,
+                                                            Region3.origin(pOrigin),
+                                                            Region3.region(pRegion),
+                                                            lHostMemPointer,
+                                                            null,
+                                                            pClearCLQueue.isRecordingEvents()),
+                          false);
   }
 
   /**
@@ -560,6 +798,33 @@ public class ClearCLImage extends ClearCLMemBase implements
                        long[] pOrigin,
                        long[] pRegion,
                        boolean pBlockingRead)
+  {
+    readFrom(mClearCLContext.getDefaultQueue(),
+             pContiguousMemory,
+             pOrigin,
+             pRegion,
+             pBlockingRead);
+  }
+
+  /**
+   * Reads from a CoreMem buffer into a nD region of this image.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pContiguousMemory
+   *          CoreMem buffer
+   * @param pOrigin
+   *          origin in image
+   * @param pRegion
+   *          region dimensions in image
+   * @param pBlockingRead
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void readFrom(ClearCLQueue pClearCLQueue,
+                       ContiguousMemoryInterface pContiguousMemory,
+                       long[] pOrigin,
+                       long[] pRegion,
+                       boolean pBlockingRead)
   {
     if (!getHostAccessType().isWritableFromHost())
       throw new ClearCLHostAccessException("Image not writable from host");
@@ -571,14 +836,19 @@ public class ClearCLImage extends ClearCLMemBase implements
     ClearCLPeerPointer lHostMemPointer =
                                        getBackend().wrap(pContiguousMemory);
 
-    getBackend().enqueueWriteToImage(mClearCLContext.getDefaultQueue()
-                                                    .getPeerPointer(),
-                                     getPeerPointer(),
-                                     pBlockingRead,
-                                     Region3.origin(pOrigin),
-                                     Region3.region(pRegion),
-                                     lHostMemPointer);
-    notifyListenersOfChange(mClearCLContext.getDefaultQueue());
+    pClearCLQueue.profile("writeToImage",
+                          TransferDirection.HostToDevice,
+                          getPixelSizeInBytes() * Region3.volume(Region3.region(pRegion)),
+                          getBackend().enqueueWriteToImage(pClearCLQueue.getPeerPointer(),
+                                                           getPeerPointer(),
+                                                           pBlockingRead,
+                                                           Region3.origin(pOrigin),
+                                                           Region3.region(pRegion),
+                                                           lHostMemPointer,
+                                                           null,
+                                                           pClearCLQueue.isRecordingEvents()),
+                          false);
+    notifyListenersOfChange(pClearCLQueue);
   }
 
   /**
@@ -617,6 +887,37 @@ public class ClearCLImage extends ClearCLMemBase implements
                        long[] pOrigin,
                        long[] pRegion,
                        boolean pBlockingRead)
+  {
+    readFrom(mClearCLContext.getDefaultQueue(),
+             pFragmentedMemory,
+             pOrigin,
+             pRegion,
+             pBlockingRead);
+  }
+
+  /**
+   * Reads from a CoreMem fragmented buffer into a nD region of this image. Each
+   * fragment corresponds to a single XY 2D plane (for XYZ 3D images) or a
+   * single X 1D line (for XY 2D images). Fragments contiguous in memory are
+   * transferred together, and small non-contiguous fragments are gathered
+   * into pinned staging buffers, so that few commands are enqueued.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pFragmentedMemory
+   *          CoreMem fragmented buffer
+   * @param pOrigin
+   *          origin in image
+   * @param pRegion
+   *          region dimensions in image
+   * @param pBlockingRead
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void readFrom(ClearCLQueue pClearCLQueue,
+                       FragmentedMemoryInterface pFragmentedMemory,
+                       long[] pOrigin,
+                       long[] pRegion,
+                       boolean pBlockingRead)
   {
     if (!getHostAccessType().isWritableFromHost())
       throw new ClearCLHostAccessException("Image not writable from host");
@@ -625,84 +926,227 @@ public class ClearCLImage extends ClearCLMemBase implements
                                               * Region3.volume(pRegion))
       throw new ClearCLIllegalArgumentException("Attempting to read from buffer of wrong size!");
 
-    int lNumberOfFragments = pFragmentedMemory.getNumberOfFragments();
+    ClearCLEvent lEvent =
+                        getFragmentedImageTransfer().upload(pClearCLQueue,
+                                                            pFragmentedMemory,
+                                                            pOrigin,
+                                                            pRegion,
+                                                            null);
+    if (pBlockingRead)
+      lEvent.waitToFinish();
+    lEvent.close();
+
+    notifyListenersOfChange(pClearCLQueue);
+  }
 
-    long[] lOrigin = Region3.origin(pOrigin);
-    long[] lRegion = Region3.region(pRegion);
 
-    if (getDimension() == 2)
-    {
-      lRegion[1] = 1;
+  /**
+   * Reads from a CoreMem fragmented buffer into this image.
+   * 
+   * @param pFragmentedMemory
+   *          CoreMem fragmented buffer
+   * @param pBlockingRead
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void readFrom(FragmentedMemoryInterface pFragmentedMemory,
+                       boolean pBlockingRead)
+  {
+    readFrom(pFragmentedMemory,
+             Region3.originZero(),
+             Region3.region(getDimensions()),
+             pBlockingRead);
+  }
 
-      for (int i = 0; i < lNumberOfFragments; i++)
-      {
-        ContiguousMemoryInterface lContiguousMemoryInterface =
-                                                             pFragmentedMemory.get(i);
+  /**
+   * Enqueues a read from a CoreMem fragmented buffer into this image on a
+   * given queue, see
+   * {@link #readFrom(ClearCLQueue, FragmentedMemoryInterface, long[], long[], boolean)}.
+   * This call is non-blocking: the fragmented buffer must not be modified
+   * before the returned event has completed, and the event must be closed once
+   * not needed anymore.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pFragmentedMemory
+   *          CoreMem fragmented buffer
+   * @param pWaitEvents
+   *          events to wait for before reading
+   * @return event signaling the completion of the whole read
+   */
+  public ClearCLEvent enqueueReadFrom(ClearCLQueue pClearCLQueue,
+                                      FragmentedMemoryInterface pFragmentedMemory,
+                                      ClearCLEvent... pWaitEvents)
+  {
+    if (!getHostAccessType().isWritableFromHost())
+      throw new ClearCLHostAccessException("Image not writable from host");
 
-        ClearCLPeerPointer lFragmentHostMemPointer =
-                                                   getBackend().wrap(lContiguousMemoryInterface);
+    if (pFragmentedMemory.getSizeInBytes() != getSizeInBytes())
+      throw new ClearCLIllegalArgumentException("Attempting to read from buffer of wrong size!");
 
-        getBackend().enqueueWriteToImage(mClearCLContext.getDefaultQueue()
-                                                        .getPeerPointer(),
-                                         getPeerPointer(),
-                                         pBlockingRead,
-                                         lOrigin,
-                                         lRegion,
-                                         lFragmentHostMemPointer);
+    ClearCLEvent lEvent =
+                        getFragmentedImageTransfer().upload(pClearCLQueue,
+                                                            pFragmentedMemory,
+                                                            Region3.originZero(),
+                                                            Region3.region(getDimensions()),
+                                                            pWaitEvents);
+    notifyListenersOfChange(pClearCLQueue);
+    return lEvent;
+  }
 
-        lOrigin[1]++;
-      }
+  /**
+   * Writes this image to a CoreMem fragmented buffer.
+   * 
+   * @param pFragmentedMemory
+   *          CoreMem fragmented buffer
+   * @param pBlockingWrite
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void writeTo(FragmentedMemoryInterface pFragmentedMemory,
+                      boolean pBlockingWrite)
+  {
+    writeTo(pFragmentedMemory,
+            Region3.originZero(),
+            Region3.region(getDimensions()),
+            pBlockingWrite);
+  }
 
-      notifyListenersOfChange(mClearCLContext.getDefaultQueue());
-    }
-    else if (getDimension() == 3)
-    {
-      lRegion[2] = 1;
+  /**
+   * Writes a nD region of this image to a CoreMem fragmented buffer. Each
+   * fragment corresponds to a single XY 2D plane (for XYZ 3D images) or a
+   * single X 1D line (for XY 2D images).
+   * 
+   * @param pFragmentedMemory
+   *          CoreMem fragmented buffer
+   * @param pOrigin
+   *          origin in image
+   * @param pRegion
+   *          region dimensions in image
+   * @param pBlockingWrite
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void writeTo(FragmentedMemoryInterface pFragmentedMemory,
+                      long[] pOrigin,
+                      long[] pRegion,
+                      boolean pBlockingWrite)
+  {
+    writeTo(mClearCLContext.getDefaultQueue(),
+            pFragmentedMemory,
+            pOrigin,
+            pRegion,
+            pBlockingWrite);
+  }
 
-      for (int i = 0; i < lNumberOfFragments; i++)
-      {
-        ContiguousMemoryInterface lContiguousMemoryInterface =
-                                                             pFragmentedMemory.get(i);
+  /**
+   * Writes a nD region of this image to a CoreMem fragmented buffer. Each
+   * fragment corresponds to a single XY 2D plane (for XYZ 3D images) or a
+   * single X 1D line (for XY 2D images). Fragments contiguous in memory are
+   * transferred together, and small non-contiguous fragments are transferred
+   * through pinned staging buffers, so that few commands are enqueued. In that
+   * last case this call blocks until these fragments are written.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pFragmentedMemory
+   *          CoreMem fragmented buffer
+   * @param pOrigin
+   *          origin in image
+   * @param pRegion
+   *          region dimensions in image
+   * @param pBlockingWrite
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void writeTo(ClearCLQueue pClearCLQueue,
+                      FragmentedMemoryInterface pFragmentedMemory,
+                      long[] pOrigin,
+                      long[] pRegion,
+                      boolean pBlockingWrite)
+  {
+    if (!getHostAccessType().isReadableFromHost())
+      throw new ClearCLHostAccessException("Image not readable from host");
 
-        ClearCLPeerPointer lFragmentHostMemPointer =
-                                                   getBackend().wrap(lContiguousMemoryInterface);
+    if (pFragmentedMemory.getSizeInBytes() != getPixelSizeInBytes()
+                                              * Region3.volume(pRegion))
+      throw new ClearCLIllegalArgumentException("Attempting to write to buffer of wrong size!");
 
-        getBackend().enqueueWriteToImage(mClearCLContext.getDefaultQueue()
-                                                        .getPeerPointer(),
-                                         getPeerPointer(),
-                                         pBlockingRead,
-                                         lOrigin,
-                                         lRegion,
-                                         lFragmentHostMemPointer);
+    ClearCLEvent lEvent =
+                        getFragmentedImageTransfer().download(pClearCLQueue,
+                                                              pFragmentedMemory,
+                                                              pOrigin,
+                                                              pRegion,
+                                                              null);
+    if (pBlockingWrite)
+      lEvent.waitToFinish();
+    lEvent.close();
+  }
 
-        lOrigin[2]++;
-      }
+  /**
+   * Enqueues a write of this image into a CoreMem fragmented buffer on a given
+   * queue, see
+   * {@link #writeTo(ClearCLQueue, FragmentedMemoryInterface, long[], long[], boolean)}.
+   * The fragmented buffer must not be accessed before the returned event has
+   * completed, and the event must be closed once not needed anymore.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pFragmentedMemory
+   *          CoreMem fragmented buffer
+   * @param pWaitEvents
+   *          events to wait for before writing
+   * @return event signaling the completion of the whole write
+   */
+  public ClearCLEvent enqueueWriteTo(ClearCLQueue pClearCLQueue,
+                                     FragmentedMemoryInterface pFragmentedMemory,
+                                     ClearCLEvent... pWaitEvents)
+  {
+    if (!getHostAccessType().isReadableFromHost())
+      throw new ClearCLHostAccessException("Image not readable from host");
 
-      notifyListenersOfChange(mClearCLContext.getDefaultQueue());
-    }
+    if (pFragmentedMemory.getSizeInBytes() != getSizeInBytes())
+      throw new ClearCLIllegalArgumentException("Attempting to write to buffer of wrong size!");
 
+    return getFragmentedImageTransfer().download(pClearCLQueue,
+                                                 pFragmentedMemory,
+                                                 Region3.originZero(),
+                                                 Region3.region(getDimensions()),
+                                                 pWaitEvents);
+  }
+
+  private synchronized FragmentedImageTransfer getFragmentedImageTransfer()
+  {
+    if (mFragmentedImageTransfer == null)
+      mFragmentedImageTransfer = new FragmentedImageTransfer(this);
+    return mFragmentedImageTransfer;
   }
 
   /**
-   * Reads from a CoreMem fragmented buffer into this image.
+   * Reads from a NIO buffer into a nD region of this image.
    * 
-   * @param pFragmentedMemory
-   *          CoreMem fragmented buffer
+   * @param pBuffer
+   *          NIO buffer
+   * @param pOrigin
+   *          origin in image
+   * @param pRegion
+   *          region dimensions in image
    * @param pBlockingRead
    *          true -> blocking call, false -> asynchronous call
    */
-  public void readFrom(FragmentedMemoryInterface pFragmentedMemory,
+  public void readFrom(Buffer pBuffer,
+                       long[] pOrigin,
+                       long[] pRegion,
                        boolean pBlockingRead)
   {
-    readFrom(pFragmentedMemory,
-             Region3.originZero(),
-             Region3.region(getDimensions()),
+    readFrom(mClearCLContext.getDefaultQueue(),
+             pBuffer,
+             pOrigin,
+             pRegion,
              pBlockingRead);
   }
 
   /**
    * Reads from a NIO buffer into a nD region of this image.
    * 
+   * @param pClearCLQueue
+   *          queue
    * @param pBuffer
    *          NIO buffer
    * @param pOrigin
@@ -712,7 +1156,8 @@ public class ClearCLImage extends ClearCLMemBase implements
    * @param pBlockingRead
    *          true -> blocking call, false -> asynchronous call
    */
-  public void readFrom(Buffer pBuffer,
+  public void readFrom(ClearCLQueue pClearCLQueue,
+                       Buffer pBuffer,
                        long[] pOrigin,
                        long[] pRegion,
                        boolean pBlockingRead)
@@ -729,14 +1174,19 @@ public class ClearCLImage extends ClearCLMemBase implements
 
     ClearCLPeerPointer lHostMemPointer = getBackend().wrap(pBuffer);
 
-    getBackend().enqueueWriteToImage(mClearCLContext.getDefaultQueue()
-                                                    .getPeerPointer(),
-                                     getPeerPointer(),
-                                     pBlockingRead,
-                                     Region3.origin(pOrigin),
-                                     Region3.region(pRegion),
-                                     lHostMemPointer);
-    notifyListenersOfChange(mClearCLContext.getDefaultQueue());
+    pClearCLQueue.profile("writeToImage",
+                          TransferDirection.HostToDevice,
+                          getPixelSizeInBytes() * Region3.volume(Region3.region(pRegion)),
+                          getBackend().enqueueWriteToImage(pClearCLQueue.getPeerPointer(),
+                                                           getPeerPointer(),
+                                                           pBlockingRead,
+                                                           Region3.origin(pOrigin),
+                                                           Region3.region(pRegion),
+                                                           lHostMemPointer,
+                                                           null,
+                                                           pClearCLQueue.isRecordingEvents()),
+                          false);
+    notifyListenersOfChange(pClearCLQueue);
   }
 
   /**
@@ -931,6 +1381,382 @@ public class ClearCLImage extends ClearCLMemBase implements
     return lOffHeapMemory;
   }
 
+  /**
+   * Enqueues a copy of this image into another image of same dimensions on a
+   * given queue. This call is non-blocking, the returned event must be closed
+   * once not needed anymore.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pDstImage
+   *          destination image
+   * @param pWaitEvents
+   *          events to wait for before copying
+   * @return event associated to this copy
+   */
+  public ClearCLEvent enqueueCopyTo(ClearCLQueue pClearCLQueue,
+                                    ClearCLImage pDstImage,
+                                    ClearCLEvent... pWaitEvents)
+  {
+    ClearCLPeerPointer lEventPeerPointer =
+                                         getBackend().enqueueCopyImage(pClearCLQueue.getPeerPointer(),
+                                                                       getPeerPointer(),
+                                                                       pDstImage.getPeerPointer(),
+                                                                       false,
+                                                                       Region3.originZero(),
+                                                                       Region3.originZero(),
+                                                                       Region3.region(getDimensions()),
+                                                                       ClearCLEvent.getPeerPointers(pWaitEvents),
+                                                                       true);
+    pDstImage.notifyListenersOfChange(pClearCLQueue);
+    pClearCLQueue.profile("copyImage",
+                          TransferDirection.DeviceToDevice,
+                          getPixelSizeInBytes() * Region3.volume(Region3.region(getDimensions())),
+                          lEventPeerPointer,
+                          true);
+    return new ClearCLEvent(pClearCLQueue, lEventPeerPointer);
+  }
+
+  /**
+   * Enqueues a write of this image into a CoreMem buffer on a given queue. This
+   * call is non-blocking: the CoreMem buffer must not be accessed before the
+   * returned event has completed, and the event must be closed once not needed
+   * anymore.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pContiguousMemory
+   *          CoreMem buffer
+   * @param pWaitEvents
+   *          events to wait for before writing
+   * @return event associated to this write
+   */
+  public ClearCLEvent enqueueWriteTo(ClearCLQueue pClearCLQueue,
+                                     ContiguousMemoryInterface pContiguousMemory,
+                                     ClearCLEvent... pWaitEvents)
+  {
+    if (!getHostAccessType().isReadableFromHost())
+      throw new ClearCLHostAccessException("Image not readable from host");
+
+    if (pContiguousMemory.getSizeInBytes() != getSizeInBytes())
+      throw new ClearCLIllegalArgumentException("Attempting to write to buffer of wrong size!");
+
+    ClearCLPeerPointer lEventPeerPointer =
+                                         getBackend().enqueueReadFromImage(pClearCLQueue.getPeerPointer(),
+                                                                           getPeerPointer(),
+                                                                           false,
+                                                                           Region3.originZero(),
+                                                                           Region3.region(getDimensions()),
+                                                                           getBackend().wrap(pContiguousMemory),
+                                                                           ClearCLEvent.getPeerPointers(pWaitEvents),
+                                                                           true);
+    pClearCLQueue.profile("readFromImage",
+                          TransferDirection.DeviceToHost,
+                          getPixelSizeInBytes() * Region3.volume(Region3.region(getDimensions())),
+                          lEventPeerPointer,
+                          true);
+    return new ClearCLEvent(pClearCLQueue, lEventPeerPointer);
+  }
+
+  /**
+   * Enqueues a write of a nD region of this image into a CoreMem buffer on a
+   * given queue. This call is non-blocking: the CoreMem buffer must not be
+   * accessed before the returned event has completed, and the event must be
+   * closed once not needed anymore.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pContiguousMemory
+   *          CoreMem buffer
+   * @param pOrigin
+   *          origin in image
+   * @param pRegion
+   *          region dimensions in image
+   * @param pWaitEvents
+   *          events to wait for before writing
+   * @return event associated to this write
+   */
+  public ClearCLEvent enqueueWriteTo(ClearCLQueue pClearCLQueue,
+                                     ContiguousMemoryInterface pContiguousMemory,
+                                     long[] pOrigin,
+                                     long[] pRegion,
+                                     ClearCLEvent... pWaitEvents)
+  {
+    if (!getHostAccessType().isReadableFromHost())
+      throw new ClearCLHostAccessException("Image not readable from host");
+
+    if (pContiguousMemory.getSizeInBytes() != getPixelSizeInBytes()
+                                              * Region3.volume(pRegion))
+      throw new ClearCLIllegalArgumentException("Attempting to write to buffer of wrong size!");
+
+    ClearCLPeerPointer lEventPeerPointer =
+                                         getBackend().enqueueReadFromImage(pClearCLQueue.getPeerPointer(),
+                                                                           getPeerPointer(),
+                                                                           false,
+                                                                           Region3.origin(pOrigin),
+                                                                           Region3.region(pRegion),
+                                                                           getBackend().wrap(pContiguousMemory),
+                                                                           ClearCLEvent.getPeerPointers(pWaitEvents),
+                                                                           true);
+    pClearCLQueue.profile("readFromImage",
+                          TransferDirection.DeviceToHost,
+                          getPixelSizeInBytes() * Region3.volume(Region3.region(pRegion)),
+                          lEventPeerPointer,
+                          true);
+    return new ClearCLEvent(pClearCLQueue, lEventPeerPointer);
+  }
+
+  /**
+   * Enqueues a read from a CoreMem buffer into this image on a given queue.
+   * This call is non-blocking: the CoreMem buffer must not be modified before
+   * the returned event has completed, and the event must be closed once not
+   * needed anymore.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pContiguousMemory
+   *          CoreMem buffer
+   * @param pWaitEvents
+   *          events to wait for before reading
+   * @return event associated to this read
+   */
+  public ClearCLEvent enqueueReadFrom(ClearCLQueue pClearCLQueue,
+                                      ContiguousMemoryInterface pContiguousMemory,
+                                      ClearCLEvent... pWaitEvents)
+  {
+    if (!getHostAccessType().isWritableFromHost())
+      throw new ClearCLHostAccessException("Image not writable from host");
+
+    if (pContiguousMemory.getSizeInBytes() != getSizeInBytes())
+      throw new ClearCLIllegalArgumentException("Attempting to read from a buffer of wrong size!");
+
+    ClearCLPeerPointer lEventPeerPointer =
+                                         getBackend().enqueueWriteToImage(pClearCLQueue.getPeerPointer(),
+                                                                          getPeerPointer(),
+                                                                          false,
+                                                                          Region3.originZero(),
+                                                                          Region3.region(getDimensions()),
+                                                                          getBackend().wrap(pContiguousMemory),
+                                                                          ClearCLEvent.getPeerPointers(pWaitEvents),
+                                                                          true);
+    notifyListenersOfChange(pClearCLQueue);
+    pClearCLQueue.profile("writeToImage",
+                          TransferDirection.HostToDevice,
+                          getPixelSizeInBytes() * Region3.volume(Region3.region(getDimensions())),
+                          lEventPeerPointer,
+                          true);
+    return new ClearCLEvent(pClearCLQueue, lEventPeerPointer);
+  }
+
+  /**
+   * Copies this image into another image without blocking, using the
+   * default queue.
+   * 
+   * @param pDstImage
+   *          destination image
+   * @return future completed with the destination image once the copy has
+   *         finished
+   */
+  public CompletableFuture<ClearCLImage> copyToAsync(ClearCLImage pDstImage)
+  {
+    ClearCLQueue lQueue = mClearCLContext.getDefaultQueue();
+    return ClearCLEvent.toCompletableFuture(enqueueCopyTo(lQueue,
+                                                          pDstImage),
+                                            pDstImage,
+                                            true);
+  }
+
+  /**
+   * Writes the contents of this image into a CoreMem buffer without
+   * blocking, using the default queue. The CoreMem buffer must not be accessed
+   * before the returned future has completed.
+   * 
+   * @param pContiguousMemory
+   *          destination CoreMem buffer
+   * @return future completed with the destination CoreMem buffer once the
+   *         write has finished
+   */
+  public CompletableFuture<ContiguousMemoryInterface> writeToAsync(ContiguousMemoryInterface pContiguousMemory)
+  {
+    ClearCLQueue lQueue = mClearCLContext.getDefaultQueue();
+    return ClearCLEvent.toCompletableFuture(enqueueWriteTo(lQueue,
+                                                           pContiguousMemory),
+                                            pContiguousMemory,
+                                            true);
+  }
+
+  /**
+   * Reads the contents of a CoreMem buffer into this image without blocking,
+   * using the default queue. The CoreMem buffer must not be modified before the
+   * returned future has completed.
+   * 
+   * @param pContiguousMemory
+   *          source CoreMem buffer
+   * @return future completed with this image once the read has finished
+   */
+  public CompletableFuture<ClearCLImage> readFromAsync(ContiguousMemoryInterface pContiguousMemory)
+  {
+    ClearCLQueue lQueue = mClearCLContext.getDefaultQueue();
+    return ClearCLEvent.toCompletableFuture(enqueueReadFrom(lQueue,
+                                                            pContiguousMemory),
+                                            this,
+                                            true);
+  }
+
+  /**
+   * Maps this image into host memory using the default queue, and returns a
+   * CoreMem view of the mapped memory. This call blocks until the image is
+   * mapped. For images allocated with MemAllocMode.AllocateHostPointer or
+   * UseHostPointer, and on devices that share memory with the host, no copy is
+   * involved. Rows and slices of the mapped memory may be padded, their pitches
+   * are returned in the given array. The image must not be used by kernels
+   * while mapped, and the returned memory must not be freed but unmapped.
+   * 
+   * @param pMapAccessType
+   *          host access to map the image for
+   * @param pPitchesInBytes
+   *          array of length two that receives the row pitch and slice pitch
+   *          in bytes, can be null
+   * @return mapped memory
+   */
+  public ContiguousMemoryInterface map(HostAccessType pMapAccessType,
+                                       long[] pPitchesInBytes)
+  {
+    return map(mClearCLContext.getDefaultQueue(),
+               pMapAccessType,
+               Region3.originZero(),
+               Region3.region(getDimensions()),
+               pPitchesInBytes);
+  }
+
+  /**
+   * Maps a region of this image into host memory on a given queue, and returns
+   * a CoreMem view of the mapped memory. This call blocks until the region is
+   * mapped. Rows and slices of the mapped memory may be padded, their pitches
+   * are returned in the given array. The returned memory must not be freed but
+   * unmapped.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pMapAccessType
+   *          host access to map the region for
+   * @param pOrigin
+   *          region origin
+   * @param pRegion
+   *          region dimensions
+   * @param pPitchesInBytes
+   *          array of length two that receives the row pitch and slice pitch
+   *          in bytes, can be null
+   * @param pWaitEvents
+   *          events to wait for before mapping
+   * @return mapped memory
+   */
+  public ContiguousMemoryInterface map(ClearCLQueue pClearCLQueue,
+                                       HostAccessType pMapAccessType,
+                                       long[] pOrigin,
+                                       long[] pRegion,
+                                       long[] pPitchesInBytes,
+                                       ClearCLEvent... pWaitEvents)
+  {
+    if (pMapAccessType.isReadableFromHost()
+        && !getHostAccessType().isReadableFromHost())
+      throw new ClearCLHostAccessException("Image not readable from host");
+
+    if (pMapAccessType.isWritableFromHost()
+        && !getHostAccessType().isWritableFromHost())
+      throw new ClearCLHostAccessException("Image not writable from host");
+
+    long[] lPitchesInBytes = pPitchesInBytes == null ? new long[2]
+                                                     : pPitchesInBytes;
+
+    return getBackend().enqueueMapImage(pClearCLQueue.getPeerPointer(),
+                                        getPeerPointer(),
+                                        pMapAccessType,
+                                        Region3.origin(pOrigin),
+                                        Region3.region(pRegion),
+                                        getPixelSizeInBytes(),
+                                        lPitchesInBytes,
+                                        ClearCLEvent.getPeerPointers(pWaitEvents));
+  }
+
+  /**
+   * Unmaps memory previously mapped from this image, using the default queue.
+   * 
+   * @param pMappedMemory
+   *          mapped memory
+   * @param pBlockingUnmap
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void unmap(ContiguousMemoryInterface pMappedMemory,
+                    boolean pBlockingUnmap)
+  {
+    unmap(mClearCLContext.getDefaultQueue(),
+          pMappedMemory,
+          pBlockingUnmap);
+  }
+
+  /**
+   * Unmaps memory previously mapped from this image, using the default queue.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pMappedMemory
+   *          mapped memory
+   * @param pBlockingUnmap
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void unmap(ClearCLQueue pClearCLQueue,
+                    ContiguousMemoryInterface pMappedMemory,
+                    boolean pBlockingUnmap)
+  {
+    pClearCLQueue.profile("unmapImage",
+                          null,
+                          pMappedMemory.getSizeInBytes(),
+                          getBackend().enqueueUnmap(pClearCLQueue.getPeerPointer(),
+                                                    getPeerPointer(),
+                                                    pMappedMemory,
+                                                    pBlockingUnmap,
+                                                    null,
+                                                    pClearCLQueue.isRecordingEvents()),
+                          false);
+    if (getHostAccessType().isWritableFromHost())
+      notifyListenersOfChange(pClearCLQueue);
+  }
+
+  /**
+   * Enqueues the unmapping of memory previously mapped from this image on a
+   * given queue. The mapped memory must not be accessed anymore, and the
+   * returned event must be closed once not needed anymore.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pMappedMemory
+   *          mapped memory
+   * @param pWaitEvents
+   *          events to wait for before unmapping
+   * @return event associated to this unmap
+   */
+  public ClearCLEvent enqueueUnmap(ClearCLQueue pClearCLQueue,
+                                   ContiguousMemoryInterface pMappedMemory,
+                                   ClearCLEvent... pWaitEvents)
+  {
+    ClearCLPeerPointer lEventPeerPointer =
+                                         getBackend().enqueueUnmap(pClearCLQueue.getPeerPointer(),
+                                                                   getPeerPointer(),
+                                                                   pMappedMemory,
+                                                                   false,
+                                                                   ClearCLEvent.getPeerPointers(pWaitEvents),
+                                                                   true);
+    if (getHostAccessType().isWritableFromHost())
+      notifyListenersOfChange(pClearCLQueue);
+    pClearCLQueue.profile("unmapImage",
+                          null,
+                          pMappedMemory.getSizeInBytes(),
+                          lEventPeerPointer,
+                          true);
+    return new ClearCLEvent(pClearCLQueue, lEventPeerPointer);
+  }
+
   /**
    * Returns the context for this image.
    * 
@@ -1070,8 +1896,18 @@ public class ClearCLImage extends ClearCLMemBase implements
   {
     if (getPeerPointer() != null)
     {
-      getBackend().releaseImage(getPeerPointer());
+      synchronized (this)
+      {
+        if (mFragmentedImageTransfer != null)
+        {
+          mFragmentedImageTransfer.close();
+          mFragmentedImageTransfer = null;
+        }
+      }
+      mClearCLContext.getMemoryAllocator()
+                     .releaseImage(getPeerPointer());
       setPeerPointer(null);
+      mClearCLContext.countLiveImages(-1, getSizeInBytes());
     }
   }
 
@@ -1,7 +1,10 @@
 package clearcl;
 
+import java.nio.ByteOrder;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -9,11 +12,16 @@ import java.util.regex.Pattern;
 import clearcl.abs.ClearCLBase;
 import clearcl.exceptions.ClearCLArgumentMissingException;
 import clearcl.exceptions.ClearCLException;
+import clearcl.exceptions.ClearCLIllegalArgumentException;
 import clearcl.exceptions.ClearCLInvalidExecutionRange;
 import clearcl.exceptions.ClearCLUnknownArgumentNameException;
 import clearcl.interfaces.ClearCLImageInterface;
+import clearcl.metrics.ClearCLMetrics;
+import clearcl.metrics.Counter;
+import clearcl.profiling.LatencyHistogram;
 import clearcl.util.ElapsedTime;
 import coremem.enums.NativeTypeEnum;
+import coremem.util.Size;
 
 /**
  * ClearCLKernel is the ClearCL abstraction for OpenCL kernels.
@@ -22,23 +30,8 @@ import coremem.enums.NativeTypeEnum;
  */
 public class ClearCLKernel extends ClearCLBase implements Runnable
 {
-
-  private class Argument
-  {
-    public Object argument;
-
-    public Argument(final Object pObject)
-    {
-      argument = pObject;
-    }
-
-    @Override
-    public String toString()
-    {
-      return String.format("Arg[%s]", argument);
-    }
-
-  }
+  private static final boolean cLittleEndian =
+                                             ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
 
   private final ClearCLContext mClearCLContext;
   private final ClearCLProgram mClearCLProgram;
@@ -46,11 +39,16 @@ public class ClearCLKernel extends ClearCLBase implements Runnable
   private final String mSourceCode;
 
   private final ConcurrentHashMap<String, Integer> mNameToIndexMap;
-  private final ConcurrentHashMap<Integer, Argument> mIndexToArgumentMap =
-                                                                         new ConcurrentHashMap<>();
-  private final ConcurrentHashMap<String, Number> mDefaultArgumentsMap;
-  private final ConcurrentHashMap<Integer, Boolean> mUpdatedArgumentsMap =
-                                                                         new ConcurrentHashMap<>();
+  private final String[] mArgumentNames;
+  private final Object[] mArguments;
+  private final NativeTypeEnum[] mPrimitiveArgumentTypes;
+  private final int[] mPrimitiveArgumentLengths;
+  private final long[] mPrimitiveArgumentBits;
+  private final Number[] mDefaultArguments;
+  private final BitSet mUpdatedArguments;
+
+  private final Counter mLaunchCounter;
+  private final LatencyHistogram mEnqueueLatencyHistogram;
 
   private volatile boolean mArgumentCaching = true;
 
@@ -85,8 +83,37 @@ public class ClearCLKernel extends ClearCLBase implements Runnable
     mName = pKernelName;
     mSourceCode = pSourceCode;
 
+    mLaunchCounter = ClearCLMetrics.getCounter("kernel." + pKernelName
+                                               + ".launches");
+    mEnqueueLatencyHistogram =
+                             ClearCLMetrics.getHistogram("kernel."
+                                                         + pKernelName
+                                                         + ".enqueue");
+
     mNameToIndexMap = getKernelIndexMap(pKernelName);
-    mDefaultArgumentsMap = getKernelDefaultArgumentsMap(pKernelName);
+
+    final int lNumberOfArguments = mNameToIndexMap.size();
+    mArgumentNames = new String[lNumberOfArguments];
+    mArguments = new Object[lNumberOfArguments];
+    mPrimitiveArgumentTypes = new NativeTypeEnum[lNumberOfArguments];
+    mPrimitiveArgumentLengths = new int[lNumberOfArguments];
+    mPrimitiveArgumentBits = new long[2 * lNumberOfArguments];
+    mDefaultArguments = new Number[lNumberOfArguments];
+    mUpdatedArguments = new BitSet(lNumberOfArguments);
+
+    final ConcurrentHashMap<String, Number> lDefaultArgumentsMap =
+                                                                 getKernelDefaultArgumentsMap(pKernelName);
+    for (final Map.Entry<String, Integer> lEntry : mNameToIndexMap.entrySet())
+    {
+      final String lArgumentName = lEntry.getKey();
+      final int lArgumentIndex = lEntry.getValue();
+      mArgumentNames[lArgumentIndex] = lArgumentName;
+      mDefaultArguments[lArgumentIndex] =
+                                        lDefaultArgumentsMap.get(lArgumentName);
+    }
+
+    // all arguments need to be sent at least once:
+    mUpdatedArguments.set(0, lNumberOfArguments);
   }
 
   /**
@@ -210,12 +237,14 @@ public class ClearCLKernel extends ClearCLBase implements Runnable
    */
   public void clearArguments()
   {
-    mIndexToArgumentMap.clear();
-    mUpdatedArgumentsMap.clear();
+    Arrays.fill(mArguments, null);
+    Arrays.fill(mPrimitiveArgumentTypes, null);
+    mUpdatedArguments.set(0, mArguments.length);
   }
 
   /**
-   * Sets argument for a given argument index.
+   * Sets argument for a given argument index. Boxed primitive values are
+   * unboxed and handled like the corresponding primitive argument.
    * 
    * @param pIndex
    *          argument index
@@ -224,27 +253,250 @@ public class ClearCLKernel extends ClearCLBase implements Runnable
    */
   public void setArgument(final int pIndex, final Object pObject)
   {
+    if (pObject instanceof Float)
+      setArgument(pIndex, ((Float) pObject).floatValue());
+    else if (pObject instanceof Integer)
+      setArgument(pIndex, ((Integer) pObject).intValue());
+    else if (pObject instanceof Double)
+      setArgument(pIndex, ((Double) pObject).doubleValue());
+    else if (pObject instanceof Long)
+      setArgument(pIndex, ((Long) pObject).longValue());
+    else if (pObject instanceof Short)
+      setArgument(pIndex, ((Short) pObject).shortValue());
+    else if (pObject instanceof Byte)
+      setArgument(pIndex, ((Byte) pObject).byteValue());
+    else if (pObject instanceof Character)
+      setArgument(pIndex, ((Character) pObject).charValue());
+    else
+      setObjectArgument(pIndex, pObject);
+  }
 
-    if (isArgumentCaching())
-    {
-      Argument lExistingArgumentValue =
-                                      mIndexToArgumentMap.get(pIndex);
+  /**
+   * Sets a byte argument for a given argument index.
+   * 
+   * @param pIndex
+   *          argument index
+   * @param pValue
+   *          value
+   */
+  public void setArgument(final int pIndex, final byte pValue)
+  {
+    setPrimitiveArgument(pIndex,
+                         NativeTypeEnum.Byte,
+                         1,
+                         toBits(pValue, 1, 0),
+                         0);
+  }
 
-      if (lExistingArgumentValue == null
-          || lExistingArgumentValue.argument == null
-          || lExistingArgumentValue.argument != pObject
-          || !lExistingArgumentValue.argument.equals(pObject))
-      {
-        mUpdatedArgumentsMap.put(pIndex, true);
-      }
-    }
+  /**
+   * Sets a short argument for a given argument index.
+   * 
+   * @param pIndex
+   *          argument index
+   * @param pValue
+   *          value
+   */
+  public void setArgument(final int pIndex, final short pValue)
+  {
+    setPrimitiveArgument(pIndex,
+                         NativeTypeEnum.Short,
+                         1,
+                         toBits(pValue, 2, 0),
+                         0);
+  }
+
+  /**
+   * Sets a char argument for a given argument index. Java chars are passed as
+   * 16 bit unsigned integers (OpenCL ushort).
+   * 
+   * @param pIndex
+   *          argument index
+   * @param pValue
+   *          value
+   */
+  public void setArgument(final int pIndex, final char pValue)
+  {
+    setPrimitiveArgument(pIndex,
+                         NativeTypeEnum.UnsignedShort,
+                         1,
+                         toBits(pValue, 2, 0),
+                         0);
+  }
+
+  /**
+   * Sets an int argument for a given argument index.
+   * 
+   * @param pIndex
+   *          argument index
+   * @param pValue
+   *          value
+   */
+  public void setArgument(final int pIndex, final int pValue)
+  {
+    setPrimitiveArgument(pIndex,
+                         NativeTypeEnum.Int,
+                         1,
+                         toBits(pValue, 4, 0),
+                         0);
+  }
+
+  /**
+   * Sets a long argument for a given argument index.
+   * 
+   * @param pIndex
+   *          argument index
+   * @param pValue
+   *          value
+   */
+  public void setArgument(final int pIndex, final long pValue)
+  {
+    setPrimitiveArgument(pIndex, NativeTypeEnum.Long, 1, pValue, 0);
+  }
+
+  /**
+   * Sets a float argument for a given argument index.
+   * 
+   * @param pIndex
+   *          argument index
+   * @param pValue
+   *          value
+   */
+  public void setArgument(final int pIndex, final float pValue)
+  {
+    setPrimitiveArgument(pIndex,
+                         NativeTypeEnum.Float,
+                         1,
+                         toBits(Float.floatToRawIntBits(pValue), 4, 0),
+                         0);
+  }
+
+  /**
+   * Sets a double argument for a given argument index.
+   * 
+   * @param pIndex
+   *          argument index
+   * @param pValue
+   *          value
+   */
+  public void setArgument(final int pIndex, final double pValue)
+  {
+    setPrimitiveArgument(pIndex,
+                         NativeTypeEnum.Double,
+                         1,
+                         Double.doubleToRawLongBits(pValue),
+                         0);
+  }
+
+  /**
+   * Sets a float4 vector argument for a given argument index.
+   * 
+   * @param pIndex
+   *          argument index
+   * @param pX
+   *          x component
+   * @param pY
+   *          y component
+   * @param pZ
+   *          z component
+   * @param pW
+   *          w component
+   */
+  public void setArgument(final int pIndex,
+                          final float pX,
+                          final float pY,
+                          final float pZ,
+                          final float pW)
+  {
+    setPrimitiveArgument(pIndex,
+                         NativeTypeEnum.Float,
+                         4,
+                         toBits(Float.floatToRawIntBits(pX), 4, 0)
+                            | toBits(Float.floatToRawIntBits(pY), 4, 4),
+                         toBits(Float.floatToRawIntBits(pZ), 4, 0)
+                            | toBits(Float.floatToRawIntBits(pW), 4, 4));
+  }
+
+  /**
+   * Sets an int4 vector argument for a given argument index.
+   * 
+   * @param pIndex
+   *          argument index
+   * @param pX
+   *          x component
+   * @param pY
+   *          y component
+   * @param pZ
+   *          z component
+   * @param pW
+   *          w component
+   */
+  public void setArgument(final int pIndex,
+                          final int pX,
+                          final int pY,
+                          final int pZ,
+                          final int pW)
+  {
+    setPrimitiveArgument(pIndex,
+                         NativeTypeEnum.Int,
+                         4,
+                         toBits(pX, 4, 0) | toBits(pY, 4, 4),
+                         toBits(pZ, 4, 0) | toBits(pW, 4, 4));
+  }
+
+  private void setObjectArgument(final int pIndex, final Object pObject)
+  {
+    checkArgumentIndex(pIndex);
+
+    final Object lExistingArgument = mArguments[pIndex];
+    final boolean lUnchanged = mPrimitiveArgumentTypes[pIndex] == null
+                               && (lExistingArgument == pObject
+                                   || (lExistingArgument != null
+                                       && lExistingArgument.equals(pObject)));
+
+    if (!isArgumentCaching() || !lUnchanged)
+      mUpdatedArguments.set(pIndex);
+
+    mArguments[pIndex] = pObject;
+    mPrimitiveArgumentTypes[pIndex] = null;
+  }
 
-    mIndexToArgumentMap.put(pIndex, new Argument(pObject));
+  private void setPrimitiveArgument(final int pIndex,
+                                    final NativeTypeEnum pNativeTypeEnum,
+                                    final int pLength,
+                                    final long pLowBits,
+                                    final long pHighBits)
+  {
+    checkArgumentIndex(pIndex);
+
+    final boolean lUnchanged =
+                             mPrimitiveArgumentTypes[pIndex] == pNativeTypeEnum
+                               && mPrimitiveArgumentLengths[pIndex] == pLength
+                               && mPrimitiveArgumentBits[2 * pIndex] == pLowBits
+                               && mPrimitiveArgumentBits[2 * pIndex
+                                                         + 1] == pHighBits;
+
+    if (!isArgumentCaching() || !lUnchanged)
+      mUpdatedArguments.set(pIndex);
+
+    mArguments[pIndex] = null;
+    mPrimitiveArgumentTypes[pIndex] = pNativeTypeEnum;
+    mPrimitiveArgumentLengths[pIndex] = pLength;
+    mPrimitiveArgumentBits[2 * pIndex] = pLowBits;
+    mPrimitiveArgumentBits[2 * pIndex + 1] = pHighBits;
+  }
 
+  private void checkArgumentIndex(final int pIndex)
+  {
+    if (pIndex < 0 || pIndex >= mArguments.length)
+      throw new ClearCLIllegalArgumentException(String.format("invalid argument index %d for kernel '%s' with %d arguments",
+                                                              pIndex,
+                                                              getName(),
+                                                              mArguments.length));
   }
 
   /**
-   * Return argument value for a given argument index.
+   * Return argument value for a given argument index. Primitive arguments are
+   * returned boxed, and vector arguments as arrays.
    * 
    * @param pIndex
    *          argument index
@@ -253,7 +505,84 @@ public class ClearCLKernel extends ClearCLBase implements Runnable
    */
   public Object getArgument(final int pIndex)
   {
-    return mIndexToArgumentMap.get(pIndex).argument;
+    if (mPrimitiveArgumentTypes[pIndex] != null)
+      return getPrimitiveArgument(pIndex);
+    return mArguments[pIndex];
+  }
+
+  private Object getPrimitiveArgument(final int pIndex)
+  {
+    final long lLowBits = mPrimitiveArgumentBits[2 * pIndex];
+    final long lHighBits = mPrimitiveArgumentBits[2 * pIndex + 1];
+    final boolean lVector = mPrimitiveArgumentLengths[pIndex] > 1;
+
+    switch (mPrimitiveArgumentTypes[pIndex])
+    {
+    case Byte:
+      return (byte) fromBits(lLowBits, 1, 0);
+    case Short:
+      return (short) fromBits(lLowBits, 2, 0);
+    case UnsignedShort:
+      return (char) fromBits(lLowBits, 2, 0);
+    case Int:
+      if (lVector)
+        return new int[]
+        { (int) fromBits(lLowBits, 4, 0),
+          (int) fromBits(lLowBits, 4, 4),
+          (int) fromBits(lHighBits, 4, 0),
+          (int) fromBits(lHighBits, 4, 4) };
+      return (int) fromBits(lLowBits, 4, 0);
+    case Long:
+      return lLowBits;
+    case Float:
+      if (lVector)
+        return new float[]
+        { Float.intBitsToFloat((int) fromBits(lLowBits, 4, 0)),
+          Float.intBitsToFloat((int) fromBits(lLowBits, 4, 4)),
+          Float.intBitsToFloat((int) fromBits(lHighBits, 4, 0)),
+          Float.intBitsToFloat((int) fromBits(lHighBits, 4, 4)) };
+      return Float.intBitsToFloat((int) fromBits(lLowBits, 4, 0));
+    case Double:
+      return Double.longBitsToDouble(lLowBits);
+    default:
+      return null;
+    }
+  }
+
+  /**
+   * Places a value of a given size at a given byte offset within a 64 bit word,
+   * such that it ends up at that offset when the word is written to memory in
+   * host byte order.
+   * 
+   * @param pValue
+   *          value
+   * @param pSizeInBytes
+   *          value size in bytes
+   * @param pByteOffset
+   *          byte offset within word
+   * @return bits
+   */
+  private static long toBits(final long pValue,
+                             final int pSizeInBytes,
+                             final int pByteOffset)
+  {
+    final long lMask = (1L << (8 * pSizeInBytes)) - 1;
+    return (pValue & lMask) << getShift(pSizeInBytes, pByteOffset);
+  }
+
+  private static long fromBits(final long pBits,
+                               final int pSizeInBytes,
+                               final int pByteOffset)
+  {
+    final long lMask = (1L << (8 * pSizeInBytes)) - 1;
+    return (pBits >>> getShift(pSizeInBytes, pByteOffset)) & lMask;
+  }
+
+  private static int getShift(final int pSizeInBytes,
+                              final int pByteOffset)
+  {
+    return cLittleEndian ? 8 * pByteOffset
+                         : 64 - 8 * (pByteOffset + pSizeInBytes);
   }
 
   /**
@@ -294,6 +623,224 @@ public class ClearCLKernel extends ClearCLBase implements Runnable
     setArgument(lArgumentIndex, pObject);
   }
 
+  /**
+   * Sets a byte argument for a given argument name. If argument is
+   * unknown for kernel, an exception is thrown.
+   * 
+   * @param pArgumentName
+   *          argument name
+   * @param pValue
+   *          value
+   */
+  public void setArgument(final String pArgumentName,
+                          final byte pValue)
+  {
+    final Integer lArgumentIndex = mNameToIndexMap.get(pArgumentName);
+
+    if (lArgumentIndex == null)
+      throw new ClearCLUnknownArgumentNameException(this,
+                                                    pArgumentName,
+                                                    pValue);
+
+    setArgument(lArgumentIndex.intValue(), pValue);
+  }
+
+  /**
+   * Sets a short argument for a given argument name. If argument is
+   * unknown for kernel, an exception is thrown.
+   * 
+   * @param pArgumentName
+   *          argument name
+   * @param pValue
+   *          value
+   */
+  public void setArgument(final String pArgumentName,
+                          final short pValue)
+  {
+    final Integer lArgumentIndex = mNameToIndexMap.get(pArgumentName);
+
+    if (lArgumentIndex == null)
+      throw new ClearCLUnknownArgumentNameException(this,
+                                                    pArgumentName,
+                                                    pValue);
+
+    setArgument(lArgumentIndex.intValue(), pValue);
+  }
+
+  /**
+   * Sets a char argument for a given argument name. If argument is
+   * unknown for kernel, an exception is thrown.
+   * 
+   * @param pArgumentName
+   *          argument name
+   * @param pValue
+   *          value
+   */
+  public void setArgument(final String pArgumentName,
+                          final char pValue)
+  {
+    final Integer lArgumentIndex = mNameToIndexMap.get(pArgumentName);
+
+    if (lArgumentIndex == null)
+      throw new ClearCLUnknownArgumentNameException(this,
+                                                    pArgumentName,
+                                                    pValue);
+
+    setArgument(lArgumentIndex.intValue(), pValue);
+  }
+
+  /**
+   * Sets an int argument for a given argument name. If argument is
+   * unknown for kernel, an exception is thrown.
+   * 
+   * @param pArgumentName
+   *          argument name
+   * @param pValue
+   *          value
+   */
+  public void setArgument(final String pArgumentName,
+                          final int pValue)
+  {
+    final Integer lArgumentIndex = mNameToIndexMap.get(pArgumentName);
+
+    if (lArgumentIndex == null)
+      throw new ClearCLUnknownArgumentNameException(this,
+                                                    pArgumentName,
+                                                    pValue);
+
+    setArgument(lArgumentIndex.intValue(), pValue);
+  }
+
+  /**
+   * Sets a long argument for a given argument name. If argument is
+   * unknown for kernel, an exception is thrown.
+   * 
+   * @param pArgumentName
+   *          argument name
+   * @param pValue
+   *          value
+   */
+  public void setArgument(final String pArgumentName,
+                          final long pValue)
+  {
+    final Integer lArgumentIndex = mNameToIndexMap.get(pArgumentName);
+
+    if (lArgumentIndex == null)
+      throw new ClearCLUnknownArgumentNameException(this,
+                                                    pArgumentName,
+                                                    pValue);
+
+    setArgument(lArgumentIndex.intValue(), pValue);
+  }
+
+  /**
+   * Sets a float argument for a given argument name. If argument is
+   * unknown for kernel, an exception is thrown.
+   * 
+   * @param pArgumentName
+   *          argument name
+   * @param pValue
+   *          value
+   */
+  public void setArgument(final String pArgumentName,
+                          final float pValue)
+  {
+    final Integer lArgumentIndex = mNameToIndexMap.get(pArgumentName);
+
+    if (lArgumentIndex == null)
+      throw new ClearCLUnknownArgumentNameException(this,
+                                                    pArgumentName,
+                                                    pValue);
+
+    setArgument(lArgumentIndex.intValue(), pValue);
+  }
+
+  /**
+   * Sets a double argument for a given argument name. If argument is
+   * unknown for kernel, an exception is thrown.
+   * 
+   * @param pArgumentName
+   *          argument name
+   * @param pValue
+   *          value
+   */
+  public void setArgument(final String pArgumentName,
+                          final double pValue)
+  {
+    final Integer lArgumentIndex = mNameToIndexMap.get(pArgumentName);
+
+    if (lArgumentIndex == null)
+      throw new ClearCLUnknownArgumentNameException(this,
+                                                    pArgumentName,
+                                                    pValue);
+
+    setArgument(lArgumentIndex.intValue(), pValue);
+  }
+
+  /**
+   * Sets a float4 vector argument for a given argument name. If argument is
+   * unknown for kernel, an exception is thrown.
+   * 
+   * @param pArgumentName
+   *          argument name
+   * @param pX
+   *          x component
+   * @param pY
+   *          y component
+   * @param pZ
+   *          z component
+   * @param pW
+   *          w component
+   */
+  public void setArgument(final String pArgumentName,
+                          final float pX,
+                          final float pY,
+                          final float pZ,
+                          final float pW)
+  {
+    final Integer lArgumentIndex = mNameToIndexMap.get(pArgumentName);
+
+    if (lArgumentIndex == null)
+      throw new ClearCLUnknownArgumentNameException(this,
+                                                    pArgumentName,
+                                                    Arrays.toString(new float[]
+                                                    { pX, pY, pZ, pW }));
+
+    setArgument(lArgumentIndex, pX, pY, pZ, pW);
+  }
+
+  /**
+   * Sets an int4 vector argument for a given argument name. If argument is
+   * unknown for kernel, an exception is thrown.
+   * 
+   * @param pArgumentName
+   *          argument name
+   * @param pX
+   *          x component
+   * @param pY
+   *          y component
+   * @param pZ
+   *          z component
+   * @param pW
+   *          w component
+   */
+  public void setArgument(final String pArgumentName,
+                          final int pX,
+                          final int pY,
+                          final int pZ,
+                          final int pW)
+  {
+    final Integer lArgumentIndex = mNameToIndexMap.get(pArgumentName);
+
+    if (lArgumentIndex == null)
+      throw new ClearCLUnknownArgumentNameException(this,
+                                                    pArgumentName,
+                                                    Arrays.toString(new int[]
+                                                    { pX, pY, pZ, pW }));
+
+    setArgument(lArgumentIndex, pX, pY, pZ, pW);
+  }
+
   /**
    * Return argument value for a given argument name.
    * 
@@ -312,7 +859,7 @@ public class ClearCLKernel extends ClearCLBase implements Runnable
                                                     pArgumentName,
                                                     null);
 
-    return mIndexToArgumentMap.get(lArgumentIndex).argument;
+    return getArgument(lArgumentIndex);
   }
 
   /**
@@ -356,80 +903,69 @@ public class ClearCLKernel extends ClearCLBase implements Runnable
   }
 
   /**
-   * Sets the arguments on the OpenCL side
+   * Sets the arguments on the OpenCL side. When argument caching is on, only
+   * arguments that have been updated since the last submission are sent.
    */
   private void setArgumentsInternal()
   {
-    // System.out.println("kernel:" + this.toString());
-
-    for (final Map.Entry<String, Integer> lEntry : mNameToIndexMap.entrySet())
+    if (isArgumentCaching())
     {
-      final String lArgumentName = lEntry.getKey();
-      final Integer lArgumentIndex = lEntry.getValue();
-
-      if (!isArgumentCaching()
-          || mUpdatedArgumentsMap.get(lArgumentIndex) == null
-          || mUpdatedArgumentsMap.get(lArgumentIndex))
-        try
-        {
-
-          Argument lArgument =
-                             mIndexToArgumentMap.get(lArgumentIndex);
-
-          /*System.out.format("Updated or new: index: %d, arg name: %s, arg: '%s' \n",
-                            lArgumentIndex,
-                            lArgumentName,
-                            lArgument == null ? "default~"
-                                                + mDefaultArgumentsMap.get(lArgumentName)
-                                              : lArgument.argument);/**/
-
-          if (lArgument == null)
-          {
-            final Number lDefaultValue =
-                                       mDefaultArgumentsMap.get(lArgumentName);
-            if (lDefaultValue != null)
-              lArgument = new Argument(lDefaultValue);
-          }
-
-          if (lArgument == null)
-            throw new ClearCLArgumentMissingException(this,
-                                                      lArgumentName,
-                                                      lArgumentIndex);
-
-          if (lArgument.argument instanceof ClearCLLocalMemory)
-          {
-            // TODO: why do we need lLocalMemory for ?
-            @SuppressWarnings("unused")
-            final ClearCLLocalMemory lLocalMemory =
-                                                  (ClearCLLocalMemory) lArgument.argument;
-            getBackend().setKernelArgument(this.getPeerPointer(),
-                                           lArgumentIndex,
-                                           lArgument.argument);/**/
-
-          }
-          else
-          {
-            getBackend().setKernelArgument(this.getPeerPointer(),
-                                           lArgumentIndex,
-                                           lArgument.argument);/**/
-          }
-
-          mUpdatedArgumentsMap.put(lArgumentIndex, false);
-        }
-        catch (final Throwable e)
-        {
-          throw new ClearCLException(String.format("problem while setting argument '%s' at index %d \n",
-                                                   lArgumentName,
-                                                   lArgumentIndex),
-                                     e);
-        }
-      /*else
-        System.out.format("Not updated: index: %d, arg name: %s, arg: '%s' \n",
-                          lArgumentIndex,
-                          lArgumentName,
-                          mIndexToArgumentMap.get(lArgumentIndex));/**/
+      int lArgumentIndex = mUpdatedArguments.nextSetBit(0);
+      while (lArgumentIndex >= 0)
+      {
+        setArgumentInternal(lArgumentIndex);
+        lArgumentIndex = mUpdatedArguments.nextSetBit(lArgumentIndex + 1);
+      }
     }
+    else
+    {
+      for (int i = 0; i < mArguments.length; i++)
+        setArgumentInternal(i);
+    }
+  }
 
+  private void setArgumentInternal(final int pArgumentIndex)
+  {
+    try
+    {
+      final NativeTypeEnum lPrimitiveType =
+                                          mPrimitiveArgumentTypes[pArgumentIndex];
+      if (lPrimitiveType != null)
+      {
+        getBackend().setKernelArgument(this.getPeerPointer(),
+                                       pArgumentIndex,
+                                       Size.of(lPrimitiveType)
+                                                       * mPrimitiveArgumentLengths[pArgumentIndex],
+                                       mPrimitiveArgumentBits[2 * pArgumentIndex],
+                                       mPrimitiveArgumentBits[2 * pArgumentIndex
+                                                              + 1]);
+        mUpdatedArguments.clear(pArgumentIndex);
+        return;
+      }
+
+      Object lArgument = mArguments[pArgumentIndex];
+
+      if (lArgument == null)
+        lArgument = mDefaultArguments[pArgumentIndex];
+
+      if (lArgument == null)
+        throw new ClearCLArgumentMissingException(this,
+                                                  mArgumentNames[pArgumentIndex],
+                                                  pArgumentIndex);
+
+      getBackend().setKernelArgument(this.getPeerPointer(),
+                                     pArgumentIndex,
+                                     lArgument);
+
+      mUpdatedArguments.clear(pArgumentIndex);
+    }
+    catch (final Throwable e)
+    {
+      throw new ClearCLException(String.format("problem while setting argument '%s' at index %d \n",
+                                               mArgumentNames[pArgumentIndex],
+                                               pArgumentIndex),
+                                 e);
+    }
   }
 
   /**
@@ -468,31 +1004,112 @@ public class ClearCLKernel extends ClearCLBase implements Runnable
   public void run(final ClearCLQueue pClearCLQueue,
                   final boolean pWaitToFinish)
   {
+    // the closure and description are only needed when times are logged:
+    if (isLogExecutionTime() && ElapsedTime.sStandardOutput)
+      ElapsedTime.measure("kernel " + getName(),
+                          () -> runInternal(pClearCLQueue,
+                                            pWaitToFinish));
+    else
+      runInternal(pClearCLQueue, pWaitToFinish);
+  }
 
-    ElapsedTime.measure(isLogExecutionTime(),
-                        "kernel " + getName(),
-                        () -> {
+  private void runInternal(final ClearCLQueue pClearCLQueue,
+                           final boolean pWaitToFinish)
+  {
+    enqueueInternal(pClearCLQueue, null, false);
 
-                          setArgumentsInternal();
-                          if (getGlobalSizes() == null
-                              || getGlobalOffsets() == null)
-                            throw new ClearCLInvalidExecutionRange(String.format("global offset = %s, global range = %s, local range = %s",
-                                                                                 Arrays.toString(getGlobalOffsets()),
-                                                                                 Arrays.toString(getGlobalSizes()),
-                                                                                 Arrays.toString(getLocalSizes())));
+    if (pWaitToFinish)
+      pClearCLQueue.waitToFinish();
+  }
 
-                          getBackend().enqueueKernelExecution(pClearCLQueue.getPeerPointer(),
-                                                              getPeerPointer(),
-                                                              getGlobalSizes().length,
-                                                              getGlobalOffsets(),
-                                                              getGlobalSizes(),
-                                                              getLocalSizes());
+  /**
+   * Enqueues kernel execution for current set of arguments on provided queue.
+   * This call is non-blocking, the returned event can be used to wait for this
+   * kernel to finish or be passed to subsequent enqueue calls. The kernel
+   * execution will start only after all given events have completed. The
+   * returned event must be closed once not needed anymore.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pWaitEvents
+   *          events to wait for before execution
+   * @return event associated to this kernel execution
+   */
+  public ClearCLEvent enqueue(final ClearCLQueue pClearCLQueue,
+                              final ClearCLEvent... pWaitEvents)
+  {
+    ClearCLPeerPointer lEventPeerPointer =
+                                         enqueueInternal(pClearCLQueue,
+                                                         ClearCLEvent.getPeerPointers(pWaitEvents),
+                                                         true);
+    return new ClearCLEvent(pClearCLQueue, lEventPeerPointer);
+  }
 
-                          if (pWaitToFinish)
-                            pClearCLQueue.waitToFinish();
+  /**
+   * Executes kernel for current set of arguments on default queue without
+   * blocking. The returned future is completed from an OpenCL event callback
+   * once the kernel has finished.
+   * 
+   * @return future completed with this kernel once execution has finished
+   */
+  public CompletableFuture<ClearCLKernel> runAsync()
+  {
+    return runAsync(mClearCLContext.getDefaultQueue());
+  }
+
+  /**
+   * Executes kernel for current set of arguments on provided queue without
+   * blocking. The kernel execution starts only after all given events have
+   * completed. The returned future is completed from an OpenCL event callback
+   * once the kernel has finished.
+   * 
+   * @param pClearCLQueue
+   *          queue
+   * @param pWaitEvents
+   *          events to wait for before execution
+   * @return future completed with this kernel once execution has finished
+   */
+  public CompletableFuture<ClearCLKernel> runAsync(final ClearCLQueue pClearCLQueue,
+                                                   final ClearCLEvent... pWaitEvents)
+  {
+    return ClearCLEvent.toCompletableFuture(enqueue(pClearCLQueue,
+                                                    pWaitEvents),
+                                            this,
+                                            true);
+  }
 
-                        });
+  private ClearCLPeerPointer enqueueInternal(final ClearCLQueue pClearCLQueue,
+                                             final ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                             final boolean pReturnEvent)
+  {
+    setArgumentsInternal();
+    if (getGlobalSizes() == null || getGlobalOffsets() == null)
+      throw new ClearCLInvalidExecutionRange(String.format("global offset = %s, global range = %s, local range = %s",
+                                                           Arrays.toString(getGlobalOffsets()),
+                                                           Arrays.toString(getGlobalSizes()),
+                                                           Arrays.toString(getLocalSizes())));
+
+    boolean lRecordMetrics = ClearCLMetrics.sEnabled;
+    long lEnqueueStartNanos = lRecordMetrics ? System.nanoTime() : 0;
+
+    ClearCLPeerPointer lEventPeerPointer =
+                                         getBackend().enqueueKernelExecution(pClearCLQueue.getPeerPointer(),
+                                                                             getPeerPointer(),
+                                                                             getGlobalSizes().length,
+                                                                             getGlobalOffsets(),
+                                                                             getGlobalSizes(),
+                                                                             getLocalSizes(),
+                                                                             pWaitEventPeerPointers,
+                                                                             pReturnEvent || pClearCLQueue.isRecordingEvents());
+
+    if (lRecordMetrics)
+    {
+      mEnqueueLatencyHistogram.record(System.nanoTime()
+                                      - lEnqueueStartNanos);
+      mLaunchCounter.increment();
+    }
 
+    return pClearCLQueue.profile(this, lEventPeerPointer, pReturnEvent);
   }
 
   @Override
@@ -657,7 +1274,9 @@ public class ClearCLKernel extends ClearCLBase implements Runnable
   }
 
   /**
-   * Returns true if execution times for this kernel should be logged.
+   * Returns true if execution times for this kernel should be logged. Times are
+   * only measured if standard output logging is also enabled in
+   * {@link ElapsedTime}.
    * 
    * @return true if logging on.
    */
@@ -9,6 +9,7 @@ package clearcl;
 public class ClearCLPeerPointer
 {
   private final Object mPointer;
+  private volatile Object mArgumentPointer;
 
   /**
    * Creates a peer pointer from a backend internal pointer-wrapping object.
@@ -32,4 +33,28 @@ public class ClearCLPeerPointer
     return mPointer;
   }
 
+  /**
+   * Returns the backend-internal object used to pass this pointer as a kernel
+   * argument, or null if none has been set yet. Backends cache it here so that
+   * setting memory objects as kernel arguments does not allocate.
+   * 
+   * @return kernel argument pointer object or null
+   */
+  public Object getArgumentPointer()
+  {
+    return mArgumentPointer;
+  }
+
+  /**
+   * Sets the backend-internal object used to pass this pointer as a kernel
+   * argument.
+   * 
+   * @param pArgumentPointer
+   *          kernel argument pointer object
+   */
+  public void setArgumentPointer(Object pArgumentPointer)
+  {
+    mArgumentPointer = pArgumentPointer;
+  }
+
 }
@@ -5,13 +5,18 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 
 import clearcl.abs.ClearCLBase;
 import clearcl.enums.BuildStatus;
 import clearcl.enums.ImageChannelDataType;
+import clearcl.exceptions.ClearCLException;
 import clearcl.exceptions.ClearCLProgramNotBuiltException;
+import clearcl.metrics.ClearCLMetrics;
 import clearcl.ocllib.OCLlib;
+import clearcl.util.ProgramBinaryCache;
 import clearcl.util.StringUtils;
 
 /**
@@ -33,6 +38,7 @@ public class ClearCLProgram extends ClearCLBase
 
   private volatile boolean mModified = true;
   private volatile String mLastBuiltSourceCode;
+  private volatile CompletableFuture<BuildStatus> mBuildFuture;
   private ConcurrentHashMap<String, ClearCLKernel> mKernelCache =
                                                                 new ConcurrentHashMap<String, ClearCLKernel>();
 
@@ -330,15 +336,87 @@ public class ClearCLProgram extends ClearCLBase
     return lBuildStatus;
   }
 
+  /**
+   * Builds this program asynchronously on the context's program builder
+   * executor, and logs any errors on the stdout. See {@link #buildAsync()}.
+   * 
+   * @return future build status
+   */
+  public CompletableFuture<BuildStatus> buildAndLogAsync()
+  {
+    return buildAsync(true);
+  }
+
+  /**
+   * Builds this program asynchronously on the context's program builder
+   * executor. Independent programs are thus built concurrently. Kernel creation
+   * waits for the pending build to finish, so it is safe to start building
+   * programs in constructors and to only create kernels on first use.
+   * 
+   * @return future build status
+   */
+  public CompletableFuture<BuildStatus> buildAsync()
+  {
+    return buildAsync(false);
+  }
+
+  private CompletableFuture<BuildStatus> buildAsync(boolean pLog)
+  {
+    CompletableFuture<BuildStatus> lBuildFuture =
+                                                CompletableFuture.supplyAsync(() -> buildUnchecked(pLog),
+                                                                              mContext.getProgramBuilderExecutor());
+    mBuildFuture = lBuildFuture;
+    return lBuildFuture;
+  }
+
+  private BuildStatus buildUnchecked(boolean pLog)
+  {
+    try
+    {
+      return pLog ? buildAndLog() : build();
+    }
+    catch (IOException e)
+    {
+      throw new CompletionException(e);
+    }
+  }
+
+  /**
+   * Waits for a pending asynchronous build to finish, if any.
+   * 
+   * @return build status
+   */
+  public BuildStatus waitForBuild()
+  {
+    CompletableFuture<BuildStatus> lBuildFuture = mBuildFuture;
+    if (lBuildFuture != null)
+      try
+      {
+        return lBuildFuture.join();
+      }
+      catch (CompletionException e)
+      {
+        throw new ClearCLException("problem while building program",
+                                   e.getCause());
+      }
+    return getBuildStatus();
+  }
+
   /**
    * Builds this program. The source code can be changed after a first build and
-   * this method will build a new program from scratch.
+   * this method will build a new program from scratch. If a program with the
+   * same source code and build options has already been built in this context,
+   * the built program is shared (reference counted) instead of being rebuilt.
+   * Otherwise, if the program binary cache is enabled (see
+   * {@link ProgramBinaryCache}) and a binary is cached for the same source
+   * code, build options and device, then that binary is used instead of
+   * recompiling from source.
    * 
    * @return build status
    * @throws IOException
    *           thrown if source code includes cannot be resolved
    */
-  public BuildStatus build() throws IOException
+  public synchronized BuildStatus build() throws IOException
   {
     try
     {
@@ -350,23 +428,115 @@ public class ClearCLProgram extends ClearCLBase
       return BuildStatus.Error;
     }
 
-    ClearCLPeerPointer lProgramPeerPointer =
-                                           getBackend().getProgramPeerPointer(mContext.getPeerPointer(),
-                                                                              mLastBuiltSourceCode);
-
-    ClearCLPeerPointer lCurrentProgramPeerPointer = getPeerPointer();
-    if (lCurrentProgramPeerPointer != null)
-      getBackend().releaseProgram(lCurrentProgramPeerPointer);
+    String lOptions = concatenateOptions();
 
-    setPeerPointer(lProgramPeerPointer);
+    // identical programs already built in this context are shared:
+    ClearCLPeerPointer lSharedProgramPeerPointer =
+                                                 mContext.acquireProgram(lOptions,
+                                                                         mLastBuiltSourceCode);
+    if (lSharedProgramPeerPointer != null)
+    {
+      replaceProgramPeerPointer(lSharedProgramPeerPointer);
+      mModified = false;
+      countBuild("program.cache.shared");
+      return BuildStatus.Success;
+    }
 
-    String lOptions = concatenateOptions();
+    String lCacheKey =
+                     ProgramBinaryCache.sEnabled ? ProgramBinaryCache.getKey(getDevice(),
+                                                                             mLastBuiltSourceCode,
+                                                                             lOptions)
+                                                 : null;
 
-    getBackend().buildProgram(getPeerPointer(), lOptions);
+    BuildStatus lBuildStatus;
+    if (lCacheKey != null && buildFromBinary(lCacheKey, lOptions))
+    {
+      lBuildStatus = BuildStatus.Success;
+      countBuild("program.cache.binary");
+    }
+    else
+    {
+      countBuild("program.cache.miss");
+      long lBuildStartNanos = System.nanoTime();
+
+      ClearCLPeerPointer lProgramPeerPointer =
+                                             getBackend().getProgramPeerPointer(mContext.getPeerPointer(),
+                                                                                mLastBuiltSourceCode);
+      replaceProgramPeerPointer(lProgramPeerPointer);
+
+      getBackend().buildProgram(getPeerPointer(), lOptions);
+
+      lBuildStatus = getBuildStatus();
+
+      if (ClearCLMetrics.sEnabled)
+        ClearCLMetrics.getHistogram("program.build")
+                      .record(System.nanoTime() - lBuildStartNanos);
+
+      if (lCacheKey != null && lBuildStatus == BuildStatus.Success)
+        try
+        {
+          ProgramBinaryCache.put(lCacheKey,
+                                 getBackend().getProgramBinary(getPeerPointer()));
+        }
+        catch (ClearCLException e)
+        {
+          // not being able to cache a binary is not an error.
+          ProgramBinaryCache.countError();
+        }
+    }
 
     mModified = false;
 
-    return getBuildStatus();
+    if (lBuildStatus == BuildStatus.Success)
+      mContext.registerProgram(lOptions,
+                               mLastBuiltSourceCode,
+                               getPeerPointer());
+
+    return lBuildStatus;
+  }
+
+  private static void countBuild(String pMetricName)
+  {
+    if (ClearCLMetrics.sEnabled)
+      ClearCLMetrics.getCounter(pMetricName).increment();
+  }
+
+  private boolean buildFromBinary(String pCacheKey, String pOptions)
+  {
+    byte[] lBinary = ProgramBinaryCache.get(pCacheKey);
+    if (lBinary == null)
+      return false;
+
+    try
+    {
+      ClearCLPeerPointer lProgramPeerPointer =
+                                             getBackend().getProgramPeerPointer(mContext.getPeerPointer(),
+                                                                                mDevice.getPeerPointer(),
+                                                                                lBinary);
+      replaceProgramPeerPointer(lProgramPeerPointer);
+
+      getBackend().buildProgram(getPeerPointer(), pOptions);
+
+      if (getBuildStatus() == BuildStatus.Success)
+        return true;
+    }
+    catch (ClearCLException e)
+    {
+      // binary rejected by driver, we fall back to building from source.
+    }
+
+    // stale or incompatible binary:
+    ProgramBinaryCache.remove(pCacheKey);
+    return false;
+  }
+
+  private void replaceProgramPeerPointer(ClearCLPeerPointer pProgramPeerPointer)
+  {
+    ClearCLPeerPointer lCurrentProgramPeerPointer = getPeerPointer();
+    if (lCurrentProgramPeerPointer != null)
+      mContext.releaseProgram(lCurrentProgramPeerPointer);
+
+    setPeerPointer(pProgramPeerPointer);
   }
 
   /**
@@ -621,6 +791,10 @@ public class ClearCLProgram extends ClearCLBase
    */
   public ClearCLKernel createKernel(String pKernelName)
   {
+    CompletableFuture<BuildStatus> lBuildFuture = mBuildFuture;
+    if (lBuildFuture != null && !lBuildFuture.isDone())
+      waitForBuild();
+
     if (mModified)
       throw new ClearCLProgramNotBuiltException();
 
@@ -820,7 +994,7 @@ public class ClearCLProgram extends ClearCLBase
   {
     if (getPeerPointer() != null)
     {
-      getBackend().releaseProgram(getPeerPointer());
+      mContext.releaseProgram(getPeerPointer());
       setPeerPointer(null);
     }
   }
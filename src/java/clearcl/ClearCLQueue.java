@@ -1,9 +1,22 @@
 package clearcl;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import clearcl.abs.ClearCLBase;
+import clearcl.enums.TransferDirection;
+import clearcl.metrics.ClearCLMetrics;
+import clearcl.profiling.ClearCLQueueProfiler;
+import clearcl.trace.ClearCLTraceEvent;
+import clearcl.trace.ClearCLTraceRecorder;
 
 /**
- * ClearCLQueue is the ClearCL abstraction for OpenCl queues.
+ * ClearCLQueue is the ClearCL abstraction for OpenCl queues. Queues created
+ * with profiling enabled record the device timestamps of all kernel executions
+ * and transfers enqueued on them, aggregated per command name by a profiler.
+ * Any queue can also have a trace recorder attached that records a timeline of
+ * the commands enqueued on it. Out-of-order queues may execute commands in any
+ * order and concurrently: dependencies must then be expressed with events or
+ * barriers.
  *
  * @author royer
  */
@@ -12,6 +25,16 @@ public class ClearCLQueue extends ClearCLBase
 
   private ClearCLContext mClearCLContext;
 
+  private static final AtomicInteger sQueueIndexCounter =
+                                                        new AtomicInteger();
+  private final String mName;
+
+  private final boolean mInOrder;
+
+  private final ClearCLQueueProfiler mProfiler;
+
+  private volatile ClearCLTraceRecorder mTraceRecorder;
+
   /**
    * This constructor is called internally from an OpenCl context.
    * 
@@ -22,9 +45,59 @@ public class ClearCLQueue extends ClearCLBase
    */
   public ClearCLQueue(ClearCLContext pClearCLContext,
                       ClearCLPeerPointer pQueuePointer)
+  {
+    this(pClearCLContext, pQueuePointer, false);
+  }
+
+  /**
+   * This constructor is called internally from an OpenCl context.
+   * 
+   * @param pClearCLContext
+   *          context
+   * @param pQueuePointer
+   *          queue peer pointer
+   * @param pProfiling
+   *          true if the queue was created with profiling enabled
+   */
+  public ClearCLQueue(ClearCLContext pClearCLContext,
+                      ClearCLPeerPointer pQueuePointer,
+                      boolean pProfiling)
+  {
+    this(pClearCLContext, pQueuePointer, true, pProfiling);
+  }
+
+  /**
+   * This constructor is called internally from an OpenCl context.
+   * 
+   * @param pClearCLContext
+   *          context
+   * @param pQueuePointer
+   *          queue peer pointer
+   * @param pInOrder
+   *          true if the queue executes commands in order
+   * @param pProfiling
+   *          true if the queue was created with profiling enabled
+   */
+  public ClearCLQueue(ClearCLContext pClearCLContext,
+                      ClearCLPeerPointer pQueuePointer,
+                      boolean pInOrder,
+                      boolean pProfiling)
   {
     super(pClearCLContext.getBackend(), pQueuePointer);
     mClearCLContext = pClearCLContext;
+    mInOrder = pInOrder;
+    mProfiler = pProfiling ? new ClearCLQueueProfiler() : null;
+    mName = "queue" + sQueueIndexCounter.getAndIncrement();
+  }
+
+  /**
+   * Returns this queue's name, unique within this process.
+   * 
+   * @return queue name
+   */
+  public String getName()
+  {
+    return mName;
   }
 
   /**
@@ -46,11 +119,237 @@ public class ClearCLQueue extends ClearCLBase
     getBackend().waitQueueToFinish(getPeerPointer());
   }
 
+  /**
+   * Enqueues a barrier: commands enqueued after it do not start before the
+   * given events, or if none are given all previously enqueued commands, have
+   * completed. In-order queues do not need barriers, out-of-order queues use
+   * them to order groups of commands. The returned event must be closed once
+   * not needed anymore.
+   * 
+   * @param pWaitEvents
+   *          events to wait for, none to wait for all previously enqueued
+   *          commands
+   * @return event associated to this barrier
+   */
+  public ClearCLEvent enqueueBarrier(ClearCLEvent... pWaitEvents)
+  {
+    ClearCLPeerPointer lEventPeerPointer =
+                                         getBackend().enqueueBarrier(getPeerPointer(),
+                                                                     ClearCLEvent.getPeerPointers(pWaitEvents),
+                                                                     true);
+    return new ClearCLEvent(this, lEventPeerPointer);
+  }
+
+  /**
+   * Returns true if this queue executes commands in the order in which they
+   * are enqueued.
+   * 
+   * @return true if in-order, false if out-of-order
+   */
+  public boolean isInOrder()
+  {
+    return mInOrder;
+  }
+
+  /**
+   * Issues all enqueued tasks to the device without waiting for them to finish.
+   * This guarantees that they will eventually complete even if no one waits for
+   * them.
+   */
+  public void flush()
+  {
+    getBackend().flushQueue(getPeerPointer());
+  }
+
+  /**
+   * Returns true if this queue records profiling information.
+   * 
+   * @return true if profiling
+   */
+  public boolean isProfiling()
+  {
+    return mProfiler != null;
+  }
+
+  /**
+   * Returns the profiler holding the per-command execution time histograms of
+   * this queue, or null if this queue is not profiling.
+   * 
+   * @return profiler or null
+   */
+  public ClearCLQueueProfiler getProfiler()
+  {
+    return mProfiler;
+  }
+
+  /**
+   * Returns the trace recorder attached to this queue, or null.
+   * 
+   * @return trace recorder or null
+   */
+  public ClearCLTraceRecorder getTraceRecorder()
+  {
+    return mTraceRecorder;
+  }
+
+  /**
+   * Attaches a trace recorder to this queue, all commands subsequently
+   * enqueued are recorded once completed. Several queues can share the same
+   * recorder. If this queue is profiling, device start and end times are
+   * recorded, otherwise the recorded time span goes from enqueue to completion
+   * notification.
+   * 
+   * @param pTraceRecorder
+   *          trace recorder, or null to detach
+   */
+  public void setTraceRecorder(ClearCLTraceRecorder pTraceRecorder)
+  {
+    mTraceRecorder = pTraceRecorder;
+  }
+
+  /**
+   * Returns true if enqueue calls on this queue must request an event even if
+   * none is returned to the caller: this is the case when profiling or
+   * tracing.
+   * 
+   * @return true if events are needed
+   */
+  boolean isRecordingEvents()
+  {
+    return mProfiler != null || mTraceRecorder != null;
+  }
+
+  /**
+   * Registers a memory command (transfer, fill or unmap) enqueued on this
+   * queue: transferred bytes are counted (see {@link ClearCLMetrics}), and if
+   * profiling or tracing, the command is recorded once completed.
+   * 
+   * @param pCommandName
+   *          command name, e.g. 'readFromBuffer'
+   * @param pTransferDirection
+   *          transfer direction, or null for commands that do not transfer
+   *          data between memory objects
+   * @param pSizeInBytes
+   *          size in bytes
+   * @param pEventPeerPointer
+   *          event peer pointer, or null
+   * @param pReturnEvent
+   *          true if the event is handed to the caller, false if this queue
+   *          takes ownership of it
+   * @return event peer pointer if pReturnEvent is true, null otherwise
+   */
+  ClearCLPeerPointer profile(String pCommandName,
+                             TransferDirection pTransferDirection,
+                             long pSizeInBytes,
+                             ClearCLPeerPointer pEventPeerPointer,
+                             boolean pReturnEvent)
+  {
+    if (pTransferDirection != null)
+      ClearCLMetrics.countTransfer(pTransferDirection, pSizeInBytes);
+
+    return record(pCommandName,
+                  pTransferDirection != null ? pTransferDirection.getMetricName()
+                                             : pCommandName,
+                  pSizeInBytes,
+                  null,
+                  pEventPeerPointer,
+                  pReturnEvent);
+  }
+
+  /**
+   * Registers a kernel execution enqueued on this queue. If profiling or
+   * tracing, the execution is recorded once completed.
+   * 
+   * @param pKernel
+   *          kernel
+   * @param pEventPeerPointer
+   *          event peer pointer, or null
+   * @param pReturnEvent
+   *          true if the event is handed to the caller, false if this queue
+   *          takes ownership of it
+   * @return event peer pointer if pReturnEvent is true, null otherwise
+   */
+  ClearCLPeerPointer profile(ClearCLKernel pKernel,
+                             ClearCLPeerPointer pEventPeerPointer,
+                             boolean pReturnEvent)
+  {
+    return record(pKernel.getName(),
+                  "kernel",
+                  0,
+                  mTraceRecorder != null ? pKernel.getGlobalSizes()
+                                                  .clone()
+                                         : null,
+                  pEventPeerPointer,
+                  pReturnEvent);
+  }
+
+  private ClearCLPeerPointer record(String pCommandName,
+                                    String pCategory,
+                                    long pSizeInBytes,
+                                    long[] pGlobalSizes,
+                                    ClearCLPeerPointer pEventPeerPointer,
+                                    boolean pReturnEvent)
+  {
+    ClearCLTraceRecorder lTraceRecorder = mTraceRecorder;
+    if (pEventPeerPointer == null
+        || (mProfiler == null && lTraceRecorder == null))
+      return pEventPeerPointer;
+
+    long lEnqueueNanos = System.nanoTime();
+
+    if (pReturnEvent)
+      getBackend().retainEvent(pEventPeerPointer);
+
+    getBackend().setEventCallback(pEventPeerPointer, (lStatus) -> {
+      try
+      {
+        long lCompletionNanos = System.nanoTime();
+
+        long[] lTimestamps = null;
+        if (mProfiler != null && lStatus >= 0)
+        {
+          lTimestamps =
+                      getBackend().getEventProfilingInfo(pEventPeerPointer);
+          mProfiler.record(pCommandName, lTimestamps);
+        }
+
+        if (lTraceRecorder != null)
+        {
+          // device timestamps are mapped to host time relative to enqueue:
+          long lStartNanos = lTimestamps == null ? lEnqueueNanos
+                                                 : lEnqueueNanos
+                                                   + lTimestamps[2]
+                                                   - lTimestamps[0];
+          long lEndNanos = lTimestamps == null ? lCompletionNanos
+                                               : lEnqueueNanos
+                                                 + lTimestamps[3]
+                                                 - lTimestamps[0];
+          lTraceRecorder.record(new ClearCLTraceEvent(mName,
+                                                      pCommandName,
+                                                      pCategory,
+                                                      pSizeInBytes,
+                                                      pGlobalSizes,
+                                                      lEnqueueNanos,
+                                                      lStartNanos,
+                                                      lEndNanos,
+                                                      lStatus));
+        }
+      }
+      finally
+      {
+        getBackend().releaseEvent(pEventPeerPointer);
+      }
+    });
+
+    return pReturnEvent ? pEventPeerPointer : null;
+  }
+
   @Override
   public void close()
   {
     if (getPeerPointer() != null)
     {
+      mClearCLContext.unregisterQueue(this);
       getBackend().releaseQueue(getPeerPointer());
       setPeerPointer(null);
     }
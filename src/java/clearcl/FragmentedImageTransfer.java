@@ -0,0 +1,448 @@
+package clearcl;
+
+import java.util.ArrayList;
+
+import clearcl.enums.HostAccessType;
+import clearcl.enums.KernelAccessType;
+import clearcl.enums.MemAllocMode;
+import clearcl.enums.TransferDirection;
+import clearcl.exceptions.ClearCLIllegalArgumentException;
+import clearcl.util.Region3;
+import coremem.ContiguousMemoryInterface;
+import coremem.enums.NativeTypeEnum;
+import coremem.fragmented.FragmentedMemoryInterface;
+import coremem.offheap.OffHeapMemory;
+
+/**
+ * Batched transfers between fragmented host memory and a nD region of an
+ * image. Each fragment corresponds to a single XY 2D plane (for XYZ 3D images)
+ * or a single X 1D line (for XY 2D images). Fragments that are contiguous in
+ * host memory are coalesced into a single transfer, and runs of small
+ * non-contiguous fragments are gathered into (or scattered from) pinned
+ * staging buffers so that they are transferred with a single command. Commands
+ * are all enqueued without blocking, and a single event signals completion.
+ *
+ * @author royer
+ */
+class FragmentedImageTransfer implements AutoCloseable
+{
+  /**
+   * Runs of contiguous fragments at least this large are transferred directly
+   * from or to host memory, smaller ones go through staging buffers.
+   */
+  static final long cDirectTransferMinSizeInBytes = 1L << 20;
+
+  /**
+   * Coalesced runs are split so that host memory can always be wrapped as a
+   * NIO buffer.
+   */
+  static final long cDirectTransferMaxSizeInBytes = 1L << 30;
+
+  private static final long cStagingBufferSizeInBytes = 16L << 20;
+  private static final int cNumberOfStagingBuffers = 2;
+
+  private final ClearCLImage mImage;
+  private final ClearCLBuffer[] mStagingBuffers =
+                                                new ClearCLBuffer[cNumberOfStagingBuffers];
+  private final ContiguousMemoryInterface[] mStagingMemory =
+                                                           new ContiguousMemoryInterface[cNumberOfStagingBuffers];
+  private final ClearCLEvent[] mStagingEvents =
+                                              new ClearCLEvent[cNumberOfStagingBuffers];
+  private final Runnable[] mPendingScatters =
+                                            new Runnable[cNumberOfStagingBuffers];
+  private int mNextStagingBuffer;
+
+  /**
+   * Instantiates a fragmented transfer helper for a given image. Staging
+   * buffers are only allocated when needed.
+   *
+   * @param pImage
+   *          image
+   */
+  FragmentedImageTransfer(ClearCLImage pImage)
+  {
+    mImage = pImage;
+  }
+
+  /**
+   * Enqueues the transfer of fragmented host memory into a nD region of the
+   * image.
+   *
+   * @param pClearCLQueue
+   *          queue
+   * @param pFragmentedMemory
+   *          source fragmented memory
+   * @param pOrigin
+   *          origin in image
+   * @param pRegion
+   *          region dimensions in image
+   * @param pWaitEvents
+   *          events to wait for before transferring
+   * @return event signaling the completion of the whole transfer
+   */
+  synchronized ClearCLEvent upload(ClearCLQueue pClearCLQueue,
+                                   FragmentedMemoryInterface pFragmentedMemory,
+                                   long[] pOrigin,
+                                   long[] pRegion,
+                                   ClearCLEvent[] pWaitEvents)
+  {
+    return transfer(pClearCLQueue,
+                    pFragmentedMemory,
+                    pOrigin,
+                    pRegion,
+                    pWaitEvents,
+                    true);
+  }
+
+  /**
+   * Enqueues the transfer of a nD region of the image into fragmented host
+   * memory. If some fragments go through staging buffers this call blocks
+   * until they have been transferred and scattered into the fragments.
+   *
+   * @param pClearCLQueue
+   *          queue
+   * @param pFragmentedMemory
+   *          destination fragmented memory
+   * @param pOrigin
+   *          origin in image
+   * @param pRegion
+   *          region dimensions in image
+   * @param pWaitEvents
+   *          events to wait for before transferring
+   * @return event signaling the completion of the whole transfer
+   */
+  synchronized ClearCLEvent download(ClearCLQueue pClearCLQueue,
+                                     FragmentedMemoryInterface pFragmentedMemory,
+                                     long[] pOrigin,
+                                     long[] pRegion,
+                                     ClearCLEvent[] pWaitEvents)
+  {
+    ClearCLEvent lEvent = transfer(pClearCLQueue,
+                                   pFragmentedMemory,
+                                   pOrigin,
+                                   pRegion,
+                                   pWaitEvents,
+                                   false);
+    for (int s = 0; s < cNumberOfStagingBuffers; s++)
+      waitForStagingBuffer(s);
+    return lEvent;
+  }
+
+  private ClearCLEvent transfer(ClearCLQueue pClearCLQueue,
+                                FragmentedMemoryInterface pFragmentedMemory,
+                                long[] pOrigin,
+                                long[] pRegion,
+                                ClearCLEvent[] pWaitEvents,
+                                boolean pUpload)
+  {
+    long[] lOrigin = Region3.origin(pOrigin);
+    long[] lRegion = Region3.region(pRegion);
+
+    int lAxis = (int) mImage.getDimension() - 1;
+    int lNumberOfFragments = pFragmentedMemory.getNumberOfFragments();
+    long lFragmentSizeInBytes = mImage.getPixelSizeInBytes()
+                                * Region3.volume(lRegion)
+                                / lRegion[lAxis];
+
+    if (lNumberOfFragments != lRegion[lAxis])
+      throw new ClearCLIllegalArgumentException("Number of fragments does not match region!");
+    for (int i = 0; i < lNumberOfFragments; i++)
+      if (pFragmentedMemory.get(i).getSizeInBytes() != lFragmentSizeInBytes)
+        throw new ClearCLIllegalArgumentException("Fragment of wrong size!");
+
+    int lStagingCapacity =
+                         (int) Math.max(1,
+                                        cStagingBufferSizeInBytes
+                                           / lFragmentSizeInBytes);
+
+    ArrayList<ClearCLEvent> lEvents = new ArrayList<>();
+    int lStagingIndex = -1;
+    int lStagedStart = 0;
+    int lStagedCount = 0;
+
+    int i = 0;
+    while (i < lNumberOfFragments)
+    {
+      int j = i + 1;
+      while (j < lNumberOfFragments
+             && (j - i + 1)
+                * lFragmentSizeInBytes <= cDirectTransferMaxSizeInBytes
+             && follows(pFragmentedMemory.get(j - 1),
+                        pFragmentedMemory.get(j)))
+        j++;
+
+      if ((j - i) * lFragmentSizeInBytes >= cDirectTransferMinSizeInBytes
+          || lStagingCapacity == 1)
+      {
+        if (lStagedCount > 0)
+        {
+          lEvents.add(flushStaging(pClearCLQueue,
+                                   pFragmentedMemory,
+                                   lOrigin,
+                                   lRegion,
+                                   lAxis,
+                                   lStagingIndex,
+                                   lStagedStart,
+                                   lStagedCount,
+                                   lFragmentSizeInBytes,
+                                   pWaitEvents,
+                                   pUpload));
+          lStagedCount = 0;
+        }
+
+        ContiguousMemoryInterface lRunMemory =
+                                             OffHeapMemory.wrapPointer(pFragmentedMemory,
+                                                                       pFragmentedMemory.get(i)
+                                                                                        .getAddress(),
+                                                                       (j - i) * lFragmentSizeInBytes);
+        lEvents.add(enqueue(pClearCLQueue,
+                            lRunMemory,
+                            lOrigin,
+                            lRegion,
+                            lAxis,
+                            i,
+                            j - i,
+                            pWaitEvents,
+                            pUpload));
+      }
+      else
+      {
+        for (int k = i; k < j; k++)
+        {
+          if (lStagedCount == lStagingCapacity)
+          {
+            lEvents.add(flushStaging(pClearCLQueue,
+                                     pFragmentedMemory,
+                                     lOrigin,
+                                     lRegion,
+                                     lAxis,
+                                     lStagingIndex,
+                                     lStagedStart,
+                                     lStagedCount,
+                                     lFragmentSizeInBytes,
+                                     pWaitEvents,
+                                     pUpload));
+            lStagedCount = 0;
+          }
+          if (lStagedCount == 0)
+          {
+            lStagingIndex = acquireStagingBuffer(pClearCLQueue);
+            lStagedStart = k;
+          }
+          if (pUpload)
+            pFragmentedMemory.get(k)
+                             .copyRangeTo(0,
+                                          mStagingMemory[lStagingIndex],
+                                          lStagedCount * lFragmentSizeInBytes,
+                                          lFragmentSizeInBytes);
+          lStagedCount++;
+        }
+      }
+      i = j;
+    }
+
+    if (lStagedCount > 0)
+      lEvents.add(flushStaging(pClearCLQueue,
+                               pFragmentedMemory,
+                               lOrigin,
+                               lRegion,
+                               lAxis,
+                               lStagingIndex,
+                               lStagedStart,
+                               lStagedCount,
+                               lFragmentSizeInBytes,
+                               pWaitEvents,
+                               pUpload));
+
+    pClearCLQueue.flush();
+    return join(pClearCLQueue, lEvents, pWaitEvents);
+  }
+
+  private static boolean follows(ContiguousMemoryInterface pPrevious,
+                                 ContiguousMemoryInterface pNext)
+  {
+    return pNext.getAddress() == pPrevious.getAddress()
+                                 + pPrevious.getSizeInBytes();
+  }
+
+  private ClearCLEvent flushStaging(ClearCLQueue pClearCLQueue,
+                                    FragmentedMemoryInterface pFragmentedMemory,
+                                    long[] pOrigin,
+                                    long[] pRegion,
+                                    int pAxis,
+                                    int pStagingIndex,
+                                    int pStagedStart,
+                                    int pStagedCount,
+                                    long pFragmentSizeInBytes,
+                                    ClearCLEvent[] pWaitEvents,
+                                    boolean pUpload)
+  {
+    ContiguousMemoryInterface lStagingMemory =
+                                             mStagingMemory[pStagingIndex].subRegion(0,
+                                                                                     pStagedCount
+                                                                                        * pFragmentSizeInBytes);
+    ClearCLEvent lEvent = enqueue(pClearCLQueue,
+                                  lStagingMemory,
+                                  pOrigin,
+                                  pRegion,
+                                  pAxis,
+                                  pStagedStart,
+                                  pStagedCount,
+                                  pWaitEvents,
+                                  pUpload);
+
+    // the staging buffer keeps its own reference to the event, it cannot be
+    // reused before the transfer has completed:
+    mImage.getBackend().retainEvent(lEvent.getPeerPointer());
+    mStagingEvents[pStagingIndex] = new ClearCLEvent(pClearCLQueue,
+                                                     lEvent.getPeerPointer());
+
+    if (!pUpload)
+      mPendingScatters[pStagingIndex] = () -> {
+        for (int k = 0; k < pStagedCount; k++)
+          lStagingMemory.copyRangeTo(k * pFragmentSizeInBytes,
+                                     pFragmentedMemory.get(pStagedStart
+                                                           + k),
+                                     0,
+                                     pFragmentSizeInBytes);
+      };
+
+    return lEvent;
+  }
+
+  private ClearCLEvent enqueue(ClearCLQueue pClearCLQueue,
+                               ContiguousMemoryInterface pHostMemory,
+                               long[] pOrigin,
+                               long[] pRegion,
+                               int pAxis,
+                               int pFirstFragment,
+                               int pNumberOfFragments,
+                               ClearCLEvent[] pWaitEvents,
+                               boolean pUpload)
+  {
+    long[] lOrigin = pOrigin.clone();
+    long[] lRegion = pRegion.clone();
+    lOrigin[pAxis] += pFirstFragment;
+    lRegion[pAxis] = pNumberOfFragments;
+
+    ClearCLPeerPointer lEventPeerPointer;
+    if (pUpload)
+      lEventPeerPointer =
+                        mImage.getBackend()
+                              .enqueueWriteToImage(pClearCLQueue.getPeerPointer(),
+                                                   mImage.getPeerPointer(),
+                                                   false,
+                                                   lOrigin,
+                                                   lRegion,
+                                                   mImage.getBackend()
+                                                         .wrap(pHostMemory),
+                                                   ClearCLEvent.getPeerPointers(pWaitEvents),
+                                                   true);
+    else
+      lEventPeerPointer =
+                        mImage.getBackend()
+                              .enqueueReadFromImage(pClearCLQueue.getPeerPointer(),
+                                                    mImage.getPeerPointer(),
+                                                    false,
+                                                    lOrigin,
+                                                    lRegion,
+                                                    mImage.getBackend()
+                                                          .wrap(pHostMemory),
+                                                    ClearCLEvent.getPeerPointers(pWaitEvents),
+                                                    true);
+
+    pClearCLQueue.profile(pUpload ? "writeToImage" : "readFromImage",
+                          pUpload ? TransferDirection.HostToDevice
+                                  : TransferDirection.DeviceToHost,
+                          pHostMemory.getSizeInBytes(),
+                          lEventPeerPointer,
+                          true);
+    return new ClearCLEvent(pClearCLQueue, lEventPeerPointer);
+  }
+
+  private ClearCLEvent join(ClearCLQueue pClearCLQueue,
+                            ArrayList<ClearCLEvent> pEvents,
+                            ClearCLEvent[] pWaitEvents)
+  {
+    if (pEvents.isEmpty())
+      return pClearCLQueue.enqueueBarrier(pWaitEvents);
+
+    // on in-order queues the last command completes last:
+    if (pClearCLQueue.isInOrder())
+    {
+      ClearCLEvent lLastEvent = pEvents.remove(pEvents.size() - 1);
+      for (ClearCLEvent lEvent : pEvents)
+        lEvent.close();
+      return lLastEvent;
+    }
+
+    ClearCLEvent lBarrierEvent =
+                               pClearCLQueue.enqueueBarrier(pEvents.toArray(new ClearCLEvent[pEvents.size()]));
+    for (ClearCLEvent lEvent : pEvents)
+      lEvent.close();
+    return lBarrierEvent;
+  }
+
+  private int acquireStagingBuffer(ClearCLQueue pClearCLQueue)
+  {
+    int lIndex = mNextStagingBuffer;
+    mNextStagingBuffer = (mNextStagingBuffer + 1)
+                         % cNumberOfStagingBuffers;
+
+    waitForStagingBuffer(lIndex);
+
+    if (mStagingBuffers[lIndex] == null)
+    {
+      // Pinned staging memory: a buffer allocated by the OpenCL runtime in
+      // host memory, mapped once for the lifetime of the image.
+      mStagingBuffers[lIndex] =
+                              mImage.getContext()
+                                    .createBuffer(MemAllocMode.AllocateHostPointer,
+                                                  HostAccessType.ReadWrite,
+                                                  KernelAccessType.ReadWrite,
+                                                  NativeTypeEnum.UnsignedByte,
+                                                  cStagingBufferSizeInBytes);
+      mStagingMemory[lIndex] =
+                             mStagingBuffers[lIndex].map(pClearCLQueue,
+                                                         HostAccessType.ReadWrite,
+                                                         0,
+                                                         cStagingBufferSizeInBytes);
+    }
+
+    return lIndex;
+  }
+
+  private void waitForStagingBuffer(int pIndex)
+  {
+    if (mStagingEvents[pIndex] != null)
+    {
+      mStagingEvents[pIndex].waitToFinish();
+      mStagingEvents[pIndex].close();
+      mStagingEvents[pIndex] = null;
+    }
+    if (mPendingScatters[pIndex] != null)
+    {
+      mPendingScatters[pIndex].run();
+      mPendingScatters[pIndex] = null;
+    }
+  }
+
+  @Override
+  public synchronized void close()
+  {
+    for (int s = 0; s < cNumberOfStagingBuffers; s++)
+    {
+      waitForStagingBuffer(s);
+      if (mStagingBuffers[s] != null)
+      {
+        mStagingBuffers[s].unmap(mImage.getContext().getDefaultQueue(),
+                                 mStagingMemory[s],
+                                 true);
+        mStagingBuffers[s].close();
+        mStagingBuffers[s] = null;
+        mStagingMemory[s] = null;
+      }
+    }
+  }
+
+}
@@ -42,6 +42,10 @@ public class BackendUtils
   public static final long CL_MIGRATE_MEM_OBJECT_CONTENT_UNDEFINED =
                                                                    (1 << 1);
 
+  // cl_map_flags - bitfield
+  public static final long CL_MAP_READ = (1 << 0);
+  public static final long CL_MAP_WRITE = (1 << 1);
+
   // cl_mem_object_type
   public static final int CL_MEM_OBJECT_BUFFER = 0x10F0;
   public static final int CL_MEM_OBJECT_IMAGE2D = 0x10F1;
@@ -236,6 +240,26 @@ public class BackendUtils
     return lMemFlags;
   }
 
+  public static long getMapFlags(HostAccessType pMapAccessType)
+  {
+    long lMapFlags = 0;
+    if (pMapAccessType.isReadableFromHost())
+      lMapFlags |= CL_MAP_READ;
+    if (pMapAccessType.isWritableFromHost())
+      lMapFlags |= CL_MAP_WRITE;
+    return lMapFlags;
+  }
+
+  public static long getMappedImageSizeInBytes(long[] pRegion,
+                                               long pRowPitchInBytes,
+                                               long pSlicePitchInBytes,
+                                               long pPixelSizeInBytes)
+  {
+    return (pRegion[2] - 1) * pSlicePitchInBytes
+           + (pRegion[1] - 1) * pRowPitchInBytes
+           + pRegion[0] * pPixelSizeInBytes;
+  }
+
   public static int getImageTypeFlags(ImageType pImageType)
   {
     int lImageTypeFlags = 0;
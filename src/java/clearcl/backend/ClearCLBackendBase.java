@@ -1,11 +1,13 @@
 package clearcl.backend;
 
 import java.nio.Buffer;
+import java.util.function.IntConsumer;
 
 import clearcl.ClearCLPeerPointer;
 import clearcl.enums.BuildStatus;
 import clearcl.enums.DeviceInfo;
 import clearcl.enums.DeviceType;
+import clearcl.enums.EventStatus;
 import clearcl.enums.HostAccessType;
 import clearcl.enums.ImageChannelDataType;
 import clearcl.enums.ImageChannelOrder;
@@ -89,6 +91,12 @@ public abstract class ClearCLBackendBase implements
     throw new ClearCLUnsupportedException();
   }
 
+  @Override
+  public String getDeviceDriverVersion(ClearCLPeerPointer pDevicePeerPointer)
+  {
+    throw new ClearCLUnsupportedException();
+  }
+
   @Override
   public boolean imageSupport(ClearCLPeerPointer pDevicePointer)
   {
@@ -141,7 +149,8 @@ public abstract class ClearCLBackendBase implements
   @Override
   public ClearCLPeerPointer getQueuePeerPointer(ClearCLPeerPointer pDevicePeerPointer,
                                                 ClearCLPeerPointer pContextPeerPointer,
-                                                boolean pInOrder)
+                                                boolean pInOrder,
+                                                boolean pProfiling)
   {
     throw new ClearCLUnsupportedException();
   }
@@ -157,6 +166,14 @@ public abstract class ClearCLBackendBase implements
     throw new ClearCLUnsupportedException();
   }
 
+  @Override
+  public ClearCLPeerPointer getSubBufferPeerPointer(ClearCLPeerPointer pBufferPeerPointer,
+                                                    long pOffsetInBytes,
+                                                    long pSizeInBytes)
+  {
+    throw new ClearCLUnsupportedException();
+  }
+
   @Override
   public ClearCLPeerPointer getImagePeerPointer(ClearCLPeerPointer pDevicePointer,
                                                 ClearCLPeerPointer pContextPeerPointer,
@@ -178,6 +195,20 @@ public abstract class ClearCLBackendBase implements
     throw new ClearCLUnsupportedException();
   }
 
+  @Override
+  public ClearCLPeerPointer getProgramPeerPointer(ClearCLPeerPointer pContextPeerPointer,
+                                                  ClearCLPeerPointer pDevicePeerPointer,
+                                                  byte[] pBinary)
+  {
+    throw new ClearCLUnsupportedException();
+  }
+
+  @Override
+  public byte[] getProgramBinary(ClearCLPeerPointer pProgramPeerPointer)
+  {
+    throw new ClearCLUnsupportedException();
+  }
+
   @Override
   public boolean buildProgram(ClearCLPeerPointer pProgramPointer,
                               String pOptions)
@@ -215,162 +246,255 @@ public abstract class ClearCLBackendBase implements
   }
 
   @Override
-  public void enqueueKernelExecution(ClearCLPeerPointer pQueuePeerPointer,
-                                     ClearCLPeerPointer pKernelPeerPointer,
-                                     int pNumberOfDimensions,
-                                     long[] pGlobalOffsets,
-                                     long[] pGlobalSizes,
-                                     long[] pLocalSizes)
+  public void setKernelArgument(ClearCLPeerPointer pKernelPeerPointer,
+                                int pIndex,
+                                long pSizeInBytes,
+                                long pLowBits,
+                                long pHighBits)
   {
     throw new ClearCLUnsupportedException();
   }
 
   @Override
-  public void enqueueReadFromBuffer(ClearCLPeerPointer pQueuePeerPointer,
-                                    ClearCLPeerPointer pBufferPeerPointer,
-                                    boolean pBlockingRead,
-                                    long pOffsetInBuffer,
-                                    long pLengthInBuffer,
-                                    ClearCLPeerPointer pHostMemPointer)
+  public ClearCLPeerPointer enqueueKernelExecution(ClearCLPeerPointer pQueuePeerPointer,
+                                                   ClearCLPeerPointer pKernelPeerPointer,
+                                                   int pNumberOfDimensions,
+                                                   long[] pGlobalOffsets,
+                                                   long[] pGlobalSizes,
+                                                   long[] pLocalSizes,
+                                                   ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                   boolean pReturnEvent)
   {
     throw new ClearCLUnsupportedException();
   }
 
   @Override
-  public void enqueueWriteToBuffer(ClearCLPeerPointer pQueuePeerPointer,
-                                   ClearCLPeerPointer pBufferPeerPointer,
-                                   boolean pBlockingWrite,
-                                   long pOffsetInBuffer,
-                                   long pLengthInBytes,
-                                   ClearCLPeerPointer pHostMemPeerPointer)
+  public ClearCLPeerPointer enqueueReadFromBuffer(ClearCLPeerPointer pQueuePeerPointer,
+                                                  ClearCLPeerPointer pBufferPeerPointer,
+                                                  boolean pBlockingRead,
+                                                  long pOffsetInBuffer,
+                                                  long pLengthInBuffer,
+                                                  ClearCLPeerPointer pHostMemPointer,
+                                                  ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                  boolean pReturnEvent)
   {
     throw new ClearCLUnsupportedException();
   }
 
   @Override
-  public void enqueueReadFromBufferRegion(ClearCLPeerPointer pQueuePeerPointer,
-                                          ClearCLPeerPointer pBufferPeerPointer,
-                                          boolean pBlockingRead,
-                                          long[] pBufferOrigin,
-                                          long[] pHostOrigin,
-                                          long[] pRegion,
-                                          ClearCLPeerPointer pHostMemPeerPointer)
+  public ClearCLPeerPointer enqueueWriteToBuffer(ClearCLPeerPointer pQueuePeerPointer,
+                                                 ClearCLPeerPointer pBufferPeerPointer,
+                                                 boolean pBlockingWrite,
+                                                 long pOffsetInBuffer,
+                                                 long pLengthInBytes,
+                                                 ClearCLPeerPointer pHostMemPeerPointer,
+                                                 ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                 boolean pReturnEvent)
   {
     throw new ClearCLUnsupportedException();
   }
 
   @Override
-  public void enqueueWriteToBufferRegion(ClearCLPeerPointer pQueuePeerPointer,
-                                         ClearCLPeerPointer pBufferPeerPointer,
-                                         boolean pBlockingWrite,
-                                         long[] pBufferOrigin,
-                                         long[] pHostOrigin,
-                                         long[] pRegion,
-                                         ClearCLPeerPointer pHostMemPeerPointer)
+  public ClearCLPeerPointer enqueueReadFromBufferRegion(ClearCLPeerPointer pQueuePeerPointer,
+                                                        ClearCLPeerPointer pBufferPeerPointer,
+                                                        boolean pBlockingRead,
+                                                        long[] pBufferOrigin,
+                                                        long[] pHostOrigin,
+                                                        long[] pRegion,
+                                                        long pBufferRowPitch,
+                                                        long pBufferSlicePitch,
+                                                        long pHostRowPitch,
+                                                        long pHostSlicePitch,
+                                                        ClearCLPeerPointer pHostMemPeerPointer,
+                                                        ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                        boolean pReturnEvent)
   {
     throw new ClearCLUnsupportedException();
   }
 
   @Override
-  public void enqueueFillBuffer(ClearCLPeerPointer pQueuePeerPointer,
-                                ClearCLPeerPointer pBufferPeerPointer,
-                                boolean pBlockingFill,
-                                long pOffsetInBytes,
-                                long pLengthInBytes,
-                                byte[] pPattern)
+  public ClearCLPeerPointer enqueueWriteToBufferRegion(ClearCLPeerPointer pQueuePeerPointer,
+                                                       ClearCLPeerPointer pBufferPeerPointer,
+                                                       boolean pBlockingWrite,
+                                                       long[] pBufferOrigin,
+                                                       long[] pHostOrigin,
+                                                       long[] pRegion,
+                                                       long pBufferRowPitch,
+                                                       long pBufferSlicePitch,
+                                                       long pHostRowPitch,
+                                                       long pHostSlicePitch,
+                                                       ClearCLPeerPointer pHostMemPeerPointer,
+                                                       ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                       boolean pReturnEvent)
   {
     throw new ClearCLUnsupportedException();
   }
 
   @Override
-  public void enqueueCopyBuffer(ClearCLPeerPointer pQueuePeerPointer,
-                                ClearCLPeerPointer pSrcBufferPeerPointer,
-                                ClearCLPeerPointer pDstBufferPeerPointer,
-                                boolean pBlockingCopy,
-                                long pSrcOffsetInBytes,
-                                long pDstOffsetInBytes,
-                                long pLengthToCopyInBytes)
+  public ClearCLPeerPointer enqueueFillBuffer(ClearCLPeerPointer pQueuePeerPointer,
+                                              ClearCLPeerPointer pBufferPeerPointer,
+                                              boolean pBlockingFill,
+                                              long pOffsetInBytes,
+                                              long pLengthInBytes,
+                                              byte[] pPattern,
+                                              ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                              boolean pReturnEvent)
   {
     throw new ClearCLUnsupportedException();
   }
 
   @Override
-  public void enqueueCopyBufferRegion(ClearCLPeerPointer pQueuePeerPointer,
-                                      ClearCLPeerPointer pSrcBufferPeerPointer,
-                                      ClearCLPeerPointer pDstBufferPeerPointer,
-                                      boolean pBlockingCopy,
-                                      long[] pSrcOrigin,
-                                      long[] pDstOrigin,
-                                      long[] pRegion)
+  public ClearCLPeerPointer enqueueCopyBuffer(ClearCLPeerPointer pQueuePeerPointer,
+                                              ClearCLPeerPointer pSrcBufferPeerPointer,
+                                              ClearCLPeerPointer pDstBufferPeerPointer,
+                                              boolean pBlockingCopy,
+                                              long pSrcOffsetInBytes,
+                                              long pDstOffsetInBytes,
+                                              long pLengthToCopyInBytes,
+                                              ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                              boolean pReturnEvent)
   {
     throw new ClearCLUnsupportedException();
   }
 
   @Override
-  public void enqueueCopyBufferToImage(ClearCLPeerPointer pQueuePeerPointer,
-                                       ClearCLPeerPointer pSrcBufferPeerPointer,
-                                       ClearCLPeerPointer pDstImagePeerPointer,
-                                       boolean pBlockingCopy,
-                                       long pSrcOffsetInBytes,
-                                       long[] pDstOrigin,
-                                       long[] pDstRegion)
+  public ClearCLPeerPointer enqueueCopyBufferRegion(ClearCLPeerPointer pQueuePeerPointer,
+                                                    ClearCLPeerPointer pSrcBufferPeerPointer,
+                                                    ClearCLPeerPointer pDstBufferPeerPointer,
+                                                    boolean pBlockingCopy,
+                                                    long[] pSrcOrigin,
+                                                    long[] pDstOrigin,
+                                                    long[] pRegion,
+                                                    long pSrcRowPitch,
+                                                    long pSrcSlicePitch,
+                                                    long pDstRowPitch,
+                                                    long pDstSlicePitch,
+                                                    ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                    boolean pReturnEvent)
   {
     throw new ClearCLUnsupportedException();
   }
 
   @Override
-  public void enqueueCopyImageToBuffer(ClearCLPeerPointer pQueuePeerPointer,
-                                       ClearCLPeerPointer pSrcImagePeerPointer,
-                                       ClearCLPeerPointer pDstBufferPeerPointer,
-                                       boolean pBlockingCopy,
-                                       long[] pSrcOrigin,
-                                       long[] pSrcRegion,
-                                       long pDstOffset)
+  public ClearCLPeerPointer enqueueCopyBufferToImage(ClearCLPeerPointer pQueuePeerPointer,
+                                                     ClearCLPeerPointer pSrcBufferPeerPointer,
+                                                     ClearCLPeerPointer pDstImagePeerPointer,
+                                                     boolean pBlockingCopy,
+                                                     long pSrcOffsetInBytes,
+                                                     long[] pDstOrigin,
+                                                     long[] pDstRegion,
+                                                     ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                     boolean pReturnEvent)
   {
     throw new ClearCLUnsupportedException();
   }
 
   @Override
-  public void enqueueReadFromImage(ClearCLPeerPointer pQueuePeerPointer,
-                                   ClearCLPeerPointer pImagePeerPointer,
-                                   boolean pReadWrite,
-                                   long[] pOrigin,
-                                   long[] pRegion,
-                                   ClearCLPeerPointer pHostMemPeerPointer)
+  public ClearCLPeerPointer enqueueCopyImageToBuffer(ClearCLPeerPointer pQueuePeerPointer,
+                                                     ClearCLPeerPointer pSrcImagePeerPointer,
+                                                     ClearCLPeerPointer pDstBufferPeerPointer,
+                                                     boolean pBlockingCopy,
+                                                     long[] pSrcOrigin,
+                                                     long[] pSrcRegion,
+                                                     long pDstOffset,
+                                                     ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                     boolean pReturnEvent)
   {
     throw new ClearCLUnsupportedException();
   }
 
   @Override
-  public void enqueueWriteToImage(ClearCLPeerPointer pQueuePeerPointer,
-                                  ClearCLPeerPointer pImagePeerPointer,
-                                  boolean pBlockingWrite,
-                                  long[] pOrigin,
-                                  long[] pRegion,
-                                  ClearCLPeerPointer pHostMemPeerPointer)
+  public ClearCLPeerPointer enqueueReadFromImage(ClearCLPeerPointer pQueuePeerPointer,
+                                                 ClearCLPeerPointer pImagePeerPointer,
+                                                 boolean pReadWrite,
+                                                 long[] pOrigin,
+                                                 long[] pRegion,
+                                                 ClearCLPeerPointer pHostMemPeerPointer,
+                                                 ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                 boolean pReturnEvent)
   {
     throw new ClearCLUnsupportedException();
   }
 
   @Override
-  public void enqueueFillImage(ClearCLPeerPointer pQueuePeerPointer,
-                               ClearCLPeerPointer pImagePeerPointer,
-                               boolean pBlockingFill,
-                               long[] pOrigin,
-                               long[] pRegion,
-                               byte[] pColor)
+  public ClearCLPeerPointer enqueueWriteToImage(ClearCLPeerPointer pQueuePeerPointer,
+                                                ClearCLPeerPointer pImagePeerPointer,
+                                                boolean pBlockingWrite,
+                                                long[] pOrigin,
+                                                long[] pRegion,
+                                                ClearCLPeerPointer pHostMemPeerPointer,
+                                                ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                boolean pReturnEvent)
   {
     throw new ClearCLUnsupportedException();
   }
 
   @Override
-  public void enqueueCopyImage(ClearCLPeerPointer pQueuePeerPointer,
-                               ClearCLPeerPointer pSrcImagePeerPointer,
-                               ClearCLPeerPointer pDstImagePeerPointer,
-                               boolean pBlockingCopy,
-                               long[] pSrcOrigin,
-                               long[] pDstOrigin,
-                               long[] pRegion)
+  public ClearCLPeerPointer enqueueFillImage(ClearCLPeerPointer pQueuePeerPointer,
+                                             ClearCLPeerPointer pImagePeerPointer,
+                                             boolean pBlockingFill,
+                                             long[] pOrigin,
+                                             long[] pRegion,
+                                             byte[] pColor,
+                                             ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                             boolean pReturnEvent)
+  {
+    throw new ClearCLUnsupportedException();
+  }
+
+  @Override
+  public ClearCLPeerPointer enqueueCopyImage(ClearCLPeerPointer pQueuePeerPointer,
+                                             ClearCLPeerPointer pSrcImagePeerPointer,
+                                             ClearCLPeerPointer pDstImagePeerPointer,
+                                             boolean pBlockingCopy,
+                                             long[] pSrcOrigin,
+                                             long[] pDstOrigin,
+                                             long[] pRegion,
+                                             ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                             boolean pReturnEvent)
+  {
+    throw new ClearCLUnsupportedException();
+  }
+
+  @Override
+  public ContiguousMemoryInterface enqueueMapBuffer(ClearCLPeerPointer pQueuePeerPointer,
+                                                    ClearCLPeerPointer pBufferPeerPointer,
+                                                    HostAccessType pMapAccessType,
+                                                    long pOffsetInBytes,
+                                                    long pLengthInBytes,
+                                                    ClearCLPeerPointer[] pWaitEventPeerPointers)
+  {
+    throw new ClearCLUnsupportedException();
+  }
+
+  @Override
+  public ContiguousMemoryInterface enqueueMapImage(ClearCLPeerPointer pQueuePeerPointer,
+                                                   ClearCLPeerPointer pImagePeerPointer,
+                                                   HostAccessType pMapAccessType,
+                                                   long[] pOrigin,
+                                                   long[] pRegion,
+                                                   long pPixelSizeInBytes,
+                                                   long[] pPitchesInBytes,
+                                                   ClearCLPeerPointer[] pWaitEventPeerPointers)
+  {
+    throw new ClearCLUnsupportedException();
+  }
+
+  @Override
+  public ClearCLPeerPointer enqueueUnmap(ClearCLPeerPointer pQueuePeerPointer,
+                                         ClearCLPeerPointer pMemPeerPointer,
+                                         ContiguousMemoryInterface pMappedMemory,
+                                         boolean pBlockingUnmap,
+                                         ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                         boolean pReturnEvent)
+  {
+    throw new ClearCLUnsupportedException();
+  }
+
+  @Override
+  public ClearCLPeerPointer enqueueBarrier(ClearCLPeerPointer pQueuePeerPointer,
+                                           ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                           boolean pReturnEvent)
   {
     throw new ClearCLUnsupportedException();
   }
@@ -435,4 +559,47 @@ public abstract class ClearCLBackendBase implements
     throw new ClearCLUnsupportedException();
   }
 
+  @Override
+  public void waitForEvents(ClearCLPeerPointer... pEventPeerPointers)
+  {
+    throw new ClearCLUnsupportedException();
+  }
+
+  @Override
+  public EventStatus getEventStatus(ClearCLPeerPointer pEventPeerPointer)
+  {
+    throw new ClearCLUnsupportedException();
+  }
+
+  @Override
+  public void releaseEvent(ClearCLPeerPointer pPeerPointer)
+  {
+    throw new ClearCLUnsupportedException();
+  }
+
+  @Override
+  public void retainEvent(ClearCLPeerPointer pPeerPointer)
+  {
+    throw new ClearCLUnsupportedException();
+  }
+
+  @Override
+  public long[] getEventProfilingInfo(ClearCLPeerPointer pEventPeerPointer)
+  {
+    throw new ClearCLUnsupportedException();
+  }
+
+  @Override
+  public void setEventCallback(ClearCLPeerPointer pEventPeerPointer,
+                               IntConsumer pCallback)
+  {
+    throw new ClearCLUnsupportedException();
+  }
+
+  @Override
+  public void flushQueue(ClearCLPeerPointer pQueuePeerPointer)
+  {
+    throw new ClearCLUnsupportedException();
+  }
+
 }
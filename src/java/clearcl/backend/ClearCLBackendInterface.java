@@ -1,11 +1,13 @@
 package clearcl.backend;
 
 import java.nio.Buffer;
+import java.util.function.IntConsumer;
 
 import clearcl.ClearCLPeerPointer;
 import clearcl.enums.BuildStatus;
 import clearcl.enums.DeviceInfo;
 import clearcl.enums.DeviceType;
+import clearcl.enums.EventStatus;
 import clearcl.enums.HostAccessType;
 import clearcl.enums.ImageChannelDataType;
 import clearcl.enums.ImageChannelOrder;
@@ -124,6 +126,15 @@ public interface ClearCLBackendInterface
    */
   String getDeviceVersion(ClearCLPeerPointer pDevicePeerPointer);
 
+  /**
+   * Returns device driver version.
+   * 
+   * @param pDevicePeerPointer
+   *          device peer pointer
+   * @return driver version
+   */
+  String getDeviceDriverVersion(ClearCLPeerPointer pDevicePeerPointer);
+
   /**
    * Returns true if this device supports images.
    * 
@@ -197,11 +208,14 @@ public interface ClearCLBackendInterface
    *          context peer pointer
    * @param pInOrder
    *          true -> queue keep enqueued tasks in order, false otherwise
+   * @param pProfiling
+   *          true -> queue records profiling timestamps for enqueued commands
    * @return queue peer pointer
    */
   ClearCLPeerPointer getQueuePeerPointer(ClearCLPeerPointer pDevicePeerPointer,
                                          ClearCLPeerPointer pContextPeerPointer,
-                                         boolean pInOrder);
+                                         boolean pInOrder,
+                                         boolean pProfiling);
 
   /**
    * Returns buffer peer pointer for a given context, access policy and size in
@@ -228,6 +242,22 @@ public interface ClearCLBackendInterface
                                           KernelAccessType pKernelAccessType,
                                           long pBufferSizeInBytes);
 
+  /**
+   * Returns sub-buffer peer pointer for a given region of a buffer. The
+   * sub-buffer inherits the access policy of its parent buffer.
+   * 
+   * @param pBufferPeerPointer
+   *          parent buffer peer pointer
+   * @param pOffsetInBytes
+   *          offset of region in parent buffer in bytes
+   * @param pSizeInBytes
+   *          size of region in bytes
+   * @return sub-buffer peer pointer
+   */
+  ClearCLPeerPointer getSubBufferPeerPointer(ClearCLPeerPointer pBufferPeerPointer,
+                                             long pOffsetInBytes,
+                                             long pSizeInBytes);
+
   /**
    * Returns image peer pointer for given context, access policy, image type,
    * and dimensions.
@@ -275,6 +305,33 @@ public interface ClearCLBackendInterface
   ClearCLPeerPointer getProgramPeerPointer(ClearCLPeerPointer pContextPeerPointer,
                                            String... pSourceCode);
 
+  /**
+   * Returns program peer pointer for given context, device and program binary
+   * previously obtained with {@link #getProgramBinary(ClearCLPeerPointer)}. The
+   * program must still be built before kernels can be created.
+   * 
+   * @param pContextPeerPointer
+   *          context peer pointer
+   * @param pDevicePeerPointer
+   *          device peer pointer
+   * @param pBinary
+   *          program binary
+   * @return program peer pointer
+   */
+  ClearCLPeerPointer getProgramPeerPointer(ClearCLPeerPointer pContextPeerPointer,
+                                           ClearCLPeerPointer pDevicePeerPointer,
+                                           byte[] pBinary);
+
+  /**
+   * Returns the binary of a built program. The program must have been created
+   * for a single device.
+   * 
+   * @param pProgramPeerPointer
+   *          program peer pointer
+   * @return program binary
+   */
+  byte[] getProgramBinary(ClearCLPeerPointer pProgramPeerPointer);
+
   /**
    * Builds program with options.
    * 
@@ -337,6 +394,29 @@ public interface ClearCLBackendInterface
                          int pIndex,
                          Object pObject);
 
+  /**
+   * Sets a primitive scalar or vector argument at a given index for a given
+   * kernel. The value is given as raw bits: up to 16 bytes packed into two
+   * long words that are laid out in memory in host byte order, low word first.
+   * This avoids boxing and allocating temporary arrays for each argument.
+   * 
+   * @param pKernelPeerPointer
+   *          kernel peer pointer
+   * @param pIndex
+   *          argument index
+   * @param pSizeInBytes
+   *          argument size in bytes (at most 16)
+   * @param pLowBits
+   *          first 8 bytes of the argument value
+   * @param pHighBits
+   *          next 8 bytes of the argument value
+   */
+  void setKernelArgument(ClearCLPeerPointer pKernelPeerPointer,
+                         int pIndex,
+                         long pSizeInBytes,
+                         long pLowBits,
+                         long pHighBits);
+
   /**
    * Enqueues execution of a kernel on a given queue for a set of kernel run
    * parameters
@@ -353,13 +433,21 @@ public interface ClearCLBackendInterface
    *          global sizes
    * @param pLocalSizes
    *          local sizes
+   * @param pWaitEventPeerPointers
+   *          event peer pointers to wait for before execution, can be null
+   * @param pReturnEvent
+   *          true -> an event is created and returned, false -> no event is
+   *          returned
+   * @return event peer pointer if requested, null otherwise
    */
-  void enqueueKernelExecution(ClearCLPeerPointer pQueuePeerPointer,
-                              ClearCLPeerPointer pKernelPeerPointer,
-                              int pNumberOfDimensions,
-                              long[] pGlobalOffsets,
-                              long[] pGlobalSizes,
-                              long[] pLocalSizes);
+  ClearCLPeerPointer enqueueKernelExecution(ClearCLPeerPointer pQueuePeerPointer,
+                                            ClearCLPeerPointer pKernelPeerPointer,
+                                            int pNumberOfDimensions,
+                                            long[] pGlobalOffsets,
+                                            long[] pGlobalSizes,
+                                            long[] pLocalSizes,
+                                            ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                            boolean pReturnEvent);
 
   /**
    * Enqueues read from buffer.
@@ -372,13 +460,21 @@ public interface ClearCLBackendInterface
    * @param pOffsetInBuffer
    * @param pLengthInBuffer
    * @param pHostMemPointer
+   * @param pWaitEventPeerPointers
+   *          event peer pointers to wait for before execution, can be null
+   * @param pReturnEvent
+   *          true -> an event is created and returned, false -> no event is
+   *          returned
+   * @return event peer pointer if requested, null otherwise
    */
-  void enqueueReadFromBuffer(ClearCLPeerPointer pQueuePeerPointer,
-                             ClearCLPeerPointer pBufferPeerPointer,
-                             boolean pBlockingRead,
-                             long pOffsetInBuffer,
-                             long pLengthInBuffer,
-                             ClearCLPeerPointer pHostMemPointer);
+  ClearCLPeerPointer enqueueReadFromBuffer(ClearCLPeerPointer pQueuePeerPointer,
+                                           ClearCLPeerPointer pBufferPeerPointer,
+                                           boolean pBlockingRead,
+                                           long pOffsetInBuffer,
+                                           long pLengthInBuffer,
+                                           ClearCLPeerPointer pHostMemPointer,
+                                           ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                           boolean pReturnEvent);
 
   /**
    * Enqueues write to buffer.
@@ -391,13 +487,21 @@ public interface ClearCLBackendInterface
    * @param pOffsetInBuffer
    * @param pLengthInBytes
    * @param pHostMemPeerPointer
+   * @param pWaitEventPeerPointers
+   *          event peer pointers to wait for before execution, can be null
+   * @param pReturnEvent
+   *          true -> an event is created and returned, false -> no event is
+   *          returned
+   * @return event peer pointer if requested, null otherwise
    */
-  void enqueueWriteToBuffer(ClearCLPeerPointer pQueuePeerPointer,
-                            ClearCLPeerPointer pBufferPeerPointer,
-                            boolean pBlockingWrite,
-                            long pOffsetInBuffer,
-                            long pLengthInBytes,
-                            ClearCLPeerPointer pHostMemPeerPointer);
+  ClearCLPeerPointer enqueueWriteToBuffer(ClearCLPeerPointer pQueuePeerPointer,
+                                          ClearCLPeerPointer pBufferPeerPointer,
+                                          boolean pBlockingWrite,
+                                          long pOffsetInBuffer,
+                                          long pLengthInBytes,
+                                          ClearCLPeerPointer pHostMemPeerPointer,
+                                          ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                          boolean pReturnEvent);
 
   /**
    * Enqueues read from buffer region.
@@ -410,15 +514,35 @@ public interface ClearCLBackendInterface
    * @param pBufferOrigin
    * @param pHostOrigin
    * @param pRegion
+   * @param pBufferRowPitch
+   *          buffer row pitch in bytes, 0 -> computed from region
+   * @param pBufferSlicePitch
+   *          buffer slice pitch in bytes, 0 -> computed from region
+   * @param pHostRowPitch
+   *          host row pitch in bytes, 0 -> computed from region
+   * @param pHostSlicePitch
+   *          host slice pitch in bytes, 0 -> computed from region
    * @param pHostMemPeerPointer
+   * @param pWaitEventPeerPointers
+   *          event peer pointers to wait for before execution, can be null
+   * @param pReturnEvent
+   *          true -> an event is created and returned, false -> no event is
+   *          returned
+   * @return event peer pointer if requested, null otherwise
    */
-  void enqueueReadFromBufferRegion(ClearCLPeerPointer pQueuePeerPointer,
-                                   ClearCLPeerPointer pBufferPeerPointer,
-                                   boolean pBlockingRead,
-                                   long[] pBufferOrigin,
-                                   long[] pHostOrigin,
-                                   long[] pRegion,
-                                   ClearCLPeerPointer pHostMemPeerPointer);
+  ClearCLPeerPointer enqueueReadFromBufferRegion(ClearCLPeerPointer pQueuePeerPointer,
+                                                 ClearCLPeerPointer pBufferPeerPointer,
+                                                 boolean pBlockingRead,
+                                                 long[] pBufferOrigin,
+                                                 long[] pHostOrigin,
+                                                 long[] pRegion,
+                                                 long pBufferRowPitch,
+                                                 long pBufferSlicePitch,
+                                                 long pHostRowPitch,
+                                                 long pHostSlicePitch,
+                                                 ClearCLPeerPointer pHostMemPeerPointer,
+                                                 ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                 boolean pReturnEvent);
 
   /**
    * Enqueues write to buffer region.
@@ -431,15 +555,35 @@ public interface ClearCLBackendInterface
    * @param pBufferOrigin
    * @param pHostOrigin
    * @param pRegion
+   * @param pBufferRowPitch
+   *          buffer row pitch in bytes, 0 -> computed from region
+   * @param pBufferSlicePitch
+   *          buffer slice pitch in bytes, 0 -> computed from region
+   * @param pHostRowPitch
+   *          host row pitch in bytes, 0 -> computed from region
+   * @param pHostSlicePitch
+   *          host slice pitch in bytes, 0 -> computed from region
    * @param pHostMemPeerPointer
+   * @param pWaitEventPeerPointers
+   *          event peer pointers to wait for before execution, can be null
+   * @param pReturnEvent
+   *          true -> an event is created and returned, false -> no event is
+   *          returned
+   * @return event peer pointer if requested, null otherwise
    */
-  void enqueueWriteToBufferRegion(ClearCLPeerPointer pQueuePeerPointer,
-                                  ClearCLPeerPointer pBufferPeerPointer,
-                                  boolean pBlockingWrite,
-                                  long[] pBufferOrigin,
-                                  long[] pHostOrigin,
-                                  long[] pRegion,
-                                  ClearCLPeerPointer pHostMemPeerPointer);
+  ClearCLPeerPointer enqueueWriteToBufferRegion(ClearCLPeerPointer pQueuePeerPointer,
+                                                ClearCLPeerPointer pBufferPeerPointer,
+                                                boolean pBlockingWrite,
+                                                long[] pBufferOrigin,
+                                                long[] pHostOrigin,
+                                                long[] pRegion,
+                                                long pBufferRowPitch,
+                                                long pBufferSlicePitch,
+                                                long pHostRowPitch,
+                                                long pHostSlicePitch,
+                                                ClearCLPeerPointer pHostMemPeerPointer,
+                                                ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                boolean pReturnEvent);
 
   /**
    * Enqueues fill buffer region.
@@ -452,13 +596,21 @@ public interface ClearCLBackendInterface
    * @param pOffsetInBytes
    * @param pLengthInBytes
    * @param pPattern
+   * @param pWaitEventPeerPointers
+   *          event peer pointers to wait for before execution, can be null
+   * @param pReturnEvent
+   *          true -> an event is created and returned, false -> no event is
+   *          returned
+   * @return event peer pointer if requested, null otherwise
    */
-  void enqueueFillBuffer(ClearCLPeerPointer pQueuePeerPointer,
-                         ClearCLPeerPointer pBufferPeerPointer,
-                         boolean pBlockingFill,
-                         long pOffsetInBytes,
-                         long pLengthInBytes,
-                         byte[] pPattern);
+  ClearCLPeerPointer enqueueFillBuffer(ClearCLPeerPointer pQueuePeerPointer,
+                                       ClearCLPeerPointer pBufferPeerPointer,
+                                       boolean pBlockingFill,
+                                       long pOffsetInBytes,
+                                       long pLengthInBytes,
+                                       byte[] pPattern,
+                                       ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                       boolean pReturnEvent);
 
   /**
    * Enqueues copy buffer.
@@ -473,14 +625,22 @@ public interface ClearCLBackendInterface
    * @param pSrcOffsetInBytes
    * @param pDstOffsetInBytes
    * @param pLengthToCopyInBytes
+   * @param pWaitEventPeerPointers
+   *          event peer pointers to wait for before execution, can be null
+   * @param pReturnEvent
+   *          true -> an event is created and returned, false -> no event is
+   *          returned
+   * @return event peer pointer if requested, null otherwise
    */
-  void enqueueCopyBuffer(ClearCLPeerPointer pQueuePeerPointer,
-                         ClearCLPeerPointer pSrcBufferPeerPointer,
-                         ClearCLPeerPointer pDstBufferPeerPointer,
-                         boolean pBlockingCopy,
-                         long pSrcOffsetInBytes,
-                         long pDstOffsetInBytes,
-                         long pLengthToCopyInBytes);
+  ClearCLPeerPointer enqueueCopyBuffer(ClearCLPeerPointer pQueuePeerPointer,
+                                       ClearCLPeerPointer pSrcBufferPeerPointer,
+                                       ClearCLPeerPointer pDstBufferPeerPointer,
+                                       boolean pBlockingCopy,
+                                       long pSrcOffsetInBytes,
+                                       long pDstOffsetInBytes,
+                                       long pLengthToCopyInBytes,
+                                       ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                       boolean pReturnEvent);
 
   /**
    * Enqueues copy buffer region.
@@ -495,14 +655,34 @@ public interface ClearCLBackendInterface
    * @param pSrcOrigin
    * @param pDstOrigin
    * @param pRegion
+   * @param pSrcRowPitch
+   *          source row pitch in bytes, 0 -> computed from region
+   * @param pSrcSlicePitch
+   *          source slice pitch in bytes, 0 -> computed from region
+   * @param pDstRowPitch
+   *          destination row pitch in bytes, 0 -> computed from region
+   * @param pDstSlicePitch
+   *          destination slice pitch in bytes, 0 -> computed from region
+   * @param pWaitEventPeerPointers
+   *          event peer pointers to wait for before execution, can be null
+   * @param pReturnEvent
+   *          true -> an event is created and returned, false -> no event is
+   *          returned
+   * @return event peer pointer if requested, null otherwise
    */
-  void enqueueCopyBufferRegion(ClearCLPeerPointer pQueuePeerPointer,
-                               ClearCLPeerPointer pSrcBufferPeerPointer,
-                               ClearCLPeerPointer pDstBufferPeerPointer,
-                               boolean pBlockingCopy,
-                               long[] pSrcOrigin,
-                               long[] pDstOrigin,
-                               long[] pRegion);
+  ClearCLPeerPointer enqueueCopyBufferRegion(ClearCLPeerPointer pQueuePeerPointer,
+                                             ClearCLPeerPointer pSrcBufferPeerPointer,
+                                             ClearCLPeerPointer pDstBufferPeerPointer,
+                                             boolean pBlockingCopy,
+                                             long[] pSrcOrigin,
+                                             long[] pDstOrigin,
+                                             long[] pRegion,
+                                             long pSrcRowPitch,
+                                             long pSrcSlicePitch,
+                                             long pDstRowPitch,
+                                             long pDstSlicePitch,
+                                             ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                             boolean pReturnEvent);
 
   /**
    * Enqueues copy buffer to image region.
@@ -517,14 +697,22 @@ public interface ClearCLBackendInterface
    * @param pSrcOffsetInBytes
    * @param pDstOrigin
    * @param pDstRegion
+   * @param pWaitEventPeerPointers
+   *          event peer pointers to wait for before execution, can be null
+   * @param pReturnEvent
+   *          true -> an event is created and returned, false -> no event is
+   *          returned
+   * @return event peer pointer if requested, null otherwise
    */
-  void enqueueCopyBufferToImage(ClearCLPeerPointer pQueuePeerPointer,
-                                ClearCLPeerPointer pSrcBufferPeerPointer,
-                                ClearCLPeerPointer pDstImagePeerPointer,
-                                boolean pBlockingCopy,
-                                long pSrcOffsetInBytes,
-                                long[] pDstOrigin,
-                                long[] pDstRegion);
+  ClearCLPeerPointer enqueueCopyBufferToImage(ClearCLPeerPointer pQueuePeerPointer,
+                                              ClearCLPeerPointer pSrcBufferPeerPointer,
+                                              ClearCLPeerPointer pDstImagePeerPointer,
+                                              boolean pBlockingCopy,
+                                              long pSrcOffsetInBytes,
+                                              long[] pDstOrigin,
+                                              long[] pDstRegion,
+                                              ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                              boolean pReturnEvent);
 
   /**
    * Enqueues copy image to buffer region.
@@ -539,14 +727,22 @@ public interface ClearCLBackendInterface
    * @param pSrcOrigin
    * @param pSrcRegion
    * @param pDstOffset
+   * @param pWaitEventPeerPointers
+   *          event peer pointers to wait for before execution, can be null
+   * @param pReturnEvent
+   *          true -> an event is created and returned, false -> no event is
+   *          returned
+   * @return event peer pointer if requested, null otherwise
    */
-  void enqueueCopyImageToBuffer(ClearCLPeerPointer pQueuePeerPointer,
-                                ClearCLPeerPointer pSrcImagePeerPointer,
-                                ClearCLPeerPointer pDstBufferPeerPointer,
-                                boolean pBlockingCopy,
-                                long[] pSrcOrigin,
-                                long[] pSrcRegion,
-                                long pDstOffset);
+  ClearCLPeerPointer enqueueCopyImageToBuffer(ClearCLPeerPointer pQueuePeerPointer,
+                                              ClearCLPeerPointer pSrcImagePeerPointer,
+                                              ClearCLPeerPointer pDstBufferPeerPointer,
+                                              boolean pBlockingCopy,
+                                              long[] pSrcOrigin,
+                                              long[] pSrcRegion,
+                                              long pDstOffset,
+                                              ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                              boolean pReturnEvent);
 
   /**
    * Enqueues read from image region.
@@ -560,13 +756,21 @@ public interface ClearCLBackendInterface
    * @param pRegion
    * @param pHostMemPeerPointer
    *          host memory peer pointer
+   * @param pWaitEventPeerPointers
+   *          event peer pointers to wait for before execution, can be null
+   * @param pReturnEvent
+   *          true -> an event is created and returned, false -> no event is
+   *          returned
+   * @return event peer pointer if requested, null otherwise
    */
-  void enqueueReadFromImage(ClearCLPeerPointer pQueuePeerPointer,
-                            ClearCLPeerPointer pImagePeerPointer,
-                            boolean pReadWrite,
-                            long[] pOrigin,
-                            long[] pRegion,
-                            ClearCLPeerPointer pHostMemPeerPointer);
+  ClearCLPeerPointer enqueueReadFromImage(ClearCLPeerPointer pQueuePeerPointer,
+                                          ClearCLPeerPointer pImagePeerPointer,
+                                          boolean pReadWrite,
+                                          long[] pOrigin,
+                                          long[] pRegion,
+                                          ClearCLPeerPointer pHostMemPeerPointer,
+                                          ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                          boolean pReturnEvent);
 
   /**
    * Enqueues write to image
@@ -580,13 +784,21 @@ public interface ClearCLBackendInterface
    * @param pRegion
    * @param pHostMemPeerPointer
    *          host memory peer pointer
+   * @param pWaitEventPeerPointers
+   *          event peer pointers to wait for before execution, can be null
+   * @param pReturnEvent
+   *          true -> an event is created and returned, false -> no event is
+   *          returned
+   * @return event peer pointer if requested, null otherwise
    */
-  void enqueueWriteToImage(ClearCLPeerPointer pQueuePeerPointer,
-                           ClearCLPeerPointer pImagePeerPointer,
-                           boolean pBlockingWrite,
-                           long[] pOrigin,
-                           long[] pRegion,
-                           ClearCLPeerPointer pHostMemPeerPointer);
+  ClearCLPeerPointer enqueueWriteToImage(ClearCLPeerPointer pQueuePeerPointer,
+                                         ClearCLPeerPointer pImagePeerPointer,
+                                         boolean pBlockingWrite,
+                                         long[] pOrigin,
+                                         long[] pRegion,
+                                         ClearCLPeerPointer pHostMemPeerPointer,
+                                         ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                         boolean pReturnEvent);
 
   /**
    * Enqueues fill image
@@ -599,13 +811,21 @@ public interface ClearCLBackendInterface
    * @param pOrigin
    * @param pRegion
    * @param pColor
+   * @param pWaitEventPeerPointers
+   *          event peer pointers to wait for before execution, can be null
+   * @param pReturnEvent
+   *          true -> an event is created and returned, false -> no event is
+   *          returned
+   * @return event peer pointer if requested, null otherwise
    */
-  void enqueueFillImage(ClearCLPeerPointer pQueuePeerPointer,
-                        ClearCLPeerPointer pImagePeerPointer,
-                        boolean pBlockingFill,
-                        long[] pOrigin,
-                        long[] pRegion,
-                        byte[] pColor);
+  ClearCLPeerPointer enqueueFillImage(ClearCLPeerPointer pQueuePeerPointer,
+                                      ClearCLPeerPointer pImagePeerPointer,
+                                      boolean pBlockingFill,
+                                      long[] pOrigin,
+                                      long[] pRegion,
+                                      byte[] pColor,
+                                      ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                      boolean pReturnEvent);
 
   /**
    * Enqueues copy image to another image.
@@ -620,14 +840,123 @@ public interface ClearCLBackendInterface
    * @param pSrcOrigin
    * @param pDstOrigin
    * @param pRegion
+   * @param pWaitEventPeerPointers
+   *          event peer pointers to wait for before execution, can be null
+   * @param pReturnEvent
+   *          true -> an event is created and returned, false -> no event is
+   *          returned
+   * @return event peer pointer if requested, null otherwise
+   */
+  ClearCLPeerPointer enqueueCopyImage(ClearCLPeerPointer pQueuePeerPointer,
+                                      ClearCLPeerPointer pSrcImagePeerPointer,
+                                      ClearCLPeerPointer pDstImagePeerPointer,
+                                      boolean pBlockingCopy,
+                                      long[] pSrcOrigin,
+                                      long[] pDstOrigin,
+                                      long[] pRegion,
+                                      ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                      boolean pReturnEvent);
+
+  /**
+   * Maps a region of a buffer into host memory. This call blocks until the
+   * region is mapped. The returned memory must not be freed, but unmapped.
+   * 
+   * @param pQueuePeerPointer
+   *          queue peer pointer
+   * @param pBufferPeerPointer
+   *          buffer peer pointer
+   * @param pMapAccessType
+   *          host access to map the region for
+   * @param pOffsetInBytes
+   *          offset in buffer in bytes
+   * @param pLengthInBytes
+   *          length of region in bytes
+   * @param pWaitEventPeerPointers
+   *          event peer pointers to wait for before execution, can be null
+   * @return mapped host memory
+   */
+  ContiguousMemoryInterface enqueueMapBuffer(ClearCLPeerPointer pQueuePeerPointer,
+                                             ClearCLPeerPointer pBufferPeerPointer,
+                                             HostAccessType pMapAccessType,
+                                             long pOffsetInBytes,
+                                             long pLengthInBytes,
+                                             ClearCLPeerPointer[] pWaitEventPeerPointers);
+
+  /**
+   * Maps a region of an image into host memory. This call blocks until the
+   * region is mapped. The returned memory must not be freed, but unmapped.
+   * 
+   * @param pQueuePeerPointer
+   *          queue peer pointer
+   * @param pImagePeerPointer
+   *          image peer pointer
+   * @param pMapAccessType
+   *          host access to map the region for
+   * @param pOrigin
+   *          region origin
+   * @param pRegion
+   *          region dimensions
+   * @param pPixelSizeInBytes
+   *          pixel size in bytes
+   * @param pPitchesInBytes
+   *          array of length two that receives the row pitch and slice pitch
+   *          of the mapped region in bytes
+   * @param pWaitEventPeerPointers
+   *          event peer pointers to wait for before execution, can be null
+   * @return mapped host memory
+   */
+  ContiguousMemoryInterface enqueueMapImage(ClearCLPeerPointer pQueuePeerPointer,
+                                            ClearCLPeerPointer pImagePeerPointer,
+                                            HostAccessType pMapAccessType,
+                                            long[] pOrigin,
+                                            long[] pRegion,
+                                            long pPixelSizeInBytes,
+                                            long[] pPitchesInBytes,
+                                            ClearCLPeerPointer[] pWaitEventPeerPointers);
+
+  /**
+   * Unmaps a previously mapped region of a buffer or image.
+   * 
+   * @param pQueuePeerPointer
+   *          queue peer pointer
+   * @param pMemPeerPointer
+   *          buffer or image peer pointer
+   * @param pMappedMemory
+   *          mapped host memory
+   * @param pBlockingUnmap
+   *          true -> blocking call, false -> asynchronous call
+   * @param pWaitEventPeerPointers
+   *          event peer pointers to wait for before execution, can be null
+   * @param pReturnEvent
+   *          true -> an event is created and returned, false -> no event is
+   *          returned
+   * @return event peer pointer if requested, null otherwise
    */
-  void enqueueCopyImage(ClearCLPeerPointer pQueuePeerPointer,
-                        ClearCLPeerPointer pSrcImagePeerPointer,
-                        ClearCLPeerPointer pDstImagePeerPointer,
-                        boolean pBlockingCopy,
-                        long[] pSrcOrigin,
-                        long[] pDstOrigin,
-                        long[] pRegion);
+  ClearCLPeerPointer enqueueUnmap(ClearCLPeerPointer pQueuePeerPointer,
+                                  ClearCLPeerPointer pMemPeerPointer,
+                                  ContiguousMemoryInterface pMappedMemory,
+                                  boolean pBlockingUnmap,
+                                  ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                  boolean pReturnEvent);
+
+  /**
+   * Enqueues a barrier: commands enqueued after the barrier do not start before
+   * all commands enqueued before it, or the given events if any, have
+   * completed. This is required to order commands on out-of-order queues.
+   * 
+   * @param pQueuePeerPointer
+   *          queue peer pointer
+   * @param pWaitEventPeerPointers
+   *          event peer pointers to wait for, can be null to wait for all
+   *          previously enqueued commands
+   * @param pReturnEvent
+   *          true -> an event is created and returned, false -> no event is
+   *          returned
+   * @return event peer pointer if requested, null otherwise
+   */
+  ClearCLPeerPointer enqueueBarrier(ClearCLPeerPointer pQueuePeerPointer,
+                                    ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                    boolean pReturnEvent);
 
   /**
    * Releases buffer.
@@ -720,4 +1049,72 @@ public interface ClearCLBackendInterface
    */
   void waitQueueToFinish(ClearCLPeerPointer pQueuePeerPointer);
 
+  /**
+   * Waits for the given events to complete.
+   * 
+   * @param pEventPeerPointers
+   *          event peer pointers
+   */
+  void waitForEvents(ClearCLPeerPointer... pEventPeerPointers);
+
+  /**
+   * Returns the execution status of an event.
+   * 
+   * @param pEventPeerPointer
+   *          event peer pointer
+   * @return event status
+   */
+  EventStatus getEventStatus(ClearCLPeerPointer pEventPeerPointer);
+
+  /**
+   * Releases event.
+   * 
+   * @param pPeerPointer
+   *          event peer pointer
+   */
+  void releaseEvent(ClearCLPeerPointer pPeerPointer);
+
+  /**
+   * Retains event, the event must be released once more.
+   * 
+   * @param pPeerPointer
+   *          event peer pointer
+   */
+  void retainEvent(ClearCLPeerPointer pPeerPointer);
+
+  /**
+   * Returns the profiling timestamps of a completed command: queued, submit,
+   * start and end times in nanoseconds of device time. The command must have
+   * been enqueued on a queue with profiling enabled.
+   * 
+   * @param pEventPeerPointer
+   *          event peer pointer
+   * @return array {queued, submit, start, end} in nanoseconds
+   */
+  long[] getEventProfilingInfo(ClearCLPeerPointer pEventPeerPointer);
+
+  /**
+   * Registers a callback that is called once the command associated to the
+   * given event has completed, or terminated abnormally. The callback receives
+   * the raw OpenCL execution status: zero for completion, a negative error code
+   * otherwise. Callbacks are called from threads owned by the OpenCL
+   * implementation and should return quickly.
+   * 
+   * @param pEventPeerPointer
+   *          event peer pointer
+   * @param pCallback
+   *          callback receiving the execution status
+   */
+  void setEventCallback(ClearCLPeerPointer pEventPeerPointer,
+                        IntConsumer pCallback);
+
+  /**
+   * Issues all previously enqueued commands to the device without waiting for
+   * them to finish.
+   * 
+   * @param pQueuePeerPointer
+   *          queue peer pointer
+   */
+  void flushQueue(ClearCLPeerPointer pQueuePeerPointer);
+
 }
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 
 import clearcl.backend.javacl.ClearCLBackendJavaCL;
 import clearcl.backend.jocl.ClearCLBackendJOCL;
+import clearcl.backend.purejava.ClearCLBackendPureJava;
 import clearcl.benchmark.Benchmark;
 import clearcl.enums.BenchmarkTest;
 import clearcl.util.OsCheck;
@@ -22,7 +23,9 @@ public class ClearCLBackends
   public static boolean sStdOutVerbose = false;
 
   /**
-   * Returns the list of all available ClearCL backends.
+   * Returns the list of all available ClearCL backends. The pure Java backend
+   * comes last and is always available, it serves as fallback when no OpenCL
+   * platform can be found.
    * 
    * @return list of available backends
    */
@@ -45,6 +48,7 @@ public class ClearCLBackends
     {
       System.err.println("Failed to instanciate JavaCL backend during backend enumeration (not critical)");
     }
+    lList.add(new ClearCLBackendPureJava());
 
     return lList;
   }
@@ -122,8 +126,17 @@ public class ClearCLBackends
       break;
     }
 
+    // CPU only platforms are not benchmarked, JOCL is then still the best
+    // choice, unless no OpenCL library can be loaded at all:
     if (lClearCLBackend == null)
-      lClearCLBackend = new ClearCLBackendJOCL();
+      try
+      {
+        lClearCLBackend = new ClearCLBackendJOCL();
+      }
+      catch (Throwable e)
+      {
+        lClearCLBackend = new ClearCLBackendPureJava();
+      }
 
     println(" --> Using backend: "
             + lClearCLBackend.getClass().getSimpleName());
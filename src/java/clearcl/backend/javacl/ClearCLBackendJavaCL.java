@@ -5,34 +5,42 @@ import static org.bridj.Pointer.pointerToSizeTs;
 import java.nio.Buffer;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
 
 import clearcl.ClearCLBuffer;
 import clearcl.ClearCLImage;
 import clearcl.ClearCLLocalMemory;
 import clearcl.ClearCLPeerPointer;
+import clearcl.abs.ClearCLMemBase;
 import clearcl.backend.BackendUtils;
 import clearcl.backend.ClearCLBackendBase;
 import clearcl.backend.ClearCLBackendInterface;
 import clearcl.backend.SizeOf;
 import clearcl.enums.BuildStatus;
 import clearcl.enums.DeviceType;
+import clearcl.enums.EventStatus;
 import clearcl.enums.HostAccessType;
 import clearcl.enums.ImageChannelDataType;
 import clearcl.enums.ImageChannelOrder;
 import clearcl.enums.ImageType;
 import clearcl.enums.KernelAccessType;
 import clearcl.enums.MemAllocMode;
+import clearcl.exceptions.ClearCLException;
 import clearcl.exceptions.ClearCLUnsupportedException;
 import clearcl.exceptions.OpenCLException;
 
 import com.nativelibs4java.opencl.CLPlatform.ContextProperties;
 import com.nativelibs4java.opencl.library.IOpenCLLibrary;
 import com.nativelibs4java.opencl.library.OpenCLLibrary;
+import com.nativelibs4java.opencl.library.cl_buffer_region;
 import com.nativelibs4java.opencl.library.cl_image_desc;
 import com.nativelibs4java.opencl.library.cl_image_format;
 
 import coremem.ContiguousMemoryInterface;
 import coremem.fragmented.FragmentedMemoryInterface;
+import coremem.offheap.OffHeapMemory;
 import coremem.util.Size;
 
 import org.bridj.Pointer;
@@ -53,6 +61,14 @@ public class ClearCLBackendJavaCL extends ClearCLBackendBase
   private ThreadLocal<Pointer<?>> mTempPointerThreadLocal =
                                                           new ThreadLocal<>();
 
+  private ThreadLocal<ArgumentScratch> mArgumentScratchThreadLocal =
+                                                                   ThreadLocal.withInitial(ArgumentScratch::new);
+  private ThreadLocal<NDRangePointers> mNDRangePointersThreadLocal =
+                                                                   ThreadLocal.withInitial(NDRangePointers::new);
+
+  private final Set<EventCallback> mPendingEventCallbacks =
+                                                         ConcurrentHashMap.newKeySet();
+
   /**
    * Instanciates a JavaCL backend with no debug functionality
    */
@@ -239,6 +255,13 @@ public class ClearCLBackendJavaCL extends ClearCLBackendBase
                          IOpenCLLibrary.CL_DEVICE_OPENCL_C_VERSION);
   }
 
+  @Override
+  public String getDeviceDriverVersion(ClearCLPeerPointer pDevicePointer)
+  {
+    return getDeviceInfo(pDevicePointer,
+                         IOpenCLLibrary.CL_DRIVER_VERSION);
+  }
+
   @Override
   public String getDeviceExtensions(ClearCLPeerPointer pDevicePointer)
   {
@@ -321,7 +344,8 @@ public class ClearCLBackendJavaCL extends ClearCLBackendBase
   @Override
   public ClearCLPeerPointer getQueuePeerPointer(ClearCLPeerPointer pDevicePointer,
                                                 ClearCLPeerPointer pContextPointer,
-                                                boolean pInOrder)
+                                                boolean pInOrder,
+                                                boolean pProfiling)
   {
     return BackendUtils.checkExceptions(() -> {
       Pointer<Integer> lErrorCode = Pointer.allocateInt();
@@ -329,8 +353,10 @@ public class ClearCLBackendJavaCL extends ClearCLBackendBase
       OpenCLLibrary.cl_command_queue commandQueue =
                                                   mOpenCLLibrary.clCreateCommandQueue((OpenCLLibrary.cl_context) pContextPointer.getPointer(),
                                                                                       (OpenCLLibrary.cl_device_id) pDevicePointer.getPointer(),
-                                                                                      pInOrder ? 0
-                                                                                               : IOpenCLLibrary.CL_QUEUE_OUT_OF_ORDER_EXEC_MODE_ENABLE,
+                                                                                      (pInOrder ? 0
+                                                                                                : IOpenCLLibrary.CL_QUEUE_OUT_OF_ORDER_EXEC_MODE_ENABLE)
+                                                                                        | (pProfiling ? IOpenCLLibrary.CL_QUEUE_PROFILING_ENABLE
+                                                                                                      : 0),
                                                                                       lErrorCode);
 
       BackendUtils.checkOpenCLErrorCode(lErrorCode.get());
@@ -390,6 +416,32 @@ public class ClearCLBackendJavaCL extends ClearCLBackendBase
     });
   }
 
+  @Override
+  public ClearCLPeerPointer getSubBufferPeerPointer(ClearCLPeerPointer pBufferPointer,
+                                                    long pOffsetInBytes,
+                                                    long pSizeInBytes)
+  {
+    return BackendUtils.checkExceptions(() -> {
+
+      cl_buffer_region lRegion = new cl_buffer_region();
+      lRegion.origin(pOffsetInBytes);
+      lRegion.size(pSizeInBytes);
+
+      Pointer<Integer> lErrorCode = Pointer.allocateInt();
+
+      OpenCLLibrary.cl_mem lSubBufferPointer =
+                                             mOpenCLLibrary.clCreateSubBuffer((OpenCLLibrary.cl_mem) pBufferPointer.getPointer(),
+                                                                              0,
+                                                                              IOpenCLLibrary.CL_BUFFER_CREATE_TYPE_REGION,
+                                                                              Pointer.getPointer(lRegion),
+                                                                              lErrorCode);
+
+      BackendUtils.checkOpenCLErrorCode(lErrorCode.get());
+
+      return new ClearCLPeerPointer(lSubBufferPointer);
+    });
+  }
+
   @Override
   public ClearCLPeerPointer getImagePeerPointer(ClearCLPeerPointer pDevicePointer,
                                                 ClearCLPeerPointer pContextPointer,
@@ -543,6 +595,61 @@ public class ClearCLBackendJavaCL extends ClearCLBackendBase
     });
   }
 
+  @Override
+  public ClearCLPeerPointer getProgramPeerPointer(ClearCLPeerPointer pContextPointer,
+                                                  ClearCLPeerPointer pDevicePointer,
+                                                  byte[] pBinary)
+  {
+    return BackendUtils.checkExceptions(() -> {
+
+      Pointer<Pointer<Byte>> lBinaryPointers =
+                                             Pointer.pointerToPointer(Pointer.pointerToBytes(pBinary));
+
+      Pointer<Integer> lBinaryStatus = Pointer.allocateInt();
+      Pointer<Integer> lErrorCode = Pointer.allocateInt();
+
+      OpenCLLibrary.cl_program program =
+                                       mOpenCLLibrary.clCreateProgramWithBinary((OpenCLLibrary.cl_context) pContextPointer.getPointer(),
+                                                                                1,
+                                                                                Utils.convertDevicePointers(pDevicePointer),
+                                                                                Pointer.pointerToSizeT(pBinary.length),
+                                                                                lBinaryPointers,
+                                                                                lBinaryStatus,
+                                                                                lErrorCode);
+      BackendUtils.checkOpenCLErrorCode(lErrorCode.get());
+      BackendUtils.checkOpenCLErrorCode(lBinaryStatus.get());
+
+      ClearCLPeerPointer lClearCLPointer =
+                                         new ClearCLPeerPointer(program);
+      return lClearCLPointer;
+    });
+  }
+
+  @Override
+  public byte[] getProgramBinary(ClearCLPeerPointer pProgramPointer)
+  {
+    return BackendUtils.checkExceptions(() -> {
+      OpenCLLibrary.cl_program lProgram =
+                                        (OpenCLLibrary.cl_program) pProgramPointer.getPointer();
+
+      Pointer<SizeT> lBinarySize = Pointer.allocateSizeT();
+      BackendUtils.checkOpenCLError(mOpenCLLibrary.clGetProgramInfo(lProgram,
+                                                                    IOpenCLLibrary.CL_PROGRAM_BINARY_SIZES,
+                                                                    SizeOf.size_t,
+                                                                    lBinarySize,
+                                                                    null));
+
+      int lLength = (int) lBinarySize.getSizeT();
+      Pointer<Byte> lBinary = Pointer.allocateBytes(lLength);
+      BackendUtils.checkOpenCLError(mOpenCLLibrary.clGetProgramInfo(lProgram,
+                                                                    IOpenCLLibrary.CL_PROGRAM_BINARIES,
+                                                                    SizeOf.POINTER,
+                                                                    Pointer.pointerToPointer(lBinary),
+                                                                    null));
+      return lBinary.getBytes(lLength);
+    });
+  }
+
   @Override
   public boolean buildProgram(ClearCLPeerPointer pProgramPointer,
                               String pOptions)
@@ -667,17 +774,18 @@ public class ClearCLBackendJavaCL extends ClearCLBackendBase
                                 int pIndex,
                                 Object pObject)
   {
-    BackendUtils.checkExceptions(() -> {
-
-      Pointer<?> lTempPointer = mTempPointerThreadLocal.get();
+    if (pObject instanceof ClearCLBuffer
+        || pObject instanceof ClearCLImage)
+    {
+      setKernelArgument(pKernelPeerPointer,
+                        pIndex,
+                        ((ClearCLMemBase) pObject).getPeerPointer());
+      return;
+    }
 
-      if (lTempPointer == null)
-      {
+    BackendUtils.checkExceptions(() -> {
 
-        lTempPointer = Pointer.allocateBytes(1024)
-                              .withoutValidityInformation();
-        mTempPointerThreadLocal.set(lTempPointer);
-      }
+      Pointer<?> lTempPointer = getTempPointer();
 
       OpenCLLibrary.cl_kernel lKernelPointer =
                                              (OpenCLLibrary.cl_kernel) pKernelPeerPointer.getPointer();
@@ -757,29 +865,6 @@ public class ClearCLBackendJavaCL extends ClearCLBackendBase
                                                                     pIndex,
                                                                     lObjectSize,
                                                                     Pointer.pointerToDoubles((double[]) pObject)));
-      else if (pObject instanceof ClearCLBuffer)
-      {
-        ClearCLBuffer lClearCLBuffer = (ClearCLBuffer) pObject;
-        OpenCLLibrary.cl_mem lCLMem =
-                                    (OpenCLLibrary.cl_mem) lClearCLBuffer.getPeerPointer()
-                                                                         .getPointer();
-
-        BackendUtils.checkOpenCLError(mOpenCLLibrary.clSetKernelArg(lKernelPointer,
-                                                                    pIndex,
-                                                                    SizeOf.cl_mem,
-                                                                    Pointer.pointerToPointer(lCLMem)));
-      }
-      else if (pObject instanceof ClearCLImage)
-      {
-        ClearCLImage lClearCLImage = (ClearCLImage) pObject;
-        OpenCLLibrary.cl_mem lCLmem =
-                                    (OpenCLLibrary.cl_mem) lClearCLImage.getPeerPointer()
-                                                                        .getPointer();
-        BackendUtils.checkOpenCLError(mOpenCLLibrary.clSetKernelArg(lKernelPointer,
-                                                                    pIndex,
-                                                                    SizeOf.cl_mem,
-                                                                    Pointer.pointerToPointer(lCLmem)));
-      }
       else if (pObject instanceof ClearCLLocalMemory)
       {
         ClearCLLocalMemory lClearCLLocalMemory =
@@ -794,40 +879,155 @@ public class ClearCLBackendJavaCL extends ClearCLBackendBase
 
   }
 
+  private void setKernelArgument(ClearCLPeerPointer pKernelPeerPointer,
+                                 int pIndex,
+                                 ClearCLPeerPointer pMemPeerPointer)
+  {
+    // no capturing closure here: buffers and images are set on every dispatch
+    // and this must not allocate once the argument pointer is cached:
+    try
+    {
+      Pointer<?> lArgumentPointer =
+                                  (Pointer<?>) pMemPeerPointer.getArgumentPointer();
+      if (lArgumentPointer == null)
+      {
+        lArgumentPointer =
+                         Pointer.pointerToPointer((OpenCLLibrary.cl_mem) pMemPeerPointer.getPointer());
+        pMemPeerPointer.setArgumentPointer(lArgumentPointer);
+      }
+
+      BackendUtils.checkOpenCLError(mOpenCLLibrary.clSetKernelArg((OpenCLLibrary.cl_kernel) pKernelPeerPointer.getPointer(),
+                                                                  pIndex,
+                                                                  SizeOf.cl_mem,
+                                                                  lArgumentPointer));
+    }
+    catch (ClearCLException e)
+    {
+      throw e;
+    }
+    catch (Throwable e)
+    {
+      throw new ClearCLException(e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public void setKernelArgument(ClearCLPeerPointer pKernelPeerPointer,
+                                int pIndex,
+                                long pSizeInBytes,
+                                long pLowBits,
+                                long pHighBits)
+  {
+    // no capturing closure here: arguments are set on every dispatch and
+    // this must not allocate:
+    try
+    {
+      ArgumentScratch lArgumentScratch =
+                                       mArgumentScratchThreadLocal.get();
+      lArgumentScratch.mBits[0] = pLowBits;
+      lArgumentScratch.mBits[1] = pHighBits;
+      lArgumentScratch.mPointer.setLongsAtOffset(0,
+                                                 lArgumentScratch.mBits,
+                                                 0,
+                                                 2);
+
+      BackendUtils.checkOpenCLError(mOpenCLLibrary.clSetKernelArg((OpenCLLibrary.cl_kernel) pKernelPeerPointer.getPointer(),
+                                                                  pIndex,
+                                                                  pSizeInBytes,
+                                                                  lArgumentScratch.mPointer));
+    }
+    catch (ClearCLException e)
+    {
+      throw e;
+    }
+    catch (Throwable e)
+    {
+      throw new ClearCLException(e.getMessage(), e);
+    }
+  }
+
+  private Pointer<?> getTempPointer()
+  {
+    Pointer<?> lTempPointer = mTempPointerThreadLocal.get();
+
+    if (lTempPointer == null)
+    {
+
+      lTempPointer = Pointer.allocateBytes(1024)
+                            .withoutValidityInformation();
+      mTempPointerThreadLocal.set(lTempPointer);
+    }
+    return lTempPointer;
+  }
+
   @Override
-  public void enqueueKernelExecution(ClearCLPeerPointer pQueuePointer,
-                                     ClearCLPeerPointer pKernelPointer,
-                                     int pNumberOfDimension,
-                                     long[] pGlobalOffsets,
-                                     long[] pGlobalSizes,
-                                     long[] pLocalSizes)
+  public ClearCLPeerPointer enqueueKernelExecution(ClearCLPeerPointer pQueuePointer,
+                                                   ClearCLPeerPointer pKernelPointer,
+                                                   int pNumberOfDimension,
+                                                   long[] pGlobalOffsets,
+                                                   long[] pGlobalSizes,
+                                                   long[] pLocalSizes,
+                                                   ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                   boolean pReturnEvent)
   {
+    // no capturing closure here: this is the hot path of kernel dispatch and
+    // must not allocate:
+    try
+    {
+      Pointer<OpenCLLibrary.cl_event> lWaitEvents =
+                                                  Utils.convertEventPointers(pWaitEventPeerPointers);
+      Pointer<OpenCLLibrary.cl_event> lEvent =
+                                             pReturnEvent ? Pointer.allocateTypedPointer(OpenCLLibrary.cl_event.class)
+                                                          : null;
 
-    BackendUtils.checkExceptions(() -> {
+      // per-thread native range arrays are reused to avoid allocations:
+      NDRangePointers lNDRangePointers =
+                                       mNDRangePointersThreadLocal.get();
 
       BackendUtils.checkOpenCLError(mOpenCLLibrary.clEnqueueNDRangeKernel((OpenCLLibrary.cl_command_queue) pQueuePointer.getPointer(),
                                                                           (OpenCLLibrary.cl_kernel) pKernelPointer.getPointer(),
                                                                           pNumberOfDimension,
-                                                                          Pointer.pointerToSizeTs(pGlobalOffsets),
-                                                                          Pointer.pointerToSizeTs(pGlobalSizes),
-                                                                          Pointer.pointerToSizeTs(pLocalSizes),
-                                                                          0,
-                                                                          null,
-                                                                          null));
-    });
-
+                                                                          NDRangePointers.set(lNDRangePointers.mGlobalOffsets,
+                                                                                              pGlobalOffsets),
+                                                                          NDRangePointers.set(lNDRangePointers.mGlobalSizes,
+                                                                                              pGlobalSizes),
+                                                                          NDRangePointers.set(lNDRangePointers.mLocalSizes,
+                                                                                              pLocalSizes),
+                                                                          Utils.getNumberOfEvents(lWaitEvents),
+                                                                          lWaitEvents,
+                                                                          lEvent));
+
+      return wrapEvent(lEvent, false, pReturnEvent);
+    }
+    catch (ClearCLException e)
+    {
+      throw e;
+    }
+    catch (Throwable e)
+    {
+      throw new ClearCLException(e.getMessage(), e);
+    }
   }
 
   @SuppressWarnings("rawtypes")
   @Override
-  public void enqueueReadFromBuffer(ClearCLPeerPointer pQueuePointer,
-                                    ClearCLPeerPointer pBufferPointer,
-                                    boolean pBlockingRead,
-                                    long pOffsetInBuffer,
-                                    long pLengthInBytes,
-                                    ClearCLPeerPointer pHostMemPointer)
+  public ClearCLPeerPointer enqueueReadFromBuffer(ClearCLPeerPointer pQueuePointer,
+                                                  ClearCLPeerPointer pBufferPointer,
+                                                  boolean pBlockingRead,
+                                                  long pOffsetInBuffer,
+                                                  long pLengthInBytes,
+                                                  ClearCLPeerPointer pHostMemPointer,
+                                                  ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                  boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      Pointer<OpenCLLibrary.cl_event> lWaitEvents =
+                                                  Utils.convertEventPointers(pWaitEventPeerPointers);
+      Pointer<OpenCLLibrary.cl_event> lEvent =
+                                             pReturnEvent ? Pointer.allocateTypedPointer(OpenCLLibrary.cl_event.class)
+                                                          : null;
+
       BackendUtils.checkOpenCLError(mOpenCLLibrary.clEnqueueReadBuffer((OpenCLLibrary.cl_command_queue) pQueuePointer.getPointer(),
                                                                        (OpenCLLibrary.cl_mem) pBufferPointer.getPointer(),
                                                                        pBlockingRead ? 1
@@ -835,22 +1035,32 @@ public class ClearCLBackendJavaCL extends ClearCLBackendBase
                                                                        pOffsetInBuffer,
                                                                        pLengthInBytes,
                                                                        (Pointer) pHostMemPointer.getPointer(),
-                                                                       0,
-                                                                       null,
-                                                                       null));
+                                                                       Utils.getNumberOfEvents(lWaitEvents),
+                                                                       lWaitEvents,
+                                                                       lEvent));
+
+      return wrapEvent(lEvent, false, pReturnEvent);
     });
   }
 
   @SuppressWarnings("rawtypes")
   @Override
-  public void enqueueWriteToBuffer(ClearCLPeerPointer pQueuePointer,
-                                   ClearCLPeerPointer pBufferPointer,
-                                   boolean pBlockingWrite,
-                                   long pOffsetInBuffer,
-                                   long pLengthInBytes,
-                                   ClearCLPeerPointer pHostMemPointer)
+  public ClearCLPeerPointer enqueueWriteToBuffer(ClearCLPeerPointer pQueuePointer,
+                                                 ClearCLPeerPointer pBufferPointer,
+                                                 boolean pBlockingWrite,
+                                                 long pOffsetInBuffer,
+                                                 long pLengthInBytes,
+                                                 ClearCLPeerPointer pHostMemPointer,
+                                                 ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                 boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      Pointer<OpenCLLibrary.cl_event> lWaitEvents =
+                                                  Utils.convertEventPointers(pWaitEventPeerPointers);
+      Pointer<OpenCLLibrary.cl_event> lEvent =
+                                             pReturnEvent ? Pointer.allocateTypedPointer(OpenCLLibrary.cl_event.class)
+                                                          : null;
 
       BackendUtils.checkOpenCLError(mOpenCLLibrary.clEnqueueWriteBuffer((OpenCLLibrary.cl_command_queue) pQueuePointer.getPointer(),
                                                                         (OpenCLLibrary.cl_mem) pBufferPointer.getPointer(),
@@ -859,23 +1069,38 @@ public class ClearCLBackendJavaCL extends ClearCLBackendBase
                                                                         pOffsetInBuffer,
                                                                         pLengthInBytes,
                                                                         (Pointer) pHostMemPointer.getPointer(),
-                                                                        0,
-                                                                        null,
-                                                                        null));
+                                                                        Utils.getNumberOfEvents(lWaitEvents),
+                                                                        lWaitEvents,
+                                                                        lEvent));
+
+      return wrapEvent(lEvent, false, pReturnEvent);
     });
   }
 
   @SuppressWarnings("rawtypes")
   @Override
-  public void enqueueReadFromBufferRegion(ClearCLPeerPointer pQueuePointer,
-                                          ClearCLPeerPointer pBufferPointer,
-                                          boolean pBlockingRead,
-                                          long[] pBufferOrigin,
-                                          long[] pHostOrigin,
-                                          long[] pRegion,
-                                          ClearCLPeerPointer pHostMemPointer)
+  public ClearCLPeerPointer enqueueReadFromBufferRegion(ClearCLPeerPointer pQueuePointer,
+                                                        ClearCLPeerPointer pBufferPointer,
+                                                        boolean pBlockingRead,
+                                                        long[] pBufferOrigin,
+                                                        long[] pHostOrigin,
+                                                        long[] pRegion,
+                                                        long pBufferRowPitch,
+                                                        long pBufferSlicePitch,
+                                                        long pHostRowPitch,
+                                                        long pHostSlicePitch,
+                                                        ClearCLPeerPointer pHostMemPointer,
+                                                        ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                        boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      Pointer<OpenCLLibrary.cl_event> lWaitEvents =
+                                                  Utils.convertEventPointers(pWaitEventPeerPointers);
+      Pointer<OpenCLLibrary.cl_event> lEvent =
+                                             pReturnEvent ? Pointer.allocateTypedPointer(OpenCLLibrary.cl_event.class)
+                                                          : null;
+
       Utils.checkDirectNIOBuffer(pHostMemPointer);
       BackendUtils.checkOpenCLError(mOpenCLLibrary.clEnqueueReadBufferRect((OpenCLLibrary.cl_command_queue) pQueuePointer.getPointer(),
                                                                            (OpenCLLibrary.cl_mem) pBufferPointer.getPointer(),
@@ -884,27 +1109,41 @@ public class ClearCLBackendJavaCL extends ClearCLBackendBase
                                                                            Pointer.pointerToSizeTs(pBufferOrigin),
                                                                            Pointer.pointerToSizeTs(pHostOrigin),
                                                                            Pointer.pointerToSizeTs(pRegion),
-                                                                           0,
-                                                                           0,
-                                                                           0,
-                                                                           0,
+                                                                           pBufferRowPitch,
+                                                                           pBufferSlicePitch,
+                                                                           pHostRowPitch,
+                                                                           pHostSlicePitch,
                                                                            (Pointer) pHostMemPointer.getPointer(),
-                                                                           0,
-                                                                           null,
-                                                                           null));
+                                                                           Utils.getNumberOfEvents(lWaitEvents),
+                                                                           lWaitEvents,
+                                                                           lEvent));
+
+      return wrapEvent(lEvent, false, pReturnEvent);
     });
   }
 
   @Override
-  public void enqueueWriteToBufferRegion(ClearCLPeerPointer pQueuePointer,
-                                         ClearCLPeerPointer pBufferPointer,
-                                         boolean pBlockingWrite,
-                                         long[] pBufferOrigin,
-                                         long[] pHostOrigin,
-                                         long[] pRegion,
-                                         ClearCLPeerPointer pHostMemPointer)
+  public ClearCLPeerPointer enqueueWriteToBufferRegion(ClearCLPeerPointer pQueuePointer,
+                                                       ClearCLPeerPointer pBufferPointer,
+                                                       boolean pBlockingWrite,
+                                                       long[] pBufferOrigin,
+                                                       long[] pHostOrigin,
+                                                       long[] pRegion,
+                                                       long pBufferRowPitch,
+                                                       long pBufferSlicePitch,
+                                                       long pHostRowPitch,
+                                                       long pHostSlicePitch,
+                                                       ClearCLPeerPointer pHostMemPointer,
+                                                       ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                       boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      Pointer<OpenCLLibrary.cl_event> lWaitEvents =
+                                                  Utils.convertEventPointers(pWaitEventPeerPointers);
+      Pointer<OpenCLLibrary.cl_event> lEvent =
+                                             pReturnEvent ? Pointer.allocateTypedPointer(OpenCLLibrary.cl_event.class)
+                                                          : null;
 
       BackendUtils.checkOpenCLError(mOpenCLLibrary.clEnqueueWriteBufferRect((OpenCLLibrary.cl_command_queue) pQueuePointer.getPointer(),
                                                                             (OpenCLLibrary.cl_mem) pBufferPointer.getPointer(),
@@ -913,26 +1152,36 @@ public class ClearCLBackendJavaCL extends ClearCLBackendBase
                                                                             Pointer.pointerToSizeTs(pBufferOrigin),
                                                                             Pointer.pointerToSizeTs(pHostOrigin),
                                                                             Pointer.pointerToSizeTs(pRegion),
-                                                                            0,
-                                                                            0,
-                                                                            0,
-                                                                            0,
+                                                                            pBufferRowPitch,
+                                                                            pBufferSlicePitch,
+                                                                            pHostRowPitch,
+                                                                            pHostSlicePitch,
                                                                             (Pointer<?>) pHostMemPointer.getPointer(),
-                                                                            0,
-                                                                            null,
-                                                                            null));
+                                                                            Utils.getNumberOfEvents(lWaitEvents),
+                                                                            lWaitEvents,
+                                                                            lEvent));
+
+      return wrapEvent(lEvent, false, pReturnEvent);
     });
   }
 
   @Override
-  public void enqueueFillBuffer(ClearCLPeerPointer pQueuePointer,
-                                ClearCLPeerPointer pBufferPointer,
-                                boolean pBlockingFill,
-                                long pOffsetInBytes,
-                                long pLengthInBytes,
-                                byte[] pPattern)
+  public ClearCLPeerPointer enqueueFillBuffer(ClearCLPeerPointer pQueuePointer,
+                                              ClearCLPeerPointer pBufferPointer,
+                                              boolean pBlockingFill,
+                                              long pOffsetInBytes,
+                                              long pLengthInBytes,
+                                              byte[] pPattern,
+                                              ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                              boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      Pointer<OpenCLLibrary.cl_event> lWaitEvents =
+                                                  Utils.convertEventPointers(pWaitEventPeerPointers);
+      Pointer<OpenCLLibrary.cl_event> lEvent =
+                                             pReturnEvent || pBlockingFill ? Pointer.allocateTypedPointer(OpenCLLibrary.cl_event.class)
+                                                                           : null;
 
       Pointer<Byte> lPatternPointer =
                                     Pointer.pointerToBytes(pPattern);
@@ -943,26 +1192,32 @@ public class ClearCLBackendJavaCL extends ClearCLBackendBase
                                                                        pPattern.length,
                                                                        pOffsetInBytes,
                                                                        pLengthInBytes,
-                                                                       0,
-                                                                       null,
-                                                                       null));
-
-      if (pBlockingFill)
-        waitQueueToFinish(pQueuePointer);
+                                                                       Utils.getNumberOfEvents(lWaitEvents),
+                                                                       lWaitEvents,
+                                                                       lEvent));
 
+      return wrapEvent(lEvent, pBlockingFill, pReturnEvent);
     });
   }
 
   @Override
-  public void enqueueCopyBuffer(ClearCLPeerPointer pQueuePointer,
-                                ClearCLPeerPointer pSrcBufferPointer,
-                                ClearCLPeerPointer pDstBufferPointer,
-                                boolean pBlockingCopy,
-                                long pSrcOffsetInBytes,
-                                long pDstOffsetInBytes,
-                                long pLengthToCopyInBytes)
+  public ClearCLPeerPointer enqueueCopyBuffer(ClearCLPeerPointer pQueuePointer,
+                                              ClearCLPeerPointer pSrcBufferPointer,
+                                              ClearCLPeerPointer pDstBufferPointer,
+                                              boolean pBlockingCopy,
+                                              long pSrcOffsetInBytes,
+                                              long pDstOffsetInBytes,
+                                              long pLengthToCopyInBytes,
+                                              ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                              boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      Pointer<OpenCLLibrary.cl_event> lWaitEvents =
+                                                  Utils.convertEventPointers(pWaitEventPeerPointers);
+      Pointer<OpenCLLibrary.cl_event> lEvent =
+                                             pReturnEvent || pBlockingCopy ? Pointer.allocateTypedPointer(OpenCLLibrary.cl_event.class)
+                                                                           : null;
 
       BackendUtils.checkOpenCLError(mOpenCLLibrary.clEnqueueCopyBuffer((OpenCLLibrary.cl_command_queue) pQueuePointer.getPointer(),
                                                                        (OpenCLLibrary.cl_mem) pSrcBufferPointer.getPointer(),
@@ -970,26 +1225,36 @@ public class ClearCLBackendJavaCL extends ClearCLBackendBase
                                                                        pSrcOffsetInBytes,
                                                                        pDstOffsetInBytes,
                                                                        pLengthToCopyInBytes,
-                                                                       0,
-                                                                       null,
-                                                                       null));
-
-      if (pBlockingCopy)
-        waitQueueToFinish(pQueuePointer);
+                                                                       Utils.getNumberOfEvents(lWaitEvents),
+                                                                       lWaitEvents,
+                                                                       lEvent));
 
+      return wrapEvent(lEvent, pBlockingCopy, pReturnEvent);
     });
   }
 
   @Override
-  public void enqueueCopyBufferRegion(ClearCLPeerPointer pQueuePointer,
-                                      ClearCLPeerPointer pSrcBufferPointer,
-                                      ClearCLPeerPointer pDstBufferPointer,
-                                      boolean pBlockingCopy,
-                                      long[] pSrcOrigin,
-                                      long[] pDstOrigin,
-                                      long[] pRegion)
+  public ClearCLPeerPointer enqueueCopyBufferRegion(ClearCLPeerPointer pQueuePointer,
+                                                    ClearCLPeerPointer pSrcBufferPointer,
+                                                    ClearCLPeerPointer pDstBufferPointer,
+                                                    boolean pBlockingCopy,
+                                                    long[] pSrcOrigin,
+                                                    long[] pDstOrigin,
+                                                    long[] pRegion,
+                                                    long pSrcRowPitch,
+                                                    long pSrcSlicePitch,
+                                                    long pDstRowPitch,
+                                                    long pDstSlicePitch,
+                                                    ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                    boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      Pointer<OpenCLLibrary.cl_event> lWaitEvents =
+                                                  Utils.convertEventPointers(pWaitEventPeerPointers);
+      Pointer<OpenCLLibrary.cl_event> lEvent =
+                                             pReturnEvent || pBlockingCopy ? Pointer.allocateTypedPointer(OpenCLLibrary.cl_event.class)
+                                                                           : null;
 
       BackendUtils.checkOpenCLError(mOpenCLLibrary.clEnqueueCopyBufferRect((OpenCLLibrary.cl_command_queue) pQueuePointer.getPointer(),
                                                                            (OpenCLLibrary.cl_mem) pSrcBufferPointer.getPointer(),
@@ -997,30 +1262,36 @@ public class ClearCLBackendJavaCL extends ClearCLBackendBase
                                                                            Pointer.pointerToSizeTs(pSrcOrigin),
                                                                            Pointer.pointerToSizeTs(pDstOrigin),
                                                                            Pointer.pointerToSizeTs(pRegion),
-                                                                           0,
-                                                                           0,
-                                                                           0,
-                                                                           0,
-                                                                           0,
-                                                                           null,
-                                                                           null));
-
-      if (pBlockingCopy)
-        waitQueueToFinish(pQueuePointer);
-
+                                                                           pSrcRowPitch,
+                                                                           pSrcSlicePitch,
+                                                                           pDstRowPitch,
+                                                                           pDstSlicePitch,
+                                                                           Utils.getNumberOfEvents(lWaitEvents),
+                                                                           lWaitEvents,
+                                                                           lEvent));
+
+      return wrapEvent(lEvent, pBlockingCopy, pReturnEvent);
     });
   }
 
   @Override
-  public void enqueueCopyBufferToImage(ClearCLPeerPointer pQueuePointer,
-                                       ClearCLPeerPointer pSrcBufferPointer,
-                                       ClearCLPeerPointer pDstImagePointer,
-                                       boolean pBlockingCopy,
-                                       long pSrcOffsetInBytes,
-                                       long[] pDstOrigin,
-                                       long[] pDstRegion)
+  public ClearCLPeerPointer enqueueCopyBufferToImage(ClearCLPeerPointer pQueuePointer,
+                                                     ClearCLPeerPointer pSrcBufferPointer,
+                                                     ClearCLPeerPointer pDstImagePointer,
+                                                     boolean pBlockingCopy,
+                                                     long pSrcOffsetInBytes,
+                                                     long[] pDstOrigin,
+                                                     long[] pDstRegion,
+                                                     ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                     boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      Pointer<OpenCLLibrary.cl_event> lWaitEvents =
+                                                  Utils.convertEventPointers(pWaitEventPeerPointers);
+      Pointer<OpenCLLibrary.cl_event> lEvent =
+                                             pReturnEvent || pBlockingCopy ? Pointer.allocateTypedPointer(OpenCLLibrary.cl_event.class)
+                                                                           : null;
 
       BackendUtils.checkOpenCLError(mOpenCLLibrary.clEnqueueCopyBufferToImage((OpenCLLibrary.cl_command_queue) pQueuePointer.getPointer(),
                                                                               (OpenCLLibrary.cl_mem) pSrcBufferPointer.getPointer(),
@@ -1028,26 +1299,33 @@ public class ClearCLBackendJavaCL extends ClearCLBackendBase
                                                                               pSrcOffsetInBytes,
                                                                               Pointer.pointerToSizeTs(pDstOrigin),
                                                                               Pointer.pointerToSizeTs(pDstRegion),
-                                                                              0,
-                                                                              null,
-                                                                              null));
-
-      if (pBlockingCopy)
-        waitQueueToFinish(pQueuePointer);
+                                                                              Utils.getNumberOfEvents(lWaitEvents),
+                                                                              lWaitEvents,
+                                                                              lEvent));
 
+      return wrapEvent(lEvent, pBlockingCopy, pReturnEvent);
     });
   }
 
   @SuppressWarnings("rawtypes")
   @Override
-  public void enqueueReadFromImage(ClearCLPeerPointer pQueuePointer,
-                                   ClearCLPeerPointer pImagePointer,
-                                   boolean pReadWrite,
-                                   long[] pOrigin,
-                                   long[] pRegion,
-                                   ClearCLPeerPointer pHostMemPointer)
+  public ClearCLPeerPointer enqueueReadFromImage(ClearCLPeerPointer pQueuePointer,
+                                                 ClearCLPeerPointer pImagePointer,
+                                                 boolean pReadWrite,
+                                                 long[] pOrigin,
+                                                 long[] pRegion,
+                                                 ClearCLPeerPointer pHostMemPointer,
+                                                 ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                 boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      Pointer<OpenCLLibrary.cl_event> lWaitEvents =
+                                                  Utils.convertEventPointers(pWaitEventPeerPointers);
+      Pointer<OpenCLLibrary.cl_event> lEvent =
+                                             pReturnEvent ? Pointer.allocateTypedPointer(OpenCLLibrary.cl_event.class)
+                                                          : null;
+
       Utils.checkDirectNIOBuffer(pHostMemPointer);
       BackendUtils.checkOpenCLError(mOpenCLLibrary.clEnqueueReadImage((OpenCLLibrary.cl_command_queue) pQueuePointer.getPointer(),
                                                                       (OpenCLLibrary.cl_mem) pImagePointer.getPointer(),
@@ -1058,22 +1336,33 @@ public class ClearCLBackendJavaCL extends ClearCLBackendBase
                                                                       0,
                                                                       0,
                                                                       (Pointer) pHostMemPointer.getPointer(),
-                                                                      0,
-                                                                      null,
-                                                                      null));
+                                                                      Utils.getNumberOfEvents(lWaitEvents),
+                                                                      lWaitEvents,
+                                                                      lEvent));
+
+      return wrapEvent(lEvent, false, pReturnEvent);
     });
   }
 
   @SuppressWarnings("rawtypes")
   @Override
-  public void enqueueWriteToImage(ClearCLPeerPointer pQueuePointer,
-                                  ClearCLPeerPointer pImagePointer,
-                                  boolean pBlockingWrite,
-                                  long[] pOrigin,
-                                  long[] pRegion,
-                                  ClearCLPeerPointer pHostMemPointer)
+  public ClearCLPeerPointer enqueueWriteToImage(ClearCLPeerPointer pQueuePointer,
+                                                ClearCLPeerPointer pImagePointer,
+                                                boolean pBlockingWrite,
+                                                long[] pOrigin,
+                                                long[] pRegion,
+                                                ClearCLPeerPointer pHostMemPointer,
+                                                ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      Pointer<OpenCLLibrary.cl_event> lWaitEvents =
+                                                  Utils.convertEventPointers(pWaitEventPeerPointers);
+      Pointer<OpenCLLibrary.cl_event> lEvent =
+                                             pReturnEvent ? Pointer.allocateTypedPointer(OpenCLLibrary.cl_event.class)
+                                                          : null;
+
       BackendUtils.checkOpenCLError(mOpenCLLibrary.clEnqueueWriteImage((OpenCLLibrary.cl_command_queue) pQueuePointer.getPointer(),
                                                                        (OpenCLLibrary.cl_mem) pImagePointer.getPointer(),
                                                                        pBlockingWrite ? 1
@@ -1083,21 +1372,31 @@ public class ClearCLBackendJavaCL extends ClearCLBackendBase
                                                                        0,
                                                                        0,
                                                                        (Pointer) pHostMemPointer.getPointer(),
-                                                                       0,
-                                                                       null,
-                                                                       null));
+                                                                       Utils.getNumberOfEvents(lWaitEvents),
+                                                                       lWaitEvents,
+                                                                       lEvent));
+
+      return wrapEvent(lEvent, false, pReturnEvent);
     });
   }
 
   @Override
-  public void enqueueFillImage(ClearCLPeerPointer pQueuePointer,
-                               ClearCLPeerPointer pImagePointer,
-                               boolean pBlockingFill,
-                               long[] pOrigin,
-                               long[] pRegion,
-                               byte[] pValues)
+  public ClearCLPeerPointer enqueueFillImage(ClearCLPeerPointer pQueuePointer,
+                                             ClearCLPeerPointer pImagePointer,
+                                             boolean pBlockingFill,
+                                             long[] pOrigin,
+                                             long[] pRegion,
+                                             byte[] pValues,
+                                             ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                             boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      Pointer<OpenCLLibrary.cl_event> lWaitEvents =
+                                                  Utils.convertEventPointers(pWaitEventPeerPointers);
+      Pointer<OpenCLLibrary.cl_event> lEvent =
+                                             pReturnEvent || pBlockingFill ? Pointer.allocateTypedPointer(OpenCLLibrary.cl_event.class)
+                                                                           : null;
 
       Pointer<Byte> lValuesPointer = Pointer.pointerToBytes(pValues);
 
@@ -1106,26 +1405,32 @@ public class ClearCLBackendJavaCL extends ClearCLBackendBase
                                                                       lValuesPointer,
                                                                       Pointer.pointerToSizeTs(pOrigin),
                                                                       Pointer.pointerToSizeTs(pRegion),
-                                                                      0,
-                                                                      null,
-                                                                      null));
-
-      if (pBlockingFill)
-        waitQueueToFinish(pQueuePointer);
+                                                                      Utils.getNumberOfEvents(lWaitEvents),
+                                                                      lWaitEvents,
+                                                                      lEvent));
 
+      return wrapEvent(lEvent, pBlockingFill, pReturnEvent);
     });
   }
 
   @Override
-  public void enqueueCopyImage(ClearCLPeerPointer pQueuePointer,
-                               ClearCLPeerPointer pSrcBImagePointer,
-                               ClearCLPeerPointer pDstImagePointer,
-                               boolean pBlockingCopy,
-                               long[] pSrcOrigin,
-                               long[] pDstOrigin,
-                               long[] pRegion)
+  public ClearCLPeerPointer enqueueCopyImage(ClearCLPeerPointer pQueuePointer,
+                                             ClearCLPeerPointer pSrcBImagePointer,
+                                             ClearCLPeerPointer pDstImagePointer,
+                                             boolean pBlockingCopy,
+                                             long[] pSrcOrigin,
+                                             long[] pDstOrigin,
+                                             long[] pRegion,
+                                             ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                             boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      Pointer<OpenCLLibrary.cl_event> lWaitEvents =
+                                                  Utils.convertEventPointers(pWaitEventPeerPointers);
+      Pointer<OpenCLLibrary.cl_event> lEvent =
+                                             pReturnEvent || pBlockingCopy ? Pointer.allocateTypedPointer(OpenCLLibrary.cl_event.class)
+                                                                           : null;
 
       BackendUtils.checkOpenCLError(mOpenCLLibrary.clEnqueueCopyImage((OpenCLLibrary.cl_command_queue) pQueuePointer.getPointer(),
                                                                       (OpenCLLibrary.cl_mem) pSrcBImagePointer.getPointer(),
@@ -1133,26 +1438,32 @@ public class ClearCLBackendJavaCL extends ClearCLBackendBase
                                                                       Pointer.pointerToSizeTs(pSrcOrigin),
                                                                       Pointer.pointerToSizeTs(pDstOrigin),
                                                                       Pointer.pointerToSizeTs(pRegion),
-                                                                      0,
-                                                                      null,
-                                                                      null));
-
-      if (pBlockingCopy)
-        waitQueueToFinish(pQueuePointer);
+                                                                      Utils.getNumberOfEvents(lWaitEvents),
+                                                                      lWaitEvents,
+                                                                      lEvent));
 
+      return wrapEvent(lEvent, pBlockingCopy, pReturnEvent);
     });
   }
 
   @Override
-  public void enqueueCopyImageToBuffer(ClearCLPeerPointer pQueuePointer,
-                                       ClearCLPeerPointer pSrcImagePointer,
-                                       ClearCLPeerPointer pDstBufferPointer,
-                                       boolean pBlockingCopy,
-                                       long[] pSrcOrigin,
-                                       long[] pSrcRegion,
-                                       long pDstOffset)
+  public ClearCLPeerPointer enqueueCopyImageToBuffer(ClearCLPeerPointer pQueuePointer,
+                                                     ClearCLPeerPointer pSrcImagePointer,
+                                                     ClearCLPeerPointer pDstBufferPointer,
+                                                     boolean pBlockingCopy,
+                                                     long[] pSrcOrigin,
+                                                     long[] pSrcRegion,
+                                                     long pDstOffset,
+                                                     ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                     boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      Pointer<OpenCLLibrary.cl_event> lWaitEvents =
+                                                  Utils.convertEventPointers(pWaitEventPeerPointers);
+      Pointer<OpenCLLibrary.cl_event> lEvent =
+                                             pReturnEvent || pBlockingCopy ? Pointer.allocateTypedPointer(OpenCLLibrary.cl_event.class)
+                                                                           : null;
 
       BackendUtils.checkOpenCLError(mOpenCLLibrary.clEnqueueCopyImageToBuffer((OpenCLLibrary.cl_command_queue) pQueuePointer.getPointer(),
                                                                               (OpenCLLibrary.cl_mem) pSrcImagePointer.getPointer(),
@@ -1160,13 +1471,11 @@ public class ClearCLBackendJavaCL extends ClearCLBackendBase
                                                                               Pointer.pointerToSizeTs(pSrcOrigin),
                                                                               Pointer.pointerToSizeTs(pSrcRegion),
                                                                               pDstOffset,
-                                                                              0,
-                                                                              null,
-                                                                              null));
-
-      if (pBlockingCopy)
-        waitQueueToFinish(pQueuePointer);
+                                                                              Utils.getNumberOfEvents(lWaitEvents),
+                                                                              lWaitEvents,
+                                                                              lEvent));
 
+      return wrapEvent(lEvent, pBlockingCopy, pReturnEvent);
     });
   }
 
@@ -1199,6 +1508,135 @@ public class ClearCLBackendJavaCL extends ClearCLBackendBase
     throw new ClearCLUnsupportedException("fragmented buffers not supported.");
   }
 
+  @Override
+  public ContiguousMemoryInterface enqueueMapBuffer(ClearCLPeerPointer pQueuePointer,
+                                                    ClearCLPeerPointer pBufferPointer,
+                                                    HostAccessType pMapAccessType,
+                                                    long pOffsetInBytes,
+                                                    long pLengthInBytes,
+                                                    ClearCLPeerPointer[] pWaitEventPeerPointers)
+  {
+    return BackendUtils.checkExceptions(() -> {
+
+      Pointer<OpenCLLibrary.cl_event> lWaitEvents =
+                                                  Utils.convertEventPointers(pWaitEventPeerPointers);
+      Pointer<Integer> lErrorCode = Pointer.allocateInt();
+
+      Pointer<?> lMappedPointer =
+                                mOpenCLLibrary.clEnqueueMapBuffer((OpenCLLibrary.cl_command_queue) pQueuePointer.getPointer(),
+                                                                  (OpenCLLibrary.cl_mem) pBufferPointer.getPointer(),
+                                                                  1,
+                                                                  BackendUtils.getMapFlags(pMapAccessType),
+                                                                  pOffsetInBytes,
+                                                                  pLengthInBytes,
+                                                                  Utils.getNumberOfEvents(lWaitEvents),
+                                                                  lWaitEvents,
+                                                                  null,
+                                                                  lErrorCode);
+      BackendUtils.checkOpenCLErrorCode(lErrorCode.get());
+
+      return OffHeapMemory.wrapPointer(lMappedPointer,
+                                       lMappedPointer.getPeer(),
+                                       pLengthInBytes);
+    });
+  }
+
+  @Override
+  public ContiguousMemoryInterface enqueueMapImage(ClearCLPeerPointer pQueuePointer,
+                                                   ClearCLPeerPointer pImagePointer,
+                                                   HostAccessType pMapAccessType,
+                                                   long[] pOrigin,
+                                                   long[] pRegion,
+                                                   long pPixelSizeInBytes,
+                                                   long[] pPitchesInBytes,
+                                                   ClearCLPeerPointer[] pWaitEventPeerPointers)
+  {
+    return BackendUtils.checkExceptions(() -> {
+
+      Pointer<OpenCLLibrary.cl_event> lWaitEvents =
+                                                  Utils.convertEventPointers(pWaitEventPeerPointers);
+      Pointer<Integer> lErrorCode = Pointer.allocateInt();
+      Pointer<SizeT> lRowPitch = Pointer.allocateSizeT();
+      Pointer<SizeT> lSlicePitch = Pointer.allocateSizeT();
+
+      Pointer<?> lMappedPointer =
+                                mOpenCLLibrary.clEnqueueMapImage((OpenCLLibrary.cl_command_queue) pQueuePointer.getPointer(),
+                                                                 (OpenCLLibrary.cl_mem) pImagePointer.getPointer(),
+                                                                 1,
+                                                                 BackendUtils.getMapFlags(pMapAccessType),
+                                                                 Pointer.pointerToSizeTs(pOrigin),
+                                                                 Pointer.pointerToSizeTs(pRegion),
+                                                                 lRowPitch,
+                                                                 lSlicePitch,
+                                                                 Utils.getNumberOfEvents(lWaitEvents),
+                                                                 lWaitEvents,
+                                                                 null,
+                                                                 lErrorCode);
+      BackendUtils.checkOpenCLErrorCode(lErrorCode.get());
+
+      pPitchesInBytes[0] = lRowPitch.getSizeT();
+      pPitchesInBytes[1] = lSlicePitch.getSizeT();
+
+      return OffHeapMemory.wrapPointer(lMappedPointer,
+                                       lMappedPointer.getPeer(),
+                                       BackendUtils.getMappedImageSizeInBytes(pRegion,
+                                                                              pPitchesInBytes[0],
+                                                                              pPitchesInBytes[1],
+                                                                              pPixelSizeInBytes));
+    });
+  }
+
+  @Override
+  public ClearCLPeerPointer enqueueUnmap(ClearCLPeerPointer pQueuePointer,
+                                         ClearCLPeerPointer pMemPointer,
+                                         ContiguousMemoryInterface pMappedMemory,
+                                         boolean pBlockingUnmap,
+                                         ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                         boolean pReturnEvent)
+  {
+    return BackendUtils.checkExceptions(() -> {
+
+      Pointer<OpenCLLibrary.cl_event> lWaitEvents =
+                                                  Utils.convertEventPointers(pWaitEventPeerPointers);
+      Pointer<OpenCLLibrary.cl_event> lEvent =
+                                             pReturnEvent || pBlockingUnmap ? Pointer.allocateTypedPointer(OpenCLLibrary.cl_event.class)
+                                                                            : null;
+
+      BackendUtils.checkOpenCLError(mOpenCLLibrary.clEnqueueUnmapMemObject((OpenCLLibrary.cl_command_queue) pQueuePointer.getPointer(),
+                                                                           (OpenCLLibrary.cl_mem) pMemPointer.getPointer(),
+                                                                           Pointer.pointerToAddress(pMappedMemory.getAddress(),
+                                                                                                    pMappedMemory.getSizeInBytes(),
+                                                                                                    null),
+                                                                           Utils.getNumberOfEvents(lWaitEvents),
+                                                                           lWaitEvents,
+                                                                           lEvent));
+
+      return wrapEvent(lEvent, pBlockingUnmap, pReturnEvent);
+    });
+  }
+
+  @Override
+  public ClearCLPeerPointer enqueueBarrier(ClearCLPeerPointer pQueuePointer,
+                                           ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                           boolean pReturnEvent)
+  {
+    return BackendUtils.checkExceptions(() -> {
+
+      Pointer<OpenCLLibrary.cl_event> lWaitEvents =
+                                                  Utils.convertEventPointers(pWaitEventPeerPointers);
+      Pointer<OpenCLLibrary.cl_event> lEvent =
+                                             pReturnEvent ? Pointer.allocateTypedPointer(OpenCLLibrary.cl_event.class)
+                                                          : null;
+
+      BackendUtils.checkOpenCLError(mOpenCLLibrary.clEnqueueBarrierWithWaitList((OpenCLLibrary.cl_command_queue) pQueuePointer.getPointer(),
+                                                                                Utils.getNumberOfEvents(lWaitEvents),
+                                                                                lWaitEvents,
+                                                                                lEvent));
+
+      return wrapEvent(lEvent, false, pReturnEvent);
+    });
+  }
+
   @Override
   public void releaseBuffer(ClearCLPeerPointer pPeerPointer)
   {
@@ -1264,4 +1702,186 @@ public class ClearCLBackendJavaCL extends ClearCLBackendBase
     });
   }
 
+  @Override
+  public void waitForEvents(ClearCLPeerPointer... pEventPeerPointers)
+  {
+    BackendUtils.checkExceptions(() -> {
+      Pointer<OpenCLLibrary.cl_event> lEvents =
+                                              Utils.convertEventPointers(pEventPeerPointers);
+      if (lEvents != null)
+      {
+        BackendUtils.checkOpenCLError(mOpenCLLibrary.clWaitForEvents(Utils.getNumberOfEvents(lEvents),
+                                                                     lEvents));
+        lEvents.release();
+      }
+    });
+  }
+
+  @Override
+  public EventStatus getEventStatus(ClearCLPeerPointer pEventPeerPointer)
+  {
+    return BackendUtils.checkExceptions(() -> {
+      Pointer<Integer> lStatusPointer = Pointer.allocateInt();
+      BackendUtils.checkOpenCLError(mOpenCLLibrary.clGetEventInfo((OpenCLLibrary.cl_event) pEventPeerPointer.getPointer(),
+                                                                  IOpenCLLibrary.CL_EVENT_COMMAND_EXECUTION_STATUS,
+                                                                  SizeOf.cl_int,
+                                                                  lStatusPointer,
+                                                                  null));
+      int lStatus = lStatusPointer.getInt();
+      lStatusPointer.release();
+      return EventStatus.fromOpenCL(lStatus);
+    });
+  }
+
+  @Override
+  public void releaseEvent(ClearCLPeerPointer pPeerPointer)
+  {
+    BackendUtils.checkExceptions(() -> {
+      BackendUtils.checkOpenCLError(mOpenCLLibrary.clReleaseEvent((OpenCLLibrary.cl_event) pPeerPointer.getPointer()));
+    });
+  }
+
+  @Override
+  public void retainEvent(ClearCLPeerPointer pPeerPointer)
+  {
+    BackendUtils.checkExceptions(() -> {
+      BackendUtils.checkOpenCLError(mOpenCLLibrary.clRetainEvent((OpenCLLibrary.cl_event) pPeerPointer.getPointer()));
+    });
+  }
+
+  @Override
+  public long[] getEventProfilingInfo(ClearCLPeerPointer pEventPeerPointer)
+  {
+    return BackendUtils.checkExceptions(() -> {
+      OpenCLLibrary.cl_event lEvent =
+                                    (OpenCLLibrary.cl_event) pEventPeerPointer.getPointer();
+      int[] lParameters = new int[]
+      { IOpenCLLibrary.CL_PROFILING_COMMAND_QUEUED,
+        IOpenCLLibrary.CL_PROFILING_COMMAND_SUBMIT,
+        IOpenCLLibrary.CL_PROFILING_COMMAND_START,
+        IOpenCLLibrary.CL_PROFILING_COMMAND_END };
+      long[] lTimestamps = new long[lParameters.length];
+      Pointer<Long> lValuePointer = Pointer.allocateLong();
+      for (int i = 0; i < lParameters.length; i++)
+      {
+        BackendUtils.checkOpenCLError(mOpenCLLibrary.clGetEventProfilingInfo(lEvent,
+                                                                             lParameters[i],
+                                                                             SizeOf.cl_ulong,
+                                                                             lValuePointer,
+                                                                             null));
+        lTimestamps[i] = lValuePointer.getLong();
+      }
+      lValuePointer.release();
+      return lTimestamps;
+    });
+  }
+
+  @Override
+  public void setEventCallback(ClearCLPeerPointer pEventPeerPointer,
+                               IntConsumer pCallback)
+  {
+    BackendUtils.checkExceptions(() -> {
+      EventCallback lEventCallback = new EventCallback(pCallback);
+      mPendingEventCallbacks.add(lEventCallback);
+      BackendUtils.checkOpenCLError(mOpenCLLibrary.clSetEventCallback((OpenCLLibrary.cl_event) pEventPeerPointer.getPointer(),
+                                                                      IOpenCLLibrary.CL_COMPLETE,
+                                                                      Pointer.getPointer(lEventCallback),
+                                                                      null));
+    });
+  }
+
+  @Override
+  public void flushQueue(ClearCLPeerPointer pQueuePointer)
+  {
+    BackendUtils.checkExceptions(() -> {
+      BackendUtils.checkOpenCLError(mOpenCLLibrary.clFlush((OpenCLLibrary.cl_command_queue) pQueuePointer.getPointer()));
+    });
+  }
+
+  private static class ArgumentScratch
+  {
+    final long[] mBits = new long[2];
+    final Pointer<Long> mPointer = Pointer.allocateLongs(2);
+  }
+
+  private static class NDRangePointers
+  {
+    private static final int cMaxDimensions = 3;
+
+    final Pointer<SizeT> mGlobalOffsets =
+                                        Pointer.allocateSizeTs(cMaxDimensions);
+    final Pointer<SizeT> mGlobalSizes =
+                                      Pointer.allocateSizeTs(cMaxDimensions);
+    final Pointer<SizeT> mLocalSizes =
+                                     Pointer.allocateSizeTs(cMaxDimensions);
+
+    static Pointer<SizeT> set(Pointer<SizeT> pPointer, long[] pValues)
+    {
+      if (pValues == null)
+        return null;
+      if (pValues.length > cMaxDimensions)
+        return pointerToSizeTs(pValues);
+      pPointer.setSizeTs(pValues);
+      return pPointer;
+    }
+  }
+
+  private ClearCLPeerPointer wrapEvent(Pointer<OpenCLLibrary.cl_event> pEventPointer,
+                                       boolean pWaitForEvent,
+                                       boolean pReturnEvent)
+  {
+    if (pEventPointer == null)
+      return null;
+
+    if (pWaitForEvent)
+      BackendUtils.checkOpenCLError(mOpenCLLibrary.clWaitForEvents(1,
+                                                                   pEventPointer));
+
+    OpenCLLibrary.cl_event lEvent = pEventPointer.get();
+    pEventPointer.release();
+
+    if (!pReturnEvent)
+    {
+      BackendUtils.checkOpenCLError(mOpenCLLibrary.clReleaseEvent(lEvent));
+      return null;
+    }
+
+    return new ClearCLPeerPointer(lEvent);
+  }
+
+  /**
+   * BridJ event callback, kept strongly referenced until called so that it does
+   * not get garbage collected while OpenCL still holds a pointer to it.
+   */
+  private class EventCallback extends
+                              IOpenCLLibrary.clSetEventCallback_arg1_callback
+  {
+    private final IntConsumer mCallback;
+
+    EventCallback(IntConsumer pCallback)
+    {
+      mCallback = pCallback;
+    }
+
+    @Override
+    public void apply(OpenCLLibrary.cl_event pEvent,
+                      int pExecutionStatus,
+                      Pointer<?> pUserData)
+    {
+      called(pExecutionStatus);
+    }
+
+    @Override
+    public void apply(long pEvent, int pExecutionStatus, long pUserData)
+    {
+      called(pExecutionStatus);
+    }
+
+    private void called(int pExecutionStatus)
+    {
+      mPendingEventCallbacks.remove(this);
+      mCallback.accept(pExecutionStatus);
+    }
+  }
+
 }
@@ -453,6 +453,44 @@ public class Utils
 
   }
 
+  /**
+   * Converts event pointers from peer pointers to backend specific pointers.
+   * 
+   * @param pEventPointers
+   *          event pointers, can be null
+   * @return array of backend specific event pointers, or null if there are no
+   *         events.
+   */
+  public static Pointer<OpenCLLibrary.cl_event> convertEventPointers(ClearCLPeerPointer... pEventPointers)
+  {
+    if (pEventPointers == null || pEventPointers.length == 0)
+      return null;
+
+    Pointer<OpenCLLibrary.cl_event> lEventsArrayPointer =
+                                                        Pointer.allocateTypedPointers(OpenCLLibrary.cl_event.class,
+                                                                                      pEventPointers.length);
+
+    for (int i = 0; i < pEventPointers.length; i++)
+      lEventsArrayPointer.set(i,
+                              (OpenCLLibrary.cl_event) pEventPointers[i].getPointer());
+
+    return lEventsArrayPointer;
+  }
+
+  /**
+   * Returns the number of events in a backend specific event array pointer.
+   * 
+   * @param pEventsArrayPointer
+   *          event array pointer, can be null
+   * @return number of events
+   */
+  public static int getNumberOfEvents(Pointer<OpenCLLibrary.cl_event> pEventsArrayPointer)
+  {
+    if (pEventsArrayPointer == null)
+      return 0;
+    return (int) pEventsArrayPointer.getValidElements();
+  }
+
   /**
    * 
    * @param pOpenCLLibrary
@@ -19,34 +19,42 @@ import static org.jocl.CL.clReleaseProgram;
 
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.IntConsumer;
 
 import clearcl.ClearCLBuffer;
 import clearcl.ClearCLImage;
 import clearcl.ClearCLLocalMemory;
 import clearcl.ClearCLPeerPointer;
+import clearcl.abs.ClearCLMemBase;
 import clearcl.backend.BackendUtils;
 import clearcl.backend.ClearCLBackendBase;
 import clearcl.backend.ClearCLBackendInterface;
 import clearcl.backend.SizeOf;
 import clearcl.enums.BuildStatus;
 import clearcl.enums.DeviceType;
+import clearcl.enums.EventStatus;
 import clearcl.enums.HostAccessType;
 import clearcl.enums.ImageChannelDataType;
 import clearcl.enums.ImageChannelOrder;
 import clearcl.enums.ImageType;
 import clearcl.enums.KernelAccessType;
 import clearcl.enums.MemAllocMode;
+import clearcl.exceptions.ClearCLException;
 import clearcl.exceptions.ClearCLUnsupportedException;
 import coremem.ContiguousMemoryInterface;
 import coremem.fragmented.FragmentedMemoryInterface;
+import coremem.offheap.OffHeapMemory;
 import coremem.util.Size;
 
 import org.jocl.CL;
 import org.jocl.Pointer;
+import org.jocl.cl_buffer_region;
 import org.jocl.cl_command_queue;
 import org.jocl.cl_context;
 import org.jocl.cl_context_properties;
 import org.jocl.cl_device_id;
+import org.jocl.cl_event;
 import org.jocl.cl_image_desc;
 import org.jocl.cl_image_format;
 import org.jocl.cl_kernel;
@@ -68,6 +76,9 @@ public class ClearCLBackendJOCL extends ClearCLBackendBase
     CL.setExceptionsEnabled(false);
   }
 
+  private final ThreadLocal<ArgumentScratch> mArgumentScratchThreadLocal =
+                                                                          ThreadLocal.withInitial(ArgumentScratch::new);
+
   @Override
   public boolean imageSupport(final ClearCLPeerPointer pDevicePointer)
   {
@@ -228,6 +239,12 @@ public class ClearCLBackendJOCL extends ClearCLBackendBase
                          CL.CL_DEVICE_OPENCL_C_VERSION);
   }
 
+  @Override
+  public String getDeviceDriverVersion(final ClearCLPeerPointer pDevicePointer)
+  {
+    return getDeviceInfo(pDevicePointer, CL.CL_DRIVER_VERSION);
+  }
+
   @Override
   public String getDeviceExtensions(final ClearCLPeerPointer pDevicePointer)
   {
@@ -292,7 +309,8 @@ public class ClearCLBackendJOCL extends ClearCLBackendBase
   @Override
   public ClearCLPeerPointer getQueuePeerPointer(final ClearCLPeerPointer pDevicePointer,
                                                 final ClearCLPeerPointer pContextPointer,
-                                                final boolean pInOrder)
+                                                final boolean pInOrder,
+                                                final boolean pProfiling)
   {
     return BackendUtils.checkExceptions(() -> {
 
@@ -302,8 +320,10 @@ public class ClearCLBackendJOCL extends ClearCLBackendBase
       final cl_command_queue commandQueue =
                                           clCreateCommandQueue((cl_context) pContextPointer.getPointer(),
                                                                (cl_device_id) pDevicePointer.getPointer(),
-                                                               pInOrder ? 0
-                                                                        : CL.CL_QUEUE_OUT_OF_ORDER_EXEC_MODE_ENABLE,
+                                                               (pInOrder ? 0
+                                                                         : CL.CL_QUEUE_OUT_OF_ORDER_EXEC_MODE_ENABLE)
+                                                                 | (pProfiling ? CL.CL_QUEUE_PROFILING_ENABLE
+                                                                               : 0),
                                                                lErrorCode);
 
       BackendUtils.checkOpenCLErrorCode(lErrorCode[0]);
@@ -354,6 +374,32 @@ public class ClearCLBackendJOCL extends ClearCLBackendBase
     });
   }
 
+  @Override
+  public ClearCLPeerPointer getSubBufferPeerPointer(final ClearCLPeerPointer pBufferPointer,
+                                                    final long pOffsetInBytes,
+                                                    final long pSizeInBytes)
+  {
+    return BackendUtils.checkExceptions(() -> {
+
+      final cl_buffer_region lRegion =
+                                     new cl_buffer_region(pOffsetInBytes,
+                                                          pSizeInBytes);
+
+      final int lErrorCode[] = new int[1];
+
+      final cl_mem lSubBufferPointer =
+                                     CL.clCreateSubBuffer((cl_mem) pBufferPointer.getPointer(),
+                                                          0,
+                                                          CL.CL_BUFFER_CREATE_TYPE_REGION,
+                                                          lRegion,
+                                                          lErrorCode);
+
+      BackendUtils.checkOpenCLErrorCode(lErrorCode[0]);
+
+      return new ClearCLPeerPointer(lSubBufferPointer);
+    });
+  }
+
   @SuppressWarnings("deprecation")
   @Override
   public ClearCLPeerPointer getImagePeerPointer(final ClearCLPeerPointer pDevicePointer,
@@ -489,6 +535,61 @@ public class ClearCLBackendJOCL extends ClearCLBackendBase
     });
   }
 
+  @Override
+  public ClearCLPeerPointer getProgramPeerPointer(final ClearCLPeerPointer pContextPointer,
+                                                  final ClearCLPeerPointer pDevicePointer,
+                                                  final byte[] pBinary)
+  {
+    return BackendUtils.checkExceptions(() -> {
+
+      final int lBinaryStatus[] = new int[1];
+      final int lErrorCode[] = new int[1];
+
+      final cl_program program =
+                               CL.clCreateProgramWithBinary((cl_context) pContextPointer.getPointer(),
+                                                            1,
+                                                            new cl_device_id[]
+                                                            { (cl_device_id) pDevicePointer.getPointer() },
+                                                            new long[]
+                                                            { pBinary.length },
+                                                            new byte[][]
+                                                            { pBinary },
+                                                            lBinaryStatus,
+                                                            lErrorCode);
+
+      BackendUtils.checkOpenCLError(lErrorCode[0]);
+      BackendUtils.checkOpenCLError(lBinaryStatus[0]);
+
+      final ClearCLPeerPointer lClearCLPointer =
+                                               new ClearCLPeerPointer(program);
+      return lClearCLPointer;
+    });
+  }
+
+  @Override
+  public byte[] getProgramBinary(final ClearCLPeerPointer pProgramPointer)
+  {
+    return BackendUtils.checkExceptions(() -> {
+      final cl_program lProgram =
+                                (cl_program) pProgramPointer.getPointer();
+
+      final long lBinarySize[] = new long[1];
+      BackendUtils.checkOpenCLError(CL.clGetProgramInfo(lProgram,
+                                                        CL.CL_PROGRAM_BINARY_SIZES,
+                                                        SizeOf.size_t,
+                                                        Pointer.to(lBinarySize),
+                                                        null));
+
+      final byte lBinary[] = new byte[(int) lBinarySize[0]];
+      BackendUtils.checkOpenCLError(CL.clGetProgramInfo(lProgram,
+                                                        CL.CL_PROGRAM_BINARIES,
+                                                        SizeOf.POINTER,
+                                                        Pointer.to(Pointer.to(lBinary)),
+                                                        null));
+      return lBinary;
+    });
+  }
+
   @Override
   public boolean buildProgram(final ClearCLPeerPointer pProgramPointer,
                               final String pOptions)
@@ -605,6 +706,15 @@ public class ClearCLBackendJOCL extends ClearCLBackendBase
                                 final int pIndex,
                                 final Object pObject)
   {
+    if (pObject instanceof ClearCLBuffer
+        || pObject instanceof ClearCLImage)
+    {
+      setKernelArgument(pKernelPeerPointer,
+                        pIndex,
+                        ((ClearCLMemBase) pObject).getPeerPointer());
+      return;
+    }
+
     BackendUtils.checkExceptions(() -> {
       long lObjectSize = Size.of(pObject);
 
@@ -690,25 +800,6 @@ public class ClearCLBackendJOCL extends ClearCLBackendBase
                                                         pIndex,
                                                         lObjectSize,
                                                         Pointer.to((double[]) pObject)));
-
-      else if (pObject instanceof ClearCLBuffer)
-      {
-        final ClearCLBuffer lClearCLBuffer = (ClearCLBuffer) pObject;
-        BackendUtils.checkOpenCLError(CL.clSetKernelArg(lKernelPointer,
-                                                        pIndex,
-                                                        SizeOf.cl_mem,
-                                                        Pointer.to(((cl_mem) lClearCLBuffer.getPeerPointer()
-                                                                                           .getPointer()))));
-      }
-      else if (pObject instanceof ClearCLImage)
-      {
-        final ClearCLImage lClearCLImage = (ClearCLImage) pObject;
-        BackendUtils.checkOpenCLError(CL.clSetKernelArg(lKernelPointer,
-                                                        pIndex,
-                                                        SizeOf.cl_mem,
-                                                        Pointer.to(((cl_mem) lClearCLImage.getPeerPointer()
-                                                                                          .getPointer()))));
-      }
       else if (pObject instanceof ClearCLLocalMemory)
       {
         final ClearCLLocalMemory lClearCLLocalMemory =
@@ -722,59 +813,147 @@ public class ClearCLBackendJOCL extends ClearCLBackendBase
 
   }
 
-  @Override
-  public void enqueueKernelExecution(final ClearCLPeerPointer pQueuePointer,
-                                     final ClearCLPeerPointer pKernelPointer,
-                                     final int pNumberOfDimension,
-                                     final long[] pGlobalOffsets,
-                                     final long[] pGlobalSizes,
-                                     final long[] pLocalSizes)
+  private void setKernelArgument(final ClearCLPeerPointer pKernelPeerPointer,
+                                 final int pIndex,
+                                 final ClearCLPeerPointer pMemPeerPointer)
   {
+    // no capturing closure here: buffers and images are set on every dispatch
+    // and this must not allocate once the argument pointer is cached:
+    try
+    {
+      Pointer lArgumentPointer =
+                               (Pointer) pMemPeerPointer.getArgumentPointer();
+      if (lArgumentPointer == null)
+      {
+        lArgumentPointer = Pointer.to((cl_mem) pMemPeerPointer.getPointer());
+        pMemPeerPointer.setArgumentPointer(lArgumentPointer);
+      }
 
-    BackendUtils.checkExceptions(() -> {
-      BackendUtils.checkOpenCLError(clEnqueueNDRangeKernel((cl_command_queue) pQueuePointer.getPointer(),
-                                                           (cl_kernel) pKernelPointer.getPointer(),
-                                                           pNumberOfDimension,
-                                                           pGlobalOffsets,
-                                                           pGlobalSizes,
-                                                           pLocalSizes,
-                                                           0,
-                                                           null,
-                                                           null));
-    });
+      BackendUtils.checkOpenCLError(CL.clSetKernelArg((cl_kernel) pKernelPeerPointer.getPointer(),
+                                                      pIndex,
+                                                      SizeOf.cl_mem,
+                                                      lArgumentPointer));
+    }
+    catch (final ClearCLException e)
+    {
+      throw e;
+    }
+    catch (final Throwable e)
+    {
+      throw new ClearCLException(e.getMessage(), e);
+    }
+  }
 
+  @Override
+  public void setKernelArgument(final ClearCLPeerPointer pKernelPeerPointer,
+                                final int pIndex,
+                                final long pSizeInBytes,
+                                final long pLowBits,
+                                final long pHighBits)
+  {
+    // no capturing closure here: arguments are set on every dispatch and
+    // this must not allocate:
+    try
+    {
+      final ArgumentScratch lArgumentScratch =
+                                             mArgumentScratchThreadLocal.get();
+      lArgumentScratch.mByteBuffer.putLong(0, pLowBits);
+      lArgumentScratch.mByteBuffer.putLong(8, pHighBits);
+
+      BackendUtils.checkOpenCLError(CL.clSetKernelArg((cl_kernel) pKernelPeerPointer.getPointer(),
+                                                      pIndex,
+                                                      pSizeInBytes,
+                                                      lArgumentScratch.mPointer));
+    }
+    catch (final ClearCLException e)
+    {
+      throw e;
+    }
+    catch (final Throwable e)
+    {
+      throw new ClearCLException(e.getMessage(), e);
+    }
   }
 
   @Override
-  public void enqueueReadFromBuffer(final ClearCLPeerPointer pQueuePointer,
-                                    final ClearCLPeerPointer pBufferPointer,
-                                    final boolean pBlockingRead,
-                                    final long pOffsetInBuffer,
-                                    final long pLengthInBytes,
-                                    final ClearCLPeerPointer pHostMemPointer)
+  public ClearCLPeerPointer enqueueKernelExecution(final ClearCLPeerPointer pQueuePointer,
+                                                   final ClearCLPeerPointer pKernelPointer,
+                                                   final int pNumberOfDimension,
+                                                   final long[] pGlobalOffsets,
+                                                   final long[] pGlobalSizes,
+                                                   final long[] pLocalSizes,
+                                                   final ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                   final boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    // no capturing closure here: this is the hot path of kernel dispatch and
+    // must not allocate, JOCL exceptions are disabled so checking the error
+    // code is enough:
+    final cl_event[] lWaitEvents =
+                                 Utils.convertEventPointers(pWaitEventPeerPointers);
+    final cl_event lEvent = pReturnEvent ? new cl_event() : null;
+
+    BackendUtils.checkOpenCLError(clEnqueueNDRangeKernel((cl_command_queue) pQueuePointer.getPointer(),
+                                                         (cl_kernel) pKernelPointer.getPointer(),
+                                                         pNumberOfDimension,
+                                                         pGlobalOffsets,
+                                                         pGlobalSizes,
+                                                         pLocalSizes,
+                                                         lWaitEvents == null ? 0
+                                                                             : lWaitEvents.length,
+                                                         lWaitEvents,
+                                                         lEvent));
+
+    return wrapEvent(lEvent, false, pReturnEvent);
+  }
+
+  @Override
+  public ClearCLPeerPointer enqueueReadFromBuffer(final ClearCLPeerPointer pQueuePointer,
+                                                  final ClearCLPeerPointer pBufferPointer,
+                                                  final boolean pBlockingRead,
+                                                  final long pOffsetInBuffer,
+                                                  final long pLengthInBytes,
+                                                  final ClearCLPeerPointer pHostMemPointer,
+                                                  final ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                  final boolean pReturnEvent)
+  {
+    return BackendUtils.checkExceptions(() -> {
+
+      final cl_event[] lWaitEvents =
+                                   Utils.convertEventPointers(pWaitEventPeerPointers);
+      final cl_event lEvent = pReturnEvent ? new cl_event()
+                                           : null;
+
       BackendUtils.checkOpenCLError(clEnqueueReadBuffer((cl_command_queue) pQueuePointer.getPointer(),
                                                         (cl_mem) pBufferPointer.getPointer(),
                                                         pBlockingRead,
                                                         pOffsetInBuffer,
                                                         pLengthInBytes,
                                                         (Pointer) pHostMemPointer.getPointer(),
-                                                        0,
-                                                        null,
-                                                        null));
+                                                        lWaitEvents == null ? 0
+                                                                            : lWaitEvents.length,
+                                                        lWaitEvents,
+                                                        lEvent));
+
+      return wrapEvent(lEvent, false, pReturnEvent);
     });
   }
 
   @Override
-  public void enqueueWriteToBuffer(final ClearCLPeerPointer pQueuePointer,
-                                   final ClearCLPeerPointer pBufferPointer,
-                                   final boolean pBlockingWrite,
-                                   final long pOffsetInBuffer,
-                                   final long pLengthInBytes,
-                                   final ClearCLPeerPointer pHostMemPointer)
+  public ClearCLPeerPointer enqueueWriteToBuffer(final ClearCLPeerPointer pQueuePointer,
+                                                 final ClearCLPeerPointer pBufferPointer,
+                                                 final boolean pBlockingWrite,
+                                                 final long pOffsetInBuffer,
+                                                 final long pLengthInBytes,
+                                                 final ClearCLPeerPointer pHostMemPointer,
+                                                 final ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                 final boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      final cl_event[] lWaitEvents =
+                                   Utils.convertEventPointers(pWaitEventPeerPointers);
+      final cl_event lEvent = pReturnEvent ? new cl_event()
+                                           : null;
 
       BackendUtils.checkOpenCLError(CL.clEnqueueWriteBuffer((cl_command_queue) pQueuePointer.getPointer(),
                                                             (cl_mem) pBufferPointer.getPointer(),
@@ -782,49 +961,78 @@ public class ClearCLBackendJOCL extends ClearCLBackendBase
                                                             pOffsetInBuffer,
                                                             pLengthInBytes,
                                                             (Pointer) pHostMemPointer.getPointer(),
-                                                            0,
-                                                            null,
-                                                            null));
+                                                            lWaitEvents == null ? 0
+                                                                                : lWaitEvents.length,
+                                                            lWaitEvents,
+                                                            lEvent));
+
+      return wrapEvent(lEvent, false, pReturnEvent);
     });
   }
 
   @Override
-  public void enqueueReadFromBufferRegion(final ClearCLPeerPointer pQueuePointer,
-                                          final ClearCLPeerPointer pBufferPointer,
-                                          final boolean pBlockingRead,
-                                          final long[] pBufferOrigin,
-                                          final long[] pHostOrigin,
-                                          final long[] pRegion,
-                                          final ClearCLPeerPointer pHostMemPointer)
+  public ClearCLPeerPointer enqueueReadFromBufferRegion(final ClearCLPeerPointer pQueuePointer,
+                                                        final ClearCLPeerPointer pBufferPointer,
+                                                        final boolean pBlockingRead,
+                                                        final long[] pBufferOrigin,
+                                                        final long[] pHostOrigin,
+                                                        final long[] pRegion,
+                                                        final long pBufferRowPitch,
+                                                        final long pBufferSlicePitch,
+                                                        final long pHostRowPitch,
+                                                        final long pHostSlicePitch,
+                                                        final ClearCLPeerPointer pHostMemPointer,
+                                                        final ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                        final boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      final cl_event[] lWaitEvents =
+                                   Utils.convertEventPointers(pWaitEventPeerPointers);
+      final cl_event lEvent = pReturnEvent ? new cl_event()
+                                           : null;
+
       BackendUtils.checkOpenCLError(CL.clEnqueueReadBufferRect((cl_command_queue) pQueuePointer.getPointer(),
                                                                (cl_mem) pBufferPointer.getPointer(),
                                                                pBlockingRead,
                                                                pBufferOrigin,
                                                                pHostOrigin,
                                                                pRegion,
-                                                               0,
-                                                               0,
-                                                               0,
-                                                               0,
+                                                               pBufferRowPitch,
+                                                               pBufferSlicePitch,
+                                                               pHostRowPitch,
+                                                               pHostSlicePitch,
                                                                (Pointer) pHostMemPointer.getPointer(),
-                                                               0,
-                                                               null,
-                                                               null));
+                                                               lWaitEvents == null ? 0
+                                                                                   : lWaitEvents.length,
+                                                               lWaitEvents,
+                                                               lEvent));
+
+      return wrapEvent(lEvent, false, pReturnEvent);
     });
   }
 
   @Override
-  public void enqueueWriteToBufferRegion(final ClearCLPeerPointer pQueuePointer,
-                                         final ClearCLPeerPointer pBufferPointer,
-                                         final boolean pBlockingWrite,
-                                         final long[] pBufferOrigin,
-                                         final long[] pHostOrigin,
-                                         final long[] pRegion,
-                                         final ClearCLPeerPointer pHostMemPointer)
+  public ClearCLPeerPointer enqueueWriteToBufferRegion(final ClearCLPeerPointer pQueuePointer,
+                                                       final ClearCLPeerPointer pBufferPointer,
+                                                       final boolean pBlockingWrite,
+                                                       final long[] pBufferOrigin,
+                                                       final long[] pHostOrigin,
+                                                       final long[] pRegion,
+                                                       final long pBufferRowPitch,
+                                                       final long pBufferSlicePitch,
+                                                       final long pHostRowPitch,
+                                                       final long pHostSlicePitch,
+                                                       final ClearCLPeerPointer pHostMemPointer,
+                                                       final ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                       final boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      final cl_event[] lWaitEvents =
+                                   Utils.convertEventPointers(pWaitEventPeerPointers);
+      final cl_event lEvent = pReturnEvent ? new cl_event()
+                                           : null;
 
       BackendUtils.checkOpenCLError(CL.clEnqueueWriteBufferRect((cl_command_queue) pQueuePointer.getPointer(),
                                                                 (cl_mem) pBufferPointer.getPointer(),
@@ -832,26 +1040,36 @@ public class ClearCLBackendJOCL extends ClearCLBackendBase
                                                                 pBufferOrigin,
                                                                 pHostOrigin,
                                                                 pRegion,
-                                                                0,
-                                                                0,
-                                                                0,
-                                                                0,
+                                                                pBufferRowPitch,
+                                                                pBufferSlicePitch,
+                                                                pHostRowPitch,
+                                                                pHostSlicePitch,
                                                                 (Pointer) pHostMemPointer.getPointer(),
-                                                                0,
-                                                                null,
-                                                                null));
+                                                                lWaitEvents == null ? 0
+                                                                                    : lWaitEvents.length,
+                                                                lWaitEvents,
+                                                                lEvent));
+
+      return wrapEvent(lEvent, false, pReturnEvent);
     });
   }
 
   @Override
-  public void enqueueFillBuffer(final ClearCLPeerPointer pQueuePointer,
-                                final ClearCLPeerPointer pBufferPointer,
-                                final boolean pBlockingFill,
-                                final long pOffsetInBytes,
-                                final long pLengthInBytes,
-                                final byte[] pPattern)
+  public ClearCLPeerPointer enqueueFillBuffer(final ClearCLPeerPointer pQueuePointer,
+                                              final ClearCLPeerPointer pBufferPointer,
+                                              final boolean pBlockingFill,
+                                              final long pOffsetInBytes,
+                                              final long pLengthInBytes,
+                                              final byte[] pPattern,
+                                              final ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                              final boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      final cl_event[] lWaitEvents =
+                                   Utils.convertEventPointers(pWaitEventPeerPointers);
+      final cl_event lEvent = pReturnEvent || pBlockingFill ? new cl_event()
+                                                            : null;
 
       final Pointer lPatternPointer = Pointer.to(pPattern);
 
@@ -861,26 +1079,32 @@ public class ClearCLBackendJOCL extends ClearCLBackendBase
                                                            pPattern.length,
                                                            pOffsetInBytes,
                                                            pLengthInBytes,
-                                                           0,
-                                                           null,
-                                                           null));
-
-      if (pBlockingFill)
-        waitQueueToFinish(pQueuePointer);
+                                                           lWaitEvents == null ? 0
+                                                                               : lWaitEvents.length,
+                                                           lWaitEvents,
+                                                           lEvent));
 
+      return wrapEvent(lEvent, pBlockingFill, pReturnEvent);
     });
   }
 
   @Override
-  public void enqueueCopyBuffer(final ClearCLPeerPointer pQueuePointer,
-                                final ClearCLPeerPointer pSrcBufferPointer,
-                                final ClearCLPeerPointer pDstBufferPointer,
-                                final boolean pBlockingCopy,
-                                final long pSrcOffsetInBytes,
-                                final long pDstOffsetInBytes,
-                                final long pLengthToCopyInBytes)
+  public ClearCLPeerPointer enqueueCopyBuffer(final ClearCLPeerPointer pQueuePointer,
+                                              final ClearCLPeerPointer pSrcBufferPointer,
+                                              final ClearCLPeerPointer pDstBufferPointer,
+                                              final boolean pBlockingCopy,
+                                              final long pSrcOffsetInBytes,
+                                              final long pDstOffsetInBytes,
+                                              final long pLengthToCopyInBytes,
+                                              final ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                              final boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      final cl_event[] lWaitEvents =
+                                   Utils.convertEventPointers(pWaitEventPeerPointers);
+      final cl_event lEvent = pReturnEvent || pBlockingCopy ? new cl_event()
+                                                            : null;
 
       BackendUtils.checkOpenCLError(CL.clEnqueueCopyBuffer((cl_command_queue) pQueuePointer.getPointer(),
                                                            (cl_mem) pSrcBufferPointer.getPointer(),
@@ -888,26 +1112,36 @@ public class ClearCLBackendJOCL extends ClearCLBackendBase
                                                            pSrcOffsetInBytes,
                                                            pDstOffsetInBytes,
                                                            pLengthToCopyInBytes,
-                                                           0,
-                                                           null,
-                                                           null));
-
-      if (pBlockingCopy)
-        waitQueueToFinish(pQueuePointer);
+                                                           lWaitEvents == null ? 0
+                                                                               : lWaitEvents.length,
+                                                           lWaitEvents,
+                                                           lEvent));
 
+      return wrapEvent(lEvent, pBlockingCopy, pReturnEvent);
     });
   }
 
   @Override
-  public void enqueueCopyBufferRegion(final ClearCLPeerPointer pQueuePointer,
-                                      final ClearCLPeerPointer pSrcBufferPointer,
-                                      final ClearCLPeerPointer pDstBufferPointer,
-                                      final boolean pBlockingCopy,
-                                      final long[] pSrcOrigin,
-                                      final long[] pDstOrigin,
-                                      final long[] pRegion)
+  public ClearCLPeerPointer enqueueCopyBufferRegion(final ClearCLPeerPointer pQueuePointer,
+                                                    final ClearCLPeerPointer pSrcBufferPointer,
+                                                    final ClearCLPeerPointer pDstBufferPointer,
+                                                    final boolean pBlockingCopy,
+                                                    final long[] pSrcOrigin,
+                                                    final long[] pDstOrigin,
+                                                    final long[] pRegion,
+                                                    final long pSrcRowPitch,
+                                                    final long pSrcSlicePitch,
+                                                    final long pDstRowPitch,
+                                                    final long pDstSlicePitch,
+                                                    final ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                    final boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      final cl_event[] lWaitEvents =
+                                   Utils.convertEventPointers(pWaitEventPeerPointers);
+      final cl_event lEvent = pReturnEvent || pBlockingCopy ? new cl_event()
+                                                            : null;
 
       BackendUtils.checkOpenCLError(CL.clEnqueueCopyBufferRect((cl_command_queue) pQueuePointer.getPointer(),
                                                                (cl_mem) pSrcBufferPointer.getPointer(),
@@ -915,30 +1149,36 @@ public class ClearCLBackendJOCL extends ClearCLBackendBase
                                                                pSrcOrigin,
                                                                pDstOrigin,
                                                                pRegion,
-                                                               0,
-                                                               0,
-                                                               0,
-                                                               0,
-                                                               0,
-                                                               null,
-                                                               null));
-
-      if (pBlockingCopy)
-        waitQueueToFinish(pQueuePointer);
-
+                                                               pSrcRowPitch,
+                                                               pSrcSlicePitch,
+                                                               pDstRowPitch,
+                                                               pDstSlicePitch,
+                                                               lWaitEvents == null ? 0
+                                                                                   : lWaitEvents.length,
+                                                               lWaitEvents,
+                                                               lEvent));
+
+      return wrapEvent(lEvent, pBlockingCopy, pReturnEvent);
     });
   }
 
   @Override
-  public void enqueueCopyBufferToImage(final ClearCLPeerPointer pQueuePointer,
-                                       final ClearCLPeerPointer pSrcBufferPointer,
-                                       final ClearCLPeerPointer pDstImagePointer,
-                                       final boolean pBlockingCopy,
-                                       final long pSrcOffsetInBytes,
-                                       final long[] pDstOrigin,
-                                       final long[] pDstRegion)
+  public ClearCLPeerPointer enqueueCopyBufferToImage(final ClearCLPeerPointer pQueuePointer,
+                                                     final ClearCLPeerPointer pSrcBufferPointer,
+                                                     final ClearCLPeerPointer pDstImagePointer,
+                                                     final boolean pBlockingCopy,
+                                                     final long pSrcOffsetInBytes,
+                                                     final long[] pDstOrigin,
+                                                     final long[] pDstRegion,
+                                                     final ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                     final boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      final cl_event[] lWaitEvents =
+                                   Utils.convertEventPointers(pWaitEventPeerPointers);
+      final cl_event lEvent = pReturnEvent || pBlockingCopy ? new cl_event()
+                                                            : null;
 
       BackendUtils.checkOpenCLError(CL.clEnqueueCopyBufferToImage((cl_command_queue) pQueuePointer.getPointer(),
                                                                   (cl_mem) pSrcBufferPointer.getPointer(),
@@ -946,25 +1186,32 @@ public class ClearCLBackendJOCL extends ClearCLBackendBase
                                                                   pSrcOffsetInBytes,
                                                                   pDstOrigin,
                                                                   pDstRegion,
-                                                                  0,
-                                                                  null,
-                                                                  null));
-
-      if (pBlockingCopy)
-        waitQueueToFinish(pQueuePointer);
+                                                                  lWaitEvents == null ? 0
+                                                                                      : lWaitEvents.length,
+                                                                  lWaitEvents,
+                                                                  lEvent));
 
+      return wrapEvent(lEvent, pBlockingCopy, pReturnEvent);
     });
   }
 
   @Override
-  public void enqueueReadFromImage(final ClearCLPeerPointer pQueuePointer,
-                                   final ClearCLPeerPointer pImagePointer,
-                                   final boolean pReadWrite,
-                                   final long[] pOrigin,
-                                   final long[] pRegion,
-                                   final ClearCLPeerPointer pHostMemPointer)
+  public ClearCLPeerPointer enqueueReadFromImage(final ClearCLPeerPointer pQueuePointer,
+                                                 final ClearCLPeerPointer pImagePointer,
+                                                 final boolean pReadWrite,
+                                                 final long[] pOrigin,
+                                                 final long[] pRegion,
+                                                 final ClearCLPeerPointer pHostMemPointer,
+                                                 final ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                 final boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      final cl_event[] lWaitEvents =
+                                   Utils.convertEventPointers(pWaitEventPeerPointers);
+      final cl_event lEvent = pReturnEvent ? new cl_event()
+                                           : null;
+
       BackendUtils.checkOpenCLError(CL.clEnqueueReadImage((cl_command_queue) pQueuePointer.getPointer(),
                                                           (cl_mem) pImagePointer.getPointer(),
                                                           pReadWrite,
@@ -973,44 +1220,65 @@ public class ClearCLBackendJOCL extends ClearCLBackendBase
                                                           0,
                                                           0,
                                                           (Pointer) pHostMemPointer.getPointer(),
-                                                          0,
-                                                          null,
-                                                          null));
+                                                          lWaitEvents == null ? 0
+                                                                              : lWaitEvents.length,
+                                                          lWaitEvents,
+                                                          lEvent));
+
+      return wrapEvent(lEvent, false, pReturnEvent);
     });
   }
 
   @Override
-  public void enqueueWriteToImage(final ClearCLPeerPointer pQueuePointer,
-                                  final ClearCLPeerPointer pImagePointer,
-                                  final boolean pBlockingWrite,
-                                  final long[] pOrigin,
-                                  final long[] pRegion,
-                                  final ClearCLPeerPointer pHostMemPointer)
+  public ClearCLPeerPointer enqueueWriteToImage(final ClearCLPeerPointer pQueuePointer,
+                                                final ClearCLPeerPointer pImagePointer,
+                                                final boolean pBlockingWrite,
+                                                final long[] pOrigin,
+                                                final long[] pRegion,
+                                                final ClearCLPeerPointer pHostMemPointer,
+                                                final ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                final boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      final cl_event[] lWaitEvents =
+                                   Utils.convertEventPointers(pWaitEventPeerPointers);
+      final cl_event lEvent = pReturnEvent ? new cl_event()
+                                           : null;
+
       BackendUtils.checkOpenCLError(CL.clEnqueueWriteImage((cl_command_queue) pQueuePointer.getPointer(),
                                                            (cl_mem) pImagePointer.getPointer(),
-                                                           true,
+                                                           pBlockingWrite,
                                                            pOrigin,
                                                            pRegion,
                                                            0,
                                                            0,
                                                            (Pointer) pHostMemPointer.getPointer(),
-                                                           0,
-                                                           null,
-                                                           null));
+                                                           lWaitEvents == null ? 0
+                                                                               : lWaitEvents.length,
+                                                           lWaitEvents,
+                                                           lEvent));
+
+      return wrapEvent(lEvent, false, pReturnEvent);
     });
   }
 
   @Override
-  public void enqueueFillImage(final ClearCLPeerPointer pQueuePointer,
-                               final ClearCLPeerPointer pImagePointer,
-                               final boolean pBlockingFill,
-                               final long[] pOrigin,
-                               final long[] pRegion,
-                               final byte[] pColor)
+  public ClearCLPeerPointer enqueueFillImage(final ClearCLPeerPointer pQueuePointer,
+                                             final ClearCLPeerPointer pImagePointer,
+                                             final boolean pBlockingFill,
+                                             final long[] pOrigin,
+                                             final long[] pRegion,
+                                             final byte[] pColor,
+                                             final ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                             final boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      final cl_event[] lWaitEvents =
+                                   Utils.convertEventPointers(pWaitEventPeerPointers);
+      final cl_event lEvent = pReturnEvent || pBlockingFill ? new cl_event()
+                                                            : null;
 
       final Pointer lColorPointer = Pointer.to(pColor);
 
@@ -1019,26 +1287,32 @@ public class ClearCLBackendJOCL extends ClearCLBackendBase
                                                           lColorPointer,
                                                           pOrigin,
                                                           pRegion,
-                                                          0,
-                                                          null,
-                                                          null));
-
-      if (pBlockingFill)
-        waitQueueToFinish(pQueuePointer);
+                                                          lWaitEvents == null ? 0
+                                                                              : lWaitEvents.length,
+                                                          lWaitEvents,
+                                                          lEvent));
 
+      return wrapEvent(lEvent, pBlockingFill, pReturnEvent);
     });
   }
 
   @Override
-  public void enqueueCopyImage(final ClearCLPeerPointer pQueuePointer,
-                               final ClearCLPeerPointer pSrcBImagePointer,
-                               final ClearCLPeerPointer pDstImagePointer,
-                               final boolean pBlockingCopy,
-                               final long[] pSrcOrigin,
-                               final long[] pDstOrigin,
-                               final long[] pRegion)
+  public ClearCLPeerPointer enqueueCopyImage(final ClearCLPeerPointer pQueuePointer,
+                                             final ClearCLPeerPointer pSrcBImagePointer,
+                                             final ClearCLPeerPointer pDstImagePointer,
+                                             final boolean pBlockingCopy,
+                                             final long[] pSrcOrigin,
+                                             final long[] pDstOrigin,
+                                             final long[] pRegion,
+                                             final ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                             final boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      final cl_event[] lWaitEvents =
+                                   Utils.convertEventPointers(pWaitEventPeerPointers);
+      final cl_event lEvent = pReturnEvent || pBlockingCopy ? new cl_event()
+                                                            : null;
 
       BackendUtils.checkOpenCLError(CL.clEnqueueCopyImage((cl_command_queue) pQueuePointer.getPointer(),
                                                           (cl_mem) pSrcBImagePointer.getPointer(),
@@ -1046,26 +1320,32 @@ public class ClearCLBackendJOCL extends ClearCLBackendBase
                                                           pSrcOrigin,
                                                           pDstOrigin,
                                                           pRegion,
-                                                          0,
-                                                          null,
-                                                          null));
-
-      if (pBlockingCopy)
-        waitQueueToFinish(pQueuePointer);
+                                                          lWaitEvents == null ? 0
+                                                                              : lWaitEvents.length,
+                                                          lWaitEvents,
+                                                          lEvent));
 
+      return wrapEvent(lEvent, pBlockingCopy, pReturnEvent);
     });
   }
 
   @Override
-  public void enqueueCopyImageToBuffer(final ClearCLPeerPointer pQueuePointer,
-                                       final ClearCLPeerPointer pSrcImagePointer,
-                                       final ClearCLPeerPointer pDstBufferPointer,
-                                       final boolean pBlockingCopy,
-                                       final long[] pSrcOrigin,
-                                       final long[] pSrcRegion,
-                                       final long pDstOffset)
+  public ClearCLPeerPointer enqueueCopyImageToBuffer(final ClearCLPeerPointer pQueuePointer,
+                                                     final ClearCLPeerPointer pSrcImagePointer,
+                                                     final ClearCLPeerPointer pDstBufferPointer,
+                                                     final boolean pBlockingCopy,
+                                                     final long[] pSrcOrigin,
+                                                     final long[] pSrcRegion,
+                                                     final long pDstOffset,
+                                                     final ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                     final boolean pReturnEvent)
   {
-    BackendUtils.checkExceptions(() -> {
+    return BackendUtils.checkExceptions(() -> {
+
+      final cl_event[] lWaitEvents =
+                                   Utils.convertEventPointers(pWaitEventPeerPointers);
+      final cl_event lEvent = pReturnEvent || pBlockingCopy ? new cl_event()
+                                                            : null;
 
       BackendUtils.checkOpenCLError(CL.clEnqueueCopyImageToBuffer((cl_command_queue) pQueuePointer.getPointer(),
                                                                   (cl_mem) pSrcImagePointer.getPointer(),
@@ -1073,13 +1353,12 @@ public class ClearCLBackendJOCL extends ClearCLBackendBase
                                                                   pSrcOrigin,
                                                                   pSrcRegion,
                                                                   pDstOffset,
-                                                                  0,
-                                                                  null,
-                                                                  null));
-
-      if (pBlockingCopy)
-        waitQueueToFinish(pQueuePointer);
+                                                                  lWaitEvents == null ? 0
+                                                                                      : lWaitEvents.length,
+                                                                  lWaitEvents,
+                                                                  lEvent));
 
+      return wrapEvent(lEvent, pBlockingCopy, pReturnEvent);
     });
   }
 
@@ -1110,6 +1389,141 @@ public class ClearCLBackendJOCL extends ClearCLBackendBase
     throw new ClearCLUnsupportedException("fragmented buffers not supported.");
   }
 
+  @Override
+  public ContiguousMemoryInterface enqueueMapBuffer(final ClearCLPeerPointer pQueuePointer,
+                                                    final ClearCLPeerPointer pBufferPointer,
+                                                    final HostAccessType pMapAccessType,
+                                                    final long pOffsetInBytes,
+                                                    final long pLengthInBytes,
+                                                    final ClearCLPeerPointer[] pWaitEventPeerPointers)
+  {
+    return BackendUtils.checkExceptions(() -> {
+
+      final cl_event[] lWaitEvents =
+                                   Utils.convertEventPointers(pWaitEventPeerPointers);
+      final int lErrorCode[] = new int[1];
+
+      final ByteBuffer lMappedByteBuffer =
+                                         CL.clEnqueueMapBuffer((cl_command_queue) pQueuePointer.getPointer(),
+                                                               (cl_mem) pBufferPointer.getPointer(),
+                                                               true,
+                                                               BackendUtils.getMapFlags(pMapAccessType),
+                                                               pOffsetInBytes,
+                                                               pLengthInBytes,
+                                                               lWaitEvents == null ? 0
+                                                                                   : lWaitEvents.length,
+                                                               lWaitEvents,
+                                                               null,
+                                                               lErrorCode);
+      BackendUtils.checkOpenCLErrorCode(lErrorCode[0]);
+
+      return wrapMappedMemory(lMappedByteBuffer, pLengthInBytes);
+    });
+  }
+
+  @Override
+  public ContiguousMemoryInterface enqueueMapImage(final ClearCLPeerPointer pQueuePointer,
+                                                   final ClearCLPeerPointer pImagePointer,
+                                                   final HostAccessType pMapAccessType,
+                                                   final long[] pOrigin,
+                                                   final long[] pRegion,
+                                                   final long pPixelSizeInBytes,
+                                                   final long[] pPitchesInBytes,
+                                                   final ClearCLPeerPointer[] pWaitEventPeerPointers)
+  {
+    return BackendUtils.checkExceptions(() -> {
+
+      final cl_event[] lWaitEvents =
+                                   Utils.convertEventPointers(pWaitEventPeerPointers);
+      final int lErrorCode[] = new int[1];
+      final long lRowPitch[] = new long[1];
+      final long lSlicePitch[] = new long[1];
+
+      final ByteBuffer lMappedByteBuffer =
+                                         CL.clEnqueueMapImage((cl_command_queue) pQueuePointer.getPointer(),
+                                                              (cl_mem) pImagePointer.getPointer(),
+                                                              true,
+                                                              BackendUtils.getMapFlags(pMapAccessType),
+                                                              pOrigin,
+                                                              pRegion,
+                                                              lRowPitch,
+                                                              lSlicePitch,
+                                                              lWaitEvents == null ? 0
+                                                                                  : lWaitEvents.length,
+                                                              lWaitEvents,
+                                                              null,
+                                                              lErrorCode);
+      BackendUtils.checkOpenCLErrorCode(lErrorCode[0]);
+
+      pPitchesInBytes[0] = lRowPitch[0];
+      pPitchesInBytes[1] = lSlicePitch[0];
+
+      return wrapMappedMemory(lMappedByteBuffer,
+                              BackendUtils.getMappedImageSizeInBytes(pRegion,
+                                                                     lRowPitch[0],
+                                                                     lSlicePitch[0],
+                                                                     pPixelSizeInBytes));
+    });
+  }
+
+  private static ContiguousMemoryInterface wrapMappedMemory(ByteBuffer pMappedByteBuffer,
+                                                            long pLengthInBytes)
+  {
+    long lAddress = OffHeapMemory.wrapBuffer(pMappedByteBuffer)
+                                 .getAddress();
+    return OffHeapMemory.wrapPointer(pMappedByteBuffer,
+                                     lAddress,
+                                     pLengthInBytes);
+  }
+
+  @Override
+  public ClearCLPeerPointer enqueueUnmap(final ClearCLPeerPointer pQueuePointer,
+                                         final ClearCLPeerPointer pMemPointer,
+                                         final ContiguousMemoryInterface pMappedMemory,
+                                         final boolean pBlockingUnmap,
+                                         final ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                         final boolean pReturnEvent)
+  {
+    return BackendUtils.checkExceptions(() -> {
+
+      final cl_event[] lWaitEvents =
+                                   Utils.convertEventPointers(pWaitEventPeerPointers);
+      final cl_event lEvent = pReturnEvent || pBlockingUnmap ? new cl_event()
+                                                             : null;
+
+      BackendUtils.checkOpenCLError(CL.clEnqueueUnmapMemObject((cl_command_queue) pQueuePointer.getPointer(),
+                                                               (cl_mem) pMemPointer.getPointer(),
+                                                               pMappedMemory.getByteBuffer(),
+                                                               lWaitEvents == null ? 0
+                                                                                   : lWaitEvents.length,
+                                                               lWaitEvents,
+                                                               lEvent));
+
+      return wrapEvent(lEvent, pBlockingUnmap, pReturnEvent);
+    });
+  }
+
+  @Override
+  public ClearCLPeerPointer enqueueBarrier(final ClearCLPeerPointer pQueuePointer,
+                                           final ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                           final boolean pReturnEvent)
+  {
+    return BackendUtils.checkExceptions(() -> {
+
+      final cl_event[] lWaitEvents =
+                                   Utils.convertEventPointers(pWaitEventPeerPointers);
+      final cl_event lEvent = pReturnEvent ? new cl_event() : null;
+
+      BackendUtils.checkOpenCLError(CL.clEnqueueBarrierWithWaitList((cl_command_queue) pQueuePointer.getPointer(),
+                                                                    lWaitEvents == null ? 0
+                                                                                        : lWaitEvents.length,
+                                                                    lWaitEvents,
+                                                                    lEvent));
+
+      return wrapEvent(lEvent, false, pReturnEvent);
+    });
+  }
+
   @Override
   public void releaseBuffer(final ClearCLPeerPointer pPeerPointer)
   {
@@ -1175,4 +1589,121 @@ public class ClearCLBackendJOCL extends ClearCLBackendBase
     });
   }
 
+  @Override
+  public void waitForEvents(final ClearCLPeerPointer... pEventPeerPointers)
+  {
+    BackendUtils.checkExceptions(() -> {
+      final cl_event[] lEvents =
+                               Utils.convertEventPointers(pEventPeerPointers);
+      if (lEvents != null)
+        BackendUtils.checkOpenCLError(CL.clWaitForEvents(lEvents.length,
+                                                         lEvents));
+    });
+  }
+
+  @Override
+  public EventStatus getEventStatus(final ClearCLPeerPointer pEventPeerPointer)
+  {
+    return BackendUtils.checkExceptions(() -> {
+      final int[] lStatus = new int[1];
+      BackendUtils.checkOpenCLError(CL.clGetEventInfo((cl_event) pEventPeerPointer.getPointer(),
+                                                      CL.CL_EVENT_COMMAND_EXECUTION_STATUS,
+                                                      SizeOf.cl_int,
+                                                      Pointer.to(lStatus),
+                                                      null));
+      return EventStatus.fromOpenCL(lStatus[0]);
+    });
+  }
+
+  @Override
+  public void releaseEvent(final ClearCLPeerPointer pPeerPointer)
+  {
+    BackendUtils.checkExceptions(() -> {
+      BackendUtils.checkOpenCLError(CL.clReleaseEvent((cl_event) pPeerPointer.getPointer()));
+    });
+  }
+
+  @Override
+  public void retainEvent(final ClearCLPeerPointer pPeerPointer)
+  {
+    BackendUtils.checkExceptions(() -> {
+      BackendUtils.checkOpenCLError(CL.clRetainEvent((cl_event) pPeerPointer.getPointer()));
+    });
+  }
+
+  @Override
+  public long[] getEventProfilingInfo(final ClearCLPeerPointer pEventPeerPointer)
+  {
+    return BackendUtils.checkExceptions(() -> {
+      final cl_event lEvent = (cl_event) pEventPeerPointer.getPointer();
+      final int[] lParameters = new int[]
+      { CL.CL_PROFILING_COMMAND_QUEUED,
+        CL.CL_PROFILING_COMMAND_SUBMIT,
+        CL.CL_PROFILING_COMMAND_START,
+        CL.CL_PROFILING_COMMAND_END };
+      final long[] lTimestamps = new long[lParameters.length];
+      final long[] lValue = new long[1];
+      for (int i = 0; i < lParameters.length; i++)
+      {
+        BackendUtils.checkOpenCLError(CL.clGetEventProfilingInfo(lEvent,
+                                                                 lParameters[i],
+                                                                 SizeOf.cl_ulong,
+                                                                 Pointer.to(lValue),
+                                                                 null));
+        lTimestamps[i] = lValue[0];
+      }
+      return lTimestamps;
+    });
+  }
+
+  @Override
+  public void setEventCallback(final ClearCLPeerPointer pEventPeerPointer,
+                               final IntConsumer pCallback)
+  {
+    BackendUtils.checkExceptions(() -> {
+      BackendUtils.checkOpenCLError(CL.clSetEventCallback((cl_event) pEventPeerPointer.getPointer(),
+                                                          CL.CL_COMPLETE,
+                                                          (pEvent,
+                                                           pStatus,
+                                                           pUserData) -> pCallback.accept(pStatus),
+                                                          null));
+    });
+  }
+
+  @Override
+  public void flushQueue(final ClearCLPeerPointer pQueuePointer)
+  {
+    BackendUtils.checkExceptions(() -> {
+      BackendUtils.checkOpenCLError(CL.clFlush((cl_command_queue) pQueuePointer.getPointer()));
+    });
+  }
+
+  private static class ArgumentScratch
+  {
+    final ByteBuffer mByteBuffer =
+                                 ByteBuffer.allocateDirect(16)
+                                           .order(ByteOrder.nativeOrder());
+    final Pointer mPointer = Pointer.to(mByteBuffer);
+  }
+
+  private ClearCLPeerPointer wrapEvent(final cl_event pEvent,
+                                       final boolean pWaitForEvent,
+                                       final boolean pReturnEvent)
+  {
+    if (pEvent == null)
+      return null;
+
+    if (pWaitForEvent)
+      BackendUtils.checkOpenCLError(CL.clWaitForEvents(1, new cl_event[]
+      { pEvent }));
+
+    if (!pReturnEvent)
+    {
+      BackendUtils.checkOpenCLError(CL.clReleaseEvent(pEvent));
+      return null;
+    }
+
+    return new ClearCLPeerPointer(pEvent);
+  }
+
 }
@@ -12,6 +12,7 @@ import clearcl.backend.SizeOf;
 
 import org.jocl.Pointer;
 import org.jocl.cl_device_id;
+import org.jocl.cl_event;
 import org.jocl.cl_platform_id;
 
 /**
@@ -255,6 +256,30 @@ public class Utils
     });
   }
 
+  /**
+   * Converts event pointers from peer pointers to backend specific pointers.
+   * 
+   * @param pClearCLEventPeerPointers
+   *          event pointers, can be null
+   * @return array of backend specific event pointers, or null if there are no
+   *         events.
+   */
+  public static cl_event[] convertEventPointers(ClearCLPeerPointer... pClearCLEventPeerPointers)
+  {
+    if (pClearCLEventPeerPointers == null
+        || pClearCLEventPeerPointers.length == 0)
+      return null;
+
+    cl_event[] lJOCLEventPointers =
+                                  new cl_event[pClearCLEventPeerPointers.length];
+
+    for (int i = 0; i < pClearCLEventPeerPointers.length; i++)
+      lJOCLEventPointers[i] =
+                            (cl_event) pClearCLEventPeerPointers[i].getPointer();
+
+    return lJOCLEventPointers;
+  }
+
   // public static <N extends NativePointerObject> N checkNullReturn(N pPointer)
   // {
   // try
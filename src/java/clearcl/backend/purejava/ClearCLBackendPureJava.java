@@ -0,0 +1,1163 @@
+package clearcl.backend.purejava;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+import clearcl.ClearCLBuffer;
+import clearcl.ClearCLImage;
+import clearcl.ClearCLLocalMemory;
+import clearcl.ClearCLPeerPointer;
+import clearcl.backend.BackendUtils;
+import clearcl.backend.ClearCLBackendBase;
+import clearcl.backend.ClearCLBackendInterface;
+import clearcl.enums.BuildStatus;
+import clearcl.enums.DeviceType;
+import clearcl.enums.EventStatus;
+import clearcl.enums.HostAccessType;
+import clearcl.enums.ImageChannelDataType;
+import clearcl.enums.ImageChannelOrder;
+import clearcl.enums.ImageType;
+import clearcl.enums.KernelAccessType;
+import clearcl.enums.MemAllocMode;
+import clearcl.exceptions.ClearCLException;
+import clearcl.exceptions.ClearCLUnsupportedException;
+import clearcl.util.Region3;
+import coremem.ContiguousMemoryInterface;
+import coremem.fragmented.FragmentedMemoryInterface;
+import coremem.offheap.OffHeapMemory;
+
+/**
+ * ClearCL pure Java backend. Provides a single CPU device that needs no OpenCL
+ * driver: buffers and images live in off-heap CoreMem memory, transfers and
+ * copies are plain memory copies, and kernels are executed on a fork-join pool
+ * by Java implementations of the library's own kernels (see
+ * {@link PureJavaKernels}). Commands execute when they are enqueued, events
+ * are therefore always complete. This backend is meant as a reference to check
+ * results of OpenCL devices against, and as a fallback for machines without
+ * any OpenCL platform.
+ *
+ * @author royer
+ */
+public class ClearCLBackendPureJava extends ClearCLBackendBase
+                                    implements ClearCLBackendInterface
+{
+  private static final long cMaxWorkGroupSize = 1024;
+  private static final long cLocalMemSize = 32 * 1024;
+
+  private final ForkJoinPool mForkJoinPool;
+  private final ClearCLPeerPointer mPlatformPeerPointer =
+                                                        new ClearCLPeerPointer(new Handle("platform"));
+  private final ClearCLPeerPointer mDevicePeerPointer =
+                                                      new ClearCLPeerPointer(new Handle("device"));
+
+  /**
+   * Instantiates a pure Java backend using as many threads as there are
+   * available processors.
+   */
+  public ClearCLBackendPureJava()
+  {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Instantiates a pure Java backend using a given number of threads.
+   *
+   * @param pNumberOfThreads
+   *          number of threads used to execute kernels
+   */
+  public ClearCLBackendPureJava(int pNumberOfThreads)
+  {
+    mForkJoinPool = new ForkJoinPool(pNumberOfThreads);
+  }
+
+  /**
+   * Opaque peer object for platforms, devices, contexts and queues.
+   */
+  private static class Handle
+  {
+    private final String mName;
+
+    Handle(String pName)
+    {
+      mName = pName;
+    }
+
+    @Override
+    public String toString()
+    {
+      return mName;
+    }
+  }
+
+  @Override
+  public int getNumberOfPlatforms()
+  {
+    return 1;
+  }
+
+  @Override
+  public ClearCLPeerPointer getPlatformPeerPointer(int pPlatformIndex)
+  {
+    return pPlatformIndex == 0 ? mPlatformPeerPointer : null;
+  }
+
+  @Override
+  public String getPlatformName(ClearCLPeerPointer pPlatformPeerPointer)
+  {
+    return "ClearCL pure Java";
+  }
+
+  @Override
+  public int getNumberOfDevicesForPlatform(ClearCLPeerPointer pPlatformPeerPointer,
+                                           DeviceType pDeviceType)
+  {
+    return pDeviceType == DeviceType.CPU ? 1 : 0;
+  }
+
+  @Override
+  public int getNumberOfDevicesForPlatform(ClearCLPeerPointer pPlatformPeerPointer)
+  {
+    return 1;
+  }
+
+  @Override
+  public ClearCLPeerPointer getDevicePeerPointer(ClearCLPeerPointer pPlatformPeerPointer,
+                                                 DeviceType pDeviceType,
+                                                 int pDeviceIndex)
+  {
+    return pDeviceType == DeviceType.CPU && pDeviceIndex == 0 ? mDevicePeerPointer
+                                                              : null;
+  }
+
+  @Override
+  public ClearCLPeerPointer getDevicePeerPointer(ClearCLPeerPointer pPlatformPeerPointer,
+                                                 int pDeviceIndex)
+  {
+    return pDeviceIndex == 0 ? mDevicePeerPointer : null;
+  }
+
+  @Override
+  public String getDeviceName(ClearCLPeerPointer pDevicePeerPointer)
+  {
+    return String.format("Java fork-join (%d threads)",
+                         mForkJoinPool.getParallelism());
+  }
+
+  @Override
+  public DeviceType getDeviceType(ClearCLPeerPointer pDevicePeerPointer)
+  {
+    return DeviceType.CPU;
+  }
+
+  @Override
+  public String getDeviceVersion(ClearCLPeerPointer pDevicePeerPointer)
+  {
+    return "OpenCL C 1.2";
+  }
+
+  @Override
+  public String getDeviceDriverVersion(ClearCLPeerPointer pDevicePeerPointer)
+  {
+    return "Java " + System.getProperty("java.version");
+  }
+
+  @Override
+  public boolean imageSupport(ClearCLPeerPointer pDevicePointer)
+  {
+    return true;
+  }
+
+  @Override
+  public String getDeviceExtensions(ClearCLPeerPointer pDevicePeerPointer)
+  {
+    return "";
+  }
+
+  @Override
+  public long getDeviceInfoLong(ClearCLPeerPointer pDevicePeerPointer,
+                                int pInfoId)
+  {
+    switch (pInfoId)
+    {
+    case BackendUtils.CL_DEVICE_GLOBAL_MEM_SIZE:
+    case BackendUtils.CL_DEVICE_MAX_MEM_ALLOC_SIZE:
+      return getPhysicalMemorySize();
+    case BackendUtils.CL_DEVICE_LOCAL_MEM_SIZE:
+      return cLocalMemSize;
+    case BackendUtils.CL_DEVICE_MAX_WORK_GROUP_SIZE:
+      return cMaxWorkGroupSize;
+    default:
+      return getDeviceInfoInt(pDevicePeerPointer, pInfoId);
+    }
+  }
+
+  /**
+   * Buffers and images are allocated off-heap, outside of the Java heap
+   * limit, so the memory available to this device is the physical memory of
+   * the machine.
+   */
+  private static long getPhysicalMemorySize()
+  {
+    OperatingSystemMXBean lOperatingSystemMXBean =
+                                                ManagementFactory.getOperatingSystemMXBean();
+    if (lOperatingSystemMXBean instanceof com.sun.management.OperatingSystemMXBean)
+      return ((com.sun.management.OperatingSystemMXBean) lOperatingSystemMXBean).getTotalPhysicalMemorySize();
+    // without the HotSpot extension, the heap limit is a conservative bound:
+    return Runtime.getRuntime().maxMemory();
+  }
+
+  @Override
+  public long getDeviceInfoInt(ClearCLPeerPointer pDevicePeerPointer,
+                               int pInfoId)
+  {
+    switch (pInfoId)
+    {
+    case BackendUtils.CL_DEVICE_MAX_COMPUTE_UNITS:
+      return mForkJoinPool.getParallelism();
+    case BackendUtils.CL_DEVICE_MAX_CLOCK_FREQUENCY:
+      return 0;
+    default:
+      throw new ClearCLUnsupportedException("device info not available for pure Java device: "
+                                            + pInfoId);
+    }
+  }
+
+  @Override
+  public ClearCLPeerPointer getContextPeerPointer(ClearCLPeerPointer pPlatformPeerPointer,
+                                                  ClearCLPeerPointer... pDevicePeerPointers)
+  {
+    return new ClearCLPeerPointer(new Handle("context"));
+  }
+
+  @Override
+  public ClearCLPeerPointer getQueuePeerPointer(ClearCLPeerPointer pDevicePeerPointer,
+                                                ClearCLPeerPointer pContextPeerPointer,
+                                                boolean pInOrder,
+                                                boolean pProfiling)
+  {
+    return new ClearCLPeerPointer(new Handle("queue"));
+  }
+
+  @Override
+  public ClearCLPeerPointer getBufferPeerPointer(ClearCLPeerPointer pDevicePointer,
+                                                 ClearCLPeerPointer pContextPeerPointer,
+                                                 MemAllocMode pMemAllocMode,
+                                                 HostAccessType pHostAccessType,
+                                                 KernelAccessType pKernelAccessType,
+                                                 long pBufferSizeInBytes)
+  {
+    return BackendUtils.checkExceptions(() -> {
+      return new ClearCLPeerPointer(new PureJavaBuffer(pBufferSizeInBytes));
+    });
+  }
+
+  @Override
+  public ClearCLPeerPointer getSubBufferPeerPointer(ClearCLPeerPointer pBufferPeerPointer,
+                                                    long pOffsetInBytes,
+                                                    long pSizeInBytes)
+  {
+    return BackendUtils.checkExceptions(() -> {
+      return new ClearCLPeerPointer(buffer(pBufferPeerPointer).subBuffer(pOffsetInBytes,
+                                                                         pSizeInBytes));
+    });
+  }
+
+  @Override
+  public ClearCLPeerPointer getImagePeerPointer(ClearCLPeerPointer pDevicePointer,
+                                                ClearCLPeerPointer pContextPeerPointer,
+                                                MemAllocMode pMemAllocMode,
+                                                HostAccessType pHostAccessType,
+                                                KernelAccessType pKernelAccessType,
+                                                ImageType pImageType,
+                                                ImageChannelOrder pImageChannelOrder,
+                                                ImageChannelDataType pImageChannelDataType,
+                                                long... pDimensions)
+  {
+    return BackendUtils.checkExceptions(() -> {
+      return new ClearCLPeerPointer(new PureJavaImage(pImageChannelOrder,
+                                                      pImageChannelDataType,
+                                                      pDimensions));
+    });
+  }
+
+  @Override
+  public ClearCLPeerPointer getProgramPeerPointer(ClearCLPeerPointer pContextPeerPointer,
+                                                  String... pSourceCode)
+  {
+    return new ClearCLPeerPointer(new PureJavaProgram(String.join("\n",
+                                                                  pSourceCode)));
+  }
+
+  @Override
+  public ClearCLPeerPointer getProgramPeerPointer(ClearCLPeerPointer pContextPeerPointer,
+                                                  ClearCLPeerPointer pDevicePeerPointer,
+                                                  byte[] pBinary)
+  {
+    return new ClearCLPeerPointer(new PureJavaProgram(new String(pBinary,
+                                                                 StandardCharsets.UTF_8)));
+  }
+
+  @Override
+  public byte[] getProgramBinary(ClearCLPeerPointer pProgramPeerPointer)
+  {
+    // there is nothing to compile, the 'binary' is the source code itself:
+    return program(pProgramPeerPointer).getSourceCode()
+                                       .getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public boolean buildProgram(ClearCLPeerPointer pProgramPointer,
+                              String pOptions)
+  {
+    return BackendUtils.checkExceptions(() -> {
+      return program(pProgramPointer).build(pOptions);
+    });
+  }
+
+  @Override
+  public BuildStatus getBuildStatus(ClearCLPeerPointer pDevicePeerPointer,
+                                    ClearCLPeerPointer pProgramPeerPointer)
+  {
+    return program(pProgramPeerPointer).getBuildStatus();
+  }
+
+  @Override
+  public String getBuildLog(ClearCLPeerPointer pDevicePeerPointer,
+                            ClearCLPeerPointer pProgramPeerPointer)
+  {
+    return program(pProgramPeerPointer).getBuildLog();
+  }
+
+  @Override
+  public ClearCLPeerPointer getKernelPeerPointer(ClearCLPeerPointer pProgramPeerPointer,
+                                                 String pKernelName)
+  {
+    PureJavaProgram lProgram = program(pProgramPeerPointer);
+
+    int lNumberOfArguments = lProgram.getNumberOfArguments(pKernelName);
+    if (lNumberOfArguments < 0)
+      throw new ClearCLException("kernel not found in program: "
+                                 + pKernelName);
+
+    PureJavaKernelFunction lFunction =
+                                     PureJavaKernels.getKernelFunction(lProgram,
+                                                                       pKernelName);
+    if (lFunction == null)
+      throw new ClearCLUnsupportedException("no pure Java implementation for kernel: "
+                                            + pKernelName);
+
+    return new ClearCLPeerPointer(new PureJavaKernel(lProgram,
+                                                     pKernelName,
+                                                     lFunction,
+                                                     lNumberOfArguments));
+  }
+
+  @Override
+  public void setKernelArgument(ClearCLPeerPointer pKernelPeerPointer,
+                                int pIndex,
+                                Object pObject)
+  {
+    BackendUtils.checkExceptions(() -> {
+      PureJavaKernel lKernel = kernel(pKernelPeerPointer);
+
+      if (pObject instanceof ClearCLBuffer)
+        lKernel.setArgument(pIndex,
+                            ((ClearCLBuffer) pObject).getPeerPointer()
+                                                     .getPointer());
+      else if (pObject instanceof ClearCLImage)
+        lKernel.setArgument(pIndex,
+                            ((ClearCLImage) pObject).getPeerPointer()
+                                                    .getPointer());
+      else if (pObject instanceof ClearCLLocalMemory)
+        lKernel.setArgument(pIndex,
+                            ((ClearCLLocalMemory) pObject).getSizeInBytes());
+      else if (pObject instanceof Number
+               || pObject instanceof Character)
+      {
+        ByteBuffer lByteBuffer =
+                               ByteBuffer.allocate(16)
+                                         .order(ByteOrder.nativeOrder());
+        if (pObject instanceof Byte)
+          lByteBuffer.put(0, (Byte) pObject);
+        else if (pObject instanceof Character)
+          lByteBuffer.putChar(0, (Character) pObject);
+        else if (pObject instanceof Short)
+          lByteBuffer.putShort(0, (Short) pObject);
+        else if (pObject instanceof Integer)
+          lByteBuffer.putInt(0, (Integer) pObject);
+        else if (pObject instanceof Long)
+          lByteBuffer.putLong(0, (Long) pObject);
+        else if (pObject instanceof Float)
+          lByteBuffer.putFloat(0, (Float) pObject);
+        else if (pObject instanceof Double)
+          lByteBuffer.putDouble(0, (Double) pObject);
+        else
+          throw new ClearCLUnsupportedException("unsupported argument type: "
+                                                + pObject.getClass());
+        lKernel.setArgument(pIndex,
+                            lByteBuffer.getLong(0),
+                            lByteBuffer.getLong(8));
+      }
+      else
+        throw new ClearCLUnsupportedException("unsupported argument type: "
+                                              + pObject.getClass());
+    });
+  }
+
+  @Override
+  public void setKernelArgument(ClearCLPeerPointer pKernelPeerPointer,
+                                int pIndex,
+                                long pSizeInBytes,
+                                long pLowBits,
+                                long pHighBits)
+  {
+    kernel(pKernelPeerPointer).setArgument(pIndex,
+                                           pLowBits,
+                                           pHighBits);
+  }
+
+  @Override
+  public ClearCLPeerPointer enqueueKernelExecution(ClearCLPeerPointer pQueuePeerPointer,
+                                                   ClearCLPeerPointer pKernelPeerPointer,
+                                                   int pNumberOfDimensions,
+                                                   long[] pGlobalOffsets,
+                                                   long[] pGlobalSizes,
+                                                   long[] pLocalSizes,
+                                                   ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                   boolean pReturnEvent)
+  {
+    return execute(pReturnEvent, () -> {
+      PureJavaKernel lKernel = kernel(pKernelPeerPointer);
+      lKernel.setGlobalSizes(pNumberOfDimensions, pGlobalSizes);
+      lKernel.setLocalSizes(pNumberOfDimensions, pLocalSizes);
+
+      long[] lOffsets = new long[3];
+      for (int d = 0; pGlobalOffsets != null
+                      && d < pNumberOfDimensions; d++)
+        lOffsets[d] = pGlobalOffsets[d];
+
+      long lNumberOfWorkItems = lKernel.getGlobalSize(0)
+                                * lKernel.getGlobalSize(1)
+                                * lKernel.getGlobalSize(2);
+      long lGrain = Math.max(1,
+                             lNumberOfWorkItems
+                                / (8 * mForkJoinPool.getParallelism()));
+
+      mForkJoinPool.invoke(new WorkItemsAction(lKernel,
+                                               lOffsets,
+                                               0,
+                                               lNumberOfWorkItems,
+                                               lGrain));
+    });
+  }
+
+  /**
+   * Executes a range of linearized work items, splitting it recursively until
+   * it is small enough.
+   */
+  private static class WorkItemsAction extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final PureJavaKernel mKernel;
+    private final long[] mOffsets;
+    private final long mStart, mEnd, mGrain;
+
+    WorkItemsAction(PureJavaKernel pKernel,
+                    long[] pOffsets,
+                    long pStart,
+                    long pEnd,
+                    long pGrain)
+    {
+      mKernel = pKernel;
+      mOffsets = pOffsets;
+      mStart = pStart;
+      mEnd = pEnd;
+      mGrain = pGrain;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if (mEnd - mStart > mGrain)
+      {
+        long lMiddle = (mStart + mEnd) >>> 1;
+        invokeAll(new WorkItemsAction(mKernel,
+                                      mOffsets,
+                                      mStart,
+                                      lMiddle,
+                                      mGrain),
+                  new WorkItemsAction(mKernel,
+                                      mOffsets,
+                                      lMiddle,
+                                      mEnd,
+                                      mGrain));
+        return;
+      }
+
+      PureJavaKernelFunction lFunction = mKernel.getFunction();
+      long lWidth = mKernel.getGlobalSize(0);
+      long lHeight = mKernel.getGlobalSize(1);
+      for (long i = mStart; i < mEnd; i++)
+      {
+        long x = i % lWidth;
+        long y = (i / lWidth) % lHeight;
+        long z = i / (lWidth * lHeight);
+        lFunction.execute(mKernel,
+                          mOffsets[0] + x,
+                          mOffsets[1] + y,
+                          mOffsets[2] + z);
+      }
+    }
+  }
+
+  @Override
+  public ClearCLPeerPointer enqueueReadFromBuffer(ClearCLPeerPointer pQueuePeerPointer,
+                                                  ClearCLPeerPointer pBufferPeerPointer,
+                                                  boolean pBlockingRead,
+                                                  long pOffsetInBuffer,
+                                                  long pLengthInBuffer,
+                                                  ClearCLPeerPointer pHostMemPointer,
+                                                  ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                  boolean pReturnEvent)
+  {
+    return execute(pReturnEvent, () -> {
+      buffer(pBufferPeerPointer).getMemory()
+                                .copyRangeTo(pOffsetInBuffer,
+                                             memory(pHostMemPointer),
+                                             0,
+                                             pLengthInBuffer);
+    });
+  }
+
+  @Override
+  public ClearCLPeerPointer enqueueWriteToBuffer(ClearCLPeerPointer pQueuePeerPointer,
+                                                 ClearCLPeerPointer pBufferPeerPointer,
+                                                 boolean pBlockingWrite,
+                                                 long pOffsetInBuffer,
+                                                 long pLengthInBytes,
+                                                 ClearCLPeerPointer pHostMemPeerPointer,
+                                                 ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                 boolean pReturnEvent)
+  {
+    return execute(pReturnEvent, () -> {
+      memory(pHostMemPeerPointer).copyRangeTo(0,
+                                              buffer(pBufferPeerPointer).getMemory(),
+                                              pOffsetInBuffer,
+                                              pLengthInBytes);
+    });
+  }
+
+  @Override
+  public ClearCLPeerPointer enqueueReadFromBufferRegion(ClearCLPeerPointer pQueuePeerPointer,
+                                                        ClearCLPeerPointer pBufferPeerPointer,
+                                                        boolean pBlockingRead,
+                                                        long[] pBufferOrigin,
+                                                        long[] pHostOrigin,
+                                                        long[] pRegion,
+                                                        long pBufferRowPitch,
+                                                        long pBufferSlicePitch,
+                                                        long pHostRowPitch,
+                                                        long pHostSlicePitch,
+                                                        ClearCLPeerPointer pHostMemPeerPointer,
+                                                        ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                        boolean pReturnEvent)
+  {
+    return execute(pReturnEvent, () -> {
+      copyRegion(buffer(pBufferPeerPointer).getMemory(),
+                 pBufferOrigin,
+                 pBufferRowPitch,
+                 pBufferSlicePitch,
+                 memory(pHostMemPeerPointer),
+                 pHostOrigin,
+                 pHostRowPitch,
+                 pHostSlicePitch,
+                 pRegion);
+    });
+  }
+
+  @Override
+  public ClearCLPeerPointer enqueueWriteToBufferRegion(ClearCLPeerPointer pQueuePeerPointer,
+                                                       ClearCLPeerPointer pBufferPeerPointer,
+                                                       boolean pBlockingWrite,
+                                                       long[] pBufferOrigin,
+                                                       long[] pHostOrigin,
+                                                       long[] pRegion,
+                                                       long pBufferRowPitch,
+                                                       long pBufferSlicePitch,
+                                                       long pHostRowPitch,
+                                                       long pHostSlicePitch,
+                                                       ClearCLPeerPointer pHostMemPeerPointer,
+                                                       ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                       boolean pReturnEvent)
+  {
+    return execute(pReturnEvent, () -> {
+      copyRegion(memory(pHostMemPeerPointer),
+                 pHostOrigin,
+                 pHostRowPitch,
+                 pHostSlicePitch,
+                 buffer(pBufferPeerPointer).getMemory(),
+                 pBufferOrigin,
+                 pBufferRowPitch,
+                 pBufferSlicePitch,
+                 pRegion);
+    });
+  }
+
+  @Override
+  public ClearCLPeerPointer enqueueFillBuffer(ClearCLPeerPointer pQueuePeerPointer,
+                                              ClearCLPeerPointer pBufferPeerPointer,
+                                              boolean pBlockingFill,
+                                              long pOffsetInBytes,
+                                              long pLengthInBytes,
+                                              byte[] pPattern,
+                                              ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                              boolean pReturnEvent)
+  {
+    return execute(pReturnEvent, () -> {
+      ContiguousMemoryInterface lMemory =
+                                        buffer(pBufferPeerPointer).getMemory()
+                                                                  .subRegion(pOffsetInBytes,
+                                                                             pLengthInBytes);
+      long lPatternLength = Math.min(pPattern.length, pLengthInBytes);
+      for (int i = 0; i < lPatternLength; i++)
+        lMemory.setByte(i, pPattern[i]);
+
+      // doubles the filled region at each step:
+      for (long lFilled = lPatternLength; lFilled < pLengthInBytes; lFilled *= 2)
+        lMemory.copyRangeTo(0,
+                            lMemory,
+                            lFilled,
+                            Math.min(lFilled, pLengthInBytes - lFilled));
+    });
+  }
+
+  @Override
+  public ClearCLPeerPointer enqueueCopyBuffer(ClearCLPeerPointer pQueuePeerPointer,
+                                              ClearCLPeerPointer pSrcBufferPeerPointer,
+                                              ClearCLPeerPointer pDstBufferPeerPointer,
+                                              boolean pBlockingCopy,
+                                              long pSrcOffsetInBytes,
+                                              long pDstOffsetInBytes,
+                                              long pLengthToCopyInBytes,
+                                              ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                              boolean pReturnEvent)
+  {
+    return execute(pReturnEvent, () -> {
+      buffer(pSrcBufferPeerPointer).getMemory()
+                                   .copyRangeTo(pSrcOffsetInBytes,
+                                                buffer(pDstBufferPeerPointer).getMemory(),
+                                                pDstOffsetInBytes,
+                                                pLengthToCopyInBytes);
+    });
+  }
+
+  @Override
+  public ClearCLPeerPointer enqueueCopyBufferRegion(ClearCLPeerPointer pQueuePeerPointer,
+                                                    ClearCLPeerPointer pSrcBufferPeerPointer,
+                                                    ClearCLPeerPointer pDstBufferPeerPointer,
+                                                    boolean pBlockingCopy,
+                                                    long[] pSrcOrigin,
+                                                    long[] pDstOrigin,
+                                                    long[] pRegion,
+                                                    long pSrcRowPitch,
+                                                    long pSrcSlicePitch,
+                                                    long pDstRowPitch,
+                                                    long pDstSlicePitch,
+                                                    ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                    boolean pReturnEvent)
+  {
+    return execute(pReturnEvent, () -> {
+      copyRegion(buffer(pSrcBufferPeerPointer).getMemory(),
+                 pSrcOrigin,
+                 pSrcRowPitch,
+                 pSrcSlicePitch,
+                 buffer(pDstBufferPeerPointer).getMemory(),
+                 pDstOrigin,
+                 pDstRowPitch,
+                 pDstSlicePitch,
+                 pRegion);
+    });
+  }
+
+  @Override
+  public ClearCLPeerPointer enqueueCopyBufferToImage(ClearCLPeerPointer pQueuePeerPointer,
+                                                     ClearCLPeerPointer pSrcBufferPeerPointer,
+                                                     ClearCLPeerPointer pDstImagePeerPointer,
+                                                     boolean pBlockingCopy,
+                                                     long pSrcOffsetInBytes,
+                                                     long[] pDstOrigin,
+                                                     long[] pDstRegion,
+                                                     ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                     boolean pReturnEvent)
+  {
+    return execute(pReturnEvent, () -> {
+      PureJavaImage lImage = image(pDstImagePeerPointer);
+      copyImageRegion(buffer(pSrcBufferPeerPointer).getMemory(),
+                      pSrcOffsetInBytes,
+                      lImage,
+                      pDstOrigin,
+                      pDstRegion,
+                      true);
+    });
+  }
+
+  @Override
+  public ClearCLPeerPointer enqueueCopyImageToBuffer(ClearCLPeerPointer pQueuePeerPointer,
+                                                     ClearCLPeerPointer pSrcImagePeerPointer,
+                                                     ClearCLPeerPointer pDstBufferPeerPointer,
+                                                     boolean pBlockingCopy,
+                                                     long[] pSrcOrigin,
+                                                     long[] pSrcRegion,
+                                                     long pDstOffset,
+                                                     ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                     boolean pReturnEvent)
+  {
+    return execute(pReturnEvent, () -> {
+      copyImageRegion(buffer(pDstBufferPeerPointer).getMemory(),
+                      pDstOffset,
+                      image(pSrcImagePeerPointer),
+                      pSrcOrigin,
+                      pSrcRegion,
+                      false);
+    });
+  }
+
+  @Override
+  public ClearCLPeerPointer enqueueReadFromImage(ClearCLPeerPointer pQueuePeerPointer,
+                                                 ClearCLPeerPointer pImagePeerPointer,
+                                                 boolean pReadWrite,
+                                                 long[] pOrigin,
+                                                 long[] pRegion,
+                                                 ClearCLPeerPointer pHostMemPeerPointer,
+                                                 ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                 boolean pReturnEvent)
+  {
+    return execute(pReturnEvent, () -> {
+      copyImageRegion(memory(pHostMemPeerPointer),
+                      0,
+                      image(pImagePeerPointer),
+                      pOrigin,
+                      pRegion,
+                      false);
+    });
+  }
+
+  @Override
+  public ClearCLPeerPointer enqueueWriteToImage(ClearCLPeerPointer pQueuePeerPointer,
+                                                ClearCLPeerPointer pImagePeerPointer,
+                                                boolean pBlockingWrite,
+                                                long[] pOrigin,
+                                                long[] pRegion,
+                                                ClearCLPeerPointer pHostMemPeerPointer,
+                                                ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                                boolean pReturnEvent)
+  {
+    return execute(pReturnEvent, () -> {
+      copyImageRegion(memory(pHostMemPeerPointer),
+                      0,
+                      image(pImagePeerPointer),
+                      pOrigin,
+                      pRegion,
+                      true);
+    });
+  }
+
+  @Override
+  public ClearCLPeerPointer enqueueFillImage(ClearCLPeerPointer pQueuePeerPointer,
+                                             ClearCLPeerPointer pImagePeerPointer,
+                                             boolean pBlockingFill,
+                                             long[] pOrigin,
+                                             long[] pRegion,
+                                             byte[] pColor,
+                                             ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                             boolean pReturnEvent)
+  {
+    return execute(pReturnEvent, () -> {
+      PureJavaImage lImage = image(pImagePeerPointer);
+      long[] lOrigin = Region3.origin(pOrigin);
+      long[] lRegion = Region3.region(pRegion);
+      ByteBuffer lColorBuffer =
+                              ByteBuffer.wrap(pColor)
+                                        .order(ByteOrder.nativeOrder());
+
+      // the color is given as four floats for normalized and float images,
+      // and as four integers otherwise:
+      boolean lFloatColor = lImage.getChannelDataType().isNormalized()
+                            || lImage.getChannelDataType().isFloat();
+      boolean lZero = true;
+      float[] lColor = new float[4];
+      for (int c = 0; c < 4; c++)
+      {
+        int lBits = lColorBuffer.getInt(4 * c);
+        lColor[c] = lFloatColor ? Float.intBitsToFloat(lBits) : lBits;
+        lZero &= lColor[c] == 0;
+      }
+
+      if (lZero)
+        copyRegion(null,
+                   null,
+                   0,
+                   0,
+                   lImage.getMemory(),
+                   new long[]
+                   { lOrigin[0] * lImage.getPixelSizeInBytes(),
+                     lOrigin[1],
+                     lOrigin[2] },
+                   lImage.getRowPitch(),
+                   lImage.getSlicePitch(),
+                   new long[]
+                   { lRegion[0] * lImage.getPixelSizeInBytes(),
+                     lRegion[1],
+                     lRegion[2] });
+      else
+        lImage.fill(lOrigin, lRegion, lColor);
+    });
+  }
+
+  @Override
+  public ClearCLPeerPointer enqueueCopyImage(ClearCLPeerPointer pQueuePeerPointer,
+                                             ClearCLPeerPointer pSrcImagePeerPointer,
+                                             ClearCLPeerPointer pDstImagePeerPointer,
+                                             boolean pBlockingCopy,
+                                             long[] pSrcOrigin,
+                                             long[] pDstOrigin,
+                                             long[] pRegion,
+                                             ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                             boolean pReturnEvent)
+  {
+    return execute(pReturnEvent, () -> {
+      PureJavaImage lSrcImage = image(pSrcImagePeerPointer);
+      PureJavaImage lDstImage = image(pDstImagePeerPointer);
+      long lPixelSize = lSrcImage.getPixelSizeInBytes();
+      long[] lSrcOrigin = Region3.origin(pSrcOrigin);
+      long[] lDstOrigin = Region3.origin(pDstOrigin);
+      long[] lRegion = Region3.region(pRegion);
+      copyRegion(lSrcImage.getMemory(),
+                 new long[]
+                 { lSrcOrigin[0] * lPixelSize,
+                   lSrcOrigin[1],
+                   lSrcOrigin[2] },
+                 lSrcImage.getRowPitch(),
+                 lSrcImage.getSlicePitch(),
+                 lDstImage.getMemory(),
+                 new long[]
+                 { lDstOrigin[0] * lPixelSize,
+                   lDstOrigin[1],
+                   lDstOrigin[2] },
+                 lDstImage.getRowPitch(),
+                 lDstImage.getSlicePitch(),
+                 new long[]
+                 { lRegion[0] * lPixelSize, lRegion[1], lRegion[2] });
+    });
+  }
+
+  @Override
+  public ContiguousMemoryInterface enqueueMapBuffer(ClearCLPeerPointer pQueuePeerPointer,
+                                                    ClearCLPeerPointer pBufferPeerPointer,
+                                                    HostAccessType pMapAccessType,
+                                                    long pOffsetInBytes,
+                                                    long pLengthInBytes,
+                                                    ClearCLPeerPointer[] pWaitEventPeerPointers)
+  {
+    // buffers already live in host memory, mapping hands out a view:
+    return BackendUtils.checkExceptions(() -> {
+      return buffer(pBufferPeerPointer).getMemory()
+                                       .subRegion(pOffsetInBytes,
+                                                  pLengthInBytes);
+    });
+  }
+
+  @Override
+  public ContiguousMemoryInterface enqueueMapImage(ClearCLPeerPointer pQueuePeerPointer,
+                                                   ClearCLPeerPointer pImagePeerPointer,
+                                                   HostAccessType pMapAccessType,
+                                                   long[] pOrigin,
+                                                   long[] pRegion,
+                                                   long pPixelSizeInBytes,
+                                                   long[] pPitchesInBytes,
+                                                   ClearCLPeerPointer[] pWaitEventPeerPointers)
+  {
+    return BackendUtils.checkExceptions(() -> {
+      PureJavaImage lImage = image(pImagePeerPointer);
+      pPitchesInBytes[0] = lImage.getRowPitch();
+      pPitchesInBytes[1] = lImage.getSlicePitch();
+
+      return lImage.getMemory()
+                   .subRegion(lImage.getOffset(Region3.origin(pOrigin)),
+                              BackendUtils.getMappedImageSizeInBytes(Region3.region(pRegion),
+                                                                     lImage.getRowPitch(),
+                                                                     lImage.getSlicePitch(),
+                                                                     pPixelSizeInBytes));
+    });
+  }
+
+  @Override
+  public ClearCLPeerPointer enqueueUnmap(ClearCLPeerPointer pQueuePeerPointer,
+                                         ClearCLPeerPointer pMemPeerPointer,
+                                         ContiguousMemoryInterface pMappedMemory,
+                                         boolean pBlockingUnmap,
+                                         ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                         boolean pReturnEvent)
+  {
+    return execute(pReturnEvent, () -> {
+    });
+  }
+
+  @Override
+  public ClearCLPeerPointer enqueueBarrier(ClearCLPeerPointer pQueuePeerPointer,
+                                           ClearCLPeerPointer[] pWaitEventPeerPointers,
+                                           boolean pReturnEvent)
+  {
+    return execute(pReturnEvent, () -> {
+    });
+  }
+
+  @Override
+  public void releaseBuffer(ClearCLPeerPointer pPeerPointer)
+  {
+    buffer(pPeerPointer).free();
+  }
+
+  @Override
+  public void releaseContext(ClearCLPeerPointer pPeerPointer)
+  {
+  }
+
+  @Override
+  public void releaseDevice(ClearCLPeerPointer pPeerPointer)
+  {
+  }
+
+  @Override
+  public void releaseImage(ClearCLPeerPointer pPeerPointer)
+  {
+    image(pPeerPointer).free();
+  }
+
+  @Override
+  public void releaseKernel(ClearCLPeerPointer pPeerPointer)
+  {
+  }
+
+  @Override
+  public void releaseProgram(ClearCLPeerPointer pPeerPointer)
+  {
+  }
+
+  @Override
+  public void releaseQueue(ClearCLPeerPointer pPeerPointer)
+  {
+  }
+
+  @Override
+  public ClearCLPeerPointer wrap(Buffer pBuffer)
+  {
+    return BackendUtils.checkExceptions(() -> {
+      return new ClearCLPeerPointer(OffHeapMemory.wrapBuffer(pBuffer));
+    });
+  }
+
+  @Override
+  public ClearCLPeerPointer wrap(ContiguousMemoryInterface pContiguousMemory)
+  {
+    return new ClearCLPeerPointer(pContiguousMemory);
+  }
+
+  @Override
+  public ClearCLPeerPointer wrap(FragmentedMemoryInterface pFragmentedMemory)
+  {
+    throw new ClearCLUnsupportedException("fragmented buffers not supported.");
+  }
+
+  @Override
+  public void waitQueueToFinish(ClearCLPeerPointer pQueuePeerPointer)
+  {
+    // commands are executed when enqueued.
+  }
+
+  @Override
+  public void waitForEvents(ClearCLPeerPointer... pEventPeerPointers)
+  {
+    // events are always complete.
+  }
+
+  @Override
+  public EventStatus getEventStatus(ClearCLPeerPointer pEventPeerPointer)
+  {
+    return EventStatus.Complete;
+  }
+
+  @Override
+  public void releaseEvent(ClearCLPeerPointer pPeerPointer)
+  {
+  }
+
+  @Override
+  public void retainEvent(ClearCLPeerPointer pPeerPointer)
+  {
+  }
+
+  @Override
+  public long[] getEventProfilingInfo(ClearCLPeerPointer pEventPeerPointer)
+  {
+    return ((PureJavaEvent) pEventPeerPointer.getPointer()).getTimestamps();
+  }
+
+  @Override
+  public void setEventCallback(ClearCLPeerPointer pEventPeerPointer,
+                               IntConsumer pCallback)
+  {
+    // the event is complete, CL_COMPLETE is 0:
+    pCallback.accept(0);
+  }
+
+  @Override
+  public void flushQueue(ClearCLPeerPointer pQueuePeerPointer)
+  {
+  }
+
+  private ClearCLPeerPointer execute(boolean pReturnEvent,
+                                     Runnable pCommand)
+  {
+    return BackendUtils.checkExceptions(() -> {
+      long lStartNanos = System.nanoTime();
+      pCommand.run();
+      long lEndNanos = System.nanoTime();
+      return pReturnEvent ? new ClearCLPeerPointer(new PureJavaEvent(lStartNanos,
+                                                                     lStartNanos,
+                                                                     lEndNanos))
+                          : null;
+    });
+  }
+
+  /**
+   * Copies a 3D region between two memory regions with given pitches. Origins
+   * and row length are in bytes, zero pitches default to tightly packed rows
+   * and slices. A null source fills the destination region with zeros.
+   */
+  private static void copyRegion(ContiguousMemoryInterface pSrc,
+                                 long[] pSrcOrigin,
+                                 long pSrcRowPitch,
+                                 long pSrcSlicePitch,
+                                 ContiguousMemoryInterface pDst,
+                                 long[] pDstOrigin,
+                                 long pDstRowPitch,
+                                 long pDstSlicePitch,
+                                 long[] pRegion)
+  {
+    long[] lRegion = Region3.region(pRegion);
+
+    long lRowLength = lRegion[0];
+    long lSrcRowPitch = pSrcRowPitch == 0 ? lRowLength : pSrcRowPitch;
+    long lSrcSlicePitch = pSrcSlicePitch == 0 ? lSrcRowPitch * lRegion[1]
+                                              : pSrcSlicePitch;
+    long lDstRowPitch = pDstRowPitch == 0 ? lRowLength : pDstRowPitch;
+    long lDstSlicePitch = pDstSlicePitch == 0 ? lDstRowPitch * lRegion[1]
+                                              : pDstSlicePitch;
+
+    long lSrcOffset = pSrc == null ? 0
+                                   : getOffset(pSrcOrigin,
+                                               lSrcRowPitch,
+                                               lSrcSlicePitch);
+    long lDstOffset = getOffset(pDstOrigin, lDstRowPitch, lDstSlicePitch);
+
+    for (long z = 0; z < lRegion[2]; z++)
+      for (long y = 0; y < lRegion[1]; y++)
+      {
+        long lDstRowOffset = lDstOffset + y * lDstRowPitch
+                             + z * lDstSlicePitch;
+        if (pSrc == null)
+          pDst.subRegion(lDstRowOffset, lRowLength).fillBytes((byte) 0);
+        else
+          pSrc.copyRangeTo(lSrcOffset + y * lSrcRowPitch
+                           + z * lSrcSlicePitch,
+                           pDst,
+                           lDstRowOffset,
+                           lRowLength);
+      }
+  }
+
+  private static long getOffset(long[] pOrigin,
+                                long pRowPitch,
+                                long pSlicePitch)
+  {
+    long[] lOrigin = Region3.origin(pOrigin);
+    return lOrigin[0] + lOrigin[1] * pRowPitch + lOrigin[2] * pSlicePitch;
+  }
+
+  /**
+   * Copies a region of an image from or to a tightly packed memory region.
+   */
+  private static void copyImageRegion(ContiguousMemoryInterface pMemory,
+                                      long pOffsetInBytes,
+                                      PureJavaImage pImage,
+                                      long[] pOrigin,
+                                      long[] pRegion,
+                                      boolean pToImage)
+  {
+    long[] lOrigin = Region3.origin(pOrigin);
+    long[] lRegion = Region3.region(pRegion).clone();
+    long lPixelSize = pImage.getPixelSizeInBytes();
+
+    long[] lPackedOrigin = new long[]
+    { pOffsetInBytes, 0, 0 };
+    long[] lImageOrigin = new long[]
+    { lOrigin[0] * lPixelSize, lOrigin[1], lOrigin[2] };
+    lRegion[0] *= lPixelSize;
+
+    if (pToImage)
+      copyRegion(pMemory,
+                 lPackedOrigin,
+                 lRegion[0],
+                 lRegion[0] * lRegion[1],
+                 pImage.getMemory(),
+                 lImageOrigin,
+                 pImage.getRowPitch(),
+                 pImage.getSlicePitch(),
+                 lRegion);
+    else
+      copyRegion(pImage.getMemory(),
+                 lImageOrigin,
+                 pImage.getRowPitch(),
+                 pImage.getSlicePitch(),
+                 pMemory,
+                 lPackedOrigin,
+                 lRegion[0],
+                 lRegion[0] * lRegion[1],
+                 lRegion);
+  }
+
+  private static PureJavaBuffer buffer(ClearCLPeerPointer pPeerPointer)
+  {
+    return (PureJavaBuffer) pPeerPointer.getPointer();
+  }
+
+  private static PureJavaImage image(ClearCLPeerPointer pPeerPointer)
+  {
+    return (PureJavaImage) pPeerPointer.getPointer();
+  }
+
+  private static PureJavaProgram program(ClearCLPeerPointer pPeerPointer)
+  {
+    return (PureJavaProgram) pPeerPointer.getPointer();
+  }
+
+  private static PureJavaKernel kernel(ClearCLPeerPointer pPeerPointer)
+  {
+    return (PureJavaKernel) pPeerPointer.getPointer();
+  }
+
+  private static ContiguousMemoryInterface memory(ClearCLPeerPointer pPeerPointer)
+  {
+    return (ContiguousMemoryInterface) pPeerPointer.getPointer();
+  }
+
+}
@@ -0,0 +1,72 @@
+package clearcl.backend.purejava;
+
+import coremem.ContiguousMemoryInterface;
+import coremem.offheap.OffHeapMemory;
+
+/**
+ * Buffer peer object for the pure Java backend. Buffers are plain off-heap
+ * memory regions; sub-buffers are views on the memory of their parent and do
+ * not own it.
+ *
+ * @author royer
+ */
+public class PureJavaBuffer
+{
+  private final ContiguousMemoryInterface mMemory;
+  private final boolean mOwnsMemory;
+
+  /**
+   * Allocates a buffer of given size in bytes.
+   *
+   * @param pSizeInBytes
+   *          size in bytes
+   */
+  public PureJavaBuffer(long pSizeInBytes)
+  {
+    mMemory = OffHeapMemory.allocateBytes("PureJavaBuffer",
+                                          pSizeInBytes);
+    mOwnsMemory = true;
+  }
+
+  private PureJavaBuffer(ContiguousMemoryInterface pMemory)
+  {
+    mMemory = pMemory;
+    mOwnsMemory = false;
+  }
+
+  /**
+   * Returns a sub-buffer for a given region of this buffer.
+   *
+   * @param pOffsetInBytes
+   *          offset in bytes
+   * @param pSizeInBytes
+   *          size in bytes
+   * @return sub-buffer
+   */
+  public PureJavaBuffer subBuffer(long pOffsetInBytes, long pSizeInBytes)
+  {
+    return new PureJavaBuffer(mMemory.subRegion(pOffsetInBytes,
+                                                pSizeInBytes));
+  }
+
+  /**
+   * Returns buffer memory
+   *
+   * @return buffer memory
+   */
+  public ContiguousMemoryInterface getMemory()
+  {
+    return mMemory;
+  }
+
+  /**
+   * Frees the buffer memory, sub-buffers leave the memory of their parent
+   * untouched.
+   */
+  public void free()
+  {
+    if (mOwnsMemory)
+      mMemory.free();
+  }
+
+}
@@ -0,0 +1,41 @@
+package clearcl.backend.purejava;
+
+/**
+ * Event peer object for the pure Java backend. Commands execute when they are
+ * enqueued, so events are always complete and only carry profiling
+ * timestamps.
+ *
+ * @author royer
+ */
+public class PureJavaEvent
+{
+  private final long[] mTimestamps;
+
+  /**
+   * Instantiates an event for a command that was queued, started and ended at
+   * the given times.
+   *
+   * @param pQueuedNanos
+   *          queued time stamp in nanoseconds
+   * @param pStartNanos
+   *          start time stamp in nanoseconds
+   * @param pEndNanos
+   *          end time stamp in nanoseconds
+   */
+  public PureJavaEvent(long pQueuedNanos, long pStartNanos, long pEndNanos)
+  {
+    mTimestamps = new long[]
+    { pQueuedNanos, pQueuedNanos, pStartNanos, pEndNanos };
+  }
+
+  /**
+   * Returns the queued, submitted, start and end time stamps in nanoseconds.
+   *
+   * @return time stamps
+   */
+  public long[] getTimestamps()
+  {
+    return mTimestamps.clone();
+  }
+
+}
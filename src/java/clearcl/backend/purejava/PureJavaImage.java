@@ -0,0 +1,395 @@
+package clearcl.backend.purejava;
+
+import clearcl.enums.ImageChannelDataType;
+import clearcl.enums.ImageChannelOrder;
+import clearcl.exceptions.ClearCLUnsupportedException;
+import coremem.ContiguousMemoryInterface;
+import coremem.enums.NativeTypeEnum;
+import coremem.offheap.OffHeapMemory;
+import coremem.util.Size;
+
+/**
+ * Image peer object for the pure Java backend. Pixels are stored contiguously
+ * off-heap, channels interleaved, x fastest, then y, then z. Values are read
+ * and written as floats following OpenCL's read_image/write_image semantics:
+ * normalized types are mapped to [0,1] or [-1,1], others are converted as is.
+ *
+ * @author royer
+ */
+public class PureJavaImage
+{
+  private final ImageChannelOrder mChannelOrder;
+  private final ImageChannelDataType mChannelDataType;
+  private final NativeTypeEnum mNativeType;
+  private final long mWidth, mHeight, mDepth;
+  private final long mNumberOfChannels;
+  private final long mChannelSizeInBytes;
+  private final long mPixelSizeInBytes;
+  private final OffHeapMemory mMemory;
+
+  /**
+   * Allocates an image of given channel order, data type and dimensions.
+   *
+   * @param pChannelOrder
+   *          channel order
+   * @param pChannelDataType
+   *          channel data type
+   * @param pDimensions
+   *          dimensions (width, height, depth)
+   */
+  public PureJavaImage(ImageChannelOrder pChannelOrder,
+                       ImageChannelDataType pChannelDataType,
+                       long... pDimensions)
+  {
+    if (pChannelDataType == ImageChannelDataType.HalfFloat)
+      throw new ClearCLUnsupportedException("half float images not supported by the pure Java backend");
+
+    mChannelOrder = pChannelOrder;
+    mChannelDataType = pChannelDataType;
+    mNativeType = pChannelDataType.getNativeType();
+    mWidth = pDimensions.length > 0 ? pDimensions[0] : 1;
+    mHeight = pDimensions.length > 1 ? pDimensions[1] : 1;
+    mDepth = pDimensions.length > 2 ? pDimensions[2] : 1;
+    mNumberOfChannels = pChannelOrder.getNumberOfChannels();
+    mChannelSizeInBytes = Size.of(mNativeType);
+    mPixelSizeInBytes = mNumberOfChannels * mChannelSizeInBytes;
+    mMemory = OffHeapMemory.allocateBytes("PureJavaImage",
+                                          mPixelSizeInBytes * mWidth
+                                                             * mHeight
+                                                             * mDepth);
+  }
+
+  /**
+   * Returns image memory
+   *
+   * @return image memory
+   */
+  public ContiguousMemoryInterface getMemory()
+  {
+    return mMemory;
+  }
+
+  /**
+   * Returns channel order
+   *
+   * @return channel order
+   */
+  public ImageChannelOrder getChannelOrder()
+  {
+    return mChannelOrder;
+  }
+
+  /**
+   * Returns channel data type
+   *
+   * @return channel data type
+   */
+  public ImageChannelDataType getChannelDataType()
+  {
+    return mChannelDataType;
+  }
+
+  /**
+   * Returns width
+   *
+   * @return width
+   */
+  public long getWidth()
+  {
+    return mWidth;
+  }
+
+  /**
+   * Returns height
+   *
+   * @return height
+   */
+  public long getHeight()
+  {
+    return mHeight;
+  }
+
+  /**
+   * Returns depth
+   *
+   * @return depth
+   */
+  public long getDepth()
+  {
+    return mDepth;
+  }
+
+  /**
+   * Returns the number of channels
+   *
+   * @return number of channels
+   */
+  public long getNumberOfChannels()
+  {
+    return mNumberOfChannels;
+  }
+
+  /**
+   * Returns pixel size in bytes
+   *
+   * @return pixel size in bytes
+   */
+  public long getPixelSizeInBytes()
+  {
+    return mPixelSizeInBytes;
+  }
+
+  /**
+   * Returns row pitch in bytes
+   *
+   * @return row pitch in bytes
+   */
+  public long getRowPitch()
+  {
+    return mPixelSizeInBytes * mWidth;
+  }
+
+  /**
+   * Returns slice pitch in bytes
+   *
+   * @return slice pitch in bytes
+   */
+  public long getSlicePitch()
+  {
+    return mPixelSizeInBytes * mWidth * mHeight;
+  }
+
+  /**
+   * Returns the offset in bytes of a pixel
+   *
+   * @param pOrigin
+   *          pixel coordinates (x,y,z)
+   * @return offset in bytes
+   */
+  public long getOffset(long[] pOrigin)
+  {
+    return pOrigin[0] * mPixelSizeInBytes
+           + pOrigin[1] * getRowPitch()
+           + pOrigin[2] * getSlicePitch();
+  }
+
+  /**
+   * Reads the value of a given channel at a given pixel.
+   *
+   * @param pX
+   *          x coordinate
+   * @param pY
+   *          y coordinate
+   * @param pZ
+   *          z coordinate
+   * @param pChannel
+   *          channel
+   * @return value
+   */
+  public float getFloat(long pX, long pY, long pZ, int pChannel)
+  {
+    long lOffset = ((pZ * mHeight + pY) * mWidth + pX)
+                   * mPixelSizeInBytes
+                   + pChannel * mChannelSizeInBytes;
+    return getFloat(lOffset);
+  }
+
+  /**
+   * Writes the value of a given channel at a given pixel.
+   *
+   * @param pX
+   *          x coordinate
+   * @param pY
+   *          y coordinate
+   * @param pZ
+   *          z coordinate
+   * @param pChannel
+   *          channel
+   * @param pValue
+   *          value
+   */
+  public void setFloat(long pX,
+                       long pY,
+                       long pZ,
+                       int pChannel,
+                       float pValue)
+  {
+    long lOffset = ((pZ * mHeight + pY) * mWidth + pX)
+                   * mPixelSizeInBytes
+                   + pChannel * mChannelSizeInBytes;
+    setFloat(lOffset, pValue);
+  }
+
+  /**
+   * Samples the first channel of this image with normalized coordinates,
+   * linear interpolation and clamp-to-edge addressing.
+   *
+   * @param pU
+   *          normalized x coordinate
+   * @param pV
+   *          normalized y coordinate
+   * @param pW
+   *          normalized z coordinate
+   * @return interpolated value
+   */
+  public float sampleLinear(float pU, float pV, float pW)
+  {
+    float lX = pU * mWidth - 0.5f;
+    float lY = pV * mHeight - 0.5f;
+    float lZ = pW * mDepth - 0.5f;
+
+    long lX0 = (long) Math.floor(lX);
+    long lY0 = (long) Math.floor(lY);
+    long lZ0 = (long) Math.floor(lZ);
+
+    float lA = lX - lX0;
+    float lB = lY - lY0;
+    float lC = lZ - lZ0;
+
+    long lX1 = clamp(lX0 + 1, mWidth);
+    long lY1 = clamp(lY0 + 1, mHeight);
+    long lZ1 = clamp(lZ0 + 1, mDepth);
+    lX0 = clamp(lX0, mWidth);
+    lY0 = clamp(lY0, mHeight);
+    lZ0 = clamp(lZ0, mDepth);
+
+    float lV000 = getFloat(lX0, lY0, lZ0, 0);
+    float lV100 = getFloat(lX1, lY0, lZ0, 0);
+    float lV010 = getFloat(lX0, lY1, lZ0, 0);
+    float lV110 = getFloat(lX1, lY1, lZ0, 0);
+    float lV001 = getFloat(lX0, lY0, lZ1, 0);
+    float lV101 = getFloat(lX1, lY0, lZ1, 0);
+    float lV011 = getFloat(lX0, lY1, lZ1, 0);
+    float lV111 = getFloat(lX1, lY1, lZ1, 0);
+
+    float lV00 = lV000 + lA * (lV100 - lV000);
+    float lV10 = lV010 + lA * (lV110 - lV010);
+    float lV01 = lV001 + lA * (lV101 - lV001);
+    float lV11 = lV011 + lA * (lV111 - lV011);
+
+    float lV0 = lV00 + lB * (lV10 - lV00);
+    float lV1 = lV01 + lB * (lV11 - lV01);
+
+    return lV0 + lC * (lV1 - lV0);
+  }
+
+  private static long clamp(long pIndex, long pLength)
+  {
+    return Math.max(0, Math.min(pLength - 1, pIndex));
+  }
+
+  private float getFloat(long pOffset)
+  {
+    switch (mChannelDataType)
+    {
+    case SignedNormalizedInt8:
+      return Math.max(-1f, mMemory.getByte(pOffset) / 127f);
+    case SignedNormalizedInt16:
+      return Math.max(-1f, mMemory.getShort(pOffset) / 32767f);
+    case UnsignedNormalizedInt8:
+      return (mMemory.getByte(pOffset) & 0xFF) / 255f;
+    case UnsignedNormalizedInt16:
+      return (mMemory.getShort(pOffset) & 0xFFFF) / 65535f;
+    case SignedInt8:
+      return mMemory.getByte(pOffset);
+    case SignedInt16:
+      return mMemory.getShort(pOffset);
+    case SignedInt32:
+      return mMemory.getInt(pOffset);
+    case UnsignedInt8:
+      return mMemory.getByte(pOffset) & 0xFF;
+    case UnsignedInt16:
+      return mMemory.getShort(pOffset) & 0xFFFF;
+    case UnsignedInt32:
+      return mMemory.getInt(pOffset) & 0xFFFFFFFFL;
+    case Float:
+      return mMemory.getFloat(pOffset);
+    default:
+      throw new ClearCLUnsupportedException("unsupported image data type: "
+                                            + mChannelDataType);
+    }
+  }
+
+  private void setFloat(long pOffset, float pValue)
+  {
+    switch (mChannelDataType)
+    {
+    case SignedNormalizedInt8:
+      mMemory.setByte(pOffset, (byte) saturate(127f * pValue,
+                                               -127,
+                                               127));
+      break;
+    case SignedNormalizedInt16:
+      mMemory.setShort(pOffset, (short) saturate(32767f * pValue,
+                                                 -32767,
+                                                 32767));
+      break;
+    case UnsignedNormalizedInt8:
+      mMemory.setByte(pOffset, (byte) saturate(255f * pValue, 0, 255));
+      break;
+    case UnsignedNormalizedInt16:
+      mMemory.setShort(pOffset,
+                       (short) saturate(65535f * pValue, 0, 65535));
+      break;
+    case SignedInt8:
+      mMemory.setByte(pOffset, (byte) pValue);
+      break;
+    case SignedInt16:
+      mMemory.setShort(pOffset, (short) pValue);
+      break;
+    case SignedInt32:
+      mMemory.setInt(pOffset, (int) pValue);
+      break;
+    case UnsignedInt8:
+      mMemory.setByte(pOffset, (byte) (long) pValue);
+      break;
+    case UnsignedInt16:
+      mMemory.setShort(pOffset, (short) (long) pValue);
+      break;
+    case UnsignedInt32:
+      mMemory.setInt(pOffset, (int) (long) pValue);
+      break;
+    case Float:
+      mMemory.setFloat(pOffset, pValue);
+      break;
+    default:
+      throw new ClearCLUnsupportedException("unsupported image data type: "
+                                            + mChannelDataType);
+    }
+  }
+
+  private static long saturate(float pValue, long pMin, long pMax)
+  {
+    return Math.max(pMin, Math.min(pMax, Math.round(pValue)));
+  }
+
+  /**
+   * Fills a region of this image with a given color. The color is given as
+   * four floats for normalized and float images, and as four integers
+   * otherwise.
+   *
+   * @param pOrigin
+   *          region origin
+   * @param pRegion
+   *          region dimensions
+   * @param pColor
+   *          four channel color
+   */
+  public void fill(long[] pOrigin, long[] pRegion, float[] pColor)
+  {
+    for (long z = pOrigin[2]; z < pOrigin[2] + pRegion[2]; z++)
+      for (long y = pOrigin[1]; y < pOrigin[1] + pRegion[1]; y++)
+        for (long x = pOrigin[0]; x < pOrigin[0] + pRegion[0]; x++)
+          for (int c = 0; c < mNumberOfChannels; c++)
+            setFloat(x, y, z, c, pColor[c]);
+  }
+
+  /**
+   * Frees the image memory.
+   */
+  public void free()
+  {
+    mMemory.free();
+  }
+
+}
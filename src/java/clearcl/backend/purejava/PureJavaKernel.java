@@ -0,0 +1,238 @@
+package clearcl.backend.purejava;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import clearcl.exceptions.ClearCLIllegalArgumentException;
+import coremem.ContiguousMemoryInterface;
+
+/**
+ * Kernel peer object for the pure Java backend. Holds the kernel arguments and
+ * the global sizes of the current execution, and the Java function that
+ * executes a single work item.
+ *
+ * @author royer
+ */
+public class PureJavaKernel
+{
+  private final PureJavaProgram mProgram;
+  private final String mName;
+  private final PureJavaKernelFunction mFunction;
+  private final Object[] mArguments;
+  private final long[] mGlobalSizes = new long[]
+  { 1, 1, 1 };
+  private final long[] mLocalSizes = new long[]
+  { 1, 1, 1 };
+
+  /**
+   * Instantiates a kernel for a given program, name and Java function.
+   *
+   * @param pProgram
+   *          program
+   * @param pName
+   *          kernel name
+   * @param pFunction
+   *          work item function
+   * @param pNumberOfArguments
+   *          number of arguments
+   */
+  public PureJavaKernel(PureJavaProgram pProgram,
+                        String pName,
+                        PureJavaKernelFunction pFunction,
+                        int pNumberOfArguments)
+  {
+    mProgram = pProgram;
+    mName = pName;
+    mFunction = pFunction;
+    mArguments = new Object[pNumberOfArguments];
+  }
+
+  /**
+   * Returns the program of this kernel
+   *
+   * @return program
+   */
+  public PureJavaProgram getProgram()
+  {
+    return mProgram;
+  }
+
+  /**
+   * Returns kernel name
+   *
+   * @return kernel name
+   */
+  public String getName()
+  {
+    return mName;
+  }
+
+  /**
+   * Returns the work item function
+   *
+   * @return work item function
+   */
+  public PureJavaKernelFunction getFunction()
+  {
+    return mFunction;
+  }
+
+  /**
+   * Sets a memory object (buffer, image, local memory size) argument.
+   *
+   * @param pIndex
+   *          argument index
+   * @param pObject
+   *          argument
+   */
+  public void setArgument(int pIndex, Object pObject)
+  {
+    checkIndex(pIndex);
+    mArguments[pIndex] = pObject;
+  }
+
+  /**
+   * Sets a primitive scalar or vector argument given as raw bits.
+   *
+   * @param pIndex
+   *          argument index
+   * @param pLowBits
+   *          first 8 bytes
+   * @param pHighBits
+   *          next 8 bytes
+   */
+  public void setArgument(int pIndex, long pLowBits, long pHighBits)
+  {
+    checkIndex(pIndex);
+    ByteBuffer lByteBuffer =
+                           ByteBuffer.allocate(16)
+                                     .order(ByteOrder.nativeOrder());
+    lByteBuffer.putLong(0, pLowBits);
+    lByteBuffer.putLong(8, pHighBits);
+    mArguments[pIndex] = lByteBuffer;
+  }
+
+  private void checkIndex(int pIndex)
+  {
+    if (pIndex < 0 || pIndex >= mArguments.length)
+      throw new ClearCLIllegalArgumentException(String.format("invalid argument index %d for kernel '%s' with %d arguments",
+                                                              pIndex,
+                                                              mName,
+                                                              mArguments.length));
+  }
+
+  /**
+   * Returns the memory of a buffer argument
+   *
+   * @param pIndex
+   *          argument index
+   * @return buffer memory
+   */
+  public ContiguousMemoryInterface getBuffer(int pIndex)
+  {
+    return ((PureJavaBuffer) mArguments[pIndex]).getMemory();
+  }
+
+  /**
+   * Returns an image argument
+   *
+   * @param pIndex
+   *          argument index
+   * @return image
+   */
+  public PureJavaImage getImage(int pIndex)
+  {
+    return (PureJavaImage) mArguments[pIndex];
+  }
+
+  /**
+   * Returns an int argument
+   *
+   * @param pIndex
+   *          argument index
+   * @return int value
+   */
+  public int getInt(int pIndex)
+  {
+    return ((ByteBuffer) mArguments[pIndex]).getInt(0);
+  }
+
+  /**
+   * Returns a long argument
+   *
+   * @param pIndex
+   *          argument index
+   * @return long value
+   */
+  public long getLong(int pIndex)
+  {
+    return ((ByteBuffer) mArguments[pIndex]).getLong(0);
+  }
+
+  /**
+   * Returns a float argument
+   *
+   * @param pIndex
+   *          argument index
+   * @return float value
+   */
+  public float getFloat(int pIndex)
+  {
+    return ((ByteBuffer) mArguments[pIndex]).getFloat(0);
+  }
+
+  /**
+   * Sets the global sizes of the current execution
+   *
+   * @param pNumberOfDimensions
+   *          number of dimensions
+   * @param pGlobalSizes
+   *          global sizes
+   */
+  public void setGlobalSizes(int pNumberOfDimensions, long[] pGlobalSizes)
+  {
+    for (int d = 0; d < mGlobalSizes.length; d++)
+      mGlobalSizes[d] = d < pNumberOfDimensions ? pGlobalSizes[d] : 1;
+  }
+
+  /**
+   * Returns the global size along a given dimension
+   *
+   * @param pDimension
+   *          dimension
+   * @return global size
+   */
+  public long getGlobalSize(int pDimension)
+  {
+    return mGlobalSizes[pDimension];
+  }
+
+  /**
+   * Sets the local sizes of the current execution, local sizes default to one
+   * when not given.
+   *
+   * @param pNumberOfDimensions
+   *          number of dimensions
+   * @param pLocalSizes
+   *          local sizes, or null
+   */
+  public void setLocalSizes(int pNumberOfDimensions, long[] pLocalSizes)
+  {
+    for (int d = 0; d < mLocalSizes.length; d++)
+      mLocalSizes[d] = pLocalSizes != null
+                       && d < pNumberOfDimensions ? pLocalSizes[d] : 1;
+  }
+
+  /**
+   * Returns the local size along a given dimension
+   *
+   * @param pDimension
+   *          dimension
+   * @return local size
+   */
+  public long getLocalSize(int pDimension)
+  {
+    return mLocalSizes[pDimension];
+  }
+
+}
@@ -0,0 +1,24 @@
+package clearcl.backend.purejava;
+
+/**
+ * Java implementation of an OpenCL kernel, executed once per work item.
+ *
+ * @author royer
+ */
+@FunctionalInterface
+public interface PureJavaKernelFunction
+{
+  /**
+   * Executes a single work item.
+   *
+   * @param pKernel
+   *          kernel holding arguments and global sizes
+   * @param pX
+   *          global id along x
+   * @param pY
+   *          global id along y
+   * @param pZ
+   *          global id along z
+   */
+  void execute(PureJavaKernel pKernel, long pX, long pY, long pZ);
+}
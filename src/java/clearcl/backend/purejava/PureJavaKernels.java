@@ -0,0 +1,934 @@
+package clearcl.backend.purejava;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import clearcl.benchmark.Benchmark;
+import clearcl.ocllib.OCLlib;
+import clearcl.util.StringUtils;
+import coremem.ContiguousMemoryInterface;
+
+/**
+ * Java implementations of the library's own OpenCL kernels. Each kernel is
+ * written as a function of a single work item that follows the OpenCL source
+ * it replaces, so that results match those of an OpenCL device up to floating
+ * point rounding. Kernels without a Java counterpart cannot be run on the pure
+ * Java backend. Kernels are matched by name only within the library sources
+ * they were ported from, so that user kernels of the same name are never
+ * silently replaced.
+ *
+ * @author royer
+ */
+public class PureJavaKernels
+{
+  /**
+   * OpenCL source with Java implementations for (some of) its kernels. Include
+   * lines are replaced by the included source when programs are assembled, so
+   * the source is kept as the fragments found between include lines.
+   */
+  private static final class PortedSource
+  {
+    final String[] mFragments;
+    final Set<String> mKernelNames;
+
+    PortedSource(String pSourceCode, String... pKernelNames)
+    {
+      mFragments = pSourceCode.split("#include[^\\n]*");
+      mKernelNames = new HashSet<>(Arrays.asList(pKernelNames));
+    }
+
+    boolean isContainedIn(String pSourceCode)
+    {
+      int lIndex = 0;
+      for (String lFragment : mFragments)
+      {
+        lIndex = pSourceCode.indexOf(lFragment, lIndex);
+        if (lIndex < 0)
+          return false;
+        lIndex += lFragment.length();
+      }
+      return true;
+    }
+  }
+
+  private static final List<PortedSource> cPortedSources =
+                                                         new ArrayList<>();
+  static
+  {
+    addPortedSource(OCLlib.class,
+                    "reduction/reduce.cl",
+                    "reduce_buffer",
+                    "reduce_image_1d",
+                    "reduce_image_2d",
+                    "reduce_image_3d",
+                    "reduce_partials");
+    addPortedSource(OCLlib.class,
+                    "reduction/statistics.cl",
+                    "statistics_buffer",
+                    "statistics_image_1d",
+                    "statistics_image_2d",
+                    "statistics_image_3d",
+                    "statistics_partials");
+    addPortedSource(OCLlib.class,
+                    "conversion/conversion.cl",
+                    "convert_buffer",
+                    "convert_image_2d",
+                    "convert_image_3d");
+    addPortedSource(OCLlib.class,
+                    "noise/noisetexture.cl",
+                    "fbmrender2",
+                    "fbmrender3");
+    addPortedSource(OCLlib.class,
+                    "render/volume/maxproj.cl",
+                    "image_render_maxproj_3d");
+    addPortedSource(Benchmark.class,
+                    "kernel/benchmark.cl",
+                    "buffer",
+                    "image");
+  }
+
+  private static void addPortedSource(Class<?> pClassForRessource,
+                                      String pRessourceName,
+                                      String... pKernelNames)
+  {
+    try (InputStream lInputStream =
+                                   pClassForRessource.getResourceAsStream(pRessourceName))
+    {
+      if (lInputStream == null)
+        throw new IOException("Cannot find source: " + pRessourceName);
+      cPortedSources.add(new PortedSource(StringUtils.streamToString(lInputStream,
+                                                                     "UTF-8"),
+                                          pKernelNames));
+    }
+    catch (IOException e)
+    {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  /**
+   * Returns the names of the kernels that have a Java implementation in a
+   * given program. Kernels are only matched within the library sources they
+   * were ported from, kernels of other sources have no Java implementation
+   * even if their name matches.
+   *
+   * @param pSourceCode
+   *          program source code
+   * @return names of implemented kernels, empty if the program contains none
+   *         of the ported sources
+   */
+  public static Set<String> getImplementedKernelNames(String pSourceCode)
+  {
+    Set<String> lKernelNames = new HashSet<>();
+    for (PortedSource lPortedSource : cPortedSources)
+      if (lPortedSource.isContainedIn(pSourceCode))
+        lKernelNames.addAll(lPortedSource.mKernelNames);
+    return lKernelNames;
+  }
+
+  /**
+   * Returns the Java implementation of a given kernel, specialized for the
+   * defines of the given program.
+   *
+   * @param pProgram
+   *          program
+   * @param pKernelName
+   *          kernel name
+   * @return kernel function, or null if the kernel has no Java implementation
+   */
+  public static PureJavaKernelFunction getKernelFunction(PureJavaProgram pProgram,
+                                                         String pKernelName)
+  {
+    if (!pProgram.isImplemented(pKernelName))
+      return null;
+
+    switch (pKernelName)
+    {
+    case "reduce_buffer":
+      return getReduceBuffer(pProgram);
+    case "reduce_image_1d":
+    case "reduce_image_2d":
+    case "reduce_image_3d":
+      return PureJavaKernels::reduceImage;
+    case "reduce_partials":
+      return PureJavaKernels::reducePartials;
+    case "statistics_buffer":
+      return getStatisticsBuffer(pProgram);
+    case "statistics_image_1d":
+    case "statistics_image_2d":
+    case "statistics_image_3d":
+      return PureJavaKernels::statisticsImage;
+    case "statistics_partials":
+      return PureJavaKernels::statisticsPartials;
+    case "convert_buffer":
+      return getConvertBuffer(pProgram);
+    case "convert_image_2d":
+    case "convert_image_3d":
+      return getConvertImage(pProgram);
+    case "fbmrender2":
+      return PureJavaKernels::fbmRender2;
+    case "fbmrender3":
+      return PureJavaKernels::fbmRender3;
+    case "image_render_maxproj_3d":
+      return PureJavaKernels::maxProjection;
+    case "buffer":
+      return PureJavaKernels::benchmarkBuffer;
+    case "image":
+      return PureJavaKernels::benchmarkImage;
+    default:
+      return null;
+    }
+  }
+
+  // reduction/reduce.cl - work groups are emulated by letting the first work
+  // item of each group reduce the elements of the whole group:
+
+  private static final int cReduceMin = 0, cReduceMax = 1, cReduceSum = 2,
+      cReduceSumOfSquares = 3, cReduceArgMin = 4, cReduceArgMax = 5,
+      cReduceCount = 6, cReduceMinMax = 7;
+
+  private interface Elements
+  {
+    float get(long pIndex);
+  }
+
+  private static final class Reduced
+  {
+    float mValue, mSecondValue;
+    long mIndex;
+
+    Reduced(int pOp)
+    {
+      if (pOp == cReduceMin || pOp == cReduceArgMin)
+        mValue = Float.POSITIVE_INFINITY;
+      else if (pOp == cReduceMax || pOp == cReduceArgMax)
+        mValue = Float.NEGATIVE_INFINITY;
+      else if (pOp == cReduceMinMax)
+      {
+        mValue = Float.POSITIVE_INFINITY;
+        mSecondValue = Float.NEGATIVE_INFINITY;
+      }
+      mIndex = pOp == cReduceCount ? 0 : Long.MAX_VALUE;
+    }
+
+    void combine(int pOp, float pValue, float pSecondValue, long pIndex)
+    {
+      switch (pOp)
+      {
+      case cReduceMin:
+        mValue = fmin(mValue, pValue);
+        break;
+      case cReduceMax:
+        mValue = fmax(mValue, pValue);
+        break;
+      case cReduceSum:
+      case cReduceSumOfSquares:
+        mValue += pValue;
+        break;
+      case cReduceArgMin:
+        if (pValue < mValue || (pValue == mValue && pIndex < mIndex))
+        {
+          mValue = pValue;
+          mIndex = pIndex;
+        }
+        break;
+      case cReduceArgMax:
+        if (pValue > mValue || (pValue == mValue && pIndex < mIndex))
+        {
+          mValue = pValue;
+          mIndex = pIndex;
+        }
+        break;
+      case cReduceCount:
+        mIndex += pIndex;
+        break;
+      case cReduceMinMax:
+        mValue = fmin(mValue, pValue);
+        mSecondValue = fmax(mSecondValue, pSecondValue);
+        break;
+      }
+    }
+
+    void element(int pOp, float pElement, long pElementIndex)
+    {
+      if (pOp == cReduceSumOfSquares)
+        mValue += pElement * pElement;
+      else if (pOp == cReduceCount)
+        mIndex += pElement != 0 ? 1 : 0;
+      else
+        combine(pOp, pElement, pElement, pElementIndex);
+    }
+
+    // OpenCL fmin/fmax ignore NaNs:
+    private static float fmin(float a, float b)
+    {
+      return Float.isNaN(a) ? b : Float.isNaN(b) ? a : Math.min(a, b);
+    }
+
+    private static float fmax(float a, float b)
+    {
+      return Float.isNaN(a) ? b : Float.isNaN(b) ? a : Math.max(a, b);
+    }
+  }
+
+  private static void reduceWorkGroup(PureJavaKernel pKernel,
+                                      long pX,
+                                      int pOp,
+                                      long pLength,
+                                      Elements pElements,
+                                      Elements pSecondElements,
+                                      ContiguousMemoryInterface pIndices,
+                                      int pOutputArgumentIndex)
+  {
+    long lGroupSize = pKernel.getLocalSize(0);
+    if (pX % lGroupSize != 0)
+      return;
+
+    long lStride = pKernel.getGlobalSize(0);
+    Reduced lReduced = new Reduced(pOp);
+    for (long lLocalId = 0; lLocalId < lGroupSize; lLocalId++)
+      for (long i = pX + lLocalId; i < pLength; i += lStride)
+        if (pIndices == null)
+          lReduced.element(pOp, pElements.get(i), i);
+        else
+          lReduced.combine(pOp,
+                           pElements.get(i),
+                           pSecondElements.get(i),
+                           pIndices.getLongAligned(i));
+
+    // values are float2:
+    long lGroupId = pX / lGroupSize;
+    ContiguousMemoryInterface lValues =
+                                      pKernel.getBuffer(pOutputArgumentIndex);
+    lValues.setFloatAligned(2 * lGroupId, lReduced.mValue);
+    lValues.setFloatAligned(2 * lGroupId + 1, lReduced.mSecondValue);
+    pKernel.getBuffer(pOutputArgumentIndex + 1)
+           .setLongAligned(lGroupId, lReduced.mIndex);
+  }
+
+  private interface ElementReader
+  {
+    float get(ContiguousMemoryInterface pBuffer, long pIndex);
+  }
+
+  private static ElementReader getElementReader(PureJavaProgram pProgram)
+  {
+    String lType = pProgram.getDefine("TYPE");
+    ElementReader lReader;
+    switch (lType == null ? "float" : lType)
+    {
+    case "char":
+      lReader = (b, i) -> b.getByteAligned(i);
+      break;
+    case "uchar":
+      lReader = (b, i) -> b.getByteAligned(i) & 0xFF;
+      break;
+    case "short":
+      lReader = (b, i) -> b.getShortAligned(i);
+      break;
+    case "ushort":
+      lReader = (b, i) -> b.getCharAligned(i);
+      break;
+    case "int":
+      lReader = (b, i) -> b.getIntAligned(i);
+      break;
+    case "uint":
+      lReader = (b, i) -> b.getIntAligned(i) & 0xFFFFFFFFL;
+      break;
+    case "long":
+      lReader = (b, i) -> b.getLongAligned(i);
+      break;
+    case "ulong":
+      lReader = (b, i) -> {
+        long lValue = b.getLongAligned(i);
+        return lValue >= 0 ? lValue : 2 * (float) (lValue >>> 1);
+      };
+      break;
+    default:
+      lReader = (b, i) -> b.getFloatAligned(i);
+    }
+    return lReader;
+  }
+
+  private static PureJavaKernelFunction getReduceBuffer(PureJavaProgram pProgram)
+  {
+    ElementReader lReader = getElementReader(pProgram);
+    return (k, x, y, z) -> {
+      ContiguousMemoryInterface lBuffer = k.getBuffer(0);
+      reduceWorkGroup(k,
+                      x,
+                      k.getInt(2),
+                      k.getLong(1),
+                      (i) -> lReader.get(lBuffer, i),
+                      null,
+                      null,
+                      3);
+    };
+  }
+
+  private static void reduceImage(PureJavaKernel pKernel,
+                                  long pX,
+                                  long pY,
+                                  long pZ)
+  {
+    PureJavaImage lImage = pKernel.getImage(0);
+    long lWidth = lImage.getWidth();
+    long lPlane = lWidth * lImage.getHeight();
+    reduceWorkGroup(pKernel,
+                    pX,
+                    pKernel.getInt(1),
+                    lPlane * lImage.getDepth(),
+                    (i) -> lImage.getFloat(i % lPlane % lWidth,
+                                           i % lPlane / lWidth,
+                                           i / lPlane,
+                                           0),
+                    null,
+                    null,
+                    2);
+  }
+
+  private static void reducePartials(PureJavaKernel pKernel,
+                                     long pX,
+                                     long pY,
+                                     long pZ)
+  {
+    ContiguousMemoryInterface lValues = pKernel.getBuffer(0);
+    reduceWorkGroup(pKernel,
+                    pX,
+                    pKernel.getInt(3),
+                    pKernel.getLong(2),
+                    (i) -> lValues.getFloatAligned(2 * i),
+                    (i) -> lValues.getFloatAligned(2 * i + 1),
+                    pKernel.getBuffer(1),
+                    4);
+  }
+
+  // reduction/statistics.cl - same work group emulation as for reductions:
+
+  private static final class Moments
+  {
+    float mMin = Float.POSITIVE_INFINITY, mMax = Float.NEGATIVE_INFINITY,
+        mMean, mM2;
+    long mCount;
+
+    void merge(float pMin, float pMax, float pMean, float pM2, long pCount)
+    {
+      if (pCount == 0)
+        return;
+      long lCount = mCount + pCount;
+      float lDelta = pMean - mMean;
+      float lFraction = (float) pCount / lCount;
+      mMin = Reduced.fmin(mMin, pMin);
+      mMax = Reduced.fmax(mMax, pMax);
+      mMean += lDelta * lFraction;
+      mM2 += pM2 + lDelta * lDelta * mCount * lFraction;
+      mCount = lCount;
+    }
+
+    void element(float pValue)
+    {
+      mCount++;
+      float lDelta = pValue - mMean;
+      mMin = Reduced.fmin(mMin, pValue);
+      mMax = Reduced.fmax(mMax, pValue);
+      mMean += lDelta / mCount;
+      mM2 += lDelta * (pValue - mMean);
+    }
+
+    void write(PureJavaKernel pKernel,
+               int pOutputArgumentIndex,
+               long pGroupId)
+    {
+      ContiguousMemoryInterface lMoments =
+                                         pKernel.getBuffer(pOutputArgumentIndex);
+      lMoments.setFloatAligned(4 * pGroupId, mMin);
+      lMoments.setFloatAligned(4 * pGroupId + 1, mMax);
+      lMoments.setFloatAligned(4 * pGroupId + 2, mMean);
+      lMoments.setFloatAligned(4 * pGroupId + 3, mM2);
+      pKernel.getBuffer(pOutputArgumentIndex + 1)
+             .setLongAligned(pGroupId, mCount);
+    }
+  }
+
+  private static void statisticsWorkGroup(PureJavaKernel pKernel,
+                                          long pX,
+                                          long pLength,
+                                          Elements pElements,
+                                          int pHistogramArgumentIndex)
+  {
+    long lGroupSize = pKernel.getLocalSize(0);
+    if (pX % lGroupSize != 0)
+      return;
+
+    float lHistogramMin = pKernel.getFloat(pHistogramArgumentIndex);
+    float lHistogramScale = pKernel.getFloat(pHistogramArgumentIndex + 1);
+    int lBins = pKernel.getInt(pHistogramArgumentIndex + 2);
+
+    long lStride = pKernel.getGlobalSize(0);
+    Moments lMoments = new Moments();
+    int[] lHistogram = new int[lBins];
+    for (long lLocalId = 0; lLocalId < lGroupSize; lLocalId++)
+      for (long i = pX + lLocalId; i < pLength; i += lStride)
+      {
+        float lValue = pElements.get(i);
+        if (Float.isNaN(lValue))
+          continue;
+        lMoments.element(lValue);
+        float lBin = (lValue - lHistogramMin) * lHistogramScale;
+        lHistogram[(int) Math.max(0, Math.min(lBins - 1, lBin))]++;
+      }
+
+    long lGroupId = pX / lGroupSize;
+    lMoments.write(pKernel, pHistogramArgumentIndex + 3, lGroupId);
+    ContiguousMemoryInterface lHistograms =
+                                          pKernel.getBuffer(pHistogramArgumentIndex
+                                                            + 5);
+    for (int b = 0; b < lBins; b++)
+      lHistograms.setIntAligned(lGroupId * lBins + b, lHistogram[b]);
+  }
+
+  private static PureJavaKernelFunction getStatisticsBuffer(PureJavaProgram pProgram)
+  {
+    ElementReader lReader = getElementReader(pProgram);
+    return (k, x, y, z) -> {
+      ContiguousMemoryInterface lBuffer = k.getBuffer(0);
+      statisticsWorkGroup(k,
+                          x,
+                          k.getLong(1),
+                          (i) -> lReader.get(lBuffer, i),
+                          2);
+    };
+  }
+
+  private static void statisticsImage(PureJavaKernel pKernel,
+                                      long pX,
+                                      long pY,
+                                      long pZ)
+  {
+    PureJavaImage lImage = pKernel.getImage(0);
+    long lWidth = lImage.getWidth();
+    long lPlane = lWidth * lImage.getHeight();
+    statisticsWorkGroup(pKernel,
+                        pX,
+                        lPlane * lImage.getDepth(),
+                        (i) -> lImage.getFloat(i % lPlane % lWidth,
+                                               i % lPlane / lWidth,
+                                               i / lPlane,
+                                               0),
+                        1);
+  }
+
+  private static void statisticsPartials(PureJavaKernel pKernel,
+                                         long pX,
+                                         long pY,
+                                         long pZ)
+  {
+    if (pX != 0)
+      return;
+
+    ContiguousMemoryInterface lMoments = pKernel.getBuffer(0);
+    ContiguousMemoryInterface lCounts = pKernel.getBuffer(1);
+    ContiguousMemoryInterface lHistograms = pKernel.getBuffer(2);
+    int lGroups = pKernel.getInt(3);
+    int lBins = pKernel.getInt(4);
+
+    Moments lMerged = new Moments();
+    for (int g = 0; g < lGroups; g++)
+      lMerged.merge(lMoments.getFloatAligned(4 * g),
+                    lMoments.getFloatAligned(4 * g + 1),
+                    lMoments.getFloatAligned(4 * g + 2),
+                    lMoments.getFloatAligned(4 * g + 3),
+                    lCounts.getLongAligned(g));
+    lMerged.write(pKernel, 5, 0);
+
+    ContiguousMemoryInterface lHistogram = pKernel.getBuffer(7);
+    for (int b = 0; b < lBins; b++)
+    {
+      int lSum = 0;
+      for (long g = 0; g < lGroups; g++)
+        lSum += lHistograms.getIntAligned(g * lBins + b);
+      lHistogram.setIntAligned(b, lSum);
+    }
+  }
+
+  // conversion/conversion.cl:
+
+  private interface Converter
+  {
+    void set(ContiguousMemoryInterface pResult, long pIndex, float pValue);
+  }
+
+  private static Converter getConverter(PureJavaProgram pProgram)
+  {
+    if (pProgram.isDefined("UINT8"))
+      return (r, i, v) -> r.setByteAligned(i,
+                                           (byte) Math.max(0,
+                                                           Math.min(255,
+                                                                    Math.rint(v))));
+    else if (pProgram.isDefined("UINT16"))
+      return (r, i, v) -> r.setShortAligned(i,
+                                            (short) Math.max(0,
+                                                             Math.min(65535,
+                                                                      Math.rint(v))));
+    else
+      return (r, i, v) -> r.setFloatAligned(i, v);
+  }
+
+  private static PureJavaKernelFunction getConvertBuffer(PureJavaProgram pProgram)
+  {
+    Converter lConverter = getConverter(pProgram);
+    return (k, x, y, z) -> {
+      if (x < k.getLong(4))
+        lConverter.set(k.getBuffer(1),
+                       x,
+                       k.getFloat(2) * k.getBuffer(0).getFloatAligned(x)
+                          + k.getFloat(3));
+    };
+  }
+
+  private static PureJavaKernelFunction getConvertImage(PureJavaProgram pProgram)
+  {
+    Converter lConverter = getConverter(pProgram);
+    return (k, x, y, z) -> {
+      PureJavaImage lImage = k.getImage(0);
+      lConverter.set(k.getBuffer(1),
+                     x + lImage.getWidth() * (y + lImage.getHeight() * z),
+                     k.getFloat(2) * lImage.getFloat(x, y, z, 0)
+                                                 + k.getFloat(3));
+    };
+  }
+
+  // noise/noisetexture.cl:
+
+  private static float fract(float pValue)
+  {
+    return pValue - (float) Math.floor(pValue);
+  }
+
+  private static float random2(int pSeed, float pX, float pY)
+  {
+    return fract((float) Math.sin(pX * 12.9898f + pY * 78.233f)
+                 * (43758.5453123f + pSeed));
+  }
+
+  private static float random3(int pSeed, float pX, float pY, float pZ)
+  {
+    return fract((float) Math.sin(pX * 12.9898f + pY * 78.233f
+                                  + pZ * 131.27f)
+                 * (73258.5413143f + pSeed));
+  }
+
+  private static float noise2(int pSeed, float pX, float pY)
+  {
+    float lIX = (float) Math.floor(pX);
+    float lIY = (float) Math.floor(pY);
+    float lFX = pX - lIX;
+    float lFY = pY - lIY;
+
+    float lUX = lFX * lFX * (3.0f - 2.0f * lFX);
+    float lUY = lFY * lFY * (3.0f - 2.0f * lFY);
+
+    float a = random2(pSeed, lIX, lIY);
+    float b = random2(pSeed, lIX + 1, lIY);
+    float c = random2(pSeed, lIX, lIY + 1);
+    float d = random2(pSeed, lIX + 1, lIY + 1);
+
+    return a + (b - a) * lUX
+           + (c - a) * lUY * (1.0f - lUX)
+           + (d - b) * lUX * lUY;
+  }
+
+  private static float noise3(int pSeed, float pX, float pY, float pZ)
+  {
+    float lIX = (float) Math.floor(pX);
+    float lIY = (float) Math.floor(pY);
+    float lIZ = (float) Math.floor(pZ);
+    float lFX = pX - lIX;
+    float lFY = pY - lIY;
+    float lFZ = pZ - lIZ;
+
+    float lUX = lFX * lFX * lFX * (lFX * (lFX * 6.0f - 15.0f) + 10.0f);
+    float lUY = lFY * lFY * lFY * (lFY * (lFY * 6.0f - 15.0f) + 10.0f);
+    float lUZ = lFZ * lFZ * lFZ * (lFZ * (lFZ * 6.0f - 15.0f) + 10.0f);
+
+    float a = random3(pSeed, lIX, lIY, lIZ);
+    float b = random3(pSeed, lIX + 1, lIY, lIZ);
+    float c = random3(pSeed, lIX, lIY + 1, lIZ);
+    float d = random3(pSeed, lIX + 1, lIY + 1, lIZ);
+    float e = random3(pSeed, lIX, lIY, lIZ + 1);
+    float f = random3(pSeed, lIX + 1, lIY, lIZ + 1);
+    float g = random3(pSeed, lIX, lIY + 1, lIZ + 1);
+    float h = random3(pSeed, lIX + 1, lIY + 1, lIZ + 1);
+
+    float k0 = a;
+    float k1 = b - a;
+    float k2 = c - a;
+    float k3 = e - a;
+    float k4 = a - b - c + d;
+    float k5 = a - c - e + g;
+    float k6 = a - b - e + f;
+    float k7 = -a + b + c - d + e - f - g + h;
+
+    return -1.0f + 2.0f * (k0 + k1 * lUX
+                           + k2 * lUY
+                           + k3 * lUZ
+                           + k4 * lUX * lUY
+                           + k5 * lUY * lUZ
+                           + k6 * lUZ * lUX
+                           + k7 * lUX * lUY * lUZ);
+  }
+
+  private static void fbmRender2(PureJavaKernel pKernel,
+                                 long pX,
+                                 long pY,
+                                 long pZ)
+  {
+    long lWidth = pKernel.getGlobalSize(0);
+    long lHeight = pKernel.getGlobalSize(1);
+    int lSeed = pKernel.getInt(1);
+    int lOctaves = pKernel.getInt(6);
+
+    float lX = (((float) pX) / lWidth + pKernel.getFloat(2))
+               * pKernel.getFloat(4);
+    float lY = (((float) pY) / lHeight + pKernel.getFloat(3))
+               * pKernel.getFloat(5);
+
+    float lValue = 0.0f;
+    float lAmplitude = 0.5f;
+    for (int i = 0; i < lOctaves; i++)
+    {
+      lValue += lAmplitude * noise2(lSeed + i, lX, lY);
+      lX *= 2.0f;
+      lY *= 2.0f;
+      lAmplitude *= 0.5f;
+    }
+
+    pKernel.getBuffer(0).setFloatAligned(pX + lWidth * pY, lValue);
+  }
+
+  private static void fbmRender3(PureJavaKernel pKernel,
+                                 long pX,
+                                 long pY,
+                                 long pZ)
+  {
+    long lWidth = pKernel.getGlobalSize(0);
+    long lHeight = pKernel.getGlobalSize(1);
+    long lDepth = pKernel.getGlobalSize(2);
+    int lSeed = pKernel.getInt(1);
+    int lOctaves = pKernel.getInt(8);
+
+    float lX = (((float) pX) / lWidth + pKernel.getFloat(2))
+               * pKernel.getFloat(5);
+    float lY = (((float) pY) / lHeight + pKernel.getFloat(3))
+               * pKernel.getFloat(6);
+    float lZ = (((float) pZ) / lDepth + pKernel.getFloat(4))
+               * pKernel.getFloat(7);
+
+    float lValue = 0.0f;
+    float lAmplitude = 0.5f;
+    for (int i = 0; i < lOctaves; i++)
+    {
+      lValue += lAmplitude * noise3(lSeed + i, lX, lY, lZ);
+      lX *= 2.0f;
+      lY *= 2.0f;
+      lZ *= 2.0f;
+      lAmplitude *= 0.5f;
+    }
+
+    pKernel.getBuffer(0)
+           .setFloatAligned(pX + lWidth * (pY + lHeight * pZ), lValue);
+  }
+
+  // render/volume/maxproj.cl:
+
+  private static final int cLoopUnroll = 16;
+
+  private static float[] multiply(ContiguousMemoryInterface pMatrix,
+                                  float[] pVector)
+  {
+    float[] lResult = new float[4];
+    for (int r = 0; r < 4; r++)
+      for (int c = 0; c < 4; c++)
+        lResult[r] += pMatrix.getFloatAligned(4 * r + c) * pVector[c];
+    return lResult;
+  }
+
+  private static void scale(float[] pVector, float pFactor)
+  {
+    for (int i = 0; i < 4; i++)
+      pVector[i] *= pFactor;
+  }
+
+  private static void maxProjection(PureJavaKernel pKernel,
+                                    long pX,
+                                    long pY,
+                                    long pZ)
+  {
+    PureJavaImage lImage = pKernel.getImage(0);
+    ContiguousMemoryInterface lRGBABuffer = pKernel.getBuffer(1);
+    float lVMin = pKernel.getFloat(2);
+    float lVMax = pKernel.getFloat(3);
+    float lGamma = pKernel.getFloat(4);
+    float lAlpha = pKernel.getFloat(5);
+    int lMaxSteps = pKernel.getInt(6);
+    ContiguousMemoryInterface lInvProjection = pKernel.getBuffer(7);
+    ContiguousMemoryInterface lInvModelView = pKernel.getBuffer(8);
+
+    float ta = 1.f / (lVMax - lVMin);
+    float tb = -lVMin / (lVMax - lVMin);
+
+    long lWidth = pKernel.getGlobalSize(0);
+    long lHeight = pKernel.getGlobalSize(1);
+    long lIndex = 4 * (pX + lWidth * pY);
+
+    float u = ((pX * 2.0f) / lWidth) - 1.0f;
+    float v = ((pY * 2.0f) / lHeight) - 1.0f;
+
+    float[] lOrig0 = multiply(lInvProjection, new float[]
+    { u, v, -1, 1 });
+    scale(lOrig0, 1.f / lOrig0[3]);
+
+    float[] lOrig = multiply(lInvModelView, lOrig0);
+    scale(lOrig, 1.f / lOrig[3]);
+
+    float[] lDirec0 = multiply(lInvProjection, new float[]
+    { u, v, 1, 1 });
+    scale(lDirec0, 1.f / lDirec0[3]);
+    float lNorm = 0;
+    for (int i = 0; i < 4; i++)
+    {
+      lDirec0[i] -= lOrig0[i];
+      lNorm += lDirec0[i] * lDirec0[i];
+    }
+    scale(lDirec0, (float) (1 / Math.sqrt(lNorm)));
+
+    float[] lDirec = multiply(lInvModelView, lDirec0);
+    lDirec[3] = 0;
+
+    // intersection with the box [0,1]^3:
+    float lTNear = Float.NEGATIVE_INFINITY;
+    float lTFar = Float.POSITIVE_INFINITY;
+    for (int i = 0; i < 3; i++)
+    {
+      float lInv = 1.0f / lDirec[i];
+      float lTBottom = lInv * (0 - lOrig[i]);
+      float lTTop = lInv * (1 - lOrig[i]);
+      lTNear = Math.max(lTNear, Math.min(lTTop, lTBottom));
+      lTFar = Math.min(lTFar, Math.max(lTTop, lTBottom));
+    }
+
+    if (!(lTFar > lTNear) || lTFar <= 0)
+    {
+      lRGBABuffer.setIntAligned(lIndex / 4, 0);
+      return;
+    }
+
+    if (lTNear < 0.0f)
+      lTNear = 0.0f;
+
+    int lUnrolledMaxSteps = lMaxSteps / cLoopUnroll;
+    float lTStep = Math.abs(lTNear - lTFar)
+                   / (lUnrolledMaxSteps * cLoopUnroll);
+
+    float[] lPos = new float[3];
+    float[] lStep = new float[3];
+    for (int i = 0; i < 3; i++)
+    {
+      lPos[i] = lOrig[i] * 0.5f + 0.5f + lTNear * 0.5f * lDirec[i];
+      lStep[i] = 0.5f * lTStep * lDirec[i];
+    }
+
+    float lMaxp = 0.0f;
+    float lMappedValue;
+    int lNumberOfSteps = lUnrolledMaxSteps * cLoopUnroll;
+
+    if (lAlpha <= 0.f)
+    {
+      for (int i = 0; i < lNumberOfSteps; i++)
+      {
+        lMaxp = Math.max(lMaxp,
+                         lImage.sampleLinear(lPos[0], lPos[1], lPos[2]));
+        lPos[0] += lStep[0];
+        lPos[1] += lStep[1];
+        lPos[2] += lStep[2];
+      }
+      lMappedValue = (float) Math.pow(ta * lMaxp + tb, lGamma);
+    }
+    else
+    {
+      float lCumSum = 1.f;
+      float lDecayRate = lAlpha * lTStep;
+      for (int i = 0; i < lNumberOfSteps; i++)
+      {
+        float lNewValue = lImage.sampleLinear(lPos[0],
+                                              lPos[1],
+                                              lPos[2]);
+        float lNormalizedValue = ta * lNewValue + tb;
+        lMaxp = Math.max(lMaxp, lCumSum * lNormalizedValue);
+        lCumSum *= (float) Math.exp(-lDecayRate * lNormalizedValue);
+        lPos[0] += lStep[0];
+        lPos[1] += lStep[1];
+        lPos[2] += lStep[2];
+      }
+      lMappedValue = (float) Math.pow(lMaxp, lGamma);
+    }
+    lMappedValue = Math.max(0.f, Math.min(1.f, lMappedValue));
+
+    byte lGray = (byte) (int) (255 * lMappedValue);
+    lRGBABuffer.setByteAligned(lIndex + 0, lGray);
+    lRGBABuffer.setByteAligned(lIndex + 1, lGray);
+    lRGBABuffer.setByteAligned(lIndex + 2, lGray);
+    lRGBABuffer.setByteAligned(lIndex + 3, (byte) 255);
+  }
+
+  // benchmark/benchmark.cl:
+
+  private static void benchmarkBuffer(PureJavaKernel pKernel,
+                                      long pX,
+                                      long pY,
+                                      long pZ)
+  {
+    ContiguousMemoryInterface lA = pKernel.getBuffer(0);
+    ContiguousMemoryInterface lB = pKernel.getBuffer(1);
+    int w = (int) pKernel.getGlobalSize(0);
+    int h = (int) pKernel.getGlobalSize(1);
+    int x = (int) pX;
+    int y = (int) pY;
+
+    float lAccumulator = 0;
+    for (int i = 0; i < 8; i++)
+      lAccumulator += lA.getFloatAligned(((i * x) ^ (y + i)) % (w * h));
+    lAccumulator = lAccumulator / 64;
+
+    lB.setFloatAligned((w - 1 - x) + w * (h - 1 - y), lAccumulator);
+  }
+
+  private static void benchmarkImage(PureJavaKernel pKernel,
+                                     long pX,
+                                     long pY,
+                                     long pZ)
+  {
+    PureJavaImage lImage = pKernel.getImage(0);
+    long lImageWidth = pKernel.getInt(1) & 0xFFFFFFFFL;
+
+    float lMaxp = 0.0f;
+    float lPosition = 0.0f;
+    for (int i = 0; i < 64; i++)
+    {
+      lMaxp = Math.max(lMaxp,
+                       lImage.sampleLinear(lPosition,
+                                           lPosition,
+                                           lPosition));
+      lPosition += 0.5f;
+    }
+
+    pKernel.getBuffer(2).setIntAligned(pX + pY * lImageWidth,
+                                       (int) lMaxp);
+  }
+
+}
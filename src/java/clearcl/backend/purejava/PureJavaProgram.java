@@ -0,0 +1,206 @@
+package clearcl.backend.purejava;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import clearcl.enums.BuildStatus;
+import clearcl.exceptions.ClearCLUnsupportedException;
+
+/**
+ * Program peer object for the pure Java backend. OpenCL sources are not
+ * compiled; instead the library sources contained in the program are
+ * recognized and their kernels are matched by name against the Java
+ * implementations in {@link PureJavaKernels}, and the defines found in the
+ * source are kept so that kernels can specialize on them (e.g. FLOAT, UINT8).
+ * Programs that contain none of the ported library sources cannot be built.
+ *
+ * @author royer
+ */
+public class PureJavaProgram
+{
+  private static final Pattern cKernelPattern =
+                                              Pattern.compile("__kernel\\s+void\\s+(\\w+)\\s*\\(");
+  private static final Pattern cDefinePattern =
+                                              Pattern.compile("(?m)^\\s*#define\\s+(\\w+)[ \\t]*([^\\n]*)$");
+
+  private final String mSourceCode;
+  private final List<String> mKernelNames = new ArrayList<>();
+  private final Map<String, String> mDefines = new HashMap<>();
+  private volatile Set<String> mImplementedKernelNames;
+  private volatile BuildStatus mBuildStatus = BuildStatus.None;
+  private volatile String mBuildLog = "";
+
+  /**
+   * Instantiates a program from source code.
+   *
+   * @param pSourceCode
+   *          source code
+   */
+  public PureJavaProgram(String pSourceCode)
+  {
+    mSourceCode = pSourceCode;
+  }
+
+  /**
+   * Returns the source code of this program
+   *
+   * @return source code
+   */
+  public String getSourceCode()
+  {
+    return mSourceCode;
+  }
+
+  /**
+   * 'Builds' this program: collects kernel names and defines, and reports in
+   * the build log which kernels have a Java implementation.
+   *
+   * @param pOptions
+   *          build options, -D options are treated as defines
+   * @return true
+   * @throws ClearCLUnsupportedException
+   *           if the program contains no library source with Java
+   *           implementations
+   */
+  public boolean build(String pOptions)
+  {
+    Set<String> lImplementedKernelNames =
+                                        PureJavaKernels.getImplementedKernelNames(mSourceCode);
+    if (lImplementedKernelNames.isEmpty())
+    {
+      mBuildStatus = BuildStatus.Error;
+      mBuildLog = "no pure Java implementation for this program\n";
+      throw new ClearCLUnsupportedException("no pure Java implementation for program, only programs made of the library's own sources can be built");
+    }
+    mImplementedKernelNames = lImplementedKernelNames;
+
+    mKernelNames.clear();
+    mDefines.clear();
+
+    Matcher lKernelMatcher = cKernelPattern.matcher(mSourceCode);
+    while (lKernelMatcher.find())
+      mKernelNames.add(lKernelMatcher.group(1));
+
+    // defines are inserted ahead of the source code, so the first definition
+    // wins over defaults guarded by #ifndef further down:
+    Matcher lDefineMatcher = cDefinePattern.matcher(mSourceCode);
+    while (lDefineMatcher.find())
+      mDefines.putIfAbsent(lDefineMatcher.group(1),
+                           lDefineMatcher.group(2).trim());
+
+    if (pOptions != null)
+      for (String lOption : pOptions.split("\\s+"))
+        if (lOption.startsWith("-D") && lOption.length() > 2)
+        {
+          String[] lKeyValue = lOption.substring(2).split("=", 2);
+          mDefines.put(lKeyValue[0],
+                       lKeyValue.length > 1 ? lKeyValue[1] : "");
+        }
+
+    StringBuilder lBuildLog = new StringBuilder();
+    for (String lKernelName : mKernelNames)
+      lBuildLog.append(String.format("kernel '%s': %s\n",
+                                     lKernelName,
+                                     isImplemented(lKernelName) ? "Java implementation"
+                                                                : "no Java implementation"));
+    mBuildLog = lBuildLog.toString();
+    mBuildStatus = BuildStatus.Success;
+    return true;
+  }
+
+  /**
+   * Returns true if the given kernel of this program has a Java
+   * implementation.
+   *
+   * @param pKernelName
+   *          kernel name
+   * @return true if implemented
+   */
+  public boolean isImplemented(String pKernelName)
+  {
+    Set<String> lImplementedKernelNames = mImplementedKernelNames;
+    return lImplementedKernelNames != null
+           && lImplementedKernelNames.contains(pKernelName);
+  }
+
+  /**
+   * Returns true if the given symbol is defined
+   *
+   * @param pSymbol
+   *          symbol
+   * @return true if defined
+   */
+  public boolean isDefined(String pSymbol)
+  {
+    return mDefines.containsKey(pSymbol);
+  }
+
+  /**
+   * Returns the value of a given define
+   *
+   * @param pSymbol
+   *          symbol
+   * @return value, empty if defined without value, or null if not defined
+   */
+  public String getDefine(String pSymbol)
+  {
+    return mDefines.get(pSymbol);
+  }
+
+  /**
+   * Returns the names of the kernels declared in this program
+   *
+   * @return kernel names
+   */
+  public List<String> getKernelNames()
+  {
+    return mKernelNames;
+  }
+
+  /**
+   * Returns the number of arguments of a given kernel
+   *
+   * @param pKernelName
+   *          kernel name
+   * @return number of arguments, or -1 if the kernel is not declared
+   */
+  public int getNumberOfArguments(String pKernelName)
+  {
+    Matcher lMatcher =
+                     Pattern.compile("__kernel\\s+void\\s+"
+                                     + Pattern.quote(pKernelName)
+                                     + "\\s*\\(([^)]*)\\)")
+                            .matcher(mSourceCode);
+    if (!lMatcher.find())
+      return -1;
+
+    String lArguments = lMatcher.group(1).trim();
+    return lArguments.isEmpty() ? 0 : lArguments.split(",").length;
+  }
+
+  /**
+   * Returns build status
+   *
+   * @return build status
+   */
+  public BuildStatus getBuildStatus()
+  {
+    return mBuildStatus;
+  }
+
+  /**
+   * Returns build log
+   *
+   * @return build log
+   */
+  public String getBuildLog()
+  {
+    return mBuildLog;
+  }
+
+}
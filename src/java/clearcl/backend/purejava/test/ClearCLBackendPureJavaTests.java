@@ -0,0 +1,245 @@
+package clearcl.backend.purejava.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import clearcl.ClearCL;
+import clearcl.ClearCLBuffer;
+import clearcl.ClearCLContext;
+import clearcl.ClearCLDevice;
+import clearcl.ClearCLImage;
+import clearcl.ClearCLKernel;
+import clearcl.ClearCLProgram;
+import clearcl.backend.purejava.ClearCLBackendPureJava;
+import clearcl.enums.DeviceType;
+import clearcl.enums.HostAccessType;
+import clearcl.enums.ImageChannelDataType;
+import clearcl.enums.ImageChannelOrder;
+import clearcl.enums.KernelAccessType;
+import clearcl.enums.MemAllocMode;
+import clearcl.exceptions.ClearCLUnsupportedException;
+import clearcl.ocllib.OCLlib;
+import clearcl.ops.math.MinMax;
+import clearcl.ops.noise.FractionalBrownianNoise;
+import coremem.enums.NativeTypeEnum;
+import coremem.offheap.OffHeapMemory;
+
+import org.junit.Test;
+
+/**
+ * Pure Java backend tests. These run without any OpenCL driver.
+ *
+ * @author royer
+ */
+public class ClearCLBackendPureJavaTests
+{
+
+  /**
+   * Tests min max reduction of buffers and images.
+   *
+   * @throws IOException
+   *           NA
+   */
+  @Test
+  public void testMinMax() throws IOException
+  {
+    try (ClearCL lClearCL = new ClearCL(new ClearCLBackendPureJava()))
+    {
+      ClearCLDevice lDevice = lClearCL.getBestCPUDevice();
+      assertEquals(DeviceType.CPU, lDevice.getType());
+
+      ClearCLContext lContext = lDevice.createContext();
+      MinMax lMinMax = new MinMax(lContext.getDefaultQueue());
+
+      int lWidth = 65, lHeight = 63, lDepth = 61;
+      int lLength = lWidth * lHeight * lDepth;
+      OffHeapMemory lMemory = OffHeapMemory.allocateFloats(lLength);
+      for (int i = 0; i < lLength; i++)
+        lMemory.setFloatAligned(i, (float) Math.sin(i));
+      lMemory.setFloatAligned(lLength / 3, -2);
+      lMemory.setFloatAligned(lLength / 2, 3);
+
+      ClearCLBuffer lBuffer =
+                            lContext.createBuffer(HostAccessType.ReadWrite,
+                                                  KernelAccessType.ReadWrite,
+                                                  NativeTypeEnum.Float,
+                                                  lLength);
+      lBuffer.readFrom(lMemory, true);
+
+      float[] lBufferMinMax = lMinMax.minmax(lBuffer, 128);
+      assertEquals(-2, lBufferMinMax[0], 0);
+      assertEquals(3, lBufferMinMax[1], 0);
+
+      ClearCLImage lImage =
+                          lContext.createImage(HostAccessType.ReadWrite,
+                                               KernelAccessType.ReadWrite,
+                                               ImageChannelOrder.Intensity,
+                                               ImageChannelDataType.Float,
+                                               lWidth,
+                                               lHeight,
+                                               lDepth);
+      lImage.readFrom(lMemory, true);
+
+      float[] lImageMinMax = lMinMax.minmax(lImage, 16);
+      assertEquals(-2, lImageMinMax[0], 0);
+      assertEquals(3, lImageMinMax[1], 0);
+
+      lMinMax.close();
+      lImage.close();
+      lBuffer.close();
+      lMemory.free();
+    }
+  }
+
+  /**
+   * Tests image fills, copies and transfers.
+   */
+  @Test
+  public void testImageCopies()
+  {
+    try (ClearCL lClearCL = new ClearCL(new ClearCLBackendPureJava()))
+    {
+      ClearCLContext lContext = lClearCL.getBestCPUDevice()
+                                        .createContext();
+
+      ClearCLImage lImage =
+                          lContext.createImage(HostAccessType.ReadWrite,
+                                               KernelAccessType.ReadWrite,
+                                               ImageChannelOrder.R,
+                                               ImageChannelDataType.UnsignedInt16,
+                                               32,
+                                               16);
+      ClearCLImage lOtherImage =
+                               lContext.createImage(HostAccessType.ReadWrite,
+                                                    KernelAccessType.ReadWrite,
+                                                    ImageChannelOrder.R,
+                                                    ImageChannelDataType.UnsignedInt16,
+                                                    32,
+                                                    16);
+
+      lImage.fill(1234, true, false);
+      lOtherImage.fillZero(true, false);
+      lImage.copyTo(lOtherImage,
+                    new long[]
+                    { 8, 4 },
+                    new long[]
+                    { 0, 0 },
+                    new long[]
+                    { 4, 2 },
+                    true);
+
+      OffHeapMemory lMemory = OffHeapMemory.allocateShorts(32 * 16);
+      lOtherImage.writeTo(lMemory, true);
+
+      assertEquals(1234, lMemory.getShortAligned(3 + 32 * 1));
+      assertEquals(0, lMemory.getShortAligned(4 + 32 * 1));
+      assertEquals(0, lMemory.getShortAligned(3 + 32 * 2));
+
+      lMemory.free();
+      lOtherImage.close();
+      lImage.close();
+    }
+  }
+
+  /**
+   * Tests that noise generation runs and produces values in the expected
+   * range.
+   *
+   * @throws IOException
+   *           NA
+   */
+  @Test
+  public void testNoise() throws IOException
+  {
+    try (ClearCL lClearCL = new ClearCL(new ClearCLBackendPureJava()))
+    {
+      ClearCLContext lContext = lClearCL.getBestCPUDevice()
+                                        .createContext();
+
+      ClearCLBuffer lBuffer =
+                            lContext.createBuffer(MemAllocMode.Best,
+                                                  HostAccessType.ReadWrite,
+                                                  KernelAccessType.ReadWrite,
+                                                  1,
+                                                  NativeTypeEnum.Float,
+                                                  32,
+                                                  32,
+                                                  32);
+
+      FractionalBrownianNoise lNoise =
+                                     new FractionalBrownianNoise(lContext.getDefaultQueue());
+      lNoise.fbm3D(lBuffer, true);
+
+      float[] lMinMax = new MinMax(lContext.getDefaultQueue()).minmax(lBuffer,
+                                                                      64);
+      assertTrue(lMinMax[0] < lMinMax[1]);
+      assertTrue(lMinMax[0] >= -1 && lMinMax[1] <= 1);
+
+      lBuffer.close();
+    }
+  }
+
+  /**
+   * Tests that only kernels of the library sources they were ported from are
+   * run: a user kernel that has the name of a ported kernel must not silently
+   * run the Java port.
+   *
+   * @throws IOException
+   *           NA
+   */
+  @Test
+  public void testKernelMatching() throws IOException
+  {
+    try (ClearCL lClearCL = new ClearCL(new ClearCLBackendPureJava()))
+    {
+      ClearCLContext lContext = lClearCL.getBestCPUDevice()
+                                        .createContext();
+
+      ClearCLProgram lLibraryProgram =
+                                     lContext.createProgram(OCLlib.class,
+                                                            "conversion/conversion.cl");
+      lLibraryProgram.addDefine("FLOAT");
+      lLibraryProgram.buildAndLog();
+      ClearCLKernel lKernel =
+                            lLibraryProgram.createKernel("convert_buffer");
+      lKernel.close();
+      lLibraryProgram.close();
+
+      ClearCLProgram lUserProgram =
+                                  lContext.createProgram("__kernel void convert_buffer(__global float* a, const long length) \n"
+                                                         + "{ \n"
+                                                         + "  a[get_global_id(0)] = 0; \n"
+                                                         + "} \n");
+      try
+      {
+        lUserProgram.buildAndLog();
+        fail();
+      }
+      catch (ClearCLUnsupportedException e)
+      {
+      }
+      lUserProgram.close();
+      lContext.close();
+    }
+  }
+
+  /**
+   * Tests that the reported device memory is not bounded by the Java heap, as
+   * buffers and images are allocated off-heap.
+   */
+  @Test
+  public void testMemorySize()
+  {
+    try (ClearCL lClearCL = new ClearCL(new ClearCLBackendPureJava()))
+    {
+      ClearCLDevice lDevice = lClearCL.getBestCPUDevice();
+      assertTrue(lDevice.getGlobalMemorySizeInBytes() > 0);
+      assertEquals(lDevice.getGlobalMemorySizeInBytes(),
+                   lDevice.getMaxMemoryAllocationSizeInBytes());
+    }
+  }
+
+}
@@ -0,0 +1,125 @@
+package clearcl.benchmark.demo;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+
+import clearcl.ClearCL;
+import clearcl.ClearCLBuffer;
+import clearcl.ClearCLContext;
+import clearcl.ClearCLDevice;
+import clearcl.ClearCLKernel;
+import clearcl.ClearCLProgram;
+import clearcl.ClearCLQueue;
+import clearcl.backend.ClearCLBackendInterface;
+import clearcl.backend.javacl.ClearCLBackendJavaCL;
+import clearcl.backend.jocl.ClearCLBackendJOCL;
+import clearcl.enums.BuildStatus;
+import clearcl.enums.HostAccessType;
+import clearcl.enums.KernelAccessType;
+import coremem.enums.NativeTypeEnum;
+
+import org.junit.Test;
+
+/**
+ * Kernel dispatch benchmark demo: measures the average dispatch time and the
+ * number of bytes allocated on the Java heap per kernel run.
+ *
+ * @author royer
+ */
+public class KernelDispatchBenchmarkDemo
+{
+  private static final int cWarmupRuns = 100000;
+  private static final int cMeasuredRuns = 100000;
+  private static final int cRunsBetweenWaits = 1000;
+
+  private static final String cSourceCode =
+                                          "__kernel void noop(__global float* a, float p) \n"
+                                            + "{ \n"
+                                            + "  a[get_global_id(0)] = p; \n"
+                                            + "} \n";
+
+  /**
+   * Kernel dispatch benchmark demo
+   *
+   * @throws Exception
+   *           NA
+   */
+  @Test
+  public void demo() throws Exception
+  {
+    demoWithBackend(new ClearCLBackendJOCL());
+    demoWithBackend(new ClearCLBackendJavaCL());
+  }
+
+  private void demoWithBackend(ClearCLBackendInterface pClearCLBackendInterface) throws Exception
+  {
+    try (ClearCL lClearCL = new ClearCL(pClearCLBackendInterface))
+    {
+      ClearCLDevice lDevice = lClearCL.getBestGPUDevice();
+      ClearCLContext lContext = lDevice.createContext();
+
+      ClearCLProgram lProgram = lContext.createProgram(cSourceCode);
+      assertEquals(BuildStatus.Success, lProgram.buildAndLog());
+
+      ClearCLBuffer lBuffer =
+                            lContext.createBuffer(HostAccessType.ReadOnly,
+                                                  KernelAccessType.WriteOnly,
+                                                  NativeTypeEnum.Float,
+                                                  1);
+
+      ClearCLKernel lKernel = lProgram.createKernel("noop");
+      lKernel.setGlobalSizes(1);
+      lKernel.setArguments(lBuffer, 1f);
+
+      ClearCLQueue lQueue = lContext.getDefaultQueue();
+
+      dispatch(lKernel, lQueue, cWarmupRuns);
+
+      long lThreadId = Thread.currentThread().getId();
+      long lBytesStart = getThreadAllocatedBytes(lThreadId);
+      long lNanosStart = System.nanoTime();
+
+      dispatch(lKernel, lQueue, cMeasuredRuns);
+
+      long lNanosStop = System.nanoTime();
+      long lBytesStop = getThreadAllocatedBytes(lThreadId);
+
+      double lBytesPerRun = ((double) (lBytesStop - lBytesStart))
+                            / cMeasuredRuns;
+      double lMicrosPerRun = 1e-3 * (lNanosStop - lNanosStart)
+                             / cMeasuredRuns;
+
+      System.out.format("Backend: %s, device: %s \n",
+                        pClearCLBackendInterface,
+                        lDevice);
+      System.out.format("%g us per run, %g bytes allocated per run \n",
+                        lMicrosPerRun,
+                        lBytesPerRun);
+
+      lKernel.close();
+      lBuffer.close();
+      lProgram.close();
+      lContext.close();
+    }
+  }
+
+  private void dispatch(ClearCLKernel pKernel,
+                        ClearCLQueue pQueue,
+                        int pNumberOfRuns)
+  {
+    for (int i = 0; i < pNumberOfRuns; i++)
+    {
+      pKernel.run(pQueue, false);
+      if (i % cRunsBetweenWaits == 0)
+        pQueue.waitToFinish();
+    }
+    pQueue.waitToFinish();
+  }
+
+  private static long getThreadAllocatedBytes(long pThreadId)
+  {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(pThreadId);
+  }
+
+}
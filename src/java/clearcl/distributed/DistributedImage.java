@@ -0,0 +1,758 @@
+package clearcl.distributed;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import clearcl.ClearCLContext;
+import clearcl.ClearCLImage;
+import clearcl.ClearCLKernel;
+import clearcl.ClearCLQueue;
+import clearcl.enums.HostAccessType;
+import clearcl.enums.ImageChannelDataType;
+import clearcl.enums.ImageChannelOrder;
+import clearcl.enums.KernelAccessType;
+import clearcl.enums.MemAllocMode;
+import clearcl.exceptions.ClearCLAllocationException;
+import clearcl.exceptions.ClearCLIllegalArgumentException;
+import coremem.ContiguousMemoryInterface;
+import coremem.offheap.OffHeapMemory;
+
+/**
+ * 3D image split along Z into slabs, each held by a device image on one of
+ * several contexts, possibly on different devices. This makes it possible to
+ * process volumes larger than the maximal allocation size of a device, or to
+ * spread a volume over several devices.
+ *
+ * Each slab owns a range of 'core' planes, and its image additionally holds up
+ * to a given number of 'halo' planes below and above, copies of the adjacent
+ * core planes of the neighbouring slabs. Kernels that read a neighbourhood of
+ * at most the halo width along Z can thus compute the core planes of each slab
+ * independently. After a kernel has written to a distributed image, its halos
+ * must be refreshed with {@link #exchangeHalos()} before it is read by another
+ * kernel.
+ *
+ * Consecutive slabs are placed on the same context as much as possible so
+ * that most halos are exchanged by device copies, halos between slabs on
+ * different contexts are exchanged through host memory.
+ *
+ * @author royer
+ */
+public class DistributedImage implements AutoCloseable
+{
+  private final ClearCLContext[] mContexts;
+  private final ImageChannelOrder mChannelOrder;
+  private final ImageChannelDataType mChannelDataType;
+  private final long mWidth, mHeight, mDepth;
+  private final int mHaloWidth;
+  private final Slab[] mSlabs;
+  private final OffHeapMemory[] mHaloStagingMemory;
+
+  /**
+   * Slab of a distributed image: a device image holding a range of core planes
+   * of the volume plus halo planes below and above.
+   */
+  public static class Slab
+  {
+    private final int mIndex;
+    private final ClearCLContext mContext;
+    private final ClearCLImage mImage;
+    private final long mCoreZ, mCoreDepth;
+    private final int mHaloBelow, mHaloAbove;
+
+    private Slab(int pIndex,
+                 ClearCLContext pContext,
+                 ClearCLImage pImage,
+                 long pCoreZ,
+                 long pCoreDepth,
+                 int pHaloBelow,
+                 int pHaloAbove)
+    {
+      mIndex = pIndex;
+      mContext = pContext;
+      mImage = pImage;
+      mCoreZ = pCoreZ;
+      mCoreDepth = pCoreDepth;
+      mHaloBelow = pHaloBelow;
+      mHaloAbove = pHaloAbove;
+    }
+
+    /**
+     * Returns the index of this slab.
+     *
+     * @return slab index
+     */
+    public int getIndex()
+    {
+      return mIndex;
+    }
+
+    /**
+     * Returns the context holding this slab.
+     *
+     * @return context
+     */
+    public ClearCLContext getContext()
+    {
+      return mContext;
+    }
+
+    /**
+     * Returns the device image holding this slab, halo planes included.
+     *
+     * @return slab image
+     */
+    public ClearCLImage getImage()
+    {
+      return mImage;
+    }
+
+    /**
+     * Returns the z coordinate in the volume of the first core plane.
+     *
+     * @return z of first core plane
+     */
+    public long getCoreZ()
+    {
+      return mCoreZ;
+    }
+
+    /**
+     * Returns the number of core planes.
+     *
+     * @return core depth
+     */
+    public long getCoreDepth()
+    {
+      return mCoreDepth;
+    }
+
+    /**
+     * Returns the number of halo planes below the core planes. These are the
+     * first planes of the slab image.
+     *
+     * @return number of halo planes below
+     */
+    public int getHaloBelow()
+    {
+      return mHaloBelow;
+    }
+
+    /**
+     * Returns the number of halo planes above the core planes. These are the
+     * last planes of the slab image.
+     *
+     * @return number of halo planes above
+     */
+    public int getHaloAbove()
+    {
+      return mHaloAbove;
+    }
+
+    /**
+     * Returns the z coordinate in the volume of the first plane of the slab
+     * image.
+     *
+     * @return z of first slab image plane
+     */
+    public long getSlabZ()
+    {
+      return mCoreZ - mHaloBelow;
+    }
+
+    /**
+     * Returns the number of planes of the slab image.
+     *
+     * @return slab image depth
+     */
+    public long getSlabDepth()
+    {
+      return mHaloBelow + mCoreDepth + mHaloAbove;
+    }
+  }
+
+  /**
+   * Instantiates a distributed image over a list of contexts, with the minimal
+   * number of slabs given the maximal allocation sizes of the devices - and at
+   * least one slab per context.
+   *
+   * @param pContexts
+   *          contexts
+   * @param pChannelOrder
+   *          channel order
+   * @param pChannelDataType
+   *          channel data type
+   * @param pHaloWidth
+   *          number of halo planes below and above each slab
+   * @param pWidth
+   *          width
+   * @param pHeight
+   *          height
+   * @param pDepth
+   *          depth
+   */
+  public DistributedImage(List<ClearCLContext> pContexts,
+                          ImageChannelOrder pChannelOrder,
+                          ImageChannelDataType pChannelDataType,
+                          int pHaloWidth,
+                          long pWidth,
+                          long pHeight,
+                          long pDepth)
+  {
+    this(pContexts,
+         getMinimalNumberOfSlabs(pContexts,
+                                 pChannelOrder,
+                                 pChannelDataType,
+                                 pHaloWidth,
+                                 pWidth,
+                                 pHeight,
+                                 pDepth),
+         pChannelOrder,
+         pChannelDataType,
+         pHaloWidth,
+         pWidth,
+         pHeight,
+         pDepth);
+  }
+
+  /**
+   * Instantiates a distributed image with the same contexts, halo width,
+   * dimensions and slabs as a given distributed image, but a different channel
+   * order and data type.
+   *
+   * @param pTemplate
+   *          template distributed image
+   * @param pChannelOrder
+   *          channel order
+   * @param pChannelDataType
+   *          channel data type
+   */
+  public DistributedImage(DistributedImage pTemplate,
+                          ImageChannelOrder pChannelOrder,
+                          ImageChannelDataType pChannelDataType)
+  {
+    this(getContexts(pTemplate),
+         pTemplate.getNumberOfSlabs(),
+         pChannelOrder,
+         pChannelDataType,
+         pTemplate.getHaloWidth(),
+         pTemplate.getWidth(),
+         pTemplate.getHeight(),
+         pTemplate.getDepth());
+  }
+
+  /**
+   * Instantiates a distributed image over a list of contexts with a given
+   * number of slabs. Slabs have the same number of core planes, up to one, and
+   * consecutive slabs are assigned to the same context.
+   *
+   * @param pContexts
+   *          contexts
+   * @param pNumberOfSlabs
+   *          number of slabs
+   * @param pChannelOrder
+   *          channel order
+   * @param pChannelDataType
+   *          channel data type
+   * @param pHaloWidth
+   *          number of halo planes below and above each slab
+   * @param pWidth
+   *          width
+   * @param pHeight
+   *          height
+   * @param pDepth
+   *          depth
+   */
+  public DistributedImage(List<ClearCLContext> pContexts,
+                          int pNumberOfSlabs,
+                          ImageChannelOrder pChannelOrder,
+                          ImageChannelDataType pChannelDataType,
+                          int pHaloWidth,
+                          long pWidth,
+                          long pHeight,
+                          long pDepth)
+  {
+    if (pContexts.isEmpty())
+      throw new ClearCLIllegalArgumentException("At least one context is required");
+    if (pNumberOfSlabs < 1 || pNumberOfSlabs > pDepth)
+      throw new ClearCLIllegalArgumentException("Invalid number of slabs: "
+                                                + pNumberOfSlabs);
+    if (pHaloWidth < 0)
+      throw new ClearCLIllegalArgumentException("Invalid halo width: "
+                                                + pHaloWidth);
+
+    mContexts = pContexts.toArray(new ClearCLContext[pContexts.size()]);
+    mChannelOrder = pChannelOrder;
+    mChannelDataType = pChannelDataType;
+    mWidth = pWidth;
+    mHeight = pHeight;
+    mDepth = pDepth;
+    mHaloWidth = pHaloWidth;
+    mSlabs = new Slab[pNumberOfSlabs];
+    mHaloStagingMemory = new OffHeapMemory[2 * pNumberOfSlabs];
+
+    try
+    {
+      for (int s = 0; s < pNumberOfSlabs; s++)
+      {
+        long lCoreZ = pDepth * s / pNumberOfSlabs;
+        long lCoreDepth = pDepth * (s + 1) / pNumberOfSlabs - lCoreZ;
+
+        // halos are copied from the immediate neighbours only:
+        if (pNumberOfSlabs > 1 && lCoreDepth < pHaloWidth)
+          throw new ClearCLIllegalArgumentException(String.format("Slabs of %d planes are too thin for a halo width of %d",
+                                                                  lCoreDepth,
+                                                                  pHaloWidth));
+
+        int lHaloBelow = (int) Math.min(pHaloWidth, lCoreZ);
+        int lHaloAbove = (int) Math.min(pHaloWidth,
+                                        pDepth - lCoreZ - lCoreDepth);
+        ClearCLContext lContext =
+                                mContexts[(int) ((long) s * mContexts.length
+                                                 / pNumberOfSlabs)];
+        ClearCLImage lImage =
+                            lContext.createImage(MemAllocMode.Best,
+                                                 HostAccessType.ReadWrite,
+                                                 KernelAccessType.ReadWrite,
+                                                 pChannelOrder,
+                                                 pChannelDataType,
+                                                 pWidth,
+                                                 pHeight,
+                                                 lHaloBelow + lCoreDepth
+                                                          + lHaloAbove);
+        mSlabs[s] = new Slab(s,
+                             lContext,
+                             lImage,
+                             lCoreZ,
+                             lCoreDepth,
+                             lHaloBelow,
+                             lHaloAbove);
+      }
+    }
+    catch (RuntimeException e)
+    {
+      close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the minimal number of slabs for a distributed image given the
+   * maximal allocation size of each device, and at least one per context.
+   *
+   * @param pContexts
+   *          contexts
+   * @param pChannelOrder
+   *          channel order
+   * @param pChannelDataType
+   *          channel data type
+   * @param pHaloWidth
+   *          halo width
+   * @param pWidth
+   *          width
+   * @param pHeight
+   *          height
+   * @param pDepth
+   *          depth
+   * @return minimal number of slabs
+   */
+  public static int getMinimalNumberOfSlabs(List<ClearCLContext> pContexts,
+                                            ImageChannelOrder pChannelOrder,
+                                            ImageChannelDataType pChannelDataType,
+                                            int pHaloWidth,
+                                            long pWidth,
+                                            long pHeight,
+                                            long pDepth)
+  {
+    long lPlaneSizeInBytes = pWidth * pHeight
+                             * pChannelOrder.getNumberOfChannels()
+                             * pChannelDataType.getNativeType()
+                                               .getSizeInBytes();
+
+    long lMaxAllocationSizeInBytes = Long.MAX_VALUE;
+    for (ClearCLContext lContext : pContexts)
+      lMaxAllocationSizeInBytes =
+                                Math.min(lMaxAllocationSizeInBytes,
+                                         lContext.getDevice()
+                                                 .getMaxMemoryAllocationSizeInBytes());
+
+    long lMaxCoreDepth = lMaxAllocationSizeInBytes / lPlaneSizeInBytes
+                         - 2 * pHaloWidth;
+    if (lMaxCoreDepth < Math.max(1, pHaloWidth))
+      throw new ClearCLAllocationException(String.format("Planes of %d bytes with a halo width of %d do not fit in allocations of %d bytes",
+                                                         lPlaneSizeInBytes,
+                                                         pHaloWidth,
+                                                         lMaxAllocationSizeInBytes));
+
+    long lNumberOfSlabs = Math.max(pContexts.size(),
+                                   (pDepth + lMaxCoreDepth - 1)
+                                                     / lMaxCoreDepth);
+    return (int) Math.min(lNumberOfSlabs, pDepth);
+  }
+
+  private static List<ClearCLContext> getContexts(DistributedImage pDistributedImage)
+  {
+    ArrayList<ClearCLContext> lContexts = new ArrayList<>();
+    for (ClearCLContext lContext : pDistributedImage.mContexts)
+      lContexts.add(lContext);
+    return lContexts;
+  }
+
+  /**
+   * Uploads a whole volume from host memory into the slabs, halo planes
+   * included.
+   *
+   * @param pContiguousMemory
+   *          host memory holding the volume
+   * @param pBlockingRead
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void readFrom(ContiguousMemoryInterface pContiguousMemory,
+                       boolean pBlockingRead)
+  {
+    checkVolumeSize(pContiguousMemory);
+    long lPlaneSizeInBytes = getPlaneSizeInBytes();
+
+    for (Slab lSlab : mSlabs)
+    {
+      ContiguousMemoryInterface lSlabMemory =
+                                            pContiguousMemory.subRegion(lSlab.getSlabZ()
+                                                                        * lPlaneSizeInBytes,
+                                                                        lSlab.getSlabDepth()
+                                                                                             * lPlaneSizeInBytes);
+      lSlab.mImage.readFrom(getQueue(lSlab),
+                            lSlabMemory,
+                            new long[]
+                            { 0, 0, 0 },
+                            new long[]
+                            { mWidth, mHeight, lSlab.getSlabDepth() },
+                            false);
+    }
+
+    if (pBlockingRead)
+      waitToFinish();
+  }
+
+  /**
+   * Downloads the whole volume, i.e. the core planes of all slabs, into host
+   * memory.
+   *
+   * @param pContiguousMemory
+   *          host memory receiving the volume
+   * @param pBlockingWrite
+   *          true -> blocking call, false -> asynchronous call
+   */
+  public void writeTo(ContiguousMemoryInterface pContiguousMemory,
+                      boolean pBlockingWrite)
+  {
+    checkVolumeSize(pContiguousMemory);
+    long lPlaneSizeInBytes = getPlaneSizeInBytes();
+
+    for (Slab lSlab : mSlabs)
+    {
+      ContiguousMemoryInterface lCoreMemory =
+                                            pContiguousMemory.subRegion(lSlab.mCoreZ
+                                                                        * lPlaneSizeInBytes,
+                                                                        lSlab.mCoreDepth
+                                                                                             * lPlaneSizeInBytes);
+      lSlab.mImage.writeTo(getQueue(lSlab),
+                           lCoreMemory,
+                           new long[]
+                           { 0, 0, lSlab.mHaloBelow },
+                           new long[]
+                           { mWidth, mHeight, lSlab.mCoreDepth },
+                           false);
+    }
+
+    if (pBlockingWrite)
+      waitToFinish();
+  }
+
+  /**
+   * Refreshes the halo planes of all slabs from the core planes of their
+   * neighbours. This call blocks until all halos are refreshed.
+   */
+  public void exchangeHalos()
+  {
+    for (int s = 0; s + 1 < mSlabs.length; s++)
+    {
+      Slab lLower = mSlabs[s];
+      Slab lUpper = mSlabs[s + 1];
+
+      // last core planes of lower slab -> halo below of upper slab:
+      copyPlanes(lLower,
+                 lLower.mHaloBelow + lLower.mCoreDepth
+                         - lUpper.mHaloBelow,
+                 lUpper,
+                 0,
+                 lUpper.mHaloBelow,
+                 2 * s);
+
+      // first core planes of upper slab -> halo above of lower slab:
+      copyPlanes(lUpper,
+                 lUpper.mHaloBelow,
+                 lLower,
+                 lLower.mHaloBelow + lLower.mCoreDepth,
+                 lLower.mHaloAbove,
+                 2 * s + 1);
+    }
+    waitToFinish();
+  }
+
+  private void copyPlanes(Slab pSrcSlab,
+                          long pSrcZ,
+                          Slab pDstSlab,
+                          long pDstZ,
+                          long pNumberOfPlanes,
+                          int pStagingIndex)
+  {
+    if (pNumberOfPlanes == 0)
+      return;
+
+    long[] lSrcOrigin = new long[]
+    { 0, 0, pSrcZ };
+    long[] lDstOrigin = new long[]
+    { 0, 0, pDstZ };
+    long[] lRegion = new long[]
+    { mWidth, mHeight, pNumberOfPlanes };
+
+    if (pSrcSlab.mContext == pDstSlab.mContext)
+    {
+      pSrcSlab.mImage.copyTo(getQueue(pSrcSlab),
+                             pDstSlab.mImage,
+                             lSrcOrigin,
+                             lDstOrigin,
+                             lRegion,
+                             false);
+    }
+    else
+    {
+      if (mHaloStagingMemory[pStagingIndex] == null)
+        mHaloStagingMemory[pStagingIndex] =
+                                          OffHeapMemory.allocateBytes(pNumberOfPlanes
+                                                                      * getPlaneSizeInBytes());
+      OffHeapMemory lStagingMemory = mHaloStagingMemory[pStagingIndex];
+      pSrcSlab.mImage.writeTo(getQueue(pSrcSlab),
+                              lStagingMemory,
+                              lSrcOrigin,
+                              lRegion,
+                              true);
+      pDstSlab.mImage.readFrom(getQueue(pDstSlab),
+                               lStagingMemory,
+                               lDstOrigin,
+                               lRegion,
+                               false);
+    }
+  }
+
+  /**
+   * Runs a kernel over the core planes of all slabs. Slabs on different
+   * contexts are processed concurrently. All distributed images passed as
+   * arguments must have the same slabs as this image. This call blocks until
+   * all slabs are processed, halos of the images written by the kernel are not
+   * refreshed - see {@link #exchangeHalos()}.
+   *
+   * @param pKernel
+   *          distributed kernel
+   */
+  public void run(DistributedKernel pKernel)
+  {
+    for (Slab lSlab : mSlabs)
+    {
+      ClearCLKernel lKernel = pKernel.getKernel(lSlab.mContext);
+      for (Map.Entry<String, Object> lEntry : pKernel.getArguments()
+                                                     .entrySet())
+      {
+        Object lValue = lEntry.getValue();
+        if (lValue instanceof DistributedImage)
+        {
+          DistributedImage lDistributedImage = (DistributedImage) lValue;
+          if (!hasSameSlabsAs(lDistributedImage))
+            throw new ClearCLIllegalArgumentException("Distributed image argument '"
+                                                      + lEntry.getKey()
+                                                      + "' has different slabs");
+          lValue = lDistributedImage.mSlabs[lSlab.mIndex].mImage;
+        }
+        lKernel.setArgument(lEntry.getKey(), lValue);
+      }
+      lKernel.setOptionalArgument(DistributedKernel.cSlabZArgumentName,
+                                  (int) lSlab.getSlabZ());
+
+      lKernel.setGlobalOffsets(0, 0, lSlab.mHaloBelow);
+      lKernel.setGlobalSizes(mWidth, mHeight, lSlab.mCoreDepth);
+      lKernel.run(getQueue(lSlab), false);
+    }
+    waitToFinish();
+  }
+
+  /**
+   * Returns true if the given distributed image has the same contexts,
+   * dimensions and slabs as this one.
+   *
+   * @param pDistributedImage
+   *          other distributed image
+   * @return true if slabs match
+   */
+  public boolean hasSameSlabsAs(DistributedImage pDistributedImage)
+  {
+    if (pDistributedImage == this)
+      return true;
+    if (pDistributedImage.mWidth != mWidth
+        || pDistributedImage.mHeight != mHeight
+        || pDistributedImage.mDepth != mDepth
+        || pDistributedImage.mSlabs.length != mSlabs.length)
+      return false;
+    for (int s = 0; s < mSlabs.length; s++)
+    {
+      Slab lSlab = mSlabs[s];
+      Slab lOtherSlab = pDistributedImage.mSlabs[s];
+      if (lSlab.mContext != lOtherSlab.mContext
+          || lSlab.mCoreZ != lOtherSlab.mCoreZ
+          || lSlab.mHaloBelow != lOtherSlab.mHaloBelow
+          || lSlab.mHaloAbove != lOtherSlab.mHaloAbove)
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Waits for all commands enqueued on the slabs to finish.
+   */
+  public void waitToFinish()
+  {
+    for (ClearCLContext lContext : mContexts)
+      lContext.getDefaultQueue().waitToFinish();
+  }
+
+  private ClearCLQueue getQueue(Slab pSlab)
+  {
+    return pSlab.mContext.getDefaultQueue();
+  }
+
+  private void checkVolumeSize(ContiguousMemoryInterface pContiguousMemory)
+  {
+    if (pContiguousMemory.getSizeInBytes() != getPlaneSizeInBytes()
+                                              * mDepth)
+      throw new ClearCLIllegalArgumentException("Host memory size does not match volume size");
+  }
+
+  private long getPlaneSizeInBytes()
+  {
+    return mWidth * mHeight
+           * mChannelOrder.getNumberOfChannels()
+           * mChannelDataType.getNativeType().getSizeInBytes();
+  }
+
+  /**
+   * Returns the number of slabs.
+   *
+   * @return number of slabs
+   */
+  public int getNumberOfSlabs()
+  {
+    return mSlabs.length;
+  }
+
+  /**
+   * Returns the slab of given index, slabs are ordered by increasing z.
+   *
+   * @param pSlabIndex
+   *          slab index
+   * @return slab
+   */
+  public Slab getSlab(int pSlabIndex)
+  {
+    return mSlabs[pSlabIndex];
+  }
+
+  /**
+   * Returns the halo width.
+   *
+   * @return halo width
+   */
+  public int getHaloWidth()
+  {
+    return mHaloWidth;
+  }
+
+  /**
+   * Returns the channel order.
+   *
+   * @return channel order
+   */
+  public ImageChannelOrder getChannelOrder()
+  {
+    return mChannelOrder;
+  }
+
+  /**
+   * Returns the channel data type.
+   *
+   * @return channel data type
+   */
+  public ImageChannelDataType getChannelDataType()
+  {
+    return mChannelDataType;
+  }
+
+  /**
+   * Returns the width of the volume.
+   *
+   * @return width
+   */
+  public long getWidth()
+  {
+    return mWidth;
+  }
+
+  /**
+   * Returns the height of the volume.
+   *
+   * @return height
+   */
+  public long getHeight()
+  {
+    return mHeight;
+  }
+
+  /**
+   * Returns the depth of the volume.
+   *
+   * @return depth
+   */
+  public long getDepth()
+  {
+    return mDepth;
+  }
+
+  @Override
+  public void close()
+  {
+    for (int s = 0; s < mSlabs.length; s++)
+      if (mSlabs[s] != null)
+      {
+        mSlabs[s].mImage.close();
+        mSlabs[s] = null;
+      }
+    for (int i = 0; i < mHaloStagingMemory.length; i++)
+      if (mHaloStagingMemory[i] != null)
+      {
+        mHaloStagingMemory[i].free();
+        mHaloStagingMemory[i] = null;
+      }
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format("DistributedImage [%dx%dx%d, %s, %s, mHaloWidth=%d, %d slabs]",
+                         mWidth,
+                         mHeight,
+                         mDepth,
+                         mChannelOrder,
+                         mChannelDataType,
+                         mHaloWidth,
+                         mSlabs.length);
+  }
+
+}
@@ -0,0 +1,185 @@
+package clearcl.distributed;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import clearcl.ClearCLContext;
+import clearcl.ClearCLKernel;
+import clearcl.ClearCLProgram;
+import clearcl.enums.BuildStatus;
+import clearcl.exceptions.ClearCLException;
+
+/**
+ * Kernel run over all slabs of {@link DistributedImage}s. The program is given
+ * as resources relative to a reference class and is built on each context
+ * holding slabs when first needed. Arguments are either scalars, passed
+ * unchanged to every slab, or distributed images, for which each slab run
+ * receives the image of the corresponding slab.
+ *
+ * The kernel is run over the core planes of each slab: get_global_id(2) is the
+ * z coordinate within the slab image, halo planes included. A kernel that
+ * declares an int argument named {@value #cSlabZArgumentName} receives the z
+ * coordinate of the first plane of the slab image in the whole volume.
+ *
+ * @author royer
+ */
+public class DistributedKernel implements AutoCloseable
+{
+  /**
+   * Name of the optional kernel argument receiving the z coordinate of the
+   * first plane of a slab image in the whole volume.
+   */
+  public static final String cSlabZArgumentName = "slabz";
+
+  private final Class<?> mClassForRessource;
+  private final String[] mRessourceNames;
+  private final String mKernelName;
+  private final Map<String, String> mDefines = new LinkedHashMap<>();
+  private final Map<String, Object> mArguments = new LinkedHashMap<>();
+  private final Map<ClearCLContext, ClearCLProgram> mPrograms =
+                                                              new HashMap<>();
+
+  /**
+   * Instantiates a distributed kernel for a given kernel of a program made of
+   * resources located relative to a reference class.
+   *
+   * @param pClassForRessource
+   *          reference class to locate resources
+   * @param pRessourceName
+   *          resource file name (relative to reference class)
+   * @param pKernelName
+   *          kernel name
+   */
+  public DistributedKernel(Class<?> pClassForRessource,
+                           String pRessourceName,
+                           String pKernelName)
+  {
+    mClassForRessource = pClassForRessource;
+    mRessourceNames = new String[]
+    { pRessourceName };
+    mKernelName = pKernelName;
+  }
+
+  /**
+   * Adds a define to the program. Must be called before the kernel is first
+   * run.
+   *
+   * @param pSymbol
+   *          symbol
+   */
+  public void addDefine(String pSymbol)
+  {
+    mDefines.put(pSymbol, "");
+  }
+
+  /**
+   * Adds a define with a value to the program. Must be called before the
+   * kernel is first run.
+   *
+   * @param pKey
+   *          key
+   * @param pValue
+   *          value
+   */
+  public void addDefine(String pKey, Object pValue)
+  {
+    mDefines.put(pKey, pValue.toString());
+  }
+
+  /**
+   * Sets a scalar argument, passed unchanged to the kernel for all slabs.
+   *
+   * @param pArgumentName
+   *          argument name
+   * @param pValue
+   *          value
+   */
+  public void setArgument(String pArgumentName, Number pValue)
+  {
+    mArguments.put(pArgumentName, pValue);
+  }
+
+  /**
+   * Sets a distributed image argument: for each slab, the kernel receives the
+   * image of that slab.
+   *
+   * @param pArgumentName
+   *          argument name
+   * @param pDistributedImage
+   *          distributed image
+   */
+  public void setArgument(String pArgumentName,
+                          DistributedImage pDistributedImage)
+  {
+    mArguments.put(pArgumentName, pDistributedImage);
+  }
+
+  /**
+   * Returns the kernel name.
+   *
+   * @return kernel name
+   */
+  public String getKernelName()
+  {
+    return mKernelName;
+  }
+
+  Map<String, Object> getArguments()
+  {
+    return mArguments;
+  }
+
+  /**
+   * Returns the kernel for a given context, building the program if needed.
+   *
+   * @param pContext
+   *          context
+   * @return kernel
+   */
+  synchronized ClearCLKernel getKernel(ClearCLContext pContext)
+  {
+    ClearCLProgram lProgram = mPrograms.get(pContext);
+    if (lProgram == null)
+    {
+      try
+      {
+        lProgram = pContext.createProgram(mClassForRessource,
+                                          mRessourceNames);
+        for (Map.Entry<String, String> lEntry : mDefines.entrySet())
+          lProgram.addDefine(lEntry.getKey(), lEntry.getValue());
+
+        if (lProgram.buildAndLog() != BuildStatus.Success)
+        {
+          lProgram.close();
+          throw new ClearCLException("Could not build program for distributed kernel "
+                                     + mKernelName);
+        }
+      }
+      catch (IOException e)
+      {
+        throw new ClearCLException("Could not load program for distributed kernel "
+                                   + mKernelName, e);
+      }
+      mPrograms.put(pContext, lProgram);
+    }
+    return lProgram.getKernel(mKernelName);
+  }
+
+  @Override
+  public synchronized void close()
+  {
+    for (ClearCLProgram lProgram : mPrograms.values())
+      lProgram.close();
+    mPrograms.clear();
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format("DistributedKernel [mKernelName=%s]",
+                         mKernelName);
+  }
+
+}
@@ -0,0 +1,235 @@
+package clearcl.distributed.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeFalse;
+
+import java.util.Arrays;
+
+import clearcl.ClearCL;
+import clearcl.ClearCLContext;
+import clearcl.ClearCLDevice;
+import clearcl.backend.ClearCLBackendInterface;
+import clearcl.backend.ClearCLBackends;
+import clearcl.backend.purejava.ClearCLBackendPureJava;
+import clearcl.distributed.DistributedImage;
+import clearcl.distributed.DistributedImage.Slab;
+import clearcl.distributed.DistributedKernel;
+import clearcl.enums.ImageChannelDataType;
+import clearcl.enums.ImageChannelOrder;
+import clearcl.exceptions.ClearCLIllegalArgumentException;
+import coremem.offheap.OffHeapMemory;
+
+import org.junit.Test;
+
+/**
+ * Distributed image tests
+ *
+ * @author royer
+ */
+public class DistributedImageTests
+{
+  private static final int cWidth = 17, cHeight = 13, cDepth = 29;
+  private static final int cHaloWidth = 2;
+
+  /**
+   * Splits a volume into slabs over two contexts, checks the round trip
+   * through host memory, and checks that halos are refreshed from the core
+   * planes of neighbouring slabs both within and across contexts.
+   */
+  @Test
+  public void testSlabsAndHalos()
+  {
+    try (ClearCL lClearCL = new ClearCL(new ClearCLBackendPureJava()))
+    {
+      ClearCLDevice lDevice = lClearCL.getBestCPUDevice();
+      ClearCLContext lContextA = lDevice.createContext();
+      ClearCLContext lContextB = lDevice.createContext();
+
+      int lPlaneLength = cWidth * cHeight;
+      OffHeapMemory lVolume =
+                            OffHeapMemory.allocateShorts(lPlaneLength
+                                                         * cDepth);
+      for (int i = 0; i < lPlaneLength * cDepth; i++)
+        lVolume.setShortAligned(i, (short) (i % 30011));
+
+      try (DistributedImage lDistributedImage =
+                                              new DistributedImage(Arrays.asList(lContextA,
+                                                                                 lContextB),
+                                                                   4,
+                                                                   ImageChannelOrder.R,
+                                                                   ImageChannelDataType.UnsignedInt16,
+                                                                   cHaloWidth,
+                                                                   cWidth,
+                                                                   cHeight,
+                                                                   cDepth))
+      {
+        assertEquals(4, lDistributedImage.getNumberOfSlabs());
+        assertEquals(0, lDistributedImage.getSlab(0).getHaloBelow());
+        assertEquals(cHaloWidth,
+                     lDistributedImage.getSlab(1).getHaloBelow());
+        assertEquals(0, lDistributedImage.getSlab(3).getHaloAbove());
+        assertEquals(lContextA, lDistributedImage.getSlab(1).getContext());
+        assertEquals(lContextB, lDistributedImage.getSlab(2).getContext());
+
+        lDistributedImage.readFrom(lVolume, true);
+
+        // clobber all halos:
+        for (int s = 0; s < lDistributedImage.getNumberOfSlabs(); s++)
+        {
+          Slab lSlab = lDistributedImage.getSlab(s);
+          OffHeapMemory lSlabMemory =
+                                    OffHeapMemory.allocateShorts(lPlaneLength
+                                                                 * lSlab.getSlabDepth());
+          lSlab.getImage().writeTo(lSlabMemory, true);
+          for (int i = 0; i < lPlaneLength * lSlab.getHaloBelow(); i++)
+            lSlabMemory.setShortAligned(i, (short) -1);
+          for (long i = lPlaneLength * (lSlab.getSlabDepth()
+                                        - lSlab.getHaloAbove()); i < lPlaneLength
+                                                                     * lSlab.getSlabDepth(); i++)
+            lSlabMemory.setShortAligned(i, (short) -1);
+          lSlab.getImage().readFrom(lSlabMemory, true);
+          lSlabMemory.free();
+        }
+
+        lDistributedImage.exchangeHalos();
+
+        for (int s = 0; s < lDistributedImage.getNumberOfSlabs(); s++)
+        {
+          Slab lSlab = lDistributedImage.getSlab(s);
+          OffHeapMemory lSlabMemory =
+                                    OffHeapMemory.allocateShorts(lPlaneLength
+                                                                 * lSlab.getSlabDepth());
+          lSlab.getImage().writeTo(lSlabMemory, true);
+          long lOffset = lSlab.getSlabZ() * lPlaneLength;
+          for (int i = 0; i < lPlaneLength * lSlab.getSlabDepth(); i++)
+            assertEquals(lVolume.getShortAligned(lOffset + i),
+                         lSlabMemory.getShortAligned(i));
+          lSlabMemory.free();
+        }
+
+        OffHeapMemory lResult =
+                              OffHeapMemory.allocateShorts(lPlaneLength
+                                                           * cDepth);
+        lDistributedImage.writeTo(lResult, true);
+        for (int i = 0; i < lPlaneLength * cDepth; i++)
+          assertEquals(lVolume.getShortAligned(i),
+                       lResult.getShortAligned(i));
+        lResult.free();
+      }
+
+      lVolume.free();
+      lContextB.close();
+      lContextA.close();
+    }
+  }
+
+  /**
+   * Runs a 3-plane z average with a halo of one plane over slabs on two
+   * contexts and compares it with a host reference, including the planes at
+   * slab and volume boundaries. The kernel adds the scaled z coordinate in the
+   * whole volume, which checks the global offsets over the core planes and the
+   * slab z argument. Also checks that images with different slabs are
+   * rejected. The stencil kernel only exists as OpenCL source, so this test is
+   * skipped when no OpenCL device is available.
+   */
+  @Test
+  public void testRunKernel()
+  {
+    ClearCLBackendInterface lBackend = ClearCLBackends.getBestBackend();
+    assumeFalse("no OpenCL device",
+                lBackend instanceof ClearCLBackendPureJava);
+
+    try (ClearCL lClearCL = new ClearCL(lBackend))
+    {
+      ClearCLDevice lDevice = lClearCL.getBestGPUDevice();
+      ClearCLContext lContextA = lDevice.createContext();
+      ClearCLContext lContextB = lDevice.createContext();
+
+      int lPlaneLength = cWidth * cHeight;
+      float lZScale = 1000;
+      OffHeapMemory lVolume =
+                            OffHeapMemory.allocateFloats(lPlaneLength
+                                                         * cDepth);
+      for (int i = 0; i < lPlaneLength * cDepth; i++)
+        lVolume.setFloatAligned(i, (i * 7919) % 1009);
+
+      try (DistributedImage lSource =
+                                    new DistributedImage(Arrays.asList(lContextA,
+                                                                       lContextB),
+                                                         4,
+                                                         ImageChannelOrder.R,
+                                                         ImageChannelDataType.Float,
+                                                         1,
+                                                         cWidth,
+                                                         cHeight,
+                                                         cDepth);
+          DistributedImage lDestination =
+                                        new DistributedImage(lSource,
+                                                             ImageChannelOrder.R,
+                                                             ImageChannelDataType.Float);
+          DistributedImage lOtherSlabs =
+                                       new DistributedImage(Arrays.asList(lContextA,
+                                                                          lContextB),
+                                                            2,
+                                                            ImageChannelOrder.R,
+                                                            ImageChannelDataType.Float,
+                                                            1,
+                                                            cWidth,
+                                                            cHeight,
+                                                            cDepth);
+          DistributedKernel lKernel =
+                                    new DistributedKernel(DistributedImageTests.class,
+                                                          "stencil.cl",
+                                                          "zaverage"))
+      {
+        lSource.readFrom(lVolume, true);
+
+        lKernel.setArgument("src", lSource);
+        lKernel.setArgument("dst", lDestination);
+        lKernel.setArgument("zscale", lZScale);
+        lSource.run(lKernel);
+
+        OffHeapMemory lResult =
+                              OffHeapMemory.allocateFloats(lPlaneLength
+                                                           * cDepth);
+        lDestination.writeTo(lResult, true);
+        for (int z = 0; z < cDepth; z++)
+          for (int i = 0; i < lPlaneLength; i++)
+          {
+            float lSum =
+                       lVolume.getFloatAligned(Math.max(0, z - 1)
+                                               * lPlaneLength
+                                               + i)
+                         + lVolume.getFloatAligned(z * lPlaneLength
+                                                   + i)
+                         + lVolume.getFloatAligned(Math.min(cDepth - 1,
+                                                            z + 1)
+                                                   * lPlaneLength
+                                                   + i);
+            assertEquals(lSum / 3 + lZScale * z,
+                         lResult.getFloatAligned(z * lPlaneLength + i),
+                         1e-2);
+          }
+        lResult.free();
+
+        lKernel.setArgument("dst", lOtherSlabs);
+        try
+        {
+          lSource.run(lKernel);
+          fail();
+        }
+        catch (ClearCLIllegalArgumentException e)
+        {
+          assertTrue(e.getMessage().contains("dst"));
+        }
+      }
+
+      lVolume.free();
+      lContextB.close();
+      lContextA.close();
+    }
+  }
+
+}
@@ -0,0 +1,25 @@
+// Z stencil used to test distributed kernels: each plane is averaged with the
+// planes just below and above, read from the halo planes at slab boundaries and
+// clamped at the volume boundaries. The z coordinate in the whole volume is
+// added, scaled, to check the global offsets and the slab z argument.
+
+__constant sampler_t clampsampler = CLK_NORMALIZED_COORDS_FALSE | CLK_ADDRESS_CLAMP_TO_EDGE | CLK_FILTER_NEAREST;
+
+__kernel
+void zaverage(__read_only  image3d_t src,
+              __write_only image3d_t dst,
+                     const float     zscale,
+                     const int       slabz)
+{
+  const int x = get_global_id(0);
+  const int y = get_global_id(1);
+  const int z = get_global_id(2);
+
+  const float sum = read_imagef(src, clampsampler, (int4){x,y,z-1,0}).x
+                  + read_imagef(src, clampsampler, (int4){x,y,z,0}).x
+                  + read_imagef(src, clampsampler, (int4){x,y,z+1,0}).x;
+
+  const float value = sum/3.0f + zscale*(float)(slabz+z);
+
+  write_imagef(dst, (int4){x,y,z,0}, (float4){value,0.0f,0.0f,0.0f});
+}
@@ -0,0 +1,49 @@
+package clearcl.enums;
+
+/**
+ * OpenCl event execution status.
+ *
+ * @author royer
+ */
+@SuppressWarnings("javadoc")
+public enum EventStatus
+{
+ Queued, Submitted, Running, Complete, Error;
+
+  /**
+   * Returns the event status corresponding to a raw OpenCL execution status
+   * value (CL_QUEUED, CL_SUBMITTED, CL_RUNNING, CL_COMPLETE or a negative
+   * error code).
+   * 
+   * @param pExecutionStatus
+   *          raw OpenCL execution status
+   * @return event status
+   */
+  public static EventStatus fromOpenCL(int pExecutionStatus)
+  {
+    switch (pExecutionStatus)
+    {
+    case 0:
+      return Complete;
+    case 1:
+      return Running;
+    case 2:
+      return Submitted;
+    case 3:
+      return Queued;
+    default:
+      return Error;
+    }
+  }
+
+  /**
+   * Returns true if this status corresponds to a finished command, either
+   * successfully or not.
+   * 
+   * @return true if finished
+   */
+  public boolean isFinished()
+  {
+    return this == Complete || this == Error;
+  }
+}
@@ -0,0 +1,26 @@
+package clearcl.enums;
+
+/**
+ * Direction of a memory transfer
+ *
+ * @author royer
+ */
+@SuppressWarnings("javadoc")
+public enum TransferDirection
+{
+ HostToDevice("hostToDevice"),
+ DeviceToHost("deviceToHost"),
+ DeviceToDevice("deviceToDevice");
+
+  private final String mMetricName;
+
+  private TransferDirection(String pMetricName)
+  {
+    mMetricName = pMetricName;
+  }
+
+  public String getMetricName()
+  {
+    return mMetricName;
+  }
+}
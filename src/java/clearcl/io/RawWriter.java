@@ -1,46 +1,89 @@
 package clearcl.io;
 
-import static java.lang.Math.max;
 import static java.lang.Math.min;
 import static java.lang.Math.round;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.channels.FileChannel;
-import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 
+import clearcl.ClearCLBuffer;
+import clearcl.ClearCLContext;
+import clearcl.ClearCLEvent;
+import clearcl.ClearCLHostImageBuffer;
+import clearcl.ClearCLImage;
+import clearcl.ClearCLQueue;
+import clearcl.exceptions.ClearCLIllegalArgumentException;
+import clearcl.exceptions.ClearCLUnsupportedException;
 import clearcl.interfaces.ClearCLImageInterface;
-import coremem.buffers.ContiguousBuffer;
+import clearcl.util.Region3;
+import coremem.ContiguousMemoryInterface;
 import coremem.enums.NativeTypeEnum;
 import coremem.offheap.OffHeapMemory;
 import coremem.util.Size;
 
 /**
- * Image raw writer
+ * Image raw writer. Images are written plane by plane straight from the pinned
+ * staging memory to the file: the download of plane z+1 from the device
+ * overlaps with the conversion and writing of plane z, and conversion is done
+ * in parallel chunks into a reused off-heap plane. Writes
+ * can also be submitted asynchronously, the caller only blocks when the
+ * bounded queue of pending writes is full.
  *
  * @author royer
  */
 public class RawWriter extends WriterBase
                        implements WriterInterface, AutoCloseable
 {
+  private static final int cDefaultMaxPendingWrites = 2;
+  private static final int cConversionChunkLength = 1 << 16;
 
-  private OffHeapMemory mTransferMemory, mTempMemory;
+  private final int mMaxPendingWrites;
+  private final Semaphore mPendingWritesSemaphore;
+  private volatile ExecutorService mWriterExecutor;
+
+  private ClearCLContext mStagingContext;
+  private final ClearCLHostImageBuffer[] mStagingPlanes =
+                                                        new ClearCLHostImageBuffer[2];
+  private OffHeapMemory mConvertedPlane;
 
   /**
    * Instanciates a image raw writer.
-   * 
+   *
    */
   public RawWriter()
+  {
+    this(cDefaultMaxPendingWrites);
+  }
+
+  /**
+   * Instanciates a image raw writer with a given maximal number of pending
+   * asynchronous writes.
+   *
+   * @param pMaxPendingWrites
+   *          maximal number of pending asynchronous writes
+   */
+  public RawWriter(int pMaxPendingWrites)
   {
     super();
+    mMaxPendingWrites = pMaxPendingWrites;
+    mPendingWritesSemaphore = new Semaphore(pMaxPendingWrites);
   }
 
   /**
    * Instanciates an image raw writer. The voxel values produced by the phantom
    * are scaled accoding to y = a*x+b, and the data is saved using the provided
    * data type.
-   * 
+   *
    * @param pNativeTypeEnum
    *          native type to save to.
    * @param pScaling
@@ -51,8 +94,35 @@ public class RawWriter extends WriterBase
   public RawWriter(NativeTypeEnum pNativeTypeEnum,
                    float pScaling,
                    float pOffset)
+  {
+    this(pNativeTypeEnum,
+         pScaling,
+         pOffset,
+         cDefaultMaxPendingWrites);
+  }
+
+  /**
+   * Instanciates an image raw writer with a given maximal number of pending
+   * asynchronous writes. The voxel values are scaled accoding to y = a*x+b,
+   * and the data is saved using the provided data type.
+   *
+   * @param pNativeTypeEnum
+   *          native type to save to.
+   * @param pScaling
+   *          value scaling a
+   * @param pOffset
+   *          value offset b
+   * @param pMaxPendingWrites
+   *          maximal number of pending asynchronous writes
+   */
+  public RawWriter(NativeTypeEnum pNativeTypeEnum,
+                   float pScaling,
+                   float pOffset,
+                   int pMaxPendingWrites)
   {
     super(pNativeTypeEnum, pScaling, pOffset);
+    mMaxPendingWrites = pMaxPendingWrites;
+    mPendingWritesSemaphore = new Semaphore(pMaxPendingWrites);
   }
 
   @Override
@@ -64,124 +134,314 @@ public class RawWriter extends WriterBase
     if (pFile.exists())
       return false;
 
-    int lWidth = (int) pImage.getWidth();
-    int lHeight = (int) pImage.getHeight();
-    int lDepth = (int) pImage.getDepth();
+    if (getDataType() != NativeTypeEnum.Float
+        && getDataType() != NativeTypeEnum.Byte)
+      return false;
 
-    if (getDataType() == NativeTypeEnum.Float)
-      writeFloats(pImage, pFile, lWidth, lHeight, lDepth);
-    else if (getDataType() == NativeTypeEnum.Byte)
-      writeBytes(pImage, pFile, lWidth, lHeight, lDepth);
+    if (pImage.getNativeType() != NativeTypeEnum.Float)
+      throw new ClearCLIllegalArgumentException("Only float images can be written");
+
+    writePlanes(pImage, pFile);
 
     return true;
   }
 
-  private void writeFloats(ClearCLImageInterface pImage,
-                           File pFile,
-                           int lWidth,
-                           int lHeight,
-                           int lDepth) throws IOException
+  /**
+   * Submits an image to be written asynchronously to a file. This call only
+   * blocks if the maximal number of pending writes is reached. The image must
+   * not be modified until the returned future has completed.
+   *
+   * @param pImage
+   *          image
+   * @param pFile
+   *          file to write to
+   * @return future that completes with true if file written, false otherwise
+   * @throws InterruptedException
+   *           if interrupted while waiting for a pending write to complete
+   */
+  public CompletableFuture<Boolean> writeAsync(ClearCLImageInterface pImage,
+                                               File pFile) throws InterruptedException
   {
-    copyToTransferMemory(pImage, lWidth, lHeight, lDepth);
+    mPendingWritesSemaphore.acquire();
+    try
+    {
+      return CompletableFuture.supplyAsync(() -> {
+        try
+        {
+          return write(pImage, pFile);
+        }
+        catch (IOException e)
+        {
+          throw new CompletionException(e);
+        }
+        finally
+        {
+          mPendingWritesSemaphore.release();
+        }
+      }, getWriterExecutor());
+    }
+    catch (RejectedExecutionException e)
+    {
+      mPendingWritesSemaphore.release();
+      throw e;
+    }
+  }
 
-    float[] lMinMax = computeMinMax(mTransferMemory);
+  /**
+   * Returns the maximal number of pending asynchronous writes.
+   *
+   * @return maximal number of pending writes
+   */
+  public int getMaxPendingWrites()
+  {
+    return mMaxPendingWrites;
+  }
 
-    System.out.println("Min=" + lMinMax[0]);
-    System.out.println("Max=" + lMinMax[1]);
+  /**
+   * Returns the number of asynchronous writes submitted and not yet completed.
+   *
+   * @return number of pending writes
+   */
+  public int getNumberOfPendingWrites()
+  {
+    return mMaxPendingWrites
+           - mPendingWritesSemaphore.availablePermits();
+  }
 
-    Path lFilePath = pFile.toPath();
-    FileChannel lFileChannel =
-                             FileChannel.open(lFilePath,
-                                              StandardOpenOption.CREATE,
-                                              StandardOpenOption.WRITE);
-    mTransferMemory.writeBytesToFileChannel(lFileChannel, 0);
-    lFileChannel.close();
+  private ExecutorService getWriterExecutor()
+  {
+    if (mWriterExecutor == null)
+    {
+      synchronized (this)
+      {
+        if (mWriterExecutor == null)
+          mWriterExecutor = Executors.newSingleThreadExecutor((r) -> {
+            Thread lThread = new Thread(r, "RawWriter");
+            lThread.setDaemon(true);
+            return lThread;
+          });
+      }
+    }
+    return mWriterExecutor;
   }
 
-  private void copyToTransferMemory(ClearCLImageInterface pImage,
-                                    int lWidth,
-                                    int lHeight,
-                                    int lDepth)
+  private synchronized void writePlanes(ClearCLImageInterface pImage,
+                                        File pFile) throws IOException
   {
-    long lSizeInBytes = lWidth * lHeight * lDepth * Size.FLOAT;
+    int lWidth = (int) pImage.getWidth();
+    int lHeight = (int) pImage.getHeight();
+    int lDepth = (int) pImage.getDepth();
+
+    long lPlaneSizeInBytes = (long) lWidth * lHeight
+                             * pImage.getNumberOfChannels()
+                             * Size.FLOAT;
+    long lFilePlaneSizeInBytes = lPlaneSizeInBytes / Size.FLOAT
+                                 * getDataType().getSizeInBytes();
 
-    if (mTransferMemory == null
-        || lSizeInBytes != mTransferMemory.getSizeInBytes())
+    try (FileChannel lFileChannel =
+                                  FileChannel.open(pFile.toPath(),
+                                                   StandardOpenOption.CREATE_NEW,
+                                                   StandardOpenOption.WRITE))
     {
-      mTransferMemory = OffHeapMemory.allocateBytes("mTransferMemory",
-                                                    lSizeInBytes);
-    }
+      if (pImage instanceof ClearCLHostImageBuffer)
+      {
+        // host images need no download, planes are written straight away:
+        ContiguousMemoryInterface lContiguousMemory =
+                                                    ((ClearCLHostImageBuffer) pImage).getContiguousMemory();
+        for (int z = 0; z < lDepth; z++)
+          writePlane(lContiguousMemory.subRegion(z * lPlaneSizeInBytes,
+                                                 lPlaneSizeInBytes),
+                     lFileChannel,
+                     z * lFilePlaneSizeInBytes,
+                     lFilePlaneSizeInBytes);
+        return;
+      }
+
+      ensureStagingPlanes(pImage, lWidth, lHeight);
+      ClearCLQueue lQueue = pImage.getContext().getDefaultQueue();
+
+      // two staging planes: plane z+1 is downloaded while plane z is written:
+      ClearCLEvent[] lDownloadEvents = new ClearCLEvent[2];
+      try
+      {
+        lDownloadEvents[0] = enqueuePlaneDownload(pImage,
+                                                  lQueue,
+                                                  0,
+                                                  mStagingPlanes[0]);
+        for (int z = 0; z < lDepth; z++)
+        {
+          int lCurrent = z % 2;
+          int lNext = (z + 1) % 2;
 
-    pImage.writeTo(mTransferMemory, true);
+          if (z + 1 < lDepth)
+            lDownloadEvents[lNext] = enqueuePlaneDownload(pImage,
+                                                          lQueue,
+                                                          z + 1,
+                                                          mStagingPlanes[lNext]);
+          lQueue.flush();
+
+          lDownloadEvents[lCurrent].waitToFinish();
+          lDownloadEvents[lCurrent].close();
+          lDownloadEvents[lCurrent] = null;
+
+          writePlane(mStagingPlanes[lCurrent].getContiguousMemory(),
+                     lFileChannel,
+                     z * lFilePlaneSizeInBytes,
+                     lFilePlaneSizeInBytes);
+        }
+      }
+      finally
+      {
+        // downloads still in flight must complete before staging is reused:
+        for (ClearCLEvent lDownloadEvent : lDownloadEvents)
+          if (lDownloadEvent != null)
+          {
+            lDownloadEvent.waitToFinish();
+            lDownloadEvent.close();
+          }
+      }
+    }
   }
 
-  private void writeBytes(ClearCLImageInterface pImage,
-                          File pFile,
-                          int lWidth,
-                          int lHeight,
-                          int lDepth) throws IOException
+  private void ensureStagingPlanes(ClearCLImageInterface pImage,
+                                   int pWidth,
+                                   int pHeight)
   {
-    copyToTransferMemory(pImage, lWidth, lHeight, lDepth);
-
-    int lVolume = lWidth * lHeight * lDepth;
-    long lSizeInBytes = lVolume * Size.BYTE;
+    long lPlaneSizeInBytes = (long) pWidth * pHeight
+                             * pImage.getPixelSizeInBytes();
 
-    if (mTempMemory == null
-        || mTempMemory.getSizeInBytes() != lSizeInBytes)
+    if (mStagingContext != pImage.getContext()
+        || mStagingPlanes[0] == null
+        || mStagingPlanes[0].getSizeInBytes() != lPlaneSizeInBytes)
     {
-      mTempMemory = OffHeapMemory.allocateBytes("mTempMemory",
-                                                lSizeInBytes);
+      freeStagingPlanes();
+      for (int i = 0; i < mStagingPlanes.length; i++)
+        mStagingPlanes[i] =
+                          ClearCLHostImageBuffer.allocatePinned(pImage.getContext(),
+                                                                pImage.getNativeType(),
+                                                                pImage.getNumberOfChannels(),
+                                                                pWidth,
+                                                                pHeight);
+      mStagingContext = pImage.getContext();
     }
+  }
 
-    ContiguousBuffer lContiguousBufferFloats =
-                                             new ContiguousBuffer(mTransferMemory);
-    ContiguousBuffer lContiguousBufferBytes =
-                                            new ContiguousBuffer(mTempMemory);
+  private static ClearCLEvent enqueuePlaneDownload(ClearCLImageInterface pImage,
+                                                   ClearCLQueue pQueue,
+                                                   int pZ,
+                                                   ClearCLHostImageBuffer pStagingPlane)
+  {
+    ContiguousMemoryInterface lStagingMemory =
+                                             pStagingPlane.getContiguousMemory();
 
-    while (lContiguousBufferFloats.hasRemainingFloat())
+    if (pImage instanceof ClearCLImage)
+      return ((ClearCLImage) pImage).enqueueWriteTo(pQueue,
+                                                    lStagingMemory,
+                                                    new long[]
+                                                    { 0, 0, pZ },
+                                                    new long[]
+                                                    { pImage.getWidth(),
+                                                      pImage.getHeight(),
+                                                      1 });
+    else if (pImage instanceof ClearCLBuffer)
     {
-      float lFloatValue = lContiguousBufferFloats.readFloat();
-      lFloatValue = getScaling() * lFloatValue + getOffset();
-      int lIntValue = round(lFloatValue);
-      byte lByteValue = (byte) (lIntValue & 0xFF);
-      lContiguousBufferBytes.writeByte(lByteValue);
+      long lPlaneSizeInBytes = lStagingMemory.getSizeInBytes();
+      return ((ClearCLBuffer) pImage).enqueueWriteRectTo(pQueue,
+                                                         lStagingMemory,
+                                                         new long[]
+                                                         { pZ * lPlaneSizeInBytes,
+                                                           0,
+                                                           0 },
+                                                         0,
+                                                         0,
+                                                         Region3.originZero(),
+                                                         0,
+                                                         0,
+                                                         new long[]
+                                                         { lPlaneSizeInBytes,
+                                                           1,
+                                                           1 });
     }
 
-    Path lFilePath = pFile.toPath();
-    FileChannel lFileChannel =
-                             FileChannel.open(lFilePath,
-                                              StandardOpenOption.CREATE,
-                                              StandardOpenOption.WRITE);
-    mTempMemory.writeBytesToFileChannel(lFileChannel, 0);
-    lFileChannel.close();
+    throw new ClearCLUnsupportedException("cannot write images of type "
+                                          + pImage.getClass()
+                                                  .getSimpleName());
   }
 
-  private float[] computeMinMax(OffHeapMemory pTransferMemory)
+  private void writePlane(ContiguousMemoryInterface pPlane,
+                          FileChannel pFileChannel,
+                          long pFileOffset,
+                          long pFilePlaneSizeInBytes) throws IOException
   {
-    ContiguousBuffer lContiguousBuffer =
-                                       new ContiguousBuffer(pTransferMemory);
+    if (getDataType() == NativeTypeEnum.Float)
+    {
+      pPlane.writeBytesToFileChannel(pFileChannel, pFileOffset);
+      return;
+    }
+
+    if (mConvertedPlane == null
+        || mConvertedPlane.getSizeInBytes() != pFilePlaneSizeInBytes)
+    {
+      freeConvertedPlane();
+      mConvertedPlane = OffHeapMemory.allocateBytes(pFilePlaneSizeInBytes);
+    }
+    final OffHeapMemory lConvertedPlane = mConvertedPlane;
+
+    final float lScaling = getScaling();
+    final float lOffset = getOffset();
+    final int lLength = (int) (pPlane.getSizeInBytes() / Size.FLOAT);
+    final int lNumberOfChunks = (lLength + cConversionChunkLength - 1)
+                                / cConversionChunkLength;
 
-    float lMin = Float.POSITIVE_INFINITY,
-        lMax = Float.NEGATIVE_INFINITY;
+    IntStream.range(0, lNumberOfChunks).parallel().forEach((c) -> {
+      int lStart = c * cConversionChunkLength;
+      int lEnd = min(lLength, lStart + cConversionChunkLength);
+      for (int i = lStart; i < lEnd; i++)
+      {
+        float lFloatValue = lScaling * pPlane.getFloatAligned(i)
+                            + lOffset;
+        lConvertedPlane.setByteAligned(i,
+                                       (byte) (round(lFloatValue) & 0xFF));
+      }
+    });
 
-    while (lContiguousBuffer.hasRemainingFloat())
+    lConvertedPlane.writeBytesToFileChannel(pFileChannel, pFileOffset);
+  }
+
+  private void freeConvertedPlane()
+  {
+    if (mConvertedPlane != null)
     {
-      float lValue = lContiguousBuffer.readFloat();
-      lMin = min(lMin, lValue);
-      lMax = max(lMax, lValue);
+      mConvertedPlane.free();
+      mConvertedPlane = null;
     }
+  }
 
-    return new float[]
-    { lMin, lMax };
+  private void freeStagingPlanes()
+  {
+    for (int i = 0; i < mStagingPlanes.length; i++)
+      if (mStagingPlanes[i] != null)
+      {
+        mStagingPlanes[i].close();
+        mStagingPlanes[i] = null;
+      }
+    mStagingContext = null;
   }
 
   @Override
   public void close() throws Exception
   {
-    if (mTempMemory != null)
-      mTempMemory.free();
-    if (mTransferMemory != null)
-      mTransferMemory.free();
+    if (mWriterExecutor != null)
+    {
+      mWriterExecutor.shutdown();
+      mWriterExecutor.awaitTermination(Long.MAX_VALUE,
+                                       TimeUnit.NANOSECONDS);
+    }
+    synchronized (this)
+    {
+      freeStagingPlanes();
+      freeConvertedPlane();
+    }
   }
 
 }
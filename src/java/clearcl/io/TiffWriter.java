@@ -1,51 +1,86 @@
 package clearcl.io;
 
-import static loci.formats.FormatTools.FLOAT;
-import static loci.formats.FormatTools.UINT16;
-import static loci.formats.FormatTools.UINT8;
-
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
 
-import loci.common.services.ServiceFactory;
-import loci.formats.FormatTools;
-import loci.formats.MetadataTools;
-import loci.formats.meta.IMetadata;
-import loci.formats.services.OMEXMLService;
-import loci.formats.tiff.TiffSaver;
-import ch.qos.logback.classic.Level;
+import clearcl.ClearCLBuffer;
+import clearcl.ClearCLContext;
+import clearcl.ClearCLHostImageBuffer;
 import clearcl.ClearCLImage;
+import clearcl.ClearCLKernel;
+import clearcl.ClearCLProgram;
+import clearcl.ClearCLQueue;
+import clearcl.enums.HostAccessType;
+import clearcl.enums.KernelAccessType;
+import clearcl.exceptions.ClearCLIllegalArgumentException;
+import clearcl.exceptions.ClearCLUnsupportedException;
 import clearcl.interfaces.ClearCLImageInterface;
-import coremem.buffers.ContiguousBuffer;
+import clearcl.ocllib.OCLlib;
+import coremem.ContiguousMemoryInterface;
 import coremem.enums.NativeTypeEnum;
-import coremem.offheap.OffHeapMemory;
-import coremem.util.Size;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
- * Image TIFF writer
- * 
- * TODO: Replace the line marked with "Dirty hack" below. Otherwise, it may not
- * work with all kinds of images. Maybe, the ClearCLImage.writeTo method should
- * also be listed in ClearCLImageInterface
+ * Image TIFF writer. The scaling, offset and conversion to the file's pixel
+ * type is done on the device, the converted image is downloaded once, and
+ * planes are then compressed in parallel and written as strips of a multi-page
+ * TIFF file through a file channel. Files larger than 4GB are written as
+ * BigTIFF. Device programs and buffers are kept from one file to the next.
  *
  * @author royer
  * @author haesleinhuepf
  */
-public class TiffWriter extends WriterBase implements WriterInterface
+public class TiffWriter extends WriterBase implements
+                        WriterInterface,
+                        AutoCloseable
 {
-  byte[] mTransferArray;
-  OffHeapMemory mTransferMemory;
+  private static final int cTagImageWidth = 256;
+  private static final int cTagImageLength = 257;
+  private static final int cTagBitsPerSample = 258;
+  private static final int cTagCompression = 259;
+  private static final int cTagPhotometricInterpretation = 262;
+  private static final int cTagStripOffsets = 273;
+  private static final int cTagSamplesPerPixel = 277;
+  private static final int cTagRowsPerStrip = 278;
+  private static final int cTagStripByteCounts = 279;
+  private static final int cTagPlanarConfiguration = 284;
+  private static final int cTagSampleFormat = 339;
+  private static final int cNumberOfTags = 11;
+
+  private static final int cTypeShort = 3;
+  private static final int cTypeLong = 4;
+  private static final int cTypeLong8 = 16;
+
+  private static final int cCompressionNone = 1;
+  private static final int cCompressionDeflate = 8;
+
+  private static final long cBigTiffThresholdInBytes = 0xFFFFFFFFL
+                                                       - (1L << 24);
+
   int mBytesPerPixel = 16;
-  int mPixelType = FormatTools.UINT16;
+  int mCompressionLevel = Deflater.BEST_SPEED;
+  boolean mBigTiff = false;
+
+  private ClearCLContext mContext;
+  private final ClearCLProgram[] mConversionPrograms =
+                                                     new ClearCLProgram[3];
+  private ClearCLBuffer mConvertedBuffer;
+  private ClearCLHostImageBuffer mConvertedHostBuffer;
 
   /**
    * Instanciates a Image TIFF writer. The voxel values produced by the phantom
    * are scaled accoding to y = a*x+b, and the data is saved using the provided
    * data type.
-   * 
+   *
    * @param pNativeTypeEnum
    *          native type to save to.
    * @param pScaling
@@ -69,6 +104,50 @@ public class TiffWriter extends WriterBase implements WriterInterface
     }
   }
 
+  /**
+   * Sets the deflate compression level, from 0 (no compression) to 9 (best
+   * compression). Default is 1 (best speed).
+   *
+   * @param pCompressionLevel
+   *          compression level
+   */
+  public void setCompressionLevel(int pCompressionLevel)
+  {
+    mCompressionLevel = Math.max(0, Math.min(9, pCompressionLevel));
+  }
+
+  /**
+   * Returns the deflate compression level.
+   *
+   * @return compression level, 0 for no compression
+   */
+  public int getCompressionLevel()
+  {
+    return mCompressionLevel;
+  }
+
+  /**
+   * Forces the BigTIFF format even for files that would fit in a classic TIFF
+   * file. Files larger than 4GB are always written as BigTIFF.
+   *
+   * @param pBigTiff
+   *          true to always write BigTIFF files
+   */
+  public void setBigTiff(boolean pBigTiff)
+  {
+    mBigTiff = pBigTiff;
+  }
+
+  /**
+   * Returns true if BigTIFF is forced for all files.
+   *
+   * @return true if BigTIFF is forced
+   */
+  public boolean isBigTiff()
+  {
+    return mBigTiff;
+  }
+
   @Override
   public boolean write(ClearCLImageInterface pImage,
                        File pFile) throws Throwable
@@ -90,124 +169,396 @@ public class TiffWriter extends WriterBase implements WriterInterface
                dimensions.length > 2 ? (int) pImage.getDimensions()[2]
                                      : 1;
 
-    mPixelType = FormatTools.UINT16;
+    int lBytesPerSample = mBytesPerPixel / 8;
+    long lPlaneSizeInBytes = (long) lWidth * lHeight * lBytesPerSample;
+
+    convertOnDevice(pImage, lWidth, lHeight, lDepth);
+
+    String lFileName = pFile.getAbsolutePath();
+
+    System.out.println("Writing image to '" + lFileName + "'...");
+
+    boolean lBigTiff = mBigTiff || lPlaneSizeInBytes * lDepth
+                       + lPlaneSizeInBytes * lDepth / 100
+                       >= cBigTiffThresholdInBytes;
+
+    long[] lStripOffsets = new long[lDepth];
+    long[] lStripByteCounts = new long[lDepth];
+
+    try (FileChannel lFileChannel =
+                                  FileChannel.open(pFile.toPath(),
+                                                   StandardOpenOption.CREATE,
+                                                   StandardOpenOption.TRUNCATE_EXISTING,
+                                                   StandardOpenOption.WRITE))
+    {
+      long lPosition = lBigTiff ? 16 : 8;
+
+      ContiguousMemoryInterface lConvertedMemory =
+                                                 mConvertedHostBuffer.getContiguousMemory();
+
+      if (mCompressionLevel == 0)
+      {
+        for (int z = 0; z < lDepth; z++)
+        {
+          lStripOffsets[z] = lPosition;
+          lStripByteCounts[z] = lPlaneSizeInBytes;
+          lConvertedMemory.subRegion(z * lPlaneSizeInBytes,
+                                     lPlaneSizeInBytes)
+                          .writeBytesToFileChannel(lFileChannel,
+                                                   lPosition);
+          lPosition += lPlaneSizeInBytes;
+        }
+      }
+      else
+      {
+        // planes are compressed in parallel ahead of the writer, with a
+        // bounded number of planes in flight, and written in order:
+        int lMaxPlanesInFlight = 2 * Runtime.getRuntime()
+                                            .availableProcessors();
+        ArrayList<CompletableFuture<byte[]>> lCompressedPlanes =
+                                                               new ArrayList<>(lDepth);
+        for (int z = 0; z < lDepth; z++)
+        {
+          while (lCompressedPlanes.size() < Math.min(lDepth,
+                                                     z + lMaxPlanesInFlight))
+          {
+            ContiguousMemoryInterface lPlane =
+                                             lConvertedMemory.subRegion(lCompressedPlanes.size()
+                                                                        * lPlaneSizeInBytes,
+                                                                        lPlaneSizeInBytes);
+            lCompressedPlanes.add(CompletableFuture.supplyAsync(() -> compress(lPlane,
+                                                                               mCompressionLevel),
+                                                                ForkJoinPool.commonPool()));
+          }
+
+          byte[] lCompressedPlane = lCompressedPlanes.get(z).join();
+          lCompressedPlanes.set(z, null);
+
+          lStripOffsets[z] = lPosition;
+          lStripByteCounts[z] = lCompressedPlane.length;
+          lPosition = write(lFileChannel,
+                            ByteBuffer.wrap(lCompressedPlane),
+                            lPosition);
+        }
+      }
+
+      // directories are appended after the strips, then linked from the
+      // header:
+      lPosition += lPosition % 2;
+      long lFirstDirectoryOffset = lPosition;
+      ByteBuffer lDirectories =
+                              writeDirectories(lWidth,
+                                               lHeight,
+                                               lStripOffsets,
+                                               lStripByteCounts,
+                                               lBigTiff,
+                                               lFirstDirectoryOffset);
+      write(lFileChannel, lDirectories, lFirstDirectoryOffset);
+
+      ByteBuffer lHeader = ByteBuffer.allocate(lBigTiff ? 16 : 8)
+                                     .order(ByteOrder.LITTLE_ENDIAN);
+      lHeader.put((byte) 'I').put((byte) 'I');
+      if (lBigTiff)
+        lHeader.putShort((short) 43)
+               .putShort((short) 8)
+               .putShort((short) 0)
+               .putLong(lFirstDirectoryOffset);
+      else
+        lHeader.putShort((short) 42).putInt((int) lFirstDirectoryOffset);
+      lHeader.flip();
+      write(lFileChannel, lHeader, 0);
+    }
+
+    System.out.println("Done.");
+    return true;
+  }
+
+  private void convertOnDevice(ClearCLImageInterface pImage,
+                               int pWidth,
+                               int pHeight,
+                               int pDepth) throws IOException
+  {
+    if (pImage instanceof ClearCLBuffer
+        && pImage.getNativeType() != NativeTypeEnum.Float)
+      throw new ClearCLIllegalArgumentException("Only float buffers can be written");
+
+    int lTypeIndex;
+    NativeTypeEnum lNativeType;
     switch (mBytesPerPixel)
     {
     case 8:
-      mPixelType = UINT8;
+      lTypeIndex = 0;
+      lNativeType = NativeTypeEnum.UnsignedByte;
       break;
     case 32:
-      mPixelType = FormatTools.FLOAT;
+      lTypeIndex = 2;
+      lNativeType = NativeTypeEnum.Float;
+      break;
+    default:
+      lTypeIndex = 1;
+      lNativeType = NativeTypeEnum.UnsignedShort;
       break;
     }
 
-    long lArraySizeInBytes = lWidth * lHeight
-                             * FormatTools.getBytesPerPixel(mPixelType);
-    long lFloatSizeInBytes = lWidth * lHeight * lDepth * Size.FLOAT;
+    ClearCLContext lContext = pImage.getContext();
+    if (lContext == null)
+      throw new ClearCLUnsupportedException("TIFF writing of host images");
 
-    if (mTransferMemory == null
-        || lFloatSizeInBytes != mTransferMemory.getSizeInBytes())
+    if (mContext != lContext)
     {
-      mTransferMemory =
-                      OffHeapMemory.allocateBytes("PhantomTiffWriter",
-                                                  lFloatSizeInBytes);
+      close();
+      mContext = lContext;
     }
 
-    if (mTransferArray == null
-        || lArraySizeInBytes != mTransferArray.length)
+    if (mConversionPrograms[lTypeIndex] == null)
     {
-      mTransferArray = new byte[Math.toIntExact(lArraySizeInBytes)];
+      ClearCLProgram lProgram =
+                              lContext.createProgram(OCLlib.class,
+                                                     "conversion/conversion.cl");
+      lProgram.addBuildOptionAllMathOpt();
+      lProgram.addDefine(new String[]
+      { "UINT8", "UINT16", "FLOAT" }[lTypeIndex]);
+      lProgram.buildAndLog();
+      mConversionPrograms[lTypeIndex] = lProgram;
     }
 
-    // Dirty hack:
-    ClearCLImage lImage = (ClearCLImage) pImage;
-
-    lImage.writeTo(mTransferMemory, new long[]
-    { 0, 0, 0 }, new long[]
-    { lWidth, lHeight, lDepth }, true);
+    long lVolume = (long) pWidth * pHeight * pDepth;
+    if (mConvertedBuffer == null
+        || mConvertedBuffer.getNativeType() != lNativeType
+        || mConvertedBuffer.getLength() != lVolume)
+    {
+      releaseConvertedBuffers();
+      mConvertedBuffer = lContext.createBuffer(HostAccessType.ReadOnly,
+                                               KernelAccessType.WriteOnly,
+                                               lNativeType,
+                                               lVolume);
+      mConvertedHostBuffer =
+                           ClearCLHostImageBuffer.allocatePinnedSameAs(mConvertedBuffer);
+    }
 
-    // Workaround to turn the BioFormats logger OFF
-    Logger LOGGER = LoggerFactory.getLogger(TiffSaver.class);
-    if (LOGGER instanceof ch.qos.logback.classic.Logger)
+    ClearCLKernel lKernel;
+    if (pImage instanceof ClearCLBuffer)
     {
-      ((ch.qos.logback.classic.Logger) LOGGER).setLevel(Level.OFF);
+      lKernel = mConversionPrograms[lTypeIndex].getKernel("convert_buffer");
+      lKernel.setArgument("buffer", (ClearCLBuffer) pImage);
+      lKernel.setArgument("length", lVolume);
+      lKernel.setGlobalSizes(lVolume);
     }
+    else if (pImage instanceof ClearCLImage)
+    {
+      ClearCLImage lImage = (ClearCLImage) pImage;
+      if (lImage.getDimension() == 3)
+      {
+        lKernel =
+                mConversionPrograms[lTypeIndex].getKernel("convert_image_3d");
+        lKernel.setGlobalSizes(pWidth, pHeight, pDepth);
+      }
+      else
+      {
+        lKernel =
+                mConversionPrograms[lTypeIndex].getKernel("convert_image_2d");
+        lKernel.setGlobalSizes(pWidth, pHeight);
+      }
+      lKernel.setArgument("image", lImage);
+    }
+    else
+      throw new ClearCLUnsupportedException("TIFF writing of "
+                                            + pImage.getClass()
+                                                    .getSimpleName());
+
+    lKernel.setArgument("result", mConvertedBuffer);
+    lKernel.setArgument("scale", mScaling);
+    lKernel.setArgument("offset", mOffset);
 
-    ServiceFactory factory = new ServiceFactory();
-    OMEXMLService service = factory.getInstance(OMEXMLService.class);
-    IMetadata meta = service.createOMEXMLMetadata();
+    ClearCLQueue lQueue = lContext.getDefaultQueue();
+    lKernel.run(lQueue, false);
+    mConvertedBuffer.copyTo(lQueue, mConvertedHostBuffer, true);
+  }
 
-    MetadataTools.populateMetadata(meta,
-                                   0,
-                                   null,
-                                   false,
-                                   "XYZCT",
-                                   FormatTools.getPixelTypeString(mPixelType),
-                                   lWidth,
-                                   lHeight,
-                                   lDepth,
-                                   1,
-                                   1,
-                                   1);
+  private static byte[] compress(ContiguousMemoryInterface pPlane,
+                                 int pCompressionLevel)
+  {
+    byte[] lPlane = new byte[Math.toIntExact(pPlane.getSizeInBytes())];
+    pPlane.copyTo(lPlane);
 
-    String lFileName = pFile.getAbsolutePath();
+    Deflater lDeflater = new Deflater(pCompressionLevel);
+    try
+    {
+      lDeflater.setInput(lPlane);
+      lDeflater.finish();
+      ByteArrayOutputStream lCompressed =
+                                        new ByteArrayOutputStream(lPlane.length / 2);
+      byte[] lChunk = new byte[1 << 16];
+      while (!lDeflater.finished())
+      {
+        int lLength = lDeflater.deflate(lChunk);
+        lCompressed.write(lChunk, 0, lLength);
+      }
+      return lCompressed.toByteArray();
+    }
+    finally
+    {
+      lDeflater.end();
+    }
+  }
 
-    System.out.println("Writing image to '" + lFileName + "'...");
-    loci.formats.out.TiffWriter writer =
-                                       new loci.formats.out.TiffWriter();
-    writer.setCompression(loci.formats.out.TiffWriter.COMPRESSION_LZW);
-    writer.setMetadataRetrieve(meta);
-    writer.setId(lFileName);
+  private ByteBuffer writeDirectories(int pWidth,
+                                      int pHeight,
+                                      long[] pStripOffsets,
+                                      long[] pStripByteCounts,
+                                      boolean pBigTiff,
+                                      long pFirstDirectoryOffset)
+  {
+    int lDirectorySizeInBytes = pBigTiff ? 8 + 20 * cNumberOfTags + 8
+                                         : 2 + 12 * cNumberOfTags + 4;
+    int lDepth = pStripOffsets.length;
+    ByteBuffer lDirectories =
+                            ByteBuffer.allocate(lDirectorySizeInBytes
+                                                * lDepth)
+                                      .order(ByteOrder.LITTLE_ENDIAN);
 
-    ContiguousBuffer lBuffer = new ContiguousBuffer(mTransferMemory);
+    int lBitsPerSample = mBytesPerPixel;
+    int lSampleFormat = mBytesPerPixel == 32 ? 3 : 1;
+    int lCompression = mCompressionLevel == 0 ? cCompressionNone
+                                              : cCompressionDeflate;
 
     for (int z = 0; z < lDepth; z++)
     {
-      int i = 0;
-      while (lBuffer.hasRemainingFloat() && i < mTransferArray.length)
-      {
-        i = appendValueToArray(lBuffer.readFloat(), i);
-      }
+      if (pBigTiff)
+        lDirectories.putLong(cNumberOfTags);
+      else
+        lDirectories.putShort((short) cNumberOfTags);
+
+      putEntry(lDirectories, pBigTiff, cTagImageWidth, cTypeLong, pWidth);
+      putEntry(lDirectories,
+               pBigTiff,
+               cTagImageLength,
+               cTypeLong,
+               pHeight);
+      putEntry(lDirectories,
+               pBigTiff,
+               cTagBitsPerSample,
+               cTypeShort,
+               lBitsPerSample);
+      putEntry(lDirectories,
+               pBigTiff,
+               cTagCompression,
+               cTypeShort,
+               lCompression);
+      putEntry(lDirectories,
+               pBigTiff,
+               cTagPhotometricInterpretation,
+               cTypeShort,
+               1);
+      putEntry(lDirectories,
+               pBigTiff,
+               cTagStripOffsets,
+               pBigTiff ? cTypeLong8 : cTypeLong,
+               pStripOffsets[z]);
+      putEntry(lDirectories,
+               pBigTiff,
+               cTagSamplesPerPixel,
+               cTypeShort,
+               1);
+      putEntry(lDirectories,
+               pBigTiff,
+               cTagRowsPerStrip,
+               cTypeLong,
+               pHeight);
+      putEntry(lDirectories,
+               pBigTiff,
+               cTagStripByteCounts,
+               pBigTiff ? cTypeLong8 : cTypeLong,
+               pStripByteCounts[z]);
+      putEntry(lDirectories,
+               pBigTiff,
+               cTagPlanarConfiguration,
+               cTypeShort,
+               1);
+      putEntry(lDirectories,
+               pBigTiff,
+               cTagSampleFormat,
+               cTypeShort,
+               lSampleFormat);
 
-      writer.saveBytes(z, mTransferArray);
+      long lNextDirectoryOffset =
+                                z == lDepth - 1 ? 0
+                                                : pFirstDirectoryOffset
+                                                  + (z + 1)
+                                                    * lDirectorySizeInBytes;
+      if (pBigTiff)
+        lDirectories.putLong(lNextDirectoryOffset);
+      else
+        lDirectories.putInt((int) lNextDirectoryOffset);
     }
-    writer.close();
 
-    System.out.println("Done.");
-    return true;
+    lDirectories.flip();
+    return lDirectories;
   }
 
-  private int appendValueToArray(float pFloatValue, int i)
+  private static void putEntry(ByteBuffer pDirectories,
+                               boolean pBigTiff,
+                               int pTag,
+                               int pType,
+                               long pValue)
   {
-    float lFloatValue = pFloatValue * mScaling + mOffset;
-
-    int lIntValue = Math.round(lFloatValue);
-
-    switch (mPixelType)
+    pDirectories.putShort((short) pTag);
+    pDirectories.putShort((short) pType);
+    if (pBigTiff)
     {
-    case UINT8:
-      lIntValue = Math.round(lFloatValue);
-      byte lByte = (byte) (lIntValue & 0xFF);
-      mTransferArray[i++] = lByte;
-      break;
-    case UINT16:
-      lIntValue = Math.round(lFloatValue);
+      pDirectories.putLong(1);
+      if (pType == cTypeShort)
+        pDirectories.putShort((short) pValue)
+                    .putShort((short) 0)
+                    .putInt(0);
+      else
+        pDirectories.putLong(pValue);
+    }
+    else
+    {
+      pDirectories.putInt(1);
+      if (pType == cTypeShort)
+        pDirectories.putShort((short) pValue).putShort((short) 0);
+      else
+        pDirectories.putInt((int) pValue);
+    }
+  }
 
-      byte lLowByte = (byte) (lIntValue & 0xFF);
-      byte lHighByte = (byte) ((lIntValue >> 8) & 0xFF);
+  private static long write(FileChannel pFileChannel,
+                            ByteBuffer pByteBuffer,
+                            long pPosition) throws IOException
+  {
+    long lPosition = pPosition;
+    while (pByteBuffer.hasRemaining())
+      lPosition += pFileChannel.write(pByteBuffer, lPosition);
+    return lPosition;
+  }
 
-      mTransferArray[i++] = lHighByte;
-      mTransferArray[i++] = lLowByte;
-      break;
-    case FLOAT:
-      lIntValue = Float.floatToIntBits(pFloatValue);
-      mTransferArray[i++] = (byte) (lIntValue >>> 24);
-      mTransferArray[i++] = (byte) (lIntValue >>> 16);
-      mTransferArray[i++] = (byte) (lIntValue >>> 8);
-      mTransferArray[i++] = (byte) lIntValue;
-      break;
+  private void releaseConvertedBuffers()
+  {
+    if (mConvertedBuffer != null)
+    {
+      mConvertedBuffer.close();
+      mConvertedBuffer = null;
+    }
+    if (mConvertedHostBuffer != null)
+    {
+      mConvertedHostBuffer.close();
+      mConvertedHostBuffer = null;
     }
-    return i;
+  }
+
+  @Override
+  public void close()
+  {
+    releaseConvertedBuffers();
+    for (int i = 0; i < mConversionPrograms.length; i++)
+      if (mConversionPrograms[i] != null)
+      {
+        mConversionPrograms[i].close();
+        mConversionPrograms[i] = null;
+      }
+    mContext = null;
   }
 
 }
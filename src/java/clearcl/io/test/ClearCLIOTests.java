@@ -1,8 +1,22 @@
 package clearcl.io.test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 import clearcl.ClearCL;
+import clearcl.ClearCLBuffer;
 import clearcl.ClearCLContext;
 import clearcl.ClearCLDevice;
 import clearcl.ClearCLImage;
@@ -15,9 +29,13 @@ import clearcl.enums.HostAccessType;
 import clearcl.enums.ImageChannelDataType;
 import clearcl.enums.ImageChannelOrder;
 import clearcl.enums.KernelAccessType;
+import clearcl.enums.MemAllocMode;
+import clearcl.exceptions.ClearCLIllegalArgumentException;
+import clearcl.io.RawWriter;
 import clearcl.io.TiffWriter;
 import clearcl.test.ClearCLBasicTests;
 import coremem.enums.NativeTypeEnum;
+import coremem.offheap.OffHeapMemory;
 
 import org.junit.Test;
 
@@ -103,5 +121,284 @@ public class ClearCLIOTests
     lTiffWriter.setBytesPerPixel(32);
     lTiffWriter.write(lImageDst, lFile32);
 
+    // uncompressed: header, strips, and one directory per plane:
+    lTiffWriter.setCompressionLevel(0);
+    lTiffWriter.setBytesPerPixel(8);
+    lTiffWriter.write(lImageDst, lFile8);
+    assertEquals(8 + 100 * 100 * 100 + 100 * (2 + 12 * 11 + 4),
+                 lFile8.length());
+
+    lTiffWriter.close();
+
+  }
+
+  /**
+   * Writes 8, 16 and 32 bit deflate compressed TIFF files, and a BigTIFF file,
+   * parses them back and compares the pixels against the scaled source.
+   *
+   * @throws Throwable
+   *           NA
+   */
+  @Test
+  public void testTiffWriterReadBack() throws Throwable
+  {
+    ClearCLBackendInterface lClearCLBackend =
+                                            ClearCLBackends.getBestBackend();
+
+    try (ClearCL lClearCL = new ClearCL(lClearCLBackend))
+    {
+      ClearCLContext lContext = lClearCL.getBestGPUDevice()
+                                        .createContext();
+
+      int lWidth = 61, lHeight = 37, lDepth = 5;
+      int lVolume = lWidth * lHeight * lDepth;
+      float lScaling = 2f, lOffset = 3f;
+
+      OffHeapMemory lMemory = OffHeapMemory.allocateFloats(lVolume);
+      for (int i = 0; i < lVolume; i++)
+        lMemory.setFloatAligned(i, (i * 7) % 200 - 10);
+
+      ClearCLBuffer lBuffer =
+                            lContext.createBuffer(MemAllocMode.Best,
+                                                  HostAccessType.ReadWrite,
+                                                  KernelAccessType.ReadWrite,
+                                                  1,
+                                                  NativeTypeEnum.Float,
+                                                  lWidth,
+                                                  lHeight,
+                                                  lDepth);
+      lBuffer.readFrom(lMemory, true);
+
+      ClearCLImage lImage =
+                          lContext.createImage(HostAccessType.ReadWrite,
+                                               KernelAccessType.ReadWrite,
+                                               ImageChannelOrder.R,
+                                               ImageChannelDataType.Float,
+                                               lWidth,
+                                               lHeight,
+                                               lDepth);
+      lImage.readFrom(lMemory, true);
+
+      File lFolder = Files.createTempDirectory(this.getClass()
+                                                   .getSimpleName())
+                          .toFile();
+      lFolder.deleteOnExit();
+
+      try (TiffWriter lTiffWriter = new TiffWriter(NativeTypeEnum.Float,
+                                                   lScaling,
+                                                   lOffset))
+      {
+        lTiffWriter.setOverwrite(true);
+        for (int lBits : new int[]
+        { 8, 16, 32 })
+          for (boolean lBigTiff : new boolean[]
+          { false, true })
+          {
+            lTiffWriter.setBytesPerPixel(lBits);
+            lTiffWriter.setBigTiff(lBigTiff);
+
+            File lFile = new File(lFolder,
+                                  "test" + lBits
+                                           + (lBigTiff ? "big" : "")
+                                           + ".tif");
+            lFile.deleteOnExit();
+            // classic files from the buffer, BigTIFF files from the image:
+            lTiffWriter.write(lBigTiff ? lImage : lBuffer, lFile);
+
+            ByteBuffer[] lPlanes = readTiff(lFile,
+                                            lBigTiff,
+                                            lWidth,
+                                            lHeight,
+                                            lBits);
+            assertEquals(lDepth, lPlanes.length);
+
+            for (int i = 0; i < lVolume; i++)
+            {
+              ByteBuffer lPlane = lPlanes[i / (lWidth * lHeight)];
+              int j = i % (lWidth * lHeight);
+              float lValue = lScaling * lMemory.getFloatAligned(i)
+                             + lOffset;
+              if (lBits == 8)
+                assertEquals(Math.max(0, Math.min(255, Math.round(lValue))),
+                             lPlane.get(j) & 0xFF);
+              else if (lBits == 16)
+                assertEquals(Math.max(0, Math.round(lValue)),
+                             lPlane.getShort(2 * j) & 0xFFFF);
+              else
+                assertEquals(lValue, lPlane.getFloat(4 * j), 0);
+            }
+          }
+
+        ClearCLBuffer lShortBuffer =
+                                   lContext.createBuffer(HostAccessType.ReadWrite,
+                                                         KernelAccessType.ReadWrite,
+                                                         NativeTypeEnum.UnsignedShort,
+                                                         lVolume);
+        try
+        {
+          lTiffWriter.write(lShortBuffer,
+                            new File(lFolder, "testshort.tif"));
+          fail();
+        }
+        catch (ClearCLIllegalArgumentException e)
+        {
+        }
+        finally
+        {
+          lShortBuffer.close();
+        }
+      }
+
+      lImage.close();
+      lBuffer.close();
+      lMemory.free();
+    }
+  }
+
+  /**
+   * Parses a little endian TIFF or BigTIFF file as written by the TIFF writer:
+   * one strip per plane, uncompressed or deflate compressed. Checks the
+   * directory tags and returns the decompressed planes.
+   */
+  private static ByteBuffer[] readTiff(File pFile,
+                                       boolean pBigTiff,
+                                       int pWidth,
+                                       int pHeight,
+                                       int pBitsPerSample) throws IOException,
+                                                           DataFormatException
+  {
+    ByteBuffer lFile = ByteBuffer.wrap(Files.readAllBytes(pFile.toPath()))
+                                 .order(ByteOrder.LITTLE_ENDIAN);
+    assertEquals('I', lFile.get(0));
+    assertEquals('I', lFile.get(1));
+    assertEquals(pBigTiff ? 43 : 42, lFile.getShort(2));
+
+    int lPlaneSizeInBytes = pWidth * pHeight * pBitsPerSample / 8;
+    int lEntrySizeInBytes = pBigTiff ? 20 : 12;
+    ArrayList<ByteBuffer> lPlanes = new ArrayList<>();
+
+    long lOffset = pBigTiff ? lFile.getLong(8)
+                            : lFile.getInt(4) & 0xFFFFFFFFL;
+    while (lOffset != 0)
+    {
+      int lPosition = Math.toIntExact(lOffset);
+      long lNumberOfEntries = pBigTiff ? lFile.getLong(lPosition)
+                                       : lFile.getShort(lPosition)
+                                         & 0xFFFF;
+      lPosition += pBigTiff ? 8 : 2;
+
+      HashMap<Integer, Long> lTags = new HashMap<>();
+      for (int e = 0; e < lNumberOfEntries; e++)
+      {
+        int lTag = lFile.getShort(lPosition) & 0xFFFF;
+        int lType = lFile.getShort(lPosition + 2);
+        int lValuePosition = lPosition + (pBigTiff ? 12 : 8);
+        long lValue;
+        if (lType == 3)
+          lValue = lFile.getShort(lValuePosition) & 0xFFFF;
+        else if (lType == 4)
+          lValue = lFile.getInt(lValuePosition) & 0xFFFFFFFFL;
+        else
+          lValue = lFile.getLong(lValuePosition);
+        lTags.put(lTag, lValue);
+        lPosition += lEntrySizeInBytes;
+      }
+      lOffset = pBigTiff ? lFile.getLong(lPosition)
+                         : lFile.getInt(lPosition) & 0xFFFFFFFFL;
+
+      assertEquals(pWidth, (long) lTags.get(256));
+      assertEquals(pHeight, (long) lTags.get(257));
+      assertEquals(pBitsPerSample, (long) lTags.get(258));
+      assertEquals(pBitsPerSample == 32 ? 3 : 1, (long) lTags.get(339));
+
+      byte[] lStrip = new byte[Math.toIntExact(lTags.get(279))];
+      lFile.position(Math.toIntExact(lTags.get(273)));
+      lFile.get(lStrip);
+
+      byte[] lPlane;
+      if (lTags.get(259) == 8)
+      {
+        lPlane = new byte[lPlaneSizeInBytes];
+        Inflater lInflater = new Inflater();
+        lInflater.setInput(lStrip);
+        assertEquals(lPlaneSizeInBytes, lInflater.inflate(lPlane));
+        assertTrue(lInflater.finished());
+        lInflater.end();
+      }
+      else
+      {
+        assertEquals(1, (long) lTags.get(259));
+        lPlane = lStrip;
+      }
+      assertEquals(lPlaneSizeInBytes, lPlane.length);
+      lPlanes.add(ByteBuffer.wrap(lPlane).order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    return lPlanes.toArray(new ByteBuffer[lPlanes.size()]);
+  }
+
+  @Test
+  public void testRawWriterAsync() throws Throwable
+  {
+    ClearCLBackendInterface lClearCLBackend =
+                                            ClearCLBackends.getBestBackend();
+
+    try (ClearCL lClearCL = new ClearCL(lClearCLBackend))
+    {
+      ClearCLDevice lBestGPUDevice = lClearCL.getBestGPUDevice();
+      ClearCLContext lContext = lBestGPUDevice.createContext();
+
+      int lWidth = 64, lHeight = 32, lDepth = 9;
+      int lVolume = lWidth * lHeight * lDepth;
+
+      ClearCLBuffer lBuffer =
+                            lContext.createBuffer(MemAllocMode.Best,
+                                                  HostAccessType.ReadWrite,
+                                                  KernelAccessType.ReadWrite,
+                                                  1,
+                                                  NativeTypeEnum.Float,
+                                                  lWidth,
+                                                  lHeight,
+                                                  lDepth);
+
+      OffHeapMemory lMemory = OffHeapMemory.allocateFloats(lVolume);
+      for (int i = 0; i < lVolume; i++)
+        lMemory.setFloatAligned(i, i % 200);
+      lBuffer.readFrom(lMemory, true);
+
+      File lFolder = Files.createTempDirectory(this.getClass()
+                                                   .getSimpleName())
+                          .toFile();
+      File lFile8 = new File(lFolder, "test8.raw");
+      File lFile32 = new File(lFolder, "test32.raw");
+      lFile8.deleteOnExit();
+      lFile32.deleteOnExit();
+      lFolder.deleteOnExit();
+
+      try (RawWriter lRawWriter8 = new RawWriter(NativeTypeEnum.Byte,
+                                                 1f,
+                                                 0f);
+          RawWriter lRawWriter32 = new RawWriter())
+      {
+        CompletableFuture<Boolean> lFuture8 =
+                                            lRawWriter8.writeAsync(lBuffer,
+                                                                   lFile8);
+        CompletableFuture<Boolean> lFuture32 =
+                                             lRawWriter32.writeAsync(lBuffer,
+                                                                     lFile32);
+        assertTrue(lFuture8.get());
+        assertTrue(lFuture32.get());
+      }
+
+      byte[] lBytes = Files.readAllBytes(lFile8.toPath());
+      assertEquals(lVolume, lBytes.length);
+      assertEquals(lVolume * 4, lFile32.length());
+      for (int i = 0; i < lVolume; i++)
+        assertEquals(i % 200, lBytes[i] & 0xFF);
+
+      lMemory.free();
+      lBuffer.close();
+    }
   }
+
 }
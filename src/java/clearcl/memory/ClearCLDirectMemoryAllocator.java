@@ -0,0 +1,105 @@
+package clearcl.memory;
+
+import clearcl.ClearCLContext;
+import clearcl.ClearCLPeerPointer;
+import clearcl.backend.ClearCLBackendInterface;
+import clearcl.enums.HostAccessType;
+import clearcl.enums.ImageChannelDataType;
+import clearcl.enums.ImageChannelOrder;
+import clearcl.enums.ImageType;
+import clearcl.enums.KernelAccessType;
+import clearcl.enums.MemAllocMode;
+
+/**
+ * Direct memory allocator: every allocation and release goes straight to the
+ * OpenCL implementation. This is the default allocator of contexts.
+ *
+ * @author royer
+ */
+public class ClearCLDirectMemoryAllocator implements
+                                          ClearCLMemoryAllocatorInterface
+{
+  private final ClearCLContext mContext;
+
+  /**
+   * Instantiates a direct memory allocator for a given context.
+   * 
+   * @param pContext
+   *          context
+   */
+  public ClearCLDirectMemoryAllocator(ClearCLContext pContext)
+  {
+    mContext = pContext;
+  }
+
+  @Override
+  public ClearCLPeerPointer allocateBuffer(MemAllocMode pMemAllocMode,
+                                           HostAccessType pHostAccessType,
+                                           KernelAccessType pKernelAccessType,
+                                           long pSizeInBytes)
+  {
+    return getBackend().getBufferPeerPointer(mContext.getDevice()
+                                                     .getPeerPointer(),
+                                             mContext.getPeerPointer(),
+                                             pMemAllocMode,
+                                             pHostAccessType,
+                                             pKernelAccessType,
+                                             pSizeInBytes);
+  }
+
+  @Override
+  public void releaseBuffer(ClearCLPeerPointer pBufferPeerPointer)
+  {
+    getBackend().releaseBuffer(pBufferPeerPointer);
+  }
+
+  @Override
+  public ClearCLPeerPointer allocateImage(MemAllocMode pMemAllocMode,
+                                          HostAccessType pHostAccessType,
+                                          KernelAccessType pKernelAccessType,
+                                          ImageType pImageType,
+                                          ImageChannelOrder pImageChannelOrder,
+                                          ImageChannelDataType pImageChannelDataType,
+                                          long... pDimensions)
+  {
+    return getBackend().getImagePeerPointer(mContext.getDevice()
+                                                    .getPeerPointer(),
+                                            mContext.getPeerPointer(),
+                                            pMemAllocMode,
+                                            pHostAccessType,
+                                            pKernelAccessType,
+                                            pImageType,
+                                            pImageChannelOrder,
+                                            pImageChannelDataType,
+                                            pDimensions);
+  }
+
+  @Override
+  public void releaseImage(ClearCLPeerPointer pImagePeerPointer)
+  {
+    getBackend().releaseImage(pImagePeerPointer);
+  }
+
+  @Override
+  public void trim()
+  {
+  }
+
+  @Override
+  public void close()
+  {
+  }
+
+  private ClearCLBackendInterface getBackend()
+  {
+    return mContext.getBackend();
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format("ClearCLDirectMemoryAllocator [mContext=%s]",
+                         mContext);
+  }
+
+}
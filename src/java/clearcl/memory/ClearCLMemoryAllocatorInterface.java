@@ -0,0 +1,91 @@
+package clearcl.memory;
+
+import clearcl.ClearCLPeerPointer;
+import clearcl.enums.HostAccessType;
+import clearcl.enums.ImageChannelDataType;
+import clearcl.enums.ImageChannelOrder;
+import clearcl.enums.ImageType;
+import clearcl.enums.KernelAccessType;
+import clearcl.enums.MemAllocMode;
+
+/**
+ * Memory allocators are responsible for allocating and releasing the OpenCL
+ * memory objects backing buffers and images created from a context.
+ *
+ * @author royer
+ */
+public interface ClearCLMemoryAllocatorInterface
+{
+
+  /**
+   * Allocates an OpenCL buffer of at least the given size.
+   * 
+   * @param pMemAllocMode
+   *          memory allocation mode
+   * @param pHostAccessType
+   *          host access type
+   * @param pKernelAccessType
+   *          kernel access type
+   * @param pSizeInBytes
+   *          buffer size in bytes
+   * @return buffer peer pointer
+   */
+  ClearCLPeerPointer allocateBuffer(MemAllocMode pMemAllocMode,
+                                    HostAccessType pHostAccessType,
+                                    KernelAccessType pKernelAccessType,
+                                    long pSizeInBytes);
+
+  /**
+   * Releases a buffer previously allocated.
+   * 
+   * @param pBufferPeerPointer
+   *          buffer peer pointer
+   */
+  void releaseBuffer(ClearCLPeerPointer pBufferPeerPointer);
+
+  /**
+   * Allocates an OpenCL image.
+   * 
+   * @param pMemAllocMode
+   *          memory allocation mode
+   * @param pHostAccessType
+   *          host access type
+   * @param pKernelAccessType
+   *          kernel access type
+   * @param pImageType
+   *          image type
+   * @param pImageChannelOrder
+   *          channel order
+   * @param pImageChannelDataType
+   *          channel data type
+   * @param pDimensions
+   *          dimensions
+   * @return image peer pointer
+   */
+  ClearCLPeerPointer allocateImage(MemAllocMode pMemAllocMode,
+                                   HostAccessType pHostAccessType,
+                                   KernelAccessType pKernelAccessType,
+                                   ImageType pImageType,
+                                   ImageChannelOrder pImageChannelOrder,
+                                   ImageChannelDataType pImageChannelDataType,
+                                   long... pDimensions);
+
+  /**
+   * Releases an image previously allocated.
+   * 
+   * @param pImagePeerPointer
+   *          image peer pointer
+   */
+  void releaseImage(ClearCLPeerPointer pImagePeerPointer);
+
+  /**
+   * Releases all memory objects held by this allocator that are not in use.
+   */
+  void trim();
+
+  /**
+   * Closes this allocator, memory objects that are not in use are released.
+   */
+  void close();
+
+}
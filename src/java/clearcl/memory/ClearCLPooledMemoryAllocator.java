@@ -0,0 +1,490 @@
+package clearcl.memory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.Supplier;
+
+import clearcl.ClearCLContext;
+import clearcl.ClearCLEvent;
+import clearcl.ClearCLPeerPointer;
+import clearcl.ClearCLQueue;
+import clearcl.enums.HostAccessType;
+import clearcl.enums.ImageChannelDataType;
+import clearcl.enums.ImageChannelOrder;
+import clearcl.enums.ImageType;
+import clearcl.enums.KernelAccessType;
+import clearcl.enums.MemAllocMode;
+import clearcl.exceptions.OpenCLException;
+
+/**
+ * Pooled memory allocator: released buffers and images are kept in a pool and
+ * handed out again to subsequent allocations with matching parameters. Buffer
+ * sizes are rounded up to size classes (four per power of two) so that buffers
+ * of similar sizes can be reused, images are only reused for identical type,
+ * channel order, channel data type and dimensions. Once the total size of
+ * pooled memory objects exceeds a high-water mark, the least recently released
+ * ones are released to the OpenCL implementation. If an allocation fails for
+ * lack of device memory, the pool is trimmed and the allocation retried once.
+ * Commands enqueued before a memory object is released may still be using it:
+ * on release a barrier is enqueued on every open queue of the context, and the
+ * object is only handed out again once these barriers have completed.
+ *
+ * @author royer
+ */
+public class ClearCLPooledMemoryAllocator implements
+                                          ClearCLMemoryAllocatorInterface
+{
+  private static final long cMinimalSizeClassInBytes = 256;
+  private static final int cSizeClassesPerPowerOfTwo = 4;
+
+  private final ClearCLContext mContext;
+  private final ClearCLDirectMemoryAllocator mDirectMemoryAllocator;
+  private volatile long mHighWaterMarkInBytes;
+
+  private final HashMap<PoolKey, ArrayDeque<PooledMemory>> mFreeMap =
+                                                                  new HashMap<>();
+  private final LinkedHashSet<PooledMemory> mLeastRecentlyUsedSet =
+                                                                  new LinkedHashSet<>();
+  private final IdentityHashMap<ClearCLPeerPointer, PooledMemory> mInUseMap =
+                                                                          new IdentityHashMap<>();
+  private boolean mClosed;
+
+  private long mInUseSizeInBytes;
+  private long mFreeSizeInBytes;
+  private long mNumberOfAllocations;
+  private long mNumberOfReuses;
+  private long mNumberOfEvictions;
+
+  private static final class PoolKey
+  {
+    private final Object[] mFields;
+
+    PoolKey(Object... pFields)
+    {
+      mFields = pFields;
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return Arrays.deepHashCode(mFields);
+    }
+
+    @Override
+    public boolean equals(Object pObject)
+    {
+      return pObject instanceof PoolKey
+             && Arrays.deepEquals(mFields, ((PoolKey) pObject).mFields);
+    }
+  }
+
+  private static final class PooledMemory
+  {
+    final PoolKey mKey;
+    final ClearCLPeerPointer mPeerPointer;
+    final long mSizeInBytes;
+    final boolean mIsImage;
+    ClearCLEvent[] mLastUseEvents;
+
+    PooledMemory(PoolKey pKey,
+                 ClearCLPeerPointer pPeerPointer,
+                 long pSizeInBytes,
+                 boolean pIsImage)
+    {
+      mKey = pKey;
+      mPeerPointer = pPeerPointer;
+      mSizeInBytes = pSizeInBytes;
+      mIsImage = pIsImage;
+    }
+  }
+
+  /**
+   * Instantiates a pooled memory allocator for a given context. The high-water
+   * mark is set to a quarter of the device's global memory.
+   *
+   * @param pContext
+   *          context
+   */
+  public ClearCLPooledMemoryAllocator(ClearCLContext pContext)
+  {
+    this(pContext,
+         pContext.getDevice().getGlobalMemorySizeInBytes() / 4);
+  }
+
+  /**
+   * Instantiates a pooled memory allocator for a given context and high-water
+   * mark.
+   *
+   * @param pContext
+   *          context
+   * @param pHighWaterMarkInBytes
+   *          maximal total size of pooled (not in use) memory objects in bytes
+   */
+  public ClearCLPooledMemoryAllocator(ClearCLContext pContext,
+                                      long pHighWaterMarkInBytes)
+  {
+    mContext = pContext;
+    mDirectMemoryAllocator = new ClearCLDirectMemoryAllocator(pContext);
+    mHighWaterMarkInBytes = pHighWaterMarkInBytes;
+  }
+
+  /**
+   * Returns the size class for a given buffer size, this is the actual size of
+   * pooled buffers allocated for that size.
+   *
+   * @param pSizeInBytes
+   *          requested size in bytes
+   * @return size class in bytes
+   */
+  public static long getSizeClass(long pSizeInBytes)
+  {
+    if (pSizeInBytes <= cMinimalSizeClassInBytes)
+      return cMinimalSizeClassInBytes;
+
+    long lStep = Long.highestOneBit(pSizeInBytes - 1)
+                 / cSizeClassesPerPowerOfTwo;
+    return ((pSizeInBytes + lStep - 1) / lStep) * lStep;
+  }
+
+  @Override
+  public ClearCLPeerPointer allocateBuffer(MemAllocMode pMemAllocMode,
+                                           HostAccessType pHostAccessType,
+                                           KernelAccessType pKernelAccessType,
+                                           long pSizeInBytes)
+  {
+    long lSizeClass = getSizeClass(pSizeInBytes);
+    PoolKey lKey = new PoolKey(pMemAllocMode,
+                               pHostAccessType,
+                               pKernelAccessType,
+                               lSizeClass);
+
+    return acquire(lKey,
+                   lSizeClass,
+                   false,
+                   () -> mDirectMemoryAllocator.allocateBuffer(pMemAllocMode,
+                                                               pHostAccessType,
+                                                               pKernelAccessType,
+                                                               lSizeClass));
+  }
+
+  @Override
+  public void releaseBuffer(ClearCLPeerPointer pBufferPeerPointer)
+  {
+    if (!recycle(pBufferPeerPointer))
+      mDirectMemoryAllocator.releaseBuffer(pBufferPeerPointer);
+  }
+
+  @Override
+  public ClearCLPeerPointer allocateImage(MemAllocMode pMemAllocMode,
+                                          HostAccessType pHostAccessType,
+                                          KernelAccessType pKernelAccessType,
+                                          ImageType pImageType,
+                                          ImageChannelOrder pImageChannelOrder,
+                                          ImageChannelDataType pImageChannelDataType,
+                                          long... pDimensions)
+  {
+    long[] lDimensions = pDimensions.clone();
+    PoolKey lKey = new PoolKey(pMemAllocMode,
+                               pHostAccessType,
+                               pKernelAccessType,
+                               pImageType,
+                               pImageChannelOrder,
+                               pImageChannelDataType,
+                               lDimensions);
+
+    long lSizeInBytes = pImageChannelOrder.getNumberOfChannels()
+                        * pImageChannelDataType.getNativeType()
+                                               .getSizeInBytes();
+    for (long lDimension : lDimensions)
+      lSizeInBytes *= lDimension;
+
+    return acquire(lKey,
+                   lSizeInBytes,
+                   true,
+                   () -> mDirectMemoryAllocator.allocateImage(pMemAllocMode,
+                                                              pHostAccessType,
+                                                              pKernelAccessType,
+                                                              pImageType,
+                                                              pImageChannelOrder,
+                                                              pImageChannelDataType,
+                                                              lDimensions));
+  }
+
+  @Override
+  public void releaseImage(ClearCLPeerPointer pImagePeerPointer)
+  {
+    if (!recycle(pImagePeerPointer))
+      mDirectMemoryAllocator.releaseImage(pImagePeerPointer);
+  }
+
+  private ClearCLPeerPointer acquire(PoolKey pKey,
+                                     long pSizeInBytes,
+                                     boolean pIsImage,
+                                     Supplier<ClearCLPeerPointer> pAllocator)
+  {
+    PooledMemory lReusedMemory = null;
+    ClearCLEvent[] lLastUseEvents = null;
+    synchronized (this)
+    {
+      ArrayDeque<PooledMemory> lFreeDeque = mFreeMap.get(pKey);
+      if (lFreeDeque != null)
+      {
+        lReusedMemory = lFreeDeque.pollLast();
+        if (lFreeDeque.isEmpty())
+          mFreeMap.remove(pKey);
+        mLeastRecentlyUsedSet.remove(lReusedMemory);
+        mFreeSizeInBytes -= lReusedMemory.mSizeInBytes;
+
+        mInUseMap.put(lReusedMemory.mPeerPointer, lReusedMemory);
+        mInUseSizeInBytes += lReusedMemory.mSizeInBytes;
+        mNumberOfReuses++;
+        lLastUseEvents = lReusedMemory.mLastUseEvents;
+        lReusedMemory.mLastUseEvents = null;
+      }
+    }
+
+    if (lReusedMemory != null)
+    {
+      // commands enqueued before the release must be done with it:
+      if (lLastUseEvents != null)
+      {
+        ClearCLEvent.waitToFinish(lLastUseEvents);
+        close(lLastUseEvents);
+      }
+      return lReusedMemory.mPeerPointer;
+    }
+
+    ClearCLPeerPointer lPeerPointer;
+    try
+    {
+      lPeerPointer = pAllocator.get();
+    }
+    catch (OpenCLException e)
+    {
+      // CL_MEM_OBJECT_ALLOCATION_FAILURE or CL_OUT_OF_RESOURCES:
+      if (e.getErrorCode() != -4 && e.getErrorCode() != -5)
+        throw e;
+      trim();
+      lPeerPointer = pAllocator.get();
+    }
+
+    synchronized (this)
+    {
+      PooledMemory lPooledMemory = new PooledMemory(pKey,
+                                                    lPeerPointer,
+                                                    pSizeInBytes,
+                                                    pIsImage);
+      mInUseMap.put(lPeerPointer, lPooledMemory);
+      mInUseSizeInBytes += pSizeInBytes;
+      mNumberOfAllocations++;
+    }
+    return lPeerPointer;
+  }
+
+  private boolean recycle(ClearCLPeerPointer pPeerPointer)
+  {
+    ClearCLEvent[] lLastUseEvents = enqueueLastUseBarriers();
+
+    ArrayList<PooledMemory> lEvictedList;
+    synchronized (this)
+    {
+      PooledMemory lPooledMemory = mInUseMap.remove(pPeerPointer);
+      if (lPooledMemory != null)
+        mInUseSizeInBytes -= lPooledMemory.mSizeInBytes;
+
+      if (lPooledMemory == null || mClosed)
+      {
+        // released directly, OpenCL defers the release itself:
+        close(lLastUseEvents);
+        return false;
+      }
+
+      lPooledMemory.mLastUseEvents = lLastUseEvents;
+      mFreeMap.computeIfAbsent(lPooledMemory.mKey,
+                               (k) -> new ArrayDeque<>())
+              .addLast(lPooledMemory);
+      mLeastRecentlyUsedSet.add(lPooledMemory);
+      mFreeSizeInBytes += lPooledMemory.mSizeInBytes;
+
+      lEvictedList = evict(mHighWaterMarkInBytes);
+    }
+    release(lEvictedList);
+    return true;
+  }
+
+  private ArrayList<PooledMemory> evict(long pMaxFreeSizeInBytes)
+  {
+    ArrayList<PooledMemory> lEvictedList = new ArrayList<>();
+    Iterator<PooledMemory> lIterator = mLeastRecentlyUsedSet.iterator();
+    while (mFreeSizeInBytes > pMaxFreeSizeInBytes && lIterator.hasNext())
+    {
+      PooledMemory lPooledMemory = lIterator.next();
+      lIterator.remove();
+
+      // the least recently released object is also the oldest of its key:
+      ArrayDeque<PooledMemory> lFreeDeque =
+                                          mFreeMap.get(lPooledMemory.mKey);
+      lFreeDeque.pollFirst();
+      if (lFreeDeque.isEmpty())
+        mFreeMap.remove(lPooledMemory.mKey);
+
+      mFreeSizeInBytes -= lPooledMemory.mSizeInBytes;
+      mNumberOfEvictions++;
+      lEvictedList.add(lPooledMemory);
+    }
+    return lEvictedList;
+  }
+
+  private void release(ArrayList<PooledMemory> pPooledMemoryList)
+  {
+    for (PooledMemory lPooledMemory : pPooledMemoryList)
+    {
+      // no need to wait, OpenCL defers releases until commands are done:
+      if (lPooledMemory.mLastUseEvents != null)
+        close(lPooledMemory.mLastUseEvents);
+      lPooledMemory.mLastUseEvents = null;
+
+      if (lPooledMemory.mIsImage)
+        mDirectMemoryAllocator.releaseImage(lPooledMemory.mPeerPointer);
+      else
+        mDirectMemoryAllocator.releaseBuffer(lPooledMemory.mPeerPointer);
+    }
+  }
+
+  private ClearCLEvent[] enqueueLastUseBarriers()
+  {
+    List<ClearCLQueue> lQueues = mContext.getQueues();
+    ArrayList<ClearCLEvent> lEvents = new ArrayList<>(lQueues.size());
+    for (ClearCLQueue lQueue : lQueues)
+      if (lQueue.getPeerPointer() != null)
+        lEvents.add(lQueue.enqueueBarrier());
+    return lEvents.toArray(new ClearCLEvent[lEvents.size()]);
+  }
+
+  private static void close(ClearCLEvent[] pEvents)
+  {
+    for (ClearCLEvent lEvent : pEvents)
+      lEvent.close();
+  }
+
+  @Override
+  public void trim()
+  {
+    ArrayList<PooledMemory> lEvictedList;
+    synchronized (this)
+    {
+      lEvictedList = evict(0);
+    }
+    release(lEvictedList);
+  }
+
+  @Override
+  public void close()
+  {
+    synchronized (this)
+    {
+      mClosed = true;
+    }
+    trim();
+  }
+
+  /**
+   * Returns the high-water mark: maximal total size of pooled (not in use)
+   * memory objects in bytes.
+   *
+   * @return high-water mark in bytes
+   */
+  public long getHighWaterMarkInBytes()
+  {
+    return mHighWaterMarkInBytes;
+  }
+
+  /**
+   * Sets the high-water mark: maximal total size of pooled (not in use) memory
+   * objects in bytes. Pooled objects in excess are released.
+   *
+   * @param pHighWaterMarkInBytes
+   *          high-water mark in bytes
+   */
+  public void setHighWaterMarkInBytes(long pHighWaterMarkInBytes)
+  {
+    ArrayList<PooledMemory> lEvictedList;
+    synchronized (this)
+    {
+      mHighWaterMarkInBytes = pHighWaterMarkInBytes;
+      lEvictedList = evict(mHighWaterMarkInBytes);
+    }
+    release(lEvictedList);
+  }
+
+  /**
+   * Returns the total size of memory objects currently in use.
+   *
+   * @return size in bytes
+   */
+  public synchronized long getInUseSizeInBytes()
+  {
+    return mInUseSizeInBytes;
+  }
+
+  /**
+   * Returns the total size of pooled memory objects not in use.
+   *
+   * @return size in bytes
+   */
+  public synchronized long getFreeSizeInBytes()
+  {
+    return mFreeSizeInBytes;
+  }
+
+  /**
+   * Returns the number of memory objects allocated from the OpenCL
+   * implementation.
+   *
+   * @return number of allocations
+   */
+  public synchronized long getNumberOfAllocations()
+  {
+    return mNumberOfAllocations;
+  }
+
+  /**
+   * Returns the number of allocations served from the pool.
+   *
+   * @return number of reuses
+   */
+  public synchronized long getNumberOfReuses()
+  {
+    return mNumberOfReuses;
+  }
+
+  /**
+   * Returns the number of pooled memory objects released to the OpenCL
+   * implementation because of the high-water mark or trimming.
+   *
+   * @return number of evictions
+   */
+  public synchronized long getNumberOfEvictions()
+  {
+    return mNumberOfEvictions;
+  }
+
+  @Override
+  public synchronized String toString()
+  {
+    return String.format("ClearCLPooledMemoryAllocator [inuse=%d, free=%d, highwatermark=%d, allocations=%d, reuses=%d, evictions=%d]",
+                         mInUseSizeInBytes,
+                         mFreeSizeInBytes,
+                         mHighWaterMarkInBytes,
+                         mNumberOfAllocations,
+                         mNumberOfReuses,
+                         mNumberOfEvictions);
+  }
+
+}
@@ -0,0 +1,167 @@
+package clearcl.memory.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import clearcl.ClearCL;
+import clearcl.ClearCLBuffer;
+import clearcl.ClearCLContext;
+import clearcl.ClearCLDevice;
+import clearcl.ClearCLImage;
+import clearcl.ClearCLQueue;
+import clearcl.backend.ClearCLBackendInterface;
+import clearcl.backend.ClearCLBackends;
+import clearcl.enums.HostAccessType;
+import clearcl.enums.ImageChannelDataType;
+import clearcl.enums.ImageChannelOrder;
+import clearcl.enums.KernelAccessType;
+import clearcl.memory.ClearCLPooledMemoryAllocator;
+import coremem.enums.NativeTypeEnum;
+import coremem.offheap.OffHeapMemory;
+
+import org.junit.Test;
+
+/**
+ * Pooled memory allocator tests
+ *
+ * @author royer
+ */
+public class ClearCLPooledMemoryAllocatorTests
+{
+
+  /**
+   * Tests size classes
+   */
+  @Test
+  public void testSizeClasses()
+  {
+    assertEquals(256, ClearCLPooledMemoryAllocator.getSizeClass(1));
+    assertEquals(256, ClearCLPooledMemoryAllocator.getSizeClass(256));
+    assertEquals(320, ClearCLPooledMemoryAllocator.getSizeClass(257));
+    assertEquals(1024, ClearCLPooledMemoryAllocator.getSizeClass(1000));
+    assertEquals(1024, ClearCLPooledMemoryAllocator.getSizeClass(1024));
+    assertEquals(1280, ClearCLPooledMemoryAllocator.getSizeClass(1025));
+
+    for (long lSize = 1; lSize < 1L << 40; lSize = lSize * 3 + 1)
+    {
+      long lSizeClass =
+                      ClearCLPooledMemoryAllocator.getSizeClass(lSize);
+      assertTrue(lSizeClass >= lSize);
+      assertTrue(lSizeClass <= Math.max(256, lSize + lSize / 4));
+    }
+  }
+
+  /**
+   * Tests reuse and eviction of buffers and images
+   *
+   * @throws Exception
+   *           NA
+   */
+  @Test
+  public void testReuse() throws Exception
+  {
+    ClearCLBackendInterface lClearCLBackendInterface =
+                                                     ClearCLBackends.getBestBackend();
+
+    try (ClearCL lClearCL = new ClearCL(lClearCLBackendInterface))
+    {
+      ClearCLDevice lDevice = lClearCL.getBestGPUDevice();
+      ClearCLContext lContext = lDevice.createContext();
+
+      ClearCLPooledMemoryAllocator lAllocator =
+                                              new ClearCLPooledMemoryAllocator(lContext,
+                                                                               1024 * 1024);
+      lContext.setMemoryAllocator(lAllocator);
+
+      for (int i = 0; i < 10; i++)
+      {
+        ClearCLBuffer lBuffer =
+                              lContext.createBuffer(HostAccessType.ReadWrite,
+                                                    KernelAccessType.ReadWrite,
+                                                    NativeTypeEnum.Float,
+                                                    1000 + i);
+        ClearCLImage lImage =
+                            lContext.createImage(HostAccessType.ReadWrite,
+                                                 KernelAccessType.ReadWrite,
+                                                 ImageChannelOrder.R,
+                                                 ImageChannelDataType.Float,
+                                                 64,
+                                                 64);
+        lBuffer.close();
+        lImage.close();
+      }
+
+      assertEquals(2, lAllocator.getNumberOfAllocations());
+      assertEquals(18, lAllocator.getNumberOfReuses());
+      assertEquals(0, lAllocator.getInUseSizeInBytes());
+
+      // exceeding the high-water mark evicts the least recently used:
+      lContext.createBuffer(HostAccessType.ReadWrite,
+                            KernelAccessType.ReadWrite,
+                            NativeTypeEnum.Byte,
+                            1024 * 1024)
+              .close();
+      assertTrue(lAllocator.getNumberOfEvictions() >= 1);
+      assertTrue(lAllocator.getFreeSizeInBytes() <= 1024 * 1024);
+
+      lAllocator.trim();
+      assertEquals(0, lAllocator.getFreeSizeInBytes());
+
+      lContext.close();
+    }
+  }
+
+  /**
+   * Tests that a pooled buffer closed while commands on another queue still use
+   * it is not handed out again before these commands are done.
+   *
+   * @throws Exception
+   *           NA
+   */
+  @Test
+  public void testReuseWaitsForPendingCommands() throws Exception
+  {
+    try (ClearCL lClearCL = new ClearCL(ClearCLBackends.getBestBackend()))
+    {
+      ClearCLContext lContext = lClearCL.getBestGPUDevice()
+                                        .createContext();
+      ClearCLPooledMemoryAllocator lAllocator =
+                                              new ClearCLPooledMemoryAllocator(lContext);
+      lContext.setMemoryAllocator(lAllocator);
+      ClearCLQueue lQueue = lContext.createQueue(false, false);
+
+      int lLength = 16 * 1024 * 1024;
+      ClearCLBuffer lBufferA =
+                             lContext.createBuffer(HostAccessType.ReadWrite,
+                                                   KernelAccessType.ReadWrite,
+                                                   NativeTypeEnum.Byte,
+                                                   lLength);
+      for (int i = 0; i < 16; i++)
+        lBufferA.fill(lQueue, new byte[]
+        { 1 }, 0, lLength, false);
+      lQueue.flush();
+      lBufferA.close();
+
+      ClearCLBuffer lBufferB =
+                             lContext.createBuffer(HostAccessType.ReadWrite,
+                                                   KernelAccessType.ReadWrite,
+                                                   NativeTypeEnum.Byte,
+                                                   lLength);
+      assertEquals(1, lAllocator.getNumberOfReuses());
+      lBufferB.fill(new byte[]
+      { 2 }, true);
+      lQueue.waitToFinish();
+
+      OffHeapMemory lMemory = OffHeapMemory.allocateBytes(lLength);
+      lBufferB.writeTo(lMemory, true);
+      for (int i = 0; i < lLength; i += 4093)
+        assertEquals(2, lMemory.getByteAligned(i));
+
+      lMemory.free();
+      lBufferB.close();
+      lQueue.close();
+      lContext.close();
+    }
+  }
+
+}
@@ -0,0 +1,172 @@
+package clearcl.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import clearcl.enums.TransferDirection;
+import clearcl.profiling.LatencyHistogram;
+
+/**
+ * Process wide registry of ClearCL runtime metrics. Metrics are named with
+ * dot-separated paths and are either counters or latency histograms. The
+ * ClearCL core publishes the following metrics:
+ * <ul>
+ * <li>kernel.[name].launches: number of kernel launches</li>
+ * <li>kernel.[name].enqueue: host-side enqueue latency histogram</li>
+ * <li>transfer.[direction].bytes: bytes transferred per direction</li>
+ * <li>context.[id].buffers.live, context.[id].buffers.bytes: live buffers and
+ * their size per context (same for images), removed when the context is
+ * closed</li>
+ * <li>program.build: program build time histogram</li>
+ * <li>program.cache.shared, program.cache.binary, program.cache.miss: program
+ * build cache hits and misses</li>
+ * <li>program.cache.error: failures to read or write cached binaries</li>
+ * </ul>
+ * Recording is lock-free; hot paths should keep a reference to the counters
+ * and histograms they update instead of looking them up each time.
+ *
+ * @author royer
+ */
+public class ClearCLMetrics
+{
+  /**
+   * This flag can be set statically to enable/disable metrics recording.
+   */
+  public static volatile boolean sEnabled = true;
+
+  private static final ConcurrentHashMap<String, Counter> sCounters =
+                                                                  new ConcurrentHashMap<>();
+  private static final ConcurrentHashMap<String, LatencyHistogram> sHistograms =
+                                                                             new ConcurrentHashMap<>();
+
+  private static final Counter[] sTransferredBytesCounters =
+                                                           new Counter[TransferDirection.values().length];
+  static
+  {
+    for (TransferDirection lTransferDirection : TransferDirection.values())
+      sTransferredBytesCounters[lTransferDirection.ordinal()] =
+                                                              getCounter("transfer."
+                                                                         + lTransferDirection.getMetricName()
+                                                                         + ".bytes");
+  }
+
+  /**
+   * Returns the counter of a given name, creating it if needed.
+   *
+   * @param pName
+   *          metric name
+   * @return counter
+   */
+  public static Counter getCounter(String pName)
+  {
+    return sCounters.computeIfAbsent(pName, (n) -> new Counter());
+  }
+
+  /**
+   * Returns the histogram of a given name, creating it if needed.
+   *
+   * @param pName
+   *          metric name
+   * @return histogram
+   */
+  public static LatencyHistogram getHistogram(String pName)
+  {
+    return sHistograms.computeIfAbsent(pName,
+                                       (n) -> new LatencyHistogram());
+  }
+
+  /**
+   * Removes all counters and histograms whose name starts with a given prefix,
+   * for example the metrics of a closed context. References kept on removed
+   * metrics remain usable but are not published anymore.
+   *
+   * @param pPrefix
+   *          metric name prefix
+   */
+  public static void remove(String pPrefix)
+  {
+    sCounters.keySet().removeIf((n) -> n.startsWith(pPrefix));
+    sHistograms.keySet().removeIf((n) -> n.startsWith(pPrefix));
+  }
+
+  /**
+   * Returns a sorted snapshot of all counters.
+   *
+   * @return map from metric name to counter
+   */
+  public static Map<String, Counter> getCounters()
+  {
+    return Collections.unmodifiableMap(new TreeMap<>(sCounters));
+  }
+
+  /**
+   * Returns a sorted snapshot of all histograms.
+   *
+   * @return map from metric name to histogram
+   */
+  public static Map<String, LatencyHistogram> getHistograms()
+  {
+    return Collections.unmodifiableMap(new TreeMap<>(sHistograms));
+  }
+
+  /**
+   * Counts the bytes of a transfer in a given direction.
+   *
+   * @param pTransferDirection
+   *          transfer direction
+   * @param pSizeInBytes
+   *          size in bytes
+   */
+  public static void countTransfer(TransferDirection pTransferDirection,
+                                   long pSizeInBytes)
+  {
+    if (sEnabled)
+      sTransferredBytesCounters[pTransferDirection.ordinal()].add(pSizeInBytes);
+  }
+
+  /**
+   * Returns the number of bytes transferred in a given direction.
+   *
+   * @param pTransferDirection
+   *          transfer direction
+   * @return bytes transferred
+   */
+  public static long getTransferredBytes(TransferDirection pTransferDirection)
+  {
+    return sTransferredBytesCounters[pTransferDirection.ordinal()].get();
+  }
+
+  /**
+   * Resets all counters and histograms. Gauges, such as live buffer counts,
+   * are reset too and are therefore only meaningful relative to the reset.
+   */
+  public static void reset()
+  {
+    for (Counter lCounter : sCounters.values())
+      lCounter.reset();
+    for (LatencyHistogram lHistogram : sHistograms.values())
+      lHistogram.clear();
+  }
+
+  /**
+   * Returns a human readable summary of all metrics.
+   *
+   * @return summary
+   */
+  public static String getSummary()
+  {
+    StringBuilder lStringBuilder = new StringBuilder();
+    for (Map.Entry<String, Counter> lEntry : getCounters().entrySet())
+      lStringBuilder.append(String.format("%s = %d\n",
+                                          lEntry.getKey(),
+                                          lEntry.getValue().get()));
+    for (Map.Entry<String, LatencyHistogram> lEntry : getHistograms().entrySet())
+      lStringBuilder.append(String.format("%s = %s\n",
+                                          lEntry.getKey(),
+                                          lEntry.getValue()));
+    return lStringBuilder.toString();
+  }
+
+}
@@ -0,0 +1,194 @@
+package clearcl.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import clearcl.exceptions.ClearCLException;
+import clearcl.profiling.LatencyHistogram;
+
+/**
+ * Exposes the ClearCL metrics registry through JMX as a single read-only MBean
+ * (clearcl:type=Metrics). Each counter is exposed as an attribute of same name,
+ * each histogram as a set of attributes suffixed with .count, .mean, .p50,
+ * .p90, .p99 and .max (in nanoseconds). Attributes are discovered dynamically,
+ * metrics created after registration show up when the MBean info is refreshed.
+ *
+ * @author royer
+ */
+public class ClearCLMetricsJMXExporter implements DynamicMBean
+{
+  /**
+   * Object name under which the metrics MBean is registered
+   */
+  public static final String cObjectName = "clearcl:type=Metrics";
+
+  private static final String[] cHistogramSuffixes = new String[]
+  { ".count", ".mean", ".p50", ".p90", ".p99", ".max" };
+
+  /**
+   * Registers the metrics MBean with the platform MBean server, does nothing
+   * if already registered.
+   */
+  public static synchronized void register()
+  {
+    try
+    {
+      MBeanServer lMBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName lObjectName = new ObjectName(cObjectName);
+      if (!lMBeanServer.isRegistered(lObjectName))
+        lMBeanServer.registerMBean(new ClearCLMetricsJMXExporter(),
+                                   lObjectName);
+    }
+    catch (Exception e)
+    {
+      throw new ClearCLException("Could not register metrics MBean", e);
+    }
+  }
+
+  /**
+   * Unregisters the metrics MBean from the platform MBean server, does nothing
+   * if not registered.
+   */
+  public static synchronized void unregister()
+  {
+    try
+    {
+      MBeanServer lMBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName lObjectName = new ObjectName(cObjectName);
+      if (lMBeanServer.isRegistered(lObjectName))
+        lMBeanServer.unregisterMBean(lObjectName);
+    }
+    catch (Exception e)
+    {
+      throw new ClearCLException("Could not unregister metrics MBean",
+                                 e);
+    }
+  }
+
+  @Override
+  public Object getAttribute(String pAttribute) throws AttributeNotFoundException
+  {
+    Counter lCounter = ClearCLMetrics.getCounters().get(pAttribute);
+    if (lCounter != null)
+      return lCounter.get();
+
+    int lIndexOfDot = pAttribute.lastIndexOf('.');
+    if (lIndexOfDot > 0)
+    {
+      LatencyHistogram lHistogram =
+                                  ClearCLMetrics.getHistograms()
+                                                .get(pAttribute.substring(0,
+                                                                          lIndexOfDot));
+      if (lHistogram != null)
+        switch (pAttribute.substring(lIndexOfDot))
+        {
+        case ".count":
+          return lHistogram.getCount();
+        case ".mean":
+          return (long) lHistogram.getMean();
+        case ".p50":
+          return lHistogram.getPercentile(50);
+        case ".p90":
+          return lHistogram.getPercentile(90);
+        case ".p99":
+          return lHistogram.getPercentile(99);
+        case ".max":
+          return lHistogram.getMax();
+        }
+    }
+
+    throw new AttributeNotFoundException(pAttribute);
+  }
+
+  @Override
+  public AttributeList getAttributes(String[] pAttributes)
+  {
+    AttributeList lAttributeList = new AttributeList();
+    for (String lAttribute : pAttributes)
+      try
+      {
+        lAttributeList.add(new Attribute(lAttribute,
+                                         getAttribute(lAttribute)));
+      }
+      catch (AttributeNotFoundException e)
+      {
+        // missing attributes are omitted, as per the JMX contract.
+      }
+    return lAttributeList;
+  }
+
+  @Override
+  public void setAttribute(Attribute pAttribute) throws AttributeNotFoundException
+  {
+    throw new AttributeNotFoundException("Metrics are read-only: "
+                                         + pAttribute.getName());
+  }
+
+  @Override
+  public AttributeList setAttributes(AttributeList pAttributes)
+  {
+    return new AttributeList();
+  }
+
+  @Override
+  public Object invoke(String pActionName,
+                       Object[] pParams,
+                       String[] pSignature)
+  {
+    if ("reset".equals(pActionName))
+    {
+      ClearCLMetrics.reset();
+      return null;
+    }
+    throw new UnsupportedOperationException(pActionName);
+  }
+
+  @Override
+  public MBeanInfo getMBeanInfo()
+  {
+    ArrayList<MBeanAttributeInfo> lAttributeInfos = new ArrayList<>();
+
+    for (String lName : ClearCLMetrics.getCounters().keySet())
+      lAttributeInfos.add(new MBeanAttributeInfo(lName,
+                                                 "long",
+                                                 "counter",
+                                                 true,
+                                                 false,
+                                                 false));
+
+    for (Map.Entry<String, LatencyHistogram> lEntry : ClearCLMetrics.getHistograms()
+                                                                    .entrySet())
+      for (String lSuffix : cHistogramSuffixes)
+        lAttributeInfos.add(new MBeanAttributeInfo(lEntry.getKey()
+                                                   + lSuffix,
+                                                   "long",
+                                                   "histogram (ns)",
+                                                   true,
+                                                   false,
+                                                   false));
+
+    return new MBeanInfo(getClass().getName(),
+                         "ClearCL runtime metrics",
+                         lAttributeInfos.toArray(new MBeanAttributeInfo[lAttributeInfos.size()]),
+                         null,
+                         new MBeanOperationInfo[]
+                         { new MBeanOperationInfo("reset",
+                                                  "resets all metrics",
+                                                  null,
+                                                  "void",
+                                                  MBeanOperationInfo.ACTION) },
+                         null);
+  }
+
+}
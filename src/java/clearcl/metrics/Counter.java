@@ -0,0 +1,66 @@
+package clearcl.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free counter. Counters can be incremented and decremented concurrently
+ * from any thread with very low contention, and can therefore also be used as
+ * gauges for quantities such as the number of live buffers.
+ *
+ * @author royer
+ */
+public class Counter
+{
+  private final LongAdder mLongAdder = new LongAdder();
+
+  /**
+   * Increments this counter by one.
+   */
+  public void increment()
+  {
+    mLongAdder.increment();
+  }
+
+  /**
+   * Decrements this counter by one.
+   */
+  public void decrement()
+  {
+    mLongAdder.decrement();
+  }
+
+  /**
+   * Adds a given value to this counter, the value can be negative.
+   *
+   * @param pValue
+   *          value to add
+   */
+  public void add(long pValue)
+  {
+    mLongAdder.add(pValue);
+  }
+
+  /**
+   * Returns the current value of this counter.
+   *
+   * @return value
+   */
+  public long get()
+  {
+    return mLongAdder.sum();
+  }
+
+  /**
+   * Resets this counter to zero.
+   */
+  public void reset()
+  {
+    mLongAdder.reset();
+  }
+
+  @Override
+  public String toString()
+  {
+    return Long.toString(get());
+  }
+}
@@ -0,0 +1,114 @@
+package clearcl.metrics.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import clearcl.ClearCL;
+import clearcl.ClearCLContext;
+import clearcl.backend.ClearCLBackends;
+import clearcl.enums.TransferDirection;
+import clearcl.metrics.ClearCLMetrics;
+import clearcl.metrics.ClearCLMetricsJMXExporter;
+import clearcl.metrics.Counter;
+
+import org.junit.Test;
+
+/**
+ * Metrics registry and JMX exporter tests
+ *
+ * @author royer
+ */
+public class ClearCLMetricsTests
+{
+
+  /**
+   * Tests counters, histograms and their export through JMX
+   *
+   * @throws Exception
+   *           NA
+   */
+  @Test
+  public void testMetrics() throws Exception
+  {
+    Counter lCounter = ClearCLMetrics.getCounter("test.counter");
+    assertTrue(lCounter == ClearCLMetrics.getCounter("test.counter"));
+    lCounter.reset();
+
+    Thread[] lThreads = new Thread[4];
+    for (int t = 0; t < lThreads.length; t++)
+    {
+      lThreads[t] = new Thread(() -> {
+        for (int i = 0; i < 10000; i++)
+          lCounter.increment();
+      });
+      lThreads[t].start();
+    }
+    for (Thread lThread : lThreads)
+      lThread.join();
+    assertEquals(40000, lCounter.get());
+
+    ClearCLMetrics.getHistogram("test.histogram").record(1000);
+
+    long lTransferred =
+                      ClearCLMetrics.getTransferredBytes(TransferDirection.HostToDevice);
+    ClearCLMetrics.countTransfer(TransferDirection.HostToDevice, 128);
+    assertEquals(lTransferred + 128,
+                 ClearCLMetrics.getTransferredBytes(TransferDirection.HostToDevice));
+
+    ClearCLMetricsJMXExporter.register();
+    try
+    {
+      MBeanServer lMBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName lObjectName =
+                             new ObjectName(ClearCLMetricsJMXExporter.cObjectName);
+
+      assertEquals(40000L,
+                   lMBeanServer.getAttribute(lObjectName,
+                                             "test.counter"));
+      assertEquals(1L,
+                   lMBeanServer.getAttribute(lObjectName,
+                                             "test.histogram.count"));
+      assertEquals(1000L,
+                   lMBeanServer.getAttribute(lObjectName,
+                                             "test.histogram.max"));
+
+      lMBeanServer.invoke(lObjectName, "reset", null, null);
+      assertEquals(0, lCounter.get());
+    }
+    finally
+    {
+      ClearCLMetricsJMXExporter.unregister();
+    }
+  }
+
+  /**
+   * Tests that the metrics of a context are removed from the registry once the
+   * context is closed.
+   *
+   * @throws Exception
+   *           NA
+   */
+  @Test
+  public void testContextMetricsRemovedOnClose() throws Exception
+  {
+    try (ClearCL lClearCL =
+                          new ClearCL(ClearCLBackends.getBestBackend()))
+    {
+      ClearCLContext lContext = lClearCL.getBestGPUDevice()
+                                        .createContext();
+      String lName = "context." + lContext.getContextIndex()
+                     + ".buffers.live";
+      assertTrue(ClearCLMetrics.getCounters().containsKey(lName));
+
+      lContext.close();
+      assertFalse(ClearCLMetrics.getCounters().containsKey(lName));
+    }
+  }
+
+}
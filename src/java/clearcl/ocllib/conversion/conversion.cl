@@ -0,0 +1,60 @@
+#if defined UINT8
+  #define OUTTYPE uchar
+  #define CONVERT(x) convert_uchar_sat_rte(x)
+#elif defined UINT16
+  #define OUTTYPE ushort
+  #define CONVERT(x) convert_ushort_sat_rte(x)
+#elif defined FLOAT
+  #define OUTTYPE float
+  #define CONVERT(x) (x)
+#endif
+
+
+__kernel
+void convert_buffer(__global const float*   buffer,
+                    __global       OUTTYPE* result,
+                             const float    scale,
+                             const float    offset,
+                             const long     length)
+{
+  const long index = get_global_id(0);
+
+  if (index<length)
+    result[index] = CONVERT(scale*buffer[index]+offset);
+}
+
+
+__kernel
+void convert_image_2d(__read_only image2d_t  image,
+                      __global    OUTTYPE*   result,
+                            const float      scale,
+                            const float      offset)
+{
+  const int x = get_global_id(0);
+  const int y = get_global_id(1);
+
+  const long width = get_image_width(image);
+
+  const float value = read_imagef(image, (int2){x,y}).x;
+
+  result[x+width*y] = CONVERT(scale*value+offset);
+}
+
+
+__kernel
+void convert_image_3d(__read_only image3d_t  image,
+                      __global    OUTTYPE*   result,
+                            const float      scale,
+                            const float      offset)
+{
+  const int x = get_global_id(0);
+  const int y = get_global_id(1);
+  const int z = get_global_id(2);
+
+  const long width  = get_image_width(image);
+  const long height = get_image_height(image);
+
+  const float value = read_imagef(image, (int4){x,y,z,0}).x;
+
+  result[x+width*(y+height*z)] = CONVERT(scale*value+offset);
+}
@@ -0,0 +1,265 @@
+// Hierarchical reductions: each work group reduces its elements in local
+// memory to one (value, index) pair per group, partials are then reduced by
+// further passes until a single pair is left.
+//
+// The operation codes must match clearcl.ops.math.enums.ReductionOperation.
+// For argmin/argmax the index is the linear index of the element, for count
+// the index holds the number of non-zero elements. Values are float2: the
+// second lane is only used by minmax, which keeps the min in the first lane
+// and the max in the second.
+//
+// Identities are infinite and NaNs are ignored, so these kernels must not be
+// built with finite or fast relaxed math.
+
+#define REDUCE_MIN            0
+#define REDUCE_MAX            1
+#define REDUCE_SUM            2
+#define REDUCE_SUM_OF_SQUARES 3
+#define REDUCE_ARGMIN         4
+#define REDUCE_ARGMAX         5
+#define REDUCE_COUNT          6
+#define REDUCE_MINMAX         7
+
+#ifndef TYPE
+  #define TYPE float
+#endif
+
+#if !defined FLOAT && !defined UINT && !defined INT
+  #define FLOAT
+#endif
+
+#if defined FLOAT
+  #define READ_IMAGE(image, pos) read_imagef(image, pos).x
+#elif defined UINT
+  #define READ_IMAGE(image, pos) (float)(read_imageui(image, pos).x)
+#elif defined INT
+  #define READ_IMAGE(image, pos) (float)(read_imagei(image, pos).x)
+#endif
+
+
+inline float2 reduce_identity_value(const int op)
+{
+  switch(op)
+  {
+    case REDUCE_MIN:
+    case REDUCE_ARGMIN:
+      return (float2){INFINITY, 0.0f};
+    case REDUCE_MAX:
+    case REDUCE_ARGMAX:
+      return (float2){-INFINITY, 0.0f};
+    case REDUCE_MINMAX:
+      return (float2){INFINITY, -INFINITY};
+    default:
+      return (float2){0.0f, 0.0f};
+  }
+}
+
+inline long reduce_identity_index(const int op)
+{
+  return op==REDUCE_COUNT ? 0 : LONG_MAX;
+}
+
+inline void reduce_combine(const int    op,
+                                 float2* value,
+                                 long*   index,
+                           const float2  other_value,
+                           const long    other_index)
+{
+  switch(op)
+  {
+    case REDUCE_MIN:
+      value->x = fmin(value->x, other_value.x);
+      break;
+    case REDUCE_MAX:
+      value->x = fmax(value->x, other_value.x);
+      break;
+    case REDUCE_SUM:
+    case REDUCE_SUM_OF_SQUARES:
+      value->x += other_value.x;
+      break;
+    case REDUCE_ARGMIN:
+      if(other_value.x<value->x || (other_value.x==value->x && other_index<*index))
+      {
+        value->x = other_value.x;
+        *index   = other_index;
+      }
+      break;
+    case REDUCE_ARGMAX:
+      if(other_value.x>value->x || (other_value.x==value->x && other_index<*index))
+      {
+        value->x = other_value.x;
+        *index   = other_index;
+      }
+      break;
+    case REDUCE_COUNT:
+      *index += other_index;
+      break;
+    case REDUCE_MINMAX:
+      value->x = fmin(value->x, other_value.x);
+      value->y = fmax(value->y, other_value.y);
+      break;
+  }
+}
+
+inline void reduce_element(const int     op,
+                           const float   element,
+                           const long    element_index,
+                                 float2* value,
+                                 long*   index)
+{
+  switch(op)
+  {
+    case REDUCE_SUM_OF_SQUARES:
+      value->x += element*element;
+      break;
+    case REDUCE_COUNT:
+      *index += element!=0 ? 1 : 0;
+      break;
+    default:
+      reduce_combine(op, value, index, (float2){element, element}, element_index);
+  }
+}
+
+// Tree reduction in local memory, local size must be a power of two:
+inline void reduce_group(const int              op,
+                         const float2           value,
+                         const long             index,
+                               __local  float2* lvalues,
+                               __local  long*   lindices,
+                               __global float2* values,
+                               __global long*   indices)
+{
+  const int lid = get_local_id(0);
+
+  lvalues[lid]  = value;
+  lindices[lid] = index;
+  barrier(CLK_LOCAL_MEM_FENCE);
+
+  for(int s=get_local_size(0)/2; s>0; s>>=1)
+  {
+    if(lid<s)
+    {
+      float2 v = lvalues[lid];
+      long  i = lindices[lid];
+      reduce_combine(op, &v, &i, lvalues[lid+s], lindices[lid+s]);
+      lvalues[lid]  = v;
+      lindices[lid] = i;
+    }
+    barrier(CLK_LOCAL_MEM_FENCE);
+  }
+
+  if(lid==0)
+  {
+    values[get_group_id(0)]  = lvalues[0];
+    indices[get_group_id(0)] = lindices[0];
+  }
+}
+
+
+__kernel
+void reduce_buffer(__global const TYPE*  buffer,
+                            const long   length,
+                            const int    op,
+                   __global       float2* values,
+                   __global       long*   indices,
+                   __local        float2* lvalues,
+                   __local        long*   lindices)
+{
+  float2 value = reduce_identity_value(op);
+  long   index = reduce_identity_index(op);
+
+  for(long i=get_global_id(0); i<length; i+=get_global_size(0))
+    reduce_element(op, (float)buffer[i], i, &value, &index);
+
+  reduce_group(op, value, index, lvalues, lindices, values, indices);
+}
+
+
+__kernel
+void reduce_image_1d(__read_only image1d_t  image,
+                           const int        op,
+                     __global    float2*    values,
+                     __global    long*      indices,
+                     __local     float2*    lvalues,
+                     __local     long*      lindices)
+{
+  const long length = get_image_width(image);
+
+  float2 value = reduce_identity_value(op);
+  long   index = reduce_identity_index(op);
+
+  for(long i=get_global_id(0); i<length; i+=get_global_size(0))
+    reduce_element(op, READ_IMAGE(image, (int)i), i, &value, &index);
+
+  reduce_group(op, value, index, lvalues, lindices, values, indices);
+}
+
+
+__kernel
+void reduce_image_2d(__read_only image2d_t  image,
+                           const int        op,
+                     __global    float2*    values,
+                     __global    long*      indices,
+                     __local     float2*    lvalues,
+                     __local     long*      lindices)
+{
+  const long width  = get_image_width(image);
+  const long length = width*get_image_height(image);
+
+  float2 value = reduce_identity_value(op);
+  long   index = reduce_identity_index(op);
+
+  for(long i=get_global_id(0); i<length; i+=get_global_size(0))
+  {
+    const int2 pos = {(int)(i%width), (int)(i/width)};
+    reduce_element(op, READ_IMAGE(image, pos), i, &value, &index);
+  }
+
+  reduce_group(op, value, index, lvalues, lindices, values, indices);
+}
+
+
+__kernel
+void reduce_image_3d(__read_only image3d_t  image,
+                           const int        op,
+                     __global    float2*    values,
+                     __global    long*      indices,
+                     __local     float2*    lvalues,
+                     __local     long*      lindices)
+{
+  const long width  = get_image_width(image);
+  const long plane  = width*get_image_height(image);
+  const long length = plane*get_image_depth(image);
+
+  float2 value = reduce_identity_value(op);
+  long   index = reduce_identity_index(op);
+
+  for(long i=get_global_id(0); i<length; i+=get_global_size(0))
+  {
+    const long j = i%plane;
+    const int4 pos = {(int)(j%width), (int)(j/width), (int)(i/plane), 0};
+    reduce_element(op, READ_IMAGE(image, pos), i, &value, &index);
+  }
+
+  reduce_group(op, value, index, lvalues, lindices, values, indices);
+}
+
+
+__kernel
+void reduce_partials(__global const float2* invalues,
+                     __global const long*   inindices,
+                              const long    length,
+                              const int     op,
+                     __global       float2* values,
+                     __global       long*   indices,
+                     __local        float2* lvalues,
+                     __local        long*   lindices)
+{
+  float2 value = reduce_identity_value(op);
+  long   index = reduce_identity_index(op);
+
+  for(long i=get_global_id(0); i<length; i+=get_global_size(0))
+    reduce_combine(op, &value, &index, invalues[i], inindices[i]);
+
+  reduce_group(op, value, index, lvalues, lindices, values, indices);
+}
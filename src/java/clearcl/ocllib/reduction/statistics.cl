@@ -0,0 +1,286 @@
+// Fused statistics: a single pass over the data gives, per work group, the
+// min, max, mean and sum of squared deviations (Welford/Chan updates, stable
+// in single precision) as well as a histogram accumulated in local memory.
+// Group partials are then merged by a second kernel run as one work group.
+//
+// Moments are stored as 4 floats: min, max, mean, m2. Histogram bins span
+// [histogram_min, histogram_min + bins/histogram_scale), values outside go to
+// the first or last bin. NaNs are ignored.
+
+#ifndef TYPE
+  #define TYPE float
+#endif
+
+#if !defined FLOAT && !defined UINT && !defined INT
+  #define FLOAT
+#endif
+
+#if defined FLOAT
+  #define READ_IMAGE(image, pos) read_imagef(image, pos).x
+#elif defined UINT
+  #define READ_IMAGE(image, pos) (float)(read_imageui(image, pos).x)
+#elif defined INT
+  #define READ_IMAGE(image, pos) (float)(read_imagei(image, pos).x)
+#endif
+
+
+inline void statistics_merge(      float* moments,
+                                   long*  count,
+                             const float  min,
+                             const float  max,
+                             const float  mean,
+                             const float  m2,
+                             const long   other_count)
+{
+  if(other_count==0)
+    return;
+
+  const long  n     = *count + other_count;
+  const float delta = mean - moments[2];
+  const float f     = (float)other_count/(float)n;
+
+  moments[0] = fmin(moments[0], min);
+  moments[1] = fmax(moments[1], max);
+  moments[2] += delta*f;
+  moments[3] += m2 + delta*delta*(float)(*count)*f;
+  *count = n;
+}
+
+inline void statistics_element(const float          value,
+                                     float*         moments,
+                                     long*          count,
+                               const float          histogram_min,
+                               const float          histogram_scale,
+                               const int            bins,
+                                     __local uint*  lhistogram)
+{
+  if(isnan(value))
+    return;
+
+  *count += 1;
+  const float delta = value - moments[2];
+  moments[0] = fmin(moments[0], value);
+  moments[1] = fmax(moments[1], value);
+  moments[2] += delta/(float)(*count);
+  moments[3] += delta*(value - moments[2]);
+
+  const int bin = (int)clamp((value - histogram_min)*histogram_scale, 0.0f, (float)(bins-1));
+  atomic_inc(&lhistogram[bin]);
+}
+
+inline void statistics_init(      float*        moments,
+                                  long*         count,
+                            const int           bins,
+                                  __local uint* lhistogram)
+{
+  moments[0] = INFINITY;
+  moments[1] = -INFINITY;
+  moments[2] = 0.0f;
+  moments[3] = 0.0f;
+  *count     = 0;
+
+  for(int b=get_local_id(0); b<bins; b+=get_local_size(0))
+    lhistogram[b] = 0;
+  barrier(CLK_LOCAL_MEM_FENCE);
+}
+
+// Tree reduction of the moments in local memory, local size must be a power of
+// two. Writes the moments of the group and, if given, its histogram:
+inline void statistics_group(const float*          moments,
+                             const long            count,
+                             const int             bins,
+                                   __local  uint*  lhistogram,
+                                   __local  float* lmoments,
+                                   __local  long*  lcounts,
+                                   __global float* outmoments,
+                                   __global long*  outcounts,
+                                   __global uint*  outhistograms)
+{
+  const int lid   = get_local_id(0);
+  const int group = get_group_id(0);
+
+  for(int k=0; k<4; k++)
+    lmoments[4*lid+k] = moments[k];
+  lcounts[lid] = count;
+  barrier(CLK_LOCAL_MEM_FENCE);
+
+  for(int s=get_local_size(0)/2; s>0; s>>=1)
+  {
+    if(lid<s)
+    {
+      float m[4] = {lmoments[4*lid], lmoments[4*lid+1], lmoments[4*lid+2], lmoments[4*lid+3]};
+      long  n    = lcounts[lid];
+      statistics_merge(m, &n,
+                       lmoments[4*(lid+s)],
+                       lmoments[4*(lid+s)+1],
+                       lmoments[4*(lid+s)+2],
+                       lmoments[4*(lid+s)+3],
+                       lcounts[lid+s]);
+      for(int k=0; k<4; k++)
+        lmoments[4*lid+k] = m[k];
+      lcounts[lid] = n;
+    }
+    barrier(CLK_LOCAL_MEM_FENCE);
+  }
+
+  if(lid==0)
+  {
+    for(int k=0; k<4; k++)
+      outmoments[4*group+k] = lmoments[k];
+    outcounts[group] = lcounts[0];
+  }
+
+  for(int b=lid; b<bins; b+=get_local_size(0))
+    outhistograms[(long)group*bins+b] = lhistogram[b];
+}
+
+
+__kernel
+void statistics_buffer(__global const TYPE*  buffer,
+                                const long   length,
+                                const float  histogram_min,
+                                const float  histogram_scale,
+                                const int    bins,
+                       __global       float* moments,
+                       __global       long*  counts,
+                       __global       uint*  histograms,
+                       __local        uint*  lhistogram,
+                       __local        float* lmoments,
+                       __local        long*  lcounts)
+{
+  float m[4];
+  long  n;
+  statistics_init(m, &n, bins, lhistogram);
+
+  for(long i=get_global_id(0); i<length; i+=get_global_size(0))
+    statistics_element((float)buffer[i], m, &n, histogram_min, histogram_scale, bins, lhistogram);
+  barrier(CLK_LOCAL_MEM_FENCE);
+
+  statistics_group(m, n, bins, lhistogram, lmoments, lcounts, moments, counts, histograms);
+}
+
+
+__kernel
+void statistics_image_1d(__read_only image1d_t  image,
+                               const float      histogram_min,
+                               const float      histogram_scale,
+                               const int        bins,
+                         __global    float*     moments,
+                         __global    long*      counts,
+                         __global    uint*      histograms,
+                         __local     uint*      lhistogram,
+                         __local     float*     lmoments,
+                         __local     long*      lcounts)
+{
+  const long length = get_image_width(image);
+
+  float m[4];
+  long  n;
+  statistics_init(m, &n, bins, lhistogram);
+
+  for(long i=get_global_id(0); i<length; i+=get_global_size(0))
+    statistics_element(READ_IMAGE(image, (int)i), m, &n, histogram_min, histogram_scale, bins, lhistogram);
+  barrier(CLK_LOCAL_MEM_FENCE);
+
+  statistics_group(m, n, bins, lhistogram, lmoments, lcounts, moments, counts, histograms);
+}
+
+
+__kernel
+void statistics_image_2d(__read_only image2d_t  image,
+                               const float      histogram_min,
+                               const float      histogram_scale,
+                               const int        bins,
+                         __global    float*     moments,
+                         __global    long*      counts,
+                         __global    uint*      histograms,
+                         __local     uint*      lhistogram,
+                         __local     float*     lmoments,
+                         __local     long*      lcounts)
+{
+  const long width  = get_image_width(image);
+  const long length = width*get_image_height(image);
+
+  float m[4];
+  long  n;
+  statistics_init(m, &n, bins, lhistogram);
+
+  for(long i=get_global_id(0); i<length; i+=get_global_size(0))
+  {
+    const int2 pos = {(int)(i%width), (int)(i/width)};
+    statistics_element(READ_IMAGE(image, pos), m, &n, histogram_min, histogram_scale, bins, lhistogram);
+  }
+  barrier(CLK_LOCAL_MEM_FENCE);
+
+  statistics_group(m, n, bins, lhistogram, lmoments, lcounts, moments, counts, histograms);
+}
+
+
+__kernel
+void statistics_image_3d(__read_only image3d_t  image,
+                               const float      histogram_min,
+                               const float      histogram_scale,
+                               const int        bins,
+                         __global    float*     moments,
+                         __global    long*      counts,
+                         __global    uint*      histograms,
+                         __local     uint*      lhistogram,
+                         __local     float*     lmoments,
+                         __local     long*      lcounts)
+{
+  const long width  = get_image_width(image);
+  const long plane  = width*get_image_height(image);
+  const long length = plane*get_image_depth(image);
+
+  float m[4];
+  long  n;
+  statistics_init(m, &n, bins, lhistogram);
+
+  for(long i=get_global_id(0); i<length; i+=get_global_size(0))
+  {
+    const long j = i%plane;
+    const int4 pos = {(int)(j%width), (int)(j/width), (int)(i/plane), 0};
+    statistics_element(READ_IMAGE(image, pos), m, &n, histogram_min, histogram_scale, bins, lhistogram);
+  }
+  barrier(CLK_LOCAL_MEM_FENCE);
+
+  statistics_group(m, n, bins, lhistogram, lmoments, lcounts, moments, counts, histograms);
+}
+
+
+// Merges the partials of all groups, must be run as a single work group:
+__kernel
+void statistics_partials(__global const float* inmoments,
+                         __global const long*  incounts,
+                         __global const uint*  inhistograms,
+                                  const int    groups,
+                                  const int    bins,
+                         __global       float* moments,
+                         __global       long*  counts,
+                         __global       uint*  histogram,
+                         __local        float* lmoments,
+                         __local        long*  lcounts)
+{
+  const int lid = get_local_id(0);
+
+  float m[4] = {INFINITY, -INFINITY, 0.0f, 0.0f};
+  long  n    = 0;
+  for(int g=lid; g<groups; g+=get_local_size(0))
+    statistics_merge(m, &n,
+                     inmoments[4*g],
+                     inmoments[4*g+1],
+                     inmoments[4*g+2],
+                     inmoments[4*g+3],
+                     incounts[g]);
+
+  for(int b=lid; b<bins; b+=get_local_size(0))
+  {
+    uint sum = 0;
+    for(int g=0; g<groups; g++)
+      sum += inhistograms[(long)g*bins+b];
+    histogram[b] = sum;
+  }
+
+  // the merged histogram is already written, no local histogram to copy:
+  statistics_group(m, n, 0, 0, lmoments, lcounts, moments, counts, histogram);
+}
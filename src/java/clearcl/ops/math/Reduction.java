@@ -0,0 +1,436 @@
+package clearcl.ops.math;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import clearcl.ClearCLBuffer;
+import clearcl.ClearCLHostImageBuffer;
+import clearcl.ClearCLImage;
+import clearcl.ClearCLKernel;
+import clearcl.ClearCLProgram;
+import clearcl.ClearCLQueue;
+import clearcl.enums.HostAccessType;
+import clearcl.enums.ImageChannelDataType;
+import clearcl.enums.KernelAccessType;
+import clearcl.exceptions.ClearCLException;
+import clearcl.exceptions.ClearCLIllegalArgumentException;
+import clearcl.exceptions.ClearCLUnsupportedException;
+import clearcl.interfaces.ClearCLImageInterface;
+import clearcl.ocllib.OCLlib;
+import clearcl.ops.OpsBase;
+import clearcl.ops.math.enums.ReductionOperation;
+import coremem.ContiguousMemoryInterface;
+import coremem.enums.NativeTypeEnum;
+
+/**
+ * Reduces a buffer or the first channel of an image to a single value: min,
+ * max, sum, sum of squares, argmin, argmax, or count of non-zero values, or to
+ * both its min and max values in a single pass. The
+ * first pass reads the data with one work item per element stride and reduces
+ * each work group in local memory to a partial result, further passes reduce
+ * the partials on the device until a single result is left. Only that result
+ * is read back, through pinned host memory. Scratch buffers are allocated once
+ * and reused across calls.
+ *
+ * @author royer
+ */
+public class Reduction extends OpsBase implements AutoCloseable
+{
+  private static final int cMaxGroupSize = 256;
+  private static final int cMaxNumberOfGroups = 256;
+
+  private final int mGroupSize;
+  private final Map<String, ClearCLProgram> mPrograms = new HashMap<>();
+  private final ClearCLBuffer[] mValuesBuffers = new ClearCLBuffer[2];
+  private final ClearCLBuffer[] mIndicesBuffers = new ClearCLBuffer[2];
+  private ClearCLBuffer mResultValueBuffer, mResultIndexBuffer;
+  private ClearCLHostImageBuffer mResultValueHostBuffer,
+      mResultIndexHostBuffer;
+
+  /**
+   * Instantiates a reduction op given a queue. The program for float data is
+   * built in the background, programs for other data types are built on first
+   * use.
+   *
+   * @param pClearCLQueue
+   *          queue
+   * @throws IOException
+   *           thrown if kernels cannot be read.
+   */
+  public Reduction(ClearCLQueue pClearCLQueue) throws IOException
+  {
+    super(pClearCLQueue);
+
+    // tree reductions need power of two work group sizes:
+    mGroupSize =
+               (int) Long.highestOneBit(Math.min(cMaxGroupSize,
+                                                 Math.max(1,
+                                                          getContext().getDevice()
+                                                                      .getMaxWorkGroupSize())));
+    getProgram("FLOAT", null);
+  }
+
+  private ClearCLProgram getProgram(String pDefine, String pValue)
+  {
+    String lKey = pValue == null ? pDefine : pDefine + "=" + pValue;
+    ClearCLProgram lProgram = mPrograms.get(lKey);
+    if (lProgram == null)
+    {
+      try
+      {
+        lProgram = getContext().createProgram(OCLlib.class,
+                                              "reduction/reduce.cl");
+      }
+      catch (IOException e)
+      {
+        throw new ClearCLException("Could not load reduction kernels", e);
+      }
+      // no finite or fast relaxed math: the kernels rely on infinite
+      // identities and on NaNs being ignored.
+      if (pValue == null)
+        lProgram.addDefine(pDefine);
+      else
+        lProgram.addDefine(pDefine, pValue);
+      lProgram.buildAndLogAsync();
+      mPrograms.put(lKey, lProgram);
+    }
+    return lProgram;
+  }
+
+  /**
+   * Reduces an image or buffer to a value.
+   *
+   * @param pImage
+   *          image or buffer
+   * @param pOperation
+   *          one of Min, Max, Sum or SumOfSquares
+   * @return reduced value
+   */
+  public float reduce(ClearCLImageInterface pImage,
+                      ReductionOperation pOperation)
+  {
+    if (pOperation.isIndexResult())
+      throw new ClearCLIllegalArgumentException(pOperation
+                                                + " gives an index, use reduceToIndex");
+    if (pOperation == ReductionOperation.MinMax)
+      throw new ClearCLIllegalArgumentException(pOperation
+                                                + " gives two values, use minmax");
+    enqueueReduction(pImage, pOperation);
+    mResultValueBuffer.copyTo(getQueue(), mResultValueHostBuffer, true);
+    return mResultValueHostBuffer.getContiguousMemory()
+                                 .getFloatAligned(0);
+  }
+
+  /**
+   * Reduces an image or buffer to an index or a count.
+   *
+   * @param pImage
+   *          image or buffer
+   * @param pOperation
+   *          one of ArgMin, ArgMax or Count
+   * @return linear index of the min or max value (x + width*(y + height*z)),
+   *         or count of non-zero values
+   */
+  public long reduceToIndex(ClearCLImageInterface pImage,
+                            ReductionOperation pOperation)
+  {
+    if (!pOperation.isIndexResult())
+      throw new ClearCLIllegalArgumentException(pOperation
+                                                + " gives a value, use reduce");
+    enqueueReduction(pImage, pOperation);
+    mResultIndexBuffer.copyTo(getQueue(), mResultIndexHostBuffer, true);
+    return mResultIndexHostBuffer.getContiguousMemory()
+                                 .getLongAligned(0);
+  }
+
+  /**
+   * Returns the min value of an image or buffer.
+   *
+   * @param pImage
+   *          image or buffer
+   * @return min value
+   */
+  public float min(ClearCLImageInterface pImage)
+  {
+    return reduce(pImage, ReductionOperation.Min);
+  }
+
+  /**
+   * Returns the max value of an image or buffer.
+   *
+   * @param pImage
+   *          image or buffer
+   * @return max value
+   */
+  public float max(ClearCLImageInterface pImage)
+  {
+    return reduce(pImage, ReductionOperation.Max);
+  }
+
+  /**
+   * Returns the min and max values of an image or buffer, computed in a single
+   * pass over the data with a single read back.
+   *
+   * @param pImage
+   *          image or buffer
+   * @return {min,max} float array
+   */
+  public float[] minmax(ClearCLImageInterface pImage)
+  {
+    enqueueReduction(pImage, ReductionOperation.MinMax);
+    mResultValueBuffer.copyTo(getQueue(), mResultValueHostBuffer, true);
+    ContiguousMemoryInterface lResult =
+                                      mResultValueHostBuffer.getContiguousMemory();
+    return new float[]
+    { lResult.getFloatAligned(0), lResult.getFloatAligned(1) };
+  }
+
+  /**
+   * Returns the sum of the values of an image or buffer.
+   *
+   * @param pImage
+   *          image or buffer
+   * @return sum
+   */
+  public float sum(ClearCLImageInterface pImage)
+  {
+    return reduce(pImage, ReductionOperation.Sum);
+  }
+
+  /**
+   * Returns the sum of the squared values of an image or buffer.
+   *
+   * @param pImage
+   *          image or buffer
+   * @return sum of squares
+   */
+  public float sumOfSquares(ClearCLImageInterface pImage)
+  {
+    return reduce(pImage, ReductionOperation.SumOfSquares);
+  }
+
+  /**
+   * Returns the linear index of the min value of an image or buffer.
+   *
+   * @param pImage
+   *          image or buffer
+   * @return index of min value
+   */
+  public long argmin(ClearCLImageInterface pImage)
+  {
+    return reduceToIndex(pImage, ReductionOperation.ArgMin);
+  }
+
+  /**
+   * Returns the linear index of the max value of an image or buffer.
+   *
+   * @param pImage
+   *          image or buffer
+   * @return index of max value
+   */
+  public long argmax(ClearCLImageInterface pImage)
+  {
+    return reduceToIndex(pImage, ReductionOperation.ArgMax);
+  }
+
+  /**
+   * Returns the number of non-zero values of an image or buffer.
+   *
+   * @param pImage
+   *          image or buffer
+   * @return number of non-zero values
+   */
+  public long count(ClearCLImageInterface pImage)
+  {
+    return reduceToIndex(pImage, ReductionOperation.Count);
+  }
+
+  private void enqueueReduction(ClearCLImageInterface pImage,
+                                ReductionOperation pOperation)
+  {
+    ensureScratchBuffers();
+
+    ClearCLKernel lKernel;
+    long lLength;
+    if (pImage instanceof ClearCLBuffer)
+    {
+      ClearCLBuffer lBuffer = (ClearCLBuffer) pImage;
+      lLength = lBuffer.getLength() * lBuffer.getNumberOfChannels();
+      lKernel = getProgram("TYPE",
+                           getOpenCLType(lBuffer.getNativeType())).getKernel("reduce_buffer");
+      lKernel.setArgument("buffer", lBuffer);
+      lKernel.setArgument("length", lLength);
+    }
+    else if (pImage instanceof ClearCLImage)
+    {
+      ClearCLImage lImage = (ClearCLImage) pImage;
+      lLength = lImage.getVolume();
+      lKernel = getImageProgram(lImage.getChannelDataType()).getKernel("reduce_image_"
+                                                                       + lImage.getDimension()
+                                                                       + "d");
+      lKernel.setArgument("image", lImage);
+    }
+    else
+      throw new ClearCLUnsupportedException("Reduction of "
+                                            + pImage.getClass()
+                                                    .getSimpleName());
+
+    long lNumberOfGroups = getNumberOfGroups(lLength);
+    enqueuePass(lKernel, pOperation, lNumberOfGroups, 0);
+
+    int lInput = 0;
+    while (lNumberOfGroups > 1)
+    {
+      long lNumberOfPartials = lNumberOfGroups;
+      lNumberOfGroups = getNumberOfGroups(lNumberOfPartials);
+
+      ClearCLKernel lPartialsKernel =
+                                    getProgram("FLOAT",
+                                               null).getKernel("reduce_partials");
+      lPartialsKernel.setArgument("invalues", mValuesBuffers[lInput]);
+      lPartialsKernel.setArgument("inindices", mIndicesBuffers[lInput]);
+      lPartialsKernel.setArgument("length", lNumberOfPartials);
+      enqueuePass(lPartialsKernel,
+                  pOperation,
+                  lNumberOfGroups,
+                  1 - lInput);
+      lInput = 1 - lInput;
+    }
+  }
+
+  private long getNumberOfGroups(long pLength)
+  {
+    return Math.max(1,
+                    Math.min(cMaxNumberOfGroups,
+                             (pLength + mGroupSize - 1) / mGroupSize));
+  }
+
+  /**
+   * Enqueues one reduction pass, its output goes to the result buffers if it
+   * is the last pass, or else to the given pair of scratch buffers.
+   */
+  private void enqueuePass(ClearCLKernel pKernel,
+                           ReductionOperation pOperation,
+                           long pNumberOfGroups,
+                           int pOutput)
+  {
+    pKernel.setArgument("op", pOperation.getCode());
+    pKernel.setArgument("values",
+                        pNumberOfGroups == 1 ? mResultValueBuffer
+                                             : mValuesBuffers[pOutput]);
+    pKernel.setArgument("indices",
+                        pNumberOfGroups == 1 ? mResultIndexBuffer
+                                             : mIndicesBuffers[pOutput]);
+    pKernel.setLocalMemoryArgument("lvalues",
+                                   NativeTypeEnum.Float,
+                                   2 * mGroupSize);
+    pKernel.setLocalMemoryArgument("lindices",
+                                   NativeTypeEnum.Long,
+                                   mGroupSize);
+    pKernel.setGlobalSizes(pNumberOfGroups * mGroupSize);
+    pKernel.setLocalSizes(mGroupSize);
+    pKernel.run(getQueue(), false);
+  }
+
+  private ClearCLProgram getImageProgram(ImageChannelDataType pDataType)
+  {
+    if (pDataType.isNormalized() || pDataType.isFloat())
+      return getProgram("FLOAT", null);
+    else if (pDataType.isSigned())
+      return getProgram("INT", null);
+    else
+      return getProgram("UINT", null);
+  }
+
+  static String getOpenCLType(NativeTypeEnum pNativeType)
+  {
+    switch (pNativeType)
+    {
+    case Byte:
+      return "char";
+    case UnsignedByte:
+      return "uchar";
+    case Short:
+      return "short";
+    case UnsignedShort:
+      return "ushort";
+    case Int:
+      return "int";
+    case UnsignedInt:
+      return "uint";
+    case Long:
+      return "long";
+    case UnsignedLong:
+      return "ulong";
+    case Float:
+      return "float";
+    default:
+      throw new ClearCLUnsupportedException("Reduction of " + pNativeType
+                                            + " buffers");
+    }
+  }
+
+  private void ensureScratchBuffers()
+  {
+    if (mResultValueBuffer != null)
+      return;
+
+    for (int i = 0; i < 2; i++)
+    {
+      // values are float2, see reduction/reduce.cl:
+      mValuesBuffers[i] =
+                        getContext().createBuffer(HostAccessType.NoAccess,
+                                                  KernelAccessType.ReadWrite,
+                                                  NativeTypeEnum.Float,
+                                                  2 * cMaxNumberOfGroups);
+      mIndicesBuffers[i] =
+                         getContext().createBuffer(HostAccessType.NoAccess,
+                                                   KernelAccessType.ReadWrite,
+                                                   NativeTypeEnum.Long,
+                                                   cMaxNumberOfGroups);
+    }
+    mResultValueBuffer =
+                       getContext().createBuffer(HostAccessType.ReadOnly,
+                                                 KernelAccessType.WriteOnly,
+                                                 NativeTypeEnum.Float,
+                                                 2);
+    mResultIndexBuffer =
+                       getContext().createBuffer(HostAccessType.ReadOnly,
+                                                 KernelAccessType.WriteOnly,
+                                                 NativeTypeEnum.Long,
+                                                 1);
+    mResultValueHostBuffer =
+                           ClearCLHostImageBuffer.allocatePinnedSameAs(mResultValueBuffer);
+    mResultIndexHostBuffer =
+                           ClearCLHostImageBuffer.allocatePinnedSameAs(mResultIndexBuffer);
+  }
+
+  /**
+   * Releases the scratch buffers and programs of this reduction op.
+   */
+  @Override
+  public void close()
+  {
+    for (int i = 0; i < 2; i++)
+    {
+      if (mValuesBuffers[i] != null)
+        mValuesBuffers[i].close();
+      if (mIndicesBuffers[i] != null)
+        mIndicesBuffers[i].close();
+      mValuesBuffers[i] = null;
+      mIndicesBuffers[i] = null;
+    }
+    if (mResultValueBuffer != null)
+    {
+      mResultValueBuffer.close();
+      mResultIndexBuffer.close();
+      mResultValueHostBuffer.close();
+      mResultIndexHostBuffer.close();
+      mResultValueBuffer = null;
+    }
+    for (ClearCLProgram lProgram : mPrograms.values())
+      lProgram.close();
+    mPrograms.clear();
+  }
+}
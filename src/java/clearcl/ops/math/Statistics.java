@@ -0,0 +1,524 @@
+package clearcl.ops.math;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import clearcl.ClearCLBuffer;
+import clearcl.ClearCLHostImageBuffer;
+import clearcl.ClearCLImage;
+import clearcl.ClearCLKernel;
+import clearcl.ClearCLProgram;
+import clearcl.ClearCLQueue;
+import clearcl.enums.HostAccessType;
+import clearcl.enums.ImageChannelDataType;
+import clearcl.enums.KernelAccessType;
+import clearcl.exceptions.ClearCLException;
+import clearcl.exceptions.ClearCLIllegalArgumentException;
+import clearcl.exceptions.ClearCLUnsupportedException;
+import clearcl.interfaces.ClearCLImageInterface;
+import clearcl.ocllib.OCLlib;
+import clearcl.ops.OpsBase;
+import coremem.ContiguousMemoryInterface;
+import coremem.enums.NativeTypeEnum;
+
+/**
+ * Computes the min, max, mean, variance and histogram of a buffer or of the
+ * first channel of an image in a single pass over the data. Each work group
+ * accumulates its moments and a histogram in local memory, a second small
+ * kernel merges the partials of all groups on the device so that only the
+ * final statistics are read back. Values of normalized images are in [0,1] (or
+ * [-1,1]), as given by read_imagef. NaNs are ignored.
+ *
+ * @author royer
+ */
+public class Statistics extends OpsBase implements AutoCloseable
+{
+  private static final int cMaxGroupSize = 256;
+  private static final int cMaxNumberOfGroups = 256;
+
+  private final int mGroupSize;
+  private final Reduction mReduction;
+  private final Map<String, ClearCLProgram> mPrograms = new HashMap<>();
+  private int mNumberOfBins;
+  private ClearCLBuffer mPartialMomentsBuffer, mPartialCountsBuffer,
+      mPartialHistogramsBuffer;
+  private ClearCLBuffer mMomentsBuffer, mCountBuffer, mHistogramBuffer;
+  private ClearCLHostImageBuffer mMomentsHostBuffer, mCountHostBuffer,
+      mHistogramHostBuffer;
+
+  /**
+   * Statistics of an image or buffer.
+   */
+  public static class Result
+  {
+    private final float mMin, mMax, mMean, mVariance;
+    private final long mCount;
+    private final float mHistogramMin, mHistogramMax;
+    private final long[] mHistogram;
+
+    private Result(float pMin,
+                   float pMax,
+                   float pMean,
+                   float pVariance,
+                   long pCount,
+                   float pHistogramMin,
+                   float pHistogramMax,
+                   long[] pHistogram)
+    {
+      mMin = pMin;
+      mMax = pMax;
+      mMean = pMean;
+      mVariance = pVariance;
+      mCount = pCount;
+      mHistogramMin = pHistogramMin;
+      mHistogramMax = pHistogramMax;
+      mHistogram = pHistogram;
+    }
+
+    /**
+     * Returns the min value
+     *
+     * @return min value
+     */
+    public float getMin()
+    {
+      return mMin;
+    }
+
+    /**
+     * Returns the max value
+     *
+     * @return max value
+     */
+    public float getMax()
+    {
+      return mMax;
+    }
+
+    /**
+     * Returns the mean value
+     *
+     * @return mean value
+     */
+    public float getMean()
+    {
+      return mMean;
+    }
+
+    /**
+     * Returns the (population) variance
+     *
+     * @return variance
+     */
+    public float getVariance()
+    {
+      return mVariance;
+    }
+
+    /**
+     * Returns the (population) standard deviation
+     *
+     * @return standard deviation
+     */
+    public float getStandardDeviation()
+    {
+      return (float) Math.sqrt(mVariance);
+    }
+
+    /**
+     * Returns the number of values, NaNs excluded
+     *
+     * @return number of values
+     */
+    public long getCount()
+    {
+      return mCount;
+    }
+
+    /**
+     * Returns the lower bound of the first histogram bin
+     *
+     * @return histogram min
+     */
+    public float getHistogramMin()
+    {
+      return mHistogramMin;
+    }
+
+    /**
+     * Returns the upper bound of the last histogram bin
+     *
+     * @return histogram max
+     */
+    public float getHistogramMax()
+    {
+      return mHistogramMax;
+    }
+
+    /**
+     * Returns the histogram. Values below or above the histogram range are
+     * counted in the first or last bin.
+     *
+     * @return histogram counts
+     */
+    public long[] getHistogram()
+    {
+      return Arrays.copyOf(mHistogram, mHistogram.length);
+    }
+
+    /**
+     * Returns an estimate of a given percentile, interpolated linearly within
+     * the histogram bin that contains it.
+     *
+     * @param pPercentile
+     *          percentile within [0,1]
+     * @return value at percentile, or NaN if there are no values
+     */
+    public float getPercentile(double pPercentile)
+    {
+      if (mCount == 0)
+        return Float.NaN;
+
+      double lTarget = Math.max(0, Math.min(1, pPercentile)) * mCount;
+      double lBinWidth = ((double) mHistogramMax - mHistogramMin)
+                         / mHistogram.length;
+      long lCumulative = 0;
+      for (int b = 0; b < mHistogram.length; b++)
+      {
+        if (mHistogram[b] > 0
+            && lCumulative + mHistogram[b] >= lTarget)
+        {
+          double lFraction = (lTarget - lCumulative) / mHistogram[b];
+          float lValue = (float) (mHistogramMin
+                                  + (b + lFraction) * lBinWidth);
+          return Math.max(mMin, Math.min(mMax, lValue));
+        }
+        lCumulative += mHistogram[b];
+      }
+      return mMax;
+    }
+
+    @Override
+    public String toString()
+    {
+      return String.format("Statistics [min=%g, max=%g, mean=%g, variance=%g, count=%d, bins=%d]",
+                           mMin,
+                           mMax,
+                           mMean,
+                           mVariance,
+                           mCount,
+                           mHistogram.length);
+    }
+  }
+
+  /**
+   * Instantiates a statistics op given a queue. The program for float data is
+   * built in the background, programs for other data types are built on first
+   * use.
+   *
+   * @param pClearCLQueue
+   *          queue
+   * @throws IOException
+   *           thrown if kernels cannot be read.
+   */
+  public Statistics(ClearCLQueue pClearCLQueue) throws IOException
+  {
+    super(pClearCLQueue);
+
+    // tree reductions need power of two work group sizes:
+    mGroupSize =
+               (int) Long.highestOneBit(Math.min(cMaxGroupSize,
+                                                 Math.max(1,
+                                                          getContext().getDevice()
+                                                                      .getMaxWorkGroupSize())));
+    mReduction = new Reduction(pClearCLQueue);
+    getProgram("FLOAT", null);
+  }
+
+  private ClearCLProgram getProgram(String pDefine, String pValue)
+  {
+    String lKey = pValue == null ? pDefine : pDefine + "=" + pValue;
+    ClearCLProgram lProgram = mPrograms.get(lKey);
+    if (lProgram == null)
+    {
+      try
+      {
+        lProgram = getContext().createProgram(OCLlib.class,
+                                              "reduction/statistics.cl");
+      }
+      catch (IOException e)
+      {
+        throw new ClearCLException("Could not load statistics kernels",
+                                   e);
+      }
+      // no finite or fast relaxed math: the kernels rely on infinite
+      // identities and skip NaNs.
+      if (pValue == null)
+        lProgram.addDefine(pDefine);
+      else
+        lProgram.addDefine(pDefine, pValue);
+      lProgram.buildAndLogAsync();
+      mPrograms.put(lKey, lProgram);
+    }
+    return lProgram;
+  }
+
+  /**
+   * Computes the statistics of an image or buffer, with a histogram spanning
+   * its min and max values. Finding the histogram range takes an additional
+   * min max reduction, use
+   * {@link #compute(ClearCLImageInterface, int, float, float)} with a known
+   * range (e.g. that of a previous frame) for a single pass.
+   *
+   * @param pImage
+   *          image or buffer
+   * @param pNumberOfBins
+   *          number of histogram bins
+   * @return statistics
+   */
+  public Result compute(ClearCLImageInterface pImage, int pNumberOfBins)
+  {
+    float[] lMinMax = mReduction.minmax(pImage);
+    return compute(pImage, pNumberOfBins, lMinMax[0], lMinMax[1]);
+  }
+
+  /**
+   * Computes the statistics of an image or buffer in a single pass, with a
+   * histogram spanning a given range. Values outside of the range are counted
+   * in the first or last bin, min and max are always exact.
+   *
+   * @param pImage
+   *          image or buffer
+   * @param pNumberOfBins
+   *          number of histogram bins
+   * @param pHistogramMin
+   *          lower bound of the first bin
+   * @param pHistogramMax
+   *          upper bound of the last bin
+   * @return statistics
+   */
+  public Result compute(ClearCLImageInterface pImage,
+                        int pNumberOfBins,
+                        float pHistogramMin,
+                        float pHistogramMax)
+  {
+    ensureBuffers(pNumberOfBins);
+
+    if (!(pHistogramMin < pHistogramMax)
+        || Float.isInfinite(pHistogramMax - pHistogramMin))
+      pHistogramMax = pHistogramMin;
+    float lHistogramScale = pHistogramMax > pHistogramMin
+                                                          ? pNumberOfBins
+                                                            / (pHistogramMax
+                                                               - pHistogramMin)
+                                                          : 0;
+
+    ClearCLKernel lKernel;
+    long lLength;
+    if (pImage instanceof ClearCLBuffer)
+    {
+      ClearCLBuffer lBuffer = (ClearCLBuffer) pImage;
+      lLength = lBuffer.getLength() * lBuffer.getNumberOfChannels();
+      lKernel =
+              getProgram("TYPE",
+                         Reduction.getOpenCLType(lBuffer.getNativeType())).getKernel("statistics_buffer");
+      lKernel.setArgument("buffer", lBuffer);
+      lKernel.setArgument("length", lLength);
+    }
+    else if (pImage instanceof ClearCLImage)
+    {
+      ClearCLImage lImage = (ClearCLImage) pImage;
+      lLength = lImage.getVolume();
+      lKernel =
+              getImageProgram(lImage.getChannelDataType()).getKernel("statistics_image_"
+                                                                     + lImage.getDimension()
+                                                                     + "d");
+      lKernel.setArgument("image", lImage);
+    }
+    else
+      throw new ClearCLUnsupportedException("Statistics of "
+                                            + pImage.getClass()
+                                                    .getSimpleName());
+
+    int lNumberOfGroups =
+                        (int) Math.max(1,
+                                       Math.min(cMaxNumberOfGroups,
+                                                (lLength + mGroupSize - 1)
+                                                   / mGroupSize));
+
+    lKernel.setArgument("histogram_min", pHistogramMin);
+    lKernel.setArgument("histogram_scale", lHistogramScale);
+    lKernel.setArgument("bins", pNumberOfBins);
+    lKernel.setArgument("moments", mPartialMomentsBuffer);
+    lKernel.setArgument("counts", mPartialCountsBuffer);
+    lKernel.setArgument("histograms", mPartialHistogramsBuffer);
+    lKernel.setLocalMemoryArgument("lhistogram",
+                                   NativeTypeEnum.UnsignedInt,
+                                   pNumberOfBins);
+    lKernel.setLocalMemoryArgument("lmoments",
+                                   NativeTypeEnum.Float,
+                                   4 * mGroupSize);
+    lKernel.setLocalMemoryArgument("lcounts",
+                                   NativeTypeEnum.Long,
+                                   mGroupSize);
+    lKernel.setGlobalSizes(lNumberOfGroups * mGroupSize);
+    lKernel.setLocalSizes(mGroupSize);
+    lKernel.run(getQueue(), false);
+
+    ClearCLKernel lPartialsKernel =
+                                  getProgram("FLOAT",
+                                             null).getKernel("statistics_partials");
+    lPartialsKernel.setArgument("inmoments", mPartialMomentsBuffer);
+    lPartialsKernel.setArgument("incounts", mPartialCountsBuffer);
+    lPartialsKernel.setArgument("inhistograms", mPartialHistogramsBuffer);
+    lPartialsKernel.setArgument("groups", lNumberOfGroups);
+    lPartialsKernel.setArgument("bins", pNumberOfBins);
+    lPartialsKernel.setArgument("moments", mMomentsBuffer);
+    lPartialsKernel.setArgument("counts", mCountBuffer);
+    lPartialsKernel.setArgument("histogram", mHistogramBuffer);
+    lPartialsKernel.setLocalMemoryArgument("lmoments",
+                                           NativeTypeEnum.Float,
+                                           4 * mGroupSize);
+    lPartialsKernel.setLocalMemoryArgument("lcounts",
+                                           NativeTypeEnum.Long,
+                                           mGroupSize);
+    lPartialsKernel.setGlobalSizes(mGroupSize);
+    lPartialsKernel.setLocalSizes(mGroupSize);
+    lPartialsKernel.run(getQueue(), false);
+
+    mMomentsBuffer.copyTo(getQueue(), mMomentsHostBuffer, false);
+    mCountBuffer.copyTo(getQueue(), mCountHostBuffer, false);
+    mHistogramBuffer.copyTo(getQueue(), mHistogramHostBuffer, true);
+
+    ContiguousMemoryInterface lMoments =
+                                       mMomentsHostBuffer.getContiguousMemory();
+    ContiguousMemoryInterface lHistogramMemory =
+                                               mHistogramHostBuffer.getContiguousMemory();
+    long lCount = mCountHostBuffer.getContiguousMemory()
+                                  .getLongAligned(0);
+    long[] lHistogram = new long[pNumberOfBins];
+    for (int b = 0; b < pNumberOfBins; b++)
+      lHistogram[b] = lHistogramMemory.getIntAligned(b) & 0xFFFFFFFFL;
+
+    return new Result(lMoments.getFloatAligned(0),
+                      lMoments.getFloatAligned(1),
+                      lCount == 0 ? Float.NaN
+                                  : lMoments.getFloatAligned(2),
+                      lCount == 0 ? Float.NaN
+                                  : lMoments.getFloatAligned(3) / lCount,
+                      lCount,
+                      pHistogramMin,
+                      pHistogramMax,
+                      lHistogram);
+  }
+
+  private ClearCLProgram getImageProgram(ImageChannelDataType pDataType)
+  {
+    if (pDataType.isNormalized() || pDataType.isFloat())
+      return getProgram("FLOAT", null);
+    else if (pDataType.isSigned())
+      return getProgram("INT", null);
+    else
+      return getProgram("UINT", null);
+  }
+
+  private void ensureBuffers(int pNumberOfBins)
+  {
+    if (pNumberOfBins < 1)
+      throw new ClearCLIllegalArgumentException("Number of bins must be positive");
+
+    long lLocalMemorySize = 4L * pNumberOfBins
+                            + (4L * 4 + 8) * mGroupSize;
+    if (lLocalMemorySize > getContext().getDevice()
+                                       .getLocalMemorySizeInBytes())
+      throw new ClearCLIllegalArgumentException(String.format("Too many bins (%d) for the local memory of device %s",
+                                                              pNumberOfBins,
+                                                              getContext().getDevice()
+                                                                          .getName()));
+
+    if (mMomentsBuffer == null)
+    {
+      mPartialMomentsBuffer =
+                            getContext().createBuffer(HostAccessType.NoAccess,
+                                                      KernelAccessType.ReadWrite,
+                                                      NativeTypeEnum.Float,
+                                                      4 * cMaxNumberOfGroups);
+      mPartialCountsBuffer =
+                           getContext().createBuffer(HostAccessType.NoAccess,
+                                                     KernelAccessType.ReadWrite,
+                                                     NativeTypeEnum.Long,
+                                                     cMaxNumberOfGroups);
+      mMomentsBuffer =
+                     getContext().createBuffer(HostAccessType.ReadOnly,
+                                               KernelAccessType.WriteOnly,
+                                               NativeTypeEnum.Float,
+                                               4);
+      mCountBuffer = getContext().createBuffer(HostAccessType.ReadOnly,
+                                               KernelAccessType.WriteOnly,
+                                               NativeTypeEnum.Long,
+                                               1);
+      mMomentsHostBuffer =
+                         ClearCLHostImageBuffer.allocatePinnedSameAs(mMomentsBuffer);
+      mCountHostBuffer =
+                       ClearCLHostImageBuffer.allocatePinnedSameAs(mCountBuffer);
+    }
+
+    if (mNumberOfBins != pNumberOfBins)
+    {
+      releaseHistogramBuffers();
+      mPartialHistogramsBuffer =
+                               getContext().createBuffer(HostAccessType.NoAccess,
+                                                         KernelAccessType.ReadWrite,
+                                                         NativeTypeEnum.UnsignedInt,
+                                                         (long) cMaxNumberOfGroups
+                                                                                     * pNumberOfBins);
+      mHistogramBuffer =
+                       getContext().createBuffer(HostAccessType.ReadOnly,
+                                                 KernelAccessType.WriteOnly,
+                                                 NativeTypeEnum.UnsignedInt,
+                                                 pNumberOfBins);
+      mHistogramHostBuffer =
+                           ClearCLHostImageBuffer.allocatePinnedSameAs(mHistogramBuffer);
+      mNumberOfBins = pNumberOfBins;
+    }
+  }
+
+  private void releaseHistogramBuffers()
+  {
+    if (mPartialHistogramsBuffer != null)
+      mPartialHistogramsBuffer.close();
+    if (mHistogramBuffer != null)
+      mHistogramBuffer.close();
+    if (mHistogramHostBuffer != null)
+      mHistogramHostBuffer.close();
+    mPartialHistogramsBuffer = null;
+    mHistogramBuffer = null;
+    mHistogramHostBuffer = null;
+    mNumberOfBins = 0;
+  }
+
+  /**
+   * Releases the buffers and programs of this statistics op.
+   */
+  @Override
+  public void close()
+  {
+    releaseHistogramBuffers();
+    if (mMomentsBuffer != null)
+    {
+      mPartialMomentsBuffer.close();
+      mPartialCountsBuffer.close();
+      mMomentsBuffer.close();
+      mCountBuffer.close();
+      mMomentsHostBuffer.close();
+      mCountHostBuffer.close();
+      mMomentsBuffer = null;
+    }
+    for (ClearCLProgram lProgram : mPrograms.values())
+      lProgram.close();
+    mPrograms.clear();
+    mReduction.close();
+  }
+}
@@ -0,0 +1,80 @@
+package clearcl.ops.math.enums;
+
+/**
+ * Reduction operations. The codes must match the REDUCE_* defines in
+ * reduction/reduce.cl.
+ *
+ * @author royer
+ */
+public enum ReductionOperation
+{
+ /**
+  * Minimum value
+  */
+ Min(0, false),
+
+ /**
+  * Maximum value
+  */
+ Max(1, false),
+
+ /**
+  * Sum of values
+  */
+ Sum(2, false),
+
+ /**
+  * Sum of squared values
+  */
+ SumOfSquares(3, false),
+
+ /**
+  * Linear index of the minimum value, the lowest index in case of ties
+  */
+ ArgMin(4, true),
+
+ /**
+  * Linear index of the maximum value, the lowest index in case of ties
+  */
+ ArgMax(5, true),
+
+ /**
+  * Number of non-zero values
+  */
+ Count(6, true),
+
+ /**
+  * Minimum and maximum values, computed in a single pass
+  */
+ MinMax(7, false);
+
+  private final int mCode;
+  private final boolean mIndexResult;
+
+  ReductionOperation(int pCode, boolean pIndexResult)
+  {
+    mCode = pCode;
+    mIndexResult = pIndexResult;
+  }
+
+  /**
+   * Returns the code of this operation, as passed to the reduction kernels.
+   *
+   * @return operation code
+   */
+  public int getCode()
+  {
+    return mCode;
+  }
+
+  /**
+   * Returns true if the result of this operation is an index or a count,
+   * false if it is a value.
+   *
+   * @return true for index results
+   */
+  public boolean isIndexResult()
+  {
+    return mIndexResult;
+  }
+}
@@ -17,7 +17,7 @@ import clearcl.ops.OpsBase;
 public class FractionalBrownianNoise extends OpsBase
 {
 
-  private ClearCLKernel mFBM2D, mFBM3D;
+  private ClearCLProgram mNoiseProgram;
 
   private float sx = 1, sy = 1, sz = 1;
   private float ox = 0, oy = 0, oz = 0;
@@ -37,15 +37,10 @@ public class FractionalBrownianNoise extends OpsBase
   {
     super(pClearCLQueue);
 
-    ClearCLProgram lNoiseProgram =
-                                 getContext().createProgram(OCLlib.class,
-                                                            "noise/noisetexture.cl");
-    // lNoiseProgram.addBuildOptionAllMathOpt();
-    lNoiseProgram.buildAndLog();
-    System.out.println(lNoiseProgram.getSourceCode());
-
-    mFBM2D = lNoiseProgram.createKernel("fbmrender2");
-    mFBM3D = lNoiseProgram.createKernel("fbmrender3");
+    mNoiseProgram = getContext().createProgram(OCLlib.class,
+                                               "noise/noisetexture.cl");
+    // mNoiseProgram.addBuildOptionAllMathOpt();
+    mNoiseProgram.buildAndLogAsync();
   }
 
   /**
@@ -86,10 +81,12 @@ public class FractionalBrownianNoise extends OpsBase
     long lWidth = pBuffer.getWidth();
     long lHeight = pBuffer.getHeight();
 
-    setArguments(mFBM2D, pBuffer);
+    ClearCLKernel lKernel = mNoiseProgram.getKernel("fbmrender2");
+
+    setArguments(lKernel, pBuffer);
 
-    mFBM2D.setGlobalSizes(lWidth, lHeight);
-    mFBM2D.run(pBlockingRun);
+    lKernel.setGlobalSizes(lWidth, lHeight);
+    lKernel.run(getQueue(), pBlockingRun);
 
     pBuffer.notifyListenersOfChange(getQueue());
   }
@@ -108,10 +105,12 @@ public class FractionalBrownianNoise extends OpsBase
     long lHeight = pBuffer.getHeight();
     long lDepth = pBuffer.getDepth();
 
-    setArguments(mFBM3D, pBuffer);
+    ClearCLKernel lKernel = mNoiseProgram.getKernel("fbmrender3");
+
+    setArguments(lKernel, pBuffer);
 
-    mFBM3D.setGlobalSizes(lWidth, lHeight, lDepth);
-    mFBM3D.run(pBlockingRun);
+    lKernel.setGlobalSizes(lWidth, lHeight, lDepth);
+    lKernel.run(getQueue(), pBlockingRun);
 
     pBuffer.notifyListenersOfChange(getQueue());
   }
@@ -23,7 +23,8 @@ import clearcl.util.MatrixUtils;
 public class ImageRender extends OpsBase
 {
 
-  private ClearCLKernel mRenderKernel;
+  private ClearCLProgram mRenderProgram;
+  private String mRenderKernelName;
 
   private final ConcurrentHashMap<Parameter, Float> mFloatParameters =
                                                                      new ConcurrentHashMap<Parameter, Float>();
@@ -54,14 +55,12 @@ public class ImageRender extends OpsBase
       String lKernelPath = pVolumeRenderAlgorithm.getKernelPath();
       String lKernelName = pVolumeRenderAlgorithm.getKernelName();
 
-      ClearCLProgram lNoiseProgram =
-                                   getContext().createProgram(OCLlib.class,
-                                                              lKernelPath);
-      // lNoiseProgram.addBuildOptionAllMathOpt();
-      lNoiseProgram.buildAndLog();
-      System.out.println(lNoiseProgram.getSourceCode());
+      mRenderProgram = getContext().createProgram(OCLlib.class,
+                                                  lKernelPath);
+      // mRenderProgram.addBuildOptionAllMathOpt();
+      mRenderProgram.buildAndLogAsync();
 
-      mRenderKernel = lNoiseProgram.createKernel(lKernelName);
+      mRenderKernelName = lKernelName;
     }
     catch (Throwable e)
     {
@@ -161,29 +160,32 @@ public class ImageRender extends OpsBase
                      ClearCLBuffer pRGBABuffer,
                      boolean waitToFinish)
   {
-    mRenderKernel.setArgument("image", p3DImage);
-    mRenderKernel.setArgument("rgbabuffer", pRGBABuffer);
+    ClearCLKernel lRenderKernel =
+                                mRenderProgram.getKernel(mRenderKernelName);
+
+    lRenderKernel.setArgument("image", p3DImage);
+    lRenderKernel.setArgument("rgbabuffer", pRGBABuffer);
 
     for (Parameter lParameter : Parameter.values())
     {
       String lKernelArgumentName = lParameter.getKernelArgumentName();
       Float lFloat = mFloatParameters.get(lParameter);
       if (lFloat != null)
-        mRenderKernel.setOptionalArgument(lKernelArgumentName,
+        lRenderKernel.setOptionalArgument(lKernelArgumentName,
                                           lFloat);
 
       Integer lInteger = mIntegerParameters.get(lParameter);
       if (lInteger != null)
-        mRenderKernel.setOptionalArgument(lKernelArgumentName,
+        lRenderKernel.setOptionalArgument(lKernelArgumentName,
                                           lInteger);
       ClearCLBuffer lMatrixBuffer = getMatrixBuffer(lParameter);
       if (lMatrixBuffer != null)
-        mRenderKernel.setOptionalArgument(lKernelArgumentName,
+        lRenderKernel.setOptionalArgument(lKernelArgumentName,
                                           lMatrixBuffer);
     }
 
-    mRenderKernel.setGlobalSizes(pRGBABuffer);
-    mRenderKernel.run(waitToFinish);
+    lRenderKernel.setGlobalSizes(pRGBABuffer);
+    lRenderKernel.run(getQueue(), waitToFinish);
 
   }
 
@@ -0,0 +1,155 @@
+package clearcl.ops.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import clearcl.ClearCL;
+import clearcl.ClearCLBuffer;
+import clearcl.ClearCLContext;
+import clearcl.ClearCLImage;
+import clearcl.backend.ClearCLBackendInterface;
+import clearcl.backend.ClearCLBackends;
+import clearcl.backend.purejava.ClearCLBackendPureJava;
+import clearcl.enums.HostAccessType;
+import clearcl.enums.ImageChannelDataType;
+import clearcl.enums.ImageChannelOrder;
+import clearcl.enums.KernelAccessType;
+import clearcl.ops.math.Reduction;
+import coremem.enums.NativeTypeEnum;
+import coremem.offheap.OffHeapMemory;
+
+import org.junit.Test;
+
+/**
+ * Reduction tests
+ *
+ * @author royer
+ */
+public class ReductionTests
+{
+
+  /**
+   * Tests all reduction operations on buffers and images, with lengths that
+   * need several passes, on the best available backend.
+   *
+   * @throws IOException
+   *           NA
+   */
+  @Test
+  public void testReductions() throws IOException
+  {
+    testReductions(ClearCLBackends.getBestBackend());
+  }
+
+  /**
+   * Tests all reduction operations with the pure Java backend.
+   *
+   * @throws IOException
+   *           NA
+   */
+  @Test
+  public void testReductionsPureJava() throws IOException
+  {
+    testReductions(new ClearCLBackendPureJava());
+  }
+
+  private void testReductions(ClearCLBackendInterface pBackend) throws IOException
+  {
+    try (ClearCL lClearCL = new ClearCL(pBackend))
+    {
+      ClearCLContext lContext = lClearCL.getBestGPUDevice()
+                                        .createContext();
+      Reduction lReduction = new Reduction(lContext.getDefaultQueue());
+
+      int lWidth = 67, lHeight = 59, lDepth = 23;
+      int lLength = lWidth * lHeight * lDepth;
+      OffHeapMemory lMemory = OffHeapMemory.allocateFloats(lLength);
+      double lSum = 0, lSumOfSquares = 0;
+      long lCount = 0;
+      for (int i = 0; i < lLength; i++)
+      {
+        float lValue = i % 7 == 0 ? 0 : (float) Math.sin(i);
+        if (i == lLength / 3)
+          lValue = -2;
+        else if (i == lLength / 2)
+          lValue = 3;
+        lMemory.setFloatAligned(i, lValue);
+        lSum += lValue;
+        lSumOfSquares += lValue * lValue;
+        lCount += lValue != 0 ? 1 : 0;
+      }
+
+      ClearCLBuffer lBuffer =
+                            lContext.createBuffer(HostAccessType.ReadWrite,
+                                                  KernelAccessType.ReadWrite,
+                                                  NativeTypeEnum.Float,
+                                                  lLength);
+      lBuffer.readFrom(lMemory, true);
+
+      ClearCLImage lImage =
+                          lContext.createImage(HostAccessType.ReadWrite,
+                                               KernelAccessType.ReadWrite,
+                                               ImageChannelOrder.R,
+                                               ImageChannelDataType.Float,
+                                               lWidth,
+                                               lHeight,
+                                               lDepth);
+      lImage.readFrom(lMemory, true);
+
+      for (int r = 0; r < 2; r++)
+      {
+        assertEquals(-2, lReduction.min(lBuffer), 0);
+        assertEquals(3, lReduction.max(lBuffer), 0);
+        assertArrayEquals(new float[]
+        { -2, 3 }, lReduction.minmax(lBuffer), 0);
+        assertEquals(lSum, lReduction.sum(lBuffer), 0.1);
+        assertEquals(lSumOfSquares,
+                     lReduction.sumOfSquares(lBuffer),
+                     1e-4 * lSumOfSquares);
+        assertEquals(lLength / 3, lReduction.argmin(lBuffer));
+        assertEquals(lLength / 2, lReduction.argmax(lBuffer));
+        assertEquals(lCount, lReduction.count(lBuffer));
+
+        assertEquals(-2, lReduction.min(lImage), 0);
+        assertEquals(3, lReduction.max(lImage), 0);
+        assertArrayEquals(new float[]
+        { -2, 3 }, lReduction.minmax(lImage), 0);
+        assertEquals(lLength / 3, lReduction.argmin(lImage));
+        assertEquals(lLength / 2, lReduction.argmax(lImage));
+        assertEquals(lCount, lReduction.count(lImage));
+      }
+
+      OffHeapMemory lByteMemory = OffHeapMemory.allocateBytes(1000);
+      for (int i = 0; i < 1000; i++)
+        lByteMemory.setByteAligned(i, (byte) (10 + i % 200));
+      ClearCLBuffer lByteBuffer =
+                                lContext.createBuffer(HostAccessType.ReadWrite,
+                                                      KernelAccessType.ReadWrite,
+                                                      NativeTypeEnum.UnsignedByte,
+                                                      1000);
+      lByteBuffer.readFrom(lByteMemory, true);
+
+      assertEquals(10, lReduction.min(lByteBuffer), 0);
+      assertEquals(209, lReduction.max(lByteBuffer), 0);
+      assertEquals(199, lReduction.argmax(lByteBuffer));
+
+      // NaNs are ignored by min and max:
+      lMemory.setFloatAligned(lLength / 4, Float.NaN);
+      lBuffer.readFrom(lMemory, true);
+      assertEquals(-2, lReduction.min(lBuffer), 0);
+      assertEquals(3, lReduction.max(lBuffer), 0);
+      assertArrayEquals(new float[]
+      { -2, 3 }, lReduction.minmax(lBuffer), 0);
+
+      lReduction.close();
+      lByteBuffer.close();
+      lImage.close();
+      lBuffer.close();
+      lByteMemory.free();
+      lMemory.free();
+    }
+  }
+
+}
@@ -0,0 +1,162 @@
+package clearcl.ops.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import clearcl.ClearCL;
+import clearcl.ClearCLBuffer;
+import clearcl.ClearCLContext;
+import clearcl.ClearCLImage;
+import clearcl.backend.ClearCLBackendInterface;
+import clearcl.backend.ClearCLBackends;
+import clearcl.backend.purejava.ClearCLBackendPureJava;
+import clearcl.enums.HostAccessType;
+import clearcl.enums.ImageChannelDataType;
+import clearcl.enums.ImageChannelOrder;
+import clearcl.enums.KernelAccessType;
+import clearcl.ops.math.Statistics;
+import coremem.enums.NativeTypeEnum;
+import coremem.offheap.OffHeapMemory;
+
+import org.junit.Test;
+
+/**
+ * Statistics tests
+ *
+ * @author royer
+ */
+public class StatisticsTests
+{
+
+  /**
+   * Tests min, max, mean, variance, histogram and percentiles of buffers and
+   * images of several data types, on the best available backend.
+   *
+   * @throws IOException
+   *           NA
+   */
+  @Test
+  public void testStatistics() throws IOException
+  {
+    testStatistics(ClearCLBackends.getBestBackend());
+  }
+
+  /**
+   * Tests statistics with the pure Java backend.
+   *
+   * @throws IOException
+   *           NA
+   */
+  @Test
+  public void testStatisticsPureJava() throws IOException
+  {
+    testStatistics(new ClearCLBackendPureJava());
+  }
+
+  private void testStatistics(ClearCLBackendInterface pBackend) throws IOException
+  {
+    try (ClearCL lClearCL = new ClearCL(pBackend))
+    {
+      ClearCLContext lContext = lClearCL.getBestGPUDevice()
+                                        .createContext();
+      Statistics lStatistics = new Statistics(lContext.getDefaultQueue());
+
+      int lWidth = 101, lHeight = 47, lDepth = 19;
+      int lLength = lWidth * lHeight * lDepth;
+      OffHeapMemory lMemory = OffHeapMemory.allocateShorts(lLength);
+      double lSum = 0, lSumOfSquares = 0;
+      for (int i = 0; i < lLength; i++)
+      {
+        int lValue = (i * 7919) % 1000;
+        lMemory.setShortAligned(i, (short) lValue);
+        lSum += lValue;
+        lSumOfSquares += lValue * lValue;
+      }
+      double lMean = lSum / lLength;
+      double lVariance = lSumOfSquares / lLength - lMean * lMean;
+
+      ClearCLBuffer lBuffer =
+                            lContext.createBuffer(HostAccessType.ReadWrite,
+                                                  KernelAccessType.ReadWrite,
+                                                  NativeTypeEnum.UnsignedShort,
+                                                  lLength);
+      lBuffer.readFrom(lMemory, true);
+
+      ClearCLImage lImage =
+                          lContext.createImage(HostAccessType.ReadWrite,
+                                               KernelAccessType.ReadWrite,
+                                               ImageChannelOrder.R,
+                                               ImageChannelDataType.UnsignedInt16,
+                                               lWidth,
+                                               lHeight,
+                                               lDepth);
+      lImage.readFrom(lMemory, true);
+
+      for (Statistics.Result lResult : new Statistics.Result[]
+      { lStatistics.compute(lBuffer, 100),
+        lStatistics.compute(lImage, 100),
+        lStatistics.compute(lImage, 100, 0, 1000) })
+      {
+        assertEquals(0, lResult.getMin(), 0);
+        assertEquals(999, lResult.getMax(), 0);
+        assertEquals(lLength, lResult.getCount());
+        assertEquals(lMean, lResult.getMean(), 1e-3 * lMean);
+        assertEquals(lVariance, lResult.getVariance(), 1e-3 * lVariance);
+
+        long[] lHistogram = lResult.getHistogram();
+        assertEquals(100, lHistogram.length);
+        long lTotal = 0;
+        for (long lCount : lHistogram)
+          lTotal += lCount;
+        assertEquals(lLength, lTotal);
+
+        // values are close to uniform over [0,1000):
+        assertEquals(500, lResult.getPercentile(0.5), 15);
+        assertEquals(100, lResult.getPercentile(0.1), 15);
+      }
+
+      ClearCLImage lNormalizedImage =
+                                    lContext.createImage(HostAccessType.ReadWrite,
+                                                         KernelAccessType.ReadWrite,
+                                                         ImageChannelOrder.R,
+                                                         ImageChannelDataType.UnsignedNormalizedInt16,
+                                                         lWidth,
+                                                         lHeight,
+                                                         lDepth);
+      lNormalizedImage.readFrom(lMemory, true);
+      Statistics.Result lNormalizedResult =
+                                          lStatistics.compute(lNormalizedImage,
+                                                              16);
+      assertEquals(999 / 65535f, lNormalizedResult.getMax(), 1e-6);
+      assertEquals(lMean / 65535, lNormalizedResult.getMean(), 1e-5);
+
+      // NaNs are skipped:
+      OffHeapMemory lFloatMemory = OffHeapMemory.allocateFloats(11);
+      for (int i = 0; i < 10; i++)
+        lFloatMemory.setFloatAligned(i, i);
+      lFloatMemory.setFloatAligned(10, Float.NaN);
+      ClearCLBuffer lFloatBuffer =
+                                 lContext.createBuffer(HostAccessType.ReadWrite,
+                                                       KernelAccessType.ReadWrite,
+                                                       NativeTypeEnum.Float,
+                                                       11);
+      lFloatBuffer.readFrom(lFloatMemory, true);
+      Statistics.Result lFloatResult = lStatistics.compute(lFloatBuffer,
+                                                           10);
+      assertEquals(10, lFloatResult.getCount());
+      assertEquals(0, lFloatResult.getMin(), 0);
+      assertEquals(9, lFloatResult.getMax(), 0);
+      assertEquals(4.5, lFloatResult.getMean(), 1e-6);
+
+      lStatistics.close();
+      lFloatBuffer.close();
+      lFloatMemory.free();
+      lNormalizedImage.close();
+      lImage.close();
+      lBuffer.close();
+      lMemory.free();
+    }
+  }
+
+}
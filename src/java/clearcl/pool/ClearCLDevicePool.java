@@ -0,0 +1,591 @@
+package clearcl.pool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import clearcl.ClearCL;
+import clearcl.ClearCLBuffer;
+import clearcl.ClearCLContext;
+import clearcl.ClearCLDevice;
+import clearcl.ClearCLImage;
+import clearcl.ClearCLKernel;
+import clearcl.ClearCLProgram;
+import clearcl.ClearCLQueue;
+import clearcl.abs.ClearCLMemBase;
+import clearcl.enums.BuildStatus;
+import clearcl.enums.HostAccessType;
+import clearcl.enums.KernelAccessType;
+import clearcl.enums.MemAllocMode;
+import clearcl.exceptions.ClearCLException;
+import clearcl.memory.ClearCLPooledMemoryAllocator;
+import clearcl.pool.ClearCLPoolTask.Data;
+
+/**
+ * Pool of contexts on several devices - typically all devices of a machine -
+ * that executes {@link ClearCLPoolTask}s, such as tiles of a large image or
+ * volumes of a time series, on whichever device is free. Each device has a
+ * worker thread and a deque of tasks. Submitted tasks are placed on the device
+ * expected to finish them first, given the work already queued and the
+ * throughput measured for each device. A worker takes tasks from the head of
+ * its own deque and, once idle, steals from the tail of the most loaded deque
+ * - but only tasks that it would finish before their owner would even start
+ * them, so that a slow device does not hold back the end of a batch.
+ *
+ * Programs are built once per device and program key (sources, defines and
+ * build options) when a task first runs there. Device buffers and images are
+ * allocated per task through a pooled allocator, filled from and copied back
+ * to the host memory bound to the task.
+ *
+ * @author royer
+ */
+public class ClearCLDevicePool implements AutoCloseable
+{
+  private static final double cThroughputSmoothing = 0.25;
+
+  private final DeviceWorker[] mWorkers;
+  private volatile boolean mClosed;
+
+  // Guards submission against closing, and wakes up idle workers whenever
+  // tasks are submitted or a task finishes - which may make stealing worth it:
+  private final ReentrantLock mLock = new ReentrantLock();
+  private final Condition mWorkChanged = mLock.newCondition();
+  private volatile long mWorkGeneration;
+
+  private static final class Job
+  {
+    final ClearCLPoolTask mTask;
+    final double mWork;
+    final CompletableFuture<ClearCLPoolTask> mFuture =
+                                                     new CompletableFuture<>();
+
+    Job(ClearCLPoolTask pTask)
+    {
+      mTask = pTask;
+      mWork = pTask.getWork();
+    }
+  }
+
+  private final class DeviceWorker implements Runnable
+  {
+    final ClearCLDevice mDevice;
+    final ClearCLContext mContext;
+    final ClearCLQueue mQueue;
+    final LinkedBlockingDeque<Job> mDeque = new LinkedBlockingDeque<>();
+    final Map<String, ClearCLProgram> mPrograms = new HashMap<>();
+    final double mPriorThroughput;
+    final DoubleAdder mQueuedWork = new DoubleAdder();
+    final AtomicLong mNumberOfExecutedTasks = new AtomicLong();
+    final AtomicLong mNumberOfStolenTasks = new AtomicLong();
+    final Thread mThread;
+    volatile double mRunningWork;
+    volatile double mMeasuredThroughput = Double.NaN;
+
+    DeviceWorker(int pIndex, ClearCLDevice pDevice)
+    {
+      mDevice = pDevice;
+      mContext = pDevice.createContext();
+      mContext.setMemoryAllocator(new ClearCLPooledMemoryAllocator(mContext));
+      mQueue = mContext.getDefaultQueue();
+
+      // Until a device is measured, its throughput is assumed proportional to
+      // compute units times clock frequency (some devices report no clock):
+      mPriorThroughput = pDevice.getNumberOfComputeUnits()
+                         * Math.max(1, pDevice.getClockFrequency());
+
+      mThread = new Thread(this, "ClearCLDevicePool-" + pIndex
+                                 + "-"
+                                 + pDevice.getName());
+      mThread.setDaemon(true);
+    }
+
+    @Override
+    public void run()
+    {
+      while (!mClosed)
+      {
+        try
+        {
+          long lWorkGeneration = mWorkGeneration;
+          Job lJob = mDeque.pollFirst();
+          if (lJob == null)
+            lJob = steal(this);
+          if (lJob != null)
+            execute(lJob);
+          else
+            awaitWorkChange(lWorkGeneration);
+        }
+        catch (InterruptedException e)
+        {
+          break;
+        }
+      }
+      close();
+    }
+
+    void execute(Job pJob)
+    {
+      mRunningWork = pJob.mWork;
+      mQueuedWork.add(-pJob.mWork);
+      try
+      {
+        ClearCLKernel lKernel = getKernel(pJob.mTask);
+
+        long lStartNanos = System.nanoTime();
+        run(pJob.mTask, lKernel);
+        double lElapsedSeconds =
+                               Math.max(1e-9,
+                                        (System.nanoTime() - lStartNanos)
+                                              * 1e-9);
+        double lThroughput = pJob.mWork / lElapsedSeconds;
+        double lMeasuredThroughput = mMeasuredThroughput;
+        mMeasuredThroughput =
+                            Double.isNaN(lMeasuredThroughput) ? lThroughput
+                                                              : (1
+                                                                 - cThroughputSmoothing)
+                                                                * lMeasuredThroughput
+                                                                + cThroughputSmoothing
+                                                                  * lThroughput;
+        mNumberOfExecutedTasks.incrementAndGet();
+        pJob.mFuture.complete(pJob.mTask);
+      }
+      catch (Throwable e)
+      {
+        pJob.mFuture.completeExceptionally(e);
+      }
+      finally
+      {
+        mRunningWork = 0;
+        signalWorkChange();
+      }
+    }
+
+    private ClearCLKernel getKernel(ClearCLPoolTask pTask) throws IOException
+    {
+      String lProgramKey = pTask.getProgramKey();
+      ClearCLProgram lProgram = mPrograms.get(lProgramKey);
+      if (lProgram == null)
+      {
+        lProgram =
+                 mContext.createProgram(pTask.getClassForRessource(),
+                                        pTask.getRessourceNames());
+        for (Map.Entry<String, String> lEntry : pTask.getDefines()
+                                                     .entrySet())
+          lProgram.addDefine(lEntry.getKey(), lEntry.getValue());
+        for (String lBuildOption : pTask.getBuildOptions())
+          lProgram.addBuildOption(lBuildOption);
+
+        BuildStatus lBuildStatus = lProgram.buildAndLog();
+        if (lBuildStatus != BuildStatus.Success)
+        {
+          lProgram.close();
+          throw new ClearCLException(String.format("Could not build program for %s on device %s",
+                                                   pTask,
+                                                   mDevice.getName()));
+        }
+        mPrograms.put(lProgramKey, lProgram);
+      }
+      return lProgram.getKernel(pTask.getKernelName());
+    }
+
+    private void run(ClearCLPoolTask pTask, ClearCLKernel pKernel)
+    {
+      ArrayList<ClearCLMemBase> lMemObjects = new ArrayList<>();
+      try
+      {
+        for (Map.Entry<String, Data> lEntry : pTask.getData().entrySet())
+        {
+          Data lData = lEntry.getValue();
+          ClearCLMemBase lMemObject = allocate(lData);
+          lMemObjects.add(lMemObject);
+          if (lData.mInput)
+          {
+            if (lData.isImage())
+              ((ClearCLImage) lMemObject).readFrom(mQueue,
+                                                   lData.mMemory,
+                                                   new long[lData.mDimensions.length],
+                                                   lData.mDimensions,
+                                                   false);
+            else
+              ((ClearCLBuffer) lMemObject).readFrom(mQueue,
+                                                    lData.mMemory,
+                                                    0,
+                                                    lData.mDimensions[0],
+                                                    false);
+          }
+          pKernel.setArgument(lEntry.getKey(), lMemObject);
+        }
+
+        for (Map.Entry<String, Object> lEntry : pTask.getArguments()
+                                                     .entrySet())
+          pKernel.setArgument(lEntry.getKey(), lEntry.getValue());
+
+        pKernel.setGlobalSizes(pTask.getGlobalSizes());
+        if (pTask.getLocalSizes() != null)
+          pKernel.setLocalSizes(pTask.getLocalSizes());
+        pKernel.run(mQueue, false);
+
+        int i = 0;
+        for (Data lData : pTask.getData().values())
+        {
+          ClearCLMemBase lMemObject = lMemObjects.get(i++);
+          if (!lData.mOutput)
+            continue;
+          if (lData.isImage())
+            ((ClearCLImage) lMemObject).writeTo(mQueue,
+                                                lData.mMemory,
+                                                new long[lData.mDimensions.length],
+                                                lData.mDimensions,
+                                                false);
+          else
+            ((ClearCLBuffer) lMemObject).writeTo(mQueue,
+                                                 lData.mMemory,
+                                                 0,
+                                                 lData.mDimensions[0],
+                                                 false);
+        }
+        mQueue.waitToFinish();
+      }
+      finally
+      {
+        for (ClearCLMemBase lMemObject : lMemObjects)
+          lMemObject.close();
+      }
+    }
+
+    private ClearCLMemBase allocate(Data pData)
+    {
+      HostAccessType lHostAccessType =
+                                     pData.mInput && pData.mOutput ? HostAccessType.ReadWrite
+                                                                   : pData.mInput ? HostAccessType.WriteOnly
+                                                                                  : HostAccessType.ReadOnly;
+      KernelAccessType lKernelAccessType =
+                                         pData.mInput && pData.mOutput ? KernelAccessType.ReadWrite
+                                                                       : pData.mInput ? KernelAccessType.ReadOnly
+                                                                                      : KernelAccessType.WriteOnly;
+      if (pData.isImage())
+        return mContext.createImage(MemAllocMode.Best,
+                                    lHostAccessType,
+                                    lKernelAccessType,
+                                    pData.mChannelOrder,
+                                    pData.mChannelDataType,
+                                    pData.mDimensions);
+      else
+        return mContext.createBuffer(MemAllocMode.Best,
+                                     lHostAccessType,
+                                     lKernelAccessType,
+                                     1,
+                                     pData.mNativeType,
+                                     pData.mDimensions);
+    }
+
+    void close()
+    {
+      for (ClearCLProgram lProgram : mPrograms.values())
+        lProgram.close();
+      mPrograms.clear();
+      mContext.close();
+    }
+  }
+
+  /**
+   * Instantiates a pool over all devices of all platforms of a given ClearCL
+   * instance.
+   *
+   * @param pClearCL
+   *          ClearCL instance
+   */
+  public ClearCLDevicePool(ClearCL pClearCL)
+  {
+    this(pClearCL.getAllDevices());
+  }
+
+  /**
+   * Instantiates a pool over a given list of devices. A context is created for
+   * each device and closed with the pool, the devices themselves are not
+   * closed.
+   *
+   * @param pDevices
+   *          devices
+   */
+  public ClearCLDevicePool(List<ClearCLDevice> pDevices)
+  {
+    if (pDevices.isEmpty())
+      throw new ClearCLException("No devices available for device pool");
+
+    mWorkers = new DeviceWorker[pDevices.size()];
+    for (int i = 0; i < mWorkers.length; i++)
+      mWorkers[i] = new DeviceWorker(i, pDevices.get(i));
+    for (DeviceWorker lWorker : mWorkers)
+      lWorker.mThread.start();
+  }
+
+  /**
+   * Submits a task for execution on one of the devices of this pool. The task
+   * must not be modified until the returned future is completed.
+   *
+   * @param pTask
+   *          task
+   * @return future completed with the task once its outputs have been copied
+   *         back to host memory, or exceptionally if execution failed
+   */
+  public CompletableFuture<ClearCLPoolTask> submit(ClearCLPoolTask pTask)
+  {
+    Job lJob = new Job(pTask);
+
+    // Checking and enqueuing under the lock taken by close() guarantees that
+    // a job is either rejected or still in a deque once the workers are done:
+    mLock.lock();
+    try
+    {
+      if (mClosed)
+        throw new ClearCLException("Device pool is closed");
+
+      DeviceWorker lBestWorker = null;
+      double lBestFinishSeconds = Double.POSITIVE_INFINITY;
+      for (DeviceWorker lWorker : mWorkers)
+      {
+        double lFinishSeconds = (getPendingWork(lWorker) + lJob.mWork)
+                                / getThroughput(lWorker);
+        if (lFinishSeconds < lBestFinishSeconds)
+        {
+          lBestFinishSeconds = lFinishSeconds;
+          lBestWorker = lWorker;
+        }
+      }
+
+      lBestWorker.mQueuedWork.add(lJob.mWork);
+      lBestWorker.mDeque.addLast(lJob);
+      mWorkGeneration++;
+      mWorkChanged.signalAll();
+    }
+    finally
+    {
+      mLock.unlock();
+    }
+    return lJob.mFuture;
+  }
+
+  /**
+   * Submits a list of tasks and waits until they have all been executed.
+   *
+   * @param pTasks
+   *          tasks
+   */
+  public void invokeAll(List<ClearCLPoolTask> pTasks)
+  {
+    CompletableFuture<?>[] lFutures = new CompletableFuture<?>[pTasks.size()];
+    for (int i = 0; i < lFutures.length; i++)
+      lFutures[i] = submit(pTasks.get(i));
+    CompletableFuture.allOf(lFutures).join();
+  }
+
+  private void signalWorkChange()
+  {
+    mLock.lock();
+    try
+    {
+      mWorkGeneration++;
+      mWorkChanged.signalAll();
+    }
+    finally
+    {
+      mLock.unlock();
+    }
+  }
+
+  private void awaitWorkChange(long pWorkGeneration) throws InterruptedException
+  {
+    mLock.lock();
+    try
+    {
+      while (!mClosed && mWorkGeneration == pWorkGeneration)
+        mWorkChanged.await();
+    }
+    finally
+    {
+      mLock.unlock();
+    }
+  }
+
+  private Job steal(DeviceWorker pThief)
+  {
+    DeviceWorker lVictim = null;
+    double lLongestBacklogSeconds = 0;
+    for (DeviceWorker lWorker : mWorkers)
+    {
+      if (lWorker == pThief || lWorker.mDeque.isEmpty())
+        continue;
+      double lBacklogSeconds = getPendingWork(lWorker)
+                               / getThroughput(lWorker);
+      if (lBacklogSeconds > lLongestBacklogSeconds)
+      {
+        lLongestBacklogSeconds = lBacklogSeconds;
+        lVictim = lWorker;
+      }
+    }
+    if (lVictim == null)
+      return null;
+
+    // The last task of the victim would be finished once its whole backlog is
+    // done, it is only worth stealing if the thief finishes it earlier:
+    Job lJob = lVictim.mDeque.peekLast();
+    if (lJob == null
+        || lJob.mWork / getThroughput(pThief) >= lLongestBacklogSeconds
+        || !lVictim.mDeque.removeLastOccurrence(lJob))
+      return null;
+
+    lVictim.mQueuedWork.add(-lJob.mWork);
+    pThief.mQueuedWork.add(lJob.mWork);
+    pThief.mNumberOfStolenTasks.incrementAndGet();
+    return lJob;
+  }
+
+  private double getPendingWork(DeviceWorker pWorker)
+  {
+    return pWorker.mQueuedWork.sum() + pWorker.mRunningWork;
+  }
+
+  private double getThroughput(DeviceWorker pWorker)
+  {
+    double lMeasuredThroughput = pWorker.mMeasuredThroughput;
+    if (!Double.isNaN(lMeasuredThroughput))
+      return lMeasuredThroughput;
+
+    // Not measured yet: scale the prior by the ratio between measured and prior
+    // throughputs of the devices already measured, if any.
+    double lSumOfMeasured = 0, lSumOfPriors = 0;
+    for (DeviceWorker lWorker : mWorkers)
+    {
+      double lThroughput = lWorker.mMeasuredThroughput;
+      if (!Double.isNaN(lThroughput))
+      {
+        lSumOfMeasured += lThroughput;
+        lSumOfPriors += lWorker.mPriorThroughput;
+      }
+    }
+    if (lSumOfPriors == 0)
+      return pWorker.mPriorThroughput;
+    return pWorker.mPriorThroughput * lSumOfMeasured / lSumOfPriors;
+  }
+
+  /**
+   * Returns the number of devices in this pool.
+   *
+   * @return number of devices
+   */
+  public int getNumberOfDevices()
+  {
+    return mWorkers.length;
+  }
+
+  /**
+   * Returns the device of given index.
+   *
+   * @param pDeviceIndex
+   *          device index
+   * @return device
+   */
+  public ClearCLDevice getDevice(int pDeviceIndex)
+  {
+    return mWorkers[pDeviceIndex].mDevice;
+  }
+
+  /**
+   * Returns the context of this pool for the device of given index.
+   *
+   * @param pDeviceIndex
+   *          device index
+   * @return context
+   */
+  public ClearCLContext getContext(int pDeviceIndex)
+  {
+    return mWorkers[pDeviceIndex].mContext;
+  }
+
+  /**
+   * Returns the throughput of a device in units of work per second, as
+   * measured over the last tasks - or estimated if no task ran on it yet.
+   *
+   * @param pDeviceIndex
+   *          device index
+   * @return throughput in units of work per second
+   */
+  public double getThroughput(int pDeviceIndex)
+  {
+    return getThroughput(mWorkers[pDeviceIndex]);
+  }
+
+  /**
+   * Returns the number of tasks executed by a device.
+   *
+   * @param pDeviceIndex
+   *          device index
+   * @return number of executed tasks
+   */
+  public long getNumberOfExecutedTasks(int pDeviceIndex)
+  {
+    return mWorkers[pDeviceIndex].mNumberOfExecutedTasks.get();
+  }
+
+  /**
+   * Returns the number of tasks a device stole from other devices.
+   *
+   * @param pDeviceIndex
+   *          device index
+   * @return number of stolen tasks
+   */
+  public long getNumberOfStolenTasks(int pDeviceIndex)
+  {
+    return mWorkers[pDeviceIndex].mNumberOfStolenTasks.get();
+  }
+
+  /**
+   * Closes this pool: tasks not yet started are cancelled, running tasks are
+   * finished, then programs and contexts are released.
+   */
+  @Override
+  public void close()
+  {
+    mLock.lock();
+    try
+    {
+      if (mClosed)
+        return;
+      mClosed = true;
+      mWorkChanged.signalAll();
+    }
+    finally
+    {
+      mLock.unlock();
+    }
+
+    for (DeviceWorker lWorker : mWorkers)
+    {
+      try
+      {
+        lWorker.mThread.join();
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    for (DeviceWorker lWorker : mWorkers)
+    {
+      Job lJob;
+      while ((lJob = lWorker.mDeque.pollFirst()) != null)
+        lJob.mFuture.cancel(false);
+    }
+  }
+
+}
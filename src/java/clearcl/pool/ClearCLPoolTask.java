@@ -0,0 +1,454 @@
+package clearcl.pool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import clearcl.enums.ImageChannelDataType;
+import clearcl.enums.ImageChannelOrder;
+import clearcl.exceptions.ClearCLIllegalArgumentException;
+import coremem.ContiguousMemoryInterface;
+import coremem.enums.NativeTypeEnum;
+
+/**
+ * Device independent description of a unit of work for a
+ * {@link ClearCLDevicePool}: a program given as resources relative to a
+ * reference class, the kernel to run, its scalar arguments, the host memory to
+ * upload to and download from device buffers or images, and the global range.
+ * The pool builds the program and allocates the device memory on whichever
+ * device the task ends up running on.
+ *
+ * Example:
+ *
+ * <pre>
+ * ClearCLPoolTask lTask = new ClearCLPoolTask(OCLlib.class,
+ *                                             "conversion/conversion.cl",
+ *                                             "convert_buffer");
+ * lTask.addDefine("FLOAT");
+ * lTask.setInput("buffer", NativeTypeEnum.Float, lTileMemory);
+ * lTask.setOutput("result", NativeTypeEnum.Float, lResultMemory);
+ * lTask.setArgument("scale", 2f);
+ * lTask.setArgument("offset", 0f);
+ * lTask.setArgument("length", lTileLength);
+ * lTask.setGlobalSizes(lTileLength);
+ * lDevicePool.submit(lTask);
+ * </pre>
+ *
+ * @author royer
+ */
+public class ClearCLPoolTask
+{
+  private final Class<?> mClassForRessource;
+  private final String[] mRessourceNames;
+  private final String mKernelName;
+  private final Map<String, String> mDefines = new LinkedHashMap<>();
+  private final ArrayList<String> mBuildOptions = new ArrayList<>();
+  private final Map<String, Object> mArguments = new LinkedHashMap<>();
+  private final Map<String, Data> mData = new LinkedHashMap<>();
+  private long[] mGlobalSizes;
+  private long[] mLocalSizes;
+  private double mWork = Double.NaN;
+
+  /**
+   * Host memory bound to a kernel argument, and the description of the device
+   * buffer or image that holds it during execution.
+   */
+  static class Data
+  {
+    final ContiguousMemoryInterface mMemory;
+    final boolean mInput, mOutput;
+    final NativeTypeEnum mNativeType;
+    final ImageChannelOrder mChannelOrder;
+    final ImageChannelDataType mChannelDataType;
+    final long[] mDimensions;
+
+    Data(ContiguousMemoryInterface pMemory,
+         boolean pInput,
+         boolean pOutput,
+         NativeTypeEnum pNativeType,
+         ImageChannelOrder pChannelOrder,
+         ImageChannelDataType pChannelDataType,
+         long[] pDimensions)
+    {
+      mMemory = pMemory;
+      mInput = pInput;
+      mOutput = pOutput;
+      mNativeType = pNativeType;
+      mChannelOrder = pChannelOrder;
+      mChannelDataType = pChannelDataType;
+      mDimensions = pDimensions;
+    }
+
+    boolean isImage()
+    {
+      return mChannelDataType != null;
+    }
+  }
+
+  /**
+   * Instantiates a task for a given kernel of a program made of a list of
+   * resources located relative to a reference class.
+   *
+   * @param pClassForRessource
+   *          reference class to locate resources
+   * @param pRessourceName
+   *          resource file name (relative to reference class)
+   * @param pKernelName
+   *          kernel name
+   */
+  public ClearCLPoolTask(Class<?> pClassForRessource,
+                         String pRessourceName,
+                         String pKernelName)
+  {
+    this(pClassForRessource, new String[]
+    { pRessourceName }, pKernelName);
+  }
+
+  /**
+   * Instantiates a task for a given kernel of a program made of a list of
+   * resources located relative to a reference class.
+   *
+   * @param pClassForRessource
+   *          reference class to locate resources
+   * @param pRessourceNames
+   *          resource file names (relative to reference class)
+   * @param pKernelName
+   *          kernel name
+   */
+  public ClearCLPoolTask(Class<?> pClassForRessource,
+                         String[] pRessourceNames,
+                         String pKernelName)
+  {
+    mClassForRessource = pClassForRessource;
+    mRessourceNames = pRessourceNames.clone();
+    mKernelName = pKernelName;
+  }
+
+  /**
+   * Adds a define to the program.
+   *
+   * @param pSymbol
+   *          symbol
+   */
+  public void addDefine(String pSymbol)
+  {
+    mDefines.put(pSymbol, "");
+  }
+
+  /**
+   * Adds a define with a value to the program.
+   *
+   * @param pKey
+   *          key
+   * @param pValue
+   *          value
+   */
+  public void addDefine(String pKey, Object pValue)
+  {
+    mDefines.put(pKey, pValue.toString());
+  }
+
+  /**
+   * Adds a build option to the program.
+   *
+   * @param pOption
+   *          build option
+   */
+  public void addBuildOption(String pOption)
+  {
+    mBuildOptions.add(pOption);
+  }
+
+  /**
+   * Sets a scalar kernel argument. Boxed primitives are passed to the kernel as
+   * the corresponding primitive type.
+   *
+   * @param pArgumentName
+   *          argument name
+   * @param pValue
+   *          value
+   */
+  public void setArgument(String pArgumentName, Number pValue)
+  {
+    mArguments.put(pArgumentName, pValue);
+  }
+
+  /**
+   * Binds host memory to be uploaded into a device buffer passed as kernel
+   * argument. The buffer length is derived from the size of the memory.
+   *
+   * @param pArgumentName
+   *          argument name
+   * @param pNativeType
+   *          buffer element type
+   * @param pMemory
+   *          host memory
+   */
+  public void setInput(String pArgumentName,
+                       NativeTypeEnum pNativeType,
+                       ContiguousMemoryInterface pMemory)
+  {
+    setBufferData(pArgumentName, pNativeType, pMemory, true, false);
+  }
+
+  /**
+   * Binds host memory into which a device buffer passed as kernel argument is
+   * downloaded after execution.
+   *
+   * @param pArgumentName
+   *          argument name
+   * @param pNativeType
+   *          buffer element type
+   * @param pMemory
+   *          host memory
+   */
+  public void setOutput(String pArgumentName,
+                        NativeTypeEnum pNativeType,
+                        ContiguousMemoryInterface pMemory)
+  {
+    setBufferData(pArgumentName, pNativeType, pMemory, false, true);
+  }
+
+  /**
+   * Binds host memory that is uploaded into a device buffer passed as kernel
+   * argument, and downloaded back after execution.
+   *
+   * @param pArgumentName
+   *          argument name
+   * @param pNativeType
+   *          buffer element type
+   * @param pMemory
+   *          host memory
+   */
+  public void setInputOutput(String pArgumentName,
+                             NativeTypeEnum pNativeType,
+                             ContiguousMemoryInterface pMemory)
+  {
+    setBufferData(pArgumentName, pNativeType, pMemory, true, true);
+  }
+
+  /**
+   * Binds host memory to be uploaded into a device image passed as kernel
+   * argument.
+   *
+   * @param pArgumentName
+   *          argument name
+   * @param pChannelOrder
+   *          image channel order
+   * @param pChannelDataType
+   *          image channel data type
+   * @param pMemory
+   *          host memory
+   * @param pDimensions
+   *          image dimensions
+   */
+  public void setInput(String pArgumentName,
+                       ImageChannelOrder pChannelOrder,
+                       ImageChannelDataType pChannelDataType,
+                       ContiguousMemoryInterface pMemory,
+                       long... pDimensions)
+  {
+    mData.put(pArgumentName,
+              new Data(pMemory,
+                       true,
+                       false,
+                       null,
+                       pChannelOrder,
+                       pChannelDataType,
+                       pDimensions.clone()));
+  }
+
+  /**
+   * Binds host memory into which a device image passed as kernel argument is
+   * downloaded after execution.
+   *
+   * @param pArgumentName
+   *          argument name
+   * @param pChannelOrder
+   *          image channel order
+   * @param pChannelDataType
+   *          image channel data type
+   * @param pMemory
+   *          host memory
+   * @param pDimensions
+   *          image dimensions
+   */
+  public void setOutput(String pArgumentName,
+                        ImageChannelOrder pChannelOrder,
+                        ImageChannelDataType pChannelDataType,
+                        ContiguousMemoryInterface pMemory,
+                        long... pDimensions)
+  {
+    mData.put(pArgumentName,
+              new Data(pMemory,
+                       false,
+                       true,
+                       null,
+                       pChannelOrder,
+                       pChannelDataType,
+                       pDimensions.clone()));
+  }
+
+  private void setBufferData(String pArgumentName,
+                             NativeTypeEnum pNativeType,
+                             ContiguousMemoryInterface pMemory,
+                             boolean pInput,
+                             boolean pOutput)
+  {
+    if (pMemory.getSizeInBytes() % pNativeType.getSizeInBytes() != 0)
+      throw new ClearCLIllegalArgumentException("Memory size is not a multiple of the element size");
+
+    mData.put(pArgumentName,
+              new Data(pMemory,
+                       pInput,
+                       pOutput,
+                       pNativeType,
+                       null,
+                       null,
+                       new long[]
+                       { pMemory.getSizeInBytes()
+                         / pNativeType.getSizeInBytes() }));
+  }
+
+  /**
+   * Sets the global sizes of the kernel execution.
+   *
+   * @param pGlobalSizes
+   *          global sizes
+   */
+  public void setGlobalSizes(long... pGlobalSizes)
+  {
+    mGlobalSizes = pGlobalSizes.clone();
+  }
+
+  /**
+   * Sets the local sizes of the kernel execution, by default local sizes are
+   * chosen by the OpenCL runtime.
+   *
+   * @param pLocalSizes
+   *          local sizes
+   */
+  public void setLocalSizes(long... pLocalSizes)
+  {
+    mLocalSizes = pLocalSizes.clone();
+  }
+
+  /**
+   * Sets the amount of work of this task, in arbitrary units that must be
+   * consistent across the tasks submitted to a pool. The pool balances the
+   * load by measuring how many units each device processes per second. By
+   * default the work is the number of work items.
+   *
+   * @param pWork
+   *          amount of work
+   */
+  public void setWork(double pWork)
+  {
+    mWork = pWork;
+  }
+
+  /**
+   * Returns the amount of work of this task.
+   *
+   * @return amount of work
+   */
+  public double getWork()
+  {
+    if (!Double.isNaN(mWork))
+      return mWork;
+    if (mGlobalSizes == null)
+      return 1;
+    double lWork = 1;
+    for (long lGlobalSize : mGlobalSizes)
+      lWork *= lGlobalSize;
+    return lWork;
+  }
+
+  /**
+   * Returns the kernel name.
+   *
+   * @return kernel name
+   */
+  public String getKernelName()
+  {
+    return mKernelName;
+  }
+
+  /**
+   * Returns the global sizes.
+   *
+   * @return global sizes
+   */
+  public long[] getGlobalSizes()
+  {
+    return mGlobalSizes;
+  }
+
+  /**
+   * Returns the local sizes, or null if not set.
+   *
+   * @return local sizes
+   */
+  public long[] getLocalSizes()
+  {
+    return mLocalSizes;
+  }
+
+  Class<?> getClassForRessource()
+  {
+    return mClassForRessource;
+  }
+
+  String[] getRessourceNames()
+  {
+    return mRessourceNames;
+  }
+
+  Map<String, String> getDefines()
+  {
+    return mDefines;
+  }
+
+  Collection<String> getBuildOptions()
+  {
+    return mBuildOptions;
+  }
+
+  Map<String, Object> getArguments()
+  {
+    return mArguments;
+  }
+
+  Map<String, Data> getData()
+  {
+    return mData;
+  }
+
+  /**
+   * Returns a key identifying the program of this task: tasks with equal keys
+   * share the same built program on a given device.
+   *
+   * @return program key
+   */
+  String getProgramKey()
+  {
+    return mClassForRessource.getName() + ":"
+           + Arrays.toString(mRessourceNames)
+           + ":"
+           + mDefines
+           + ":"
+           + mBuildOptions;
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format("ClearCLPoolTask [mKernelName=%s, mRessourceNames=%s, mGlobalSizes=%s]",
+                         mKernelName,
+                         Arrays.toString(mRessourceNames),
+                         Arrays.toString(mGlobalSizes));
+  }
+
+}
@@ -0,0 +1,145 @@
+package clearcl.pool.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CompletionException;
+
+import clearcl.ClearCL;
+import clearcl.backend.purejava.ClearCLBackendPureJava;
+import clearcl.ocllib.OCLlib;
+import clearcl.pool.ClearCLDevicePool;
+import clearcl.pool.ClearCLPoolTask;
+import coremem.enums.NativeTypeEnum;
+import coremem.offheap.OffHeapMemory;
+
+import org.junit.Test;
+
+/**
+ * Device pool tests, run on two pure Java devices of different speeds.
+ *
+ * @author royer
+ */
+public class ClearCLDevicePoolTests
+{
+
+  private static final int cTileLength = 64 * 1024;
+  private static final int cNumberOfTiles = 48;
+
+  /**
+   * Converts tiles on two devices and checks that all results are correct and
+   * that both devices took part.
+   */
+  @Test
+  public void testTiles()
+  {
+    try (
+        ClearCL lFastClearCL =
+                             new ClearCL(new ClearCLBackendPureJava(Math.max(2,
+                                                                             Runtime.getRuntime()
+                                                                                    .availableProcessors()
+                                                                                - 1)));
+        ClearCL lSlowClearCL =
+                             new ClearCL(new ClearCLBackendPureJava(1));
+        ClearCLDevicePool lDevicePool =
+                                      new ClearCLDevicePool(Arrays.asList(lFastClearCL.getBestCPUDevice(),
+                                                                          lSlowClearCL.getBestCPUDevice())))
+    {
+      assertEquals(2, lDevicePool.getNumberOfDevices());
+
+      ArrayList<ClearCLPoolTask> lTasks = new ArrayList<>();
+      ArrayList<OffHeapMemory> lMemories = new ArrayList<>();
+      for (int t = 0; t < cNumberOfTiles; t++)
+      {
+        OffHeapMemory lInput = OffHeapMemory.allocateFloats(cTileLength);
+        OffHeapMemory lOutput = OffHeapMemory.allocateFloats(cTileLength);
+        for (int i = 0; i < cTileLength; i++)
+          lInput.setFloatAligned(i, t + i);
+
+        ClearCLPoolTask lTask =
+                              new ClearCLPoolTask(OCLlib.class,
+                                                  "conversion/conversion.cl",
+                                                  "convert_buffer");
+        lTask.addDefine("FLOAT");
+        lTask.setInput("buffer", NativeTypeEnum.Float, lInput);
+        lTask.setOutput("result", NativeTypeEnum.Float, lOutput);
+        lTask.setArgument("scale", 2f);
+        lTask.setArgument("offset", 1f);
+        lTask.setArgument("length", (long) cTileLength);
+        lTask.setGlobalSizes(cTileLength);
+        lTasks.add(lTask);
+        lMemories.add(lInput);
+        lMemories.add(lOutput);
+      }
+
+      lDevicePool.invokeAll(lTasks);
+
+      for (int t = 0; t < cNumberOfTiles; t++)
+      {
+        OffHeapMemory lOutput = lMemories.get(2 * t + 1);
+        for (int i = 0; i < cTileLength; i += 1021)
+          assertEquals(2 * (t + i) + 1, lOutput.getFloatAligned(i), 0);
+      }
+
+      long lExecutedOnFast = lDevicePool.getNumberOfExecutedTasks(0);
+      long lExecutedOnSlow = lDevicePool.getNumberOfExecutedTasks(1);
+      assertEquals(cNumberOfTiles, lExecutedOnFast + lExecutedOnSlow);
+      assertTrue(lExecutedOnFast > 0);
+      assertTrue(lExecutedOnSlow > 0);
+
+      for (OffHeapMemory lMemory : lMemories)
+        lMemory.free();
+    }
+  }
+
+  /**
+   * Checks that a failing task completes its future exceptionally without
+   * affecting later tasks.
+   */
+  @Test
+  public void testFailure()
+  {
+    try (
+        ClearCL lClearCL = new ClearCL(new ClearCLBackendPureJava());
+        ClearCLDevicePool lDevicePool = new ClearCLDevicePool(lClearCL))
+    {
+      ClearCLPoolTask lTask = new ClearCLPoolTask(OCLlib.class,
+                                                  "conversion/conversion.cl",
+                                                  "no_such_kernel");
+      lTask.setGlobalSizes(16);
+
+      boolean lFailed = false;
+      try
+      {
+        lDevicePool.submit(lTask).join();
+      }
+      catch (CompletionException e)
+      {
+        lFailed = true;
+      }
+      assertTrue(lFailed);
+
+      OffHeapMemory lInput = OffHeapMemory.allocateFloats(16);
+      OffHeapMemory lOutput = OffHeapMemory.allocateFloats(16);
+      ClearCLPoolTask lOtherTask =
+                                 new ClearCLPoolTask(OCLlib.class,
+                                                     "conversion/conversion.cl",
+                                                     "convert_buffer");
+      lOtherTask.addDefine("FLOAT");
+      lOtherTask.setInput("buffer", NativeTypeEnum.Float, lInput);
+      lOtherTask.setOutput("result", NativeTypeEnum.Float, lOutput);
+      lOtherTask.setArgument("scale", 0f);
+      lOtherTask.setArgument("offset", 3f);
+      lOtherTask.setArgument("length", 16L);
+      lOtherTask.setGlobalSizes(16);
+      lDevicePool.submit(lOtherTask).join();
+
+      assertEquals(3, lOutput.getFloatAligned(15), 0);
+      lOutput.free();
+      lInput.free();
+    }
+  }
+
+}
@@ -0,0 +1,120 @@
+package clearcl.profiling;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Aggregates OpenCL profiling timestamps of commands enqueued on a profiling
+ * queue. Commands are grouped by name: kernel name for kernel executions, and
+ * command type (e.g. 'readFromBuffer', 'copyImage') for transfers. For each
+ * name two histograms are kept: device execution time (end - start) and queue
+ * latency (start - queued).
+ *
+ * @author royer
+ */
+public class ClearCLQueueProfiler
+{
+  private final ConcurrentHashMap<String, LatencyHistogram> mExecutionTimeHistograms =
+                                                                                     new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, LatencyHistogram> mQueueLatencyHistograms =
+                                                                                    new ConcurrentHashMap<>();
+
+  /**
+   * Records the profiling timestamps of a completed command.
+   *
+   * @param pCommandName
+   *          command name
+   * @param pTimestamps
+   *          timestamps {queued, submit, start, end} in nanoseconds
+   */
+  public void record(String pCommandName, long[] pTimestamps)
+  {
+    long lQueued = pTimestamps[0];
+    long lStart = pTimestamps[2];
+    long lEnd = pTimestamps[3];
+
+    mExecutionTimeHistograms.computeIfAbsent(pCommandName,
+                                             (n) -> new LatencyHistogram())
+                            .record(lEnd - lStart);
+    mQueueLatencyHistograms.computeIfAbsent(pCommandName,
+                                            (n) -> new LatencyHistogram())
+                           .record(lStart - lQueued);
+  }
+
+  /**
+   * Returns the names of all commands profiled so far, sorted.
+   *
+   * @return command names
+   */
+  public Set<String> getCommandNames()
+  {
+    return Collections.unmodifiableSet(new TreeSet<>(mExecutionTimeHistograms.keySet()));
+  }
+
+  /**
+   * Returns the histogram of device execution times (end - start) for a given
+   * command name, or null if no such command was profiled.
+   *
+   * @param pCommandName
+   *          command name
+   * @return execution time histogram
+   */
+  public LatencyHistogram getExecutionTimeHistogram(String pCommandName)
+  {
+    return mExecutionTimeHistograms.get(pCommandName);
+  }
+
+  /**
+   * Returns the histogram of queue latencies (start - queued) for a given
+   * command name, or null if no such command was profiled.
+   *
+   * @param pCommandName
+   *          command name
+   * @return queue latency histogram
+   */
+  public LatencyHistogram getQueueLatencyHistogram(String pCommandName)
+  {
+    return mQueueLatencyHistograms.get(pCommandName);
+  }
+
+  /**
+   * Clears all profiling information.
+   */
+  public void clear()
+  {
+    mExecutionTimeHistograms.clear();
+    mQueueLatencyHistograms.clear();
+  }
+
+  @Override
+  public String toString()
+  {
+    StringBuilder lStringBuilder = new StringBuilder();
+    lStringBuilder.append(String.format("%-32s %10s %12s %12s %12s %12s %12s\n",
+                                        "command",
+                                        "count",
+                                        "mean (us)",
+                                        "p50 (us)",
+                                        "p90 (us)",
+                                        "p99 (us)",
+                                        "wait (us)"));
+    for (String lCommandName : getCommandNames())
+    {
+      LatencyHistogram lExecution =
+                                  getExecutionTimeHistogram(lCommandName);
+      LatencyHistogram lLatency = getQueueLatencyHistogram(lCommandName);
+      lStringBuilder.append(String.format("%-32s %10d %12.1f %12.1f %12.1f %12.1f %12.1f\n",
+                                          lCommandName,
+                                          lExecution.getCount(),
+                                          1e-3 * lExecution.getMean(),
+                                          1e-3 * lExecution.getPercentile(50),
+                                          1e-3 * lExecution.getPercentile(90),
+                                          1e-3 * lExecution.getPercentile(99),
+                                          1e-3 * lLatency.getMean()));
+    }
+    return lStringBuilder.toString();
+  }
+
+}
@@ -0,0 +1,186 @@
+package clearcl.profiling;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram of durations in nanoseconds. Each power of two
+ * is split into 16 linear sub-buckets, percentiles are therefore reported with
+ * a relative error below 1/16. Recording is wait-free and can be done
+ * concurrently from any thread, such as OpenCL event callback threads.
+ *
+ * @author royer
+ */
+public class LatencyHistogram
+{
+  private static final int cSubBucketBits = 4;
+  private static final int cSubBuckets = 1 << cSubBucketBits;
+  private static final int cNumberOfBuckets = (63 - cSubBucketBits + 1)
+                                              * cSubBuckets;
+
+  private final AtomicLongArray mBuckets =
+                                         new AtomicLongArray(cNumberOfBuckets);
+  private final AtomicLong mCount = new AtomicLong();
+  private final AtomicLong mTotal = new AtomicLong();
+  private final AtomicLong mMin = new AtomicLong(Long.MAX_VALUE);
+  private final AtomicLong mMax = new AtomicLong(Long.MIN_VALUE);
+
+  /**
+   * Records a duration, negative durations are recorded as zero.
+   *
+   * @param pDurationInNanoseconds
+   *          duration in nanoseconds
+   */
+  public void record(long pDurationInNanoseconds)
+  {
+    long lValue = Math.max(0, pDurationInNanoseconds);
+    mBuckets.incrementAndGet(getBucketIndex(lValue));
+    mCount.incrementAndGet();
+    mTotal.addAndGet(lValue);
+    mMin.accumulateAndGet(lValue, Math::min);
+    mMax.accumulateAndGet(lValue, Math::max);
+  }
+
+  /**
+   * Returns the number of recorded durations.
+   *
+   * @return count
+   */
+  public long getCount()
+  {
+    return mCount.get();
+  }
+
+  /**
+   * Returns the sum of all recorded durations in nanoseconds.
+   *
+   * @return total in nanoseconds
+   */
+  public long getTotal()
+  {
+    return mTotal.get();
+  }
+
+  /**
+   * Returns the smallest recorded duration, or zero if nothing was recorded.
+   *
+   * @return minimum in nanoseconds
+   */
+  public long getMin()
+  {
+    return getCount() == 0 ? 0 : mMin.get();
+  }
+
+  /**
+   * Returns the largest recorded duration, or zero if nothing was recorded.
+   *
+   * @return maximum in nanoseconds
+   */
+  public long getMax()
+  {
+    return getCount() == 0 ? 0 : mMax.get();
+  }
+
+  /**
+   * Returns the mean of the recorded durations, or zero if nothing was
+   * recorded.
+   *
+   * @return mean in nanoseconds
+   */
+  public double getMean()
+  {
+    long lCount = getCount();
+    return lCount == 0 ? 0 : ((double) getTotal()) / lCount;
+  }
+
+  /**
+   * Returns an estimate of the given percentile of the recorded durations, or
+   * zero if nothing was recorded.
+   *
+   * @param pPercentile
+   *          percentile within [0,100]
+   * @return percentile in nanoseconds
+   */
+  public long getPercentile(double pPercentile)
+  {
+    long lCount = 0;
+    long[] lBuckets = new long[cNumberOfBuckets];
+    for (int i = 0; i < cNumberOfBuckets; i++)
+    {
+      lBuckets[i] = mBuckets.get(i);
+      lCount += lBuckets[i];
+    }
+    if (lCount == 0)
+      return 0;
+
+    double lPercentile = Math.min(100, Math.max(0, pPercentile));
+    long lRank = Math.max(1, (long) Math.ceil(lPercentile / 100
+                                              * lCount));
+    if (lRank == 1)
+      return getMin();
+    if (lRank >= lCount)
+      return getMax();
+
+    long lCumulative = 0;
+    for (int i = 0; i < cNumberOfBuckets; i++)
+    {
+      lCumulative += lBuckets[i];
+      if (lCumulative >= lRank)
+      {
+        long lLow = getBucketLowerBound(i);
+        long lHigh = getBucketLowerBound(i + 1) - 1;
+        long lEstimate = lLow + (lHigh - lLow) / 2;
+        return Math.min(getMax(), Math.max(getMin(), lEstimate));
+      }
+    }
+    return getMax();
+  }
+
+  /**
+   * Resets this histogram. Durations recorded concurrently to a reset may be
+   * partially accounted for.
+   */
+  public void clear()
+  {
+    for (int i = 0; i < cNumberOfBuckets; i++)
+      mBuckets.set(i, 0);
+    mCount.set(0);
+    mTotal.set(0);
+    mMin.set(Long.MAX_VALUE);
+    mMax.set(Long.MIN_VALUE);
+  }
+
+  private static int getBucketIndex(long pValue)
+  {
+    if (pValue < cSubBuckets)
+      return (int) pValue;
+    int lExponent = 63 - Long.numberOfLeadingZeros(pValue);
+    int lSubBucket = (int) ((pValue >>> (lExponent - cSubBucketBits))
+                            & (cSubBuckets - 1));
+    return (lExponent - cSubBucketBits + 1) * cSubBuckets + lSubBucket;
+  }
+
+  private static long getBucketLowerBound(int pIndex)
+  {
+    if (pIndex < cSubBuckets)
+      return pIndex;
+    if (pIndex >= cNumberOfBuckets)
+      return Long.MAX_VALUE;
+    int lExponent = pIndex / cSubBuckets + cSubBucketBits - 1;
+    long lSubBucket = pIndex % cSubBuckets;
+    return (cSubBuckets + lSubBucket) << (lExponent - cSubBucketBits);
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format("LatencyHistogram [count=%d, mean=%.1f us, p50=%.1f us, p90=%.1f us, p99=%.1f us, max=%.1f us]",
+                         getCount(),
+                         1e-3 * getMean(),
+                         1e-3 * getPercentile(50),
+                         1e-3 * getPercentile(90),
+                         1e-3 * getPercentile(99),
+                         1e-3 * getMax());
+  }
+
+}
@@ -0,0 +1,148 @@
+package clearcl.profiling.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import clearcl.ClearCL;
+import clearcl.ClearCLBuffer;
+import clearcl.ClearCLContext;
+import clearcl.ClearCLDevice;
+import clearcl.ClearCLKernel;
+import clearcl.ClearCLProgram;
+import clearcl.ClearCLQueue;
+import clearcl.backend.ClearCLBackendInterface;
+import clearcl.backend.ClearCLBackends;
+import clearcl.enums.BuildStatus;
+import clearcl.enums.HostAccessType;
+import clearcl.enums.KernelAccessType;
+import clearcl.profiling.ClearCLQueueProfiler;
+import clearcl.profiling.LatencyHistogram;
+import clearcl.test.ClearCLKernelTests;
+import coremem.enums.NativeTypeEnum;
+import coremem.offheap.OffHeapMemory;
+
+import org.junit.Test;
+
+/**
+ * Queue profiling tests
+ *
+ * @author royer
+ */
+public class ClearCLProfilingTests
+{
+
+  /**
+   * Tests histogram percentiles
+   */
+  @Test
+  public void testHistogram()
+  {
+    LatencyHistogram lHistogram = new LatencyHistogram();
+    assertEquals(0, lHistogram.getPercentile(50));
+
+    for (int i = 1; i <= 1000; i++)
+      lHistogram.record(i * 1000);
+
+    assertEquals(1000, lHistogram.getCount());
+    assertEquals(1000, lHistogram.getMin());
+    assertEquals(1000 * 1000, lHistogram.getMax());
+    assertEquals(500500, lHistogram.getMean(), 0.1);
+
+    assertEquals(500000, lHistogram.getPercentile(50), 500000 / 16);
+    assertEquals(990000, lHistogram.getPercentile(99), 990000 / 16);
+    assertEquals(1000, lHistogram.getPercentile(0));
+    assertEquals(1000 * 1000, lHistogram.getPercentile(100));
+
+    lHistogram.clear();
+    assertEquals(0, lHistogram.getCount());
+  }
+
+  /**
+   * Tests profiling of kernels and transfers on a profiling queue
+   *
+   * @throws Exception
+   *           NA
+   */
+  @Test
+  public void testQueueProfiling() throws Exception
+  {
+    ClearCLBackendInterface lClearCLBackendInterface =
+                                                     ClearCLBackends.getBestBackend();
+
+    try (ClearCL lClearCL = new ClearCL(lClearCLBackendInterface))
+    {
+      ClearCLDevice lDevice = lClearCL.getBestGPUDevice();
+      ClearCLContext lContext = lDevice.createContext();
+
+      ClearCLProgram lProgram =
+                              lContext.createProgram(ClearCLKernelTests.class,
+                                                     "test.cl");
+      lProgram.addDefine("CONSTANT", "1");
+      assertEquals(BuildStatus.Success, lProgram.buildAndLog());
+
+      ClearCLBuffer lBuffer =
+                            lContext.createBuffer(HostAccessType.ReadWrite,
+                                                  KernelAccessType.ReadWrite,
+                                                  NativeTypeEnum.Float,
+                                                  1024);
+      OffHeapMemory lMemory = OffHeapMemory.allocateFloats(1024);
+
+      ClearCLQueue lQueue = lContext.createQueue(true);
+      assertTrue(lQueue.isProfiling());
+      assertTrue(!lContext.getDefaultQueue().isProfiling());
+
+      ClearCLKernel lKernel = lProgram.createKernel("buffersum");
+      lKernel.setGlobalSizes(1024);
+      lKernel.setArguments(1f, lBuffer, lBuffer, lBuffer);
+
+      for (int i = 0; i < 10; i++)
+      {
+        lBuffer.enqueueReadFrom(lQueue, lMemory).close();
+        lKernel.run(lQueue, false);
+      }
+      lQueue.waitToFinish();
+
+      ClearCLQueueProfiler lProfiler = lQueue.getProfiler();
+      LatencyHistogram lKernelHistogram =
+                                        waitForCount(lProfiler,
+                                                     "buffersum",
+                                                     10);
+      assertNotNull(lKernelHistogram);
+      assertTrue(lKernelHistogram.getMax() > 0);
+      assertNotNull(waitForCount(lProfiler, "readFromBuffer", 10));
+
+      assertTrue(lProfiler.getCommandNames().contains("buffersum"));
+      assertTrue(lProfiler.getCommandNames()
+                          .contains("readFromBuffer"));
+      LatencyHistogram lLatencyHistogram =
+                                         lProfiler.getQueueLatencyHistogram("buffersum");
+      assertNotNull(lLatencyHistogram);
+      assertTrue(lLatencyHistogram.getCount() > 0);
+      assertTrue(lProfiler.toString().contains("buffersum"));
+
+      lMemory.free();
+      lKernel.close();
+      lBuffer.close();
+      lQueue.close();
+      lContext.close();
+    }
+  }
+
+  private LatencyHistogram waitForCount(ClearCLQueueProfiler pProfiler,
+                                        String pCommandName,
+                                        long pCount) throws InterruptedException
+  {
+    // event callbacks may lag behind the completion of the queue:
+    for (int i = 0; i < 100; i++)
+    {
+      LatencyHistogram lHistogram =
+                                  pProfiler.getExecutionTimeHistogram(pCommandName);
+      if (lHistogram != null && lHistogram.getCount() >= pCount)
+        return lHistogram;
+      Thread.sleep(10);
+    }
+    return pProfiler.getExecutionTimeHistogram(pCommandName);
+  }
+
+}
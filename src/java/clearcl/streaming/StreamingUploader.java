@@ -0,0 +1,456 @@
+package clearcl.streaming;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import clearcl.ClearCLBuffer;
+import clearcl.ClearCLContext;
+import clearcl.ClearCLEvent;
+import clearcl.ClearCLImage;
+import clearcl.ClearCLQueue;
+import clearcl.enums.HostAccessType;
+import clearcl.enums.KernelAccessType;
+import clearcl.enums.MemAllocMode;
+import clearcl.interfaces.ClearCLImageInterface;
+import clearcl.metrics.ClearCLMetrics;
+import clearcl.metrics.Counter;
+import coremem.ContiguousMemoryInterface;
+import coremem.enums.NativeTypeEnum;
+
+/**
+ * Streams frames (e.g. camera stacks) from host memory into a ring of device
+ * images or buffers, called slots. Each slot has its own pinned staging memory
+ * into which producers write frames directly, uploads are enqueued on a
+ * dedicated upload queue, and consumers process uploaded frames on their own
+ * queues by waiting on the upload event instead of blocking the host. The
+ * upload of frame k+1 thus overlaps with the processing of frame k. When all
+ * slots are in use, i.e. when consumers fall behind, producers block until a
+ * slot is released: this is the backpressure.
+ *
+ * Producer loop:
+ *
+ * <pre>
+ * Slot lSlot = lUploader.beginUpload();
+ * // write frame into lSlot.getStagingMemory()
+ * lUploader.endUpload(lSlot);
+ * </pre>
+ *
+ * Consumer loop:
+ *
+ * <pre>
+ * Slot lSlot = lUploader.take();
+ * lKernel.setArgument("image", lSlot.getImage());
+ * ClearCLEvent lDone = lKernel.enqueue(lQueue, lSlot.getUploadEvent());
+ * lUploader.release(lSlot, lDone);
+ * </pre>
+ *
+ * @author royer
+ */
+public class StreamingUploader implements AutoCloseable
+{
+  private final ClearCLQueue mUploadQueue;
+  private final Slot[] mSlots;
+  private final BlockingQueue<Slot> mFreeSlots;
+  private final BlockingQueue<Slot> mUploadedSlots;
+  private final AtomicLong mNumberOfUploadedFrames = new AtomicLong();
+  private final Counter mStallCounter =
+                                      ClearCLMetrics.getCounter("streaming.upload.stalls");
+
+  /**
+   * A slot: device image or buffer, its pinned staging memory, and the events
+   * that order its reuse.
+   */
+  public static class Slot
+  {
+    private final int mIndex;
+    private final ClearCLImage mImage;
+    private final ClearCLBuffer mBuffer;
+    private final ClearCLBuffer mStagingBuffer;
+    private final ContiguousMemoryInterface mStagingMemory;
+    private volatile ClearCLEvent mUploadEvent;
+    private volatile ClearCLEvent mReleaseEvent;
+    private volatile long mFrameIndex = -1;
+
+    private Slot(int pIndex,
+                 ClearCLImage pImage,
+                 ClearCLBuffer pBuffer,
+                 ClearCLBuffer pStagingBuffer,
+                 ContiguousMemoryInterface pStagingMemory)
+    {
+      mIndex = pIndex;
+      mImage = pImage;
+      mBuffer = pBuffer;
+      mStagingBuffer = pStagingBuffer;
+      mStagingMemory = pStagingMemory;
+    }
+
+    /**
+     * Returns the index of this slot in the ring.
+     *
+     * @return slot index
+     */
+    public int getIndex()
+    {
+      return mIndex;
+    }
+
+    /**
+     * Returns the device image or buffer holding the frame.
+     *
+     * @return device image or buffer
+     */
+    public ClearCLImageInterface getImage()
+    {
+      return mImage != null ? mImage : mBuffer;
+    }
+
+    /**
+     * Returns the pinned host memory into which producers write frames. It
+     * must only be written between beginUpload and endUpload.
+     *
+     * @return staging memory
+     */
+    public ContiguousMemoryInterface getStagingMemory()
+    {
+      return mStagingMemory;
+    }
+
+    /**
+     * Returns the event of the upload of the current frame. Commands
+     * processing the frame must wait for it. This event is owned by the
+     * uploader and must neither be closed nor used after the slot is released.
+     *
+     * @return upload event
+     */
+    public ClearCLEvent getUploadEvent()
+    {
+      return mUploadEvent;
+    }
+
+    /**
+     * Returns the index of the frame currently held by this slot, frames are
+     * numbered in upload order starting at zero.
+     *
+     * @return frame index, or -1 if no frame was ever uploaded
+     */
+    public long getFrameIndex()
+    {
+      return mFrameIndex;
+    }
+
+    private void close(ClearCLQueue pUploadQueue)
+    {
+      closeEvents();
+      mStagingBuffer.unmap(pUploadQueue, mStagingMemory, true);
+      mStagingBuffer.close();
+      if (mImage != null)
+        mImage.close();
+      else
+        mBuffer.close();
+    }
+
+    private void closeEvents()
+    {
+      if (mUploadEvent != null)
+      {
+        mUploadEvent.close();
+        mUploadEvent = null;
+      }
+      if (mReleaseEvent != null)
+      {
+        mReleaseEvent.close();
+        mReleaseEvent = null;
+      }
+    }
+  }
+
+  /**
+   * Instantiates a streaming uploader with a given number of slots, each
+   * holding a device image or buffer of same type, dimensions and number of
+   * channels as a given template. Two slots give double buffering, three slots
+   * give triple buffering. Uploads are enqueued on a dedicated queue.
+   *
+   * @param pTemplate
+   *          template image or buffer
+   * @param pNumberOfSlots
+   *          number of slots
+   */
+  public StreamingUploader(ClearCLImageInterface pTemplate,
+                           int pNumberOfSlots)
+  {
+    if (pNumberOfSlots < 1)
+      throw new IllegalArgumentException("At least one slot is required");
+
+    ClearCLContext lContext = pTemplate.getContext();
+    mUploadQueue = lContext.createQueue();
+    mSlots = new Slot[pNumberOfSlots];
+    mFreeSlots = new ArrayBlockingQueue<>(pNumberOfSlots);
+    mUploadedSlots = new ArrayBlockingQueue<>(pNumberOfSlots);
+
+    for (int i = 0; i < pNumberOfSlots; i++)
+    {
+      ClearCLImage lImage = null;
+      ClearCLBuffer lBuffer = null;
+      if (pTemplate instanceof ClearCLImage)
+      {
+        ClearCLImage lTemplateImage = (ClearCLImage) pTemplate;
+        lImage =
+               lContext.createImage(MemAllocMode.Best,
+                                    HostAccessType.WriteOnly,
+                                    KernelAccessType.ReadWrite,
+                                    lTemplateImage.getChannelOrder(),
+                                    lTemplateImage.getChannelDataType(),
+                                    lTemplateImage.getDimensions());
+      }
+      else
+        lBuffer = lContext.createBuffer(MemAllocMode.Best,
+                                        HostAccessType.WriteOnly,
+                                        KernelAccessType.ReadWrite,
+                                        pTemplate.getNumberOfChannels(),
+                                        pTemplate.getNativeType(),
+                                        pTemplate.getDimensions());
+
+      // Pinned staging memory: a buffer allocated by the OpenCL runtime in
+      // host memory, mapped once for the lifetime of the slot.
+      ClearCLBuffer lStagingBuffer =
+                                   lContext.createBuffer(MemAllocMode.AllocateHostPointer,
+                                                         HostAccessType.WriteOnly,
+                                                         KernelAccessType.ReadOnly,
+                                                         NativeTypeEnum.UnsignedByte,
+                                                         pTemplate.getSizeInBytes());
+      ContiguousMemoryInterface lStagingMemory =
+                                               lStagingBuffer.map(mUploadQueue,
+                                                                  HostAccessType.WriteOnly,
+                                                                  0,
+                                                                  lStagingBuffer.getSizeInBytes());
+
+      mSlots[i] = new Slot(i,
+                           lImage,
+                           lBuffer,
+                           lStagingBuffer,
+                           lStagingMemory);
+      mFreeSlots.add(mSlots[i]);
+    }
+  }
+
+  /**
+   * Returns the number of slots.
+   *
+   * @return number of slots
+   */
+  public int getNumberOfSlots()
+  {
+    return mSlots.length;
+  }
+
+  /**
+   * Returns the queue on which uploads are enqueued.
+   *
+   * @return upload queue
+   */
+  public ClearCLQueue getUploadQueue()
+  {
+    return mUploadQueue;
+  }
+
+  /**
+   * Returns the number of frames uploaded so far.
+   *
+   * @return number of uploaded frames
+   */
+  public long getNumberOfUploadedFrames()
+  {
+    return mNumberOfUploadedFrames.get();
+  }
+
+  /**
+   * Acquires a free slot for writing the next frame into its staging memory,
+   * blocking until one is released if all slots are in use.
+   *
+   * @return slot
+   * @throws InterruptedException
+   *           thrown if interrupted while waiting
+   */
+  public Slot beginUpload() throws InterruptedException
+  {
+    Slot lSlot = mFreeSlots.poll();
+    if (lSlot == null)
+    {
+      mStallCounter.increment();
+      lSlot = mFreeSlots.take();
+    }
+    return prepareForWriting(lSlot);
+  }
+
+  /**
+   * Acquires a free slot for writing the next frame into its staging memory,
+   * waiting at most a given time for one to be released. Producers that cannot
+   * wait, e.g. camera acquisition threads, can use this to drop frames
+   * instead of blocking.
+   *
+   * @param pTimeOut
+   *          time out
+   * @param pTimeUnit
+   *          time unit
+   * @return slot, or null if none was released in time
+   * @throws InterruptedException
+   *           thrown if interrupted while waiting
+   */
+  public Slot tryBeginUpload(long pTimeOut,
+                             TimeUnit pTimeUnit) throws InterruptedException
+  {
+    Slot lSlot = mFreeSlots.poll();
+    if (lSlot == null)
+    {
+      mStallCounter.increment();
+      lSlot = mFreeSlots.poll(pTimeOut, pTimeUnit);
+      if (lSlot == null)
+        return null;
+    }
+    return prepareForWriting(lSlot);
+  }
+
+  private Slot prepareForWriting(Slot pSlot)
+  {
+    // the previous upload from the staging memory must have completed before
+    // the host overwrites it:
+    if (pSlot.mUploadEvent != null)
+    {
+      pSlot.mUploadEvent.waitToFinish();
+      pSlot.mUploadEvent.close();
+      pSlot.mUploadEvent = null;
+    }
+    return pSlot;
+  }
+
+  /**
+   * Enqueues the upload of the frame written into the staging memory of a slot
+   * and makes the slot available to consumers. This call does not block: the
+   * upload starts once the processing of the previous frame held by this slot
+   * has completed.
+   *
+   * @param pSlot
+   *          slot acquired with beginUpload
+   */
+  public void endUpload(Slot pSlot)
+  {
+    ClearCLEvent lReleaseEvent = pSlot.mReleaseEvent;
+    pSlot.mReleaseEvent = null;
+
+    ClearCLEvent[] lWaitEvents = lReleaseEvent == null ? new ClearCLEvent[0]
+                                                       : new ClearCLEvent[]
+                                                       { lReleaseEvent };
+    if (pSlot.mImage != null)
+      pSlot.mUploadEvent =
+                         pSlot.mImage.enqueueReadFrom(mUploadQueue,
+                                                      pSlot.mStagingMemory,
+                                                      lWaitEvents);
+    else
+      pSlot.mUploadEvent =
+                         pSlot.mBuffer.enqueueReadFrom(mUploadQueue,
+                                                       pSlot.mStagingMemory,
+                                                       lWaitEvents);
+    mUploadQueue.flush();
+
+    if (lReleaseEvent != null)
+      lReleaseEvent.close();
+
+    pSlot.mFrameIndex = mNumberOfUploadedFrames.getAndIncrement();
+    mUploadedSlots.add(pSlot);
+  }
+
+  /**
+   * Convenience method that copies a frame into the staging memory of a free
+   * slot and enqueues its upload, blocking if all slots are in use.
+   *
+   * @param pFrame
+   *          frame, must have the same size in bytes as the slots
+   * @throws InterruptedException
+   *           thrown if interrupted while waiting for a free slot
+   */
+  public void upload(ContiguousMemoryInterface pFrame) throws InterruptedException
+  {
+    Slot lSlot = beginUpload();
+    try
+    {
+      pFrame.copyTo(lSlot.mStagingMemory);
+    }
+    catch (RuntimeException e)
+    {
+      mFreeSlots.add(lSlot);
+      throw e;
+    }
+    endUpload(lSlot);
+  }
+
+  /**
+   * Takes the oldest uploaded slot, blocking until one is available. The
+   * upload may still be in progress: commands processing the frame must wait
+   * for the slot's upload event.
+   *
+   * @return slot
+   * @throws InterruptedException
+   *           thrown if interrupted while waiting
+   */
+  public Slot take() throws InterruptedException
+  {
+    return mUploadedSlots.take();
+  }
+
+  /**
+   * Takes the oldest uploaded slot, waiting at most a given time for one to be
+   * available.
+   *
+   * @param pTimeOut
+   *          time out
+   * @param pTimeUnit
+   *          time unit
+   * @return slot, or null if none is available in time
+   * @throws InterruptedException
+   *           thrown if interrupted while waiting
+   */
+  public Slot poll(long pTimeOut, TimeUnit pTimeUnit) throws InterruptedException
+  {
+    return mUploadedSlots.poll(pTimeOut, pTimeUnit);
+  }
+
+  /**
+   * Releases a slot whose frame has been fully processed.
+   *
+   * @param pSlot
+   *          slot
+   */
+  public void release(Slot pSlot)
+  {
+    release(pSlot, null);
+  }
+
+  /**
+   * Releases a slot whose processing has been enqueued, the next upload into
+   * this slot waits for the given event on the device. The uploader takes
+   * ownership of the event and closes it.
+   *
+   * @param pSlot
+   *          slot
+   * @param pProcessingEvent
+   *          event of the last command processing the frame, or null if
+   *          processing has completed
+   */
+  public void release(Slot pSlot, ClearCLEvent pProcessingEvent)
+  {
+    pSlot.mReleaseEvent = pProcessingEvent;
+    mFreeSlots.add(pSlot);
+  }
+
+  @Override
+  public void close()
+  {
+    mUploadQueue.waitToFinish();
+    for (Slot lSlot : mSlots)
+      lSlot.close(mUploadQueue);
+    mUploadQueue.close();
+  }
+
+}
@@ -0,0 +1,116 @@
+package clearcl.streaming.test;
+
+import static org.junit.Assert.assertEquals;
+
+import clearcl.ClearCL;
+import clearcl.ClearCLBuffer;
+import clearcl.ClearCLContext;
+import clearcl.ClearCLDevice;
+import clearcl.ClearCLEvent;
+import clearcl.ClearCLQueue;
+import clearcl.backend.jocl.ClearCLBackendJOCL;
+import clearcl.enums.HostAccessType;
+import clearcl.enums.KernelAccessType;
+import clearcl.selector.BadDeviceSelector;
+import clearcl.selector.DeviceTypeSelector;
+import clearcl.streaming.StreamingUploader;
+import clearcl.streaming.StreamingUploader.Slot;
+import coremem.enums.NativeTypeEnum;
+import coremem.offheap.OffHeapMemory;
+
+import org.junit.Test;
+
+/**
+ * Streaming uploader tests
+ *
+ * @author royer
+ */
+public class StreamingUploaderTests
+{
+
+  private static final int cFrameLength = 512 * 512;
+  private static final int cNumberOfFrames = 32;
+
+  /**
+   * Streams frames from a producer thread through three slots, and checks that
+   * each frame is received intact and in order.
+   *
+   * @throws Exception
+   *           NA
+   */
+  @Test
+  public void testStreaming() throws Exception
+  {
+    try (ClearCL lClearCL = new ClearCL(new ClearCLBackendJOCL()))
+    {
+      ClearCLDevice lClearClDevice =
+                                   lClearCL.getBestDevice(DeviceTypeSelector.GPU,
+                                                          BadDeviceSelector.NotIntegratedIntel);
+
+      ClearCLContext lContext = lClearClDevice.createContext();
+      ClearCLQueue lProcessingQueue = lContext.createQueue();
+
+      ClearCLBuffer lTemplate =
+                              lContext.createBuffer(HostAccessType.ReadWrite,
+                                                    KernelAccessType.ReadWrite,
+                                                    NativeTypeEnum.Float,
+                                                    cFrameLength);
+      ClearCLBuffer lResult =
+                            lContext.createBuffer(HostAccessType.ReadWrite,
+                                                  KernelAccessType.ReadWrite,
+                                                  NativeTypeEnum.Float,
+                                                  cFrameLength);
+      OffHeapMemory lResultMemory =
+                                  OffHeapMemory.allocateFloats(cFrameLength);
+
+      try (StreamingUploader lUploader = new StreamingUploader(lTemplate, 3))
+      {
+        Thread lProducer = new Thread(() -> {
+          try
+          {
+            for (int f = 0; f < cNumberOfFrames; f++)
+            {
+              Slot lSlot = lUploader.beginUpload();
+              for (int i = 0; i < cFrameLength; i++)
+                lSlot.getStagingMemory().setFloatAligned(i, f + i);
+              lUploader.endUpload(lSlot);
+            }
+          }
+          catch (InterruptedException e)
+          {
+            Thread.currentThread().interrupt();
+          }
+        });
+        lProducer.start();
+
+        for (int f = 0; f < cNumberOfFrames; f++)
+        {
+          Slot lSlot = lUploader.take();
+          assertEquals(f, lSlot.getFrameIndex());
+
+          ClearCLEvent lCopyEvent =
+                                  ((ClearCLBuffer) lSlot.getImage()).enqueueCopyTo(lProcessingQueue,
+                                                                                   lResult,
+                                                                                   lSlot.getUploadEvent());
+          lUploader.release(lSlot, lCopyEvent);
+
+          lResult.writeTo(lProcessingQueue,
+                          lResultMemory,
+                          0,
+                          cFrameLength,
+                          true);
+          assertEquals(f + 1000, lResultMemory.getFloatAligned(1000), 0);
+        }
+
+        lProducer.join();
+        assertEquals(cNumberOfFrames,
+                     lUploader.getNumberOfUploadedFrames());
+      }
+
+      lResultMemory.free();
+      lResult.close();
+      lTemplate.close();
+    }
+  }
+
+}
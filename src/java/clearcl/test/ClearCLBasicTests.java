@@ -265,6 +265,27 @@ public class ClearCLBasicTests
       // if (j % 100000 == 0)
       // System.out.println(lObservedValue + " == " + lTrueValue);
     }
+
+    // sub-buffers alias the second half of their parents:
+    final long lHalf = cFloatArrayLength / 2;
+    final ClearCLBuffer lSubBufferA = lBufferA.subBuffer(lHalf, lHalf);
+    final ClearCLBuffer lSubBufferC = lBufferC.subBuffer(lHalf, lHalf);
+    assertEquals(lHalf, lSubBufferA.getLength());
+
+    lKernel.setArguments(22f, lSubBufferA, lSubBufferA, lSubBufferC);
+    lKernel.setGlobalSizes(lHalf);
+    lKernel.run();
+
+    lBufferC.writeTo(lArrayC, 0, cFloatArrayLength, true);
+    assertEquals(11f, lArrayC.get(0), 0.01);
+    assertEquals(2 * lHalf + 22f, lArrayC.get((int) lHalf), 0.01);
+
+    // closing the parent first defers its release:
+    lBufferA.close();
+    assertTrue(lSubBufferA.getPeerPointer() != null);
+    lSubBufferA.close();
+    lSubBufferC.close();
+    lBufferC.close();
   }
 
 }
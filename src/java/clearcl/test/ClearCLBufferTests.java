@@ -0,0 +1,111 @@
+package clearcl.test;
+
+import static org.junit.Assert.assertEquals;
+
+import clearcl.ClearCL;
+import clearcl.ClearCLBuffer;
+import clearcl.ClearCLContext;
+import clearcl.ClearCLDevice;
+import clearcl.ClearCLQueue;
+import clearcl.backend.jocl.ClearCLBackendJOCL;
+import clearcl.enums.HostAccessType;
+import clearcl.enums.KernelAccessType;
+import coremem.enums.NativeTypeEnum;
+import coremem.offheap.OffHeapMemory;
+
+import org.junit.Test;
+
+/**
+ * Buffer tests
+ *
+ * @author royer
+ */
+public class ClearCLBufferTests
+{
+
+  /**
+   * Extracts a region of interest from a host volume into a compact buffer,
+   * and writes it back into a larger host volume, using explicit pitches.
+   */
+  @Test
+  public void testRectTransfers()
+  {
+    ClearCLBackendJOCL lClearCLJOCLBackend = new ClearCLBackendJOCL();
+
+    try (ClearCL lClearCL = new ClearCL(lClearCLJOCLBackend))
+    {
+      ClearCLDevice lBestGPUDevice = lClearCL.getBestGPUDevice();
+      ClearCLContext lContext = lBestGPUDevice.createContext();
+      ClearCLQueue lQueue = lContext.getDefaultQueue();
+
+      int lSize = 16;
+      int lRoiSize = 4;
+      int lVolumeLength = lSize * lSize * lSize;
+      int lRoiLength = lRoiSize * lRoiSize * lRoiSize;
+      long lRowPitch = 4 * lSize;
+      long lSlicePitch = lRowPitch * lSize;
+
+      OffHeapMemory lVolume = OffHeapMemory.allocateFloats(lVolumeLength);
+      for (int i = 0; i < lVolumeLength; i++)
+        lVolume.setFloatAligned(i, i);
+
+      ClearCLBuffer lRoi = lContext.createBuffer(HostAccessType.ReadWrite,
+                                                 KernelAccessType.ReadWrite,
+                                                 NativeTypeEnum.Float,
+                                                 lRoiLength);
+
+      lRoi.readRectFrom(lQueue,
+                        lVolume,
+                        new long[]
+                        { 4 * 3, 5, 7 },
+                        lRowPitch,
+                        lSlicePitch,
+                        new long[]
+                        { 0, 0, 0 },
+                        0,
+                        0,
+                        new long[]
+                        { 4 * lRoiSize, lRoiSize, lRoiSize },
+                        true);
+
+      OffHeapMemory lRoiMemory = OffHeapMemory.allocateFloats(lRoiLength);
+      lRoi.writeTo(lRoiMemory, true);
+      assertEquals(3 + 5 * lSize + 7 * lSize * lSize,
+                   lRoiMemory.getFloatAligned(0),
+                   0);
+      assertEquals(4 + 6 * lSize + 8 * lSize * lSize,
+                   lRoiMemory.getFloatAligned(1 + lRoiSize
+                                              + lRoiSize * lRoiSize),
+                   0);
+
+      OffHeapMemory lOtherVolume = OffHeapMemory.allocateFloats(lVolumeLength);
+      lRoi.writeRectTo(lQueue,
+                       lOtherVolume,
+                       new long[]
+                       { 0, 0, 0 },
+                       0,
+                       0,
+                       new long[]
+                       { 4 * 3, 5, 7 },
+                       lRowPitch,
+                       lSlicePitch,
+                       new long[]
+                       { 4 * lRoiSize, lRoiSize, lRoiSize },
+                       true);
+
+      for (int z = 7; z < 7 + lRoiSize; z++)
+        for (int y = 5; y < 5 + lRoiSize; y++)
+          for (int x = 3; x < 3 + lRoiSize; x++)
+          {
+            int lIndex = x + y * lSize + z * lSize * lSize;
+            assertEquals(lIndex, lOtherVolume.getFloatAligned(lIndex), 0);
+          }
+
+      lOtherVolume.free();
+      lRoiMemory.free();
+      lVolume.free();
+      lRoi.close();
+    }
+  }
+
+}
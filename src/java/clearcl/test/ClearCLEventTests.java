@@ -0,0 +1,186 @@
+package clearcl.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import clearcl.ClearCL;
+import clearcl.ClearCLBuffer;
+import clearcl.ClearCLContext;
+import clearcl.ClearCLDevice;
+import clearcl.ClearCLEvent;
+import clearcl.ClearCLKernel;
+import clearcl.ClearCLProgram;
+import clearcl.ClearCLQueue;
+import clearcl.backend.ClearCLBackendInterface;
+import clearcl.backend.javacl.ClearCLBackendJavaCL;
+import clearcl.backend.jocl.ClearCLBackendJOCL;
+import clearcl.enums.BuildStatus;
+import clearcl.enums.EventStatus;
+import clearcl.enums.HostAccessType;
+import clearcl.enums.KernelAccessType;
+import clearcl.selector.BadDeviceSelector;
+import clearcl.selector.DeviceTypeSelector;
+import coremem.enums.NativeTypeEnum;
+import coremem.offheap.OffHeapMemory;
+
+import org.junit.Test;
+
+/**
+ * Event tests: chaining upload, kernel and download without draining queues,
+ * with events and with futures.
+ *
+ * @author royer
+ */
+public class ClearCLEventTests
+{
+
+  private static final int cFloatArrayLength = 1024 * 1024;
+
+  /**
+   * Test with JOCL backend
+   *
+   * @throws Exception
+   *           NA
+   */
+  @Test
+  public void testBackendJOCL() throws Exception
+  {
+    ClearCLBackendJOCL lClearCLJOCLBackend = new ClearCLBackendJOCL();
+
+    testWithBackend(lClearCLJOCLBackend);
+  }
+
+  /**
+   * Test with JavaCL backend
+   *
+   * @throws Exception
+   *           NA
+   */
+  @Test
+  public void testBackendJavaCL() throws Exception
+  {
+    ClearCLBackendJavaCL lClearCLBackendJavaCL =
+                                               new ClearCLBackendJavaCL();
+
+    testWithBackend(lClearCLBackendJavaCL);
+  }
+
+  private void testWithBackend(ClearCLBackendInterface pClearCLBackendInterface) throws Exception
+  {
+    try (ClearCL lClearCL = new ClearCL(pClearCLBackendInterface))
+    {
+      ClearCLDevice lClearClDevice =
+                                   lClearCL.getBestDevice(DeviceTypeSelector.GPU,
+                                                          BadDeviceSelector.NotIntegratedIntel);
+
+      ClearCLContext lContext = lClearClDevice.createContext();
+
+      ClearCLProgram lProgram =
+                              lContext.createProgram(ClearCLKernelTests.class,
+                                                     "test.cl");
+      lProgram.addDefine("CONSTANT", "1");
+      assertEquals(BuildStatus.Success, lProgram.buildAndLog());
+
+      ClearCLBuffer lBufferA =
+                             lContext.createBuffer(HostAccessType.WriteOnly,
+                                                   KernelAccessType.ReadOnly,
+                                                   NativeTypeEnum.Float,
+                                                   cFloatArrayLength);
+      ClearCLBuffer lBufferB =
+                             lContext.createBuffer(HostAccessType.WriteOnly,
+                                                   KernelAccessType.ReadOnly,
+                                                   NativeTypeEnum.Float,
+                                                   cFloatArrayLength);
+      ClearCLBuffer lBufferC =
+                             lContext.createBuffer(HostAccessType.ReadOnly,
+                                                   KernelAccessType.WriteOnly,
+                                                   NativeTypeEnum.Float,
+                                                   cFloatArrayLength);
+
+      OffHeapMemory lMemoryA =
+                             OffHeapMemory.allocateFloats(cFloatArrayLength);
+      OffHeapMemory lMemoryB =
+                             OffHeapMemory.allocateFloats(cFloatArrayLength);
+      OffHeapMemory lMemoryC =
+                             OffHeapMemory.allocateFloats(cFloatArrayLength);
+      for (int i = 0; i < cFloatArrayLength; i++)
+      {
+        lMemoryA.setFloatAligned(i, i);
+        lMemoryB.setFloatAligned(i, 2 * i);
+      }
+
+      ClearCLQueue lQueue = lContext.getDefaultQueue();
+
+      ClearCLKernel lKernel = lProgram.createKernel("buffersum");
+      lKernel.setGlobalSizes(cFloatArrayLength);
+      lKernel.setArguments(1f, lBufferA, lBufferB, lBufferC);
+
+      ClearCLEvent lUploadA = lBufferA.enqueueReadFrom(lQueue, lMemoryA);
+      ClearCLEvent lUploadB = lBufferB.enqueueReadFrom(lQueue, lMemoryB);
+      ClearCLEvent lKernelEvent = lKernel.enqueue(lQueue,
+                                                  lUploadA,
+                                                  lUploadB);
+      ClearCLEvent lDownload = lBufferC.enqueueWriteTo(lQueue,
+                                                       lMemoryC,
+                                                       lKernelEvent);
+
+      lDownload.waitToFinish();
+
+      assertEquals(EventStatus.Complete, lDownload.getStatus());
+      assertTrue(lKernelEvent.isFinished());
+      assertEquals(3 * 1000 + 1,
+                   lMemoryC.getFloatAligned(1000),
+                   0.01);
+
+      lUploadA.close();
+      lUploadB.close();
+      lKernelEvent.close();
+      lDownload.close();
+
+      // same pipeline, composed with futures:
+      lKernel.setArgument("p", 2f);
+      float lValue = CompletableFuture.allOf(lBufferA.readFromAsync(lMemoryA),
+                                             lBufferB.readFromAsync(lMemoryB))
+                                      .thenComposeAsync((v) -> lKernel.runAsync())
+                                      .thenComposeAsync((k) -> lBufferC.writeToAsync(lMemoryC))
+                                      .thenApply((m) -> m.getFloatAligned(1000))
+                                      .get(10, TimeUnit.SECONDS);
+      assertEquals(3 * 1000 + 2, lValue, 0.01);
+
+      // same pipeline on an out-of-order queue, ordered by events and a
+      // barrier:
+      ClearCLQueue lOutOfOrderQueue = lContext.createQueue(false, false);
+      assertTrue(!lOutOfOrderQueue.isInOrder());
+      lKernel.setArgument("p", 3f);
+
+      lUploadA = lBufferA.enqueueReadFrom(lOutOfOrderQueue, lMemoryA);
+      lUploadB = lBufferB.enqueueReadFrom(lOutOfOrderQueue, lMemoryB);
+      lKernelEvent = lKernel.enqueue(lOutOfOrderQueue, lUploadA, lUploadB);
+      ClearCLEvent lBarrier = lOutOfOrderQueue.enqueueBarrier();
+      lBufferC.writeTo(lOutOfOrderQueue,
+                       lMemoryC,
+                       0,
+                       cFloatArrayLength,
+                       true);
+
+      assertTrue(lBarrier.isFinished());
+      assertEquals(3 * 1000 + 3,
+                   lMemoryC.getFloatAligned(1000),
+                   0.01);
+
+      lUploadA.close();
+      lUploadB.close();
+      lKernelEvent.close();
+      lBarrier.close();
+      lOutOfOrderQueue.close();
+
+      lMemoryA.free();
+      lMemoryB.free();
+      lMemoryC.free();
+    }
+  }
+
+}
@@ -1,8 +1,11 @@
 package clearcl.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import clearcl.ClearCL;
+import clearcl.ClearCLBuffer;
+import clearcl.ClearCLContext;
 import clearcl.ClearCLDevice;
 import clearcl.ClearCLHostImageBuffer;
 import clearcl.backend.jocl.ClearCLBackendJOCL;
@@ -44,4 +47,43 @@ public class ClearCLHostImageTests
     }
   }
 
+  /**
+   * Pinned host image tests
+   */
+  @Test
+  public void testPinned()
+  {
+    ClearCLBackendJOCL lClearCLJOCLBackend = new ClearCLBackendJOCL();
+
+    try (ClearCL lClearCL = new ClearCL(lClearCLJOCLBackend))
+    {
+      ClearCLDevice lBestGPUDevice = lClearCL.getBestGPUDevice();
+      ClearCLContext lContext = lBestGPUDevice.createContext();
+
+      ClearCLBuffer lBuffer = lContext.createBuffer(NativeTypeEnum.Float,
+                                                    1000);
+
+      ClearCLHostImageBuffer lHostImage =
+                                        ClearCLHostImageBuffer.allocatePinnedSameAs(lBuffer);
+      assertTrue(lHostImage.isPinned());
+      assertEquals(1000 * 4, lHostImage.getSizeInBytes());
+
+      for (int i = 0; i < 1000; i++)
+        lHostImage.getContiguousMemory().setFloatAligned(i, i);
+      lHostImage.copyTo(lBuffer, true);
+
+      ClearCLHostImageBuffer lOtherHostImage =
+                                             ClearCLHostImageBuffer.allocatePinnedSameAs(lBuffer);
+      lBuffer.writeTo(lOtherHostImage.getContiguousMemory(), true);
+      assertEquals(999,
+                   lOtherHostImage.getContiguousMemory()
+                                  .getFloatAligned(999),
+                   0);
+
+      lOtherHostImage.close();
+      lHostImage.close();
+      lBuffer.close();
+    }
+  }
+
 }
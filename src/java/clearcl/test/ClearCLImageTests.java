@@ -3,6 +3,7 @@ package clearcl.test;
 import static org.junit.Assert.assertEquals;
 
 import clearcl.ClearCL;
+import clearcl.ClearCLBuffer;
 import clearcl.ClearCLContext;
 import clearcl.ClearCLDevice;
 import clearcl.ClearCLImage;
@@ -15,6 +16,8 @@ import clearcl.enums.ImageChannelDataType;
 import clearcl.enums.ImageChannelOrder;
 import clearcl.enums.KernelAccessType;
 import clearcl.util.Region3;
+import coremem.ContiguousMemoryInterface;
+import coremem.enums.NativeTypeEnum;
 import coremem.fragmented.FragmentedMemory;
 import coremem.offheap.OffHeapMemory;
 
@@ -87,6 +90,7 @@ public class ClearCLImageTests
                                         lClearClDevice.createContext();
 
           testReadFromFragmentedMemory(lContext);
+          testMap(lContext);
 
         }
 
@@ -131,6 +135,67 @@ public class ClearCLImageTests
                    (double) lMemory2.getFloatAligned(i),
                    0.01);
 
+    // non-contiguous planes go through staging buffers, both ways:
+    FragmentedMemory lPlanes = new FragmentedMemory();
+    FragmentedMemory lPlanes2 = new FragmentedMemory();
+    for (int z = 0; z < 10; z++)
+    {
+      OffHeapMemory lPlane = OffHeapMemory.allocateFloats(10 * 10);
+      for (int i = 0; i < 10 * 10; i++)
+        lPlane.setFloatAligned(i, -(z * 100 + i));
+      lPlanes.add(lPlane);
+      lPlanes2.add(OffHeapMemory.allocateFloats(10 * 10));
+    }
+
+    lImage.readFrom(lPlanes, true);
+    lImage.writeTo(lPlanes2, true);
+
+    for (int z = 0; z < 10; z++)
+      for (int i = 0; i < 10 * 10; i++)
+        assertEquals(-(z * 100 + i),
+                     lPlanes2.get(z).getFloatAligned(i),
+                     0.01);
+
+  }
+
+  private void testMap(final ClearCLContext lContext)
+  {
+    final ClearCLImage lImage =
+                              lContext.createImage(HostAccessType.ReadWrite,
+                                                   KernelAccessType.ReadWrite,
+                                                   ImageChannelOrder.Intensity,
+                                                   ImageChannelDataType.Float,
+                                                   10,
+                                                   10,
+                                                   10);
+
+    long[] lPitches = new long[2];
+    ContiguousMemoryInterface lMappedMemory =
+                                            lImage.map(HostAccessType.WriteOnly,
+                                                       lPitches);
+    for (int z = 0; z < 10; z++)
+      for (int y = 0; y < 10; y++)
+        for (int x = 0; x < 10; x++)
+          lMappedMemory.setFloatAligned((z * lPitches[1] + y * lPitches[0])
+                                        / 4 + x, x + 10 * y + 100 * z);
+    lImage.unmap(lMappedMemory, true);
+
+    final ClearCLBuffer lBuffer =
+                                lContext.createBuffer(HostAccessType.ReadWrite,
+                                                      KernelAccessType.ReadWrite,
+                                                      NativeTypeEnum.Float,
+                                                      10 * 10 * 10);
+    lImage.copyTo(lBuffer, true);
+
+    lMappedMemory = lBuffer.map(HostAccessType.ReadOnly);
+    for (int i = 0; i < 10 * 10 * 10; i++)
+      assertEquals((double) i,
+                   (double) lMappedMemory.getFloatAligned(i),
+                   0.01);
+    lBuffer.unmap(lMappedMemory, true);
+
+    lBuffer.close();
+    lImage.close();
   }
 
 }
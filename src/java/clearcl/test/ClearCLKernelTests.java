@@ -1,26 +1,38 @@
 package clearcl.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+
 import clearcl.ClearCL;
 import clearcl.ClearCLBuffer;
 import clearcl.ClearCLContext;
 import clearcl.ClearCLDevice;
 import clearcl.ClearCLKernel;
 import clearcl.ClearCLProgram;
+import clearcl.ClearCLQueue;
 import clearcl.backend.ClearCLBackendInterface;
+import clearcl.backend.ClearCLBackends;
 import clearcl.backend.javacl.ClearCLBackendJavaCL;
 import clearcl.backend.jocl.ClearCLBackendJOCL;
 import clearcl.enums.BuildStatus;
 import clearcl.enums.HostAccessType;
 import clearcl.enums.KernelAccessType;
 import clearcl.exceptions.ClearCLArgumentMissingException;
+import clearcl.metrics.ClearCLMetrics;
+import clearcl.metrics.Counter;
+import clearcl.ocllib.OCLlib;
 import clearcl.selector.BadDeviceSelector;
 import clearcl.selector.DeviceTypeSelector;
 import clearcl.selector.GlobalMemorySelector;
+import clearcl.util.ProgramBinaryCache;
 import coremem.enums.NativeTypeEnum;
+import coremem.offheap.OffHeapMemory;
 
 import org.junit.Test;
 
@@ -89,6 +101,19 @@ public class ClearCLKernelTests
       assertEquals(lBuildStatus, BuildStatus.Success);
       // assertTrue(lProgram.getBuildLog().isEmpty());
 
+      // building again reuses the already built program:
+      assertEquals(BuildStatus.Success, lProgram.build());
+
+      // an identical program in the same context shares the built program:
+      ClearCLProgram lSameProgram =
+                                  lContext.createProgram(this.getClass(),
+                                                         "test.cl");
+      lSameProgram.addDefine("CONSTANT", "10");
+      lSameProgram.addBuildOptionAllMathOpt();
+      assertEquals(BuildStatus.Success, lSameProgram.build());
+      assertEquals(1, lContext.getNumberOfSharedPrograms());
+      lSameProgram.close();
+
       ClearCLBuffer lBufferA =
                              lContext.createBuffer(HostAccessType.WriteOnly,
                                                    KernelAccessType.ReadOnly,
@@ -142,6 +167,13 @@ public class ClearCLKernelTests
       lKernel.setArgument("c", lBufferC);
       lKernel.run();
 
+      // primitive arguments are passed without boxing, and read back boxed:
+      lKernel.setArgument("p", 12f);
+      assertEquals(12f, (Float) lKernel.getArgument("p"), 0);
+      lKernel.setArgument(0, Float.valueOf(13f));
+      assertEquals(13f, (Float) lKernel.getArgument(0), 0);
+      lKernel.run();
+
       // what if a argument is missing but there is a default value defined?
       try
       {
@@ -196,4 +228,287 @@ public class ClearCLKernelTests
     }
   }
 
+  /**
+   * Tests that kernel dispatch does not allocate on the Java heap once warmed
+   * up, even when scalar and buffer arguments change between dispatches, with
+   * both JOCL and JavaCL backends.
+   * 
+   * @throws Exception
+   *           NA
+   */
+  @Test
+  public void testAllocationFreeDispatch() throws Exception
+  {
+    testAllocationFreeDispatch(new ClearCLBackendJOCL());
+    testAllocationFreeDispatch(new ClearCLBackendJavaCL());
+  }
+
+  private void testAllocationFreeDispatch(ClearCLBackendInterface pClearCLBackendInterface) throws Exception
+  {
+    try (ClearCL lClearCL = new ClearCL(pClearCLBackendInterface))
+    {
+      ClearCLContext lContext = lClearCL.getBestGPUDevice()
+                                        .createContext();
+
+      ClearCLProgram lProgram =
+                              lContext.createProgram("__kernel void noop(__global float* a, float p) \n"
+                                                     + "{ \n"
+                                                     + "  a[get_global_id(0)] = p; \n"
+                                                     + "} \n");
+      assertEquals(BuildStatus.Success, lProgram.buildAndLog());
+
+      ClearCLBuffer[] lBuffers = new ClearCLBuffer[]
+      { createOutputBuffer(lContext, NativeTypeEnum.Float, 1),
+        createOutputBuffer(lContext, NativeTypeEnum.Float, 1) };
+
+      ClearCLKernel lKernel = lProgram.createKernel("noop");
+      lKernel.setGlobalSizes(1);
+
+      ClearCLQueue lQueue = lContext.getDefaultQueue();
+      com.sun.management.ThreadMXBean lThreadMXBean =
+                                                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+      long lThreadId = Thread.currentThread().getId();
+
+      // warmup, so that lazily created state and JIT compilation are done:
+      for (int i = 0; i < 100; i++)
+      {
+        dispatch(lKernel, lQueue, lBuffers, 1000);
+        lQueue.waitToFinish();
+      }
+
+      // only the dispatches are measured, not the waits between batches:
+      long lAllocatedBytes = 0;
+      for (int i = 0; i < 10; i++)
+      {
+        long lBytesStart = lThreadMXBean.getThreadAllocatedBytes(lThreadId);
+        dispatch(lKernel, lQueue, lBuffers, 1000);
+        lAllocatedBytes += lThreadMXBean.getThreadAllocatedBytes(lThreadId)
+                           - lBytesStart;
+        lQueue.waitToFinish();
+      }
+
+      assertEquals(0, lAllocatedBytes);
+
+      // the last two dispatches wrote their scalar into alternating buffers:
+      OffHeapMemory lValue = OffHeapMemory.allocateFloats(1);
+      lBuffers[0].writeTo(lValue, true);
+      assertEquals(998f, lValue.getFloatAligned(0), 0);
+      lBuffers[1].writeTo(lValue, true);
+      assertEquals(999f, lValue.getFloatAligned(0), 0);
+      lValue.free();
+
+      lKernel.close();
+      lBuffers[0].close();
+      lBuffers[1].close();
+      lProgram.close();
+      lContext.close();
+    }
+  }
+
+  private static void dispatch(ClearCLKernel pKernel,
+                               ClearCLQueue pQueue,
+                               ClearCLBuffer[] pBuffers,
+                               int pNumberOfRuns)
+  {
+    for (int i = 0; i < pNumberOfRuns; i++)
+    {
+      pKernel.setArgument(0, pBuffers[i % pBuffers.length]);
+      pKernel.setArgument(1, (float) i);
+      pKernel.run(pQueue, false);
+    }
+  }
+
+  /**
+   * Tests that vector, long and double arguments reach the kernel unchanged,
+   * with both JOCL and JavaCL backends.
+   * 
+   * @throws Exception
+   *           NA
+   */
+  @Test
+  public void testPrimitiveArguments() throws Exception
+  {
+    testPrimitiveArguments(new ClearCLBackendJOCL());
+    testPrimitiveArguments(new ClearCLBackendJavaCL());
+  }
+
+  private void testPrimitiveArguments(ClearCLBackendInterface pClearCLBackendInterface) throws Exception
+  {
+    try (ClearCL lClearCL = new ClearCL(pClearCLBackendInterface))
+    {
+      ClearCLContext lContext = lClearCL.getBestGPUDevice()
+                                        .createContext();
+
+      ClearCLProgram lProgram =
+                              lContext.createProgram("#pragma OPENCL EXTENSION cl_khr_fp64 : enable \n"
+                                                     + "__kernel void arguments(__global int* ai, __global float* af, \n"
+                                                     + "                        __global long* al, __global double* ad, \n"
+                                                     + "                        int4 vi, float4 vf, long l, double d) \n"
+                                                     + "{ \n"
+                                                     + "  vstore4(vi, 0, ai); \n"
+                                                     + "  vstore4(vf, 0, af); \n"
+                                                     + "  al[0] = l; \n"
+                                                     + "  ad[0] = d; \n"
+                                                     + "} \n");
+      assertEquals(BuildStatus.Success, lProgram.buildAndLog());
+
+      ClearCLBuffer lIntBuffer = createOutputBuffer(lContext,
+                                                    NativeTypeEnum.Int,
+                                                    4);
+      ClearCLBuffer lFloatBuffer = createOutputBuffer(lContext,
+                                                      NativeTypeEnum.Float,
+                                                      4);
+      ClearCLBuffer lLongBuffer = createOutputBuffer(lContext,
+                                                     NativeTypeEnum.Long,
+                                                     1);
+      ClearCLBuffer lDoubleBuffer = createOutputBuffer(lContext,
+                                                       NativeTypeEnum.Double,
+                                                       1);
+
+      ClearCLKernel lKernel = lProgram.createKernel("arguments");
+      lKernel.setGlobalSizes(1);
+      lKernel.setArgument(0, lIntBuffer);
+      lKernel.setArgument(1, lFloatBuffer);
+      lKernel.setArgument(2, lLongBuffer);
+      lKernel.setArgument(3, lDoubleBuffer);
+      lKernel.setArgument(4, 1, -2, Integer.MAX_VALUE, Integer.MIN_VALUE);
+      lKernel.setArgument(5, 0.5f, -1.25f, 3e7f, Float.MIN_VALUE);
+      lKernel.setArgument(6, 0x0123456789ABCDEFL);
+      lKernel.setArgument(7, Math.PI);
+      lKernel.run(true);
+
+      OffHeapMemory lInts = OffHeapMemory.allocateInts(4);
+      OffHeapMemory lFloats = OffHeapMemory.allocateFloats(4);
+      OffHeapMemory lLongs = OffHeapMemory.allocateLongs(1);
+      OffHeapMemory lDoubles = OffHeapMemory.allocateDoubles(1);
+      lIntBuffer.writeTo(lInts, true);
+      lFloatBuffer.writeTo(lFloats, true);
+      lLongBuffer.writeTo(lLongs, true);
+      lDoubleBuffer.writeTo(lDoubles, true);
+
+      assertEquals(1, lInts.getIntAligned(0));
+      assertEquals(-2, lInts.getIntAligned(1));
+      assertEquals(Integer.MAX_VALUE, lInts.getIntAligned(2));
+      assertEquals(Integer.MIN_VALUE, lInts.getIntAligned(3));
+      assertEquals(0.5f, lFloats.getFloatAligned(0), 0);
+      assertEquals(-1.25f, lFloats.getFloatAligned(1), 0);
+      assertEquals(3e7f, lFloats.getFloatAligned(2), 0);
+      assertEquals(Float.MIN_VALUE, lFloats.getFloatAligned(3), 0);
+      assertEquals(0x0123456789ABCDEFL, lLongs.getLongAligned(0));
+      assertEquals(Math.PI, lDoubles.getDoubleAligned(0), 0);
+
+      lInts.free();
+      lFloats.free();
+      lLongs.free();
+      lDoubles.free();
+      lKernel.close();
+      lIntBuffer.close();
+      lFloatBuffer.close();
+      lLongBuffer.close();
+      lDoubleBuffer.close();
+      lProgram.close();
+      lContext.close();
+    }
+  }
+
+  private static ClearCLBuffer createOutputBuffer(ClearCLContext pContext,
+                                                  NativeTypeEnum pNativeType,
+                                                  long pLength)
+  {
+    return pContext.createBuffer(HostAccessType.ReadOnly,
+                                 KernelAccessType.WriteOnly,
+                                 pNativeType,
+                                 pLength);
+  }
+
+  /**
+   * Tests that a program built in a fresh context, which has no shared
+   * programs yet, is loaded from the on-disk binary cache.
+   * 
+   * @throws Exception
+   *           NA
+   */
+  @Test
+  public void testProgramBinaryCache() throws Exception
+  {
+    File lFolder = Files.createTempDirectory("clearcl-binaries")
+                        .toFile();
+    boolean lEnabled = ProgramBinaryCache.sEnabled;
+    ProgramBinaryCache.sEnabled = true;
+    ProgramBinaryCache.setFolder(lFolder);
+
+    try (ClearCL lClearCL =
+                          new ClearCL(ClearCLBackends.getBestBackend()))
+    {
+      ClearCLDevice lDevice = lClearCL.getBestGPUDevice();
+      Counter lBinaryCounter =
+                             ClearCLMetrics.getCounter("program.cache.binary");
+      Counter lMissCounter =
+                           ClearCLMetrics.getCounter("program.cache.miss");
+
+      ClearCLContext lContextA = lDevice.createContext();
+      ClearCLProgram lProgramA =
+                               lContextA.createProgram(OCLlib.class,
+                                                       "conversion/conversion.cl");
+      lProgramA.addDefine("UINT16");
+      long lMisses = lMissCounter.get();
+      assertEquals(BuildStatus.Success, lProgramA.buildAndLog());
+      assertEquals(lMisses + 1, lMissCounter.get());
+      assertEquals(1, lFolder.listFiles().length);
+      lProgramA.close();
+      lContextA.close();
+
+      ClearCLContext lContextB = lDevice.createContext();
+      assertEquals(0, lContextB.getNumberOfSharedPrograms());
+      ClearCLProgram lProgramB =
+                               lContextB.createProgram(OCLlib.class,
+                                                       "conversion/conversion.cl");
+      lProgramB.addDefine("UINT16");
+      long lHits = lBinaryCounter.get();
+      assertEquals(BuildStatus.Success, lProgramB.buildAndLog());
+      assertEquals(lHits + 1, lBinaryCounter.get());
+      lProgramB.close();
+      lContextB.close();
+    }
+    finally
+    {
+      ProgramBinaryCache.clear();
+      ProgramBinaryCache.setFolder(null);
+      ProgramBinaryCache.sEnabled = lEnabled;
+      lFolder.delete();
+    }
+  }
+
+  /**
+   * Tests that a cached binary that cannot be read is a cache miss, counted as
+   * a cache error.
+   * 
+   * @throws Exception
+   *           NA
+   */
+  @Test
+  public void testProgramBinaryCacheReadError() throws Exception
+  {
+    File lFolder = Files.createTempDirectory("clearcl-binaries")
+                        .toFile();
+    ProgramBinaryCache.setFolder(lFolder);
+    try
+    {
+      // a folder in place of the binary file cannot be read:
+      assertTrue(new File(lFolder, "unreadable.bin").mkdir());
+
+      Counter lErrorCounter =
+                            ClearCLMetrics.getCounter("program.cache.error");
+      long lErrors = lErrorCounter.get();
+      assertNull(ProgramBinaryCache.get("unreadable"));
+      assertEquals(lErrors + 1, lErrorCounter.get());
+    }
+    finally
+    {
+      ProgramBinaryCache.clear();
+      ProgramBinaryCache.setFolder(null);
+      lFolder.delete();
+    }
+  }
+
 }
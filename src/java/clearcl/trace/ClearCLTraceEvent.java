@@ -0,0 +1,171 @@
+package clearcl.trace;
+
+import java.util.Arrays;
+
+/**
+ * A command recorded by a trace recorder: kernel execution or memory transfer,
+ * with the host time at which it was enqueued and the time at which it
+ * completed. For profiling queues the device start and end times are also
+ * known and are expressed in host time.
+ *
+ * @author royer
+ */
+public class ClearCLTraceEvent
+{
+  private final String mQueueName;
+  private final String mCommandName;
+  private final String mCategory;
+  private final long mSizeInBytes;
+  private final long[] mGlobalSizes;
+  private final long mEnqueueNanos;
+  private final long mStartNanos;
+  private final long mEndNanos;
+  private final int mStatus;
+
+  /**
+   * Instantiates a trace event.
+   *
+   * @param pQueueName
+   *          name of the queue on which the command was enqueued
+   * @param pCommandName
+   *          command name: kernel name or transfer type
+   * @param pCategory
+   *          command category, e.g. 'kernel', 'deviceToHost', 'fill'
+   * @param pSizeInBytes
+   *          number of bytes transferred, or zero
+   * @param pGlobalSizes
+   *          kernel global range, or null
+   * @param pEnqueueNanos
+   *          host time at enqueue (System.nanoTime)
+   * @param pStartNanos
+   *          host time at which the command started
+   * @param pEndNanos
+   *          host time at which the command ended
+   * @param pStatus
+   *          OpenCL completion status, negative for abnormal termination
+   */
+  public ClearCLTraceEvent(String pQueueName,
+                           String pCommandName,
+                           String pCategory,
+                           long pSizeInBytes,
+                           long[] pGlobalSizes,
+                           long pEnqueueNanos,
+                           long pStartNanos,
+                           long pEndNanos,
+                           int pStatus)
+  {
+    mQueueName = pQueueName;
+    mCommandName = pCommandName;
+    mCategory = pCategory;
+    mSizeInBytes = pSizeInBytes;
+    mGlobalSizes = pGlobalSizes;
+    mEnqueueNanos = pEnqueueNanos;
+    mStartNanos = pStartNanos;
+    mEndNanos = pEndNanos;
+    mStatus = pStatus;
+  }
+
+  /**
+   * Returns the name of the queue on which the command was enqueued.
+   *
+   * @return queue name
+   */
+  public String getQueueName()
+  {
+    return mQueueName;
+  }
+
+  /**
+   * Returns the command name: kernel name or transfer type.
+   *
+   * @return command name
+   */
+  public String getCommandName()
+  {
+    return mCommandName;
+  }
+
+  /**
+   * Returns the command category.
+   *
+   * @return category
+   */
+  public String getCategory()
+  {
+    return mCategory;
+  }
+
+  /**
+   * Returns the number of bytes transferred, or zero.
+   *
+   * @return size in bytes
+   */
+  public long getSizeInBytes()
+  {
+    return mSizeInBytes;
+  }
+
+  /**
+   * Returns the kernel global range, or null for transfers.
+   *
+   * @return global sizes
+   */
+  public long[] getGlobalSizes()
+  {
+    return mGlobalSizes;
+  }
+
+  /**
+   * Returns the host time at which the command was enqueued.
+   *
+   * @return enqueue time in nanoseconds (System.nanoTime)
+   */
+  public long getEnqueueNanos()
+  {
+    return mEnqueueNanos;
+  }
+
+  /**
+   * Returns the host time at which the command started.
+   *
+   * @return start time in nanoseconds (System.nanoTime)
+   */
+  public long getStartNanos()
+  {
+    return mStartNanos;
+  }
+
+  /**
+   * Returns the host time at which the command ended.
+   *
+   * @return end time in nanoseconds (System.nanoTime)
+   */
+  public long getEndNanos()
+  {
+    return mEndNanos;
+  }
+
+  /**
+   * Returns the OpenCL completion status.
+   *
+   * @return status
+   */
+  public int getStatus()
+  {
+    return mStatus;
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format("ClearCLTraceEvent [queue=%s, command=%s, category=%s, bytes=%d, global=%s, start=%d, end=%d]",
+                         mQueueName,
+                         mCommandName,
+                         mCategory,
+                         mSizeInBytes,
+                         Arrays.toString(mGlobalSizes),
+                         mStartNanos,
+                         mEndNanos);
+  }
+
+}
@@ -0,0 +1,217 @@
+package clearcl.trace;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Records a timeline of the commands enqueued on one or more queues into a
+ * bounded ring buffer: once full, the oldest events are overwritten. Recording
+ * is lock-free and memory is bounded, the recorder can therefore stay attached
+ * to queues in production. The timeline can be exported in the Chrome trace
+ * event format (chrome://tracing, Perfetto), with one track per queue.
+ *
+ * Attach a recorder to a queue with
+ * {@link clearcl.ClearCLQueue#setTraceRecorder(ClearCLTraceRecorder)}.
+ *
+ * @author royer
+ */
+public class ClearCLTraceRecorder
+{
+  private final AtomicReferenceArray<ClearCLTraceEvent> mRingBuffer;
+  private final AtomicLong mNumberOfRecordedEvents = new AtomicLong();
+
+  /**
+   * Instantiates a trace recorder that keeps up to a given number of the most
+   * recent events.
+   *
+   * @param pCapacity
+   *          maximal number of events kept
+   */
+  public ClearCLTraceRecorder(int pCapacity)
+  {
+    if (pCapacity <= 0)
+      throw new IllegalArgumentException("Capacity must be strictly positive");
+    mRingBuffer = new AtomicReferenceArray<>(pCapacity);
+  }
+
+  /**
+   * Returns the maximal number of events kept by this recorder.
+   *
+   * @return capacity
+   */
+  public int getCapacity()
+  {
+    return mRingBuffer.length();
+  }
+
+  /**
+   * Returns the total number of events recorded since creation or last clear,
+   * including those that have been overwritten.
+   *
+   * @return number of recorded events
+   */
+  public long getNumberOfRecordedEvents()
+  {
+    return mNumberOfRecordedEvents.get();
+  }
+
+  /**
+   * Records an event, overwriting the oldest event if full.
+   *
+   * @param pTraceEvent
+   *          trace event
+   */
+  public void record(ClearCLTraceEvent pTraceEvent)
+  {
+    long lIndex = mNumberOfRecordedEvents.getAndIncrement();
+    mRingBuffer.set((int) (lIndex % mRingBuffer.length()), pTraceEvent);
+  }
+
+  /**
+   * Returns the events currently kept, sorted by start time.
+   *
+   * @return events
+   */
+  public List<ClearCLTraceEvent> getEvents()
+  {
+    ArrayList<ClearCLTraceEvent> lEvents = new ArrayList<>();
+    for (int i = 0; i < mRingBuffer.length(); i++)
+    {
+      ClearCLTraceEvent lTraceEvent = mRingBuffer.get(i);
+      if (lTraceEvent != null)
+        lEvents.add(lTraceEvent);
+    }
+    lEvents.sort(Comparator.comparingLong(ClearCLTraceEvent::getStartNanos));
+    return lEvents;
+  }
+
+  /**
+   * Clears all events.
+   */
+  public void clear()
+  {
+    for (int i = 0; i < mRingBuffer.length(); i++)
+      mRingBuffer.set(i, null);
+    mNumberOfRecordedEvents.set(0);
+  }
+
+  /**
+   * Writes the events currently kept to a file in Chrome trace event format.
+   *
+   * @param pFile
+   *          file
+   * @throws IOException
+   *           thrown if file cannot be written
+   */
+  public void writeChromeTrace(File pFile) throws IOException
+  {
+    try (Writer lWriter =
+                        new OutputStreamWriter(new FileOutputStream(pFile),
+                                               StandardCharsets.UTF_8))
+    {
+      writeChromeTrace(lWriter);
+    }
+  }
+
+  /**
+   * Writes the events currently kept in Chrome trace event format. Each
+   * command is a complete ('X') event spanning from start to end, on a track
+   * named after its queue. Timestamps are in microseconds relative to the
+   * earliest enqueue.
+   *
+   * @param pWriter
+   *          writer
+   * @throws IOException
+   *           thrown if writing fails
+   */
+  public void writeChromeTrace(Writer pWriter) throws IOException
+  {
+    List<ClearCLTraceEvent> lEvents = getEvents();
+
+    long lOriginNanos = Long.MAX_VALUE;
+    Map<String, Integer> lQueueToTrackMap = new LinkedHashMap<>();
+    for (ClearCLTraceEvent lTraceEvent : lEvents)
+    {
+      lOriginNanos = Math.min(lOriginNanos, lTraceEvent.getEnqueueNanos());
+      lQueueToTrackMap.putIfAbsent(lTraceEvent.getQueueName(),
+                                   lQueueToTrackMap.size());
+    }
+
+    pWriter.write("{\"traceEvents\":[\n");
+    boolean lFirst = true;
+    for (Map.Entry<String, Integer> lEntry : lQueueToTrackMap.entrySet())
+    {
+      lFirst = writeSeparator(pWriter, lFirst);
+      pWriter.write(String.format(Locale.ROOT,
+                                  "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":0,\"tid\":%d,\"args\":{\"name\":\"%s\"}}",
+                                  lEntry.getValue(),
+                                  escape(lEntry.getKey())));
+    }
+
+    for (ClearCLTraceEvent lTraceEvent : lEvents)
+    {
+      lFirst = writeSeparator(pWriter, lFirst);
+      StringBuilder lArgs = new StringBuilder();
+      lArgs.append(String.format(Locale.ROOT,
+                                 "\"queued_us\":%.3f",
+                                 1e-3 * (lTraceEvent.getStartNanos()
+                                         - lTraceEvent.getEnqueueNanos())));
+      if (lTraceEvent.getSizeInBytes() > 0)
+        lArgs.append(String.format(Locale.ROOT,
+                                   ",\"bytes\":%d",
+                                   lTraceEvent.getSizeInBytes()));
+      if (lTraceEvent.getGlobalSizes() != null)
+      {
+        lArgs.append(",\"global\":[");
+        long[] lGlobalSizes = lTraceEvent.getGlobalSizes();
+        for (int i = 0; i < lGlobalSizes.length; i++)
+          lArgs.append(i == 0 ? "" : ",").append(lGlobalSizes[i]);
+        lArgs.append(']');
+      }
+      if (lTraceEvent.getStatus() < 0)
+        lArgs.append(String.format(Locale.ROOT,
+                                   ",\"status\":%d",
+                                   lTraceEvent.getStatus()));
+
+      pWriter.write(String.format(Locale.ROOT,
+                                  "{\"name\":\"%s\",\"cat\":\"%s\",\"ph\":\"X\",\"pid\":0,\"tid\":%d,\"ts\":%.3f,\"dur\":%.3f,\"args\":{%s}}",
+                                  escape(lTraceEvent.getCommandName()),
+                                  escape(lTraceEvent.getCategory()),
+                                  lQueueToTrackMap.get(lTraceEvent.getQueueName()),
+                                  1e-3 * (lTraceEvent.getStartNanos()
+                                          - lOriginNanos),
+                                  1e-3 * Math.max(0,
+                                                  lTraceEvent.getEndNanos()
+                                                     - lTraceEvent.getStartNanos()),
+                                  lArgs));
+    }
+    pWriter.write("\n],\"displayTimeUnit\":\"ns\"}\n");
+    pWriter.flush();
+  }
+
+  private static boolean writeSeparator(Writer pWriter,
+                                        boolean pFirst) throws IOException
+  {
+    if (!pFirst)
+      pWriter.write(",\n");
+    return false;
+  }
+
+  private static String escape(String pString)
+  {
+    return pString.replace("\\", "\\\\").replace("\"", "\\\"");
+  }
+
+}
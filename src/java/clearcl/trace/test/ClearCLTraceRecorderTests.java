@@ -0,0 +1,64 @@
+package clearcl.trace.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import clearcl.trace.ClearCLTraceEvent;
+import clearcl.trace.ClearCLTraceRecorder;
+
+import org.junit.Test;
+
+/**
+ * Trace recorder tests
+ *
+ * @author royer
+ */
+public class ClearCLTraceRecorderTests
+{
+
+  /**
+   * Tests ring buffer bounds and Chrome trace export
+   *
+   * @throws Exception
+   *           NA
+   */
+  @Test
+  public void testRingBufferAndExport() throws Exception
+  {
+    ClearCLTraceRecorder lTraceRecorder = new ClearCLTraceRecorder(8);
+
+    for (int i = 0; i < 20; i++)
+      lTraceRecorder.record(new ClearCLTraceEvent("queue0",
+                                                  "kernel" + i,
+                                                  "kernel",
+                                                  0,
+                                                  new long[]
+                                                  { 512, 512 },
+                                                  1000 * i,
+                                                  1000 * i + 100,
+                                                  1000 * i + 600,
+                                                  0));
+
+    assertEquals(20, lTraceRecorder.getNumberOfRecordedEvents());
+
+    List<ClearCLTraceEvent> lEvents = lTraceRecorder.getEvents();
+    assertEquals(8, lEvents.size());
+    assertEquals("kernel12", lEvents.get(0).getCommandName());
+    assertEquals("kernel19", lEvents.get(7).getCommandName());
+
+    StringWriter lStringWriter = new StringWriter();
+    lTraceRecorder.writeChromeTrace(lStringWriter);
+    String lTrace = lStringWriter.toString();
+
+    assertTrue(lTrace.startsWith("{\"traceEvents\":["));
+    assertTrue(lTrace.contains("\"name\":\"kernel12\",\"cat\":\"kernel\",\"ph\":\"X\",\"pid\":0,\"tid\":0,\"ts\":0.100,\"dur\":0.500"));
+    assertTrue(lTrace.contains("\"global\":[512,512]"));
+
+    lTraceRecorder.clear();
+    assertEquals(0, lTraceRecorder.getEvents().size());
+  }
+
+}
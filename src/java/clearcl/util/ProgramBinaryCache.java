@@ -0,0 +1,211 @@
+package clearcl.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import clearcl.ClearCLDevice;
+import clearcl.metrics.ClearCLMetrics;
+
+/**
+ * This utility class caches compiled program binaries on disk, by default in
+ * the ClearCL folder (~/.clearcl/binaries). Binaries are keyed by a hash of the
+ * complete source code, the build options, and the device name, OpenCL
+ * version and driver version. The cache is opt-in: it is disabled unless
+ * {@link #sEnabled} is set, or the system property 'clearcl.binarycache' is
+ * set to true. The folder can be changed, e.g. to a temporary folder for
+ * tests. Failing to read or write a cached binary is not an error: reads are
+ * treated as cache misses, and failures are counted in the
+ * 'program.cache.error' metric.
+ *
+ * @author royer
+ */
+public class ProgramBinaryCache
+{
+  /**
+   * This flag can be set statically to enable/disable the program binary
+   * cache. It is disabled by default.
+   */
+  public static volatile boolean sEnabled =
+                                         Boolean.getBoolean("clearcl.binarycache");
+
+  private static volatile File sFolder;
+
+  private static final String cFolderName = "binaries";
+  private static final String cExtension = ".bin";
+
+  /**
+   * Returns the cache key for a given device, source code and build options.
+   * 
+   * @param pDevice
+   *          device
+   * @param pSourceCode
+   *          complete source code (with defines, includes and preamble)
+   * @param pOptions
+   *          build options
+   * @return cache key
+   */
+  public static String getKey(ClearCLDevice pDevice,
+                              String pSourceCode,
+                              String pOptions)
+  {
+    try
+    {
+      MessageDigest lMessageDigest =
+                                   MessageDigest.getInstance("SHA-256");
+      update(lMessageDigest, pDevice.getName());
+      update(lMessageDigest,
+             pDevice.getBackend()
+                    .getDeviceVersion(pDevice.getPeerPointer()));
+      update(lMessageDigest, pDevice.getDriverVersion());
+      update(lMessageDigest, pOptions);
+      update(lMessageDigest, pSourceCode);
+
+      StringBuilder lStringBuilder = new StringBuilder();
+      for (byte lByte : lMessageDigest.digest())
+        lStringBuilder.append(String.format("%02x", lByte));
+      return lStringBuilder.toString();
+    }
+    catch (NoSuchAlgorithmException e)
+    {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static void update(MessageDigest pMessageDigest,
+                             String pString)
+  {
+    byte[] lBytes = pString == null ? new byte[0]
+                                    : pString.getBytes(StandardCharsets.UTF_8);
+    // the length is hashed too so that fields cannot shift into each other:
+    pMessageDigest.update(String.valueOf(lBytes.length)
+                                .getBytes(StandardCharsets.UTF_8));
+    pMessageDigest.update((byte) ':');
+    pMessageDigest.update(lBytes);
+  }
+
+  /**
+   * Returns the cached binary for a given key, or null if not cached or if
+   * the cached file cannot be read.
+   * 
+   * @param pKey
+   *          cache key
+   * @return binary or null
+   */
+  public static byte[] get(String pKey)
+  {
+    File lFile = getFile(pKey);
+    if (!lFile.exists())
+      return null;
+
+    try
+    {
+      return Files.readAllBytes(lFile.toPath());
+    }
+    catch (IOException e)
+    {
+      countError();
+      return null;
+    }
+  }
+
+  /**
+   * Stores a binary for a given key. The file is written atomically so that
+   * concurrent processes never see partially written binaries.
+   * 
+   * @param pKey
+   *          cache key
+   * @param pBinary
+   *          program binary
+   */
+  public static void put(String pKey, byte[] pBinary)
+  {
+    if (pBinary == null || pBinary.length == 0)
+      return;
+
+    File lFile = getFile(pKey);
+    try
+    {
+      File lTempFile = File.createTempFile(pKey,
+                                           ".tmp",
+                                           lFile.getParentFile());
+      Files.write(lTempFile.toPath(), pBinary);
+      Files.move(lTempFile.toPath(),
+                 lFile.toPath(),
+                 StandardCopyOption.REPLACE_EXISTING,
+                 StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException e)
+    {
+      countError();
+    }
+  }
+
+  /**
+   * Counts a failure to read or write a cached binary.
+   */
+  public static void countError()
+  {
+    if (ClearCLMetrics.sEnabled)
+      ClearCLMetrics.getCounter("program.cache.error").increment();
+  }
+
+  /**
+   * Removes the binary for a given key, typically because it could not be
+   * loaded anymore.
+   * 
+   * @param pKey
+   *          cache key
+   */
+  public static void remove(String pKey)
+  {
+    getFile(pKey).delete();
+  }
+
+  /**
+   * Removes all cached binaries.
+   */
+  public static void clear()
+  {
+    File[] lFiles = getFolder().listFiles();
+    if (lFiles != null)
+      for (File lFile : lFiles)
+        lFile.delete();
+  }
+
+  private static File getFile(String pKey)
+  {
+    return new File(getFolder(), pKey + cExtension);
+  }
+
+  /**
+   * Sets the folder in which binaries are cached, null restores the default
+   * folder (~/.clearcl/binaries).
+   * 
+   * @param pFolder
+   *          cache folder or null
+   */
+  public static void setFolder(File pFolder)
+  {
+    sFolder = pFolder;
+  }
+
+  /**
+   * Returns the folder in which binaries are cached.
+   * 
+   * @return cache folder
+   */
+  public static File getFolder()
+  {
+    File lFolder = sFolder;
+    if (lFolder == null)
+      lFolder = new File(ClearCLFolder.get(), cFolderName);
+    lFolder.mkdirs();
+    return lFolder;
+  }
+
+}
@@ -37,7 +37,7 @@ import clearcl.enums.MemAllocMode;
 import clearcl.exceptions.ClearCLUnsupportedException;
 import clearcl.interfaces.ClearCLImageInterface;
 import clearcl.ocllib.OCLlib;
-import clearcl.ops.math.MinMax;
+import clearcl.ops.math.Statistics;
 import clearcl.util.ElapsedTime;
 import clearcl.util.Region2;
 import clearcl.viewer.jfx.DirectWritableImage;
@@ -49,9 +49,13 @@ import coremem.enums.NativeTypeEnum;
  *
  * @author royer
  */
-public class ClearCLImagePanel extends BorderPane
+public class ClearCLImagePanel extends BorderPane implements
+                               AutoCloseable
 {
   private static final float cSmoothingFactor = 0.2f;
+  private static final int cNumberOfBins = 1024;
+  private static final double cLowPercentile = 0.001,
+      cHighPercentile = 0.999;
 
   private volatile DirectWritableImage mDirectWritableImage;
   private volatile ImageView mImageView;
@@ -61,7 +65,8 @@ public class ClearCLImagePanel extends BorderPane
   private volatile ClearCLHostImageBuffer mClearCLHostImage;
   private ClearCLProgram mProgramFloat, mProgramUint, mProgramInt;
   private ClearCLKernel mRenderKernel;
-  private MinMax mMinMax;
+  private Statistics mStatistics;
+  private Statistics.Result mLastStatistics;
 
   private ReentrantLock mLock = new ReentrantLock();
 
@@ -113,7 +118,7 @@ public class ClearCLImagePanel extends BorderPane
 
       mProgramFloat.addBuildOptionAllMathOpt();
       mProgramFloat.addDefine("FLOAT");
-      mProgramFloat.buildAndLog();
+      mProgramFloat.buildAndLogAsync();
 
       mProgramUint =
                    lContext.createProgram(OCLlib.class,
@@ -125,7 +130,7 @@ public class ClearCLImagePanel extends BorderPane
 
       mProgramUint.addBuildOptionAllMathOpt();
       mProgramUint.addDefine("UINT");
-      mProgramUint.buildAndLog();
+      mProgramUint.buildAndLogAsync();
 
       mProgramInt = lContext.createProgram(OCLlib.class,
                                            "render/img2D.cl",
@@ -136,14 +141,14 @@ public class ClearCLImagePanel extends BorderPane
 
       mProgramInt.addBuildOptionAllMathOpt();
       mProgramInt.addDefine("INT");
-      mProgramInt.buildAndLog();
+      mProgramInt.buildAndLogAsync();
 
       if (pClearCLImage.getDimension() == 1)
       {
         throw new ClearCLUnsupportedException("1D image visualizationnot supported");
       }
 
-      mMinMax = new MinMax(lContext.getDefaultQueue());
+      mStatistics = new Statistics(lContext.getDefaultQueue());
 
     }
     catch (IOException e)
@@ -255,7 +260,41 @@ public class ClearCLImagePanel extends BorderPane
       if (mClearCLHostImage != null)
         mClearCLHostImage.close();
       mClearCLHostImage =
-                        ClearCLHostImageBuffer.allocateSameAs(mRenderRGBBuffer);
+                        ClearCLHostImageBuffer.allocatePinnedSameAs(mRenderRGBBuffer);
+    }
+  }
+
+  /**
+   * Releases the buffers, programs and statistics op of this panel. The panel
+   * cannot display images anymore once closed.
+   */
+  @Override
+  public void close()
+  {
+    mLock.lock();
+    try
+    {
+      if (mRenderRGBBuffer != null)
+        mRenderRGBBuffer.close();
+      if (mClearCLHostImage != null)
+        mClearCLHostImage.close();
+      mRenderRGBBuffer = null;
+      mClearCLHostImage = null;
+
+      for (ClearCLProgram lProgram : new ClearCLProgram[]
+      { mProgramFloat, mProgramUint, mProgramInt })
+        if (lProgram != null)
+          lProgram.close();
+      mProgramFloat = mProgramUint = mProgramInt = null;
+      mRenderKernel = null;
+
+      if (mStatistics != null)
+        mStatistics.close();
+      mStatistics = null;
+    }
+    finally
+    {
+      mLock.unlock();
     }
   }
 
@@ -313,24 +352,38 @@ public class ClearCLImagePanel extends BorderPane
     {
       try
       {
+        // nothing to render with once closed:
+        if (mStatistics == null)
+          return;
+
         // System.out.println("Update View");
         float lMin = 0;
         float lMax = 1;
 
         if (mAuto.get() || mTrueMin == null)
         {
-          float[] lMinMax = mMinMax.minmax(mClearCLImage, 32);
-          /*System.out.format("computed: min=%f, max=%f \n",
-                            lMinMax[0],
-                            lMinMax[1]);/**/
-
-          float lMinValue = lMinMax[0];
-          float lMaxValue = lMinMax[1];
+          // the histogram spans the range of the previous frame so that
+          // statistics take a single pass, auto contrast ignores outliers:
+          Statistics.Result lStatistics =
+                                        mLastStatistics == null ? mStatistics.compute(mClearCLImage,
+                                                                                      cNumberOfBins)
+                                                                : mStatistics.compute(mClearCLImage,
+                                                                                      cNumberOfBins,
+                                                                                      mLastStatistics.getMin(),
+                                                                                      mLastStatistics.getMax());
+          mLastStatistics = lStatistics;
+          /*System.out.println("computed: " + lStatistics);/**/
+
+          float lMinValue = lStatistics.getPercentile(cLowPercentile);
+          float lMaxValue = lStatistics.getPercentile(cHighPercentile);
 
           if (Float.isInfinite(lMinValue)
               || Float.isInfinite(lMaxValue))
             System.err.println("Image has infinite value! "
                                + mClearCLImage);
+          else if (Float.isNaN(lMinValue) || Float.isNaN(lMaxValue))
+            System.err.println("Image has only NaN values! "
+                               + mClearCLImage);
           else
           {
 
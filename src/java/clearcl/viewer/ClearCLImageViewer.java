@@ -146,6 +146,7 @@ public class ClearCLImageViewer
 
       mImagePanel = new ClearCLImagePanel(pClearCLImage);
       mImagePanel.getIsActive().bind(mStage.showingProperty());
+      mStage.setOnHidden((e) -> mImagePanel.close());
 
       mControlPane = new GridPane();
       RowConstraints row1 = new RowConstraints();